@@ -0,0 +1,115 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.MemoryBudgetManager;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.time.Instant;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Shared setup of the benchmarks.
+ */
+public class BenchmarkUtils {
+
+  private static boolean initialized = false;
+
+  /**
+   * Starts MZmine in headless mode once per JVM. The -r option keeps MZmine running without a
+   * batch file and all data is memory mapped (-m none), the memory budget is reset to 0 so that
+   * the preferences of the local user do not change the results.
+   */
+  public static synchronized void initMZmineCore() {
+    if (initialized) {
+      return;
+    }
+    MZmineCore.main(new String[]{"-r", "-m", "none"});
+    MemoryBudgetManager.getInstance().setBudget(0L);
+    initialized = true;
+  }
+
+  /**
+   * Sets and returns a new empty project.
+   */
+  @NotNull
+  public static MZmineProject newProject() {
+    final MZmineProject project = new MZmineProjectImpl();
+    MZmineCore.getProjectManager().setCurrentProject(project);
+    return project;
+  }
+
+  /**
+   * Runs the task on the calling thread.
+   *
+   * @throws IllegalStateException if the task did not finish.
+   */
+  public static void runTask(@NotNull AbstractTask task) {
+    task.run();
+    if (task.getStatus() != TaskStatus.FINISHED) {
+      throw new IllegalStateException(
+          task.getClass().getSimpleName() + " did not finish (" + task.getStatus() + "): "
+          + task.getErrorMessage());
+    }
+  }
+
+  /**
+   * @return parameters of the ADAP chromatogram builder that fit the LC-MS files of {@link
+   * SyntheticData}.
+   */
+  @NotNull
+  public static ParameterSet createChromatogramBuilderParameters() {
+    final ParameterSet param = new ADAPChromatogramBuilderParameters().cloneParameterSet();
+    param.setParameter(ADAPChromatogramBuilderParameters.scanSelection, new ScanSelection(1));
+    param.setParameter(ADAPChromatogramBuilderParameters.minimumScanSpan, 4);
+    param.setParameter(ADAPChromatogramBuilderParameters.mzTolerance,
+        new MZTolerance(0.002, 10));
+    param.setParameter(ADAPChromatogramBuilderParameters.startIntensity, 3E4);
+    param.setParameter(ADAPChromatogramBuilderParameters.IntensityThresh2, 5E3);
+    param.setParameter(ADAPChromatogramBuilderParameters.suffix, "chrom");
+    return param;
+  }
+
+  /**
+   * Builds the chromatograms of a file with the ADAP chromatogram builder.
+   *
+   * @return the new feature list, which is also added to the project.
+   */
+  @NotNull
+  public static ModularFeatureList buildChromatograms(@NotNull MZmineProject project,
+      @NotNull RawDataFile file, @Nullable MemoryMapStorage storage) {
+    runTask(new ModularADAPChromatogramBuilderTask(project, file,
+        createChromatogramBuilderParameters(), storage, Instant.now()));
+    final FeatureList[] flists = project.getFeatureLists(file);
+    return (ModularFeatureList) flists[flists.length - 1];
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.benchmark.SyntheticData.Analyte;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ADAP chromatogram building of a centroided LC-MS file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ChromatogramBuilderBenchmark {
+
+  @Param({"500", "2000"})
+  public int numAnalytes;
+
+  private RawDataFile file;
+  private MemoryMapStorage storage;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkUtils.initMZmineCore();
+
+    final List<Analyte> analytes = SyntheticData.createAnalytes(1L, numAnalytes, 10f);
+    file = SyntheticData.createLcmsFile("lcms", 2L, analytes, 600, 10f, 300, false,
+        MemoryMapStorage.forRawDataFile());
+    storage = MemoryMapStorage.forFeatureList();
+  }
+
+  @Benchmark
+  public int buildChromatograms() {
+    return BenchmarkUtils.buildChromatograms(BenchmarkUtils.newProject(), file, storage)
+        .getNumberOfRows();
+  }
+}
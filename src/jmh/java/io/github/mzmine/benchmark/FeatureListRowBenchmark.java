@@ -0,0 +1,118 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.benchmark.SyntheticData.Analyte;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.numbers.HeightType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading and writing row values of a {@link ModularFeatureList} through the data type map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FeatureListRowBenchmark {
+
+  @Param({"1000", "10000"})
+  public int numRows;
+
+  private List<ModularFeatureListRow> rows;
+  private float[] heights;
+  private int invocation = 0;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkUtils.initMZmineCore();
+
+    final List<Analyte> analytes = SyntheticData.createAnalytes(1L, numRows, 10f);
+    final RawDataFile file = SyntheticData.createLcmsFile("lcms", 2L, analytes.subList(0, 10),
+        10, 10f, 0, false, MemoryMapStorage.forRawDataFile());
+    final ModularFeatureList flist = new ModularFeatureList("rows",
+        MemoryMapStorage.forFeatureList(), file);
+
+    rows = new ArrayList<>(numRows);
+    heights = new float[numRows];
+    for (int i = 0; i < numRows; i++) {
+      final Analyte analyte = analytes.get(i);
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, i + 1);
+      row.set(MZType.class, analyte.mz());
+      row.set(RTType.class, analyte.rt());
+      row.set(HeightType.class, (float) analyte.height());
+      flist.addRow(row);
+      rows.add(row);
+      heights[i] = (float) analyte.height();
+    }
+  }
+
+  @Benchmark
+  public double getValues() {
+    double sum = 0;
+    for (ModularFeatureListRow row : rows) {
+      sum += row.get(MZType.class) + row.get(RTType.class) + row.get(HeightType.class);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public int setValues() {
+    // alternate the values, so every call actually changes the row
+    final float offset = (invocation++ & 1) == 0 ? 1f : 0f;
+    int changed = 0;
+    for (int i = 0; i < rows.size(); i++) {
+      if (rows.get(i).set(HeightType.class, heights[i] + offset)) {
+        changed++;
+      }
+    }
+    return changed;
+  }
+
+  @Benchmark
+  public double getAverageMZ() {
+    double sum = 0;
+    for (ModularFeatureListRow row : rows) {
+      sum += row.getAverageMZ();
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.benchmark.SyntheticData.Analyte;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.modules.dataprocessing.featdet_gridmass.GridMassGrid;
+import io.github.mzmine.modules.dataprocessing.featdet_gridmass.GridMassGrid.ProbeCenters;
+import io.github.mzmine.modules.dataprocessing.featdet_gridmass.GridMassParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_gridmass.GridMassTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * GridMass feature detection of a centroided LC-MS file. The smoothing and probing of the grid are
+ * also measured on their own, once on the calling thread and once in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class GridMassBenchmark {
+
+  @Param({"500", "2000"})
+  public int numAnalytes;
+
+  private RawDataFile file;
+  private MemoryMapStorage storage;
+  private ParameterSet param;
+  private double[] rts;
+  private double[][][] data;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkUtils.initMZmineCore();
+
+    final List<Analyte> analytes = SyntheticData.createAnalytes(1L, numAnalytes, 10f);
+    file = SyntheticData.createLcmsFile("lcms", 2L, analytes, 600, 10f, 300, false,
+        MemoryMapStorage.forRawDataFile());
+    storage = MemoryMapStorage.forFeatureList();
+
+    param = new GridMassParameters().cloneParameterSet();
+    param.setParameter(GridMassParameters.scanSelection, new ScanSelection(1));
+    param.setParameter(GridMassParameters.suffix, "gridmass");
+    param.setParameter(GridMassParameters.minimumHeight, 3E4);
+    param.setParameter(GridMassParameters.mzTolerance, 0.01);
+    param.setParameter(GridMassParameters.timeSpan, Range.closed(0.05, 1d));
+    param.setParameter(GridMassParameters.smoothingTimeSpan, 0.05);
+    param.setParameter(GridMassParameters.smoothingTimeMZ, 0.01);
+    param.setParameter(GridMassParameters.intensitySimilarity, 0.5);
+    param.setParameter(GridMassParameters.ignoreTimes, "0-0");
+
+    final Scan[] scans = new ScanSelection(1).getMatchingScans(file);
+    rts = new double[scans.length];
+    data = new double[scans.length][][];
+    for (int i = 0; i < scans.length; i++) {
+      final int n = scans[i].getNumberOfDataPoints();
+      rts[i] = scans[i].getRetentionTime();
+      data[i] = new double[][]{scans[i].getMzValues(new double[n]),
+          scans[i].getIntensityValues(new double[n])};
+    }
+  }
+
+  @Benchmark
+  public int detectFeatures() {
+    final MZmineProject project = BenchmarkUtils.newProject();
+    BenchmarkUtils.runTask(new GridMassTask(project, file, param, storage, Instant.now()));
+    final FeatureList[] flists = project.getFeatureLists(file);
+    return flists[flists.length - 1].getNumberOfRows();
+  }
+
+  @Benchmark
+  public int gridSerial() {
+    return probeGrid(false);
+  }
+
+  @Benchmark
+  public int gridParallel() {
+    return probeGrid(true);
+  }
+
+  /**
+   * Smoothing and probing with the settings of the GridMass task for an m/z tolerance of 0.01 and
+   * a minimum time span of 0.05 min.
+   */
+  private int probeGrid(boolean parallel) {
+    final GridMassGrid grid = GridMassGrid.create(rts, i -> data[i], 0.05, 0.01, 3E4, parallel,
+        () -> false);
+    final ProbeCenters centers = grid.moveProbesToCenters(0.02, 1, 2, 0.01, 3E4, parallel,
+        () -> false);
+    return centers.size();
+  }
+}
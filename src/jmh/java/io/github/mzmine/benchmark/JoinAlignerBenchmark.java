@@ -0,0 +1,109 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.benchmark.SyntheticData.Analyte;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerParameters;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Join alignment of the chromatograms of multiple LC-MS files. The samples contain the same
+ * analytes with a random retention time drift.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class JoinAlignerBenchmark {
+
+  @Param({"5", "20"})
+  public int numFiles;
+
+  private ParameterSet parameters;
+  private MemoryMapStorage storage;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkUtils.initMZmineCore();
+
+    final List<Analyte> analytes = SyntheticData.createAnalytes(1L, 2000, 10f);
+    final MZmineProject project = BenchmarkUtils.newProject();
+    final ModularFeatureList[] flists = new ModularFeatureList[numFiles];
+    for (int i = 0; i < numFiles; i++) {
+      final List<Analyte> shifted = SyntheticData.shiftRetentionTimes(10L + i, analytes, 0.05f);
+      final RawDataFile file = SyntheticData.createLcmsFile("sample " + i, 100L + i, shifted,
+          600, 10f, 300, false, MemoryMapStorage.forRawDataFile());
+      flists[i] = BenchmarkUtils.buildChromatograms(project, file,
+          MemoryMapStorage.forFeatureList());
+    }
+
+    parameters = new JoinAlignerParameters().cloneParameterSet();
+    parameters.getParameter(JoinAlignerParameters.peakLists)
+        .setValue(new FeatureListsSelection(flists));
+    parameters.setParameter(JoinAlignerParameters.compareIsotopePattern, false);
+    parameters.setParameter(JoinAlignerParameters.compareSpectraSimilarity, false);
+    parameters.setParameter(JoinAlignerParameters.mobilityTolerance, false);
+    parameters.setParameter(JoinAlignerParameters.mobilityWeight, 0d);
+    parameters.setParameter(JoinAlignerParameters.MZTolerance, new MZTolerance(0.003, 10));
+    parameters.setParameter(JoinAlignerParameters.MZWeight, 3d);
+    parameters.setParameter(JoinAlignerParameters.RTTolerance,
+        new RTTolerance(0.2f, Unit.MINUTES));
+    parameters.setParameter(JoinAlignerParameters.RTWeight, 1d);
+    parameters.setParameter(JoinAlignerParameters.SameChargeRequired, false);
+    parameters.setParameter(JoinAlignerParameters.SameIDRequired, false);
+    parameters.setParameter(JoinAlignerParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+    parameters.setParameter(JoinAlignerParameters.peakListName, "aligned");
+    storage = MemoryMapStorage.forFeatureList();
+  }
+
+  @Benchmark
+  public int align() {
+    final MZmineProject project = BenchmarkUtils.newProject();
+    BenchmarkUtils.runTask(new JoinAlignerTask(project, parameters, storage, Instant.now()));
+    return project.getCurrentFeatureLists().get(0).getNumberOfRows();
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.benchmark.SyntheticData.Analyte;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.auto.AutoMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.auto.AutoMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.exactmass.ExactMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.localmaxima.LocalMaxMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.localmaxima.LocalMaxMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.recursive.RecursiveMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.recursive.RecursiveMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.wavelet.WaveletMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.wavelet.WaveletMassDetectorParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mass detection of all profile spectra of an LC-MS or imaging file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MassDetectorBenchmark {
+
+  private static final double NOISE_LEVEL = 1E3;
+
+  public enum Detector {
+    CENTROID, EXACT_MASS, LOCAL_MAXIMA, RECURSIVE, WAVELET, AUTO
+  }
+
+  public enum Data {
+    LC_MS, IMAGING
+  }
+
+  @Param
+  public Detector detector;
+
+  @Param
+  public Data data;
+
+  private List<Scan> scans;
+  private MassDetector massDetector;
+  private ParameterSet parameters;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkUtils.initMZmineCore();
+
+    final List<Analyte> analytes = SyntheticData.createAnalytes(1L, 2000, 10f);
+    final RawDataFile file = switch (data) {
+      case LC_MS -> SyntheticData.createLcmsFile("lcms", 2L, analytes, 300, 10f, 500, true,
+          MemoryMapStorage.forRawDataFile());
+      case IMAGING -> SyntheticData.createImagingFile("imaging", 2L, analytes, 30, 20, 500,
+          MemoryMapStorage.forRawDataFile());
+    };
+    scans = List.copyOf(file.getScans());
+
+    switch (detector) {
+      case CENTROID -> {
+        massDetector = MZmineCore.getModuleInstance(CentroidMassDetector.class);
+        parameters = new CentroidMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(CentroidMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+        parameters.setParameter(CentroidMassDetectorParameters.detectIsotopes, false);
+      }
+      case EXACT_MASS -> {
+        massDetector = MZmineCore.getModuleInstance(ExactMassDetector.class);
+        parameters = new ExactMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(ExactMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+        parameters.setParameter(ExactMassDetectorParameters.detectIsotopes, false);
+      }
+      case LOCAL_MAXIMA -> {
+        massDetector = MZmineCore.getModuleInstance(LocalMaxMassDetector.class);
+        parameters = new LocalMaxMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(LocalMaxMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+      }
+      case RECURSIVE -> {
+        massDetector = MZmineCore.getModuleInstance(RecursiveMassDetector.class);
+        parameters = new RecursiveMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(RecursiveMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+        parameters.setParameter(RecursiveMassDetectorParameters.minimumMZPeakWidth, 0.001);
+        parameters.setParameter(RecursiveMassDetectorParameters.maximumMZPeakWidth, 0.1);
+      }
+      case WAVELET -> {
+        massDetector = MZmineCore.getModuleInstance(WaveletMassDetector.class);
+        parameters = new WaveletMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(WaveletMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+        parameters.setParameter(WaveletMassDetectorParameters.scaleLevel, 3);
+        parameters.setParameter(WaveletMassDetectorParameters.waveletWindow, 0.3);
+      }
+      case AUTO -> {
+        massDetector = MZmineCore.getModuleInstance(AutoMassDetector.class);
+        parameters = new AutoMassDetectorParameters().cloneParameterSet();
+        parameters.setParameter(AutoMassDetectorParameters.noiseLevel, NOISE_LEVEL);
+        parameters.setParameter(AutoMassDetectorParameters.detectIsotopes, false);
+      }
+    }
+  }
+
+  @Benchmark
+  public int detectMasses() {
+    int detected = 0;
+    for (Scan scan : scans) {
+      detected += massDetector.getMassValues(scan, parameters)[0].length;
+    }
+    return detected;
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.util.MemoryBudgetManager;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.DoubleBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sun.misc.Unsafe;
+
+/**
+ * Storing double arrays in a {@link MemoryMapStorage} and reading them back. A memory budget of 0
+ * maps all arrays to temporary files, a large budget keeps them on the heap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MemoryMapStorageBenchmark {
+
+  private static final int NUM_ARRAYS = 1000;
+
+  @State(Scope.Benchmark)
+  public static class Data {
+
+    @Param({"100", "10000"})
+    public int arraySize;
+
+    @Param({"0", "4096"})
+    public long budgetMB;
+
+    private double[] values;
+    private Unsafe theUnsafe;
+
+    @Setup(Level.Trial)
+    public void setup() {
+      BenchmarkUtils.initMZmineCore();
+      MemoryBudgetManager.getInstance().setBudget(budgetMB * 1024L * 1024L);
+
+      final Random rand = new Random(1L);
+      values = new double[arraySize];
+      for (int i = 0; i < arraySize; i++) {
+        values[i] = rand.nextDouble() * 1000d;
+      }
+      theUnsafe = initUnsafe();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      MemoryBudgetManager.getInstance().setBudget(0L);
+    }
+
+    /**
+     * Unmaps the buffers and deletes the temporary files of the storage.
+     */
+    void discard(MemoryMapStorage storage) throws IOException {
+      storage.discard(theUnsafe);
+      MZmineCore.getStorageList().remove(storage);
+    }
+  }
+
+  /**
+   * A new storage for each invocation, so that the temporary files of the stored arrays do not
+   * accumulate.
+   */
+  @State(Scope.Thread)
+  public static class EmptyStorage {
+
+    private MemoryMapStorage storage;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+      storage = MemoryMapStorage.create();
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown(Data data) throws IOException {
+      data.discard(storage);
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class FilledStorage {
+
+    private MemoryMapStorage storage;
+    private DoubleBuffer[] buffers;
+    private double[] readBuffer;
+
+    @Setup(Level.Trial)
+    public void setup(Data data) throws IOException {
+      storage = MemoryMapStorage.create();
+      buffers = new DoubleBuffer[NUM_ARRAYS];
+      for (int i = 0; i < NUM_ARRAYS; i++) {
+        buffers[i] = storage.storeData(data.values);
+      }
+      readBuffer = new double[data.arraySize];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(Data data) throws IOException {
+      buffers = null;
+      data.discard(storage);
+    }
+  }
+
+  @Benchmark
+  public int store(Data data, EmptyStorage empty) throws IOException {
+    int stored = 0;
+    for (int i = 0; i < NUM_ARRAYS; i++) {
+      stored += empty.storage.storeData(data.values).capacity();
+    }
+    return stored;
+  }
+
+  @Benchmark
+  public double readValues(FilledStorage filled) {
+    double sum = 0;
+    for (DoubleBuffer buffer : filled.buffers) {
+      for (int i = 0, size = buffer.capacity(); i < size; i++) {
+        sum += buffer.get(i);
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public double readBulk(FilledStorage filled) {
+    double sum = 0;
+    final double[] dst = filled.readBuffer;
+    for (DoubleBuffer buffer : filled.buffers) {
+      buffer.get(0, dst);
+      sum += dst[dst.length - 1];
+    }
+    return sum;
+  }
+
+  @Nullable
+  private static Unsafe initUnsafe() {
+    try {
+      final Field theUnsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+      theUnsafeField.setAccessible(true);
+      return (Unsafe) theUnsafeField.get(null);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      // the temporary files are still deleted but stay mapped until the buffers are collected
+      return null;
+    }
+  }
+}
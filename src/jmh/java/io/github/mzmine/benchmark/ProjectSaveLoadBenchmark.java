@@ -0,0 +1,127 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.benchmark.SyntheticData.Analyte;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.io.projectload.ProjectOpeningTask;
+import io.github.mzmine.modules.io.projectsave.ProjectSaveAsParameters;
+import io.github.mzmine.modules.io.projectsave.ProjectSaveOption;
+import io.github.mzmine.modules.io.projectsave.ProjectSavingTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving and loading a standalone project. The LC-MS project also contains the chromatograms of
+ * the file. Imaging files are not covered, because the project format does not support them yet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ProjectSaveLoadBenchmark {
+
+  public enum Data {
+    LC_MS, IMS
+  }
+
+  @Param
+  public Data data;
+
+  private MZmineProject project;
+  private File saveFile;
+  private File loadFile;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkUtils.initMZmineCore();
+
+    project = BenchmarkUtils.newProject();
+    final MemoryMapStorage storage = MemoryMapStorage.forRawDataFile();
+    final RawDataFile file = switch (data) {
+      case LC_MS -> {
+        final List<Analyte> analytes = SyntheticData.createAnalytes(1L, 1000, 10f);
+        yield SyntheticData.createLcmsFile("lcms", 2L, analytes, 600, 10f, 300, false, storage);
+      }
+      case IMS -> {
+        final List<Analyte> analytes = SyntheticData.createAnalytes(1L, 500, 2f);
+        yield SyntheticData.createImsFile("ims", 2L, analytes, 50, 200, 2f, 10, storage);
+      }
+    };
+    project.addFile(file);
+    if (data == Data.LC_MS) {
+      BenchmarkUtils.buildChromatograms(project, file, MemoryMapStorage.forFeatureList());
+    }
+
+    saveFile = File.createTempFile("benchmark_save", ".mzmine");
+    loadFile = File.createTempFile("benchmark_load", ".mzmine");
+    saveProject(loadFile);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(saveFile.toPath());
+    Files.deleteIfExists(loadFile.toPath());
+  }
+
+  @Benchmark
+  public long save() {
+    saveProject(saveFile);
+    return saveFile.length();
+  }
+
+  @Benchmark
+  public int load() {
+    // the opening task asks for confirmation if the current project contains data files
+    BenchmarkUtils.newProject();
+    BenchmarkUtils.runTask(new ProjectOpeningTask(loadFile, Instant.now()));
+    final MZmineProject loaded = MZmineCore.getProjectManager().getCurrentProject();
+    return loaded.getDataFiles().length + loaded.getCurrentFeatureLists().size();
+  }
+
+  private void saveProject(File projectFile) {
+    final ParameterSet param = new ProjectSaveAsParameters().cloneParameterSet();
+    param.setParameter(ProjectSaveAsParameters.projectFile, projectFile);
+    param.setParameter(ProjectSaveAsParameters.option, ProjectSaveOption.STANDALONE);
+    BenchmarkUtils.runTask(new ProjectSavingTask(project, param, Instant.now()));
+  }
+}
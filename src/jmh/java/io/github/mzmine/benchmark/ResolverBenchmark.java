@@ -0,0 +1,125 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.benchmark.SyntheticData.Analyte;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.FeatureDataType;
+import io.github.mzmine.datamodel.data_access.FeatureDataAccess;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.GeneralResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.Resolver;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ResolvingDimension;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.ADAPpeakpicking.ADAPResolverParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution.minimumsearch.MinimumSearchFeatureResolverParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolving of all chromatograms of a feature list. The chromatograms are accessed with zeros for
+ * all scans, like in the feature resolver task.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ResolverBenchmark {
+
+  public enum ResolverType {
+    MINIMUM_SEARCH, ADAP
+  }
+
+  @Param
+  public ResolverType resolverType;
+
+  private ModularFeatureList flist;
+  private RawDataFile file;
+  private Resolver resolver;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    BenchmarkUtils.initMZmineCore();
+
+    final List<Analyte> analytes = SyntheticData.createAnalytes(1L, 1000, 10f);
+    // co-eluting isomers that have to be resolved
+    final List<Analyte> isomers = SyntheticData.shiftRetentionTimes(3L, analytes, 0.5f);
+    file = SyntheticData.createLcmsFile("lcms", 2L,
+        SyntheticData.mergeAnalytes(analytes, isomers), 600, 10f, 300, false,
+        MemoryMapStorage.forRawDataFile());
+    flist = BenchmarkUtils.buildChromatograms(BenchmarkUtils.newProject(), file,
+        MemoryMapStorage.forFeatureList());
+
+    final ParameterSet param = switch (resolverType) {
+      case MINIMUM_SEARCH -> {
+        final ParameterSet p = new MinimumSearchFeatureResolverParameters().cloneParameterSet();
+        p.setParameter(MinimumSearchFeatureResolverParameters.CHROMATOGRAPHIC_THRESHOLD_LEVEL,
+            0.8);
+        p.setParameter(MinimumSearchFeatureResolverParameters.MIN_ABSOLUTE_HEIGHT, 1E4);
+        p.setParameter(MinimumSearchFeatureResolverParameters.MIN_NUMBER_OF_DATAPOINTS, 4);
+        p.setParameter(MinimumSearchFeatureResolverParameters.MIN_RATIO, 1.8);
+        p.setParameter(MinimumSearchFeatureResolverParameters.MIN_RELATIVE_HEIGHT, 0d);
+        p.setParameter(MinimumSearchFeatureResolverParameters.PEAK_DURATION,
+            Range.closed(0.02, 1d));
+        p.setParameter(MinimumSearchFeatureResolverParameters.SEARCH_RT_RANGE, 0.05);
+        yield p;
+      }
+      case ADAP -> {
+        final ParameterSet p = new ADAPResolverParameters().cloneParameterSet();
+        p.setParameter(ADAPResolverParameters.MIN_FEAT_HEIGHT, 1E4);
+        p.setParameter(ADAPResolverParameters.PEAK_DURATION, Range.closed(0.02, 1d));
+        p.setParameter(ADAPResolverParameters.RT_FOR_CWT_SCALES_DURATION,
+            Range.closed(0.02, 0.2));
+        yield p;
+      }
+    };
+    param.setParameter(GeneralResolverParameters.dimension, ResolvingDimension.RETENTION_TIME);
+    resolver = ((GeneralResolverParameters) param).getResolver(param, flist);
+  }
+
+  @Benchmark
+  public int resolve() {
+    final FeatureDataAccess access = EfficientDataAccess.of(flist, FeatureDataType.INCLUDE_ZEROS,
+        file);
+    int resolved = 0;
+    while (access.hasNextFeature()) {
+      access.nextFeature();
+      resolved += resolver.resolve(access, null).size();
+    }
+    return resolved;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import com.google.common.util.concurrent.AtomicDouble;
+import io.github.mzmine.benchmark.SyntheticData.Analyte;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.IMSRawDataFile;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.scans.SpectraMerging;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Merging of consecutive MS1 scans of an LC-MS file and of consecutive frames of an IMS file.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpectraMergingBenchmark {
+
+  private static final int SPECTRA_PER_MERGE = 5;
+  private static final MZTolerance TOLERANCE = SpectraMerging.defaultMs1MergeTol;
+
+  @State(Scope.Benchmark)
+  public static class LcmsData {
+
+    private List<Scan> scans;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      BenchmarkUtils.initMZmineCore();
+      final List<Analyte> analytes = SyntheticData.createAnalytes(1L, 2000, 10f);
+      final RawDataFile file = SyntheticData.createLcmsFile("lcms", 2L, analytes, 600, 10f, 300,
+          false, MemoryMapStorage.forRawDataFile());
+      scans = List.copyOf(file.getScans());
+    }
+  }
+
+  @State(Scope.Benchmark)
+  public static class ImsData {
+
+    private List<Frame> frames;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+      BenchmarkUtils.initMZmineCore();
+      final List<Analyte> analytes = SyntheticData.createAnalytes(1L, 2000, 5f);
+      final IMSRawDataFile file = SyntheticData.createImsFile("ims", 2L, analytes, 100, 200, 5f,
+          10, MemoryMapStorage.forRawDataFile());
+      frames = List.copyOf(file.getFrames());
+    }
+  }
+
+  @Benchmark
+  public int mergeScans(LcmsData data) {
+    int merged = 0;
+    for (int i = 0; i + SPECTRA_PER_MERGE <= data.scans.size(); i += SPECTRA_PER_MERGE) {
+      merged += SpectraMerging.mergeSpectra(data.scans.subList(i, i + SPECTRA_PER_MERGE),
+          TOLERANCE, null).getNumberOfDataPoints();
+    }
+    return merged;
+  }
+
+  @Benchmark
+  public int mergeFrames(ImsData data) {
+    int merged = 0;
+    for (int i = 0; i + SPECTRA_PER_MERGE <= data.frames.size(); i += SPECTRA_PER_MERGE) {
+      merged += SpectraMerging.getMergedFrame(data.frames.subList(i, i + SPECTRA_PER_MERGE),
+          TOLERANCE, null, 1, new AtomicDouble()).getNumberOfDataPoints();
+    }
+    return merged;
+  }
+}
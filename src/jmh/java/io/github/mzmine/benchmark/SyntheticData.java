@@ -0,0 +1,425 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.IMSRawDataFile;
+import io.github.mzmine.datamodel.ImagingRawDataFile;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleImagingScan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.io.import_rawdata_imzml.Coordinates;
+import io.github.mzmine.util.MemoryMapStorage;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Creates reproducible synthetic LC-MS, IMS and imaging data for the benchmarks. All data is
+ * generated from a seeded {@link Random}, the same arguments always create the same data.
+ * <p>
+ * Analytes are gaussian peaks in retention time and mobility. Profile spectra are created by
+ * expanding each centroid to a gaussian m/z peak, the ideal centroids are added as mass lists so
+ * that processing steps after the mass detection do not depend on a mass detector.
+ */
+public class SyntheticData {
+
+  public static final Range<Double> MZ_RANGE = Range.closed(100d, 1000d);
+  public static final Range<Double> MOBILITY_RANGE = Range.closed(0.6d, 1.6d);
+
+  /**
+   * Standard deviations of the chromatographic and mobility peaks.
+   */
+  public static final float RT_SIGMA = 0.03f;
+  public static final double MOBILITY_SIGMA = 0.008d;
+
+  /**
+   * Resolution (m/z / FWHM) of the profile spectra.
+   */
+  private static final double RESOLUTION = 30_000d;
+  private static final double FWHM_TO_SIGMA = 1d / 2.3548d;
+  private static final int PROFILE_HALF_WIDTH = 3;
+  // relative intensity below which a signal is not added to the spectra
+  private static final double MIN_RELATIVE_INTENSITY = 1E-3;
+
+  private static final double NOISE_MIN = 50d;
+  private static final double NOISE_MAX = 1000d;
+
+  /**
+   * A compound with a gaussian peak shape in retention time and mobility.
+   *
+   * @param mz       the m/z of the ion
+   * @param rt       the retention time of the peak maximum in minutes
+   * @param mobility the mobility of the peak maximum
+   * @param height   the intensity of the peak maximum
+   */
+  public record Analyte(double mz, float rt, double mobility, double height) {
+
+    /**
+     * @return the relative intensity of this analyte at the given retention time.
+     */
+    public double rtFactor(float retentionTime) {
+      final double d = (retentionTime - rt) / RT_SIGMA;
+      return Math.exp(-0.5 * d * d);
+    }
+
+    /**
+     * @return the relative intensity of this analyte at the given mobility.
+     */
+    public double mobilityFactor(double mob) {
+      final double d = (mob - mobility) / MOBILITY_SIGMA;
+      return Math.exp(-0.5 * d * d);
+    }
+  }
+
+  /**
+   * Creates analytes with random m/z, retention time, mobility and height. The heights are log
+   * uniformly distributed between 1E4 and 1E7.
+   *
+   * @param seed         the seed of the random generator
+   * @param numAnalytes  the number of analytes
+   * @param maxRt        the maximum retention time of the run in minutes
+   * @return the analytes sorted by m/z.
+   */
+  @NotNull
+  public static List<Analyte> createAnalytes(long seed, int numAnalytes, float maxRt) {
+    final Random rand = new Random(seed);
+    final double mzWidth = MZ_RANGE.upperEndpoint() - MZ_RANGE.lowerEndpoint();
+    final double mobilityWidth = MOBILITY_RANGE.upperEndpoint() - MOBILITY_RANGE.lowerEndpoint();
+    final float rtMargin = 10 * RT_SIGMA;
+
+    final List<Analyte> analytes = new ArrayList<>(numAnalytes);
+    for (int i = 0; i < numAnalytes; i++) {
+      final double mz = MZ_RANGE.lowerEndpoint() + rand.nextDouble() * mzWidth;
+      final float rt = rtMargin + rand.nextFloat() * (maxRt - 2 * rtMargin);
+      final double mobility =
+          MOBILITY_RANGE.lowerEndpoint() + (0.1 + 0.8 * rand.nextDouble()) * mobilityWidth;
+      final double height = Math.pow(10, 4 + 3 * rand.nextDouble());
+      analytes.add(new Analyte(mz, rt, mobility, height));
+    }
+    analytes.sort(Comparator.comparingDouble(Analyte::mz));
+    return analytes;
+  }
+
+  /**
+   * Moves the retention times of the analytes by a random shift to simulate the retention time
+   * drift between samples.
+   *
+   * @param maxShift the maximum absolute shift in minutes
+   * @return the shifted analytes sorted by m/z.
+   */
+  @NotNull
+  public static List<Analyte> shiftRetentionTimes(long seed, @NotNull List<Analyte> analytes,
+      float maxShift) {
+    final Random rand = new Random(seed);
+    return analytes.stream().map(a -> new Analyte(a.mz(),
+        a.rt() + (rand.nextFloat() * 2f - 1f) * maxShift, a.mobility(), a.height())).toList();
+  }
+
+  /**
+   * @return the analytes of both lists sorted by m/z.
+   */
+  @NotNull
+  public static List<Analyte> mergeAnalytes(@NotNull List<Analyte> a, @NotNull List<Analyte> b) {
+    final List<Analyte> merged = new ArrayList<>(a.size() + b.size());
+    merged.addAll(a);
+    merged.addAll(b);
+    merged.sort(Comparator.comparingDouble(Analyte::mz));
+    return merged;
+  }
+
+  /**
+   * Creates an LC-MS file with MS1 scans. Each scan contains the signals of the eluting analytes
+   * and random noise signals. The scans have a mass list with all centroided signals.
+   *
+   * @param name      the file name
+   * @param seed      the seed for the noise
+   * @param analytes  the analytes sorted by m/z
+   * @param numScans  the number of scans
+   * @param maxRt     the retention time of the last scan in minutes
+   * @param numNoise  the number of noise signals in each scan
+   * @param profile   true to create profile spectra, false for centroid spectra
+   * @param storage   the storage of the file or null to keep all data in RAM
+   */
+  @NotNull
+  public static RawDataFile createLcmsFile(@NotNull String name, long seed,
+      @NotNull List<Analyte> analytes, int numScans, float maxRt, int numNoise, boolean profile,
+      @Nullable MemoryMapStorage storage) throws IOException {
+    final Random rand = new Random(seed);
+    final RawDataFile file = MZmineCore.createNewFile(name, null, storage);
+
+    for (int i = 0; i < numScans; i++) {
+      final float rt = maxRt * i / (numScans - 1);
+      final double[][] centroids = merge(analyteSignals(analytes, rt),
+          noiseSignals(rand, numNoise));
+      final double[][] data = profile ? toProfile(centroids) : centroids;
+
+      final SimpleScan scan = new SimpleScan(file, i, 1, rt, null, data[0], data[1],
+          profile ? MassSpectrumType.PROFILE : MassSpectrumType.CENTROIDED,
+          PolarityType.POSITIVE, "", MZ_RANGE);
+      scan.addMassList(profile ? new SimpleMassList(storage, centroids[0], centroids[1])
+          : new ScanPointerMassList(scan));
+      file.addScan(scan);
+    }
+    return file;
+  }
+
+  /**
+   * Creates an IMS file with MS1 frames. Each mobility scan contains the signals of the analytes
+   * and random noise signals and is used as its own mass list. The frame spectra contain the
+   * summed analyte signals of all mobility scans and random noise signals.
+   *
+   * @param name              the file name
+   * @param seed              the seed for the noise
+   * @param analytes          the analytes sorted by m/z
+   * @param numFrames         the number of frames
+   * @param numMobilityScans  the number of mobility scans per frame
+   * @param maxRt             the retention time of the last frame in minutes
+   * @param numNoise          the number of noise signals in each mobility scan
+   * @param storage           the storage of the file or null to keep all data in RAM
+   */
+  @NotNull
+  public static IMSRawDataFile createImsFile(@NotNull String name, long seed,
+      @NotNull List<Analyte> analytes, int numFrames, int numMobilityScans, float maxRt,
+      int numNoise, @Nullable MemoryMapStorage storage) throws IOException {
+    final Random rand = new Random(seed);
+    final IMSRawDataFile file = MZmineCore.createNewIMSFile(name, null, storage);
+
+    final double[] mobilities = new double[numMobilityScans];
+    final double mobilityStep = (MOBILITY_RANGE.upperEndpoint() - MOBILITY_RANGE.lowerEndpoint())
+        / (numMobilityScans - 1);
+    for (int i = 0; i < numMobilityScans; i++) {
+      mobilities[i] = MOBILITY_RANGE.lowerEndpoint() + i * mobilityStep;
+    }
+
+    for (int f = 0; f < numFrames; f++) {
+      final float rt = maxRt * f / (numFrames - 1);
+      final List<Analyte> eluting = analytes.stream()
+          .filter(a -> a.rtFactor(rt) >= MIN_RELATIVE_INTENSITY).toList();
+      final double[] summedIntensities = new double[eluting.size()];
+
+      final List<BuildingMobilityScan> mobilityScans = new ArrayList<>(numMobilityScans);
+      for (int m = 0; m < numMobilityScans; m++) {
+        final DoubleArrayList mzs = new DoubleArrayList();
+        final DoubleArrayList intensities = new DoubleArrayList();
+        for (int i = 0; i < eluting.size(); i++) {
+          final Analyte a = eluting.get(i);
+          final double factor = a.rtFactor(rt) * a.mobilityFactor(mobilities[m]);
+          if (factor >= MIN_RELATIVE_INTENSITY) {
+            final double intensity = a.height() * factor;
+            mzs.add(a.mz());
+            intensities.add(intensity);
+            summedIntensities[i] += intensity;
+          }
+        }
+        final double[][] data = merge(
+            new double[][]{mzs.toDoubleArray(), intensities.toDoubleArray()},
+            noiseSignals(rand, numNoise));
+        mobilityScans.add(new BuildingMobilityScan(m, data));
+      }
+
+      final double[][] frameData = merge(
+          new double[][]{eluting.stream().mapToDouble(Analyte::mz).toArray(), summedIntensities},
+          noiseSignals(rand, numNoise));
+      final SimpleFrame frame = new SimpleFrame(file, f, 1, rt, frameData[0], frameData[1],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", MZ_RANGE,
+          MobilityType.DRIFT_TUBE, null);
+      frame.setMobilityScans(mobilityScans, true);
+      frame.setMobilities(mobilities);
+      frame.addMassList(new ScanPointerMassList(frame));
+      file.addScan(frame);
+    }
+    return file;
+  }
+
+  /**
+   * Creates an imaging file with one profile spectrum per pixel. Each analyte is distributed as a
+   * gaussian spot at a random position of the image. The scans have a mass list with all
+   * centroided signals. No imaging parameters are set, the file is a source of pixel spectra.
+   *
+   * @param name     the file name
+   * @param seed     the seed for the spot positions and the noise
+   * @param analytes the analytes sorted by m/z
+   * @param width    the number of pixels in x
+   * @param height   the number of pixels in y
+   * @param numNoise the number of noise signals in each spectrum
+   * @param storage  the storage of the file or null to keep all data in RAM
+   */
+  @NotNull
+  public static ImagingRawDataFile createImagingFile(@NotNull String name, long seed,
+      @NotNull List<Analyte> analytes, int width, int height, int numNoise,
+      @Nullable MemoryMapStorage storage) throws IOException {
+    final Random rand = new Random(seed);
+    final ImagingRawDataFile file = MZmineCore.createNewImagingFile(name, null, storage);
+
+    final int numAnalytes = analytes.size();
+    final double[] spotX = new double[numAnalytes];
+    final double[] spotY = new double[numAnalytes];
+    final double[] spotSigma = new double[numAnalytes];
+    for (int i = 0; i < numAnalytes; i++) {
+      spotX[i] = rand.nextDouble() * width;
+      spotY[i] = rand.nextDouble() * height;
+      spotSigma[i] = 1 + rand.nextDouble() * Math.max(width, height) / 4d;
+    }
+
+    int scanNumber = 0;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        final DoubleArrayList mzs = new DoubleArrayList();
+        final DoubleArrayList intensities = new DoubleArrayList();
+        for (int i = 0; i < numAnalytes; i++) {
+          final double dx = (x - spotX[i]) / spotSigma[i];
+          final double dy = (y - spotY[i]) / spotSigma[i];
+          final double factor = Math.exp(-0.5 * (dx * dx + dy * dy));
+          if (factor >= MIN_RELATIVE_INTENSITY) {
+            mzs.add(analytes.get(i).mz());
+            intensities.add(analytes.get(i).height() * factor);
+          }
+        }
+        final double[][] centroids = merge(
+            new double[][]{mzs.toDoubleArray(), intensities.toDoubleArray()},
+            noiseSignals(rand, numNoise));
+        final double[][] data = toProfile(centroids);
+
+        final SimpleImagingScan scan = new SimpleImagingScan(file, scanNumber, 1, 0f, 0d, 0,
+            data[0], data[1], MassSpectrumType.PROFILE, PolarityType.POSITIVE, "", MZ_RANGE,
+            new Coordinates(x, y, 0));
+        scan.addMassList(new SimpleMassList(storage, centroids[0], centroids[1]));
+        file.addScan(scan);
+        scanNumber++;
+      }
+    }
+    return file;
+  }
+
+  /**
+   * Creates two random spectra that share a part of their signals.
+   *
+   * @param numSignals the number of signals in each spectrum
+   * @param shared     the fraction of signals that are contained in both spectra
+   * @return [spectrum a, spectrum b][mzs, intensities][data]
+   */
+  @NotNull
+  public static double[][][] createSpectrumPair(long seed, int numSignals, double shared) {
+    final Random rand = new Random(seed);
+    final int numShared = (int) (numSignals * shared);
+    final double[][] sharedSignals = noiseSignals(rand, numShared);
+    final double[][] a = merge(sharedSignals, noiseSignals(rand, numSignals - numShared));
+    final double[][] b = merge(sharedSignals, noiseSignals(rand, numSignals - numShared));
+    // small deviations in m/z and intensity
+    for (int i = 0; i < b[0].length; i++) {
+      b[0][i] += (rand.nextDouble() - 0.5) * 2E-4;
+      b[1][i] *= 0.8 + 0.4 * rand.nextDouble();
+    }
+    return new double[][][]{a, b};
+  }
+
+  /**
+   * @return the signals of the analytes at the given retention time. Analytes have to be sorted by
+   * m/z.
+   */
+  private static double[][] analyteSignals(List<Analyte> analytes, float rt) {
+    final DoubleArrayList mzs = new DoubleArrayList();
+    final DoubleArrayList intensities = new DoubleArrayList();
+    for (Analyte a : analytes) {
+      final double factor = a.rtFactor(rt);
+      if (factor >= MIN_RELATIVE_INTENSITY) {
+        mzs.add(a.mz());
+        intensities.add(a.height() * factor);
+      }
+    }
+    return new double[][]{mzs.toDoubleArray(), intensities.toDoubleArray()};
+  }
+
+  /**
+   * @return random signals sorted by m/z.
+   */
+  private static double[][] noiseSignals(Random rand, int numSignals) {
+    final double mzWidth = MZ_RANGE.upperEndpoint() - MZ_RANGE.lowerEndpoint();
+    final double[] mzs = new double[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      mzs[i] = MZ_RANGE.lowerEndpoint() + rand.nextDouble() * mzWidth;
+    }
+    Arrays.sort(mzs);
+    final double[] intensities = new double[numSignals];
+    for (int i = 0; i < numSignals; i++) {
+      intensities[i] = NOISE_MIN + rand.nextDouble() * (NOISE_MAX - NOISE_MIN);
+    }
+    return new double[][]{mzs, intensities};
+  }
+
+  /**
+   * Merges two spectra sorted by m/z.
+   */
+  private static double[][] merge(double[][] a, double[][] b) {
+    final int size = a[0].length + b[0].length;
+    final double[] mzs = new double[size];
+    final double[] intensities = new double[size];
+    int ia = 0;
+    int ib = 0;
+    for (int i = 0; i < size; i++) {
+      if (ib >= b[0].length || (ia < a[0].length && a[0][ia] <= b[0][ib])) {
+        mzs[i] = a[0][ia];
+        intensities[i] = a[1][ia++];
+      } else {
+        mzs[i] = b[0][ib];
+        intensities[i] = b[1][ib++];
+      }
+    }
+    return new double[][]{mzs, intensities};
+  }
+
+  /**
+   * Expands each centroid to a gaussian profile peak. Overlapping profile points are summed up.
+   */
+  private static double[][] toProfile(double[][] centroids) {
+    final int numPoints = 2 * PROFILE_HALF_WIDTH + 1;
+    final DoubleArrayList mzs = new DoubleArrayList(centroids[0].length * numPoints);
+    final DoubleArrayList intensities = new DoubleArrayList(centroids[0].length * numPoints);
+    for (int i = 0; i < centroids[0].length; i++) {
+      final double sigma = centroids[0][i] / RESOLUTION * FWHM_TO_SIGMA;
+      for (int j = -PROFILE_HALF_WIDTH; j <= PROFILE_HALF_WIDTH; j++) {
+        final double mz = centroids[0][i] + j * sigma;
+        final double intensity = centroids[1][i] * Math.exp(-0.5 * j * j);
+        final int last = mzs.size() - 1;
+        if (last >= 0 && mz <= mzs.getDouble(last)) {
+          intensities.set(last, intensities.getDouble(last) + intensity);
+        } else {
+          mzs.add(mz);
+          intensities.add(intensity);
+        }
+      }
+    }
+    return new double[][]{mzs.toDoubleArray(), intensities.toDoubleArray()};
+  }
+}
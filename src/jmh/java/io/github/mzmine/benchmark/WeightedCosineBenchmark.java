@@ -0,0 +1,110 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.benchmark;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.scans.similarity.HandleUnmatchedSignalOptions;
+import io.github.mzmine.util.scans.similarity.SpectralSimilarity;
+import io.github.mzmine.util.scans.similarity.Weights;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarity;
+import io.github.mzmine.util.scans.similarity.impl.cosine.WeightedCosineSpectralSimilarityParameters;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Weighted cosine similarity of spectrum pairs that share half of their signals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WeightedCosineBenchmark {
+
+  private static final int NUM_PAIRS = 100;
+  private static final MZTolerance TOLERANCE = new MZTolerance(0.002, 10);
+
+  @Param({"20", "200"})
+  public int numSignals;
+
+  @Param({"KEEP_ALL_AND_MATCH_TO_ZERO", "REMOVE_ALL"})
+  public HandleUnmatchedSignalOptions handleUnmatched;
+
+  private DataPoint[][] library;
+  private DataPoint[][] query;
+  private ParameterSet parameters;
+  private WeightedCosineSpectralSimilarity similarity;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    BenchmarkUtils.initMZmineCore();
+
+    library = new DataPoint[NUM_PAIRS][];
+    query = new DataPoint[NUM_PAIRS][];
+    for (int i = 0; i < NUM_PAIRS; i++) {
+      final double[][][] pair = SyntheticData.createSpectrumPair(i, numSignals, 0.5);
+      library[i] = toDataPoints(pair[0]);
+      query[i] = toDataPoints(pair[1]);
+    }
+
+    parameters = new WeightedCosineSpectralSimilarityParameters().cloneParameterSet();
+    parameters.setParameter(WeightedCosineSpectralSimilarityParameters.weight, Weights.MASSBANK);
+    parameters.setParameter(WeightedCosineSpectralSimilarityParameters.minCosine, 0d);
+    parameters.setParameter(WeightedCosineSpectralSimilarityParameters.handleUnmatched,
+        handleUnmatched);
+    similarity = MZmineCore.getModuleInstance(WeightedCosineSpectralSimilarity.class);
+  }
+
+  @Benchmark
+  public double similarity() {
+    double sum = 0;
+    for (int i = 0; i < NUM_PAIRS; i++) {
+      final SpectralSimilarity sim = similarity.getSimilarity(parameters, TOLERANCE, 0,
+          library[i], query[i]);
+      if (sim != null) {
+        sum += sim.getScore();
+      }
+    }
+    return sum;
+  }
+
+  private static DataPoint[] toDataPoints(double[][] data) {
+    final DataPoint[] dps = new DataPoint[data[0].length];
+    for (int i = 0; i < dps.length; i++) {
+      dps[i] = new SimpleDataPoint(data[0][i], data[1][i]);
+    }
+    return dps;
+  }
+}
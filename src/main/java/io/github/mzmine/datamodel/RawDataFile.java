@@ -19,6 +19,8 @@
 package io.github.mzmine.datamodel;
 
 import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.data_access.MzBinnedXicIndex;
+import io.github.mzmine.datamodel.data_access.ScanMetadataTable;
 import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
 import io.github.mzmine.util.MemoryMapStorage;
 import java.io.IOException;
@@ -200,6 +202,30 @@ public interface RawDataFile {
 
   @NotNull ObservableList<FeatureListAppliedMethod> getAppliedMethods();
 
+  /**
+   * An m/z index of the mass list data points of the given scans for fast extraction of ion
+   * chromatograms. Implementations may keep the index until the scans or mass lists change.
+   *
+   * @param scans the scans of this file sorted by retention time.
+   * @return the index of the scans or null if the scans have too many data points for an index.
+   * @throws io.github.mzmine.util.exceptions.MissingMassListException if a scan has no mass list.
+   */
+  @Nullable
+  default MzBinnedXicIndex getXicIndex(@NotNull List<? extends Scan> scans) {
+    return MzBinnedXicIndex.create(scans, getMemoryMapStorage());
+  }
+
+  /**
+   * A columnar table of the scan metadata with retention time and precursor m/z indices.
+   * Implementations may keep the table until the scans change.
+   *
+   * @return the table of all scans of this file.
+   */
+  @NotNull
+  default ScanMetadataTable getScanTable() {
+    return ScanMetadataTable.create(getScans());
+  }
+
   /**
    * JavaFX safe copy of the name
    */
@@ -0,0 +1,403 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.data_access;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.exceptions.MissingMassListException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Inverted index of the mass list data points of a list of scans. The data points are grouped into
+ * fine m/z bins, each bin holds the posting list of its data points (scan index, m/z, intensity)
+ * sorted by scan index. Extracting an ion chromatogram therefore only reads the bins covering the
+ * m/z range instead of searching every scan. The postings are stored in chunks of {@link
+ * #CHUNK_SIZE} data points in the {@link MemoryMapStorage} of the data file, so only one chunk is
+ * kept on the heap while the index is created.
+ * <p></p>
+ * The index is a snapshot of the mass lists at the time of creation. Use {@link
+ * RawDataFile#getXicIndex(List)} to obtain an index that is recreated after the mass lists
+ * changed.
+ */
+public class MzBinnedXicIndex {
+
+  /**
+   * Width of the m/z bins. Small enough, so that a bin usually only contains the data points of
+   * one or a few ions.
+   */
+  public static final double DEFAULT_BIN_WIDTH = 0.002;
+
+  private static final int CHUNK_SHIFT = 22;
+  /**
+   * Number of data points in a chunk of postings.
+   */
+  public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  private final List<? extends Scan> scans;
+  private final float[] rts;
+  private final double minMz;
+  private final double binWidth;
+  private final int numBins;
+  private final int numDataPoints;
+
+  // postings of bin i are [binOffsets[i], binOffsets[i+1]), posting p is in chunk p >>> CHUNK_SHIFT
+  private final IntBuffer binOffsets;
+  private final IntBuffer[] scanIndices;
+  private final DoubleBuffer[] mzs;
+  private final DoubleBuffer[] intensities;
+
+  private MzBinnedXicIndex(List<? extends Scan> scans, float[] rts, double minMz, double binWidth,
+      int numBins, int numDataPoints, IntBuffer binOffsets, IntBuffer[] scanIndices,
+      DoubleBuffer[] mzs, DoubleBuffer[] intensities) {
+    this.scans = scans;
+    this.rts = rts;
+    this.minMz = minMz;
+    this.binWidth = binWidth;
+    this.numBins = numBins;
+    this.numDataPoints = numDataPoints;
+    this.binOffsets = binOffsets;
+    this.scanIndices = scanIndices;
+    this.mzs = mzs;
+    this.intensities = intensities;
+  }
+
+  /**
+   * Creates the index from the mass lists of the given scans with the {@link #DEFAULT_BIN_WIDTH}.
+   *
+   * @param scans   the scans sorted by retention time. Usually the scans of one MS level.
+   * @param storage the storage for the postings or null to keep them in RAM.
+   * @return the index or null if the scans have more than {@link Integer#MAX_VALUE} data points.
+   * @throws MissingMassListException if a scan has no mass list.
+   */
+  @Nullable
+  public static MzBinnedXicIndex create(@NotNull List<? extends Scan> scans,
+      @Nullable MemoryMapStorage storage) {
+    return create(scans, storage, DEFAULT_BIN_WIDTH);
+  }
+
+  /**
+   * Creates the index from the mass lists of the given scans.
+   *
+   * @param scans    the scans sorted by retention time. Usually the scans of one MS level.
+   * @param storage  the storage for the postings or null to keep them in RAM.
+   * @param binWidth the m/z width of the bins.
+   * @return the index or null if the scans have more than {@link Integer#MAX_VALUE} data points.
+   * @throws MissingMassListException if a scan has no mass list.
+   */
+  @Nullable
+  public static MzBinnedXicIndex create(@NotNull List<? extends Scan> scans,
+      @Nullable MemoryMapStorage storage, double binWidth) {
+    scans = List.copyOf(scans);
+    final int numScans = scans.size();
+    final float[] rts = new float[numScans];
+
+    // m/z range and number of data points
+    double minMz = Double.POSITIVE_INFINITY;
+    double maxMz = Double.NEGATIVE_INFINITY;
+    long totalDataPoints = 0;
+    int maxDataPoints = 0;
+    for (int i = 0; i < numScans; i++) {
+      final Scan scan = scans.get(i);
+      rts[i] = scan.getRetentionTime();
+      final MassList massList = scan.getMassList();
+      if (massList == null) {
+        throw new MissingMassListException(scan);
+      }
+      final int numDataPoints = massList.getNumberOfDataPoints();
+      if (numDataPoints > 0) {
+        final Range<Double> mzRange = massList.getDataPointMZRange();
+        minMz = Math.min(minMz, mzRange.lowerEndpoint());
+        maxMz = Math.max(maxMz, mzRange.upperEndpoint());
+      }
+      totalDataPoints += numDataPoints;
+      maxDataPoints = Math.max(maxDataPoints, numDataPoints);
+    }
+    if (totalDataPoints > Integer.MAX_VALUE) {
+      // postings are addressed by int, the scans have to be searched directly
+      return null;
+    }
+    if (totalDataPoints == 0) {
+      minMz = 0d;
+      maxMz = 0d;
+    }
+
+    final int numBins = (int) Math.min(Math.floor((maxMz - minMz) / binWidth) + 1,
+        Math.max(totalDataPoints, 1));
+    // the bin width might be increased for a very wide m/z range with few data points
+    final double actualBinWidth = Math.max(binWidth, (maxMz - minMz) / numBins * (1 + 1E-9));
+
+    // count the data points of each bin
+    final double[] mzBuffer = new double[maxDataPoints];
+    final int[] offsets = new int[numBins + 1];
+    for (final Scan scan : scans) {
+      final MassList massList = scan.getMassList();
+      final int numDataPoints = massList.getNumberOfDataPoints();
+      massList.getMzValues(mzBuffer);
+      for (int dp = 0; dp < numDataPoints; dp++) {
+        offsets[binOf(mzBuffer[dp], minMz, actualBinWidth, numBins) + 1]++;
+      }
+    }
+    for (int bin = 0; bin < numBins; bin++) {
+      offsets[bin + 1] += offsets[bin];
+    }
+
+    // fill the postings chunk by chunk. Each chunk is filled from the bins that overlap it
+    final int total = (int) totalDataPoints;
+    final int numChunks = Math.max(1, (int) ((totalDataPoints + CHUNK_SIZE - 1) >>> CHUNK_SHIFT));
+    final IntBuffer[] scanIndexChunks = new IntBuffer[numChunks];
+    final DoubleBuffer[] mzChunks = new DoubleBuffer[numChunks];
+    final DoubleBuffer[] intensityChunks = new DoubleBuffer[numChunks];
+    final int[] nextPosting = new int[numBins];
+    int firstBin = 0;
+    for (int chunk = 0; chunk < numChunks; chunk++) {
+      final int chunkStart = chunk * CHUNK_SIZE;
+      final int chunkSize = Math.min(CHUNK_SIZE, total - chunkStart);
+      // bins [firstBin, lastBin] have postings within the chunk
+      while (firstBin < numBins - 1 && offsets[firstBin + 1] <= chunkStart) {
+        firstBin++;
+      }
+      int lastBin = firstBin;
+      while (lastBin < numBins - 1 && offsets[lastBin + 1] < chunkStart + chunkSize) {
+        lastBin++;
+      }
+
+      final int[] postingScans = new int[chunkSize];
+      final double[] postingMzs = new double[chunkSize];
+      final double[] postingIntensities = new double[chunkSize];
+      System.arraycopy(offsets, firstBin, nextPosting, firstBin, lastBin - firstBin + 1);
+      // fill the postings in scan order, so every posting list is sorted by scan index
+      for (int scanIndex = 0; scanIndex < numScans && chunkSize > 0; scanIndex++) {
+        final MassList massList = scans.get(scanIndex).getMassList();
+        final int numDataPoints = massList.getNumberOfDataPoints();
+        // data points are sorted by m/z, only the data points in the bins of the chunk are read
+        for (int dp = firstDataPoint(massList, firstBin, minMz, actualBinWidth, numBins);
+            dp < numDataPoints; dp++) {
+          final double mz = massList.getMzValue(dp);
+          final int bin = binOf(mz, minMz, actualBinWidth, numBins);
+          if (bin > lastBin) {
+            break;
+          }
+          final int posting = nextPosting[bin]++ - chunkStart;
+          if (posting >= 0 && posting < chunkSize) {
+            postingScans[posting] = scanIndex;
+            postingMzs[posting] = mz;
+            postingIntensities[posting] = massList.getIntensityValue(dp);
+          }
+        }
+      }
+      scanIndexChunks[chunk] = StorageUtils.storeValuesToIntBuffer(storage, postingScans);
+      mzChunks[chunk] = StorageUtils.storeValuesToDoubleBuffer(storage, postingMzs);
+      intensityChunks[chunk] = StorageUtils.storeValuesToDoubleBuffer(storage, postingIntensities);
+    }
+
+    return new MzBinnedXicIndex(scans, rts, minMz, actualBinWidth, numBins, total,
+        StorageUtils.storeValuesToIntBuffer(storage, offsets), scanIndexChunks, mzChunks,
+        intensityChunks);
+  }
+
+  private static int binOf(double mz, double minMz, double binWidth, int numBins) {
+    final int bin = (int) ((mz - minMz) / binWidth);
+    return Math.max(0, Math.min(numBins - 1, bin));
+  }
+
+  /**
+   * @return the index of the first data point of the mass list in a bin >= the given bin.
+   */
+  private static int firstDataPoint(MassList massList, int bin, double minMz, double binWidth,
+      int numBins) {
+    int low = 0;
+    int high = massList.getNumberOfDataPoints();
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (binOf(massList.getMzValue(mid), minMz, binWidth, numBins) < bin) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the indexed scans. The scan index of the data points refers to this list.
+   */
+  @NotNull
+  public List<? extends Scan> getScans() {
+    return scans;
+  }
+
+  public int getNumberOfScans() {
+    return scans.size();
+  }
+
+  /**
+   * @return the number of indexed data points.
+   */
+  public int getNumberOfDataPoints() {
+    return numDataPoints;
+  }
+
+  /**
+   * @param rtRange the retention time range.
+   * @return the first (inclusive) and last (exclusive) index of the scans within the rt range.
+   */
+  @NotNull
+  public int[] getScanIndexRange(@NotNull Range<Float> rtRange) {
+    int from = 0;
+    int to = rts.length;
+    if (rtRange.hasLowerBound()) {
+      from = lowerBound(rtRange.lowerEndpoint());
+      while (from < rts.length && !rtRange.contains(rts[from])) {
+        from++; // open lower bound
+      }
+    }
+    if (rtRange.hasUpperBound()) {
+      to = lowerBound(rtRange.upperEndpoint());
+      while (to < rts.length && rtRange.contains(rts[to])) {
+        to++;
+      }
+    }
+    return new int[]{from, Math.max(from, to)};
+  }
+
+  /**
+   * @return the index of the first scan with an rt >= the given rt.
+   */
+  private int lowerBound(float rt) {
+    int low = 0;
+    int high = rts.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (rts[mid] < rt) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Passes all data points within the m/z range of the scans from (inclusive) to (exclusive) to the
+   * consumer. The data points are passed bin by bin, within a bin sorted by scan index.
+   *
+   * @param mzRange   the m/z range.
+   * @param fromScan  the first scan index (inclusive).
+   * @param toScan    the last scan index (exclusive).
+   * @param consumer  receives the data points.
+   */
+  public void forEachDataPoint(@NotNull Range<Double> mzRange, int fromScan, int toScan,
+      @NotNull XicDataPointConsumer consumer) {
+    if (numBins == 0 || numDataPoints == 0 || fromScan >= toScan) {
+      return;
+    }
+    final double lower = mzRange.hasLowerBound() ? mzRange.lowerEndpoint() : minMz;
+    final double upper =
+        mzRange.hasUpperBound() ? mzRange.upperEndpoint() : Double.POSITIVE_INFINITY;
+    if (upper < minMz) {
+      return;
+    }
+    final int firstBin = binOf(lower, minMz, binWidth, numBins);
+    final int lastBin = binOf(Math.min(upper, minMz + binWidth * numBins), minMz, binWidth,
+        numBins);
+
+    for (int bin = firstBin; bin <= lastBin; bin++) {
+      final int end = binOffsets.get(bin + 1);
+      for (int posting = firstPosting(binOffsets.get(bin), end, fromScan); posting < end;
+          posting++) {
+        final int chunk = posting >>> CHUNK_SHIFT;
+        final int i = posting & CHUNK_MASK;
+        final int scanIndex = scanIndices[chunk].get(i);
+        if (scanIndex >= toScan) {
+          break;
+        }
+        final double mz = mzs[chunk].get(i);
+        if (mz >= lower && mz <= upper && mzRange.contains(mz)) {
+          consumer.accept(scanIndex, mz, intensities[chunk].get(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the most intense data point within the m/z range in every scan from (inclusive) to
+   * (exclusive), same as {@link io.github.mzmine.util.scans.ScanUtils#findBasePeak(Scan, Range)}
+   * on the mass lists. The results are written to dst[scanIndex - from], scans without a data point
+   * in the m/z range are set to 0.
+   *
+   * @param mzRange        the m/z range.
+   * @param fromScan       the first scan index (inclusive).
+   * @param toScan         the last scan index (exclusive).
+   * @param dstMzs         the m/z values of the base peaks. Length >= toScan - fromScan.
+   * @param dstIntensities the intensities of the base peaks. Length >= toScan - fromScan.
+   * @return the number of scans with a data point within the m/z range.
+   */
+  public int getBasePeaks(@NotNull Range<Double> mzRange, int fromScan, int toScan,
+      @NotNull double[] dstMzs, @NotNull double[] dstIntensities) {
+    final int numScans = Math.max(0, toScan - fromScan);
+    Arrays.fill(dstMzs, 0, numScans, 0d);
+    Arrays.fill(dstIntensities, 0, numScans, 0d);
+    final int[] found = new int[1];
+    // bins are visited in ascending m/z, so the first of equally intense data points is kept
+    forEachDataPoint(mzRange, fromScan, toScan, (scanIndex, mz, intensity) -> {
+      final int i = scanIndex - fromScan;
+      if (intensity > dstIntensities[i]) {
+        if (dstIntensities[i] == 0d) {
+          found[0]++;
+        }
+        dstMzs[i] = mz;
+        dstIntensities[i] = intensity;
+      }
+    });
+    return found[0];
+  }
+
+  /**
+   * @return the first posting in [start, end) with a scan index >= scanIndex.
+   */
+  private int firstPosting(int start, int end, int scanIndex) {
+    int low = start;
+    int high = end;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (scanIndices[mid >>> CHUNK_SHIFT].get(mid & CHUNK_MASK) < scanIndex) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  @FunctionalInterface
+  public interface XicDataPointConsumer {
+
+    void accept(int scanIndex, double mz, double intensity);
+  }
+}
@@ -0,0 +1,415 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.data_access;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Columnar snapshot of the scan metadata of a raw data file (MS level, retention time, polarity,
+ * precursor m/z, TIC and base peak intensity). For every MS level, the scans are indexed by
+ * retention time and the MS2 scans are indexed by their precursor m/z, so range queries are
+ * answered by binary search instead of iterating all scans. All queries return the scans in the
+ * order of the scan list of the raw data file.
+ * <p></p>
+ * The table is not updated if scans are added. Use {@link RawDataFile#getScanTable()} to obtain a
+ * table that is recreated after the scans changed.
+ */
+public class ScanMetadataTable {
+
+  private final List<Scan> scans;
+  private final int[] msLevels;
+  private final float[] rts;
+  private final PolarityType[] polarities;
+  // NaN if not available
+  private final double[] precursorMzs;
+  private final double[] tics;
+  private final double[] basePeakIntensities;
+
+  // sorted distinct MS levels and per level the scan indices sorted by rt
+  private final int[] levels;
+  private final int[][] levelIndices;
+  private final float[][] levelRts;
+  // true if the rt order of the level equals the scan order
+  private final boolean[] levelInScanOrder;
+  // all scans sorted by rt
+  private final int[] allIndices;
+  private final float[] allRts;
+  // MS2 scans with a precursor m/z sorted by the precursor m/z
+  private final int[] ms2Indices;
+  private final double[] ms2PrecursorMzs;
+
+  private ScanMetadataTable(List<Scan> scans) {
+    this.scans = scans;
+    final int n = scans.size();
+    msLevels = new int[n];
+    rts = new float[n];
+    polarities = new PolarityType[n];
+    precursorMzs = new double[n];
+    tics = new double[n];
+    basePeakIntensities = new double[n];
+
+    for (int i = 0; i < n; i++) {
+      final Scan scan = scans.get(i);
+      msLevels[i] = scan.getMSLevel();
+      rts[i] = scan.getRetentionTime();
+      polarities[i] = scan.getPolarity();
+      final Double precursorMz = scan.getPrecursorMz();
+      precursorMzs[i] = precursorMz != null ? precursorMz : Double.NaN;
+      final Double tic = scan.getTIC();
+      tics[i] = tic != null ? tic : Double.NaN;
+      final Double basePeak = scan.getBasePeakIntensity();
+      basePeakIntensities[i] = basePeak != null ? basePeak : Double.NaN;
+    }
+
+    levels = Arrays.stream(msLevels).distinct().sorted().toArray();
+    levelIndices = new int[levels.length][];
+    levelRts = new float[levels.length][];
+    levelInScanOrder = new boolean[levels.length];
+    final IntArrayList[] byLevel = new IntArrayList[levels.length];
+    for (int l = 0; l < levels.length; l++) {
+      byLevel[l] = new IntArrayList();
+    }
+    for (int i = 0; i < n; i++) {
+      byLevel[Arrays.binarySearch(levels, msLevels[i])].add(i);
+    }
+    for (int l = 0; l < levels.length; l++) {
+      final int[] indices = byLevel[l].toIntArray();
+      levelInScanOrder[l] = isSortedByRt(indices);
+      if (!levelInScanOrder[l]) {
+        sortByRt(indices);
+      }
+      levelIndices[l] = indices;
+      levelRts[l] = getRts(indices);
+    }
+
+    allIndices = new int[n];
+    for (int i = 0; i < n; i++) {
+      allIndices[i] = i;
+    }
+    if (!isSortedByRt(allIndices)) {
+      sortByRt(allIndices);
+    }
+    allRts = getRts(allIndices);
+
+    final IntArrayList ms2 = new IntArrayList();
+    for (int i = 0; i < n; i++) {
+      if (msLevels[i] == 2 && !Double.isNaN(precursorMzs[i])) {
+        ms2.add(i);
+      }
+    }
+    ms2Indices = ms2.toIntArray();
+    IntArrays.quickSort(ms2Indices, (a, b) -> {
+      final int c = Double.compare(precursorMzs[a], precursorMzs[b]);
+      return c != 0 ? c : Integer.compare(a, b);
+    });
+    ms2PrecursorMzs = new double[ms2Indices.length];
+    for (int i = 0; i < ms2Indices.length; i++) {
+      ms2PrecursorMzs[i] = precursorMzs[ms2Indices[i]];
+    }
+  }
+
+  /**
+   * @param scans the scans of a raw data file
+   * @return the table of the scans
+   */
+  @NotNull
+  public static ScanMetadataTable create(@NotNull List<? extends Scan> scans) {
+    return new ScanMetadataTable(List.copyOf(scans));
+  }
+
+  private boolean isSortedByRt(int[] indices) {
+    for (int i = 1; i < indices.length; i++) {
+      if (rts[indices[i]] < rts[indices[i - 1]]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void sortByRt(int[] indices) {
+    IntArrays.quickSort(indices, (a, b) -> {
+      final int c = Float.compare(rts[a], rts[b]);
+      return c != 0 ? c : Integer.compare(a, b);
+    });
+  }
+
+  private float[] getRts(int[] indices) {
+    final float[] sorted = new float[indices.length];
+    for (int i = 0; i < indices.length; i++) {
+      sorted[i] = rts[indices[i]];
+    }
+    return sorted;
+  }
+
+  /**
+   * @return the scans of this table
+   */
+  @NotNull
+  public List<Scan> getScans() {
+    return scans;
+  }
+
+  public int getNumberOfScans() {
+    return scans.size();
+  }
+
+  public int getMsLevel(int index) {
+    return msLevels[index];
+  }
+
+  public float getRetentionTime(int index) {
+    return rts[index];
+  }
+
+  @NotNull
+  public PolarityType getPolarity(int index) {
+    return polarities[index];
+  }
+
+  /**
+   * @return the precursor m/z or NaN, if the scan has no DDA precursor.
+   */
+  public double getPrecursorMz(int index) {
+    return precursorMzs[index];
+  }
+
+  /**
+   * @return the TIC or NaN, if not available.
+   */
+  public double getTIC(int index) {
+    return tics[index];
+  }
+
+  /**
+   * @return the base peak intensity or NaN, if not available.
+   */
+  public double getBasePeakIntensity(int index) {
+    return basePeakIntensities[index];
+  }
+
+  /**
+   * @return sorted array of all MS levels
+   */
+  @NotNull
+  public int[] getMSLevels() {
+    return levels.clone();
+  }
+
+  /**
+   * @return the number of scans of the MS level
+   */
+  public int getNumberOfScans(int msLevel) {
+    final int l = Arrays.binarySearch(levels, msLevel);
+    return l < 0 ? 0 : levelIndices[l].length;
+  }
+
+  /**
+   * @return all scans of the MS level
+   */
+  @NotNull
+  public List<Scan> getScans(int msLevel) {
+    final int l = Arrays.binarySearch(levels, msLevel);
+    if (l < 0) {
+      return new ArrayList<>();
+    }
+    final int[] indices = levelIndices[l];
+    return toScans(levelInScanOrder[l] ? indices : sortedCopy(indices));
+  }
+
+  /**
+   * @return all scans of the MS level within the rt range
+   */
+  @NotNull
+  public Scan[] getScans(int msLevel, @NotNull Range<Float> rtRange) {
+    final int l = Arrays.binarySearch(levels, msLevel);
+    if (l < 0) {
+      return new Scan[0];
+    }
+    final int[] indices = levelIndices[l];
+    final float[] sortedRts = levelRts[l];
+    final int from = rtRange.hasLowerBound() ? lowerBound(sortedRts, rtRange.lowerEndpoint()) : 0;
+    final int to = rtRange.hasUpperBound() ? upperBound(sortedRts, rtRange.upperEndpoint())
+        : sortedRts.length;
+
+    final IntArrayList matches = new IntArrayList(Math.max(0, to - from));
+    for (int i = from; i < to; i++) {
+      // check the bound types of the range
+      if (rtRange.contains(sortedRts[i])) {
+        matches.add(indices[i]);
+      }
+    }
+    final int[] result = matches.toIntArray();
+    if (!levelInScanOrder[l]) {
+      Arrays.sort(result);
+    }
+    return toScans(result).toArray(Scan[]::new);
+  }
+
+  /**
+   * @param msLevel   the MS level
+   * @param rt        the retention time
+   * @param maxRtDiff the maximum rt difference
+   * @return the scan of the MS level closest to the rt or null, if there is no scan within the
+   * maximum difference. The first scan of the two closest scans, if the rt is exactly between two
+   * scans.
+   */
+  @Nullable
+  public Scan getClosestScan(int msLevel, float rt, float maxRtDiff) {
+    final int l = Arrays.binarySearch(levels, msLevel);
+    if (l < 0) {
+      return null;
+    }
+    return getClosestScan(levelIndices[l], levelRts[l], rt, maxRtDiff);
+  }
+
+  /**
+   * @return the scan of any MS level closest to the rt or null, if this table is empty
+   */
+  @Nullable
+  public Scan getClosestScan(float rt) {
+    return getClosestScan(allIndices, allRts, rt, Float.POSITIVE_INFINITY);
+  }
+
+  @Nullable
+  private Scan getClosestScan(int[] indices, float[] sortedRts, float rt, float maxRtDiff) {
+    final int insert = lowerBound(sortedRts, rt);
+    int best = -1;
+    float bestDiff = Float.POSITIVE_INFINITY;
+    // the scan before and at the insertion point
+    for (int i = Math.max(0, insert - 1); i <= insert && i < sortedRts.length; i++) {
+      final float diff = Math.abs(sortedRts[i] - rt);
+      if (diff < bestDiff) {
+        bestDiff = diff;
+        best = i;
+      }
+    }
+    return best == -1 || bestDiff > maxRtDiff ? null : scans.get(indices[best]);
+  }
+
+  /**
+   * @param precursorMzRange the precursor m/z range
+   * @param rtRange          the rt range
+   * @return all MS2 scans with a DDA precursor m/z within the ranges
+   */
+  @NotNull
+  public List<Scan> getMs2Scans(@NotNull Range<Double> precursorMzRange,
+      @NotNull Range<Float> rtRange) {
+    final int from = precursorMzRange.hasLowerBound() ? lowerBound(ms2PrecursorMzs,
+        precursorMzRange.lowerEndpoint()) : 0;
+    final int to = precursorMzRange.hasUpperBound() ? upperBound(ms2PrecursorMzs,
+        precursorMzRange.upperEndpoint()) : ms2PrecursorMzs.length;
+
+    final IntArrayList matches = new IntArrayList();
+    for (int i = from; i < to; i++) {
+      final int index = ms2Indices[i];
+      if (precursorMzRange.contains(ms2PrecursorMzs[i]) && rtRange.contains(rts[index])) {
+        matches.add(index);
+      }
+    }
+    final int[] result = matches.toIntArray();
+    Arrays.sort(result);
+    return toScans(result);
+  }
+
+  private List<Scan> toScans(int[] indices) {
+    final List<Scan> result = new ArrayList<>(indices.length);
+    for (int index : indices) {
+      result.add(scans.get(index));
+    }
+    return result;
+  }
+
+  private static int[] sortedCopy(int[] indices) {
+    final int[] copy = indices.clone();
+    Arrays.sort(copy);
+    return copy;
+  }
+
+  /**
+   * @return the first index with a value >= key
+   */
+  private static int lowerBound(float[] values, float key) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the first index with a value > key
+   */
+  private static int upperBound(float[] values, float key) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] <= key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int lowerBound(double[] values, double key) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static int upperBound(double[] values, double key) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] <= key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Insertion ordered map that replaces its content on every change. Reads never lock and see a
+ * consistent snapshot, so rows and features may be created in parallel while another thread
+ * registers a new type. Only suited for maps that are read often and changed rarely, like the type
+ * maps of a {@link ModularFeatureList}.
+ */
+class CopyOnWriteLinkedMap<K, V> extends AbstractMap<K, V> {
+
+  private volatile Map<K, V> map = Collections.emptyMap();
+
+  @Override
+  public int size() {
+    return map.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return map.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return map.containsKey(key);
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    return map.containsValue(value);
+  }
+
+  @Override
+  public V get(Object key) {
+    return map.get(key);
+  }
+
+  @Override
+  public synchronized V put(K key, V value) {
+    final Map<K, V> copy = new LinkedHashMap<>(map);
+    final V old = copy.put(key, value);
+    map = copy;
+    return old;
+  }
+
+  @Override
+  public synchronized void putAll(@NotNull Map<? extends K, ? extends V> m) {
+    final Map<K, V> copy = new LinkedHashMap<>(map);
+    copy.putAll(m);
+    map = copy;
+  }
+
+  @Override
+  public synchronized V remove(Object key) {
+    if (!map.containsKey(key)) {
+      return null;
+    }
+    final Map<K, V> copy = new LinkedHashMap<>(map);
+    final V old = copy.remove(key);
+    map = copy;
+    return old;
+  }
+
+  @Override
+  public synchronized void clear() {
+    map = Collections.emptyMap();
+  }
+
+  /**
+   * @return a view that iterates over the snapshot at the time the iterator was created. Removing
+   * by the iterator removes the key from this map.
+   */
+  @NotNull
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<>() {
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        final Iterator<Entry<K, V>> it = Collections.unmodifiableMap(map).entrySet().iterator();
+        return new Iterator<>() {
+          private Entry<K, V> last;
+
+          @Override
+          public boolean hasNext() {
+            return it.hasNext();
+          }
+
+          @Override
+          public Entry<K, V> next() {
+            last = it.next();
+            return last;
+          }
+
+          @Override
+          public void remove() {
+            if (last == null) {
+              throw new IllegalStateException();
+            }
+            CopyOnWriteLinkedMap.this.remove(last.getKey());
+            last = null;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return map.size();
+      }
+    };
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import io.github.mzmine.datamodel.features.types.DataType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Collects the new rows of a {@link ModularFeatureList} and adds them to the list in one step by
+ * {@link #build()}. Until then, the rows are not part of the observable row list, so no change
+ * events are fired and the rows and features may be created in parallel by {@link #addRows(List,
+ * RowFactory, boolean, BooleanSupplier)}.
+ * <p>
+ * Creating rows and features only reads the type and listener maps of the feature list, as long
+ * as all types are already registered. Types are registered by {@link #addRowTypes(DataType[])} and
+ * {@link #addFeatureTypes(DataType[])} or by the first row of each parallel batch, which is created
+ * on the calling thread. The maps are copy-on-write, so reads stay safe if a later row of a parallel
+ * batch still registers a new type, but every such registration copies the map.
+ */
+public class FeatureListBuilder {
+
+  private final ModularFeatureList flist;
+  private final List<FeatureListRow> rows = new ArrayList<>();
+  private int nextId;
+
+  /**
+   * @param flist   the feature list the rows are created for
+   * @param firstId the id of the first row created by this builder
+   */
+  public FeatureListBuilder(@NotNull ModularFeatureList flist, int firstId) {
+    this.flist = flist;
+    this.nextId = firstId;
+  }
+
+  @NotNull
+  public ModularFeatureList getFeatureList() {
+    return flist;
+  }
+
+  /**
+   * Registers row types once before the rows are created.
+   */
+  public FeatureListBuilder addRowTypes(@NotNull DataType<?>... types) {
+    flist.addRowType(types);
+    return this;
+  }
+
+  /**
+   * Registers feature types once before the features are created.
+   */
+  public FeatureListBuilder addFeatureTypes(@NotNull DataType<?>... types) {
+    flist.addFeatureType(types);
+    return this;
+  }
+
+  /**
+   * @return the next row id. Every call increments the id.
+   */
+  public int nextId() {
+    return nextId++;
+  }
+
+  /**
+   * Creates a new row with the next id for a single feature.
+   *
+   * @param feature a feature of the feature list of this builder
+   * @return the new row
+   */
+  @NotNull
+  public ModularFeatureListRow addRow(@NotNull ModularFeature feature) {
+    final ModularFeatureListRow row = new ModularFeatureListRow(flist, nextId(), feature);
+    rows.add(row);
+    return row;
+  }
+
+  /**
+   * @param row a row of the feature list of this builder
+   */
+  public void addRow(@NotNull FeatureListRow row) {
+    rows.add(row);
+  }
+
+  /**
+   * Creates one row for every source. Each source gets its own id, starting at the next id of this
+   * builder. The order of the rows is the order of the sources.
+   *
+   * @param sources    the sources of the new rows
+   * @param factory    creates a row with the given id or returns null to skip the source. Must be
+   *                   thread safe if the rows are created in parallel.
+   * @param parallel   true to create all rows after the first one in parallel
+   * @param isCanceled stops the creation of further rows
+   * @return the number of added rows
+   */
+  public <T> int addRows(@NotNull List<T> sources, @NotNull RowFactory<T> factory,
+      boolean parallel, @NotNull BooleanSupplier isCanceled) {
+    if (sources.isEmpty()) {
+      return 0;
+    }
+    final int firstId = nextId;
+    nextId += sources.size();
+
+    final FeatureListRow[] created = new FeatureListRow[sources.size()];
+    // the first row registers all types on the calling thread, the others only read the type maps
+    int first = 0;
+    while (first < created.length && !isCanceled.getAsBoolean()) {
+      created[first] = factory.create(sources.get(first), firstId + first);
+      first++;
+      if (created[first - 1] != null) {
+        break;
+      }
+    }
+    IntStream indices = IntStream.range(first, sources.size());
+    if (parallel) {
+      indices = indices.parallel();
+    }
+    indices.forEach(i -> {
+      if (!isCanceled.getAsBoolean()) {
+        created[i] = factory.create(sources.get(i), firstId + i);
+      }
+    });
+
+    final int before = rows.size();
+    Arrays.stream(created).filter(Objects::nonNull).forEach(rows::add);
+    return rows.size() - before;
+  }
+
+  /**
+   * @return the number of rows that were not added to the feature list yet
+   */
+  public int getNumberOfRows() {
+    return rows.size();
+  }
+
+  /**
+   * Adds all collected rows to the feature list in one step.
+   *
+   * @return the feature list
+   */
+  @NotNull
+  public ModularFeatureList build() {
+    flist.addRows(rows);
+    rows.clear();
+    return flist;
+  }
+
+  /**
+   * Creates a row of the feature list of a {@link FeatureListBuilder}.
+   */
+  @FunctionalInterface
+  public interface RowFactory<T> {
+
+    /**
+     * @param source the source of the row
+     * @param id     the id of the new row
+     * @return the new row or null, if no row shall be created for this source
+     */
+    @Nullable
+    FeatureListRow create(@NotNull T source, int id);
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.features;
+
+import com.google.common.collect.Range;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable index over the rows of a feature list. The rows are sorted by their average m/z and
+ * the m/z, rt and mobility values are cached in primitive arrays, so rows within m/z, rt and
+ * mobility ranges are found by a binary search for the m/z and a scan over the m/z window only.
+ * Rows without an m/z or rt are not part of the spatial index. The index is created by {@link
+ * ModularFeatureList} on demand and replaced after the rows or their m/z, rt or mobility values
+ * changed.
+ */
+final class FeatureListRowIndex {
+
+  private final FeatureListRow[] rows;
+  private final double[] mzs;
+  private final float[] rts;
+  /**
+   * NaN, if a row does not have a mobility.
+   */
+  private final float[] mobilities;
+  /**
+   * Index of the row in the feature list.
+   */
+  private final int[] positions;
+  private final Reference2IntOpenHashMap<FeatureListRow> rowPositions;
+
+  FeatureListRowIndex(@NotNull final List<FeatureListRow> featureListRows) {
+    final int numRows = featureListRows.size();
+    rowPositions = new Reference2IntOpenHashMap<>(numRows);
+    rowPositions.defaultReturnValue(-1);
+
+    final List<Integer> indexed = new ArrayList<>(numRows);
+    final double[] allMzs = new double[numRows];
+    for (int i = 0; i < numRows; i++) {
+      final FeatureListRow row = featureListRows.get(i);
+      rowPositions.putIfAbsent(row, i);
+      final Double mz = row.getAverageMZ();
+      if (mz != null && row.getAverageRT() != null) {
+        allMzs[i] = mz;
+        indexed.add(i);
+      }
+    }
+    // stable sort, the order of rows with the same m/z is kept
+    indexed.sort(Comparator.comparingDouble(i -> allMzs[i]));
+
+    final int size = indexed.size();
+    rows = new FeatureListRow[size];
+    mzs = new double[size];
+    rts = new float[size];
+    mobilities = new float[size];
+    positions = new int[size];
+    for (int i = 0; i < size; i++) {
+      final int position = indexed.get(i);
+      final FeatureListRow row = featureListRows.get(position);
+      rows[i] = row;
+      positions[i] = position;
+      mzs[i] = allMzs[position];
+      rts[i] = row.getAverageRT();
+      final Float mobility = row.getAverageMobility();
+      mobilities[i] = mobility != null ? mobility : Float.NaN;
+    }
+  }
+
+  /**
+   * @return the index of the row in the feature list or -1 if the row is not in the feature list.
+   */
+  int getPosition(@NotNull final FeatureListRow row) {
+    return rowPositions.getInt(row);
+  }
+
+  /**
+   * @param mzRange       the m/z range.
+   * @param rtRange       the rt range.
+   * @param mobilityRange the mobility range or null, if the mobility shall not be checked. Rows
+   *                      without a mobility are always within the mobility range.
+   * @param listOrder     true to sort the result in the order of the feature list, false to sort
+   *                      by m/z.
+   * @return all rows within the given ranges.
+   */
+  @NotNull
+  List<FeatureListRow> getRows(@NotNull final Range<Double> mzRange,
+      @NotNull final Range<Float> rtRange, @Nullable final Range<Float> mobilityRange,
+      final boolean listOrder) {
+    final int[] matches = findRows(mzRange, rtRange, mobilityRange);
+    final List<FeatureListRow> result = new ArrayList<>(matches.length);
+    if (listOrder) {
+      // sort by the position in the list (upper 32 bits), keep the index (lower 32 bits)
+      final long[] keys = new long[matches.length];
+      for (int i = 0; i < matches.length; i++) {
+        keys[i] = ((long) positions[matches[i]] << 32) | matches[i];
+      }
+      Arrays.sort(keys);
+      for (long key : keys) {
+        result.add(rows[(int) key]);
+      }
+      return result;
+    }
+
+    for (int match : matches) {
+      result.add(rows[match]);
+    }
+    return result;
+  }
+
+  /**
+   * Finds the k rows that are closest to the given values within the tolerance ranges. The
+   * distance is the euclidean distance of the m/z, rt and mobility differences, each normalised to
+   * the half width of its tolerance range.
+   *
+   * @param mobility      the mobility or null, if the mobility shall not be considered.
+   * @param mobilityRange the mobility tolerance range or null, if the mobility shall not be
+   *                      checked.
+   * @return at most k rows, sorted by increasing distance.
+   */
+  @NotNull
+  List<FeatureListRow> getNearestRows(final double mz, final float rt,
+      @Nullable final Float mobility, @NotNull final Range<Double> mzRange,
+      @NotNull final Range<Float> rtRange, @Nullable final Range<Float> mobilityRange,
+      final int k) {
+    final int[] matches = findRows(mzRange, rtRange, mobilityRange);
+    final double mzScale = halfWidth(mzRange);
+    final double rtScale = halfWidth(rtRange);
+    final double mobilityScale = mobilityRange != null ? halfWidth(mobilityRange) : 0d;
+
+    // distances and order only over the candidates of the m/z window
+    final double[] distances = new double[matches.length];
+    final int[] order = new int[matches.length];
+    for (int i = 0; i < matches.length; i++) {
+      final int match = matches[i];
+      double distance = square((mzs[match] - mz) / mzScale) + square((rts[match] - rt) / rtScale);
+      if (mobility != null && mobilityScale > 0 && !Float.isNaN(mobilities[match])) {
+        distance += square((mobilities[match] - mobility) / mobilityScale);
+      }
+      distances[i] = distance;
+      order[i] = i;
+    }
+    // stable, rows with the same distance stay sorted by m/z
+    IntArrays.mergeSort(order, (a, b) -> Double.compare(distances[a], distances[b]));
+
+    final int size = Math.min(k, order.length);
+    final List<FeatureListRow> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(rows[matches[order[i]]]);
+    }
+    return result;
+  }
+
+  /**
+   * @return indices of the matching rows in the sorted arrays, ascending.
+   */
+  private int[] findRows(@NotNull final Range<Double> mzRange,
+      @NotNull final Range<Float> rtRange, @Nullable final Range<Float> mobilityRange) {
+    final int start = mzRange.hasLowerBound() ? lowerBound(mzRange.lowerEndpoint()) : 0;
+    final double upper =
+        mzRange.hasUpperBound() ? mzRange.upperEndpoint() : Double.POSITIVE_INFINITY;
+
+    int numMatches = 0;
+    int[] matches = new int[16];
+    for (int i = start; i < rows.length && mzs[i] <= upper; i++) {
+      if (mzRange.contains(mzs[i]) && rtRange.contains(rts[i]) && isWithinMobilityRange(i,
+          mobilityRange)) {
+        if (numMatches == matches.length) {
+          matches = Arrays.copyOf(matches, numMatches * 2);
+        }
+        matches[numMatches++] = i;
+      }
+    }
+    return Arrays.copyOf(matches, numMatches);
+  }
+
+  private boolean isWithinMobilityRange(final int index,
+      @Nullable final Range<Float> mobilityRange) {
+    return mobilityRange == null || Float.isNaN(mobilities[index]) || mobilityRange
+        .contains(mobilities[index]);
+  }
+
+  /**
+   * @return the index of the first row with an m/z >= the given m/z.
+   */
+  private int lowerBound(final double mz) {
+    int low = 0;
+    int high = mzs.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (mzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  private static <T extends Number & Comparable<? super T>> double halfWidth(Range<T> range) {
+    if (!range.hasLowerBound() || !range.hasUpperBound()) {
+      return Double.POSITIVE_INFINITY;
+    }
+    final double halfWidth =
+        (range.upperEndpoint().doubleValue() - range.lowerEndpoint().doubleValue()) / 2d;
+    // avoid division by zero for singleton ranges
+    return halfWidth > 0 ? halfWidth : Double.MIN_NORMAL;
+  }
+
+  private static double square(final double value) {
+    return value * value;
+  }
+}
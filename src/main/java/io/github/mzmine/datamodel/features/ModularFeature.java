@@ -65,10 +65,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import javafx.collections.FXCollections;
-import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableMap;
-import javafx.scene.Node;
-import javafx.scene.layout.Pane;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -80,8 +77,6 @@ import org.jetbrains.annotations.Nullable;
 public class ModularFeature implements Feature, ModularDataModel {
 
   private final ObservableMap<DataType, Object> map = FXCollections.observableMap(new HashMap<>());
-  // buffert col charts and nodes
-  private final Map<String, Node> buffertColCharts = new HashMap<>();
   @NotNull
   private ModularFeatureList flist;
 
@@ -89,18 +84,7 @@ public class ModularFeature implements Feature, ModularDataModel {
 
   public ModularFeature(@NotNull ModularFeatureList flist) {
     this.flist = flist;
-
-    // register listener to types map to automatically generate default properties for new DataTypes
-    flist.getFeatureTypes().addListener(
-        (MapChangeListener<? super Class<? extends DataType>, ? super DataType>) change -> {
-          if (change.wasAdded()) {
-            // do nothing for now
-          } else if (change.wasRemoved()) {
-            // remove type columns to maps
-            DataType type = change.getValueRemoved();
-            this.remove((Class) type.getClass());
-          }
-        });
+    // values of removed types are removed by the feature list
   }
 
   // NOT TESTED
@@ -258,24 +242,6 @@ public class ModularFeature implements Feature, ModularDataModel {
     }
   }
 
-  public Node getBufferedColChart(String colname) {
-    return buffertColCharts.get(colname);
-  }
-
-  public void addBufferedColChart(String colname, Node node) {
-    buffertColCharts.put(colname, node);
-  }
-
-  public void clearBufferedColCharts() {
-    buffertColCharts.forEach((k, v) -> {
-      if (v instanceof Pane p && p.getParent() instanceof Pane pane) {
-        // remove the node from the parent so there is no more reference and it can be GC'ed
-        pane.getChildren().remove(v);
-      }
-    });
-    buffertColCharts.clear();
-  }
-
   @Override
   public <T> boolean set(Class<? extends DataType<T>> tclass, T value) {
     // type in defined columns?
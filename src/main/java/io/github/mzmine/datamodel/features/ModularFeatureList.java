@@ -31,9 +31,15 @@ import io.github.mzmine.datamodel.features.types.DataType;
 import io.github.mzmine.datamodel.features.types.FeatureDataType;
 import io.github.mzmine.datamodel.features.types.annotations.ManualAnnotationType;
 import io.github.mzmine.datamodel.features.types.numbers.IDType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.MobilityType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.io.projectload.CachedIMSFrame;
 import io.github.mzmine.modules.io.projectload.CachedIMSRawDataFile;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
 import io.github.mzmine.project.impl.ProjectChangeEvent;
 import io.github.mzmine.util.CorrelationGroupingUtils;
 import io.github.mzmine.util.DataTypeUtils;
@@ -44,20 +50,25 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.DoubleSummaryStatistics;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
 import org.jetbrains.annotations.NotNull;
@@ -76,20 +87,23 @@ public class ModularFeatureList implements FeatureList {
   @Nullable
   private final MemoryMapStorage memoryMapStorage;
   // bindings for values
-  private final Map<DataType<?>, List<DataTypeValueChangeListener<?>>> featureTypeListeners = new HashMap<>();
-  private final Map<DataType<?>, List<DataTypeValueChangeListener<?>>> rowTypeListeners = new HashMap<>();
+  // concurrent maps of copy-on-write lists, read by every value change of rows and features that
+  // may be created in parallel, see FeatureListBuilder
+  private final Map<DataType<?>, List<DataTypeValueChangeListener<?>>> featureTypeListeners = new ConcurrentHashMap<>();
+  private final Map<DataType<?>, List<DataTypeValueChangeListener<?>>> rowTypeListeners = new ConcurrentHashMap<>();
 
   // unmodifiable list
   private final ObservableList<RawDataFile> dataFiles;
   private final ObservableMap<RawDataFile, List<? extends Scan>> selectedScans;
   // columns: summary of all
-  // using LinkedHashMaps to save columns order according to the constructor
+  // insertion ordered to save columns order according to the constructor. Copy-on-write, so the
+  // maps are safe to read while rows are created in parallel
   // TODO do we need two maps? We could have ObservableMap of LinkedHashMap
   private final ObservableMap<Class<? extends DataType>, DataType> rowTypes = FXCollections.observableMap(
-      new LinkedHashMap<>());
+      new CopyOnWriteLinkedMap<>());
   // TODO do we need two maps? We could have ObservableMap of LinkedHashMap
   private final ObservableMap<Class<? extends DataType>, DataType> featureTypes = FXCollections.observableMap(
-      new LinkedHashMap<>());
+      new CopyOnWriteLinkedMap<>());
   private final ObservableList<FeatureListRow> featureListRows;
   private final ObservableList<FeatureListAppliedMethod> descriptionOfAppliedTasks;
   // a map that stores row-2-row relationship maps for MS1, MS2, and other relationships
@@ -100,6 +114,18 @@ public class ModularFeatureList implements FeatureList {
   // grouping
   private List<RowGroup> groups;
 
+  // row indices, kept consistent by listeners on the rows and their values
+  private final Map<Integer, FeatureListRow> rowsById = new ConcurrentHashMap<>();
+  /**
+   * Incremented when the rows or their m/z, rt or mobility change. An index is only valid for the
+   * count it was created at.
+   */
+  private final AtomicLong rowModCount = new AtomicLong();
+  /**
+   * Created on demand, outdated when {@link #rowModCount} changed since.
+   */
+  private volatile VersionedRowIndex rowIndex = null;
+
 
   public ModularFeatureList(String name, @Nullable MemoryMapStorage storage,
       @NotNull RawDataFile... dataFiles) {
@@ -120,6 +146,8 @@ public class ModularFeatureList implements FeatureList {
     addRowType(new IDType());
     addRowType(new ManualAnnotationType());
     addDefaultListeners();
+    addRowIndexListeners();
+    addTypeRemovalListeners();
   }
 
   private void addDefaultListeners() {
@@ -129,6 +157,87 @@ public class ModularFeatureList implements FeatureList {
     });
   }
 
+  /**
+   * Removes the values of removed types from all rows and features. One listener for the whole
+   * feature list, so rows and features can be created without modifying the observable type maps.
+   */
+  private void addTypeRemovalListeners() {
+    rowTypes.addListener(
+        (MapChangeListener<? super Class<? extends DataType>, ? super DataType>) change -> {
+          if (change.wasRemoved()) {
+            final Class typeClass = change.getValueRemoved().getClass();
+            modularStream().forEach(row -> row.remove(typeClass));
+          }
+        });
+    featureTypes.addListener(
+        (MapChangeListener<? super Class<? extends DataType>, ? super DataType>) change -> {
+          if (change.wasRemoved()) {
+            final Class typeClass = change.getValueRemoved().getClass();
+            streamFeatures().forEach(feature -> feature.remove(typeClass));
+          }
+        });
+  }
+
+  /**
+   * Keeps the ID map and the m/z, rt and mobility index consistent with the rows. The ID map is
+   * updated incrementally, the spatial index is invalidated and recreated on the next query.
+   */
+  private void addRowIndexListeners() {
+    featureListRows.addListener((ListChangeListener<FeatureListRow>) change -> {
+      // also permutations, they change the positions of the rows
+      rowModCount.incrementAndGet();
+      while (change.next()) {
+        for (FeatureListRow removed : change.getRemoved()) {
+          rowsById.remove(removed.getID(), removed);
+        }
+        for (FeatureListRow added : change.getAddedSubList()) {
+          rowsById.putIfAbsent(added.getID(), added);
+        }
+      }
+    });
+
+    addRowTypeListener(new IDType(), (dataModel, type, oldValue, newValue) -> {
+      final FeatureListRow row = (FeatureListRow) dataModel;
+      // only rows of this list are mapped
+      if (rowsById.remove(oldValue != null ? oldValue : -1, row)) {
+        rowsById.putIfAbsent(newValue != null ? (Integer) newValue : -1, row);
+      }
+    });
+    final DataTypeValueChangeListener<?> invalidateIndex = (dataModel, type, oldValue, newValue) -> rowModCount.incrementAndGet();
+    addRowTypeListener(new MZType(), invalidateIndex);
+    addRowTypeListener(new RTType(), invalidateIndex);
+    addRowTypeListener(new MobilityType(), invalidateIndex);
+  }
+
+  /**
+   * @return the current index of the rows. Created if the rows changed since the last call.
+   */
+  @NotNull
+  private FeatureListRowIndex getRowIndex() {
+    VersionedRowIndex index = rowIndex;
+    if (index == null || index.modCount() != rowModCount.get()) {
+      synchronized (featureListRows) {
+        index = rowIndex;
+        // rows may change while the index is created, then it is created again
+        while (index == null || index.modCount() != rowModCount.get()) {
+          final long modCount = rowModCount.get();
+          index = new VersionedRowIndex(new FeatureListRowIndex(featureListRows), modCount);
+          if (modCount == rowModCount.get()) {
+            rowIndex = index;
+          }
+        }
+      }
+    }
+    return index.index();
+  }
+
+  /**
+   * A row index and the {@link #rowModCount} at the start of its creation
+   */
+  private record VersionedRowIndex(FeatureListRowIndex index, long modCount) {
+
+  }
+
   @Override
   public @NotNull String getName() {
     return nameProperty;
@@ -223,7 +332,7 @@ public class ModularFeatureList implements FeatureList {
   public void addFeatureTypeListener(DataType featureType, DataTypeValueChangeListener listener) {
     featureTypeListeners.compute(featureType, (key, list) -> {
       if (list == null) {
-        list = new ArrayList<>();
+        list = new CopyOnWriteArrayList<>();
       }
       list.add(listener);
       return list;
@@ -240,7 +349,7 @@ public class ModularFeatureList implements FeatureList {
   public void addRowTypeListener(DataType rowType, DataTypeValueChangeListener listener) {
     rowTypeListeners.compute(rowType, (key, list) -> {
       if (list == null) {
-        list = new ArrayList<>();
+        list = new CopyOnWriteArrayList<>();
       }
       list.add(listener);
       return list;
@@ -304,7 +413,7 @@ public class ModularFeatureList implements FeatureList {
   }
 
   @Override
-  public void addFeatureType(Collection<DataType> types) {
+  public synchronized void addFeatureType(Collection<DataType> types) {
     for (DataType<?> type : types) {
       if (!featureTypes.containsKey(type.getClass())) {
         // all {@link ModularFeature} will automatically add a default data map
@@ -321,7 +430,7 @@ public class ModularFeatureList implements FeatureList {
   }
 
   @Override
-  public void addRowType(Collection<DataType> types) {
+  public synchronized void addRowType(Collection<DataType> types) {
     for (DataType<?> type : types) {
       if (!rowTypes.containsKey(type.getClass())) {
         // add row type - all rows will automatically generate a default property for this type in
@@ -480,13 +589,49 @@ public class ModularFeatureList implements FeatureList {
     return getRowsInsideScanAndMZRange(rtRange, all);
   }
 
+  /**
+   * @return the rows in the order of this feature list. Rows without m/z or rt are not included.
+   */
   @Override
   public List<FeatureListRow> getRowsInsideScanAndMZRange(Range<Float> rtRange,
       Range<Double> mzRange) {
-    // TODO handle if mz or rt is not present
-    return modularStream().filter(
-            row -> rtRange.contains(row.getAverageRT()) && mzRange.contains(row.getAverageMZ()))
-        .collect(Collectors.toCollection(FXCollections::observableArrayList));
+    return FXCollections.observableArrayList(
+        getRowIndex().getRows(mzRange, rtRange, null, true));
+  }
+
+  /**
+   * Finds rows by the built-in m/z, rt and mobility index of this feature list. Rows without m/z or
+   * rt are not included.
+   *
+   * @param mzRange       the m/z range.
+   * @param rtRange       the rt range.
+   * @param mobilityRange the mobility range or null, if the mobility shall not be checked. Rows
+   *                      without a mobility are always within the mobility range.
+   * @return all rows within the given ranges, sorted by ascending m/z.
+   */
+  @NotNull
+  public List<FeatureListRow> getRowsInside(@NotNull Range<Double> mzRange,
+      @NotNull Range<Float> rtRange, @Nullable Range<Float> mobilityRange) {
+    return getRowIndex().getRows(mzRange, rtRange, mobilityRange, false);
+  }
+
+  /**
+   * Finds the k rows closest to the given values within the tolerances. The distance is the
+   * euclidean distance of the m/z, rt and mobility differences, each relative to its tolerance.
+   *
+   * @param mobility    the mobility or null, if the mobility shall not be considered.
+   * @param mobilityTol the mobility tolerance or null, if the mobility shall not be checked.
+   * @param k           the maximum number of rows.
+   * @return at most k rows sorted by increasing distance.
+   */
+  @NotNull
+  public List<FeatureListRow> getNearestRows(double mz, float rt, @Nullable Float mobility,
+      @NotNull MZTolerance mzTol, @NotNull RTTolerance rtTol,
+      @Nullable MobilityTolerance mobilityTol, int k) {
+    final Range<Float> mobilityRange =
+        mobility != null && mobilityTol != null ? mobilityTol.getToleranceRange(mobility) : null;
+    return getRowIndex().getNearestRows(mz, rt, mobility, mzTol.getToleranceRange(mz),
+        rtTol.getToleranceRange(rt), mobilityRange, k);
   }
 
   @Override
@@ -512,6 +657,38 @@ public class ModularFeatureList implements FeatureList {
     // ranges
   }
 
+  /**
+   * Adds all rows in one step. In contrast to adding them one by one with {@link
+   * #addRow(FeatureListRow)}, the raw data files are only checked once per source feature list and
+   * the listeners of the row list are notified once. See {@link FeatureListBuilder}.
+   *
+   * @param rows the rows to add
+   */
+  public void addRows(@NotNull Collection<? extends FeatureListRow> rows) {
+    final Set<RawDataFile> myFiles = new HashSet<>(getRawDataFiles());
+    final Set<FeatureList> checkedLists = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (FeatureListRow row : rows) {
+      if (!(row instanceof ModularFeatureListRow modularRow)) {
+        throw new IllegalArgumentException(
+            "Can not add non-modular feature list row to modular feature list");
+      }
+      // the raw data files of a row are the ones of its feature list
+      if (checkedLists.add(modularRow.getFeatureList())) {
+        for (RawDataFile testFile : modularRow.getRawDataFiles()) {
+          if (!myFiles.contains(testFile)) {
+            throw (new IllegalArgumentException(
+                "Data file " + testFile + " is not in this feature list"));
+          }
+        }
+      }
+    }
+
+    featureListRows.addAll(rows);
+    for (FeatureListRow row : rows) {
+      applyRowBindings(row);
+    }
+  }
+
   /**
    * Returns all features overlapping with a retention time range
    *
@@ -551,8 +728,6 @@ public class ModularFeatureList implements FeatureList {
    */
   @Override
   public void removeRow(FeatureListRow row) {
-    // remove buffered charts, otherwise the reference is kept alive. What references the row, though?
-    ((ModularFeatureListRow) row).clearBufferedColCharts();
     featureListRows.remove(row);
   }
 
@@ -569,9 +744,6 @@ public class ModularFeatureList implements FeatureList {
    */
   @Override
   public void removeRow(int rowNum, FeatureListRow row) {
-    removeRow(featureListRows.get(rowNum));
-    // remove buffered charts, otherwise the reference is kept alive. What references the row, though?
-    ((ModularFeatureListRow) row).clearBufferedColCharts();
     featureListRows.remove(rowNum);
   }
 
@@ -609,12 +781,8 @@ public class ModularFeatureList implements FeatureList {
    */
   @Override
   public int getFeatureListRowNum(Feature feature) {
-    for (int i = 0; i < featureListRows.size(); i++) {
-      if (featureListRows.get(i).hasFeature(feature)) {
-        return i;
-      }
-    }
-    return -1;
+    final FeatureListRow row = getFeatureRow(feature);
+    return row != null ? getRowIndex().getPosition(row) : -1;
   }
 
   /**
@@ -631,23 +799,26 @@ public class ModularFeatureList implements FeatureList {
     return dataFiles.contains(hasFile);
   }
 
+  /**
+   * Uses the row reference of the feature.
+   */
   @Override
   public FeatureListRow getFeatureRow(Feature feature) {
-    return stream().filter(row -> row.hasFeature(feature)).findFirst().orElse(null);
+    final FeatureListRow row = feature.getRow();
+    if (row == null || row.getFeatureList() != this || !row.hasFeature(feature)
+        || getRowIndex().getPosition(row) == -1) {
+      return null;
+    }
+    return row;
   }
 
+  /**
+   * Row IDs are expected to be unique. If multiple rows share an ID, the row that was added first
+   * is returned.
+   */
   @Override
   public FeatureListRow findRowByID(int id) {
-    List<FeatureListRow> featureListRows = stream().filter(r -> r.getID() == id).toList();
-    if (featureListRows.isEmpty()) {
-      return null;
-    }
-
-    if (featureListRows.size() > 1) {
-      logger.info("more than one row with id " + id);
-    }
-
-    return featureListRows.get(0);
+    return rowsById.get(id);
   }
 
   @Override
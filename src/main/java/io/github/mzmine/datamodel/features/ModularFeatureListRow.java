@@ -69,11 +69,8 @@ import java.util.Objects;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 import javafx.collections.FXCollections;
-import javafx.collections.MapChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.ObservableMap;
-import javafx.scene.Node;
-import javafx.scene.layout.Pane;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -97,8 +94,6 @@ public class ModularFeatureListRow implements FeatureListRow {
   private final ObservableMap<DataType, Object> map =
       FXCollections.observableMap(new HashMap<>());
   private final Map<RawDataFile, ModularFeature> features;
-  // buffert col charts and nodes
-  private final Map<String, Node> buffertColCharts = new HashMap<>();
   @NotNull
   private ModularFeatureList flist;
 
@@ -110,18 +105,7 @@ public class ModularFeatureListRow implements FeatureListRow {
    */
   public ModularFeatureListRow(@NotNull ModularFeatureList flist, int id) {
     this.flist = flist;
-
-    // register listener to types map to automatically generate default properties for new DataTypes
-    flist.getRowTypes().addListener(
-        (MapChangeListener<? super Class<? extends DataType>, ? super DataType>) change -> {
-          if (change.wasAdded()) {
-            // do nothing for now
-          } else if (change.wasRemoved()) {
-            // remove type columns to maps
-            DataType type = change.getValueRemoved();
-            this.remove((Class) type.getClass());
-          }
-        });
+    // values of removed types are removed by the feature list
 
     // features
     List<RawDataFile> raws = flist.getRawDataFiles();
@@ -373,24 +357,6 @@ public class ModularFeatureListRow implements FeatureListRow {
     return features.containsValue(feature);
   }
 
-  public Node getBufferedColChart(String colname) {
-    return buffertColCharts.get(colname);
-  }
-
-  public void addBufferedColChart(String colname, Node node) {
-    buffertColCharts.put(colname, node);
-  }
-
-  public void clearBufferedColCharts() {
-    buffertColCharts.forEach((k, v) -> {
-      if (v instanceof Pane p && p.getParent() instanceof Pane pane) {
-        // remove the node from the parent so there is no more reference and it can be GC'ed
-        pane.getChildren().remove(v);
-      }
-    });
-    buffertColCharts.clear();
-  }
-
   /**
    * nonnull if this feature list contains this raw data file. Even if there is no feature in this
    * raw data file
@@ -21,11 +21,11 @@ package io.github.mzmine.datamodel.features.types;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.fx.GraphicalCellCache;
 import io.github.mzmine.datamodel.features.types.graphicalnodes.AreaShareChart;
 import io.github.mzmine.datamodel.features.types.modifiers.GraphicalColumType;
 import io.github.mzmine.datamodel.features.types.tasks.FeaturesGraphicalNodeTask;
 import io.github.mzmine.main.MZmineCore;
-import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import java.util.Map;
 import javafx.beans.property.MapProperty;
@@ -35,7 +35,6 @@ import javafx.beans.property.SimpleObjectProperty;
 import javafx.scene.Node;
 import javafx.scene.control.TreeTableCell;
 import javafx.scene.control.TreeTableColumn;
-import javafx.scene.layout.StackPane;
 import org.jetbrains.annotations.NotNull;
 
 public class AreaShareType extends DataType<Map<RawDataFile, ModularFeature>>
@@ -73,19 +72,12 @@ public class AreaShareType extends DataType<Map<RawDataFile, ModularFeature>>
     if (row == null)
       return null;
 
-    // get existing buffered node from row (for column name)
+    // charts are cached by the table and created off the FX thread
     // TODO listen to changes in features data
-    Node node = row.getBufferedColChart(coll.getText());
-    if (node != null)
-      return node;
-
-    StackPane pane = new StackPane();
-
-    // TODO stop task if new task is started
-    Task task = new FeaturesGraphicalNodeTask(AreaShareChart.class, pane, row, coll.getText());
-    MZmineCore.getTaskController().addTask(task, TaskPriority.NORMAL);
-
-    return pane;
+    return GraphicalCellCache.getOrCreate(cell, row, null, coll.getText(),
+        pane -> MZmineCore.getTaskController().addTask(
+            new FeaturesGraphicalNodeTask(AreaShareChart.class, pane, row, coll.getText()),
+            TaskPriority.NORMAL));
   }
 
   @Override
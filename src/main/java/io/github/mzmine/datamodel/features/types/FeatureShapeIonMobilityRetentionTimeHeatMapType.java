@@ -24,11 +24,11 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.fx.GraphicalCellCache;
 import io.github.mzmine.datamodel.features.types.graphicalnodes.FeatureShapeIonMobilityRetentionTimeHeatMapChart;
 import io.github.mzmine.datamodel.features.types.tasks.FeatureGraphicalNodeTask;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.visualization.ims_featurevisualizer.IMSFeatureVisualizerTab;
-import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import java.util.List;
 import javafx.geometry.Pos;
@@ -77,21 +77,13 @@ public class FeatureShapeIonMobilityRetentionTimeHeatMapType extends LinkedGraph
       return pane;
     }
 
-    // get existing buffered node from row (for column name)
+    // charts are cached by the table and created off the FX thread
     // TODO listen to changes in features data
-    Node node = feature.getBufferedColChart(coll.getText());
-    if (node != null) {
-      return node;
-    }
-
-    StackPane pane = new StackPane();
-
-    // TODO stop task if new task is started
-    Task task = new FeatureGraphicalNodeTask(FeatureShapeIonMobilityRetentionTimeHeatMapChart.class,
-        pane, feature, coll.getText());
-    MZmineCore.getTaskController().addTask(task, TaskPriority.NORMAL);
-
-    return pane;
+    return GraphicalCellCache.getOrCreate(cell, row, raw, coll.getText(),
+        pane -> MZmineCore.getTaskController().addTask(
+            new FeatureGraphicalNodeTask(FeatureShapeIonMobilityRetentionTimeHeatMapChart.class,
+                pane, feature, coll.getText()),
+            TaskPriority.NORMAL));
   }
 
   @Override
@@ -20,18 +20,17 @@ package io.github.mzmine.datamodel.features.types.annotations;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.types.LinkedGraphicalType;
+import io.github.mzmine.datamodel.features.types.fx.GraphicalCellCache;
 import io.github.mzmine.datamodel.features.types.graphicalnodes.LipidSpectrumChart;
 import io.github.mzmine.datamodel.features.types.tasks.FeaturesGraphicalNodeTask;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.MatchedLipid;
 import io.github.mzmine.modules.visualization.spectra.matchedlipid.MatchedLipidSpectrumTab;
-import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import java.util.List;
 import javafx.scene.Node;
 import javafx.scene.control.TreeTableCell;
 import javafx.scene.control.TreeTableColumn;
-import javafx.scene.layout.StackPane;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import org.jetbrains.annotations.NotNull;
@@ -59,20 +58,15 @@ public class LipidSpectrumType extends LinkedGraphicalType {
       return null;
     }
 
-    Node node = row.getBufferedColChart(coll.getText());
-    if (node != null) {
-      return node;
-    }
-
-    StackPane pane = new StackPane();
-
-    List<MatchedLipid> matchedLipids = row.get(LipidMatchListType.class);
-    if (matchedLipids != null && !matchedLipids.isEmpty()) {
-      Task task =
-          new FeaturesGraphicalNodeTask(LipidSpectrumChart.class, pane, row, coll.getText());
-      MZmineCore.getTaskController().addTask(task, TaskPriority.NORMAL);
-    }
-    return pane;
+    // charts are cached by the table and created off the FX thread
+    return GraphicalCellCache.getOrCreate(cell, row, null, coll.getText(), pane -> {
+      List<MatchedLipid> matchedLipids = row.get(LipidMatchListType.class);
+      if (matchedLipids != null && !matchedLipids.isEmpty()) {
+        MZmineCore.getTaskController().addTask(
+            new FeaturesGraphicalNodeTask(LipidSpectrumChart.class, pane, row, coll.getText()),
+            TaskPriority.NORMAL);
+      }
+    });
   }
 
   @Override
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.datamodel.features.types.fx;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import javafx.scene.control.TreeTableCell;
+import javafx.scene.control.TreeTableView;
+import javafx.scene.layout.StackPane;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Bounded cache of the graphical cells (charts) of a feature table, keyed by row, raw data file and
+ * column. The least recently used charts are dropped when the cache is full, so scrolling through a
+ * large feature list does not keep a chart for every row alive. Each table has its own cache, see
+ * {@link #forTable(TreeTableView)}.
+ * <p>
+ * The cached value is the pane of the cell. The chart is created off the FX thread by a task and
+ * added to the pane when it is done, so a cell that scrolls back into view while its chart is
+ * still in progress does not start a second task.
+ */
+public class GraphicalCellCache {
+
+  public static final int DEFAULT_CAPACITY = 500;
+
+  private final Map<Key, StackPane> panes;
+
+  public GraphicalCellCache(int capacity) {
+    panes = new LinkedHashMap<>(capacity + 1, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, StackPane> eldest) {
+        return size() > capacity;
+      }
+    };
+  }
+
+  /**
+   * @return the cache of the table, created on first use
+   */
+  @NotNull
+  public static GraphicalCellCache forTable(@NotNull TreeTableView<?> table) {
+    return (GraphicalCellCache) table.getProperties()
+        .computeIfAbsent(GraphicalCellCache.class, k -> new GraphicalCellCache(DEFAULT_CAPACITY));
+  }
+
+  /**
+   * Returns the cached pane of a cell or creates a new one.
+   *
+   * @param cell     the cell of the table
+   * @param row      the row of the cell
+   * @param raw      the raw data file of a feature column or null for row columns
+   * @param column   the column header
+   * @param renderer starts the creation of the chart for a new pane, e.g., by a task. Only called
+   *                 if the pane was not cached.
+   * @return the pane of the cell
+   */
+  @NotNull
+  public static StackPane getOrCreate(@NotNull TreeTableCell<ModularFeatureListRow, ?> cell,
+      @NotNull ModularFeatureListRow row, @Nullable RawDataFile raw, @NotNull String column,
+      @NotNull Consumer<StackPane> renderer) {
+    final TreeTableView<ModularFeatureListRow> table = cell.getTreeTableView();
+    if (table == null) {
+      final StackPane pane = new StackPane();
+      renderer.accept(pane);
+      return pane;
+    }
+    return forTable(table).getOrCreate(row, raw, column, renderer);
+  }
+
+  /**
+   * Returns the cached pane or creates a new one.
+   *
+   * @param row      the row of the cell
+   * @param raw      the raw data file of a feature column or null for row columns
+   * @param column   the column header
+   * @param renderer starts the creation of the chart for a new pane. Only called if the pane was
+   *                 not cached.
+   * @return the pane of the cell
+   */
+  @NotNull
+  public StackPane getOrCreate(@NotNull ModularFeatureListRow row, @Nullable RawDataFile raw,
+      @NotNull String column, @NotNull Consumer<StackPane> renderer) {
+    final Key key = new Key(row, raw, column);
+    StackPane pane;
+    synchronized (panes) {
+      pane = panes.get(key);
+      if (pane != null) {
+        return pane;
+      }
+      pane = new StackPane();
+      panes.put(key, pane);
+    }
+    renderer.accept(pane);
+    return pane;
+  }
+
+  /**
+   * Removes all charts of the rows, e.g., after the rows were removed from the feature list.
+   */
+  public void removeRows(@NotNull Collection<?> rows) {
+    final Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+    removed.addAll(rows);
+    synchronized (panes) {
+      panes.keySet().removeIf(key -> removed.contains(key.row()));
+    }
+  }
+
+  public void clear() {
+    synchronized (panes) {
+      panes.clear();
+    }
+  }
+
+  public int size() {
+    synchronized (panes) {
+      return panes.size();
+    }
+  }
+
+  /**
+   * Rows are compared by identity.
+   */
+  private record Key(@NotNull ModularFeatureListRow row, @Nullable RawDataFile raw,
+                     @NotNull String column) {
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key key && row == key.row && raw == key.raw && column.equals(
+          key.column);
+    }
+
+    @Override
+    public int hashCode() {
+      return (System.identityHashCode(row) * 31 + System.identityHashCode(raw)) * 31
+             + column.hashCode();
+    }
+  }
+}
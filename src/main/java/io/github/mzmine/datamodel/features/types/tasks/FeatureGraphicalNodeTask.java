@@ -65,8 +65,7 @@ public class FeatureGraphicalNodeTask extends AbstractTask {
 
       if (n != null) {
         final Node node = n;
-        // save chart for later
-        feature.addBufferedColChart(collHeader, n);
+        // the pane is cached by the table
         Platform.runLater(() -> pane.getChildren().add(node));
       }
 
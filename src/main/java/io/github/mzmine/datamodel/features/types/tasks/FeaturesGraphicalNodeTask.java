@@ -66,9 +66,7 @@ public class FeaturesGraphicalNodeTask extends AbstractTask {
 
       if(n != null) {
         final Node node = n;
-        // save chart for later
-        row.addBufferedColChart(collHeader, n);
-
+        // the pane is cached by the table
         Platform.runLater(() -> {
           pane.getChildren().add(node);
         });
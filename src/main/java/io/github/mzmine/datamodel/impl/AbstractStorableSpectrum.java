@@ -54,6 +54,21 @@ public abstract class AbstractStorableSpectrum extends AbstractMassSpectrum {
     setDataPoints(storage, mzValues, intensityValues);
   }
 
+  /**
+   * Creates a spectrum from already stored values, e.g., buffers that were mapped from a project
+   * file. The buffers are not copied.
+   *
+   * @param mzValues        The stored m/z values.
+   * @param intensityValues The stored intensity values.
+   */
+  protected AbstractStorableSpectrum(@NotNull DoubleBuffer mzValues,
+      @NotNull DoubleBuffer intensityValues) {
+    assert mzValues.capacity() == intensityValues.capacity();
+    this.mzValues = mzValues;
+    this.intensityValues = intensityValues;
+    updateMzRangeAndTICValues();
+  }
+
   protected synchronized void setDataPoints(@Nullable MemoryMapStorage storage,
       @Nullable double[] mzValues,
       @Nullable double[] intensityValues) {
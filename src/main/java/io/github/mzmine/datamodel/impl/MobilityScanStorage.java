@@ -91,14 +91,76 @@ public class MobilityScanStorage {
     this(storage, frame, mobilityScans);
 
     if (useAsMassList) {
-      massListBasePeakIndices = rawBasePeakIndices;
-      massListMaxNumPoints = rawMaxNumPoints;
-      massListMzValues = rawMzValues;
-      massListIntensityValues = rawIntensityValues;
-      massListStorageOffsets = rawStorageOffsets;
+      setRawDataAsMassLists();
     }
   }
 
+  /**
+   * Creates a mobility scan storage from already stored values, e.g., buffers that were mapped
+   * from a project file. The buffers are not copied.
+   *
+   * @param frame              The frame.
+   * @param rawMzValues        The m/z values of all mobility scans.
+   * @param rawIntensityValues The intensity values of all mobility scans.
+   * @param rawStorageOffsets  The start index of every mobility scan in the value buffers.
+   * @param rawBasePeakIndices The base peak index of every mobility scan (-1 if empty).
+   * @param rawMaxNumPoints    The maximum number of data points in a single mobility scan.
+   */
+  public MobilityScanStorage(@NotNull final Frame frame, @NotNull final DoubleBuffer rawMzValues,
+      @NotNull final DoubleBuffer rawIntensityValues, @NotNull final IntBuffer rawStorageOffsets,
+      @NotNull final IntBuffer rawBasePeakIndices, final int rawMaxNumPoints) {
+    assert rawMzValues.capacity() == rawIntensityValues.capacity();
+    assert rawStorageOffsets.capacity() == rawBasePeakIndices.capacity();
+    this.frame = frame;
+    this.rawMzValues = rawMzValues;
+    this.rawIntensityValues = rawIntensityValues;
+    this.rawStorageOffsets = rawStorageOffsets;
+    this.rawBasePeakIndices = rawBasePeakIndices;
+    this.rawMaxNumPoints = rawMaxNumPoints;
+  }
+
+  /**
+   * Sets mobility scan mass lists from already stored values, e.g., buffers that were mapped from a
+   * project file. The buffers are not copied.
+   *
+   * @see #MobilityScanStorage(Frame, DoubleBuffer, DoubleBuffer, IntBuffer, IntBuffer, int)
+   */
+  public void setMassLists(@NotNull final DoubleBuffer mzValues,
+      @NotNull final DoubleBuffer intensityValues, @NotNull final IntBuffer storageOffsets,
+      @NotNull final IntBuffer basePeakIndices, final int maxNumPoints) {
+    assert storageOffsets.capacity() == getNumberOfMobilityScans();
+    massListMzValues = mzValues;
+    massListIntensityValues = intensityValues;
+    massListStorageOffsets = storageOffsets;
+    massListBasePeakIndices = basePeakIndices;
+    massListMaxNumPoints = maxNumPoints;
+  }
+
+  /**
+   * Uses the raw data of the mobility scans as mass lists, e.g., for centroided data.
+   */
+  public void setRawDataAsMassLists() {
+    massListBasePeakIndices = rawBasePeakIndices;
+    massListMaxNumPoints = rawMaxNumPoints;
+    massListMzValues = rawMzValues;
+    massListIntensityValues = rawIntensityValues;
+    massListStorageOffsets = rawStorageOffsets;
+  }
+
+  /**
+   * @return true if mass lists were set for the mobility scans.
+   */
+  public boolean hasMassLists() {
+    return massListIntensityValues != null;
+  }
+
+  /**
+   * @return true if the raw data of the mobility scans is used as mass lists.
+   */
+  public boolean isRawDataUsedAsMassLists() {
+    return massListMzValues == rawMzValues && massListIntensityValues == rawIntensityValues;
+  }
+
   /**
    * @param storage                The storage for mobility scans-
    * @param massDetector           The mass detector
@@ -70,6 +70,23 @@ public class SimpleFrame extends SimpleScan implements Frame {
     this.precursorInfos = Objects.requireNonNullElse(precursorInfos, new HashSet<>(0));
   }
 
+  /**
+   * Creates a frame from already stored data, e.g., buffers that were mapped from a project file.
+   * The buffers are not copied. Mobilities and mobility scans have to be set afterwards.
+   */
+  public SimpleFrame(@NotNull RawDataFile dataFile, int scanNumber, int msLevel,
+      float retentionTime, @NotNull DoubleBuffer mzValues, @NotNull DoubleBuffer intensityValues,
+      MassSpectrumType spectrumType, PolarityType polarity, String scanDefinition,
+      @NotNull Range<Double> scanMZRange, MobilityType mobilityType,
+      @Nullable Set<PasefMsMsInfo> precursorInfos) {
+    super(dataFile, scanNumber, msLevel, retentionTime, null, mzValues, intensityValues,
+        spectrumType, polarity, scanDefinition, scanMZRange);
+
+    this.mobilityType = mobilityType;
+    mobilityRange = Range.singleton(0.d);
+    this.precursorInfos = Objects.requireNonNullElse(precursorInfos, new HashSet<>(0));
+  }
+
   public void setDataPoints(double[] newMzValues, double[] newIntensityValues) {
     super.setDataPoints(getDataFile().getMemoryMapStorage(), newMzValues, newIntensityValues);
     // update afterwards, an assertion might be triggered.
@@ -180,11 +197,56 @@ public class SimpleFrame extends SimpleScan implements Frame {
     }
     mobilityBuffer = StorageUtils.storeValuesToDoubleBuffer(getDataFile().getMemoryMapStorage(),
         mobilities);
+    if (mobilities.length == 0) {
+      // frame without mobility scans
+      mobilityRange = Range.singleton(0.d);
+      return mobilityBuffer;
+    }
     mobilityRange = Range.singleton(mobilities[0]);
     mobilityRange = mobilityRange.span(Range.singleton(mobilities[mobilities.length - 1]));
     return mobilityBuffer;
   }
 
+  /**
+   * Sets already stored mobility values, e.g., a buffer that was mapped from a project file.
+   *
+   * @param mobilities The mobilities of the mobility scans.
+   */
+  public void setMobilities(@NotNull DoubleBuffer mobilities) {
+    if (mobilityScanStorage != null && (getNumberOfMobilityScans() != mobilities.capacity())) {
+      throw new IllegalArgumentException(String.format(
+          "Number of mobility values (%d) does not match number of mobility scans (%d).",
+          mobilities.capacity(), getNumberOfMobilityScans()));
+    }
+    mobilityBuffer = mobilities;
+    if (mobilities.capacity() == 0) {
+      // frame without mobility scans
+      mobilityRange = Range.singleton(0.d);
+      return;
+    }
+    mobilityRange = Range.singleton(mobilities.get(0));
+    mobilityRange = mobilityRange.span(Range.singleton(mobilities.get(mobilities.capacity() - 1)));
+  }
+
+  /**
+   * Not to be used during processing. Sets the mobility scans of a frame that were already stored,
+   * e.g., when loading a project.
+   *
+   * @param storage The mobility scans of this frame.
+   */
+  public void setMobilityScanStorage(@NotNull MobilityScanStorage storage) {
+    if (storage.getFrame() != this) {
+      throw new IllegalArgumentException("Mobility scan storage belongs to a different frame.");
+    }
+    if (getMobilities() != null && (storage.getNumberOfMobilityScans() != getMobilities()
+        .capacity())) {
+      throw new IllegalArgumentException(String.format(
+          "Number of mobility values (%d) does not match number of mobility scans (%d).",
+          getMobilities().capacity(), storage.getNumberOfMobilityScans()));
+    }
+    mobilityScanStorage = storage;
+  }
+
   public void setPrecursorInfos(@Nullable Set<PasefMsMsInfo> precursorInfos) {
     this.precursorInfos = precursorInfos != null ? precursorInfos : new HashSet<>();
   }
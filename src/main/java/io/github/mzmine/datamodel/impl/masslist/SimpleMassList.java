@@ -23,6 +23,7 @@ import io.github.mzmine.datamodel.impl.AbstractStorableSpectrum;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import java.nio.DoubleBuffer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -36,6 +37,14 @@ public class SimpleMassList extends AbstractStorableSpectrum implements MassList
     super(storage, mzValues, intensityValues);
   }
 
+  /**
+   * Creates a mass list from already stored values, e.g., buffers that were mapped from a project
+   * file. The buffers are not copied.
+   */
+  public SimpleMassList(@NotNull DoubleBuffer mzValues, @NotNull DoubleBuffer intensityValues) {
+    super(mzValues, intensityValues);
+  }
+
   /**
    * Use mzValues and intensityValues constructor
    *
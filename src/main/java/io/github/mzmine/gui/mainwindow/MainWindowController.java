@@ -53,6 +53,7 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.taskcontrol.impl.WrappedTask;
 import io.github.mzmine.util.ExitCode;
 import io.github.mzmine.util.FeatureTableFXUtil;
+import io.github.mzmine.util.MemoryBudgetManager;
 import io.github.mzmine.util.javafx.FxIconUtil;
 import io.github.mzmine.util.javafx.groupablelistview.GroupEntity;
 import io.github.mzmine.util.javafx.groupablelistview.GroupableListView;
@@ -104,6 +105,7 @@ import javafx.scene.control.TabPane;
 import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
+import javafx.scene.control.Tooltip;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseEvent;
@@ -429,6 +431,8 @@ public class MainWindowController {
 
     // Setup the Timeline to update the memory indicator periodically
     final Timeline memoryUpdater = new Timeline();
+    final Tooltip memoryTooltip = new Tooltip();
+    memoryBarLabel.setTooltip(memoryTooltip);
     int UPDATE_FREQUENCY = 500; // ms
     memoryUpdater.setCycleCount(Animation.INDEFINITE);
     memoryUpdater.getKeyFrames().add(new KeyFrame(Duration.millis(UPDATE_FREQUENCY), e -> {
@@ -441,6 +445,7 @@ public class MainWindowController {
 
       memoryBar.setProgress(memory);
       memoryBarLabel.setText(freeMemMB + "/" + totalMemMB + " MB free");
+      memoryTooltip.setText(MemoryBudgetManager.getInstance().toString());
     }));
     memoryUpdater.play();
 
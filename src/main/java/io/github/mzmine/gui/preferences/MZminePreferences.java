@@ -28,6 +28,7 @@ import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.ComboParameter;
 import io.github.mzmine.parameters.parametertypes.HiddenParameter;
+import io.github.mzmine.parameters.parametertypes.IntegerParameter;
 import io.github.mzmine.parameters.parametertypes.OptOutParameter;
 import io.github.mzmine.parameters.parametertypes.ParameterSetParameter;
 import io.github.mzmine.parameters.parametertypes.WindowSettingsParameter;
@@ -38,6 +39,7 @@ import io.github.mzmine.parameters.parametertypes.filenames.FileSelectionType;
 import io.github.mzmine.parameters.parametertypes.paintscale.PaintScalePaletteParameter;
 import io.github.mzmine.parameters.parametertypes.submodules.OptionalModuleParameter;
 import io.github.mzmine.util.ExitCode;
+import io.github.mzmine.util.MemoryBudgetManager;
 import java.text.DecimalFormat;
 import java.util.Map;
 import javafx.application.Platform;
@@ -82,6 +84,12 @@ public class MZminePreferences extends SimpleParameterSet {
 
   public static final NumOfThreadsParameter numOfThreads = new NumOfThreadsParameter();
 
+  public static final IntegerParameter maxIoTasks = new IntegerParameter(
+      "Concurrent I/O tasks", "Maximum number of I/O tasks (e.g., data import and export) that "
+      + "run at the same time. I/O tasks do not use the threads of the option \"Number of "
+      + "concurrently running tasks\". 0 for the same number as concurrently running tasks.", 0,
+      0, null);
+
   public static final OptionalModuleParameter proxySettings = new OptionalModuleParameter(
       "Use proxy", "Use proxy for internet connection?", new ProxySettings(), false);
 
@@ -142,6 +150,12 @@ public class MZminePreferences extends SimpleParameterSet {
       KeepInMemory.ALL, KeepInMemory.MASSES_AND_FEATURES), KeepInMemory.values(),
       KeepInMemory.NONE);
 
+  public static final IntegerParameter memoryBudget = new IntegerParameter(
+      "Memory budget (MB)", "Amount of temporary data in MB that is kept in memory (RAM) before "
+      + "further data is memory mapped into temp files in the temp directory. Data that is kept "
+      + "in memory by the option \"" + memoryOption.getName() + "\" is not counted. 0 memory maps "
+      + "all data. Only applies to new data.", 0, 0, null);
+
   public static final BooleanParameter showPrecursorWindow = new BooleanParameter(
       "Show precursor windows", "Show the isolation window instead of just the precursor m/z.",
       false);
@@ -150,7 +164,8 @@ public class MZminePreferences extends SimpleParameterSet {
   public MZminePreferences() {
     super(new Parameter[]{
         // start with performance
-        numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath, sendStatistics,
+        numOfThreads, maxIoTasks, memoryOption, memoryBudget, tempDirectory, proxySettings,
+        rExecPath, sendStatistics,
         // visuals
         // number formats
         mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat, scoreFormat,
@@ -168,8 +183,8 @@ public class MZminePreferences extends SimpleParameterSet {
 
     // add groups
     dialog.addParameterGroup("General",
-        new Parameter[]{numOfThreads, memoryOption, tempDirectory, proxySettings, rExecPath,
-            sendStatistics});
+        new Parameter[]{numOfThreads, maxIoTasks, memoryOption, memoryBudget, tempDirectory,
+            proxySettings, rExecPath, sendStatistics});
     dialog.addParameterGroup("Formats",
         new Parameter[]{mzFormat, rtFormat, mobilityFormat, ccsFormat, intensityFormat, ppmFormat,
             scoreFormat, unitFormat});
@@ -193,6 +208,7 @@ public class MZminePreferences extends SimpleParameterSet {
       final KeepInMemory keepInMemory = MZmineCore.getConfiguration().getPreferences()
           .getParameter(MZminePreferences.memoryOption).getValue();
       keepInMemory.enforceToMemoryMapping();
+      applyMemoryBudget();
 
       // Repaint windows to update number formats
       // MZmineCore.getDesktop().getMainWindow().repaint();
@@ -231,6 +247,16 @@ public class MZminePreferences extends SimpleParameterSet {
   public void loadValuesFromXML(Element xmlElement) {
     super.loadValuesFromXML(xmlElement);
     updateSystemProxySettings();
+    applyMemoryBudget();
+  }
+
+  /**
+   * Sets the memory budget of all {@link io.github.mzmine.util.MemoryMapStorage}s (only applies to
+   * new data)
+   */
+  private void applyMemoryBudget() {
+    final Integer budgetMB = getParameter(memoryBudget).getValue();
+    MemoryBudgetManager.getInstance().setBudget(budgetMB == null ? 0L : budgetMB * 1024L * 1024L);
   }
 
   private void updateSystemProxySettings() {
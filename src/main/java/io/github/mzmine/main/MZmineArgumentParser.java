@@ -44,6 +44,8 @@ public class MZmineArgumentParser {
   private File tempDirectory;
   private boolean isKeepRunningAfterBatch = false;
   private KeepInMemory isKeepInMemory = null;
+  private Integer serverPort = null;
+  private int maxConcurrentJobs = 2;
 
   public void parse(String[] args) {
     Options options = new Options();
@@ -66,6 +68,17 @@ public class MZmineArgumentParser {
     keepRunning.setRequired(false);
     options.addOption(keepRunning);
 
+    Option server = new Option("s", "server", true,
+        "run as a batch server on the given local port (implies -r). Batch files are submitted "
+            + "via HTTP POST to localhost:port/jobs with Content-Type application/xml");
+    server.setRequired(false);
+    options.addOption(server);
+
+    Option jobs = new Option("j", "jobs", true,
+        "maximum number of batch jobs that the batch server (-s) runs concurrently (default 2)");
+    jobs.setRequired(false);
+    options.addOption(jobs);
+
     Option keepInMemory = new Option("m", "memory", true,
         "keep objects (scan data, features, etc) in memory. Options: none, all, features, centroids, raw, masses_features (masses_features for features and centroids)");
     keepInMemory.setRequired(false);
@@ -104,6 +117,19 @@ public class MZmineArgumentParser {
             () -> "the -r / --running argument was set to keep MZmine alive after batch is finished");
       }
 
+      String sserver = cmd.getOptionValue(server.getLongOpt());
+      if (sserver != null) {
+        serverPort = Integer.parseInt(sserver);
+        isKeepRunningAfterBatch = true;
+        logger.info(() -> "the -s / --server argument was set to run a batch server on port "
+                          + serverPort);
+      }
+
+      String sjobs = cmd.getOptionValue(jobs.getLongOpt());
+      if (sjobs != null) {
+        maxConcurrentJobs = Integer.parseInt(sjobs);
+      }
+
       String keepInData = cmd.getOptionValue(keepInMemory.getLongOpt());
       if (keepInData != null) {
         isKeepInMemory = KeepInMemory.parse(keepInData);
@@ -112,7 +138,7 @@ public class MZmineArgumentParser {
                   + " to keep objects in RAM (scan data, features, etc) which are otherwise stored in memory mapped ");
       }
 
-    } catch (ParseException e) {
+    } catch (ParseException | NumberFormatException e) {
       logger.log(Level.SEVERE, "Wrong command line arguments. " + e.getMessage(), e);
       formatter.printHelp("utility-name", options);
       System.exit(1);
@@ -148,6 +174,23 @@ public class MZmineArgumentParser {
     return isKeepRunningAfterBatch;
   }
 
+  /**
+   * Port of the local batch server
+   *
+   * @return the port if -s or --server was set as argument, otherwise null
+   */
+  @Nullable
+  public Integer getServerPort() {
+    return serverPort;
+  }
+
+  /**
+   * @return maximum number of concurrent jobs of the batch server (-j or --jobs)
+   */
+  public int getMaxConcurrentJobs() {
+    return maxConcurrentJobs;
+  }
+
   /**
    * Keep all {@link io.github.mzmine.util.MemoryMapStorage} items in RAM (e.g., scans, features,
    * masslists)
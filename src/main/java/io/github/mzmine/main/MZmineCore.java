@@ -30,6 +30,7 @@ import io.github.mzmine.main.impl.MZmineConfigurationImpl;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.modules.MZmineRunnableModule;
 import io.github.mzmine.modules.batchmode.BatchModeModule;
+import io.github.mzmine.modules.batchmode.BatchServer;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.project.ProjectManager;
 import io.github.mzmine.project.impl.IMSRawDataFileImpl;
@@ -80,6 +81,11 @@ public final class MZmineCore {
   private final Desktop defaultHeadlessDesktop = new HeadLessDesktop();
   private final List<MemoryMapStorage> storageList = Collections
       .synchronizedList(new ArrayList<>());
+  /**
+   * Storages registered on a thread are also added to the collection of that thread, see {@link
+   * #setStorageRecorder(Collection)}
+   */
+  private final ThreadLocal<Collection<MemoryMapStorage>> storageRecorder = new ThreadLocal<>();
   private final Map<Class<?>, MZmineModule> initializedModules = new Hashtable<>();
   private TaskControllerImpl taskController;
   private MZmineConfiguration configuration;
@@ -88,6 +94,8 @@ public final class MZmineCore {
   private boolean headLessMode = true;
   // batch exit code is only set if run in headless mode with batch file
   private ExitCode batchExitCode = null;
+  // only set if run in headless mode as batch server
+  private BatchServer batchServer = null;
 
   private MZmineCore() {
     init();
@@ -214,6 +222,13 @@ public final class MZmineCore {
               .runBatch(getInstance().projectManager.getCurrentProject(), batchFile, Instant.now());
         }
 
+        // accept further batches as jobs of a long running server
+        final Integer serverPort = argsParser.getServerPort();
+        if (serverPort != null) {
+          getInstance().batchServer = BatchServer.start(serverPort,
+              argsParser.getMaxConcurrentJobs());
+        }
+
         // option to keep MZmine running after the batch is finished
         // currently used to test - maybe useful to provide an API to access more data or to run other modules on demand
         if (!keepRunningInHeadless) {
@@ -234,6 +249,9 @@ public final class MZmineCore {
    * Exit MZmine (usually used in headless mode)
    */
   public static void exit() {
+    if (instance.batchServer != null) {
+      instance.batchServer.stop();
+    }
     if (instance.batchExitCode == ExitCode.OK || instance.batchExitCode == null) {
       System.exit(0);
     } else {
@@ -433,6 +451,24 @@ public final class MZmineCore {
 
   public static void registerStorage(MemoryMapStorage storage) {
     getInstance().storageList.add(storage);
+    final Collection<MemoryMapStorage> recorder = getInstance().storageRecorder.get();
+    if (recorder != null) {
+      recorder.add(storage);
+    }
+  }
+
+  /**
+   * Records all storages that are registered on the calling thread, e.g., the storages that the
+   * modules create while a batch is started step by step.
+   *
+   * @param recorder the storages are added to this collection, null to stop recording
+   */
+  public static void setStorageRecorder(@Nullable Collection<MemoryMapStorage> recorder) {
+    if (recorder == null) {
+      getInstance().storageRecorder.remove();
+    } else {
+      getInstance().storageRecorder.set(recorder);
+    }
   }
 
   public static List<MemoryMapStorage> getStorageList() {
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * A batch submitted to the {@link BatchServer}. Each job processes its batch in its own {@link
+ * MZmineProject}, the step tasks of all jobs share the threads of the task controller.
+ */
+public class BatchJob implements Runnable {
+
+  private static final Logger logger = Logger.getLogger(BatchJob.class.getName());
+
+  private final int id;
+  private final String name;
+  private final BatchTask task;
+  private final Instant submitted;
+  private volatile Instant started;
+  private volatile Instant finished;
+  /**
+   * Released after the job is finished, so that finished jobs do not keep their data, see {@link
+   * #releaseData()}
+   */
+  private volatile MZmineProject project;
+  private int numDataFiles;
+  private int numFeatureLists;
+  /**
+   * Storages of the job's data, discarded after the job is finished
+   */
+  private final Set<MemoryMapStorage> storages = new HashSet<>();
+
+  BatchJob(int id, @NotNull String name, @NotNull BatchQueue queue) {
+    this.id = id;
+    this.name = name;
+    this.project = new MZmineProjectImpl();
+    ParameterSet parameters = new BatchModeParameters();
+    parameters.getParameter(BatchModeParameters.batchQueue).setValue(queue);
+    this.submitted = Instant.now();
+    this.task = new BatchTask(project, parameters, submitted, "Batch job " + id);
+  }
+
+  @Override
+  public void run() {
+    if (task.isCanceled()) {
+      releaseData();
+      return;
+    }
+    started = Instant.now();
+    // the modules create the storages of their results when the batch starts them on this thread
+    MZmineCore.setStorageRecorder(storages);
+    try {
+      task.run();
+    } catch (Throwable e) {
+      task.setErrorMessage("Unhandled exception: " + e.getMessage());
+      task.setStatus(TaskStatus.ERROR);
+    } finally {
+      MZmineCore.setStorageRecorder(null);
+      numDataFiles = project.getDataFiles().length;
+      numFeatureLists = project.getCurrentFeatureLists().size();
+      releaseData();
+      finished = Instant.now();
+    }
+  }
+
+  /**
+   * Drops the project and the data references of the batch task and deletes the temporary files of
+   * the job's storages. The mapped buffers are released by the garbage collector.
+   */
+  private void releaseData() {
+    final MZmineProject finishedProject = project;
+    project = null;
+    task.releaseData();
+    if (finishedProject == null) {
+      return;
+    }
+
+    for (RawDataFile file : finishedProject.getDataFiles()) {
+      storages.add(file.getMemoryMapStorage());
+    }
+    for (FeatureList flist : finishedProject.getCurrentFeatureLists()) {
+      if (flist instanceof ModularFeatureList modularFeatureList) {
+        storages.add(modularFeatureList.getMemoryMapStorage());
+      }
+    }
+    storages.remove(null);
+    MZmineCore.getStorageList().removeAll(storages);
+    for (MemoryMapStorage storage : storages) {
+      try {
+        storage.discard(null);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Cannot delete the temporary files of batch job " + id, e);
+      }
+    }
+    storages.clear();
+  }
+
+  public void cancel() {
+    task.cancel();
+    if (started == null) {
+      finished = Instant.now();
+    }
+  }
+
+  public int getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return true if the job was finished, canceled or failed
+   */
+  public boolean isDone() {
+    return finished != null;
+  }
+
+  /**
+   * @return QUEUED until a job slot is free, then the status of the batch task
+   */
+  @NotNull
+  public String getStatus() {
+    if (started == null && !task.isCanceled()) {
+      return "QUEUED";
+    }
+    return task.getStatus().name();
+  }
+
+  /**
+   * @return the project of a running job, null after the job is done
+   */
+  @Nullable
+  public MZmineProject getProject() {
+    return project;
+  }
+
+  /**
+   * Progress and metrics of this job
+   */
+  public JSONObject toJson() {
+    final JSONObject json = new JSONObject();
+    json.put("id", id);
+    json.put("name", name);
+    json.put("status", getStatus());
+    json.put("progress", task.getFinishedPercentage());
+    json.put("processedSteps", task.getProcessedSteps());
+    json.put("totalSteps", task.getTotalSteps());
+    json.put("currentStep", task.getCurrentStepName());
+    json.put("submitted", submitted.toString());
+    if (started != null) {
+      json.put("started", started.toString());
+      json.put("queuedMillis", Duration.between(submitted, started).toMillis());
+      json.put("elapsedMillis",
+          Duration.between(started, finished != null ? finished : Instant.now()).toMillis());
+    }
+    if (finished != null) {
+      json.put("finished", finished.toString());
+    }
+    if (task.getErrorMessage() != null) {
+      json.put("error", task.getErrorMessage());
+    }
+
+    final MZmineProject current = project;
+    json.put("dataFiles", current != null ? current.getDataFiles().length : numDataFiles);
+    json.put("featureLists",
+        current != null ? current.getCurrentFeatureLists().size() : numFeatureLists);
+
+    final long[] stepMillis = task.getStepMillis();
+    final JSONArray steps = new JSONArray();
+    for (int i = 0; i < task.getProcessedSteps() && i < stepMillis.length; i++) {
+      steps.put(stepMillis[i]);
+    }
+    json.put("stepMillis", steps);
+    return json;
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.batchmode;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.mzmine.main.MZmineCore;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.jetbrains.annotations.NotNull;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.w3c.dom.Document;
+
+/**
+ * Local HTTP server for a long running headless MZmine (-r -s port). Accepts batch XML files as
+ * jobs and runs up to a maximum number of jobs concurrently, each in its own project. The server
+ * only binds to the loopback address. The last {@link #MAX_FINISHED_JOBS} finished jobs are kept
+ * for status requests.
+ * <p>
+ * Requests that carry an Origin header are rejected, so that web pages opened in a browser on the
+ * same machine cannot submit or cancel jobs. The batch XML is parsed without DTDs and external
+ * entities.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *   <li>POST /jobs?name=x with the batch XML as body (Content-Type: application/xml): submits a
+ *   job, returns the job</li>
+ *   <li>GET /jobs: all jobs</li>
+ *   <li>GET /jobs/{id}: progress and metrics of a job</li>
+ *   <li>GET /jobs/{id}/progress: streams the job as one JSON line per second until it is done</li>
+ *   <li>DELETE /jobs/{id}: cancels a job</li>
+ * </ul>
+ */
+public class BatchServer {
+
+  private static final Logger logger = Logger.getLogger(BatchServer.class.getName());
+  private static final long PROGRESS_INTERVAL_MILLIS = 1000;
+  /**
+   * Number of finished jobs that are kept for status requests, older finished jobs are removed
+   */
+  private static final int MAX_FINISHED_JOBS = 100;
+  private static final String XML_CONTENT_TYPE = "application/xml";
+
+  private final HttpServer server;
+  private final ExecutorService jobExecutor;
+  private final Map<Integer, BatchJob> jobs = new ConcurrentSkipListMap<>();
+  private final AtomicInteger nextJobId = new AtomicInteger(1);
+  private final DocumentBuilderFactory docBuilderFactory;
+
+  private BatchServer(int port, int maxConcurrentJobs) throws IOException {
+    try {
+      docBuilderFactory = createDocumentBuilderFactory();
+    } catch (ParserConfigurationException e) {
+      throw new IOException("Cannot create a secure XML parser for batch jobs", e);
+    }
+
+    final AtomicInteger jobThreads = new AtomicInteger(1);
+    jobExecutor = Executors.newFixedThreadPool(maxConcurrentJobs, r -> {
+      Thread t = new Thread(r, "Batch job thread " + jobThreads.getAndIncrement());
+      t.setDaemon(true);
+      return t;
+    });
+
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/jobs", this::handle);
+    // progress streams block their thread
+    server.setExecutor(Executors.newCachedThreadPool(r -> {
+      Thread t = new Thread(r, "Batch server request thread");
+      t.setDaemon(true);
+      return t;
+    }));
+  }
+
+  /**
+   * Starts the server on the loopback address
+   *
+   * @param port              the local port
+   * @param maxConcurrentJobs maximum number of jobs that run at the same time, further jobs are
+   *                          queued
+   */
+  public static BatchServer start(int port, int maxConcurrentJobs) throws IOException {
+    BatchServer batchServer = new BatchServer(port, Math.max(1, maxConcurrentJobs));
+    batchServer.server.start();
+    logger.info(() -> "Batch server listening on " + batchServer.server.getAddress() + ", up to "
+                      + maxConcurrentJobs + " concurrent jobs");
+    return batchServer;
+  }
+
+  /**
+   * @return the local port, useful if the server was started on port 0
+   */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * Stops accepting requests and cancels all jobs
+   */
+  public void stop() {
+    server.stop(0);
+    jobs.values().forEach(BatchJob::cancel);
+    jobExecutor.shutdownNow();
+  }
+
+  /**
+   * Parses and queues a batch
+   *
+   * @param name    the job name
+   * @param xmlBody the batch XML
+   * @return the new job
+   */
+  public BatchJob submit(@NotNull String name, @NotNull InputStream xmlBody) throws Exception {
+    final Document parsedBatchXML;
+    synchronized (docBuilderFactory) {
+      parsedBatchXML = docBuilderFactory.newDocumentBuilder().parse(xmlBody);
+    }
+    final BatchQueue queue = BatchQueue.loadFromXml(parsedBatchXML.getDocumentElement());
+    if (queue.size() == 0) {
+      throw new IllegalArgumentException("The batch does not contain any steps");
+    }
+
+    final BatchJob job = new BatchJob(nextJobId.getAndIncrement(), name, queue);
+    jobs.put(job.getId(), job);
+    jobExecutor.execute(() -> {
+      job.run();
+      evictFinishedJobs();
+    });
+    logger.info(() -> "Queued batch job " + job.getId() + " (" + name + ") with " + queue.size()
+                      + " steps");
+    return job;
+  }
+
+  /**
+   * @return a factory for parsers that reject DTDs, so that batch jobs cannot include external
+   * entities
+   */
+  static DocumentBuilderFactory createDocumentBuilderFactory() throws ParserConfigurationException {
+    final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, true);
+    factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+    factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+    factory.setXIncludeAware(false);
+    factory.setExpandEntityReferences(false);
+    return factory;
+  }
+
+  /**
+   * Removes the oldest finished jobs, so that at most {@link #MAX_FINISHED_JOBS} finished jobs are
+   * kept
+   */
+  private void evictFinishedJobs() {
+    final List<Integer> finished = jobs.values().stream().filter(BatchJob::isDone)
+        .map(BatchJob::getId).toList();
+    // the map is sorted by id, the oldest jobs come first
+    for (int i = 0; i < finished.size() - MAX_FINISHED_JOBS; i++) {
+      jobs.remove(finished.get(i));
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      final String method = exchange.getRequestMethod();
+      // browsers send the Origin header with cross-origin requests, other clients do not need it
+      if (exchange.getRequestHeaders().containsKey("Origin")) {
+        sendJson(exchange, 403, error("Requests from web pages are not accepted"));
+        return;
+      }
+      // "", "jobs", id, "progress"
+      final String[] path = exchange.getRequestURI().getPath().split("/");
+
+      if (path.length <= 2) {
+        switch (method) {
+          case "POST" -> {
+            if (!isXmlContentType(exchange.getRequestHeaders().getFirst("Content-Type"))) {
+              sendJson(exchange, 415, error("The batch must be sent as " + XML_CONTENT_TYPE));
+              return;
+            }
+            final String name = getQueryParameter(exchange, "name");
+            final BatchJob job = submit(name != null ? name : "", exchange.getRequestBody());
+            sendJson(exchange, 201, job.toJson().toString());
+          }
+          case "GET" -> {
+            final JSONObject json = new JSONObject();
+            final JSONArray jobArray = new JSONArray();
+            jobs.values().forEach(job -> jobArray.put(job.toJson()));
+            json.put("jobs", jobArray);
+            json.put("waitingTasks",
+                MZmineCore.getTaskController().getTaskQueue().getNumOfWaitingTasks());
+            sendJson(exchange, 200, json.toString());
+          }
+          default -> sendJson(exchange, 405, error("Unsupported method " + method));
+        }
+        return;
+      }
+
+      final BatchJob job = jobs.get(parseJobId(path[2]));
+      if (job == null) {
+        sendJson(exchange, 404, error("No job " + path[2]));
+        return;
+      }
+
+      if (path.length == 3 && method.equals("GET")) {
+        sendJson(exchange, 200, job.toJson().toString());
+      } else if (path.length == 3 && method.equals("DELETE")) {
+        job.cancel();
+        sendJson(exchange, 200, job.toJson().toString());
+      } else if (path.length == 4 && path[3].equals("progress") && method.equals("GET")) {
+        streamProgress(exchange, job);
+      } else {
+        sendJson(exchange, 404, error("Unknown request " + method + " " + exchange.getRequestURI()));
+      }
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Error in batch server request " + exchange.getRequestURI(), e);
+      // the message may contain parts of the request or of local files, only the log shows it
+      sendJson(exchange, 400, error("Invalid request, see the MZmine log for details"));
+    } finally {
+      exchange.close();
+    }
+  }
+
+  /**
+   * Writes the job as one JSON line per interval (chunked response) until the job is done
+   */
+  private void streamProgress(HttpExchange exchange, BatchJob job) throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+    exchange.sendResponseHeaders(200, 0);
+    try (OutputStream out = exchange.getResponseBody()) {
+      while (true) {
+        // check before writing, so the last line shows the final state
+        final boolean done = job.isDone();
+        out.write((job.toJson() + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        if (done) {
+          return;
+        }
+        Thread.sleep(PROGRESS_INTERVAL_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      // the client closed the stream, the job keeps running
+      logger.finest(() -> "Progress stream of batch job " + job.getId() + " closed by client");
+    }
+  }
+
+  /**
+   * @param contentType the Content-Type header, may include parameters like the charset
+   * @return true if the media type is application/xml
+   */
+  static boolean isXmlContentType(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    final int paramStart = contentType.indexOf(';');
+    final String mediaType = paramStart >= 0 ? contentType.substring(0, paramStart) : contentType;
+    return mediaType.trim().equalsIgnoreCase(XML_CONTENT_TYPE);
+  }
+
+  private static int parseJobId(String id) {
+    try {
+      return Integer.parseInt(id);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  private static String getQueryParameter(HttpExchange exchange, String key) {
+    final String query = exchange.getRequestURI().getRawQuery();
+    if (query == null) {
+      return null;
+    }
+    for (String pair : query.split("&")) {
+      final int eq = pair.indexOf('=');
+      if (eq > 0 && pair.substring(0, eq).equals(key)) {
+        return URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+      }
+    }
+    return null;
+  }
+
+  private static String error(String message) {
+    return new JSONObject().put("error", String.valueOf(message)).toString();
+  }
+
+  private static void sendJson(HttpExchange exchange, int code, String json) throws IOException {
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "application/json");
+    exchange.sendResponseHeaders(code, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+}
@@ -43,24 +43,44 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Batch mode task
  */
 public class BatchTask extends AbstractTask {
 
-  private final BatchQueue queue;
+  private BatchQueue queue;
   private Logger logger = Logger.getLogger(this.getClass().getName());
-  private int totalSteps, processedSteps;
+  private int totalSteps;
+  private volatile int processedSteps;
   private MZmineProject project;
   private List<RawDataFile> createdDataFiles, previousCreatedDataFiles, startDataFiles;
   private List<FeatureList> createdFeatureLists, previousCreatedFeatureLists, startFeatureLists;
+  /**
+   * Group of the step tasks in the task controller, so that concurrent batches share the threads
+   */
+  private final String taskGroup;
+  private final long[] stepMillis;
+  private volatile String currentStepName;
 
   BatchTask(MZmineProject project, ParameterSet parameters, @NotNull Instant moduleCallDate) {
+    this(project, parameters, moduleCallDate, null);
+  }
+
+  /**
+   * @param taskGroup the step tasks are submitted to the task controller in this group, see
+   *                  {@link io.github.mzmine.taskcontrol.TaskController#addTasks(Task[],
+   *                  String)}. Null for the default group.
+   */
+  BatchTask(MZmineProject project, ParameterSet parameters, @NotNull Instant moduleCallDate,
+      @Nullable String taskGroup) {
     super(null, moduleCallDate); // we don't create any new data here, date is irrelevant, too.
     this.project = project;
+    this.taskGroup = taskGroup;
     this.queue = parameters.getParameter(BatchModeParameters.batchQueue).getValue();
     totalSteps = queue.size();
+    stepMillis = new long[totalSteps];
     createdDataFiles = new ArrayList<>();
     createdFeatureLists = new ArrayList<>();
     previousCreatedDataFiles = new ArrayList<>();
@@ -80,7 +100,10 @@ public class BatchTask extends AbstractTask {
     // Process individual batch steps
     for (int i = 0; i < totalSteps; i++) {
 
+      final long stepStart = System.currentTimeMillis();
+      currentStepName = queue.get(i).getModule().getName();
       processQueueStep(i);
+      stepMillis[i] = System.currentTimeMillis() - stepStart;
       processedSteps++;
 
       // If we are canceled or ran into error, stop here
@@ -90,6 +113,7 @@ public class BatchTask extends AbstractTask {
 
     }
 
+    currentStepName = null;
     logger.info("Finished a batch of " + totalSteps + " steps");
     setStatus(TaskStatus.FINISHED);
 
@@ -168,7 +192,7 @@ public class BatchTask extends AbstractTask {
 
     // Submit the tasks to the task controller for processing
     WrappedTask[] currentStepWrappedTasks = MZmineCore.getTaskController()
-        .addTasks(currentStepTasks.toArray(new Task[0]));
+        .addTasks(currentStepTasks.toArray(new Task[0]), taskGroup);
     currentStepTasks = null;
 
     while (!allTasksFinished) {
@@ -272,6 +296,22 @@ public class BatchTask extends AbstractTask {
     return true;
   }
 
+  /**
+   * Drops the references to the project, the batch queue (its parameters point to the last data
+   * files and feature lists) and the processed data files and feature lists. Only the progress and
+   * step times remain. Must only be called after the task has run.
+   */
+  void releaseData() {
+    project = null;
+    queue = null;
+    createdDataFiles = null;
+    previousCreatedDataFiles = null;
+    startDataFiles = null;
+    createdFeatureLists = null;
+    previousCreatedFeatureLists = null;
+    startFeatureLists = null;
+  }
+
   @Override
   public TaskPriority getTaskPriority() {
     // to not block mzmine when run with single thread
@@ -286,6 +326,29 @@ public class BatchTask extends AbstractTask {
     return (double) processedSteps / totalSteps;
   }
 
+  public int getTotalSteps() {
+    return totalSteps;
+  }
+
+  public int getProcessedSteps() {
+    return processedSteps;
+  }
+
+  /**
+   * @return name of the module of the currently processed step or null if not running
+   */
+  @Nullable
+  public String getCurrentStepName() {
+    return currentStepName;
+  }
+
+  /**
+   * @return the processing time of each step in ms (0 for steps that were not processed yet)
+   */
+  public long[] getStepMillis() {
+    return stepMillis.clone();
+  }
+
   @Override
   public String getTaskDescription() {
     return "Batch of " + totalSteps + " steps";
@@ -42,7 +42,6 @@ import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.M
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FeatureListRowSorter;
-import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.RangeUtils;
@@ -244,7 +243,7 @@ public class JoinAlignerTask extends AbstractTask {
               row -> (FeatureListRow) new ModularFeatureListRow(alignedFeatureList,
                   newRowID.getAndIncrement(), (ModularFeatureListRow) row, true)).toList());
       nextBaseRows.sort(new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
-      nextBaseRows.forEach(row -> alignedFeatureList.addRow(row));
+      alignedFeatureList.addRows(nextBaseRows);
 
       // remove new base rows from the leftover rows.
       leftoverRows.removeIf(row -> row.getFeatureList().equals(nextBaseList));
@@ -257,9 +256,8 @@ public class JoinAlignerTask extends AbstractTask {
       leftoverRows.clear();
 
       // use the whole feature list to align on. the average row m/zs and rts change during alignment due to
-      List<FeatureListRow> baseRows = new ArrayList<>(alignedFeatureList.getRows());
-      baseRows.sort(new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
-      alignRowsOnBaseRows(unalignedRows, baseRows, leftoverRows);
+      // the added features, the row index of the feature list is updated accordingly.
+      alignRowsOnBaseRows(unalignedRows, alignedFeatureList, leftoverRows);
 
       iteration++;
     }
@@ -284,7 +282,7 @@ public class JoinAlignerTask extends AbstractTask {
   }
 
   private void alignRowsOnBaseRows(List<FeatureListRow> unalignedRows,
-      List<FeatureListRow> baseRowsByMz, List<FeatureListRow> leftoverRows) {
+      ModularFeatureList baseList, List<FeatureListRow> leftoverRows) {
 
     final Map<FeatureListRow, Boolean> assignedRows = new HashMap<>();
     unalignedRows.forEach(row -> assignedRows.put(row, false));
@@ -307,8 +305,8 @@ public class JoinAlignerTask extends AbstractTask {
               .getToleranceRange(row.getAverageMobility()) : Range.singleton(0f);
 
       // find all rows in the aligned rows that might match
-      final List<FeatureListRow> candidatesInAligned = FeatureListUtils
-          .getRows(baseRowsByMz, rtRange, mzRange, true);
+      final List<FeatureListRow> candidatesInAligned = baseList.getRowsInside(mzRange, rtRange,
+          null);
 
       if (candidatesInAligned.isEmpty()) {
         return;
@@ -27,8 +27,6 @@ public class AlignStructMol implements Comparator<AlignStructMol> {
   public FeatureListRow row1, row2;
   public double RT, RT2;
   public boolean Aligned = false;
-  public boolean ransacMaybeInLiers;
-  public boolean ransacAlsoInLiers;
 
   public AlignStructMol(FeatureListRow row1, FeatureListRow row2) {
     this.row1 = row1;
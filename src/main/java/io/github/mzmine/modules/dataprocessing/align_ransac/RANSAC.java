@@ -15,23 +15,35 @@
  * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
  *
  */
+
 package io.github.mzmine.modules.dataprocessing.align_ransac;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import io.github.mzmine.parameters.ParameterSet;
+import java.util.Comparator;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
 import org.apache.commons.math.analysis.polynomials.PolynomialFunction;
 import org.apache.commons.math.optimization.fitting.PolynomialFitter;
 import org.apache.commons.math.optimization.general.GaussNewtonOptimizer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import com.google.common.collect.Range;
+public class RANSAC {
 
-import io.github.mzmine.parameters.ParameterSet;
+  /**
+   * Seed for the random sampling. Every iteration uses its own random number generator derived
+   * from this seed and the iteration index, so the result does not depend on the number of threads
+   * or the order in which the iterations are executed.
+   */
+  private static final long SEED = 0x5DEECE66DL;
 
-public class RANSAC {
+  /**
+   * Maximum number of random draws per half of the rt range before the initial points are taken
+   * from the whole rt range.
+   */
+  private static final int MAX_DRAWS = 1000;
 
   /**
    * input: data - a set of observed data points n - the minimum number of data values required to
@@ -44,7 +56,6 @@ public class RANSAC {
   private int n;
   private double d = 1;
   private int k = 0;
-  private int AlsoNumber;
   private double numRatePoints, t;
   private boolean Linear;
 
@@ -62,10 +73,14 @@ public class RANSAC {
 
   /**
    * Set all parameters and start ransac.
-   * 
-   * @param data vector with the points which represent all possible alignments.
+   *
+   * @param data vector with the points which represent all possible alignments. The list is sorted
+   *             by rt and the {@link AlignStructMol#Aligned} flags are set according to the best
+   *             model.
+   * @return the best model or null, if no model was found.
    */
-  public void alignment(List<AlignStructMol> data) {
+  @Nullable
+  public PolynomialFunction alignment(List<AlignStructMol> data) {
     try {
       // If the model is non linear 4 points are taken to build the model,
       // if it is linear only 2 points are taken.
@@ -88,15 +103,16 @@ public class RANSAC {
         k = (int) getK();
       }
 
-      ransac(data);
+      return ransac(data);
     } catch (Exception exception) {
       exception.printStackTrace();
+      return null;
     }
   }
 
   /**
    * Calculate k (number of trials)
-   * 
+   *
    * @return number of trials "k" required to select a subset of n good data points.
    */
   private double getK() {
@@ -106,174 +122,163 @@ public class RANSAC {
   }
 
   /**
-   * RANSAC algorithm
-   * 
+   * RANSAC algorithm. The iterations are independent of each other and run in parallel. Of all
+   * models with the minimum number of points, the one with the most inliers is kept. If multiple
+   * models have the same number of inliers, the one of the lowest iteration is kept.
+   *
    * @param data vector with the points which represent all possible alignments.
+   * @return the best model or null, if no model was found.
    */
-  public void ransac(List<AlignStructMol> data) {
-    double besterr = 9.9E99;
-
-    for (int iterations = 0; iterations < k; iterations++) {
-      AlsoNumber = n;
-      // Get the initial points
-      boolean initN = getInitN(data);
-      if (!initN) {
-        continue;
-      }
+  @Nullable
+  public PolynomialFunction ransac(List<AlignStructMol> data) {
+    if (data.size() <= n) {
+      return null;
+    }
 
-      // Calculate the model
-      fittPolinomialFunction(data, Linear);
-
-      // If the model has the minimun number of points
-      if (AlsoNumber >= d) {
-        // Get the error of the model based on the number of points
-        double error = 9.9E99;
-        try {
-          error = newError(data);
-        } catch (Exception ex) {
-          Logger.getLogger(RANSAC.class.getName()).log(Level.SEVERE, null, ex);
-        }
-
-        // If the error is less than the error of the last model
-        if (error < besterr) {
-          besterr = error;
-          for (int i = 0; i < data.size(); i++) {
-            AlignStructMol alignStruct = data.get(i);
-            if (alignStruct.ransacAlsoInLiers || alignStruct.ransacMaybeInLiers) {
-              alignStruct.Aligned = true;
-            } else {
-              alignStruct.Aligned = false;
-            }
-
-            alignStruct.ransacAlsoInLiers = false;
-            alignStruct.ransacMaybeInLiers = false;
-
-          }
-        }
-      }
-      // remove the model
-      for (int i = 0; i < data.size(); i++) {
-        AlignStructMol alignStruct = data.get(i);
-        alignStruct.ransacAlsoInLiers = false;
-        alignStruct.ransacMaybeInLiers = false;
-      }
+    data.sort(Comparator.comparingDouble(m -> m.RT));
+    final double[] rts = new double[data.size()];
+    final double[] rts2 = new double[data.size()];
+    for (int i = 0; i < rts.length; i++) {
+      rts[i] = data.get(i).RT;
+      rts2[i] = data.get(i).RT2;
+    }
+
+    final Model best = IntStream.range(0, k).parallel()
+        .mapToObj(iteration -> fitModel(rts, rts2, iteration)).filter(Objects::nonNull)
+        .reduce(null, (m1, m2) -> m1 == null || (m2 != null && m2.isBetterThan(m1)) ? m2 : m1);
 
+    if (best == null) {
+      return null;
     }
+    for (int i = 0; i < data.size(); i++) {
+      data.get(i).Aligned = best.inliers()[i];
+    }
+    return best.function();
   }
 
   /**
-   * Take the initial points ramdoly. The points are divided by the initial number of points. If the
-   * fractions contain enough number of points took one point from each part.
-   * 
-   * @param data vector with the points which represent all possible alignments.
-   * @return false if there is any problem.
+   * Fits a model to randomly chosen initial points and collects all points that fit the model.
+   *
+   * @return the model or null, if the model does not have the minimum number of points.
    */
-  private boolean getInitN(List<AlignStructMol> data) {
-    if (data.size() > n) {
-      Collections.sort(data, new AlignStructMol());
-      double min = data.get(0).RT;
-      double max = data.get(data.size() - 1).RT;
-
-      Range<Double> rtRange = Range.closed(min, ((max - min) / 2) + min);
-
-      int cont = 0, bucle = 0;
-      while (cont < n / 2 && bucle < 1000) {
-        int index = (int) (data.size() * Math.random());
-        if (!data.get(index).ransacMaybeInLiers && rtRange.contains(data.get(index).RT)) {
-          data.get(index).ransacMaybeInLiers = true;
-          cont++;
-
-        }
-
-        bucle++;
-      }
-      if (bucle >= 1000) {
-        getN(data, (n / 2) - cont);
+  @Nullable
+  private Model fitModel(final double[] rts, final double[] rts2, final int iteration) {
+    final SplittableRandom random = new SplittableRandom(SEED + iteration * 0x9E3779B97F4A7C15L);
+    final boolean[] maybeInliers = getInitN(rts, random);
+
+    final int degree = Linear ? 1 : 3;
+    final PolynomialFitter fitter = new PolynomialFitter(degree, new GaussNewtonOptimizer(true));
+    for (int i = 0; i < rts.length; i++) {
+      if (maybeInliers[i]) {
+        fitter.addObservedPoint(1, rts[i], rts2[i]);
       }
+    }
 
-      bucle = 0;
-      rtRange = Range.closed(((max - min) / 2) + min, max);
-
-      while (cont < n && bucle < 1000) {
+    final PolynomialFunction function;
+    try {
+      function = fitter.fit();
+    } catch (Exception ex) {
+      return null;
+    }
 
-        int index = (int) (data.size() * Math.random());
-        if (!data.get(index).ransacMaybeInLiers && rtRange.contains(data.get(index).RT)) {
-          data.get(index).ransacMaybeInLiers = true;
-          cont++;
-        }
-        bucle++;
+    int alsoNumber = n;
+    int numInliers = 0;
+    final boolean[] inliers = maybeInliers;
+    for (int i = 0; i < rts.length; i++) {
+      if (Math.abs(rts2[i] - function.value(rts[i])) < t) {
+        alsoNumber++;
+        inliers[i] = true;
       }
-      if (bucle >= 1000) {
-        getN(data, n - cont);
+      if (inliers[i]) {
+        numInliers++;
       }
-      return true;
-    } else {
-      return false;
     }
-  }
 
-  private void getN(List<AlignStructMol> data, int newN) {
-    if (newN < 1) {
-      return;
+    // If the model has the minimun number of points
+    if (alsoNumber < d) {
+      return null;
     }
-    int cont = 0;
-    while (cont < newN) {
-      int index = (int) (data.size() * Math.random());
-      if (!data.get(index).ransacMaybeInLiers) {
-        data.get(index).ransacMaybeInLiers = true;
+    return new Model(iteration, function, inliers, numInliers);
+  }
+
+  /**
+   * Take the initial points ramdoly. The points are divided by the initial number of points. If the
+   * fractions contain enough number of points took one point from each part.
+   *
+   * @param rts the rts of all points, sorted ascending.
+   * @return the initial points.
+   */
+  private boolean[] getInitN(final double[] rts, final SplittableRandom random) {
+    final boolean[] maybeInliers = new boolean[rts.length];
+    final double min = rts[0];
+    final double max = rts[rts.length - 1];
+    final double center = ((max - min) / 2) + min;
+
+    int cont = 0, bucle = 0;
+    while (cont < n / 2 && bucle < MAX_DRAWS) {
+      int index = random.nextInt(rts.length);
+      if (!maybeInliers[index] && rts[index] >= min && rts[index] <= center) {
+        maybeInliers[index] = true;
         cont++;
       }
+      bucle++;
     }
-  }
-
-  private void fittPolinomialFunction(List<AlignStructMol> data, boolean linear) {
-    List<AlignStructMol> points = new ArrayList<AlignStructMol>();
-
-    int degree = 3;
-    if (linear) {
-      degree = 1;
+    if (bucle >= MAX_DRAWS) {
+      cont += getN(maybeInliers, (n / 2) - cont, random);
     }
 
-    PolynomialFitter fitter = new PolynomialFitter(degree, new GaussNewtonOptimizer(true));
-    for (int i = 0; i < data.size(); i++) {
-      AlignStructMol point = data.get(i);
-      if (point.ransacMaybeInLiers) {
-        points.add(point);
-        fitter.addObservedPoint(1, point.RT, point.RT2);
+    bucle = 0;
+    while (cont < n && bucle < MAX_DRAWS) {
+      int index = random.nextInt(rts.length);
+      if (!maybeInliers[index] && rts[index] >= center && rts[index] <= max) {
+        maybeInliers[index] = true;
+        cont++;
       }
+      bucle++;
     }
-    try {
-      PolynomialFunction function = fitter.fit();
-      for (AlignStructMol point : data) {
-        double y = point.RT2;
-        double bestY = function.value(point.RT);
-        if (Math.abs(y - bestY) < t) {
-          point.ransacAlsoInLiers = true;
-          AlsoNumber++;
-        } else {
-          point.ransacAlsoInLiers = false;
-        }
-      }
-    } catch (Exception ex) {
+    if (bucle >= MAX_DRAWS) {
+      getN(maybeInliers, n - cont, random);
     }
+    return maybeInliers;
   }
 
   /**
-   * calculate the error in the model
-   * 
-   * @param data vector with the points which represent all possible alignments.
-   * @param regression regression of the alignment points
-   * @return the error in the model
+   * Marks newN random points from the whole rt range as initial points.
+   *
+   * @return the number of marked points.
    */
-  private double newError(List<AlignStructMol> data) throws Exception {
-
-    double numT = 1;
-    for (int i = 0; i < data.size(); i++) {
-      if (data.get(i).ransacAlsoInLiers || data.get(i).ransacMaybeInLiers) {
-        numT++;
+  private int getN(final boolean[] maybeInliers, final int newN, final SplittableRandom random) {
+    if (newN < 1) {
+      return 0;
+    }
+    int cont = 0;
+    while (cont < newN) {
+      int index = random.nextInt(maybeInliers.length);
+      if (!maybeInliers[index]) {
+        maybeInliers[index] = true;
+        cont++;
       }
     }
-    return 1 / numT;
+    return cont;
+  }
 
+  /**
+   * A model of one RANSAC iteration.
+   *
+   * @param iteration  the iteration that created this model.
+   * @param function   the fitted function.
+   * @param inliers    the initial points and all points that fit the model.
+   * @param numInliers the number of inliers.
+   */
+  private record Model(int iteration, @NotNull PolynomialFunction function,
+                       @NotNull boolean[] inliers, int numInliers) {
+
+    /**
+     * The error of a model is 1 / (1 + numInliers), so the better model has more inliers.
+     */
+    boolean isBetterThan(@NotNull Model other) {
+      return numInliers > other.numInliers || (numInliers == other.numInliers
+                                               && iteration < other.iteration);
+    }
   }
 }
@@ -19,16 +19,20 @@
 package io.github.mzmine.modules.dataprocessing.align_ransac;
 
 import io.github.mzmine.parameters.Parameter;
+import io.github.mzmine.parameters.impl.IonMobilitySupport;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.DoubleParameter;
 import io.github.mzmine.parameters.parametertypes.IntegerParameter;
+import io.github.mzmine.parameters.parametertypes.OptionalParameter;
 import io.github.mzmine.parameters.parametertypes.PercentParameter;
 import io.github.mzmine.parameters.parametertypes.StringParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZToleranceParameter;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTToleranceParameter;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityToleranceParameter;
 import io.github.mzmine.util.ExitCode;
+import org.jetbrains.annotations.NotNull;
 
 public class RansacAlignerParameters extends SimpleParameterSet {
 
@@ -62,9 +66,20 @@ public class RansacAlignerParameters extends SimpleParameterSet {
   public static final BooleanParameter Linear =
       new BooleanParameter("Linear model", "Switch between polynomial model or lineal model");
 
+  public static final OptionalParameter<MobilityToleranceParameter> mobilityTolerance =
+      new OptionalParameter<>(new MobilityToleranceParameter("Mobility tolerance",
+          "If checked, only rows within this mobility tolerance are considered for the model and"
+              + "\nthe alignment. Rows without a mobility value are not restricted."), false);
+
   public static final BooleanParameter SameChargeRequired = new BooleanParameter(
       "Require same charge state", "If checked, only rows having same charge state can be aligned");
 
+  @NotNull
+  @Override
+  public IonMobilitySupport getIonMobilitySupport() {
+    return IonMobilitySupport.SUPPORTED;
+  }
+
   @Override
   public ExitCode showSetupDialog(boolean valueCheckRequired) {
     RansacAlignerSetupDialog dialog = new RansacAlignerSetupDialog(valueCheckRequired, this);
@@ -74,6 +89,7 @@ public class RansacAlignerParameters extends SimpleParameterSet {
 
   public RansacAlignerParameters() {
     super(new Parameter[] {peakLists, peakListName, MZTolerance, RTToleranceBefore,
-        RTToleranceAfter, Iterations, NMinPoints, Margin, Linear, SameChargeRequired});
+        RTToleranceAfter, Iterations, NMinPoints, Margin, Linear, mobilityTolerance,
+        SameChargeRequired});
   }
 }
@@ -19,10 +19,8 @@
 package io.github.mzmine.modules.dataprocessing.align_ransac;
 
 import com.google.common.collect.Range;
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
-import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
@@ -32,6 +30,7 @@ import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.FeatureUtils;
@@ -40,12 +39,11 @@ import io.github.mzmine.util.RangeUtils;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -70,6 +68,8 @@ class RansacAlignerTask extends AbstractTask {
   private RTTolerance rtToleranceBefore, rtToleranceAfter;
   private ParameterSet parameters;
   private boolean sameChargeRequired;
+  @Nullable
+  private MobilityTolerance mobilityTolerance;
   // ID counter for the new peaklist
   private int newRowID = 1;
 
@@ -94,6 +94,11 @@ class RansacAlignerTask extends AbstractTask {
     sameChargeRequired =
         parameters.getParameter(RansacAlignerParameters.SameChargeRequired).getValue();
 
+    mobilityTolerance =
+        parameters.getParameter(RansacAlignerParameters.mobilityTolerance).getValue() ? parameters
+            .getParameter(RansacAlignerParameters.mobilityTolerance).getEmbeddedParameter()
+            .getValue() : null;
+
   }
 
   /**
@@ -144,15 +149,16 @@ class RansacAlignerTask extends AbstractTask {
         }
 
         allDataFiles.add(dataFile);
-
-        featureList.getRawDataFiles().forEach(
-            file -> alignedFeatureList.setSelectedScans(file, featureList.getSeletedScans(file)));
       }
     }
 
     // Create a new aligned feature list
     alignedFeatureList = new ModularFeatureList(featureListName, getMemoryMapStorage(),
         allDataFiles.toArray(new RawDataFile[0]));
+    for (ModularFeatureList featureList : featureLists) {
+      featureList.getRawDataFiles().forEach(
+          file -> alignedFeatureList.setSelectedScans(file, featureList.getSeletedScans(file)));
+    }
 
     // Iterate source feature lists
     for (FeatureList featureList : featureLists) {
@@ -187,26 +193,6 @@ class RansacAlignerTask extends AbstractTask {
     // Add new aligned feature list to the project
     project.addFeatureList(alignedFeatureList);
 
-    // Edit by Aleksandr Smirnov
-    FeatureListRow row = alignedFeatureList.getRow(1);
-    double alignedRetTime = row.getAverageRT();
-
-    for (Feature feature : row.getFeatures()) {
-      double retTimeDelta = alignedRetTime - feature.getRT();
-      RawDataFile dataFile = feature.getRawDataFile();
-
-      SortedMap<Double, Double> chromatogram = new TreeMap<>();
-
-      for (int i=0; i < feature.getNumberOfDataPoints(); i++) {
-        DataPoint dataPoint = feature.getDataPointAtIndex(i);
-        double retTime = feature.getRetentionTimeAtIndex(i) + retTimeDelta;
-        if (dataPoint != null)
-          chromatogram.put(retTime, dataPoint.getIntensity());
-      }
-    }
-
-    // End of Edit
-
     // Add task description to peakList
     alignedFeatureList
         .addDescriptionOfAppliedTask(new SimpleFeatureListAppliedMethod("Ransac aligner",
@@ -235,8 +221,15 @@ class RansacAlignerTask extends AbstractTask {
     TreeSet<RowVsRowScore> scoreSet = new TreeSet<RowVsRowScore>();
 
     // RANSAC algorithm
-    List<AlignStructMol> list = ransacPeakLists(alignedFeatureList, peakList);
+    List<AlignStructMol> list = getVectorAlignment(alignedFeatureList,
+        (ModularFeatureList) peakList);
+    RANSAC ransac = new RANSAC(parameters);
+    PolynomialFunction ransacModel = ransac.alignment(list);
     PolynomialFunction function = this.getPolynomialFunction(list);
+    if (function == null) {
+      // the model of the best RANSAC iteration is used, if the final fit fails
+      function = ransacModel;
+    }
 
     List<FeatureListRow> allRows = peakList.getRows();
 
@@ -258,7 +251,7 @@ class RansacAlignerTask extends AbstractTask {
 
       // Get all rows of the aligned peaklist within parameter limits
       List<FeatureListRow> candidateRows = alignedFeatureList
-          .getRowsInsideScanAndMZRange(rtRange, mzRange);
+          .getRowsInside(mzRange, rtRange, getMobilityRange(row));
 
       for (FeatureListRow candidate : candidateRows) {
         RowVsRowScore score;
@@ -283,6 +276,7 @@ class RansacAlignerTask extends AbstractTask {
     }
 
     // Iterate scores by descending order
+    final Set<FeatureListRow> mappedAlignedRows = new HashSet<>();
     Iterator<RowVsRowScore> scoreIterator = scoreSet.iterator();
     while (scoreIterator.hasNext()) {
 
@@ -294,7 +288,7 @@ class RansacAlignerTask extends AbstractTask {
       }
 
       // Check if the aligned row is already filled
-      if (alignmentMapping.containsValue(score.getAlignedRow())) {
+      if (!mappedAlignedRows.add(score.getAlignedRow())) {
         continue;
       }
 
@@ -305,20 +299,6 @@ class RansacAlignerTask extends AbstractTask {
     return alignmentMapping;
   }
 
-  /**
-   * RANSAC
-   *
-   * @param alignedPeakList
-   * @param peakList
-   * @return
-   */
-  private List<AlignStructMol> ransacPeakLists(FeatureList alignedPeakList, FeatureList peakList) {
-    List<AlignStructMol> list = this.getVectorAlignment(alignedPeakList, peakList);
-    RANSAC ransac = new RANSAC(parameters);
-    ransac.alignment(list);
-    return list;
-  }
-
   /**
    * Return the corrected RT of the row
    *
@@ -389,7 +369,8 @@ class RansacAlignerTask extends AbstractTask {
    * @param peakListY
    * @return vector which contains all the possible aligned peaks.
    */
-  private List<AlignStructMol> getVectorAlignment(FeatureList peakListX, FeatureList peakListY) {
+  private List<AlignStructMol> getVectorAlignment(FeatureList peakListX,
+      ModularFeatureList peakListY) {
 
     List<AlignStructMol> alignMol = new ArrayList<AlignStructMol>();
     for (FeatureListRow row : peakListX.getRows()) {
@@ -402,7 +383,8 @@ class RansacAlignerTask extends AbstractTask {
       Range<Float> rtRange = rtToleranceBefore.getToleranceRange(row.getAverageRT());
 
       // Get all rows of the aligned peaklist within parameter limits
-      List<FeatureListRow> candidateRows = peakListY.getRowsInsideScanAndMZRange(rtRange, mzRange);
+      List<FeatureListRow> candidateRows = peakListY
+          .getRowsInside(mzRange, rtRange, getMobilityRange(row));
 
       for (FeatureListRow candidateRow : candidateRows) {
         alignMol.add(new AlignStructMol(row, candidateRow));
@@ -411,4 +393,15 @@ class RansacAlignerTask extends AbstractTask {
 
     return alignMol;
   }
+
+  /**
+   * @return the mobility range to search for candidates of the given row or null, if mobility
+   * shall not be compared or the row does not have a mobility.
+   */
+  @Nullable
+  private Range<Float> getMobilityRange(FeatureListRow row) {
+    final Float mobility = row.getAverageMobility();
+    return mobilityTolerance != null && mobility != null ? mobilityTolerance
+        .getToleranceRange(mobility) : null;
+  }
 }
@@ -27,6 +27,7 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.ScanDataType;
 import io.github.mzmine.datamodel.data_access.ScanDataAccess;
+import io.github.mzmine.datamodel.features.FeatureListBuilder;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -389,17 +390,16 @@ public class ModularADAPChromatogramBuilderTask extends AbstractTask {
     // ensure that the default columns are available
     DataTypeUtils.addDefaultChromatographicTypeColumns(newFeatureList);
 
-    // Add the chromatograms to the new feature list
+    // Add the chromatograms to the new feature list in one step
+    final FeatureListBuilder builder = new FeatureListBuilder(newFeatureList, newFeatureID);
     for (ADAPChromatogram finishedFeature : buildingChromatograms) {
       finishedFeature.setFeatureList(newFeatureList);
       ModularFeature modular = FeatureConvertors.ADAPChromatogramToModularFeature(finishedFeature);
-      ModularFeatureListRow newRow =
-          new ModularFeatureListRow(newFeatureList, newFeatureID, modular);
-      newFeatureList.addRow(newRow);
+      ModularFeatureListRow newRow = builder.addRow(modular);
       // activate shape for this row
       newRow.set(FeatureShapeType.class, true);
-      newFeatureID++;
     }
+    builder.build();
 
     newFeatureList.setSelectedScans(dataFile, Arrays.asList(scans));
 
@@ -18,6 +18,7 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_chromatogramdeconvolution;
 
+import com.google.common.collect.Lists;
 import io.github.mzmine.datamodel.ImagingRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
@@ -35,6 +36,8 @@ import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.ImageType;
 import io.github.mzmine.datamodel.features.types.MobilityUnitType;
 import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2SubParameters;
 import io.github.mzmine.modules.dataprocessing.filter_groupms2.GroupMS2Task;
 import io.github.mzmine.parameters.ParameterSet;
@@ -48,15 +51,21 @@ import io.github.mzmine.util.R.RSessionWrapper;
 import io.github.mzmine.util.R.RSessionWrapperException;
 import io.github.mzmine.util.maths.CenterFunction;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class FeatureResolverTask extends AbstractTask {
 
   // Logger.
   private static final Logger logger = Logger.getLogger(FeatureResolverTask.class.getName());
+  // minimum number of chromatograms per partition for parallel resolving
+  private static final int MIN_ROWS_PER_PARTITION = 500;
 
   // Feature lists.
   private final MZmineProject project;
@@ -67,7 +76,7 @@ public class FeatureResolverTask extends AbstractTask {
   private final CenterFunction mzCenterFunction;
   private FeatureList newPeakList;
   // Counters.
-  private int processedRows;
+  private final AtomicInteger processedRows = new AtomicInteger(0);
   private int totalRows;
   private RSessionWrapper rSession;
   private String errorMsg;
@@ -92,7 +101,6 @@ public class FeatureResolverTask extends AbstractTask {
     parameters = parameterSet;
     originalPeakList = list;
     newPeakList = null;
-    processedRows = 0;
     totalRows = 0;
     this.mzCenterFunction = mzCenterFunction;
   }
@@ -104,7 +112,7 @@ public class FeatureResolverTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    return totalRows == 0 ? 0.0 : (double) processedRows / (double) totalRows;
+    return totalRows == 0 ? 0.0 : (double) processedRows.get() / (double) totalRows;
   }
 
   @Override
@@ -136,12 +144,12 @@ public class FeatureResolverTask extends AbstractTask {
                 GeneralResolverParameters.groupMS2Parameters).getEmbeddedParameters();
             GroupMS2Task task = new GroupMS2Task(project, newPeakList, ms2params, moduleCallDate);
             // restart progress
-            processedRows = 0;
+            processedRows.set(0);
             totalRows = newPeakList.getNumberOfRows();
             // group all features with MS/MS
             for (FeatureListRow row : newPeakList.getRows()) {
               task.processRow(row);
-              processedRows++;
+              processedRows.incrementAndGet();
             }
           }
 
@@ -343,21 +351,31 @@ public class FeatureResolverTask extends AbstractTask {
     final RawDataFile dataFile = originalFeatureList.getRawDataFile(0);
     final ModularFeatureList resolvedFeatureList = createNewFeatureList(originalFeatureList);
 
-    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
-        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile);
-
-    processedRows = 0;
+    processedRows.set(0);
     totalRows = originalFeatureList.getNumberOfRows();
-    int peakId = 1;
 
-    int c = 0;
+    final int numPartitions = getNumberOfPartitions(totalRows);
+    final List<ResolvedChromatogram> resolvedChromatograms;
+    if (numPartitions > 1) {
+      logger.finest(() -> "Resolving " + totalRows + " chromatograms of " + originalFeatureList
+                          + " in " + numPartitions + " partitions.");
+      resolvedChromatograms = resolvePartitioned(originalFeatureList, dataFile, resolver,
+          numPartitions);
+    } else {
+      resolvedChromatograms = resolvePartition(resolver, originalFeatureList, dataFile,
+          originalFeatureList.getRows(), getMemoryMapStorage());
+    }
 
-    while (access.hasNextFeature()) {
-      final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
-      final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
-          getMemoryMapStorage());
+    if (isCanceled()) {
+      return;
+    }
 
-      for (IonTimeSeries<? extends Scan> resolved : resolvedSeries) {
+    // rows are created in the original row order, so the feature ids are deterministic
+    int peakId = 1;
+    int c = 0;
+    for (ResolvedChromatogram chromatogram : resolvedChromatograms) {
+      final ModularFeature originalFeature = chromatogram.originalFeature();
+      for (IonTimeSeries<? extends Scan> resolved : chromatogram.resolvedSeries()) {
         final ModularFeatureListRow newRow = new ModularFeatureListRow(resolvedFeatureList,
             peakId++);
         final ModularFeature f = new ModularFeature(resolvedFeatureList,
@@ -375,7 +393,6 @@ public class FeatureResolverTask extends AbstractTask {
           c++;
         }
       }
-      processedRows++;
     }
     logger.info(c + "/" + resolvedFeatureList.getNumberOfRows()
                 + " have less than 4 scans (frames for IMS data)");
@@ -388,6 +405,96 @@ public class FeatureResolverTask extends AbstractTask {
     newPeakList = resolvedFeatureList;
   }
 
+  /**
+   * Resolves the chromatograms of the given rows with a single {@link FeatureDataAccess}.
+   *
+   * @param resolver the resolver. Resolvers keep internal buffers and must not be shared between
+   *                 threads.
+   * @param rows     the rows to resolve.
+   * @param storage  the storage for the resolved series or null to keep them in RAM.
+   * @return the resolved series of each row in row order.
+   */
+  private List<ResolvedChromatogram> resolvePartition(@NotNull final Resolver resolver,
+      @NotNull final ModularFeatureList originalFeatureList, @NotNull final RawDataFile dataFile,
+      @NotNull final List<FeatureListRow> rows, @Nullable final MemoryMapStorage storage) {
+    final FeatureDataAccess access = EfficientDataAccess.of(originalFeatureList,
+        EfficientDataAccess.FeatureDataType.INCLUDE_ZEROS, dataFile, rows);
+
+    final List<ResolvedChromatogram> resolvedChromatograms = new ArrayList<>(
+        access.getNumOfFeatures());
+    while (access.hasNextFeature() && !isCanceled()) {
+      final ModularFeature originalFeature = (ModularFeature) access.nextFeature();
+      final List<IonTimeSeries<? extends Scan>> resolvedSeries = resolver.resolve(access,
+          storage);
+      resolvedChromatograms.add(new ResolvedChromatogram(originalFeature, resolvedSeries));
+      processedRows.incrementAndGet();
+    }
+    return resolvedChromatograms;
+  }
+
+  /**
+   * Splits the rows into consecutive partitions that are resolved in parallel. Every partition
+   * uses its own {@link Resolver} and {@link FeatureDataAccess}. The resolved series of a partition
+   * are kept in RAM and written to the {@link MemoryMapStorage} in one batch once the partition is
+   * finished.
+   *
+   * @return the resolved series of each row in the original row order.
+   */
+  private List<ResolvedChromatogram> resolvePartitioned(
+      @NotNull final ModularFeatureList originalFeatureList, @NotNull final RawDataFile dataFile,
+      @NotNull final Resolver firstResolver, final int numPartitions) {
+    // copy the rows, so the partitions don't operate on views of the observable list
+    final List<FeatureListRow> rows = new ArrayList<>(originalFeatureList.getRows());
+    final int partitionSize = (int) Math.ceil(rows.size() / (double) numPartitions);
+    final List<List<FeatureListRow>> partitions = Lists.partition(rows, partitionSize);
+
+    // resolvers keep internal buffers, so every partition needs its own instance
+    final List<Resolver> resolvers = new ArrayList<>(partitions.size());
+    resolvers.add(firstResolver);
+    for (int i = 1; i < partitions.size(); i++) {
+      resolvers.add(((GeneralResolverParameters) parameters).getResolver(parameters,
+          originalFeatureList));
+    }
+
+    final MemoryMapStorage storage = getMemoryMapStorage();
+    return IntStream.range(0, partitions.size()).parallel().mapToObj(i -> {
+      final List<ResolvedChromatogram> resolved = resolvePartition(resolvers.get(i),
+          originalFeatureList, dataFile, partitions.get(i), null);
+      return storage != null ? storeResolvedSeries(resolved, storage) : resolved;
+    }).flatMap(List::stream).toList();
+  }
+
+  /**
+   * Copies the resolved series of a partition to the storage. The storage is locked once for the
+   * whole partition instead of once per stored array.
+   */
+  private List<ResolvedChromatogram> storeResolvedSeries(
+      @NotNull final List<ResolvedChromatogram> resolvedChromatograms,
+      @NotNull final MemoryMapStorage storage) {
+    final List<ResolvedChromatogram> stored = new ArrayList<>(resolvedChromatograms.size());
+    synchronized (storage) {
+      for (ResolvedChromatogram chromatogram : resolvedChromatograms) {
+        final List<IonTimeSeries<? extends Scan>> storedSeries = new ArrayList<>(
+            chromatogram.resolvedSeries().size());
+        for (IonTimeSeries<? extends Scan> series : chromatogram.resolvedSeries()) {
+          storedSeries.add((IonTimeSeries<? extends Scan>) series.copy(storage));
+        }
+        stored.add(new ResolvedChromatogram(chromatogram.originalFeature(), storedSeries));
+      }
+    }
+    return stored;
+  }
+
+  /**
+   * @return the number of row partitions to resolve in parallel. 1 if the feature list is too
+   * small to benefit from parallel resolving.
+   */
+  private int getNumberOfPartitions(final int numRows) {
+    final int numThreads = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads).getValue();
+    return Math.max(1, Math.min(numThreads, numRows / MIN_ROWS_PER_PARTITION));
+  }
+
   @Override
   public void cancel() {
     super.cancel();
@@ -415,7 +522,7 @@ public class FeatureResolverTask extends AbstractTask {
 
     final FeatureResolver resolver = ((GeneralResolverParameters) parameters).getResolver();
 
-    processedRows = 0;
+    processedRows.set(0);
     totalRows = originalFeatureList.getNumberOfRows();
     int peakId = 1;
 
@@ -441,7 +548,7 @@ public class FeatureResolverTask extends AbstractTask {
         newRow.setFeatureInformation(peak.getPeakInformation());
         resolvedFeatureList.addRow(newRow);
       }
-      processedRows++;
+      processedRows.incrementAndGet();
     }
 
     resolvedFeatureList.addDescriptionOfAppliedTask(
@@ -488,4 +595,12 @@ public class FeatureResolverTask extends AbstractTask {
 
     return resolvedFeatureList;
   }
+
+  /**
+   * The resolved series of a single chromatogram.
+   */
+  private record ResolvedChromatogram(@NotNull ModularFeature originalFeature,
+                                      @NotNull List<IonTimeSeries<? extends Scan>> resolvedSeries) {
+
+  }
 }
@@ -0,0 +1,480 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_gridmass;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The scan x m/z grid of GridMass in primitive arrays. For each scan, the (time smoothed) data
+ * points above the minimum height are stored sorted by m/z together with the original intensities
+ * and the spot id that is assigned to each data point. Smoothing and probing are evaluated in
+ * parallel over blocks of scans; the grid is only read while probing, so neighbouring blocks share
+ * the scans around their borders.
+ */
+public class GridMassGrid {
+
+  /**
+   * Number of scans (smoothing) or probe rows (probing) processed by one thread at a time
+   */
+  private static final int BLOCK_SIZE = 32;
+
+  private final int numScans;
+  // per scan, null for ignored scans
+  private final double[][] mzs;
+  private final double[][] intensities;
+  private final double[][] originalIntensities;
+  private final int[][] spotIds;
+  private double minMz = Double.MAX_VALUE;
+  private double maxMz = 0;
+
+  private GridMassGrid(int numScans) {
+    this.numScans = numScans;
+    mzs = new double[numScans][];
+    intensities = new double[numScans][];
+    originalIntensities = new double[numScans][];
+    spotIds = new int[numScans][];
+  }
+
+  /**
+   * Creates the grid from the data points of all scans. With a time span > 0 the intensity of each
+   * data point is the average of the closest data points within the m/z tolerance of all scans
+   * within the time span. Only data points with an intensity >= minimum height are kept.
+   *
+   * @param rts           retention times of the scans (ascending)
+   * @param scanLoader    loads the [m/z values, intensities] of a scan. Called from multiple
+   *                      threads.
+   * @param timeSpan      time span for smoothing (0 to disable)
+   * @param timeMzTol     m/z tolerance for smoothing
+   * @param minimumHeight minimum intensity of the data points in the grid
+   * @param parallel      smooth blocks of scans in parallel
+   * @param isCanceled    checked between scans
+   * @return the grid or null if canceled
+   */
+  @Nullable
+  public static GridMassGrid create(@NotNull double[] rts,
+      @NotNull IntFunction<double[][]> scanLoader, double timeSpan, double timeMzTol,
+      double minimumHeight, boolean parallel, @NotNull BooleanSupplier isCanceled) {
+    final int numScans = rts.length;
+    final GridMassGrid grid = new GridMassGrid(numScans);
+    final double mzTol = Math.max(timeMzTol, 1e-6);
+    final int numBlocks = (numScans + BLOCK_SIZE - 1) / BLOCK_SIZE;
+
+    IntStream blocks = IntStream.range(0, numBlocks);
+    if (parallel) {
+      blocks = blocks.parallel();
+    }
+    blocks.forEach(block -> {
+      final int from = block * BLOCK_SIZE;
+      final int to = Math.min(numScans, from + BLOCK_SIZE);
+
+      // time windows of the block, the scans before and after the block are the halo
+      final int[] windowStart = new int[to - from];
+      final int[] windowEnd = new int[to - from];
+      int capacity = 1;
+      for (int i = from; i < to; i++) {
+        int si = i;
+        int sj = i;
+        if (timeSpan > 0) {
+          final double rt = rts[i];
+          for (si = i; si > 1; si--) {
+            if (rts[si - 1] < rt - timeSpan / 2) {
+              break;
+            }
+          }
+          for (sj = i; sj < numScans - 1; sj++) {
+            if (rts[sj + 1] >= rt + timeSpan / 2) {
+              break;
+            }
+          }
+        }
+        windowStart[i - from] = si;
+        windowEnd[i - from] = sj;
+        capacity = Math.max(capacity, sj - si + 1);
+      }
+
+      // ring buffer of the loaded scans
+      final double[][][] loaded = new double[capacity][][];
+      final int[] loadedScan = new int[capacity];
+      Arrays.fill(loadedScan, -1);
+      final int[] pointers = new int[capacity];
+      double[] tmpMzs = new double[0];
+      double[] tmpIntensities = new double[0];
+      double[] tmpOriginal = new double[0];
+
+      for (int i = from; i < to; i++) {
+        if (isCanceled.getAsBoolean()) {
+          return;
+        }
+        final int si = windowStart[i - from];
+        final int sj = windowEnd[i - from];
+        for (int j = si; j <= sj; j++) {
+          final int slot = j % capacity;
+          if (loadedScan[slot] != j) {
+            loaded[slot] = scanLoader.apply(j);
+            loadedScan[slot] = j;
+          }
+        }
+
+        final double[][] scan = loaded[i % capacity];
+        final double[] scanMzs = scan[0];
+        final double[] scanIntensities = scan[1];
+        if (tmpMzs.length < scanMzs.length) {
+          tmpMzs = new double[scanMzs.length];
+          tmpIntensities = new double[scanMzs.length];
+          tmpOriginal = new double[scanMzs.length];
+        }
+
+        int t = 0;
+        if (timeSpan > 0) {
+          if (sj > si) {
+            for (int j = si; j <= sj; j++) {
+              pointers[j % capacity] = 0;
+            }
+            for (int k = 0; k < scanMzs.length; k++) {
+              // only process those > 0
+              if (scanIntensities[k] <= 0) {
+                continue;
+              }
+              final double mz = scanMzs[k];
+              final double intensity = averageIntensity(mz, si, sj, loaded, pointers, capacity,
+                  mzTol);
+              if (intensity >= minimumHeight) {
+                tmpMzs[t] = mz;
+                tmpIntensities[t] = intensity;
+                tmpOriginal[t] = scanIntensities[k];
+                t++;
+              }
+            }
+          }
+        } else {
+          for (int k = 0; k < scanMzs.length; k++) {
+            if (scanIntensities[k] >= minimumHeight) {
+              tmpMzs[t] = scanMzs[k];
+              tmpIntensities[t] = scanIntensities[k];
+              tmpOriginal[t] = scanIntensities[k];
+              t++;
+            }
+          }
+        }
+        grid.mzs[i] = Arrays.copyOf(tmpMzs, t);
+        grid.intensities[i] = Arrays.copyOf(tmpIntensities, t);
+        grid.originalIntensities[i] = Arrays.copyOf(tmpOriginal, t);
+        grid.spotIds[i] = new int[t];
+      }
+    });
+
+    if (isCanceled.getAsBoolean()) {
+      return null;
+    }
+    for (double[] scanMzs : grid.mzs) {
+      for (double mz : scanMzs) {
+        if (mz < grid.minMz) {
+          grid.minMz = mz;
+        }
+        if (mz > grid.maxMz) {
+          grid.maxMz = mz;
+        }
+      }
+    }
+    return grid;
+  }
+
+  /**
+   * Average intensity of the closest data points to mz (within mzTol) in the scans si to sj. The
+   * pointers advance monotonically while the m/z values of a scan are processed in ascending
+   * order.
+   */
+  private static double averageIntensity(double mz, int si, int sj, double[][][] loaded,
+      int[] pointers, int capacity, double mzTol) {
+    double sum = 0;
+    int count = 0;
+    for (int j = si; j <= sj; j++) {
+      final int slot = j % capacity;
+      final double[] mzsJ = loaded[slot][0];
+      int p = pointers[slot];
+      while (p < mzsJ.length - 1 && mzsJ[p + 1] < mz - mzTol) {
+        p++;
+      }
+      pointers[slot] = p;
+
+      int f = p;
+      for (int m = p + 1; m < mzsJ.length && mzsJ[m] < mz + mzTol; m++) {
+        if (Math.abs(mzsJ[m] - mz) < Math.abs(mzsJ[f] - mz)) {
+          f = m;
+        } else {
+          // the m/z values are sorted, all following values are farther away
+          break;
+        }
+      }
+      if (f > 0 && f < mzsJ.length && Math.abs(mzsJ[f] - mz) <= mzTol
+          && loaded[slot][1][f] > 0) {
+        sum += loaded[slot][1][f];
+        count++;
+      }
+    }
+    return count > 0 ? sum / count : 0;
+  }
+
+  /**
+   * Removes all data points of a scan from the grid
+   */
+  public void ignoreScan(int scan) {
+    mzs[scan] = null;
+    intensities[scan] = null;
+    originalIntensities[scan] = null;
+    spotIds[scan] = null;
+  }
+
+  /**
+   * Generates probes every byScan scans and byMZ m/z (every other row shifted by byMZ / 2) and
+   * moves each probe to its local maximum, see {@link #moveToCenter(double, int, int, double,
+   * double[])}.
+   *
+   * @param minimumHeight probes whose maximum is below are discarded
+   * @param parallel      probe blocks of rows in parallel
+   * @return the remaining probes in the order they were generated or null if canceled
+   */
+  @Nullable
+  public ProbeCenters moveProbesToCenters(double byMZ, int byScan, int scanRadius, double mzRadius,
+      double minimumHeight, boolean parallel, @NotNull BooleanSupplier isCanceled) {
+    final int numRows = (numScans + byScan - 1) / byScan;
+    final int numBlocks = (numRows + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    final ProbeCenters[] blockResults = new ProbeCenters[numBlocks];
+
+    IntStream blocks = IntStream.range(0, numBlocks);
+    if (parallel) {
+      blocks = blocks.parallel();
+    }
+    blocks.forEach(block -> {
+      final ProbeCenters.Builder builder = new ProbeCenters.Builder();
+      final double[] center = new double[3];
+      final int toRow = Math.min(numRows, (block + 1) * BLOCK_SIZE);
+      for (int row = block * BLOCK_SIZE; row < toRow; row++) {
+        if (isCanceled.getAsBoolean()) {
+          return;
+        }
+        final int i = row * byScan;
+        for (double m = minMz - (i % 2) * byMZ / 2; m <= maxMz; m += byMZ) {
+          moveToCenter(m, i, scanRadius, mzRadius, center);
+          if (center[2] >= minimumHeight) {
+            builder.add(m, i, center[0], (int) center[1], center[2]);
+          }
+        }
+      }
+      blockResults[block] = builder.build();
+    });
+
+    if (isCanceled.getAsBoolean()) {
+      return null;
+    }
+    return ProbeCenters.concat(blockResults);
+  }
+
+  /**
+   * Moves a probe to the data point with the highest intensity within scanRadius and mzRadius,
+   * repeated until it does not move anymore. Does not allocate.
+   *
+   * @param center (out) m/z, scan and intensity of the center. The intensity is -1 if the probe did
+   *               not move.
+   */
+  public void moveToCenter(double mz, int scan, int scanRadius, double mzRadius,
+      @NotNull double[] center) {
+    double centerMz = mz;
+    int centerScan = scan;
+    double centerIntensity = -1;
+    double maxMz = 0;
+    int maxScan = 0;
+    double maxIntensity = -1;
+    while (true) {
+      final int k = Math.min(numScans - 1, centerScan + scanRadius);
+      for (int i = Math.max(centerScan - scanRadius, 0); i <= k; i++) {
+        final double[] di = mzs[i];
+        if (di == null || di.length == 0) {
+          continue;
+        }
+        final double[] ii = intensities[i];
+        final double minMZ = centerMz - mzRadius;
+        final double maxMZ = centerMz + mzRadius;
+        for (int j = findFirstMass(minMZ, di); j < di.length && di[j] <= maxMZ; j++) {
+          if (ii[j] > maxIntensity && di[j] >= minMZ) {
+            maxIntensity = ii[j];
+            maxMz = di[j];
+            maxScan = i;
+          }
+        }
+      }
+      if (maxIntensity >= 0 && (maxMz != centerMz || maxScan != centerScan)) {
+        centerMz = maxMz;
+        centerScan = maxScan;
+        centerIntensity = maxIntensity;
+      } else {
+        break;
+      }
+    }
+    center[0] = centerMz;
+    center[1] = centerScan;
+    center[2] = centerIntensity;
+  }
+
+  /**
+   * @return index of the last value <= mass (or 0) in the sorted values
+   */
+  static int findFirstMass(double mass, double[] values) {
+    int l = 0;
+    int r = values.length - 1;
+    int mid;
+    while (l < r) {
+      mid = (r + l) / 2;
+      if (values[mid] > mass) {
+        r = mid - 1;
+      } else if (values[mid] < mass) {
+        l = mid + 1;
+      } else {
+        return mid;
+      }
+    }
+    while (l > 0 && values[l] > mass) {
+      l--;
+    }
+    return l;
+  }
+
+  public int getNumberOfScans() {
+    return numScans;
+  }
+
+  public double getMinMz() {
+    return minMz;
+  }
+
+  public double getMaxMz() {
+    return maxMz;
+  }
+
+  /**
+   * @return number of data points in the grid
+   */
+  public long getNumberOfDataPoints() {
+    long n = 0;
+    for (double[] scanMzs : mzs) {
+      n += scanMzs != null ? scanMzs.length : 0;
+    }
+    return n;
+  }
+
+  /**
+   * @return the m/z values of the data points of a scan or null if the scan is ignored
+   */
+  @Nullable
+  double[] getMzs(int scan) {
+    return mzs[scan];
+  }
+
+  /**
+   * @return the (smoothed) intensities of the data points of a scan or null if the scan is
+   * ignored
+   */
+  @Nullable
+  double[] getIntensities(int scan) {
+    return intensities[scan];
+  }
+
+  /**
+   * @return the intensities of the data points of a scan before smoothing
+   */
+  @Nullable
+  double[] getOriginalIntensities(int scan) {
+    return originalIntensities[scan];
+  }
+
+  /**
+   * @return the spot ids of the data points of a scan (0 if not assigned)
+   */
+  @Nullable
+  int[] getSpotIds(int scan) {
+    return spotIds[scan];
+  }
+
+  /**
+   * Probes after moving to their local maximum as columns
+   *
+   * @param mzs              start m/z of the probes
+   * @param scans            start scan of the probes
+   * @param centerMzs        m/z of the local maxima
+   * @param centerScans      scan of the local maxima
+   * @param centerIntensities intensity of the local maxima
+   */
+  public record ProbeCenters(double[] mzs, int[] scans, double[] centerMzs, int[] centerScans,
+                             double[] centerIntensities) {
+
+    public int size() {
+      return mzs.length;
+    }
+
+    private static ProbeCenters concat(ProbeCenters[] parts) {
+      final Builder builder = new Builder();
+      for (ProbeCenters part : parts) {
+        for (int i = 0; i < part.size(); i++) {
+          builder.add(part.mzs[i], part.scans[i], part.centerMzs[i], part.centerScans[i],
+              part.centerIntensities[i]);
+        }
+      }
+      return builder.build();
+    }
+
+    private static class Builder {
+
+      private double[] mzs = new double[64];
+      private int[] scans = new int[64];
+      private double[] centerMzs = new double[64];
+      private int[] centerScans = new int[64];
+      private double[] centerIntensities = new double[64];
+      private int size = 0;
+
+      private void add(double mz, int scan, double centerMz, int centerScan,
+          double centerIntensity) {
+        if (size == mzs.length) {
+          final int newLength = size * 2;
+          mzs = Arrays.copyOf(mzs, newLength);
+          scans = Arrays.copyOf(scans, newLength);
+          centerMzs = Arrays.copyOf(centerMzs, newLength);
+          centerScans = Arrays.copyOf(centerScans, newLength);
+          centerIntensities = Arrays.copyOf(centerIntensities, newLength);
+        }
+        mzs[size] = mz;
+        scans[size] = scan;
+        centerMzs[size] = centerMz;
+        centerScans[size] = centerScan;
+        centerIntensities[size] = centerIntensity;
+        size++;
+      }
+
+      private ProbeCenters build() {
+        return new ProbeCenters(Arrays.copyOf(mzs, size), Arrays.copyOf(scans, size),
+            Arrays.copyOf(centerMzs, size), Arrays.copyOf(centerScans, size),
+            Arrays.copyOf(centerIntensities, size));
+      }
+    }
+  }
+}
@@ -18,7 +18,6 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_gridmass;
 
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
@@ -27,6 +26,7 @@ import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.featdet_gridmass.GridMassGrid.ProbeCenters;
 import io.github.mzmine.modules.dataprocessing.featdet_chromatogrambuilder.Chromatogram;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
@@ -35,20 +35,16 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.ArrayUtils;
 import io.github.mzmine.util.FeatureConvertors;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.scans.ScanUtils;
 import java.text.Format;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 public class GridMassTask extends AbstractTask {
 
-  private HashMap<Scan, DataPoint[]> dpCache = null;
   private Logger logger = Logger.getLogger(this.getClass().getName());
 
   private final MZmineProject project;
@@ -60,7 +56,7 @@ public class GridMassTask extends AbstractTask {
   private int newPeakID = 0;
   private ScanSelection scanSelection;
   private Scan[] scans;
-  Datum[] roi[];
+  GridMassGrid grid;
   double retentiontime[];
 
   // User parameters
@@ -206,67 +202,22 @@ public class GridMassTask extends AbstractTask {
     // (3.1.3) if extension < mintime ==> mark all pixels with spot ID = -1
     // (4) Group spots within a time-tolerance and mass-tolerance
 
-    logger.info("Getting data points on " + dataFile);
-
-    roi = new Datum[totalScans][];
-    ArrayList<Datum> roiAL = new ArrayList<Datum>();
-    long passed = 0, nopassed = 0;
-    minMasa = Double.MAX_VALUE;
-    maxMasa = 0;
-    int maxJ = 0;
-    boolean[] scanOk = new boolean[totalScans];
-    Arrays.fill(scanOk, true);
-
     logger.info("Smoothing data points on " + dataFile + " (Time min=" + smoothTimeSpan
         + "; Time m/z=" + smoothTimeMZ + ")");
-    IndexedDataPoint[][] data =
-        smoothDataPoints(dataFile, smoothTimeSpan, smoothTimeMZ, 0, smoothMZ, 0, minimumHeight);
-
-    logger.info("Determining intensities (mass sum) per scan on " + dataFile);
-    for (i = 0; i < totalScans; i++) {
-      if (isCanceled())
-        return;
-      scan = scans[i];
-      IndexedDataPoint mzv[] = data[i]; // scan.getDataPoints();
-      double prev = (mzv.length > 0 ? mzv[0].datapoint.getMZ() : 0);
-      double massSum = 0;
-      for (j = 0; j < mzv.length; j++) {
-        if (mzv[j].datapoint.getIntensity() >= minimumHeight)
-          massSum += mzv[j].datapoint.getMZ() - prev;
-        prev = mzv[j].datapoint.getMZ();
-        if (mzv[j].datapoint.getMZ() < minMasa)
-          minMasa = mzv[j].datapoint.getMZ();
-        if (mzv[j].datapoint.getMZ() > maxMasa)
-          maxMasa = mzv[j].datapoint.getMZ();
-      }
-      double dm = 100.0 / (maxMasa - minMasa);
-      if (i % 30 == 0 && debug > 0) {
-        System.out.println("");
-        System.out.print("t=" + Math.round(retentiontime[i] * 100) / 100.0 + ": (in %) ");
-      }
-      if (scanOk[i]) {
-        if (!scanOk[i]) {
-          // Disable neighbouring scans, how many ?
-          for (j = i; j > 0
-              && retentiontime[j] + additionTimeMaxPeaksPerScan > retentiontime[i]; j--) {
-            scanOk[j] = false;
-          }
-          for (j = i; j < totalScans
-              && retentiontime[j] - additionTimeMaxPeaksPerScan < retentiontime[i]; j++) {
-            scanOk[j] = false;
-          }
-        }
-        if (debug > 0)
-          System.out.print(((int) (massSum * dm)) + (scanOk[i] ? " " : "*** "));
-      } else {
-        if (debug > 0)
-          System.out.print(((int) (massSum * dm)) + (scanOk[i] ? " " : "* "));
-      }
-      setProcedure(i, totalScans, 1);
+    grid = GridMassGrid.create(retentiontime, index -> {
+      final Scan indexScan = scans[index];
+      final int n = indexScan.getNumberOfDataPoints();
+      return new double[][]{indexScan.getMzValues(new double[n]),
+          indexScan.getIntensityValues(new double[n])};
+    }, smoothTimeSpan, smoothTimeMZ, minimumHeight, true, this::isCanceled);
+    if (grid == null) {
+      return;
     }
-
-    if (debug > 0)
-      System.out.println("");
+    setProcedure(1, 1, 1);
+    minMasa = grid.getMinMz();
+    maxMasa = grid.getMaxMz();
+    boolean[] scanOk = new boolean[totalScans];
+    Arrays.fill(scanOk, true);
 
     String[] it = ignoreTimes.trim().split(", ?");
     for (j = 0; j < it.length; j++) {
@@ -282,36 +233,14 @@ public class GridMassTask extends AbstractTask {
         }
       }
     }
-
-    passed = 0;
-    nopassed = 0;
     for (i = 0; i < totalScans; i++) {
-      if (i % 100 == 0 && isCanceled())
-        return;
-      if (scanOk[i]) {
-        scan = scans[i];
-        IndexedDataPoint mzv[] = data[i];
-        // DataPoint mzvOriginal[] = scan.getDataPoints();
-        ArrayList<Datum> dal = new ArrayList<Datum>();
-        for (j = 0; j < mzv.length; j++) {
-          if (mzv[j].datapoint.getIntensity() >= minimumHeight) {
-            SimpleDataPoint origDP = new SimpleDataPoint(scan.getMzValue(mzv[j].index),
-                scan.getIntensityValue(mzv[j].index));
-            dal.add(new Datum(mzv[j].datapoint, i, origDP));
-            passed++;
-          } else {
-            nopassed++;
-          }
-        }
-        if (j > maxJ)
-          maxJ = j;
-        roi[i] = dal.toArray(new Datum[0]);
-        roiAL.addAll(dal);
+      if (!scanOk[i]) {
+        grid.ignoreScan(i);
       }
-      setProcedure(i, totalScans, 2);
     }
-    logger.info(passed + " intensities >= " + minimumHeight + " of " + (passed + nopassed) + " ("
-        + Math.round(passed * 10000.0 / (passed + nopassed)) / 100.0 + "%) on " + dataFile);
+    setProcedure(1, 1, 2);
+    logger.info(grid.getNumberOfDataPoints() + " intensities >= " + minimumHeight + " on "
+        + dataFile);
 
     // New "probing" algorithm
     // (1) Generate probes all over chromatograms
@@ -319,51 +248,26 @@ public class GridMassTask extends AbstractTask {
     // new maximum
     // (3) assign spot id to each "center" using all points within region
 
-    // (1) Generate probes all over
+    // (1) Generate probes all over and (2) move each probe to their closest center
     double byMZ = Math.max(mzTol * 2, 1e-6);
     int byScan = Math.max(1, tolScans / 4);
-    logger.info("Creating Grid of probes on " + dataFile + " every " + mzFormat.format(byMZ)
-        + " m/z and " + byScan + " scans");
-    double m;
-    int ndata = (int) Math
-        .round((((double) totalScans / (double) byScan) + 1) * ((maxMasa - minMasa + byMZ) / byMZ));
-    Probe probes[] = new Probe[ndata];
-    int idata = 0;
-    for (i = 0; i < totalScans; i += byScan) {
-      if (i % 100 == 0 && isCanceled())
-        return;
-      for (m = minMasa - (i % 2) * byMZ / 2; m <= maxMasa; m += byMZ) {
-        probes[idata++] = new Probe(m, i);
-      }
-      setProcedure(i, totalScans, 3);
-    }
-
-    // (2) Move each probe to their closest center
     double mzR = byMZ / 2;
     int scanR = Math.max(byScan - 1, 2);
-    logger.info("Finding local maxima for each probe on " + dataFile + " radius: scans=" + scanR
-        + ", m/z=" + mzR);
-    int okProbes = 0;
-    for (i = 0; i < idata; i++) {
-      if (i % 100 == 0 && isCanceled())
-        return;
-      moveProbeToCenter(probes[i], scanR, mzR);
-      if (probes[i].intensityCenter < minimumHeight) {
-        probes[i] = null;
-      } else {
-        okProbes++;
-      }
-      setProcedure(i, idata, 4);
+    logger.info("Creating Grid of probes on " + dataFile + " every " + mzFormat.format(byMZ)
+        + " m/z and " + byScan + " scans, finding local maxima for each probe, radius: scans="
+        + scanR + ", m/z=" + mzR);
+    final ProbeCenters centers = grid.moveProbesToCenters(byMZ, byScan, scanR, mzR,
+        minimumHeight, true, this::isCanceled);
+    if (centers == null) {
+      return;
     }
-    if (okProbes > 0) {
-      Probe[] pArr = new Probe[okProbes];
-      for (okProbes = i = 0; i < idata; i++) {
-        if (probes[i] != null) {
-          pArr[okProbes++] = probes[i];
-        }
-      }
-      probes = pArr;
-      pArr = null;
+    setProcedure(1, 1, 4);
+    Probe probes[] = new Probe[centers.size()];
+    for (i = 0; i < probes.length; i++) {
+      probes[i] = new Probe(centers.mzs()[i], centers.scans()[i]);
+      probes[i].mzCenter = centers.centerMzs()[i];
+      probes[i].scanCenter = centers.centerScans()[i];
+      probes[i].intensityCenter = centers.centerIntensities()[i];
     }
     // (3) Assign spot id to each "center"
     logger.info("Sorting probes " + dataFile);
@@ -513,7 +417,7 @@ public class GridMassTask extends AbstractTask {
       if (sx.size() > 0 && sx.maxScan - sx.minScan + 1 >= tolScans) {
         if (i % 100 == 0 && isCanceled())
           return;
-        sx.buildMaxDatumFromScans(roi, minimumHeight);
+        sx.buildMaxDatumFromScans(grid, minimumHeight);
         if (sx.getMaxDatumScans() >= tolScans && (sx.getContigousMaxDatumScans() >= tolScans
             || sx.getContigousToMaxDatumScansRatio() > 0.5)) {
           Chromatogram peak = new Chromatogram(dataFile, scans);
@@ -597,200 +501,31 @@ public class GridMassTask extends AbstractTask {
     procedure = (process + (float) i / (float) max) / procedureLen;
   }
 
-  public IndexedDataPoint[][] smoothDataPoints(RawDataFile dataFile, double timeSpan,
-      double timeMZSpan, int scanSpan, double mzTol, int mzPoints, double minimumHeight) {
-    List<Scan> scanNumbers = dataFile.getScanNumbers(1);
-    int totalScans = scanNumbers.size();
-    DataPoint mzValues[][] = null; // [relative scan][j value]
-    DataPoint mzValuesJ[] = null;
-    Scan mzValuesScan[] = null;
-    int mzValuesMZidx[] = null;
-    IndexedDataPoint newMZValues[][] = null;
-    IndexedDataPoint tmpDP[] = new IndexedDataPoint[0];
-    newMZValues = new IndexedDataPoint[totalScans][];
-    int i, j, si, sj, ii, k, ssi, ssj, m;
-    double timeSmoothingMZtol = Math.max(timeMZSpan, 1e-6);
-
-    int modts = Math.max(1, totalScans / 10);
-
-    for (i = 0; i < totalScans; i++) {
-
-      if (i % 100 == 0 && isCanceled())
-        return null;
-
-      // Smoothing in TIME space
-      Scan scan = scanNumbers.get(i);
-      double rt = retentiontime[i];
-      DataPoint[] xDP = null;
-      IndexedDataPoint[] iDP = null;
-      sj = si = i;
-      ssi = ssj = i;
-      int t = 0;
-      if (timeSpan > 0 || scanSpan > 0) {
-        if (scan != null) {
-          for (si = i; si > 1; si--) {
-            if (retentiontime[si - 1] < rt - timeSpan / 2) {
-              break;
-            }
-          }
-          for (sj = i; sj < totalScans - 1; sj++) {
-            if (retentiontime[sj + 1] >= rt + timeSpan / 2) {
-              break;
-            }
-          }
-          ssi = i - (scanSpan - 1) / 2;
-          ssj = i + (scanSpan - 1) / 2;
-          if (ssi < 0) {
-            ssj += -ssi;
-            ssi = 0;
-          }
-          if (ssj >= totalScans) {
-            ssi -= (ssj - totalScans + 1);
-            ssj = totalScans - 1;
-          }
-          if (sj - si + 1 < scanSpan) {
-            si = ssi;
-            sj = ssj;
-          }
-        }
-        if (scan != null && sj > si) {
-          // Allocate
-          if (mzValues == null || mzValues.length < sj - si + 1) {
-            mzValues = new DataPoint[sj - si + 1][];
-            mzValuesScan = new Scan[sj - si + 1];
-            mzValuesMZidx = new int[sj - si + 1];
-          }
-          // Load Data Points
-          for (j = si; j <= sj; j++) {
-            int jsi = j - si;
-            if (mzValues[jsi] == null || jsi >= mzValuesScan.length - 1
-                || !mzValuesScan[jsi + 1].equals(scanNumbers.get(j))) {
-              Scan xscan = scanNumbers.get(j);
-              mzValues[jsi] = ScanUtils.extractDataPoints(xscan);
-              mzValuesScan[jsi] = scanNumbers.get(j);
-            } else {
-              mzValues[jsi] = mzValues[jsi + 1];
-              mzValuesScan[jsi] = mzValuesScan[jsi + 1];
-            }
-            mzValuesMZidx[jsi] = 0;
-          }
-          // Estimate Averages
-          ii = i - si;
-          if (tmpDP.length < mzValues[ii].length)
-            tmpDP = new IndexedDataPoint[mzValues[ii].length * 3 / 2];
-          for (k = 0; k < mzValues[ii].length; k++) {
-            DataPoint dp = mzValues[ii][k];
-            double mz = dp.getMZ();
-            double intensidad = 0;
-            if (dp.getIntensity() > 0) { // only process those > 0
-              double a = 0;
-              short c = 0;
-              int f = 0;
-              for (j = 0; j <= sj - si; j++) {
-                for (mzValuesJ = mzValues[j]; mzValuesMZidx[j] < mzValuesJ.length - 1
-                    && mzValuesJ[mzValuesMZidx[j] + 1].getMZ() < mz
-                        - timeSmoothingMZtol; mzValuesMZidx[j]++);
-
-                f = mzValuesMZidx[j];
-
-                for (m = mzValuesMZidx[j] + 1; m < mzValuesJ.length
-                    && mzValuesJ[m].getMZ() < mz + timeSmoothingMZtol; m++) {
-                  if (Math.abs(mzValuesJ[m].getMZ() - mz) < Math.abs(mzValuesJ[f].getMZ() - mz)) {
-                    f = m;
-                  } else {
-                    // siempre debe ser mas cercano porque
-                    // están ordenados por masa, entonces
-                    // parar la búsqueda
-                    break;
-                  }
-                }
-                if (f > 0 && f < mzValuesJ.length
-                    && Math.abs(mzValuesJ[f].getMZ() - mz) <= timeSmoothingMZtol
-                    && mzValuesJ[f].getIntensity() > 0) { // >=
-                  // minimumHeight
-                  // ?
-                  // System.out.println("mz="+mz+";
-                  // Closer="+mzValuesJ[f].getMZ()+", f="+f+",
-                  // Intensity="+mzValuesJ[f].getIntensity());
-                  a += mzValuesJ[f].getIntensity();
-                  c++;
-                }
-              }
-              intensidad = c > 0 ? a / c : 0;
-              if (intensidad >= minimumHeight) {
-                tmpDP[t++] = new IndexedDataPoint(k, new SimpleDataPoint(mz, intensidad));
-              }
-            }
-          }
-
-        }
-      } else if (scan != null) {
-        xDP = ScanUtils.extractDataPoints(scan);
-        if (tmpDP.length < xDP.length)
-          tmpDP = new IndexedDataPoint[xDP.length];
-        for (k = 0; k < xDP.length; k++) {
-          if (xDP[k].getIntensity() >= minimumHeight) {
-            tmpDP[t++] = new IndexedDataPoint(k, xDP[k]);
-          }
-        }
-      }
-      iDP = new IndexedDataPoint[t];
-      for (k = 0; k < t; k++) {
-        iDP[k] = tmpDP[k];
-      }
-      newMZValues[i] = iDP;
-
-      setProcedure(i, totalScans, 0);
-
-      if (i % modts == 0) {
-        logger.info("Smoothing/Caching " + dataFile + "..." + (i / modts) * 10 + "%");
-      }
-
-    }
-
-    return newMZValues;
-  }
-
-  public double HWHM(double x0, double x1, double y0, double y1) {
-    // x0 is the "scan" or m/z estimated at the highest peak
-    // y0 is the "highest" peak intensity
-    // x1 is the "scan" or m/z estimated at the point closest to (highest
-    // intensity / 2)
-    // y1 is the intensity closest to (highest intensity / 2)
-    // x1_2 = x0 - F * (x0-x1)
-    // F = (y0 - y0/2) / (y0 - y1) = y0/2 / (y0 - y1)
-    // x1_2 = x0(1-F) + x1*F /// this X1/2 is given a triangle, so using the
-    // same slope than between x0 and x1, this x1_2 is farther than the
-    // actual 1/2 point
-    // x3_4 = (x1_2 - x1) / 2 + x1 // aproximation to real X 1/2 by the half
-    // of the difference between the x1 and the estimated x1_2
-    double f = (y0 / 2) / (y0 - y1);
-    if (Double.isInfinite(f))
-      f = 1;
-    double x3_4 = (x1 * (1 + f) / 2) - (x0 * (1 + f) / 2);
-    return Math.abs(x3_4);
-  }
-
   int addMaxDatumFromScans(SpotByProbes s, Chromatogram peak) {
 
     int i, j;
     int adds = 0;
     for (i = s.minScan; i <= s.maxScan; i++) {
-      Datum[] di = roi[i];
-      if (di != null && di.length > 0) {
-        Datum max = new Datum(new SimpleDataPoint(0, -1), 0, new SimpleDataPoint(0, -1));
-        int idx = findFirstMass(s.minMZ, di);
-        for (j = idx; j < di.length && di[j].mz <= s.maxMZ; j++) {
-          Datum d = di[j];
-          if (d.spotId == s.spotId) {
-            if (d.intensity > max.intensity && d.mz >= s.minMZ && d.intensity > minimumHeight) {
-              max = d;
+      final double[] mzs = grid.getMzs(i);
+      if (mzs != null && mzs.length > 0) {
+        final double[] intensities = grid.getIntensities(i);
+        final int[] spotIds = grid.getSpotIds(i);
+        int max = -1;
+        double maxIntensity = -1;
+        int idx = GridMassGrid.findFirstMass(s.minMZ, mzs);
+        for (j = idx; j < mzs.length && mzs[j] <= s.maxMZ; j++) {
+          if (spotIds[j] == s.spotId) {
+            if (intensities[j] > maxIntensity && mzs[j] >= s.minMZ
+                && intensities[j] > minimumHeight) {
+              max = j;
+              maxIntensity = intensities[j];
             }
           }
         }
-        if (max.intensity > 0) {
+        if (maxIntensity > 0) {
           adds++;
-          peak.addMzPeak(scans[i], new SimpleDataPoint(max.mzOriginal, max.intensityOriginal));
+          peak.addMzPeak(scans[i],
+              new SimpleDataPoint(mzs[max], grid.getOriginalIntensities(i)[max]));
         }
       }
     }
@@ -800,29 +535,27 @@ public class GridMassTask extends AbstractTask {
   void assignSpotIdToDatumsFromScans(SpotByProbes s, int sRadius, double mzRadius) {
 
     int i, j;
+    final double[] center = new double[3];
     for (i = s.minScan; i <= s.maxScan; i++) {
-      Datum[] di = roi[i];
-      if (di != null && di.length > 0) {
-        int idx = findFirstMass(s.minMZ - mzRadius, di);
-        for (j = idx; j < di.length && di[j].mz <= s.maxMZ + mzRadius; j++) {
-          Datum d = di[j];
-          if (d.mz >= s.minMZ - mzRadius) {
-            if (d.spotId != 0) {
+      final double[] mzs = grid.getMzs(i);
+      if (mzs != null && mzs.length > 0) {
+        final int[] spotIds = grid.getSpotIds(i);
+        int idx = GridMassGrid.findFirstMass(s.minMZ - mzRadius, mzs);
+        for (j = idx; j < mzs.length && mzs[j] <= s.maxMZ + mzRadius; j++) {
+          if (mzs[j] >= s.minMZ - mzRadius) {
+            if (spotIds[j] != 0) {
               // Some spot already assigned this to it. Check
               // exactly who is the winner
-              Probe p = new Probe(d.mz, d.scan);
-              moveProbeToCenter(p, sRadius, mzRadius);
-              if (p.mzCenter == s.center.mzCenter && p.scanCenter == s.center.scanCenter) {
+              grid.moveToCenter(mzs[j], i, sRadius, mzRadius, center);
+              // a probe that did not move stays at the datum
+              if (center[0] == s.center.mzCenter && (int) center[1] == s.center.scanCenter) {
                 // This datum is actually MINE (s) !!!, this
                 // will happen to datums close to spot borders
                 // and that compete with other spot
-                // System.out.println("Reassigning spot to
-                // Id="+s.spotId+" from
-                // Spot:"+d.toString());
-                s.setSpotIdToDatum(d);
+                s.setSpotIdToDatum(grid, i, j);
               }
             } else {
-              s.setSpotIdToDatum(d);
+              s.setSpotIdToDatum(grid, i, j);
             }
           }
         }
@@ -839,182 +572,17 @@ public class GridMassTask extends AbstractTask {
     double minMZ = Math.min(s.minMZ, s2.minMZ);
     double maxMZ = Math.max(s.maxMZ, s2.maxMZ);
     for (i = Math.min(s.minScan, s2.minScan); i <= mxScan; i++) {
-      Datum[] di = roi[i];
-      if (di != null && di.length > 0) {
-        int idx = findFirstMass(minMZ - mzRadius, di);
-        for (j = idx; j < di.length && di[j].mz <= maxMZ + mzRadius; j++) {
-          Datum d = di[j];
-          if (d.spotId == oldSpotId) {
-            s.setSpotIdToDatum(d);
+      final double[] mzs = grid.getMzs(i);
+      if (mzs != null && mzs.length > 0) {
+        final int[] spotIds = grid.getSpotIds(i);
+        int idx = GridMassGrid.findFirstMass(minMZ - mzRadius, mzs);
+        for (j = idx; j < mzs.length && mzs[j] <= maxMZ + mzRadius; j++) {
+          if (spotIds[j] == oldSpotId) {
+            s.setSpotIdToDatum(grid, i, j);
           }
         }
       }
     }
   }
 
-  void moveProbeToCenter(Probe p, int sRadius, double mzRadius) {
-
-    int i, j, k;
-    double maxMZ, minMZ;
-    boolean move = true;
-    Datum max = new Datum(new SimpleDataPoint(0, -1), 0, new SimpleDataPoint(0, -1));
-    while (move) {
-      k = Math.min(totalScans - 1, p.scanCenter + sRadius);
-      for (i = Math.max(p.scanCenter - sRadius, 0); i <= k; i++) {
-        Datum[] di = roi[i];
-        if (di != null && di.length > 0) {
-          minMZ = p.mzCenter - mzRadius;
-          int idx = findFirstMass(minMZ, di);
-          maxMZ = p.mzCenter + mzRadius;
-          for (j = idx; j < di.length && di[j].mz <= maxMZ; j++) {
-            Datum d = di[j];
-            if (d.intensity > max.intensity && d.mz >= minMZ) {
-              max = d;
-            }
-          }
-        }
-      }
-      if (max.intensity >= 0 && (max.mz != p.mzCenter || max.scan != p.scanCenter)) {
-        p.mzCenter = max.mz;
-        p.scanCenter = max.scan;
-        p.intensityCenter = max.intensity;
-        // p.moves++;
-      } else {
-        move = false;
-      }
-    }
-  }
-
-  double intensityForMZorScan(ArrayList<DatumExpand> deA, double mz, int scan) {
-    double h = -1;
-    int j;
-    for (j = 0; j < deA.size(); j++) {
-      DatumExpand de = deA.get(j);
-      if ((de.dato.scan == scan || de.dato.mz == mz) && de.dato.intensity > h) {
-        h = de.dato.intensity;
-      }
-    }
-    return h;
-  }
-
-  double[] massCenter(int l, int r, double min, double max) {
-    double x = 0;
-    double y = 0;
-    double sum = 0;
-    double maxValue = 0;
-    for (int i = l; i <= r; i++) {
-      DataPoint mzs[] = ScanUtils.extractDataPoints(scans[i]);
-      if (mzs != null) {
-        for (int j = findFirstMass(min, mzs); j < mzs.length; j++) {
-          double mass = mzs[j].getMZ();
-          if (mass >= min) {
-            if (mass <= max) {
-              double intensity = mzs[j].getIntensity();
-              if (intensity >= minimumHeight) {
-                x += i * intensity;
-                y += mass * intensity;
-                sum += intensity;
-                if (intensity > maxValue) {
-                  maxValue = intensity;
-                }
-              }
-            } else {
-              break;
-            }
-          }
-        }
-      }
-    }
-    if (sum > 0.0) {
-      x /= sum;
-      y /= sum;
-    }
-    return new double[] {x, y, maxValue};
-  }
-
-  static int findFirstMass(double mass, DataPoint mzValues[]) {
-    int l = 0;
-    int r = mzValues.length - 1;
-    int mid = 0;
-    while (l < r) {
-      mid = (r + l) / 2;
-      if (mzValues[mid].getMZ() > mass) {
-        r = mid - 1;
-      } else if (mzValues[mid].getMZ() < mass) {
-        l = mid + 1;
-      } else {
-        return mid;
-      }
-    }
-    while (l > 0 && mzValues[l].getMZ() > mass)
-      l--;
-    return l;
-  }
-
-  static int findFirstMass(double mass, Datum mzValues[]) {
-    return findFirstMass(mass, mzValues, 0, mzValues.length - 1);
-  }
-
-  static int findFirstMass(double mass, Datum mzValues[], int l, int r) {
-    int mid = 0;
-    while (l < r) {
-      mid = (r + l) / 2;
-      if (mzValues[mid].mz > mass) {
-        r = mid - 1;
-      } else if (mzValues[mid].mz < mass) {
-        l = mid + 1;
-      } else {
-        return mid;
-      }
-    }
-    while (l > 0 && mzValues[l].mz > mass)
-      l--;
-    return l;
-  }
-
-  Spot intensities(int l, int r, double min, double max, Chromatogram chr, PearsonCorrelation stats,
-      int spotId) {
-    boolean passSpot = false;
-    Spot s = new Spot();
-    if (r >= scans.length)
-      r = scans.length - 1;
-    if (l < 0)
-      l = 0;
-    for (int i = l; i <= r; i++) {
-      Datum mzs[] = roi[i];
-      if (mzs != null) {
-        Datum mzMax = null;
-        for (int j = findFirstMass(min, mzs); j < mzs.length; j++) {
-          double mass = mzs[j].mz;
-          double mjint = mzs[j].intensity;
-          if (mass >= min) {
-            if (mass <= max) {
-              if (mzs[j].spotId == spotId || passSpot) {
-                s.addPoint(i, mass, (mjint >= minimumHeight ? mjint : -mjint));
-                if (mjint >= minimumHeight) {
-                  if (mzMax == null || mjint > mzMax.intensity) {
-                    mzMax = mzs[j];
-                  }
-                }
-              } else {
-                if (mjint >= minimumHeight)
-                  s.pointsNoSpot++;
-              }
-            } else {
-              break;
-            }
-          }
-        }
-        if (chr != null && mzMax != null) {
-          // Add ONLY THE MAX INTENSITY PER SCAN
-          chr.addMzPeak(scans[i], new SimpleDataPoint(mzMax.mz, mzMax.intensity)); // mzMax
-        }
-        if (stats != null && mzMax != null) {
-          stats.enter(i, mzMax.mz);
-        }
-      }
-    }
-    return s;
-  }
-
 }
@@ -32,7 +32,10 @@ class SpotByProbes implements Comparable<SpotByProbes> {
   int spotId = -1;
   Probe center = null;
   int consecutiveScans = 0;
-  ArrayList<Datum> maxDatums = null;
+  // scans with a maximum data point of this spot, see buildMaxDatumFromScans
+  int numMaxDatums = 0;
+  int firstMaxDatumScan = -1;
+  int lastMaxDatumScan = -1;
 
   SpotByProbes() {}
 
@@ -79,20 +82,25 @@ class SpotByProbes implements Comparable<SpotByProbes> {
       minIntensity = p.intensityCenter;
   }
 
-  void setSpotIdToDatum(Datum d) {
-    d.spotId = spotId;
-    if (d.mz > maxMZ)
-      maxMZ = d.mz;
-    if (d.mz < minMZ)
-      minMZ = d.mz;
-    if (d.scan > maxScan)
-      maxScan = d.scan;
-    if (d.scan < minScan)
-      minScan = d.scan;
-    if (d.intensity > maxIntensity)
-      maxIntensity = d.intensity;
-    if (d.intensity < minIntensity)
-      minIntensity = d.intensity;
+  /**
+   * Assigns this spot to a data point of the grid
+   */
+  void setSpotIdToDatum(GridMassGrid grid, int scan, int index) {
+    grid.getSpotIds(scan)[index] = spotId;
+    final double mz = grid.getMzs(scan)[index];
+    final double intensity = grid.getIntensities(scan)[index];
+    if (mz > maxMZ)
+      maxMZ = mz;
+    if (mz < minMZ)
+      minMZ = mz;
+    if (scan > maxScan)
+      maxScan = scan;
+    if (scan < minScan)
+      minScan = scan;
+    if (intensity > maxIntensity)
+      maxIntensity = intensity;
+    if (intensity < minIntensity)
+      minIntensity = intensity;
   }
 
   void addProbesFromSpot(SpotByProbes sbp, boolean clear) {
@@ -148,35 +156,34 @@ class SpotByProbes implements Comparable<SpotByProbes> {
     }
   }
 
-  void buildMaxDatumFromScans(Datum[][] roi, double minimumHeight) {
+  void buildMaxDatumFromScans(GridMassGrid grid, double minimumHeight) {
 
     int i, j;
-    ArrayList<Datum> mxD = new ArrayList<Datum>();
     int cont = 0;
     consecutiveScans = 0;
+    numMaxDatums = 0;
     double theMinMZ = minMZ;// - mzTol;
     double theMaxMZ = maxMZ;// + mzTol;
     for (i = minScan; i <= maxScan; i++) {
-      Datum[] di = roi[i];
-      if (di != null && di.length > 0) {
-        Datum max = null;
-        int idx = GridMassTask.findFirstMass(theMinMZ, di);
-        for (j = idx; j < di.length && di[j].mz <= theMaxMZ; j++) {
-          Datum d = di[j];
-          if (d.spotId == spotId) {
-            if ((max == null || d.intensity > max.intensity) && d.intensity > minimumHeight) { // d.mz
-                                                                                               // >=
-              // theMinMZ &&
-              // (it is
-              // already
-              // assigned to
-              // spotid)
-              max = d;
-            }
+      final double[] mzs = grid.getMzs(i);
+      if (mzs != null && mzs.length > 0) {
+        final double[] intensities = grid.getIntensities(i);
+        final int[] spotIds = grid.getSpotIds(i);
+        double max = Double.NaN;
+        int idx = GridMassGrid.findFirstMass(theMinMZ, mzs);
+        for (j = idx; j < mzs.length && mzs[j] <= theMaxMZ; j++) {
+          // d.mz >= theMinMZ is not checked, the datum is already assigned to the spot id
+          if (spotIds[j] == spotId && (Double.isNaN(max) || intensities[j] > max)
+              && intensities[j] > minimumHeight) {
+            max = intensities[j];
           }
         }
-        if (max != null && max.intensity > 0) {
-          mxD.add(max);
+        if (!Double.isNaN(max) && max > 0) {
+          if (numMaxDatums == 0) {
+            firstMaxDatumScan = i;
+          }
+          lastMaxDatumScan = i;
+          numMaxDatums++;
           cont++;
         } else {
           cont = 0;
@@ -187,21 +194,19 @@ class SpotByProbes implements Comparable<SpotByProbes> {
       if (cont > consecutiveScans)
         consecutiveScans = cont;
     }
-    maxDatums = mxD;
 
   }
 
   int getMaxDatumScans() {
-    return (maxDatums == null || maxDatums.size() == 0 ? 0
-        : maxDatums.get(maxDatums.size() - 1).scan - maxDatums.get(0).scan + 1); // maxDatums.size()
+    return (numMaxDatums == 0 ? 0 : lastMaxDatumScan - firstMaxDatumScan + 1);
   }
 
   int getContigousMaxDatumScans() {
-    return (maxDatums == null || maxDatums.size() == 0 ? 0 : consecutiveScans);
+    return (numMaxDatums == 0 ? 0 : consecutiveScans);
   }
 
   float getContigousToMaxDatumScansRatio() {
-    if (maxDatums == null || maxDatums.size() == 0)
+    if (numMaxDatums == 0)
       return 0;
     return ((float) getContigousMaxDatumScans() / (float) getMaxDatumScans());
   }
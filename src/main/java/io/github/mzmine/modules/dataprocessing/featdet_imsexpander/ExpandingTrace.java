@@ -128,6 +128,17 @@ public class ExpandingTrace {
   }
 
   public int getNumberOfMobilityScans() {
-    return dataPoints.size();
+    synchronized (dataPoints) {
+      return dataPoints.size();
+    }
+  }
+
+  /**
+   * Releases the data points after the trace was converted.
+   */
+  public void clearDataPoints() {
+    synchronized (dataPoints) {
+      dataPoints.clear();
+    }
   }
 }
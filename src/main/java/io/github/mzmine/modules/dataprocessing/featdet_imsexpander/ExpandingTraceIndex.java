@@ -0,0 +1,104 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_imsexpander;
+
+import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * m/z interval index of {@link ExpandingTrace}s. The traces are sorted by the lower bound of their
+ * m/z range. Since the ranges may overlap, the running maximum of the upper bounds is used to find
+ * the first trace that may contain an m/z, so the candidates of a data point are found by two
+ * binary searches.
+ */
+class ExpandingTraceIndex {
+
+  private final ExpandingTrace[] traces;
+  private final double[] lowerMzs;
+  private final double[] upperMzs;
+  // maximum upper bound of all traces up to this index
+  private final double[] maxUpperMzs;
+
+  ExpandingTraceIndex(@NotNull Collection<ExpandingTrace> traces) {
+    this.traces = traces.stream()
+        .sorted(Comparator.comparingDouble(t -> t.getMzRange().lowerEndpoint()))
+        .toArray(ExpandingTrace[]::new);
+    lowerMzs = new double[this.traces.length];
+    upperMzs = new double[this.traces.length];
+    maxUpperMzs = new double[this.traces.length];
+    double maxUpper = Double.NEGATIVE_INFINITY;
+    for (int i = 0; i < this.traces.length; i++) {
+      lowerMzs[i] = this.traces[i].getMzRange().lowerEndpoint();
+      upperMzs[i] = this.traces[i].getMzRange().upperEndpoint();
+      maxUpper = Math.max(maxUpper, upperMzs[i]);
+      maxUpperMzs[i] = maxUpper;
+    }
+  }
+
+  public int getNumberOfTraces() {
+    return traces.length;
+  }
+
+  /**
+   * Offers the data point to all traces containing its m/z, in order of the lower m/z bound of the
+   * traces, until one trace accepts the data point.
+   *
+   * @param access the data access set to the current mobility scan.
+   * @param index  the data point index.
+   * @return true if a trace accepted the data point.
+   */
+  public boolean offerDataPoint(@NotNull MobilityScanDataAccess access, int index) {
+    final double mz = access.getMzValue(index);
+    // last trace with lower bound <= mz
+    int last = Arrays.binarySearch(lowerMzs, mz);
+    if (last < 0) {
+      last = -last - 2;
+    } else {
+      // equal lower bounds are possible
+      while (last + 1 < lowerMzs.length && lowerMzs[last + 1] == mz) {
+        last++;
+      }
+    }
+    if (last < 0) {
+      return false;
+    }
+
+    // first trace with max upper bound >= mz
+    int low = 0;
+    int high = last;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (maxUpperMzs[mid] < mz) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    for (int i = low; i <= last; i++) {
+      if (upperMzs[i] >= mz && traces[i].offerDataPoint(access, index)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
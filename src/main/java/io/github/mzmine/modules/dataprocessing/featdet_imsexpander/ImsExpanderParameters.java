@@ -60,12 +60,18 @@ public class ImsExpanderParameters extends SimpleParameterSet {
           + "mobilogram.", 1, true), false);
 
 
+  public static final IntegerParameter frameWindow = new IntegerParameter("Frame window",
+      "Number of frames that are processed at once. Traces ending before the next window are "
+      + "finished and their data points are released.\nLower values reduce the memory demand, "
+      + "higher values reduce the synchronisation between the threads.", 500, 1, null);
+
   public static final OriginalFeatureListHandlingParameter handleOriginal = //
       new OriginalFeatureListHandlingParameter(false);
 
   public ImsExpanderParameters() {
     super(
-        new Parameter[]{featureLists, mzTolerance, useRawData, mobilogramBinWidth, handleOriginal});
+        new Parameter[]{featureLists, mzTolerance, useRawData, mobilogramBinWidth, frameWindow,
+            handleOriginal});
   }
 
   @Override
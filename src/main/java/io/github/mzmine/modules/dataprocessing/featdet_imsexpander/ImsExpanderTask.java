@@ -18,28 +18,27 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_imsexpander;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Range;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
+import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
 import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
+import io.github.mzmine.datamodel.features.FeatureListBuilder;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.FeatureDataType;
-import io.github.mzmine.gui.preferences.MZminePreferences;
-import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
-import io.github.mzmine.taskcontrol.AllTasksFinishedListener;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import io.github.mzmine.util.DataTypeUtils;
@@ -48,25 +47,38 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+/**
+ * Expands the features of a feature list into the mobility dimension. The frames are streamed in
+ * windows of a configurable size. The frames of a window are read once each, in small chunks that
+ * are distributed over a work stealing pool, and the data points are assigned to the traces via an
+ * m/z interval index. After each window, the traces that end before the next window are converted
+ * to {@link IonMobilogramTimeSeries} in parallel and their data points are released.
+ */
 public class ImsExpanderTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(ImsExpanderTask.class.getName());
-  private static final int NUM_THREADS = MZmineCore.getConfiguration().getPreferences()
-      .getParameter(MZminePreferences.numOfThreads).getValue();
   private static final String SUFFIX = " expanded ";
+  // number of chunks per thread in a frame window, so idle threads can steal work
+  private static final int CHUNKS_PER_THREAD = 4;
+
   protected final ParameterSet parameters;
   protected final ModularFeatureList flist;
-  final List<AbstractTask> tasks = new ArrayList<>();
   private final MZmineProject project;
   private final MZTolerance mzTolerance;
   private final boolean useMzToleranceRange;
+  private final boolean useRawData;
+  private final double customNoiseLevel;
+  private final int frameWindow;
+  private final int allowedThreads;
   private final AtomicInteger processedFrames = new AtomicInteger(0);
   private final AtomicInteger processedRows = new AtomicInteger(0);
   private final int binWidth;
@@ -81,9 +93,14 @@ public class ImsExpanderTask extends AbstractTask {
     this.parameters = parameters;
     this.project = project;
     this.flist = flist;
+    this.allowedThreads = Math.max(1, allowedThreads);
     useMzToleranceRange = parameters.getParameter(ImsExpanderParameters.mzTolerance).getValue();
     mzTolerance = parameters.getParameter(ImsExpanderParameters.mzTolerance).getEmbeddedParameter()
         .getValue();
+    useRawData = parameters.getParameter(ImsExpanderParameters.useRawData).getValue();
+    customNoiseLevel = useRawData ? parameters.getParameter(ImsExpanderParameters.useRawData)
+        .getEmbeddedParameter().getValue() : 0d;
+    frameWindow = parameters.getParameter(ImsExpanderParameters.frameWindow).getValue();
     binWidth = parameters.getParameter(ImsExpanderParameters.mobilogramBinWidth).getValue()
         ? parameters.getParameter(ImsExpanderParameters.mobilogramBinWidth).getEmbeddedParameter()
         .getValue() : BinningMobilogramDataAccess.getRecommendedBinWidth(
@@ -97,9 +114,8 @@ public class ImsExpanderTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    return
-        0.5 * tasks.stream().mapToDouble(AbstractTask::getFinishedPercentage).sum() / tasks.size()
-        + 0.5 * (processedRows.get() / (double) totalRows);
+    return 0.5 * (processedFrames.get() / (double) totalFrames)
+           + 0.5 * (processedRows.get() / (double) totalRows);
   }
 
   @Override
@@ -126,82 +142,109 @@ public class ImsExpanderTask extends AbstractTask {
 
     final List<Frame> frames = (List<Frame>) flist.getSeletedScans(flist.getRawDataFile(0));
     assert frames != null;
+    totalFrames = Math.max(1, frames.size());
 
-    // we partition the frames so we can use multiple MobilityScanDataAccesses on the same raw data
-    // file and don't have to extract the data points multiple times for each frame, if we use
-    // a TdfRawDataFileImpl (no memory mapped data points)
-    final List<List<Frame>> subLists = Lists.partition(frames, frames.size() / NUM_THREADS);
-
-    for (final List<Frame> subList : subLists) {
-      final Frame first = subList.get(0);
-      final Frame last = subList.get(subList.size() - 1);
-      Range<Float> rtRange = Range.closed(first.getRetentionTime(), last.getRetentionTime());
-      final List<ExpandingTrace> eligibleTraces = expandingTraces.stream()
-          .filter(trace -> trace.getRtRange().isConnected(rtRange)).toList();
-      tasks.add(new ImsExpanderSubTask(getMemoryMapStorage(), parameters, subList, flist,
-          eligibleTraces));
-    }
+    // traces in order of their end, so finished traces can be converted after each window
+    final List<Integer> tracesByRtEnd = IntStream.range(0, expandingTraces.size()).boxed()
+        .sorted(Comparator.comparingDouble(
+            i -> expandingTraces.get(i).getRtRange().upperEndpoint())).toList();
+    final IonMobilogramTimeSeries[] series = new IonMobilogramTimeSeries[expandingTraces.size()];
+    final ThreadLocal<BinningMobilogramDataAccess> mobilogramDataAccess = ThreadLocal.withInitial(
+        () -> EfficientDataAccess.of(imsFile, binWidth));
 
-    final AtomicBoolean allThreadsFinished = new AtomicBoolean(false);
-    final AtomicBoolean mayContinue = new AtomicBoolean(true);
-
-    final AllTasksFinishedListener listener = new AllTasksFinishedListener(tasks, true,
-        c -> allThreadsFinished.set(true), c -> {
-      mayContinue.set(false);
-      allThreadsFinished.set(true);
-    }, c -> {
-      mayContinue.set(false);
-      allThreadsFinished.set(true);
-    });
-
-    MZmineCore.getTaskController().addTasks(tasks.toArray(AbstractTask[]::new));
-
-    while (!allThreadsFinished.get()) {
-      try {
-        Thread.sleep(100L);
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-        logger.log(Level.WARNING, e.getMessage(), e);
-        setErrorMessage(e.getMessage());
-        setStatus(TaskStatus.ERROR);
-        return;
-      }
-    }
+    final ForkJoinPool pool = new ForkJoinPool(allowedThreads);
+    try {
+      int nextToFinish = 0;
+      for (int windowStart = 0; windowStart < frames.size(); windowStart += frameWindow) {
+        final List<Frame> window = frames.subList(windowStart,
+            Math.min(frames.size(), windowStart + frameWindow));
+        desc = flist.getName() + ": expanding traces for frame " + processedFrames.get() + "/"
+               + totalFrames;
+
+        final Range<Float> windowRtRange = Range.closed(window.get(0).getRetentionTime(),
+            window.get(window.size() - 1).getRetentionTime());
+        final ExpandingTraceIndex index = new ExpandingTraceIndex(expandingTraces.stream()
+            .filter(trace -> trace.getRtRange().isConnected(windowRtRange)).toList());
+        if (index.getNumberOfTraces() > 0) {
+          final int chunkSize = Math.max(1,
+              window.size() / (allowedThreads * CHUNKS_PER_THREAD));
+          final int numChunks = (window.size() + chunkSize - 1) / chunkSize;
+          pool.submit(() -> IntStream.range(0, numChunks).parallel().forEach(
+              chunk -> expandFrames(imsFile, window.subList(chunk * chunkSize,
+                  Math.min(window.size(), (chunk + 1) * chunkSize)), index))).get();
+        } else {
+          processedFrames.addAndGet(window.size());
+        }
+        if (isCanceled()) {
+          return;
+        }
 
-    if (!mayContinue.get() || getStatus() == TaskStatus.CANCELED) {
-      setStatus(TaskStatus.CANCELED);
+        // convert all traces that end before the next window
+        final float nextRt = windowStart + frameWindow < frames.size() ? frames.get(
+            windowStart + frameWindow).getRetentionTime() : Float.POSITIVE_INFINITY;
+        int end = nextToFinish;
+        while (end < tracesByRtEnd.size()
+               && expandingTraces.get(tracesByRtEnd.get(end)).getRtRange().upperEndpoint()
+                  < nextRt) {
+          end++;
+        }
+        final List<Integer> finished = tracesByRtEnd.subList(nextToFinish, end);
+        nextToFinish = end;
+        pool.submit(() -> finished.parallelStream().forEach(i -> {
+          if (isCanceled()) {
+            return;
+          }
+          final ExpandingTrace trace = expandingTraces.get(i);
+          if (trace.getNumberOfMobilityScans() > 1) {
+            series[i] = trace.toIonMobilogramTimeSeries(getMemoryMapStorage(),
+                mobilogramDataAccess.get());
+          }
+          trace.clearDataPoints();
+        })).get();
+        if (isCanceled()) {
+          return;
+        }
+      }
+    } catch (InterruptedException | ExecutionException e) {
+      final Throwable cause = e.getCause() != null ? e.getCause() : e;
+      logger.log(Level.WARNING, cause.getMessage(), cause);
+      setErrorMessage(cause.getMessage());
+      setStatus(TaskStatus.ERROR);
       return;
+    } finally {
+      pool.shutdown();
     }
 
-    final BinningMobilogramDataAccess mobilogramDataAccess = EfficientDataAccess.of(imsFile,
-        binWidth);
-
     final ModularFeatureList newFlist = new ModularFeatureList(flist.getName() + SUFFIX,
         getMemoryMapStorage(), imsFile);
     newFlist.setSelectedScans(imsFile, flist.getSeletedScans(imsFile));
     newFlist.getAppliedMethods().addAll(flist.getAppliedMethods());
     DataTypeUtils.addDefaultIonMobilityTypeColumns(newFlist);
 
-    for (ExpandingTrace expandingTrace : expandingTraces) {
+    // all types of the original list are registered once, the rows only read the type maps and
+    // can be created in parallel
+    newFlist.addRowType(flist.getRowTypes().values());
+    newFlist.addFeatureType(flist.getFeatureTypes().values());
+    final List<Integer> expanded = IntStream.range(0, expandingTraces.size())
+        .filter(i -> series[i] != null).boxed().toList();
+    final FeatureListBuilder builder = new FeatureListBuilder(newFlist, 0);
+    builder.addRows(expanded, (i, id) -> {
+      final ExpandingTrace expandingTrace = expandingTraces.get(i);
+      // keep the original row id
+      final ModularFeatureListRow row = new ModularFeatureListRow(newFlist,
+          expandingTrace.getRow(), false);
+      final ModularFeature f = new ModularFeature(newFlist,
+          expandingTrace.getRow().getFeature(imsFile));
+      f.set(FeatureDataType.class, series[i]);
+      row.addFeature(imsFile, f);
+      FeatureDataUtils.recalculateIonSeriesDependingTypes(f);
       desc = "Creating new features " + processedRows.getAndIncrement() + "/" + totalRows;
-
-      if (expandingTrace.getNumberOfMobilityScans() > 1) {
-        final IonMobilogramTimeSeries series = expandingTrace.toIonMobilogramTimeSeries(
-            getMemoryMapStorage(), mobilogramDataAccess);
-        final ModularFeatureListRow row = new ModularFeatureListRow(newFlist,
-            expandingTrace.getRow(), false);
-        final ModularFeature f = new ModularFeature(newFlist,
-            expandingTrace.getRow().getFeature(imsFile));
-        f.set(FeatureDataType.class, series);
-        row.addFeature(imsFile, f);
-        FeatureDataUtils.recalculateIonSeriesDependingTypes(f);
-        newFlist.addRow(row);
-      }
-
-      if (isCanceled()) {
-        return;
-      }
+      return row;
+    }, true, this::isCanceled);
+    if (isCanceled()) {
+      return;
     }
+    builder.build();
 
     newFlist.getAppliedMethods().add(
         new SimpleFeatureListAppliedMethod(ImsExpanderModule.class, parameters,
@@ -213,6 +256,34 @@ public class ImsExpanderTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  /**
+   * Reads the given frames once and offers the data points to the traces.
+   */
+  private void expandFrames(IMSRawDataFile imsFile, List<Frame> frames,
+      ExpandingTraceIndex index) {
+    if (isCanceled()) {
+      return;
+    }
+    final MobilityScanDataAccess access = new MobilityScanDataAccess(imsFile,
+        useRawData ? MobilityScanDataType.RAW : MobilityScanDataType.CENTROID, frames);
+    for (int i = 0; i < access.getNumberOfScans(); i++) {
+      if (isCanceled()) {
+        return;
+      }
+      access.nextFrame();
+      while (access.hasNextMobilityScan()) {
+        access.nextMobilityScan();
+        for (int dpIndex = 0; dpIndex < access.getNumberOfDataPoints(); dpIndex++) {
+          if (useRawData && access.getIntensityValue(dpIndex) < customNoiseLevel) {
+            continue;
+          }
+          index.offerDataPoint(access, dpIndex);
+        }
+      }
+      processedFrames.getAndIncrement();
+    }
+  }
+
   @Override
   public TaskPriority getTaskPriority() {
     return TaskPriority.HIGH; // master task needs high priority, so it does not brick the task controller
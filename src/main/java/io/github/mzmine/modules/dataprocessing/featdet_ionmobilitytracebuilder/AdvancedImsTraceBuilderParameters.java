@@ -24,6 +24,7 @@ import static io.github.mzmine.modules.dataprocessing.featdet_mobilogram_summing
 
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
+import io.github.mzmine.parameters.parametertypes.BooleanParameter;
 import io.github.mzmine.parameters.parametertypes.IntegerParameter;
 import io.github.mzmine.parameters.parametertypes.OptionalParameter;
 
@@ -47,7 +48,14 @@ public class AdvancedImsTraceBuilderParameters extends SimpleParameterSet {
               + "The default binning width is " + DEFAULT_TIMS_BIN_WIDTH + ".",
           DEFAULT_DTIMS_BIN_WIDTH, 1, 1000));
 
+  public static final BooleanParameter parallelTraceBuilder = new BooleanParameter(
+      "Parallel trace builder",
+      "If checked, the traces are built in parallel on the primitive mass list data of the frames.\n"
+          + "Faster and requires less memory for large files. Only the most intense data point per "
+          + "mobility scan is kept in a trace.", false);
+
   public AdvancedImsTraceBuilderParameters() {
-    super(new Parameter[]{timsBinningWidth, dtimsBinningWidth, twimsBinningWidth});
+    super(new Parameter[]{timsBinningWidth, dtimsBinningWidth, twimsBinningWidth,
+        parallelTraceBuilder});
   }
 }
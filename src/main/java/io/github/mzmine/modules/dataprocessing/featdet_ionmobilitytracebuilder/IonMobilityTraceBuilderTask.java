@@ -22,6 +22,7 @@ import com.google.common.collect.Range;
 import com.google.common.collect.RangeSet;
 import com.google.common.collect.TreeRangeSet;
 import com.google.common.math.Quantiles;
+import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
@@ -31,10 +32,14 @@ import io.github.mzmine.datamodel.MobilityType;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
+import io.github.mzmine.datamodel.featuredata.FeatureDataUtils;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.types.DetectionType;
+import io.github.mzmine.datamodel.features.types.FeatureDataType;
+import io.github.mzmine.datamodel.features.types.RawFileType;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
@@ -44,6 +49,7 @@ import io.github.mzmine.util.DataTypeUtils;
 import io.github.mzmine.util.FeatureConvertorIonMobility;
 import io.github.mzmine.util.FeatureConvertors;
 import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.exceptions.MissingMassListException;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Comparator;
@@ -52,12 +58,13 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import org.jetbrains.annotations.NotNull;
@@ -82,11 +89,13 @@ public class IonMobilityTraceBuilderTask extends AbstractTask {
   private final int timsBindWidth;
   private final int twimsBindWidth;
   private final int dtimsBindWidth;
+  private final boolean parallelTraceBuilder;
   private final ScanSelection scanSelection;
   private final ParameterSet parameters;
   private RangeSet<Double> rangeSet = TreeRangeSet.create();
   private HashMap<Range<Double>, IIonMobilityTrace> rangeToIonTraceMap = new HashMap<>();
   private double progress = 0.0;
+  private ParallelIonMobilityTraceBuilder parallelBuilder;
   private String taskDescription = "";
   private final String descriptionPrefix;
   private int allowedMissingFrames = DEFAULT_ALLOWED_MISSING_FRAMES;
@@ -126,6 +135,8 @@ public class IonMobilityTraceBuilderTask extends AbstractTask {
             ? advancedParam.getParameter(AdvancedImsTraceBuilderParameters.twimsBinningWidth)
             .getEmbeddedParameter().getValue()
             : BinningMobilogramDataAccess.getRecommendedBinWidth((IMSRawDataFile) rawDataFile);
+    parallelTraceBuilder = advancedParam.getParameter(
+        AdvancedImsTraceBuilderParameters.parallelTraceBuilder).getValue();
 
     this.parameters = parameters;
     descriptionPrefix = "Ion mobility trace builder on " + rawDataFile.getName() + ": ";
@@ -139,6 +150,10 @@ public class IonMobilityTraceBuilderTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
+    final ParallelIonMobilityTraceBuilder builder = parallelBuilder;
+    if (builder != null && progress == 0d) {
+      return builder.getProgress() * (STEPS - 1) / STEPS;
+    }
     return progress;
   }
 
@@ -149,6 +164,10 @@ public class IonMobilityTraceBuilderTask extends AbstractTask {
       return;
     }
     progress = 0.0;
+    if (parallelTraceBuilder) {
+      buildTracesInParallel();
+      return;
+    }
     Set<RetentionTimeMobilityDataPoint> rtMobilityDataPoints = extractAllDataPointsFromFrames();
     createIonMobilityTraceTargetSet(rtMobilityDataPoints);
     rtMobilityDataPoints = null;
@@ -522,22 +541,9 @@ public class IonMobilityTraceBuilderTask extends AbstractTask {
 
   private void buildModularFeatureList(SortedSet<IIonMobilityTrace> ionMobilityTraces) {
     taskDescription = descriptionPrefix + "Building feature list.";
-    ModularFeatureList featureList = new ModularFeatureList(rawDataFile + " " + suffix,
-        getMemoryMapStorage(), rawDataFile);
-    // ensure that the default columns are available
-    DataTypeUtils.addDefaultChromatographicTypeColumns(featureList);
-    DataTypeUtils.addDefaultIonMobilityTypeColumns(featureList);
-    featureList.setSelectedScans(rawDataFile, frames);
-
-    final int binWidth = switch (((IMSRawDataFile) rawDataFile).getMobilityType()) {
-      case DRIFT_TUBE -> dtimsBindWidth;
-      case TIMS -> timsBindWidth;
-      case TRAVELING_WAVE -> twimsBindWidth;
-      default -> 1;
-    };
-
+    final ModularFeatureList featureList = createFeatureList();
     final BinningMobilogramDataAccess mobilogramBinner = EfficientDataAccess
-        .of((IMSRawDataFile) rawDataFile, binWidth);
+        .of((IMSRawDataFile) rawDataFile, getBinWidth());
 
     final double progressStep = 1.0d / ionMobilityTraces.size() / STEPS;
 
@@ -553,6 +559,76 @@ public class IonMobilityTraceBuilderTask extends AbstractTask {
       progress += progressStep;
     }
 
+    addFeatureListToProject(featureList);
+  }
+
+  /**
+   * Builds the traces with the {@link ParallelIonMobilityTraceBuilder}. The features are created
+   * on this thread, since creating features modifies the feature list.
+   */
+  private void buildTracesInParallel() {
+    taskDescription = descriptionPrefix + "Building ion mobility traces in parallel.";
+    final ModularFeatureList featureList = createFeatureList();
+    parallelBuilder = new ParallelIonMobilityTraceBuilder((IMSRawDataFile) rawDataFile, frames,
+        mzTolerance, minDataPointsRt, minTotalSignals, getBinWidth(),
+        featureList.getMemoryMapStorage(), this::isCanceled);
+
+    final List<ParallelIonMobilityTraceBuilder.BuiltTrace> traces;
+    try {
+      traces = parallelBuilder.buildTraces();
+    } catch (MissingMassListException e) {
+      logger.log(Level.WARNING, e.getMessage(), e);
+      setErrorMessage(e.getMessage() + " Run mass detection on the mobility scans.");
+      setStatus(TaskStatus.ERROR);
+      return;
+    }
+    if (isCanceled()) {
+      return;
+    }
+
+    taskDescription = descriptionPrefix + "Building feature list.";
+    progress = (STEPS - 1) / STEPS;
+    final double progressStep = traces.isEmpty() ? 0d : 1d / traces.size() / STEPS;
+    final MobilityType mobilityType = ((IMSRawDataFile) rawDataFile).getMobilityType();
+    int featureId = 1;
+    for (ParallelIonMobilityTraceBuilder.BuiltTrace trace : traces) {
+      final ModularFeature feature = new ModularFeature(featureList);
+      feature.set(RawFileType.class, rawDataFile);
+      feature.set(DetectionType.class, FeatureStatus.DETECTED);
+      feature.setMobilityUnit(mobilityType);
+      feature.set(FeatureDataType.class, trace.series());
+      // no need to calc quality parameters after feature detection.
+      FeatureDataUtils.recalculateIonSeriesDependingTypes(feature,
+          FeatureDataUtils.DEFAULT_CENTER_FUNCTION, false);
+      featureList.addRow(new ModularFeatureListRow(featureList, featureId++, feature));
+      progress += progressStep;
+    }
+
+    addFeatureListToProject(featureList);
+    progress = 1.0;
+    setStatus(TaskStatus.FINISHED);
+  }
+
+  private ModularFeatureList createFeatureList() {
+    ModularFeatureList featureList = new ModularFeatureList(rawDataFile + " " + suffix,
+        getMemoryMapStorage(), rawDataFile);
+    // ensure that the default columns are available
+    DataTypeUtils.addDefaultChromatographicTypeColumns(featureList);
+    DataTypeUtils.addDefaultIonMobilityTypeColumns(featureList);
+    featureList.setSelectedScans(rawDataFile, frames);
+    return featureList;
+  }
+
+  private int getBinWidth() {
+    return switch (((IMSRawDataFile) rawDataFile).getMobilityType()) {
+      case DRIFT_TUBE -> dtimsBindWidth;
+      case TIMS -> timsBindWidth;
+      case TRAVELING_WAVE -> twimsBindWidth;
+      default -> 1;
+    };
+  }
+
+  private void addFeatureListToProject(ModularFeatureList featureList) {
     rawDataFile.getAppliedMethods().forEach(m -> featureList.getAppliedMethods().add(m));
     featureList.getAppliedMethods()
         .add(new SimpleFeatureListAppliedMethod(IonMobilityTraceBuilderModule.class, parameters, getModuleCallDate()));
@@ -0,0 +1,639 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.featdet_ionmobilitytracebuilder;
+
+import com.google.common.collect.Range;
+import com.google.common.math.Quantiles;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.IMSRawDataFile;
+import io.github.mzmine.datamodel.MobilityScan;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.data_access.BinningMobilogramDataAccess;
+import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
+import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
+import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
+import io.github.mzmine.datamodel.featuredata.impl.IonMobilogramTimeSeriesFactory;
+import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilitySeries;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.util.MemoryMapStorage;
+import io.github.mzmine.util.exceptions.MissingMassListException;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Builds ion mobility traces directly on the mass list buffers of the {@link MobilityScanStorage}s
+ * of the frames, without creating an object per data point.
+ * <p>
+ * The m/z axis is split into slabs with roughly the same number of data points. The slab borders
+ * are placed in sparse regions of an m/z histogram of all data points, so ions are rarely split
+ * between two slabs. The data points of every slab are copied to primitive arrays and the slabs
+ * are processed in parallel: the points are assigned to traces in order of descending intensity
+ * (same as {@link IonMobilityTraceBuilderTask}), the traces are filtered, padded with zeros and
+ * converted to {@link IonMobilogramTimeSeries} by {@link IonMobilogramTimeSeriesFactory}.
+ * <p>
+ * The features are not created here, since creating {@link
+ * io.github.mzmine.datamodel.features.ModularFeature}s modifies the feature list and is not thread
+ * safe.
+ */
+class ParallelIonMobilityTraceBuilder {
+
+  private static final double HISTOGRAM_BIN_WIDTH = 0.01;
+  // more slabs than threads, so the threads are balanced if some slabs take longer
+  private static final int SLABS_PER_THREAD = 4;
+  // the slab border is moved to the sparsest position within this number of histogram bins
+  private static final int BORDER_SEARCH_BINS = 20;
+
+  private final IMSRawDataFile file;
+  private final List<Frame> frames;
+  private final MZTolerance mzTolerance;
+  private final int minDataPointsRt;
+  private final int minTotalSignals;
+  private final int binWidth;
+  private final MemoryMapStorage storage;
+  private final BooleanSupplier isCanceled;
+  private final boolean isTims;
+
+  private final AtomicInteger processedSteps = new AtomicInteger(0);
+  private volatile int totalSteps = 1;
+
+  private MobilityScanStorage[] storages;
+  // the mobility scans are created once per frame, so all mobilograms share the same instances
+  private List<MobilityScan>[] mobilityScans;
+
+  /**
+   * @param frames          the frames to build traces in, sorted by retention time.
+   * @param minDataPointsRt minimum number of consecutive frames.
+   * @param minTotalSignals minimum number of data points of a trace.
+   * @param binWidth        the mobilogram binning width.
+   * @param storage         the storage for the {@link IonMobilogramTimeSeries}.
+   */
+  ParallelIonMobilityTraceBuilder(@NotNull IMSRawDataFile file, @NotNull List<Frame> frames,
+      @NotNull MZTolerance mzTolerance, int minDataPointsRt, int minTotalSignals, int binWidth,
+      @Nullable MemoryMapStorage storage, @NotNull BooleanSupplier isCanceled) {
+    this.file = file;
+    this.frames = frames;
+    this.mzTolerance = mzTolerance;
+    this.minDataPointsRt = minDataPointsRt;
+    this.minTotalSignals = minTotalSignals;
+    this.binWidth = binWidth;
+    this.storage = storage;
+    this.isCanceled = isCanceled;
+    isTims = file.getMobilityType() == MobilityType.TIMS;
+  }
+
+  /**
+   * @return the progress from 0 to 1.
+   */
+  double getProgress() {
+    return Math.min(1d, processedSteps.get() / (double) totalSteps);
+  }
+
+  /**
+   * Builds the traces.
+   *
+   * @return the traces sorted by the m/z of their most intense data point. Empty if the builder
+   * was canceled.
+   * @throws MissingMassListException if a frame does not contain mobility scan mass lists.
+   */
+  @NotNull
+  List<BuiltTrace> buildTraces() {
+    final int numFrames = frames.size();
+    storages = new MobilityScanStorage[numFrames];
+    for (int f = 0; f < numFrames; f++) {
+      storages[f] = frames.get(f).getMobilityScanStorage();
+      if (!storages[f].hasMassLists()) {
+        throw new MissingMassListException("Mobility scans of frame do not have a mass list.",
+            frames.get(f));
+      }
+    }
+    //noinspection unchecked
+    mobilityScans = new List[numFrames];
+    // histogram, counting and copying pass over all frames plus one step per slab
+    final int numSlabsTarget = Math.max(1, ForkJoinPool.getCommonPoolParallelism())
+        * SLABS_PER_THREAD;
+    totalSteps = numFrames * 3 + numSlabsTarget;
+
+    final Range<Double> mzRange = file.getDataMZRange();
+    final double maxMz = mzRange != null ? mzRange.upperEndpoint() : 0d;
+    final int numBins = (int) (maxMz / HISTOGRAM_BIN_WIDTH) + 2;
+
+    // 1. m/z histogram of all data points
+    final long[] histogram = IntStream.range(0, numFrames).parallel()
+        .collect(() -> new long[numBins], (hist, f) -> {
+          if (isCanceled.getAsBoolean()) {
+            return;
+          }
+          final double[] mzs = getMzValues(storages[f]);
+          for (double mz : mzs) {
+            hist[getBin(mz, numBins)]++;
+          }
+          processedSteps.incrementAndGet();
+        }, (a, b) -> {
+          for (int i = 0; i < a.length; i++) {
+            a[i] += b[i];
+          }
+        });
+    if (isCanceled.getAsBoolean()) {
+      return List.of();
+    }
+
+    final int[] binToSlab = createSlabs(histogram, numSlabsTarget);
+    final int numSlabs = binToSlab[numBins - 1] + 1;
+    totalSteps = numFrames * 3 + numSlabs;
+
+    // 2. number of data points per frame and slab
+    final int[] counts = new int[numFrames * numSlabs];
+    IntStream.range(0, numFrames).parallel().forEach(f -> {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      for (double mz : getMzValues(storages[f])) {
+        counts[f * numSlabs + binToSlab[getBin(mz, numBins)]]++;
+      }
+      processedSteps.incrementAndGet();
+    });
+    if (isCanceled.getAsBoolean()) {
+      return List.of();
+    }
+
+    // start index of each frame in the slab arrays
+    final Slab[] slabs = new Slab[numSlabs];
+    for (int s = 0; s < numSlabs; s++) {
+      int offset = 0;
+      for (int f = 0; f < numFrames; f++) {
+        final int count = counts[f * numSlabs + s];
+        counts[f * numSlabs + s] = offset;
+        offset += count;
+      }
+      slabs[s] = new Slab(offset);
+    }
+
+    // 3. copy the data points to the slabs. Every frame writes to its own section of the slabs
+    IntStream.range(0, numFrames).parallel().forEach(f -> {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      final MobilityScanStorage scanStorage = storages[f];
+      final double[] mzs = getMzValues(scanStorage);
+      final double[] intensities = new double[mzs.length];
+      scanStorage.getAllMassListIntensityValues(intensities);
+      final int[] next = Arrays.copyOfRange(counts, f * numSlabs, (f + 1) * numSlabs);
+
+      final int numScans = scanStorage.getNumberOfMobilityScans();
+      for (int scan = 0; scan < numScans; scan++) {
+        final int start = scanStorage.getMassListStorageOffset(scan);
+        final int end = start + scanStorage.getNumberOfMassListDatapoints(scan);
+        for (int i = start; i < end; i++) {
+          final int slabIndex = binToSlab[getBin(mzs[i], numBins)];
+          final Slab slab = slabs[slabIndex];
+          final int index = next[slabIndex]++;
+          slab.mzs[index] = mzs[i];
+          slab.intensities[index] = intensities[i];
+          slab.frames[index] = f;
+          slab.scans[index] = scan;
+        }
+      }
+      mobilityScans[f] = frames.get(f).getMobilityScans();
+      processedSteps.incrementAndGet();
+    });
+    if (isCanceled.getAsBoolean()) {
+      return List.of();
+    }
+
+    // 4. build the traces of every slab
+    final List<List<BuiltTrace>> slabTraces = IntStream.range(0, numSlabs).parallel()
+        .mapToObj(s -> {
+          if (isCanceled.getAsBoolean()) {
+            return List.<BuiltTrace>of();
+          }
+          final List<BuiltTrace> traces = buildSlabTraces(slabs[s]);
+          // release the data points of this slab
+          slabs[s] = null;
+          processedSteps.incrementAndGet();
+          return traces;
+        }).toList();
+    if (isCanceled.getAsBoolean()) {
+      return List.of();
+    }
+
+    final List<BuiltTrace> traces = new ArrayList<>();
+    slabTraces.forEach(traces::addAll);
+    traces.sort(Comparator.comparingDouble(BuiltTrace::mz));
+    return traces;
+  }
+
+  private static int getBin(double mz, int numBins) {
+    return Math.min(numBins - 1, Math.max(0, (int) (mz / HISTOGRAM_BIN_WIDTH)));
+  }
+
+  private static double[] getMzValues(MobilityScanStorage scanStorage) {
+    final double[] mzs = new double[scanStorage.getMassListTotalNumPoints()];
+    scanStorage.getAllMassListMzValues(mzs);
+    return mzs;
+  }
+
+  /**
+   * Splits the histogram into slabs of roughly the same number of data points. A border is moved
+   * to the position with the lowest number of data points in the two adjacent bins within the
+   * next {@link #BORDER_SEARCH_BINS} bins.
+   *
+   * @return the slab index of every histogram bin.
+   */
+  private static int[] createSlabs(long[] histogram, int numSlabsTarget) {
+    final int numBins = histogram.length;
+    final long total = Arrays.stream(histogram).sum();
+    final long pointsPerSlab = Math.max(1, (total + numSlabsTarget - 1) / numSlabsTarget);
+
+    final IntArrayList starts = new IntArrayList();
+    starts.add(0);
+    long sum = 0;
+    int bin = 0;
+    while (bin < numBins) {
+      sum += histogram[bin];
+      if (sum >= pointsPerSlab * starts.size() && starts.size() < numSlabsTarget
+          && bin + 1 < numBins) {
+        int border = bin + 1;
+        final int searchEnd = Math.min(numBins, bin + 1 + BORDER_SEARCH_BINS);
+        for (int b = bin + 2; b < searchEnd; b++) {
+          if (histogram[b - 1] + histogram[b] < histogram[border - 1] + histogram[border]) {
+            border = b;
+          }
+        }
+        // the bins before the border belong to the current slab
+        for (int b = bin + 1; b < border; b++) {
+          sum += histogram[b];
+        }
+        starts.add(border);
+        bin = border;
+        continue;
+      }
+      bin++;
+    }
+
+    final int[] binToSlab = new int[numBins];
+    for (int s = 0; s < starts.size(); s++) {
+      final int end = s + 1 < starts.size() ? starts.getInt(s + 1) : numBins;
+      Arrays.fill(binToSlab, starts.getInt(s), end, s);
+    }
+    return binToSlab;
+  }
+
+  /**
+   * Assigns the data points of a slab to traces and converts the traces.
+   */
+  private List<BuiltTrace> buildSlabTraces(Slab slab) {
+    final int n = slab.mzs.length;
+    if (n == 0) {
+      return List.of();
+    }
+
+    // most intense data points first, ties in storage order
+    final int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    IntArrays.quickSort(order, (a, b) -> {
+      final int compare = Double.compare(slab.intensities[b], slab.intensities[a]);
+      return compare != 0 ? compare : Integer.compare(a, b);
+    });
+
+    // open m/z ranges of the traces (lower bound -> trace), ranges do not overlap
+    final TreeMap<Double, Integer> rangeStarts = new TreeMap<>();
+    final DoubleArrayList rangeEnds = new DoubleArrayList();
+    final DoubleArrayList seedMzs = new DoubleArrayList();
+    final int[] traceOf = new int[n];
+    for (int i : order) {
+      final double mz = slab.mzs[i];
+      final Entry<Double, Integer> below = rangeStarts.lowerEntry(mz);
+      if (below != null && mz < rangeEnds.getDouble(below.getValue())) {
+        traceOf[i] = below.getValue();
+        continue;
+      }
+
+      // new trace, the tolerance range is clipped at the neighbouring ranges
+      final Range<Double> toleranceRange = mzTolerance.getToleranceRange(mz);
+      final Entry<Double, Integer> above = rangeStarts.ceilingEntry(mz);
+      double lower = toleranceRange.lowerEndpoint();
+      double upper = toleranceRange.upperEndpoint();
+      if (below != null) {
+        lower = Math.max(lower, rangeEnds.getDouble(below.getValue()));
+      }
+      if (above != null) {
+        upper = Math.min(upper, above.getKey());
+      }
+      if (lower < upper) {
+        final int trace = seedMzs.size();
+        rangeStarts.put(lower, trace);
+        rangeEnds.add(upper);
+        seedMzs.add(mz);
+        traceOf[i] = trace;
+      } else {
+        // no space left between the neighbouring ranges
+        traceOf[i] = above != null ? above.getValue() : below.getValue();
+      }
+    }
+
+    // group the data points by trace, in storage order (frame, mobility scan)
+    final int numTraces = seedMzs.size();
+    final int[] traceStarts = new int[numTraces + 1];
+    for (int i = 0; i < n; i++) {
+      traceStarts[traceOf[i] + 1]++;
+    }
+    for (int t = 0; t < numTraces; t++) {
+      traceStarts[t + 1] += traceStarts[t];
+    }
+    final int[] next = Arrays.copyOf(traceStarts, numTraces);
+    final int[] points = new int[n];
+    for (int i = 0; i < n; i++) {
+      points[next[traceOf[i]]++] = i;
+    }
+
+    final BinningMobilogramDataAccess binner = EfficientDataAccess.of(file, binWidth);
+    final List<BuiltTrace> traces = new ArrayList<>();
+    for (int t = 0; t < numTraces; t++) {
+      if (isCanceled.getAsBoolean()) {
+        return List.of();
+      }
+      if (traceStarts[t + 1] - traceStarts[t] < minTotalSignals) {
+        continue;
+      }
+      final IonMobilogramTimeSeries series = buildTrace(slab, points, traceStarts[t],
+          traceStarts[t + 1], seedMzs.getDouble(t), binner);
+      if (series != null) {
+        traces.add(new BuiltTrace(seedMzs.getDouble(t), series));
+      }
+    }
+    return traces;
+  }
+
+  /**
+   * Converts the data points points[from, to) of a slab to a {@link IonMobilogramTimeSeries}.
+   * Only the most intense data point of each mobility scan is kept. Zeros are added in front of
+   * and after every continuous part of the trace in rt and mobility dimension.
+   *
+   * @return the series or null if the trace was not detected in enough consecutive frames.
+   */
+  @Nullable
+  private IonMobilogramTimeSeries buildTrace(Slab slab, int[] points, int from, int to,
+      double seedMz, BinningMobilogramDataAccess binner) {
+    final int size = to - from;
+    final int[] frameIndices = new int[size];
+    final int[] scanIndices = new int[size];
+    final double[] mzs = new double[size];
+    final double[] intensities = new double[size];
+    int numPoints = 0;
+    for (int p = from; p < to; p++) {
+      final int i = points[p];
+      if (numPoints > 0 && frameIndices[numPoints - 1] == slab.frames[i]
+          && scanIndices[numPoints - 1] == slab.scans[i]) {
+        if (slab.intensities[i] > intensities[numPoints - 1]) {
+          mzs[numPoints - 1] = slab.mzs[i];
+          intensities[numPoints - 1] = slab.intensities[i];
+        }
+        continue;
+      }
+      frameIndices[numPoints] = slab.frames[i];
+      scanIndices[numPoints] = slab.scans[i];
+      mzs[numPoints] = slab.mzs[i];
+      intensities[numPoints] = slab.intensities[i];
+      numPoints++;
+    }
+
+    // start index of every frame in the point arrays
+    final IntArrayList frameStarts = new IntArrayList();
+    for (int p = 0; p < numPoints; p++) {
+      if (p == 0 || frameIndices[p] != frameIndices[p - 1]) {
+        frameStarts.add(p);
+      }
+    }
+    final int numTraceFrames = frameStarts.size();
+    frameStarts.add(numPoints);
+
+    if (!hasConsecutiveFrames(frameIndices, frameStarts, numTraceFrames)) {
+      return null;
+    }
+
+    final TreeMap<Integer, IonMobilitySeries> mobilograms = new TreeMap<>();
+    for (int tf = 0; tf < numTraceFrames; tf++) {
+      final int start = frameStarts.getInt(tf);
+      final int end = frameStarts.getInt(tf + 1);
+      mobilograms.put(frameIndices[start],
+          createMobilogram(frameIndices[start], scanIndices, mzs, intensities, start, end,
+              seedMz));
+    }
+
+    // zeros in the frames before and after every continuous part of the trace
+    final IntArrayList fillerFrames = getFillerFrames(frameIndices, frameStarts, numTraceFrames,
+        frames.size());
+    if (!fillerFrames.isEmpty()) {
+      final int fillerScan = isTims ? findMostFrequentScanIndex(scanIndices, numPoints) : -1;
+      final double medianMobility =
+          isTims ? 0d : findMedianMobility(frameIndices, scanIndices, numPoints);
+      for (int filler : fillerFrames) {
+        final List<MobilityScan> scans = mobilityScans[filler];
+        if (scans.isEmpty()) {
+          continue;
+        }
+        final MobilityScan scan =
+            isTims ? scans.get(Math.min(fillerScan, scans.size() - 1))
+                : findScanWithClosestMobility(scans, medianMobility);
+        mobilograms.put(filler, new SimpleIonMobilitySeries(storage, new double[]{seedMz},
+            new double[]{0d}, List.of(scan)));
+      }
+    }
+
+    return IonMobilogramTimeSeriesFactory.of(storage, new ArrayList<>(mobilograms.values()),
+        binner);
+  }
+
+  /**
+   * Same criterion as the original trace builder: the number of pairs of adjacent frames within
+   * one continuous part of the trace must reach the minimum number of consecutive frames.
+   */
+  private boolean hasConsecutiveFrames(int[] frameIndices, IntArrayList frameStarts,
+      int numTraceFrames) {
+    int consecutive = 0;
+    for (int tf = 1; tf < numTraceFrames; tf++) {
+      if (frameIndices[frameStarts.getInt(tf)] == frameIndices[frameStarts.getInt(tf - 1)] + 1) {
+        consecutive++;
+        if (consecutive >= minDataPointsRt) {
+          return true;
+        }
+      } else {
+        consecutive = 0;
+      }
+    }
+    return consecutive >= minDataPointsRt;
+  }
+
+  /**
+   * Creates the mobilogram of one frame from the points [start, end) and adds zeros in front of
+   * and after every continuous part of the mobilogram.
+   */
+  private IonMobilitySeries createMobilogram(int frame, int[] scanIndices, double[] mzs,
+      double[] intensities, int start, int end, double seedMz) {
+    final List<MobilityScan> frameScans = mobilityScans[frame];
+    final IntArrayList fillers = getFillerIndices(scanIndices, start, end, frameScans.size());
+
+    final int size = end - start + fillers.size();
+    final double[] mobilogramMzs = new double[size];
+    final double[] mobilogramIntensities = new double[size];
+    final List<MobilityScan> scans = new ArrayList<>(size);
+    int p = start;
+    int z = 0;
+    for (int i = 0; i < size; i++) {
+      if (z < fillers.size() && (p >= end || fillers.getInt(z) < scanIndices[p])) {
+        mobilogramMzs[i] = seedMz;
+        scans.add(frameScans.get(fillers.getInt(z++)));
+      } else {
+        mobilogramMzs[i] = mzs[p];
+        mobilogramIntensities[i] = intensities[p];
+        scans.add(frameScans.get(scanIndices[p++]));
+      }
+    }
+    return new SimpleIonMobilitySeries(storage, mobilogramMzs, mobilogramIntensities, scans);
+  }
+
+  /**
+   * @return the filler frames for the distinct frames of a trace.
+   */
+  private static IntArrayList getFillerFrames(int[] frameIndices, IntArrayList frameStarts,
+      int count, int numIndices) {
+    final int[] distinct = new int[count];
+    for (int i = 0; i < count; i++) {
+      distinct[i] = frameIndices[frameStarts.getInt(i)];
+    }
+    return getFillerIndices(distinct, 0, count, numIndices);
+  }
+
+  /**
+   * Determines the positions of zero intensity data points for the sorted, distinct indices
+   * [start, end). Same as the original trace builder, a zero is added in front of every gap end
+   * and after every gap start, but not after index 0.
+   *
+   * @param numIndices the number of frames or mobility scans.
+   * @return the sorted filler indices.
+   */
+  private static IntArrayList getFillerIndices(int[] indices, int start, int end,
+      int numIndices) {
+    final IntArrayList fillers = new IntArrayList();
+    int last = 0;
+    for (int p = start; p < end; p++) {
+      final int current = indices[p];
+      if (current - last > 1) {
+        if (last != 0 && last + 1 < numIndices) {
+          fillers.add(last + 1);
+        }
+        if (current - 1 >= 0 && (fillers.isEmpty()
+            || fillers.getInt(fillers.size() - 1) != current - 1)) {
+          fillers.add(current - 1);
+        }
+      }
+      last = current;
+    }
+    if (end > start && last + 1 < numIndices) {
+      fillers.add(last + 1);
+    }
+    return fillers;
+  }
+
+  /**
+   * In tims, the mobility scan index <-> mobility relation is the same in all frames.
+   */
+  private static int findMostFrequentScanIndex(int[] scanIndices, int numPoints) {
+    final Int2IntOpenHashMap counts = new Int2IntOpenHashMap();
+    int mostFrequent = scanIndices[0];
+    int maxCount = 0;
+    for (int p = 0; p < numPoints; p++) {
+      final int count = counts.addTo(scanIndices[p], 1) + 1;
+      if (count > maxCount || (count == maxCount && scanIndices[p] < mostFrequent)) {
+        maxCount = count;
+        mostFrequent = scanIndices[p];
+      }
+    }
+    return mostFrequent;
+  }
+
+  /**
+   * In DTIMS (at least agilent) the observed mobility window can change, therefore the median
+   * mobility is used.
+   */
+  private double findMedianMobility(int[] frameIndices, int[] scanIndices, int numPoints) {
+    final double[] mobilities = new double[numPoints];
+    for (int p = 0; p < numPoints; p++) {
+      mobilities[p] = mobilityScans[frameIndices[p]].get(scanIndices[p]).getMobility();
+    }
+    return Quantiles.median().compute(Arrays.stream(mobilities).distinct().toArray());
+  }
+
+  private static MobilityScan findScanWithClosestMobility(List<MobilityScan> scans,
+      double mobility) {
+    MobilityScan closest = scans.get(0);
+    double delta = Double.MAX_VALUE;
+    for (MobilityScan scan : scans) {
+      final double currentDelta = Math.abs(scan.getMobility() - mobility);
+      if (currentDelta < delta) {
+        delta = currentDelta;
+        closest = scan;
+      }
+    }
+    return closest;
+  }
+
+  /**
+   * @param mz     the m/z of the most intense data point of the trace.
+   * @param series the data of the trace.
+   */
+  record BuiltTrace(double mz, @NotNull IonMobilogramTimeSeries series) {
+
+  }
+
+  /**
+   * Data points of one m/z slab, sorted by frame and mobility scan.
+   */
+  private static class Slab {
+
+    private final double[] mzs;
+    private final double[] intensities;
+    private final int[] frames;
+    private final int[] scans;
+
+    private Slab(int size) {
+      mzs = new double[size];
+      intensities = new double[size];
+      frames = new int[size];
+      scans = new int[size];
+    }
+  }
+}
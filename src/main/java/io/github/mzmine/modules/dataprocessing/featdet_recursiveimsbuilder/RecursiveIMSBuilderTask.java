@@ -29,6 +29,7 @@ import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
 import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
 import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
+import io.github.mzmine.datamodel.features.FeatureListBuilder;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -209,29 +210,31 @@ public class RecursiveIMSBuilderTask extends AbstractTask {
         file);
     flist.setSelectedScans(file, access.getEligibleFrames());
     logger.finest(() -> "Creation BinningMobilogramDataAccess for raw data file " + file.getName());
-    final BinningMobilogramDataAccess binningMobilogramDataAccess = EfficientDataAccess
-        .of(file, binWidth);
-    int id = 0;
+    // the binning access is not thread safe, one per thread
+    final ThreadLocal<BinningMobilogramDataAccess> binningMobilogramDataAccess = ThreadLocal
+        .withInitial(() -> EfficientDataAccess.of(file, binWidth));
     final List<TempIMTrace> sortedTraces = validTraces.stream()
         .sorted(Comparator.comparingDouble(TempIMTrace::getCenterMz)).collect(Collectors.toList());
-    for (TempIMTrace trace : sortedTraces) {
-      if (isCanceled()) {
-        return;
-      }
 
+    // features and rows are created in parallel and added to the feature list in one step
+    DataTypeUtils.addDefaultIonMobilityTypeColumns(flist);
+    final FeatureListBuilder builder = new FeatureListBuilder(flist, 0);
+    builder.addRows(sortedTraces, (trace, id) -> {
       final ModularFeature f = FeatureConvertors
-          .tempIMTraceToModularFeature(trace, file, binningMobilogramDataAccess, flist);
+          .tempIMTraceToModularFeature(trace, file, binningMobilogramDataAccess.get(), flist);
       final ModularFeatureListRow row = new ModularFeatureListRow(flist, id, f);
       row.set(FeatureShapeMobilogramType.class, true);
-      flist.addRow(row);
-      id++;
       stepProcessed.getAndIncrement();
+      return row;
+    }, true, this::isCanceled);
+    if (isCanceled()) {
+      return;
     }
+    builder.build();
 
     flist.getAppliedMethods().addAll(file.getAppliedMethods());
     flist.getAppliedMethods()
         .add(new SimpleFeatureListAppliedMethod(RecursiveIMSBuilderModule.class, parameters, getModuleCallDate()));
-    DataTypeUtils.addDefaultIonMobilityTypeColumns(flist);
     project.addFeatureList(flist);
 
     final Unsafe theUnsafe = initUnsafe();
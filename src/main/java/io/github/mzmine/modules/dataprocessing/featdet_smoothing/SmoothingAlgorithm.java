@@ -19,6 +19,7 @@
 package io.github.mzmine.modules.dataprocessing.featdet_smoothing;
 
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.FeatureDataAccess;
 import io.github.mzmine.datamodel.data_access.FeatureFullDataAccess;
 import io.github.mzmine.datamodel.featuredata.IntensitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
@@ -31,6 +32,10 @@ import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.util.IonMobilityUtils;
 import io.github.mzmine.util.MemoryMapStorage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -51,6 +56,22 @@ public interface SmoothingAlgorithm extends MZmineModule {
   public <T extends IntensitySeries & MobilitySeries> double[] smoothMobility(
       @NotNull final T mobilogram);
 
+  /**
+   * Smooths the rt dimension into the given buffer, so multiple series can be smoothed without
+   * allocating a new array for each. Only the first {@link IonTimeSeries#getNumberOfValues()}
+   * values of the returned array are valid. The default implementation ignores the buffer.
+   *
+   * @param series The series.
+   * @param dst    A buffer for the smoothed values. Implementations allocate a new array if the
+   *               buffer is null or too short.
+   * @return The smoothed intensity values or null, if the rt dimension shall not be smoothed.
+   */
+  @Nullable
+  public default <T extends Scan> double[] smoothRt(@NotNull final IonTimeSeries<T> series,
+      @Nullable final double[] dst) {
+    return smoothRt(series);
+  }
+
   /**
    * Creates a new smoothed series for the given feature. The intensities are smoothed with the
    * settings of this {@link SmoothingAlgorithm}. Smooths intensity in rt and mobility dimension.
@@ -61,8 +82,99 @@ public interface SmoothingAlgorithm extends MZmineModule {
       @Nullable final MemoryMapStorage storage, @NotNull final IonTimeSeries<?> dataAccess,
       @NotNull final ModularFeature feature, ZeroHandlingType zht) {
 
-    double[] smoothedIntensities = this.smoothRt(dataAccess);
+    final double[] newIntensities = mapSmoothedIntensities(dataAccess, feature,
+        this.smoothRt(dataAccess));
+    final IonTimeSeries<? extends Scan> originalSeries = feature.getFeatureData();
+    final SummedIntensityMobilitySeries smoothedMobilogram =
+        originalSeries instanceof IonMobilogramTimeSeries imts ? smoothSummedMobilogram(storage,
+            imts.getSummedMobilogram()) : null;
+    return createSmoothedSeries(storage, originalSeries, newIntensities, smoothedMobilogram);
+  }
+
+  /**
+   * Smooths all features of the given data access. The smoothing is done in two steps: First, the
+   * intensities of all features are smoothed in memory, reusing a single buffer for the rt
+   * dimension. Afterwards, all smoothed series are written to the storage in one go, so the
+   * storage is only locked once per call. The features are not altered, the caller is responsible
+   * for setting the new series.
+   * <p></p>
+   * Smoothing algorithms may keep buffers, so an instance must not be used by multiple threads
+   * concurrently. To smooth in parallel, use one algorithm and one data access per thread.
+   *
+   * @param storage    The storage for the smoothed series.
+   * @param dataAccess The data access to iterate the features. Should include zeros, as it would
+   *                   be used for {@link #smoothFeature(MemoryMapStorage, IonTimeSeries,
+   *                   ModularFeature, ZeroHandlingType)}.
+   * @param zht        The zero handling type.
+   * @return A map of all features to their smoothed series in the order of the data access.
+   */
+  @NotNull
+  public default Map<ModularFeature, IonTimeSeries<? extends Scan>> smoothFeatures(
+      @Nullable final MemoryMapStorage storage, @NotNull final FeatureDataAccess dataAccess,
+      @NotNull final ZeroHandlingType zht) {
+
+    final List<ModularFeature> features = new ArrayList<>();
+    final List<double[]> smoothedIntensities = new ArrayList<>();
+    final List<SummedIntensityMobilitySeries> smoothedMobilograms = new ArrayList<>();
+
+    double[] buffer = null;
+    while (dataAccess.hasNextFeature()) {
+      final ModularFeature feature = (ModularFeature) dataAccess.nextFeature();
+      final double[] smoothed = this.smoothRt(dataAccess, buffer);
+      if (smoothed != null) {
+        buffer = smoothed;
+      }
+      features.add(feature);
+      smoothedIntensities.add(mapSmoothedIntensities(dataAccess, feature, smoothed));
 
+      // mobilograms are smoothed to memory and copied to the storage below
+      smoothedMobilograms.add(
+          feature.getFeatureData() instanceof IonMobilogramTimeSeries imts ? smoothSummedMobilogram(
+              null, imts.getSummedMobilogram()) : null);
+    }
+
+    final Map<ModularFeature, IonTimeSeries<? extends Scan>> smoothedSeries = new LinkedHashMap<>(
+        features.size());
+    if (storage == null) {
+      storeSmoothedSeries(null, features, smoothedIntensities, smoothedMobilograms,
+          smoothedSeries);
+    } else {
+      synchronized (storage) {
+        storeSmoothedSeries(storage, features, smoothedIntensities, smoothedMobilograms,
+            smoothedSeries);
+      }
+    }
+    return smoothedSeries;
+  }
+
+  private void storeSmoothedSeries(@Nullable final MemoryMapStorage storage,
+      @NotNull final List<ModularFeature> features,
+      @NotNull final List<double[]> smoothedIntensities,
+      @NotNull final List<SummedIntensityMobilitySeries> smoothedMobilograms,
+      @NotNull final Map<ModularFeature, IonTimeSeries<? extends Scan>> dst) {
+    for (int i = 0; i < features.size(); i++) {
+      final ModularFeature feature = features.get(i);
+      final IonTimeSeries<? extends Scan> originalSeries = feature.getFeatureData();
+      SummedIntensityMobilitySeries mobilogram = smoothedMobilograms.get(i);
+      if (mobilogram != null && originalSeries instanceof IonMobilogramTimeSeries imts
+          && mobilogram != imts.getSummedMobilogram()) {
+        mobilogram = mobilogram.copy(storage);
+      }
+      dst.put(feature,
+          createSmoothedSeries(storage, originalSeries, smoothedIntensities.get(i), mobilogram));
+    }
+  }
+
+  /**
+   * Maps the smoothed intensities of the data access (including zeros) back to the data points of
+   * the original series.
+   *
+   * @param smoothedIntensities The smoothed intensities or null, if the rt dimension was not
+   *                            smoothed.
+   * @return The new intensities, one per data point of the original series.
+   */
+  private double[] mapSmoothedIntensities(@NotNull final IonTimeSeries<?> dataAccess,
+      @NotNull final ModularFeature feature, @Nullable final double[] smoothedIntensities) {
     final IonTimeSeries<? extends Scan> originalSeries = feature.getFeatureData();
     final double[] originalIntensities = new double[originalSeries.getNumberOfValues()];
     final double[] newIntensities;
@@ -90,12 +202,17 @@ public interface SmoothingAlgorithm extends MZmineModule {
         }
       }
     }
+    return newIntensities;
+  }
 
+  private IonTimeSeries<? extends Scan> createSmoothedSeries(
+      @Nullable final MemoryMapStorage storage,
+      @NotNull final IonTimeSeries<? extends Scan> originalSeries,
+      @NotNull final double[] newIntensities,
+      @Nullable final SummedIntensityMobilitySeries smoothedMobilogram) {
     double[] originalMzs = new double[originalSeries.getNumberOfValues()];
     originalSeries.getMzValues(originalMzs);
-    if (originalSeries instanceof IonMobilogramTimeSeries imts) {
-      final SummedIntensityMobilitySeries smoothedMobilogram = smoothSummedMobilogram(storage,
-          imts.getSummedMobilogram());
+    if (originalSeries instanceof IonMobilogramTimeSeries) {
       return new SimpleIonMobilogramTimeSeries(storage, originalMzs, newIntensities,
           ((SimpleIonMobilogramTimeSeries) originalSeries).getMobilogramsModifiable(),
           ((ModifiableSpectra) originalSeries).getSpectraModifiable(), smoothedMobilogram);
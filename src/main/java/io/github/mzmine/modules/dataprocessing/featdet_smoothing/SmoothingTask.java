@@ -18,6 +18,7 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_smoothing;
 
+import com.google.common.collect.Lists;
 import io.github.mzmine.datamodel.Frame;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.MobilityScan;
@@ -33,9 +34,12 @@ import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
 import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonMobilitySeries;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.gui.preferences.MZminePreferences;
+import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
 import io.github.mzmine.taskcontrol.AbstractTask;
@@ -46,9 +50,11 @@ import java.lang.reflect.InvocationTargetException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -56,6 +62,12 @@ public class SmoothingTask extends AbstractTask {
 
   private static final Logger logger = Logger.getLogger(SmoothingTask.class.getName());
 
+  /**
+   * Minimum number of rows smoothed by a single thread. Smaller feature lists are smoothed on the
+   * task thread.
+   */
+  private static final int MIN_ROWS_PER_PARTITION = 500;
+
   private final ModularFeatureList flist;
   private final ParameterSet parameters;
   private final MZmineProject project;
@@ -109,25 +121,49 @@ public class SmoothingTask extends AbstractTask {
     final ModularFeatureList smoothedList = flist
         .createCopy(flist.getName() + " " + suffix, getMemoryMapStorage(), false);
     DataTypeUtils.copyTypes(flist, smoothedList, true, true);
+    // copy the rows, so the partitions don't operate on views of the observable list
+    final List<FeatureListRow> rows = new ArrayList<>(smoothedList.getRows());
+    final int numPartitions = getNumberOfPartitions(rows.size());
+    final List<List<FeatureListRow>> partitions = Lists
+        .partition(rows, Math.max(1, (int) Math.ceil(rows.size() / (double) numPartitions)));
+
     // init a new smoother instance, since the parameters have to be stored in the smoother itself.
-    final SmoothingAlgorithm smoother = initialiseSmoother();
-    if (smoother == null) {
-      return;
+    // smoothers may keep buffers, so every partition needs its own instance.
+    final List<SmoothingAlgorithm> smoothers = new ArrayList<>(partitions.size());
+    for (int i = 0; i < partitions.size(); i++) {
+      final SmoothingAlgorithm smoother = initialiseSmoother();
+      if (smoother == null) {
+        return;
+      }
+      smoothers.add(smoother);
     }
 
-    // include zeros
-    final FeatureDataAccess dataAccess = EfficientDataAccess
-        .of(smoothedList, FeatureDataType.INCLUDE_ZEROS);
-
-    while (dataAccess.hasNextFeature()) {
-      final ModularFeature feature = (ModularFeature) dataAccess.nextFeature();
+    final List<Map<ModularFeature, IonTimeSeries<? extends Scan>>> smoothedPartitions = IntStream
+        .range(0, partitions.size()).parallel().mapToObj(i -> {
+          if (isCanceled()) {
+            return Map.<ModularFeature, IonTimeSeries<? extends Scan>>of();
+          }
+          // include zeros
+          final FeatureDataAccess dataAccess = EfficientDataAccess
+              .of(smoothedList, FeatureDataType.INCLUDE_ZEROS, null, partitions.get(i));
+          final var smoothed = smoothers.get(i)
+              .smoothFeatures(getMemoryMapStorage(), dataAccess, zht);
+          processedFeatures.getAndAdd(partitions.get(i).size());
+          return smoothed;
+        }).toList();
 
-      final IonTimeSeries<? extends Scan> smoothedSeries = smoother
-          .smoothFeature(getMemoryMapStorage(), dataAccess, feature, zht);
-      feature.set(io.github.mzmine.datamodel.features.types.FeatureDataType.class, smoothedSeries);
-      FeatureDataUtils.recalculateIonSeriesDependingTypes(feature);
+    if (isCanceled()) {
+      return;
+    }
 
-      processedFeatures.getAndIncrement();
+    // the features are updated on this thread in the original row order
+    for (var smoothedPartition : smoothedPartitions) {
+      for (var entry : smoothedPartition.entrySet()) {
+        final ModularFeature feature = entry.getKey();
+        feature.set(io.github.mzmine.datamodel.features.types.FeatureDataType.class,
+            entry.getValue());
+        FeatureDataUtils.recalculateIonSeriesDependingTypes(feature);
+      }
     }
 
     if (isCanceled()) {
@@ -143,6 +179,12 @@ public class SmoothingTask extends AbstractTask {
     setStatus(TaskStatus.FINISHED);
   }
 
+  private int getNumberOfPartitions(final int numRows) {
+    final int numThreads = MZmineCore.getConfiguration().getPreferences()
+        .getParameter(MZminePreferences.numOfThreads).getValue();
+    return Math.max(1, Math.min(numThreads, numRows / MIN_ROWS_PER_PARTITION));
+  }
+
   @Nullable
   private SmoothingAlgorithm initialiseSmoother() {
     final SmoothingAlgorithm smoother;
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+package io.github.mzmine.modules.dataprocessing.featdet_smoothing.loess;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Local linear regression (LOESS) on primitive arrays. Computes the same result as {@link
+ * org.apache.commons.math3.analysis.interpolation.LoessInterpolator#smooth(double[], double[])}
+ * without robustness iterations, but works on the first n values of reusable buffers and does not
+ * allocate any memory if a suitable result buffer is given.
+ */
+public final class LoessFilter {
+
+  /**
+   * The slope of a local regression is set to 0, if the spread of the x values is below this
+   * threshold. Same as the default of the commons math interpolator.
+   */
+  private static final double ACCURACY = 1e-12;
+
+  private LoessFilter() {
+  }
+
+  /**
+   * @param x         The x values. Have to be strictly increasing.
+   * @param y         The y values.
+   * @param n         The number of values to smooth.
+   * @param bandwidth The fraction of values taken into account for the local regression of every
+   *                  point.
+   * @param dst       A buffer for the result. A new array is allocated if it is null or too short.
+   * @return The smoothed values. If the bandwidth spans less than two points, the y values are
+   * copied to the result.
+   */
+  public static double[] smooth(@NotNull final double[] x, @NotNull final double[] y, final int n,
+      final double bandwidth, @Nullable double[] dst) {
+    if (dst == null || dst.length < n) {
+      dst = new double[n];
+    }
+
+    final int bandwidthInPoints = (int) (bandwidth * n);
+    if (n <= 2 || bandwidthInPoints < 2) {
+      System.arraycopy(y, 0, dst, 0, n);
+      return dst;
+    }
+
+    int left = 0;
+    int right = bandwidthInPoints - 1;
+    for (int i = 0; i < n; i++) {
+      final double xi = x[i];
+
+      // move the bandwidth interval to the right, if that makes it more symmetric
+      if (i > 0 && right + 1 < n && x[right + 1] - xi < xi - x[left]) {
+        left++;
+        right++;
+      }
+
+      final int edge = xi - x[left] > x[right] - xi ? left : right;
+      final double denom = Math.abs(1.0 / (x[edge] - xi));
+
+      double sumWeights = 0;
+      double sumX = 0;
+      double sumXSquared = 0;
+      double sumY = 0;
+      double sumXY = 0;
+      for (int k = left; k <= right; k++) {
+        final double xk = x[k];
+        final double yk = y[k];
+        final double dist = (k < i) ? xi - xk : xk - xi;
+        final double w = tricube(dist * denom);
+        final double xkw = xk * w;
+        sumWeights += w;
+        sumX += xkw;
+        sumXSquared += xk * xkw;
+        sumY += yk * w;
+        sumXY += yk * xkw;
+      }
+
+      final double meanX = sumX / sumWeights;
+      final double meanY = sumY / sumWeights;
+      final double meanXY = sumXY / sumWeights;
+      final double meanXSquared = sumXSquared / sumWeights;
+
+      final double beta;
+      if (Math.sqrt(Math.abs(meanXSquared - meanX * meanX)) < ACCURACY) {
+        beta = 0;
+      } else {
+        beta = (meanXY - meanX * meanY) / (meanXSquared - meanX * meanX);
+      }
+      final double alpha = meanY - beta * meanX;
+      dst[i] = beta * xi + alpha;
+    }
+    return dst;
+  }
+
+  private static double tricube(final double x) {
+    final double absX = Math.abs(x);
+    if (absX >= 1.0) {
+      return 0.0;
+    }
+    final double tmp = 1 - absX * absX * absX;
+    return tmp * tmp * tmp;
+  }
+}
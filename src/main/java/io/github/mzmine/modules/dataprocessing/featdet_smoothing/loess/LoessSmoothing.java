@@ -26,7 +26,6 @@ import io.github.mzmine.datamodel.featuredata.MobilitySeries;
 import io.github.mzmine.modules.dataprocessing.featdet_smoothing.SmoothingAlgorithm;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.util.IonMobilityUtils;
-import org.apache.commons.math3.analysis.interpolation.LoessInterpolator;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -37,6 +36,10 @@ public class LoessSmoothing implements SmoothingAlgorithm {
   private final boolean smoothRt;
   private final boolean smoothMobility;
 
+  // buffers for the rt smoothing, the instance must not be used concurrently
+  private double[] rtBuffer = new double[0];
+  private double[] intensityBuffer = new double[0];
+
   public LoessSmoothing() {
     this.mobilityWidth = null;
     this.rtWidth = null;
@@ -66,29 +69,36 @@ public class LoessSmoothing implements SmoothingAlgorithm {
 
   @Override
   public <T extends Scan> @Nullable double[] smoothRt(@NotNull IonTimeSeries<T> series) {
+    return smoothRt(series, null);
+  }
+
+  @Override
+  public <T extends Scan> @Nullable double[] smoothRt(@NotNull IonTimeSeries<T> series,
+      @Nullable double[] dst) {
     if (!smoothRt) {
       return null;
     }
 
-    final double rtBandwidth = (((double) this.rtWidth) / series.getNumberOfValues());
-    final LoessInterpolator interpolator = new LoessInterpolator(rtBandwidth, 0);
+    final int numValues = series.getNumberOfValues();
+    final double rtBandwidth = (((double) this.rtWidth) / numValues);
 
-    double[] intensities;
-    if(series instanceof FeatureFullDataAccess access) {
+    final double[] intensities;
+    if (series instanceof FeatureFullDataAccess access) {
       intensities = access.getIntensityValues();
     } else {
-      intensities = new double[series.getNumberOfValues()];
-      intensities = series.getIntensityValues(intensities);
+      intensities = series.getIntensityValues(intensityBuffer);
+      intensityBuffer = intensities;
     }
-    double[] rts = new double[series.getNumberOfValues()];
-    for (int i = 0; i < rts.length; i++) {
-      rts[i] = series.getRetentionTime(i);
+    if (rtBuffer.length < numValues) {
+      rtBuffer = new double[numValues];
+    }
+    for (int i = 0; i < numValues; i++) {
+      rtBuffer[i] = series.getRetentionTime(i);
     }
 
-    assert intensities.length == rts.length;
-
-    double[] smoothed = interpolator.smooth(rts, intensities);
-    for (int i = 0; i < intensities.length; i++) {
+    final double[] smoothed = LoessFilter.smooth(rtBuffer, intensities, numValues, rtBandwidth,
+        dst);
+    for (int i = 0; i < numValues; i++) {
       if (Double.compare(intensities[i], 0d) <= 0) {
         smoothed[i] = 0d;
       }
@@ -106,13 +116,13 @@ public class LoessSmoothing implements SmoothingAlgorithm {
 
     final double mobilityBandwidth = (((double) this.mobilityWidth) / mobilogram
         .getNumberOfValues());
-    final LoessInterpolator interpolator = new LoessInterpolator(mobilityBandwidth, 0);
 
     double[] intensities = new double[mobilogram.getNumberOfValues()];
     mobilogram.getIntensityValues(intensities);
     double[] mobilities = IonMobilityUtils.extractMobilities(mobilogram);
 
-    double[] smoothed = interpolator.smooth(mobilities, intensities);
+    double[] smoothed = LoessFilter.smooth(mobilities, intensities, intensities.length,
+        mobilityBandwidth, null);
     for (int i = 0; i < intensities.length; i++) {
       if (Double.compare(intensities[i], 0d) <= 0) {
         smoothed[i] = 0d;
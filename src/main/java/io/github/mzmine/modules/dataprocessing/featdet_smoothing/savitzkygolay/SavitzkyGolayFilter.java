@@ -24,6 +24,7 @@
 
 package io.github.mzmine.modules.dataprocessing.featdet_smoothing.savitzkygolay;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -134,4 +135,59 @@ public class SavitzkyGolayFilter {
 
     return convolved;
   }
+
+  /**
+   * Convolve a set of weights with the first numPoints intensities into a buffer. Produces the same
+   * results as {@link #convolve(double[], double[])}. Data points that are at least half the filter
+   * width away from both edges are convolved with the weights as outer and the data points as
+   * inner loop. The inner loop is a plain multiply-add over consecutive array elements, which can
+   * be vectorized by the JIT compiler. The summation order per data point is unchanged.
+   *
+   * @param intensities the intensities.
+   * @param numPoints   the number of intensities to convolve.
+   * @param weights     the filter weights.
+   * @param dst         the buffer for the results. A new buffer is allocated if it is null or too
+   *                    small.
+   * @return the buffer holding the convolution results.
+   */
+  public static double[] convolve(final double[] intensities, final int numPoints,
+      final double[] weights, double[] dst) {
+
+    final int fullWidth = weights.length;
+    final int halfWidth = (fullWidth - 1) / 2;
+
+    if (dst == null || dst.length < numPoints) {
+      dst = new double[numPoints];
+    }
+
+    // points that are affected by the edges
+    final int interiorStart = Math.min(halfWidth, numPoints);
+    final int interiorEnd = Math.max(interiorStart, numPoints - halfWidth);
+    for (int i = 0; i < numPoints; i++) {
+      if (i == interiorStart) {
+        i = interiorEnd;
+        if (i >= numPoints) {
+          break;
+        }
+      }
+      double sum = 0.0;
+      final int k = i - halfWidth;
+      for (int j = Math.max(0, -k); j < Math.min(fullWidth, numPoints - k); j++) {
+        sum += intensities[k + j] * weights[j];
+      }
+      dst[i] = sum;
+    }
+
+    // interior points
+    Arrays.fill(dst, interiorStart, interiorEnd, 0d);
+    for (int j = 0; j < fullWidth; j++) {
+      final double w = weights[j];
+      final int offset = j - halfWidth;
+      for (int i = interiorStart; i < interiorEnd; i++) {
+        dst[i] += intensities[i + offset] * w;
+      }
+    }
+
+    return dst;
+  }
 }
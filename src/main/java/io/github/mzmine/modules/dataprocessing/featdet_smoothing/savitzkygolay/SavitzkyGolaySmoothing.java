@@ -19,6 +19,7 @@
 package io.github.mzmine.modules.dataprocessing.featdet_smoothing.savitzkygolay;
 
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.FeatureFullDataAccess;
 import io.github.mzmine.datamodel.featuredata.IntensitySeries;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.MobilitySeries;
@@ -66,6 +67,20 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
    * @return
    */
   public double[] smooth(@NotNull final IntensitySeries access, double[] normWeights) {
+    return smooth(access, normWeights, null);
+  }
+
+  /**
+   * @param access      The intensity series to be smoothed. Ideally an instance of {@link
+   *                    FeatureFullDataAccess} for best performance, the intensities are then read
+   *                    from its buffer directly.
+   * @param normWeights The normalized weights.
+   * @param dst         A buffer for the smoothed values or null. Only the first {@link
+   *                    IntensitySeries#getNumberOfValues()} values of the result are valid.
+   * @return The smoothed values.
+   */
+  public double[] smooth(@NotNull final IntensitySeries access, double[] normWeights,
+      @Nullable double[] dst) {
     if (normWeights == null) {
       throw new IllegalArgumentException(
           "No smoothing weigths specified. Was the smoother initialised correctly?");
@@ -73,23 +88,25 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
 
     // Initialise.
     final int numPoints = access.getNumberOfValues();
-    final int fullWidth = normWeights.length;
-    final int halfWidth = (fullWidth - 1) / 2;
-
-    double[] smoothed = new double[numPoints];
-    for (int i = 0; i < numPoints; i++) {
-      final int k = i - halfWidth;
-      for (int j = Math.max(0, -k); j < Math.min(fullWidth, numPoints - k); j++) {
-        smoothed[i] += access.getIntensity(k + j) * normWeights[j];
+    final double[] intensities;
+    if (access instanceof FeatureFullDataAccess fullAccess) {
+      intensities = fullAccess.getIntensityValues();
+    } else {
+      intensities = new double[numPoints];
+      for (int i = 0; i < numPoints; i++) {
+        intensities[i] = access.getIntensity(i);
       }
+    }
 
+    final double[] smoothed = SavitzkyGolayFilter
+        .convolve(intensities, numPoints, normWeights, dst);
+    for (int i = 0; i < numPoints; i++) {
       if (smoothed[i] < 0d) {
         smoothed[i] = 0d;
       }
 
-//      if (/*zht == ZeroHandlingType.KEEP &&*/ Double.compare(access.getIntensity(i), 0d) == 0) {
       // if values that were previously 0 shall remain 0, we process that here.
-      if (Double.compare(access.getIntensity(i), 0d) == 0) {
+      if (Double.compare(intensities[i], 0d) == 0) {
         smoothed[i] = 0;
       }
     }
@@ -97,6 +114,13 @@ public class SavitzkyGolaySmoothing implements SmoothingAlgorithm {
     return smoothed;
   }
 
+  @Override
+  @Nullable
+  public <T extends Scan> double[] smoothRt(@NotNull IonTimeSeries<T> series,
+      @Nullable double[] dst) {
+    return smoothRt ? smooth(series, rtWeights, dst) : null;
+  }
+
   @Override
   @Nullable
   public <T extends Scan> double[] smoothRt(@NotNull IonTimeSeries<T> series) {
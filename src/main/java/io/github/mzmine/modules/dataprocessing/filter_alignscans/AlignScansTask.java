@@ -18,23 +18,22 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_alignscans;
 
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
-import io.github.mzmine.datamodel.impl.SimpleScan;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.scans.ScanUtils;
+import io.github.mzmine.util.scans.ParallelScanFilter;
+import io.github.mzmine.util.scans.ScanRingBuffer;
 import java.io.IOException;
 import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -47,8 +46,9 @@ public class AlignScansTask extends AbstractTask {
   private final RawDataFile dataFile;
 
   // scan counter
-  private int processedScans = 0, totalScans;
-  private Scan[] scanNumbers;
+  private final AtomicInteger processedScans = new AtomicInteger(0);
+  private int totalScans;
+  private Scan[] scans;
 
   // User parameters
   private String suffix;
@@ -95,7 +95,7 @@ public class AlignScansTask extends AbstractTask {
     if (totalScans == 0)
       return 0;
     else
-      return (double) processedScans / totalScans;
+      return (double) processedScans.get() / totalScans;
   }
 
   public RawDataFile getDataFile() {
@@ -112,107 +112,37 @@ public class AlignScansTask extends AbstractTask {
 
     logger.info("Started Scan Alignment on " + dataFile);
 
-    scanNumbers = dataFile.getScanNumbers(1).toArray(Scan[]::new);
-    totalScans = scanNumbers.length;
+    scans = dataFile.getScanNumbers(1).toArray(Scan[]::new);
+    totalScans = scans.length;
 
-    RawDataFile newRDFW = null;
     try {
-      newRDFW = MZmineCore.createNewFile(dataFile.getName() + ' ' + suffix, null, getMemoryMapStorage());
-
-      DataPoint[][] mzValues = null; // [relative scan][j value]
-      int i, j, si, sj, ii, k, shift, ks;
-      int shiftedScans[] = new int[mzSpan * 2 + 1];
-      for (i = 0; i < totalScans; i++) {
-
-        if (isCanceled())
-          return;
-
-        Scan scan = scanNumbers[i];
-        si = Math.max(0, i - scanSpan);
-        sj = si + 2 * scanSpan;
+      RawDataFile newRDFW = MZmineCore.createNewFile(dataFile.getName() + ' ' + suffix, null,
+          getMemoryMapStorage());
+
+      // window of 2 * scanSpan + 1 scans around each scan, shifted at the borders
+      final int[] windowStart = new int[totalScans];
+      final int[] windowEnd = new int[totalScans];
+      for (int i = 0; i < totalScans; i++) {
+        int si = Math.max(0, i - scanSpan);
+        int sj = si + 2 * scanSpan;
         if (sj >= totalScans) {
           si = Math.max(0, si - (sj - totalScans + 1));
-          sj = si + 2 * scanSpan;
-        }
-        if (scan != null) {
-          // Allocate
-          if (mzValues == null || mzValues.length < sj - si + 1)
-            mzValues = new DataPoint[sj - si + 1][];
-          // Load Data Points
-          for (j = si; j <= sj; j++) {
-            Scan xscan = scanNumbers[j];
-            mzValues[j - si] = ScanUtils.extractDataPoints(xscan);
-          }
-          // Estimate Correlations
-          ii = i - si;
-          DataPoint[] newDP = new DataPoint[mzValues[ii].length];
-          int maxShift = 0;
-          double maxCorrelation = 0;
-          int ndp = mzValues[ii].length;
-          // System.out.print("Scan="+i);
-          for (shift = -mzSpan; shift <= mzSpan; shift++) {
-            PearsonCorrelation thisShift = new PearsonCorrelation();
-            for (k = 0; k < ndp; k++) {
-              ks = k + shift;
-              if (ks >= 0 && ks < ndp && mzValues[ii][ks].getIntensity() >= minimumHeight) {
-                DataPoint dp = mzValues[ii][k];
-                double mz = dp.getMZ();
-                int f = 0;
-                for (j = 0; j < mzValues.length; j++) {
-                  // System.out.println(j);
-                  if (j != ii) {
-                    if (mzValues[j].length > k && Math.abs(mzValues[j][k].getMZ() - mz) < 1e-10) {
-                      f = k;
-                    } else {
-                      f = findFirstMass(mz, mzValues[j]);
-                      if (Math.abs(mzValues[j][f].getMZ() - mz) > 1e-10) {
-                        f = -f;
-                      }
-                    }
-                    if (f >= 0) {
-                      if (logScale) {
-                        thisShift.enter(Math.log(mzValues[j][f].getIntensity()),
-                            Math.log(mzValues[ii][ks].getIntensity()));
-                      } else {
-                        thisShift.enter(mzValues[j][f].getIntensity(),
-                            mzValues[ii][ks].getIntensity());
-                      }
-                    }
-                  }
-                }
-              }
-            }
-            // System.out.print(", shift="+shift+",
-            // correlation="+Math.round(thisShift.correlation()*1000)/1000.0);
-            if (thisShift.correlation() > maxCorrelation) {
-              maxShift = shift;
-              maxCorrelation = thisShift.correlation();
-            }
-            // newDP[k] = new SimpleDataPoint(mz, c > 0 ? a/c : 0);
-          }
-          // Copy DataPoints with maxShift as the shift
-          shift = maxShift;
-          // System.out.println("\nScan="+i+", Shift="+maxShift+",
-          // Correlation="+maxCorrelation);
-          shiftedScans[maxShift + mzSpan]++;
-          for (k = 0; k < ndp; k++) {
-            ks = k + shift;
-            if (ks >= 0 && ks < ndp) {
-              newDP[k] =
-                  new SimpleDataPoint(mzValues[ii][k].getMZ(), mzValues[ii][ks].getIntensity());
-            } else {
-              newDP[k] = new SimpleDataPoint(mzValues[ii][k].getMZ(), 0);
-            }
-          }
-          double[][] dp = DataPointUtils.getDataPointsAsDoubleArray(newDP);
-          final SimpleScan newScan = new SimpleScan(newRDFW, scan, dp[0], dp[1]);
-          newRDFW.addScan(newScan);
+          sj = Math.min(totalScans - 1, si + 2 * scanSpan);
         }
-
-        processedScans++;
+        windowStart[i] = si;
+        windowEnd[i] = sj;
       }
 
-      if (!isCanceled()) {
+      final AtomicIntegerArray shiftedScans = new AtomicIntegerArray(mzSpan * 2 + 1);
+      final boolean finished = ParallelScanFilter.filterScans(newRDFW, scans, windowStart,
+          windowEnd, (i, buffer) -> {
+            final int maxShift = findBestShift(i, windowStart[i], windowEnd[i], buffer);
+            shiftedScans.incrementAndGet(maxShift + mzSpan);
+            return shiftIntensities(buffer.getIntensityValues(i),
+                buffer.getNumberOfDataPoints(i), maxShift);
+          }, this::isCanceled, processedScans);
+
+      if (finished && !isCanceled()) {
 
         // Add the newly created file to the project
         for (FeatureListAppliedMethod appliedMethod : dataFile.getAppliedMethods()) {
@@ -231,8 +161,8 @@ public class AlignScansTask extends AbstractTask {
         setStatus(TaskStatus.FINISHED);
 
         String shifts = "";
-        for (i = -mzSpan; i <= mzSpan; i++) {
-          shifts = shifts + i + ":" + shiftedScans[i + mzSpan] + " | ";
+        for (int i = -mzSpan; i <= mzSpan; i++) {
+          shifts = shifts + i + ":" + shiftedScans.get(i + mzSpan) + " | ";
         }
         logger.info("Finished scan alignment on " + dataFile + ". Scans per shift = " + shifts);
 
@@ -240,19 +170,102 @@ public class AlignScansTask extends AbstractTask {
 
     } catch (IOException e) {
       e.printStackTrace();
+      setErrorMessage("Could not create new raw data file: " + e.getMessage());
+      setStatus(TaskStatus.ERROR);
+    }
+
+  }
+
+  /**
+   * Finds the shift of the intensities of scan i (in data points) with the highest correlation to
+   * the intensities of the same m/z values in the other scans of the window.
+   *
+   * @return the shift between -mzSpan and mzSpan
+   */
+  private int findBestShift(int i, int windowStart, int windowEnd, ScanRingBuffer buffer) {
+    final int ndp = buffer.getNumberOfDataPoints(i);
+    final double[] mzs = buffer.getMzValues(i);
+    final double[] intensities = buffer.getIntensityValues(i);
+
+    // the data point with the same m/z in each other scan does not depend on the shift
+    final int windowSize = windowEnd - windowStart + 1;
+    final int[][] matches = new int[windowSize][];
+    for (int j = windowStart; j <= windowEnd; j++) {
+      if (j == i) {
+        continue;
+      }
+      final int nj = buffer.getNumberOfDataPoints(j);
+      final double[] mzsJ = buffer.getMzValues(j);
+      final int[] match = new int[ndp];
+      for (int k = 0; k < ndp; k++) {
+        final double mz = mzs[k];
+        int f = -1;
+        if (nj > k && Math.abs(mzsJ[k] - mz) < 1e-10) {
+          f = k;
+        } else if (nj > 0) {
+          f = findFirstMass(mz, mzsJ, nj);
+          if (Math.abs(mzsJ[f] - mz) > 1e-10) {
+            f = -1;
+          }
+        }
+        match[k] = f;
+      }
+      matches[j - windowStart] = match;
+    }
+
+    int maxShift = 0;
+    double maxCorrelation = 0;
+    for (int shift = -mzSpan; shift <= mzSpan; shift++) {
+      PearsonCorrelation thisShift = new PearsonCorrelation();
+      for (int k = 0; k < ndp; k++) {
+        final int ks = k + shift;
+        if (ks < 0 || ks >= ndp || intensities[ks] < minimumHeight) {
+          continue;
+        }
+        for (int j = windowStart; j <= windowEnd; j++) {
+          final int[] match = matches[j - windowStart];
+          if (match == null || match[k] < 0) {
+            continue;
+          }
+          final double other = buffer.getIntensityValues(j)[match[k]];
+          if (logScale) {
+            thisShift.enter(Math.log(other), Math.log(intensities[ks]));
+          } else {
+            thisShift.enter(other, intensities[ks]);
+          }
+        }
+      }
+      if (thisShift.correlation() > maxCorrelation) {
+        maxShift = shift;
+        maxCorrelation = thisShift.correlation();
+      }
     }
+    return maxShift;
+  }
 
+  /**
+   * @return the intensities shifted by shift data points, 0 for data points without intensity
+   */
+  static double[] shiftIntensities(double[] intensities, int ndp, int shift) {
+    final double[] shifted = new double[ndp];
+    for (int k = 0; k < ndp; k++) {
+      final int ks = k + shift;
+      if (ks >= 0 && ks < ndp) {
+        shifted[k] = intensities[ks];
+      }
+    }
+    return shifted;
   }
 
-  int findFirstMass(double mass, DataPoint mzValues[]) {
+  static int findFirstMass(double mass, double[] mzs, int numValues) {
     int l = 0;
-    int r = mzValues.length - 1;
+    int r = numValues - 1;
     int mid = 0;
     while (l < r) {
       mid = (r + l) / 2;
-      if (mzValues[mid].getMZ() > mass) {
+      if (mzs[mid] > mass) {
         r = mid - 1;
-      } else if (mzValues[mid].getMZ() < mass) {
+      } else if (mzs[mid] < mass) {
         l = mid + 1;
       } else {
         r = mid;
@@ -23,20 +23,16 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.logging.Logger;
 import com.google.common.collect.Range;
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.datamodel.impl.SimpleScan;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.parameters.ParameterSet;
-import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.R.REngineType;
 import io.github.mzmine.util.R.RSessionWrapper;
 import io.github.mzmine.util.R.RSessionWrapperException;
 import io.github.mzmine.util.RangeUtils;
-import io.github.mzmine.util.scans.ScanUtils;
 import org.jetbrains.annotations.Nullable;
 
 /**
@@ -102,11 +98,11 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     msLevel = generalParameters.getParameter(BaselineCorrectionParameters.MS_LEVEL).getValue();
   }
 
-  public final RawDataFile correctDatafile(final RSessionWrapper rSession,
+  public final RawDataFile correctDatafile(@Nullable final RSessionWrapper rSession,
       final RawDataFile dataFile, final ParameterSet parameters,
       final ParameterSet commonParameters, @Nullable MemoryMapStorage storage) throws IOException, RSessionWrapperException {
 
-    if (isAborted(dataFile) || !rSession.isSessionRunning())
+    if (isAborted(dataFile) || (getRequiresR() && !rSession.isSessionRunning()))
       return null;
     // Get very last information from root module setup
     // this.setGeneralParameters(MZmineCore.getConfiguration().getModuleParameters(BaselineCorrectionModule.class));
@@ -199,21 +195,15 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       // Get original scan.
       final Scan origScan = scanNumbers[scanIndex];
 
-      // Get data points (m/z and intensity pairs) of the original scan
-      final DataPoint[] origDataPoints = ScanUtils.extractDataPoints(origScan);
-      final DataPoint[] newDataPoints = new DataPoint[origDataPoints.length];
-
       // Copy original data points.
-      int i = 0;
-      for (final DataPoint dp : origDataPoints) {
-        newDataPoints[i++] = new SimpleDataPoint(dp);
-      }
+      final int numDp = origScan.getNumberOfDataPoints();
+      final double[] mzs = origScan.getMzValues(new double[numDp]);
+      final double[] intensities = origScan.getIntensityValues(new double[numDp]);
 
       // Create new copied scan.
-      double[][] dp = DataPointUtils.getDataPointsAsDoubleArray(newDataPoints);
-      final SimpleScan newScan = new SimpleScan(writer, origScan, dp[0], dp[1]);
+      final SimpleScan newScan = new SimpleScan(writer, origScan, mzs, intensities);
       writer.addScan(newScan);
-      progressMap.get(origDataFile)[0]++;
+      incrementProgress(origDataFile);
     }
   }
 
@@ -244,11 +234,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     // Calculate baselines: done in-place, i.e. overwrite chromatograms to
     // save memory.
     logger.finest("Calculating baselines.");
-    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
-      baseChrom[binIndex] =
-          computeBaseline(rSession, origDataFile, baseChrom[binIndex], parameters);
-      progressMap.get(origDataFile)[0]++;
-    }
+    computeBaselines(rSession, origDataFile, baseChrom, parameters, false);
 
     // Subtract baselines.
     logger.finest("Subtracting baselines.");
@@ -257,15 +243,11 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       // Get original scan.
       final Scan origScan = scanNumbers[scanIndex];
 
-      // Get data points (m/z and intensity pairs) of the original scan
-      final DataPoint[] origDataPoints = ScanUtils.extractDataPoints(origScan);
-
       // Create and write new corrected scan.
-      double[][] dp = DataPointUtils.getDataPointsAsDoubleArray(
-          subtractBasePeakBaselines(origDataFile, origDataPoints, baseChrom, numBins, scanIndex));
-      final SimpleScan newScan = new SimpleScan(writer, origScan, dp[0], dp[1]);
+      final SimpleScan newScan = subtractBaselines(writer, origDataFile, origScan, baseChrom,
+          numBins, scanIndex, false);
       writer.addScan(newScan);
-      progressMap.get(origDataFile)[0]++;
+      incrementProgress(origDataFile);
     }
   }
 
@@ -295,22 +277,7 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     // Calculate baselines: done in-place, i.e. overwrite chromatograms to
     // save memory.
     logger.finest("Calculating baselines.");
-    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < numBins; binIndex++) {
-
-      // Calculate baseline.
-      // final double[] baseline = asymBaseline(baseChrom[binIndex]);
-      final double[] baseline =
-          computeBaseline(rSession, origDataFile, baseChrom[binIndex], parameters);
-
-      // Normalize the baseline w.r.t. chromatogram (TIC).
-      for (int scanIndex = 0; !isAborted(origDataFile) && scanIndex < numScans; scanIndex++) {
-        final double bc = baseChrom[binIndex][scanIndex];
-        if (bc != 0.0) {
-          baseChrom[binIndex][scanIndex] = baseline[scanIndex] / bc;
-        }
-      }
-      progressMap.get(origDataFile)[0]++;
-    }
+    computeBaselines(rSession, origDataFile, baseChrom, parameters, true);
 
     // Subtract baselines.
     logger.finest("Subtracting baselines.");
@@ -319,15 +286,11 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       // Get original scan.
       final Scan origScan = scanNumbers[scanIndex];
 
-      // Get data points (m/z and intensity pairs) of the original scan
-      final DataPoint[] origDataPoints = ScanUtils.extractDataPoints(origScan);
-
       // Create and write new corrected scan.
-      double[][] dp = DataPointUtils.getDataPointsAsDoubleArray(
-          subtractTICBaselines(origDataFile, origDataPoints, baseChrom, numBins, scanIndex));
-      final SimpleScan newScan = new SimpleScan(writer, origScan, dp[0], dp[1]);
+      final SimpleScan newScan = subtractBaselines(writer, origDataFile, origScan, baseChrom,
+          numBins, scanIndex, true);
       writer.addScan(newScan);
-      progressMap.get(origDataFile)[0]++;
+      incrementProgress(origDataFile);
     }
 
   }
@@ -359,12 +322,13 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       final Scan scan = scanNumbers[scanIndex];
 
       // Process data points.
-      for (final DataPoint dataPoint : scan) {
-        final int bin = RangeUtils.binNumber(mzRange, numBins, dataPoint.getMZ());
+      final int numDp = scan.getNumberOfDataPoints();
+      for (int i = 0; i < numDp; i++) {
+        final int bin = RangeUtils.binNumber(mzRange, numBins, scan.getMzValue(i));
         final double value = chromatograms[bin][scanIndex];
-        chromatograms[bin][scanIndex] = Math.max(value, dataPoint.getIntensity());
+        chromatograms[bin][scanIndex] = Math.max(value, scan.getIntensityValue(i));
       }
-      progressMap.get(origDataFile)[0]++;
+      incrementProgress(origDataFile);
     }
 
     return chromatograms;
@@ -397,87 +361,99 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
       final Scan scan = scanNumbers[scanIndex];
 
       // Process data points.
-      for (final DataPoint dataPoint : scan) {
-
-        final int bin = RangeUtils.binNumber(mzRange, numBins, dataPoint.getMZ());
-        chromatograms[bin][scanIndex] += dataPoint.getIntensity();
+      final int numDp = scan.getNumberOfDataPoints();
+      for (int i = 0; i < numDp; i++) {
+        final int bin = RangeUtils.binNumber(mzRange, numBins, scan.getMzValue(i));
+        chromatograms[bin][scanIndex] += scan.getIntensityValue(i);
       }
-      progressMap.get(origDataFile)[0]++;
+      incrementProgress(origDataFile);
     }
 
     return chromatograms;
   }
 
   /**
-   * Perform baseline correction in bins (base peak).
+   * Computes the baselines of all m/z bins. The baselines replace the chromatograms in place to
+   * save memory. The bins are processed one after another, since all R calls go through a single
+   * R session. Correctors that do not require R may process the bins in parallel.
    *
-   * @param origDataFile dataFile of concern.
-   * @param dataPoints input data points to correct.
-   * @param baselines the baselines - one per m/z bin.
-   * @param numBins the number of m/z bins.
-   * @param scanIndex the current scan index that these data points come from.
-   * @return the corrected data points.
+   * @param origDataFile            dataFile of concern.
+   * @param chromatograms           the chromatograms, one per m/z bin.
+   * @param parameters              parameters specific to the actual method for baseline
+   *                                computing.
+   * @param normalizeToChromatogram true to store the baseline relative to the chromatogram
+   *                                intensity (TIC), false to store the absolute baseline.
+   * @throws RSessionWrapperException
    */
-  private DataPoint[] subtractBasePeakBaselines(final RawDataFile origDataFile,
-      final DataPoint[] dataPoints, final double[][] baselines, final int numBins,
-      final int scanIndex) {
-
-    // Create an ArrayList for new data points.
-    final DataPoint[] newDataPoints = new DataPoint[dataPoints.length];
-
-    // Determine MZ range.
-    final Range<Double> mzRange = origDataFile.getDataMZRange();
-
-    // Loop through all original data points.
-    int i = 0;
-    for (final DataPoint dp : dataPoints) {
-
-      // Subtract baseline.
-      final double mz = dp.getMZ();
-      final int bin = RangeUtils.binNumber(mzRange, numBins, mz);
-      final double baselineIntenstity = baselines[bin][scanIndex];
-      newDataPoints[i++] = baselineIntenstity <= 0.0 ? new SimpleDataPoint(dp)
-          : new SimpleDataPoint(mz, Math.max(0.0, dp.getIntensity() - baselineIntenstity));
+  protected void computeBaselines(@Nullable final RSessionWrapper rSession,
+      final RawDataFile origDataFile, final double[][] chromatograms,
+      final ParameterSet parameters, final boolean normalizeToChromatogram)
+      throws RSessionWrapperException {
+    for (int binIndex = 0; !isAborted(origDataFile) && binIndex < chromatograms.length;
+        binIndex++) {
+      final double[] baseline = computeBaseline(rSession, origDataFile, chromatograms[binIndex],
+          parameters);
+      chromatograms[binIndex] =
+          normalizeToChromatogram ? toRelativeBaseline(baseline, chromatograms[binIndex])
+              : baseline;
+      incrementProgress(origDataFile);
     }
+  }
 
-    // Return the new data points.
-    return newDataPoints;
+  /**
+   * Normalize the baseline w.r.t. chromatogram (TIC). The result is written into the
+   * chromatogram.
+   *
+   * @return the chromatogram array holding the relative baseline.
+   */
+  protected static double[] toRelativeBaseline(final double[] baseline,
+      final double[] chromatogram) {
+    for (int scanIndex = 0; scanIndex < chromatogram.length; scanIndex++) {
+      final double bc = chromatogram[scanIndex];
+      if (bc != 0.0) {
+        chromatogram[scanIndex] = baseline[scanIndex] / bc;
+      }
+    }
+    return chromatogram;
   }
 
   /**
-   * Perform baseline correction in bins (TIC).
+   * Perform baseline correction in bins.
    *
+   * @param writer       the new data file.
    * @param origDataFile dataFile of concern.
-   * @param dataPoints input data points to correct.
-   * @param baselines the baselines - one per m/z bin.
-   * @param numBins the number of m/z bins.
-   * @param scanIndex the current scan index that these data points come from.
-   * @return the corrected data points.
+   * @param origScan     the scan to correct.
+   * @param baselines    the baselines - one per m/z bin.
+   * @param numBins      the number of m/z bins.
+   * @param scanIndex    the current scan index.
+   * @param relative     true if the baselines are relative to the TIC, false if they are absolute
+   *                     (base peak).
+   * @return the corrected scan.
    */
-  private DataPoint[] subtractTICBaselines(final RawDataFile origDataFile,
-      final DataPoint[] dataPoints, final double[][] baselines, final int numBins,
-      final int scanIndex) {
-
-    // Create an ArrayList for new data points.
-    final DataPoint[] newDataPoints = new DataPoint[dataPoints.length];
+  private SimpleScan subtractBaselines(final RawDataFile writer, final RawDataFile origDataFile,
+      final Scan origScan, final double[][] baselines, final int numBins, final int scanIndex,
+      final boolean relative) {
 
     // Determine MZ range.
     final Range<Double> mzRange = origDataFile.getDataMZRange();
 
+    final int numDp = origScan.getNumberOfDataPoints();
+    final double[] mzs = origScan.getMzValues(new double[numDp]);
+    final double[] intensities = origScan.getIntensityValues(new double[numDp]);
+
     // Loop through all original data points.
-    int i = 0;
-    for (final DataPoint dp : dataPoints) {
+    for (int i = 0; i < numDp; i++) {
 
       // Subtract baseline.
-      final double mz = dp.getMZ();
-      final int bin = RangeUtils.binNumber(mzRange, numBins, mz);
+      final int bin = RangeUtils.binNumber(mzRange, numBins, mzs[i]);
       final double baselineIntenstity = baselines[bin][scanIndex];
-      newDataPoints[i++] = baselineIntenstity <= 0.0 ? new SimpleDataPoint(dp)
-          : new SimpleDataPoint(mz, Math.max(0.0, dp.getIntensity() * (1.0 - baselineIntenstity)));
+      if (baselineIntenstity > 0.0) {
+        intensities[i] = relative ? Math.max(0.0, intensities[i] * (1.0 - baselineIntenstity))
+            : Math.max(0.0, intensities[i] - baselineIntenstity);
+      }
     }
 
-    // Return the new data points.
-    return newDataPoints;
+    return new SimpleScan(writer, origScan, mzs, intensities);
   }
 
   // Correction progress stuffs (to be called from mother Task)
@@ -490,6 +466,20 @@ public abstract class BaselineCorrector implements BaselineProvider, MZmineModul
     progressMap.put(origDataFile, new int[] {0, 0, 0});
   }
 
+  /**
+   * Increments the progress. Thread safe, so bins may be processed in parallel.
+   *
+   * @param origDataFile dataFile of concern.
+   */
+  protected void incrementProgress(final RawDataFile origDataFile) {
+    final int[] progress = progressMap.get(origDataFile);
+    if (progress != null) {
+      synchronized (progress) {
+        progress[0]++;
+      }
+    }
+  }
+
   /**
    * Getting progress.
    *
@@ -198,15 +198,17 @@ public class BaselineCorrectorSetupDialog extends ParameterSetupDialogWithChroma
         baselineCorrector.collectCommonParameters(null);
 
         // Check R availability, by trying to open the connection
-        try {
-          String[] reqPackages = baselineCorrector.getRequiredRPackages();
-          this.rSession = new RSessionWrapper(baselineCorrector.getRengineType(),
-              baselineCorrector.getName(), reqPackages, null);
-          this.rSession.open();
-        } catch (RSessionWrapperException e) {
-          errorMsg = e.getMessage();
-          updateStatus(TaskStatus.ERROR);
-          return;
+        if (baselineCorrector.getRequiresR()) {
+          try {
+            String[] reqPackages = baselineCorrector.getRequiredRPackages();
+            this.rSession = new RSessionWrapper(baselineCorrector.getRengineType(),
+                baselineCorrector.getName(), reqPackages, null);
+            this.rSession.open();
+          } catch (RSessionWrapperException e) {
+            errorMsg = e.getMessage();
+            updateStatus(TaskStatus.ERROR);
+            return;
+          }
         }
 
         // Set VK_ESCAPE KeyEvent listeners
@@ -254,7 +256,7 @@ public class BaselineCorrectorSetupDialog extends ParameterSetupDialogWithChroma
 
         // Turn off R instance.
         try {
-          if (!this.userCanceled)
+          if (!this.userCanceled && this.rSession != null)
             this.rSession.close(false);
         } catch (RSessionWrapperException e) {
           if (!this.userCanceled) {
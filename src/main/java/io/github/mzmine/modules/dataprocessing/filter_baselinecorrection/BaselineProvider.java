@@ -34,6 +34,13 @@ public interface BaselineProvider {
    */
   public String[] getRequiredRPackages();
 
+  /**
+   * @return true if the baselines are computed via R and an {@link RSessionWrapper} is needed.
+   */
+  public default boolean getRequiresR() {
+    return true;
+  }
+
   /**
    * Returns a baseline for correcting the given chromatogram using R
    * 
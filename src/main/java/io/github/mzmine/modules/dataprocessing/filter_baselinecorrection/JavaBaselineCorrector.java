@@ -0,0 +1,77 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.util.R.RSessionWrapper;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * @description Base class for baseline correctors that compute the baselines in Java. No R session
+ * is opened for these correctors and the baselines of all m/z bins are computed in parallel.
+ */
+public abstract class JavaBaselineCorrector extends BaselineCorrector {
+
+  @Override
+  public String[] getRequiredRPackages() {
+    return new String[0];
+  }
+
+  @Override
+  public boolean getRequiresR() {
+    return false;
+  }
+
+  /**
+   * Returns a baseline for correcting the given chromatogram. Must not alter the chromatogram and
+   * must be thread safe, as it is called concurrently for multiple m/z bins.
+   *
+   * @param chromatogram the chromatogram.
+   * @param parameters   parameters specific to the actual method for baseline computing.
+   * @return the baseline.
+   */
+  @NotNull
+  public abstract double[] computeBaseline(@NotNull final double[] chromatogram,
+      @NotNull final ParameterSet parameters);
+
+  @Override
+  public final double[] computeBaseline(@Nullable final RSessionWrapper rSession,
+      final RawDataFile origDataFile, final double[] chromatogram, final ParameterSet parameters) {
+    return computeBaseline(chromatogram, parameters);
+  }
+
+  @Override
+  protected void computeBaselines(@Nullable final RSessionWrapper rSession,
+      final RawDataFile origDataFile, final double[][] chromatograms,
+      final ParameterSet parameters, final boolean normalizeToChromatogram) {
+    IntStream.range(0, chromatograms.length).parallel().forEach(binIndex -> {
+      if (isAborted(origDataFile)) {
+        return;
+      }
+      final double[] baseline = computeBaseline(chromatograms[binIndex], parameters);
+      chromatograms[binIndex] =
+          normalizeToChromatogram ? toRelativeBaseline(baseline, chromatograms[binIndex])
+              : baseline;
+      incrementProgress(origDataFile);
+    });
+  }
+}
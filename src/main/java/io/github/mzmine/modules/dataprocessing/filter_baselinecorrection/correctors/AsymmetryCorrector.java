@@ -18,30 +18,26 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
 
-import org.jetbrains.annotations.NotNull;
-
-import io.github.mzmine.datamodel.RawDataFile;
-import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.BaselineCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.JavaBaselineCorrector;
 import io.github.mzmine.parameters.ParameterSet;
-import io.github.mzmine.util.R.RSessionWrapper;
-import io.github.mzmine.util.R.RSessionWrapperException;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * @description Asymmetric baseline corrector. Estimates a trend based on asymmetric least squares.
- *              Uses "asysm" feature from "ptw" R-package
+ *              Java port of the "asysm" feature from "ptw" R-package
  *              (http://cran.r-project.org/web/packages/ptw/ptw.pdf).
  * 
  */
-public class AsymmetryCorrector extends BaselineCorrector {
+public class AsymmetryCorrector extends JavaBaselineCorrector {
 
-  @Override
-  public String[] getRequiredRPackages() {
-    return new String[] { /* "rJava", "Rserve", */"ptw"};
-  }
+  /**
+   * Maximum number of reweighting iterations (same as ptw::asysm).
+   */
+  private static final int MAX_ITERATIONS = 25;
 
   @Override
-  public double[] computeBaseline(final RSessionWrapper rSession, final RawDataFile origDataFile,
-      double[] chromatogram, ParameterSet parameters) throws RSessionWrapperException {
+  public @NotNull double[] computeBaseline(@NotNull final double[] chromatogram,
+      @NotNull final ParameterSet parameters) {
 
     // Smoothing and asymmetry parameters.
     final double smoothing =
@@ -49,29 +45,8 @@ public class AsymmetryCorrector extends BaselineCorrector {
     final double asymmetry =
         parameters.getParameter(AsymmetryCorrectorParameters.ASYMMETRY).getValue();
 
-    // Compute baseline.
-    final double[] baseline;
-
-    // try {
-    // Set chromatogram.
-    // rSession.assignDoubleArray("chromatogram", chromatogram);
-    rSession.assign("chromatogram", chromatogram);
-    // Calculate baseline.
-    rSession.eval("baseline <- asysm(chromatogram," + smoothing + ',' + asymmetry + ')');
-    // baseline = rSession.collectDoubleArray("baseline");
-    baseline = (double[]) rSession.collect("baseline");
-    // Done: Refresh R code stack
-    rSession.clearCode();
-
-    // }
-    // catch (Throwable t) {
-    // //t.printStackTrace();
-    // throw new
-    // IllegalStateException("R error during baseline correction (" +
-    // this.getName() + ").", t);
-    // }
-
-    return baseline;
+    return BaselineAlgorithms.asymmetricLeastSquares(chromatogram, smoothing, asymmetry,
+        MAX_ITERATIONS);
   }
 
   @Override
@@ -0,0 +1,585 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
+
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Baseline estimation on primitive chromatogram arrays. These methods are pure Java replacements
+ * for the R packages previously used by the baseline correctors and do not keep any state, so they
+ * can be called concurrently for different m/z bins.
+ */
+public final class BaselineAlgorithms {
+
+  /**
+   * Convergence threshold in {@link #asymmetricLeastSquares(double[], double, double, int)}: the
+   * iteration stops when the summed absolute change of the baseline falls below. Same as the
+   * default of ptw::asysm.
+   */
+  private static final double ALS_EPS = 1e-8;
+
+  private BaselineAlgorithms() {
+  }
+
+  /**
+   * Asymmetric least squares baseline (Eilers & Boelens). Port of ptw::asysm: a smoother with a
+   * second order difference penalty is fitted iteratively, weighting points above the current
+   * trend with p and points below with 1-p, until the baseline changes by less than {@link
+   * #ALS_EPS}. The penalized system is pentadiagonal and solved with
+   * a banded LDL<sup>T</sup> decomposition in O(n) per iteration.
+   *
+   * @param y             the chromatogram
+   * @param lambda        the smoothing factor (>= 0)
+   * @param p             the weight for points above the trend (0 <= p <= 1)
+   * @param maxIterations maximum number of reweighting iterations
+   * @return the baseline
+   */
+  @NotNull
+  public static double[] asymmetricLeastSquares(@NotNull final double[] y, final double lambda,
+      final double p, final int maxIterations) {
+    final int n = y.length;
+    if (n < 3) {
+      return Arrays.copyOf(y, n);
+    }
+
+    // D'D of the second order difference matrix D ((n-2) x n) as three bands
+    final double[] penaltyDiag = new double[n];
+    final double[] penaltyOff1 = new double[n]; // element (i, i-1)
+    final double[] penaltyOff2 = new double[n]; // element (i, i-2)
+    for (int k = 0; k < n - 2; k++) {
+      penaltyDiag[k] += 1d;
+      penaltyDiag[k + 1] += 4d;
+      penaltyDiag[k + 2] += 1d;
+      penaltyOff1[k + 1] -= 2d;
+      penaltyOff1[k + 2] -= 2d;
+      penaltyOff2[k + 2] += 1d;
+    }
+
+    final double[] weights = new double[n];
+    Arrays.fill(weights, 1d);
+    final double[] z = new double[n];
+    final double[] previous = new double[n];
+    // bands of the system matrix and decomposition buffers
+    final double[] band0 = new double[n];
+    final double[] band1 = new double[n];
+    final double[] band2 = new double[n];
+    final double[] d = new double[n];
+    final double[] l1 = new double[n];
+    final double[] l2 = new double[n];
+    for (int it = 0; it < maxIterations; it++) {
+      // A = W + lambda * D'D
+      for (int i = 0; i < n; i++) {
+        band0[i] = weights[i] + lambda * penaltyDiag[i];
+        band1[i] = lambda * penaltyOff1[i];
+        band2[i] = lambda * penaltyOff2[i];
+        z[i] = weights[i] * y[i];
+      }
+      decompose(band0, band1, band2, n, d, l1, l2);
+      solve(d, l1, l2, n, z);
+
+      // reweighting
+      double change = 0d;
+      for (int i = 0; i < n; i++) {
+        weights[i] = y[i] > z[i] ? p : 1d - p;
+        change += Math.abs(z[i] - previous[i]);
+      }
+      if (change < ALS_EPS) {
+        break;
+      }
+      System.arraycopy(z, 0, previous, 0, n);
+    }
+    return z;
+  }
+
+  /**
+   * Rolling ball baseline (Kneen & Annegarn) as implemented in baseline::rollingBall. The
+   * chromatogram is eroded by a moving minimum, dilated by a moving maximum (both with half window
+   * width wm) and finally smoothed by a moving average with half window width ws. Minimum and
+   * maximum are computed with a monotone deque, so the runtime is O(n) independent of the window
+   * sizes.
+   *
+   * @param y  the chromatogram
+   * @param wm half width of the window for minimisation/maximisation (in scans)
+   * @param ws half width of the window for smoothing (in scans)
+   * @return the baseline
+   */
+  @NotNull
+  public static double[] rollingBall(@NotNull final double[] y, final int wm, final int ws) {
+    final int n = y.length;
+    if (n == 0) {
+      return new double[0];
+    }
+    final int[] deque = new int[n];
+    final double[] eroded = slidingExtreme(y, wm, true, deque, new double[n]);
+    final double[] dilated = slidingExtreme(eroded, wm, false, deque, new double[n]);
+    return movingAverage(dilated, ws, eroded);
+  }
+
+  /**
+   * Rubber band baseline as in hyperSpec::spc.rubberband. The support points of the baseline are
+   * the vertices of the lower convex hull of the (optionally bent) chromatogram. The linear
+   * baseline connects the support points. For the spline baseline, all points within the noise
+   * level above the hull are added to the support points and a smoothing spline with df degrees of
+   * freedom is fitted through them (smooth.spline).
+   *
+   * @param y      the chromatogram
+   * @param noise  points up to this level above the hull are used as support points of the spline.
+   *               Not used for the linear baseline.
+   * @param df     degrees of freedom of the smoothing spline. Values <= 1 choose the smoothing by
+   *               generalized cross validation, values >= the number of support points interpolate
+   *               the support points.
+   * @param bend   bend factor. The chromatogram is bent by bend * x<sup>2</sup> (x normalised to
+   *               0..1) before the hull is calculated, the bend is removed from the baseline.
+   * @param spline true for a smoothing spline through the support points, false for a piecewise
+   *               linear baseline.
+   * @return the baseline
+   */
+  @NotNull
+  public static double[] rubberBand(@NotNull final double[] y, final double noise,
+      final double df, final double bend, final boolean spline) {
+    final int n = y.length;
+    if (n < 3) {
+      return Arrays.copyOf(y, n);
+    }
+
+    final double[] bent = new double[n];
+    for (int i = 0; i < n; i++) {
+      bent[i] = y[i] + bendAt(i, n, bend);
+    }
+
+    // lower convex hull by monotone chain, x values are the scan indices
+    final int[] hull = new int[n];
+    int hullSize = 0;
+    for (int i = 0; i < n; i++) {
+      while (hullSize >= 2 && cross(hull[hullSize - 2], hull[hullSize - 1], i, bent) <= 0) {
+        hullSize--;
+      }
+      hull[hullSize++] = i;
+    }
+
+    final double[] baseline = new double[n];
+    for (int h = 0; h < hullSize - 1; h++) {
+      final int x0 = hull[h];
+      final int x1 = hull[h + 1];
+      final double slope = (bent[x1] - bent[x0]) / (x1 - x0);
+      for (int x = x0; x <= x1; x++) {
+        baseline[x] = bent[x0] + slope * (x - x0);
+      }
+    }
+
+    if (spline) {
+      // the hull vertices and all points within the noise level above the hull
+      final int[] support = new int[n];
+      final double[] supportY = new double[n];
+      int supportSize = 0;
+      for (int i = 0; i < n; i++) {
+        if (bent[i] <= baseline[i] + noise) {
+          support[supportSize] = i;
+          supportY[supportSize++] = bent[i];
+        }
+      }
+      smoothingSpline(support, supportY, supportSize, df, baseline);
+    }
+
+    for (int i = 0; i < n; i++) {
+      baseline[i] -= bendAt(i, n, bend);
+    }
+    return baseline;
+  }
+
+  private static double bendAt(final int i, final int n, final double bend) {
+    if (bend == 0d) {
+      return 0d;
+    }
+    final double x = i / (double) (n - 1);
+    return bend * x * x;
+  }
+
+  /**
+   * @return z component of the cross product (b - a) x (c - a). Positive for a counter clockwise
+   * turn.
+   */
+  private static double cross(final int a, final int b, final int c, final double[] y) {
+    return (b - a) * (y[c] - y[a]) - (y[b] - y[a]) * (c - a);
+  }
+
+  /**
+   * Moving minimum or maximum with a monotone deque.
+   *
+   * @param halfWidth the window is [i - halfWidth, i + halfWidth], clipped at the borders.
+   * @param min       true for the moving minimum, false for the moving maximum.
+   * @param deque     buffer of at least the length of values.
+   * @param dst       the result buffer.
+   */
+  private static double[] slidingExtreme(final double[] values, final int halfWidth,
+      final boolean min, final int[] deque, final double[] dst) {
+    final int n = values.length;
+    int head = 0;
+    int tail = 0;
+    int next = 0; // next index to be added to the deque
+    for (int i = 0; i < n; i++) {
+      final int windowEnd = Math.min(n - 1, i + halfWidth);
+      while (next <= windowEnd) {
+        final double v = values[next];
+        while (tail > head && (min ? values[deque[tail - 1]] >= v : values[deque[tail - 1]] <= v)) {
+          tail--;
+        }
+        deque[tail++] = next++;
+      }
+      while (deque[head] < i - halfWidth) {
+        head++;
+      }
+      dst[i] = values[deque[head]];
+    }
+    return dst;
+  }
+
+  /**
+   * Moving average with a window of [i - halfWidth, i + halfWidth], clipped at the borders.
+   */
+  private static double[] movingAverage(final double[] values, final int halfWidth,
+      final double[] dst) {
+    final int n = values.length;
+    double sum = 0d;
+    int from = 0;
+    int to = -1;
+    for (int i = 0; i < n; i++) {
+      final int windowStart = Math.max(0, i - halfWidth);
+      final int windowEnd = Math.min(n - 1, i + halfWidth);
+      while (to < windowEnd) {
+        sum += values[++to];
+      }
+      while (from < windowStart) {
+        sum -= values[from++];
+      }
+      dst[i] = sum / (to - from + 1);
+    }
+    return dst;
+  }
+
+  /**
+   * Decomposes the symmetric pentadiagonal matrix A = L * diag(d) * L<sup>T</sup> with a unit lower
+   * triangular L.
+   *
+   * @param band0 the diagonal of A
+   * @param band1 element (i, i-1) of A at index i
+   * @param band2 element (i, i-2) of A at index i
+   * @param l1    result: element (i, i-1) of L at index i
+   * @param l2    result: element (i, i-2) of L at index i
+   */
+  private static void decompose(final double[] band0, final double[] band1, final double[] band2,
+      final int n, final double[] d, final double[] l1, final double[] l2) {
+    for (int i = 0; i < n; i++) {
+      l2[i] = i >= 2 ? band2[i] / d[i - 2] : 0d;
+      l1[i] = i >= 1 ? (band1[i] - (i >= 2 ? l2[i] * d[i - 2] * l1[i - 1] : 0d)) / d[i - 1] : 0d;
+      d[i] = band0[i] - (i >= 2 ? l2[i] * l2[i] * d[i - 2] : 0d) - (i >= 1 ? l1[i] * l1[i] * d[i - 1]
+          : 0d);
+    }
+  }
+
+  /**
+   * Solves A * z = b in place for a matrix decomposed by {@link #decompose(double[], double[],
+   * double[], int, double[], double[], double[])}.
+   *
+   * @param z the right hand side b, overwritten by the solution
+   */
+  private static void solve(final double[] d, final double[] l1, final double[] l2, final int n,
+      final double[] z) {
+    // forward substitution L * u = b
+    for (int i = 0; i < n; i++) {
+      double v = z[i];
+      if (i >= 1) {
+        v -= l1[i] * z[i - 1];
+      }
+      if (i >= 2) {
+        v -= l2[i] * z[i - 2];
+      }
+      z[i] = v;
+    }
+    for (int i = 0; i < n; i++) {
+      z[i] /= d[i];
+    }
+    // backward substitution L' * z = u
+    for (int i = n - 1; i >= 0; i--) {
+      double v = z[i];
+      if (i + 1 < n) {
+        v -= l1[i + 1] * z[i + 1];
+      }
+      if (i + 2 < n) {
+        v -= l2[i + 2] * z[i + 2];
+      }
+      z[i] = v;
+    }
+  }
+
+  /**
+   * Cubic smoothing spline through the support points (x[0..size), y[0..size)), evaluated at all
+   * integer positions between x[0] and x[size-1]. The spline has a knot at every support point
+   * (smooth.spline with all.knots = TRUE) and is fitted by the Reinsch algorithm. The smoothing
+   * parameter is chosen for df degrees of freedom (trace of the smoother matrix) or by
+   * generalized cross validation if df <= 1.
+   */
+  private static void smoothingSpline(final int[] x, final double[] y, final int size,
+      final double df, final double[] dst) {
+    if (size < 3) {
+      final double slope = (y[size - 1] - y[0]) / Math.max(1, x[size - 1] - x[0]);
+      for (int xi = x[0]; xi <= x[size - 1]; xi++) {
+        dst[xi] = y[0] + slope * (xi - x[0]);
+      }
+      return;
+    }
+
+    final SmoothingSpline fit = new SmoothingSpline(x, y, size);
+    final double lambda;
+    if (df >= size) {
+      lambda = 0d;
+    } else if (df > 1d) {
+      lambda = fit.lambdaForDf(df);
+    } else {
+      lambda = fit.lambdaByGcv();
+    }
+    fit.fit(lambda);
+
+    // g are the fitted values, m the second derivatives at the support points
+    final double[] g = fit.g;
+    final double[] m = fit.m;
+    for (int s = 0; s < size - 1; s++) {
+      final int x0 = x[s];
+      final int x1 = x[s + 1];
+      final double h = x1 - x0;
+      for (int xi = x0; xi <= x1; xi++) {
+        final double t0 = x1 - xi;
+        final double t1 = xi - x0;
+        dst[xi] = m[s] * t0 * t0 * t0 / (6d * h) + m[s + 1] * t1 * t1 * t1 / (6d * h)
+                  + (g[s] / h - m[s] * h / 6d) * t0 + (g[s + 1] / h - m[s + 1] * h / 6d) * t1;
+      }
+    }
+  }
+
+  /**
+   * Reinsch formulation of the cubic smoothing spline: minimizes sum (y - g)<sup>2</sup> + lambda
+   * * integral g''<sup>2</sup>. With the tridiagonal matrix R and the second difference matrix Q
+   * of the knot spacing, the second derivatives at the inner knots solve (R + lambda * Q'Q) * m =
+   * Q'y and the fitted values are g = y - lambda * Q * m. All matrices are banded, so a fit and
+   * the degrees of freedom for one lambda take O(n).
+   */
+  private static final class SmoothingSpline {
+
+    private final double[] y;
+    private final int size;
+    private final int k; // number of inner knots
+    // column j of Q has the entries qa, qb, qc in the rows j, j+1, j+2
+    private final double[] qa;
+    private final double[] qb;
+    private final double[] qc;
+    // R: diagonal and element (j, j+1)
+    private final double[] r0;
+    private final double[] r1;
+    // Q'Q: diagonal, element (j, j+1) and element (j, j+2)
+    private final double[] qq0;
+    private final double[] qq1;
+    private final double[] qq2;
+    private final double[] qty;
+
+    private final double[] band0;
+    private final double[] band1;
+    private final double[] band2;
+    private final double[] d;
+    private final double[] l1;
+    private final double[] l2;
+
+    /**
+     * Fitted values and second derivatives of the last {@link #fit(double)}.
+     */
+    private final double[] g;
+    private final double[] m;
+
+    private SmoothingSpline(final int[] x, final double[] y, final int size) {
+      this.y = y;
+      this.size = size;
+      k = size - 2;
+      qa = new double[k];
+      qb = new double[k];
+      qc = new double[k];
+      r0 = new double[k];
+      r1 = new double[k];
+      for (int j = 0; j < k; j++) {
+        final double h0 = x[j + 1] - x[j];
+        final double h1 = x[j + 2] - x[j + 1];
+        qa[j] = 1d / h0;
+        qb[j] = -1d / h0 - 1d / h1;
+        qc[j] = 1d / h1;
+        r0[j] = (h0 + h1) / 3d;
+        r1[j] = h1 / 6d;
+      }
+      qq0 = new double[k];
+      qq1 = new double[k];
+      qq2 = new double[k];
+      qty = new double[k];
+      for (int j = 0; j < k; j++) {
+        qq0[j] = qa[j] * qa[j] + qb[j] * qb[j] + qc[j] * qc[j];
+        qq1[j] = j + 1 < k ? qb[j] * qa[j + 1] + qc[j] * qb[j + 1] : 0d;
+        qq2[j] = j + 2 < k ? qc[j] * qa[j + 2] : 0d;
+        qty[j] = qa[j] * y[j] + qb[j] * y[j + 1] + qc[j] * y[j + 2];
+      }
+      band0 = new double[k];
+      band1 = new double[k];
+      band2 = new double[k];
+      d = new double[k];
+      l1 = new double[k];
+      l2 = new double[k];
+      g = new double[size];
+      m = new double[size];
+    }
+
+    private void decompose(final double lambda) {
+      for (int j = 0; j < k; j++) {
+        band0[j] = r0[j] + lambda * qq0[j];
+        band1[j] = j >= 1 ? r1[j - 1] + lambda * qq1[j - 1] : 0d;
+        band2[j] = j >= 2 ? lambda * qq2[j - 2] : 0d;
+      }
+      BaselineAlgorithms.decompose(band0, band1, band2, k, d, l1, l2);
+    }
+
+    /**
+     * Fits the spline to {@link #g} and {@link #m}.
+     *
+     * @return the residual sum of squares
+     */
+    private double fit(final double lambda) {
+      decompose(lambda);
+      final double[] gamma = Arrays.copyOf(qty, k);
+      solve(d, l1, l2, k, gamma);
+
+      double rss = 0d;
+      for (int i = 0; i < size; i++) {
+        double qGamma = 0d;
+        if (i < k) {
+          qGamma += qa[i] * gamma[i];
+        }
+        if (i >= 1 && i - 1 < k) {
+          qGamma += qb[i - 1] * gamma[i - 1];
+        }
+        if (i >= 2 && i - 2 < k) {
+          qGamma += qc[i - 2] * gamma[i - 2];
+        }
+        g[i] = y[i] - lambda * qGamma;
+        rss += (y[i] - g[i]) * (y[i] - g[i]);
+      }
+      m[0] = 0d;
+      m[size - 1] = 0d;
+      System.arraycopy(gamma, 0, m, 1, k);
+      return rss;
+    }
+
+    /**
+     * Degrees of freedom, the trace of the smoother matrix I - lambda * Q * B<sup>-1</sup> * Q'
+     * with B = R + lambda * Q'Q. Only the central five bands of B<sup>-1</sup> are needed and
+     * calculated from the decomposition (Hutchinson & de Hoog).
+     */
+    private double degreesOfFreedom(final double lambda) {
+      decompose(lambda);
+      double trace = 0d;
+      double s0Next = 0d; // inverse (j+1, j+1)
+      double s0NextNext = 0d; // inverse (j+2, j+2)
+      double s1Next = 0d; // inverse (j+1, j+2)
+      for (int j = k - 1; j >= 0; j--) {
+        final double a1 = j + 1 < k ? l1[j + 1] : 0d;
+        final double a2 = j + 2 < k ? l2[j + 2] : 0d;
+        final double s2 = -a1 * s1Next - a2 * s0NextNext;
+        final double s1 = -a1 * s0Next - a2 * s1Next;
+        final double s0 = 1d / d[j] - a1 * s1 - a2 * s2;
+        trace += s0 * qq0[j] + 2d * s1 * qq1[j] + 2d * s2 * qq2[j];
+        s0NextNext = s0Next;
+        s0Next = s0;
+        s1Next = s1;
+      }
+      return size - lambda * trace;
+    }
+
+    /**
+     * @return the bounds of log10(lambda) from interpolation (df = size) to the linear fit (df =
+     * 2).
+     */
+    private double[] logLambdaRange() {
+      double sumR = 0d;
+      double sumQq = 0d;
+      for (int j = 0; j < k; j++) {
+        sumR += r0[j];
+        sumQq += qq0[j];
+      }
+      final double center = Math.log10(sumR / sumQq);
+      return new double[]{center - 8d, center + 4d * Math.log10(size) + 8d};
+    }
+
+    private double lambdaForDf(final double df) {
+      final double[] range = logLambdaRange();
+      double lo = range[0];
+      double hi = range[1];
+      // the degrees of freedom decrease with lambda
+      for (int i = 0; i < 100 && hi - lo > 1E-10; i++) {
+        final double mid = (lo + hi) / 2d;
+        if (degreesOfFreedom(Math.pow(10d, mid)) > df) {
+          lo = mid;
+        } else {
+          hi = mid;
+        }
+      }
+      return Math.pow(10d, (lo + hi) / 2d);
+    }
+
+    private double gcv(final double logLambda) {
+      final double lambda = Math.pow(10d, logLambda);
+      final double rss = fit(lambda);
+      final double dfResidual = size - degreesOfFreedom(lambda);
+      return size * rss / (dfResidual * dfResidual);
+    }
+
+    /**
+     * Golden section search for the minimum of the generalized cross validation score.
+     */
+    private double lambdaByGcv() {
+      final double[] range = logLambdaRange();
+      final double ratio = (Math.sqrt(5d) - 1d) / 2d;
+      double a = range[0];
+      double b = range[1];
+      double c = b - ratio * (b - a);
+      double e = a + ratio * (b - a);
+      double gcvC = gcv(c);
+      double gcvE = gcv(e);
+      for (int i = 0; i < 100 && b - a > 1E-6; i++) {
+        if (gcvC < gcvE) {
+          b = e;
+          e = c;
+          gcvE = gcvC;
+          c = b - ratio * (b - a);
+          gcvC = gcv(c);
+        } else {
+          a = c;
+          c = e;
+          gcvC = gcvE;
+          e = a + ratio * (b - a);
+          gcvE = gcv(e);
+        }
+      }
+      return Math.pow(10d, (a + b) / 2d);
+    }
+  }
+}
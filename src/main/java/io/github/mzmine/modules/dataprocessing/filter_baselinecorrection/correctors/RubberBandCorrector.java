@@ -18,66 +18,41 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors;
 
-import org.jetbrains.annotations.NotNull;
-
-import io.github.mzmine.datamodel.RawDataFile;
-import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.BaselineCorrector;
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.JavaBaselineCorrector;
 import io.github.mzmine.parameters.ParameterSet;
-import io.github.mzmine.util.R.RSessionWrapper;
-import io.github.mzmine.util.R.RSessionWrapperException;
+import org.jetbrains.annotations.NotNull;
 
 /**
- * @description Rubber Band baseline corrector. Estimates a trend based on Rubber Band algorithm
- *              (which determines a convex envelope for the spectra - underneath side). Uses
- *              "spc.rubberband" feature from "hyperSpec" R-package
- *              (http://cran.r-project.org/web/packages /hyperSpec/vignettes/baseline.pdf).
- * 
+ * @description Rubber Band baseline corrector. Estimates a trend from the lower convex hull of the
+ *              chromatogram. Java port of the "spc.rubberband" feature from "hyperSpec" R-package
+ *              (http://cran.r-project.org/web/packages/hyperSpec/vignettes/baseline.pdf).
+ *
  */
-public class RubberBandCorrector extends BaselineCorrector {
+public class RubberBandCorrector extends JavaBaselineCorrector {
 
   @Override
-  public String[] getRequiredRPackages() {
-    return new String[] { /* "rJava", "Rserve", */"hyperSpec"};
-  }
-
-  @Override
-  public double[] computeBaseline(final RSessionWrapper rSession, final RawDataFile origDataFile,
-      double[] chromatogram, ParameterSet parameters) throws RSessionWrapperException {
+  public @NotNull double[] computeBaseline(@NotNull final double[] chromatogram,
+      @NotNull final ParameterSet parameters) {
 
     // Rubber Band parameters.
-    double noise = parameters.getParameter(RubberBandCorrectorParameters.NOISE).getValue();
-    boolean autoNoise =
+    final double noise = parameters.getParameter(RubberBandCorrectorParameters.NOISE).getValue();
+    final boolean autoNoise =
         parameters.getParameter(RubberBandCorrectorParameters.AUTO_NOISE).getValue();
-    double df = parameters.getParameter(RubberBandCorrectorParameters.DF).getValue();
-    boolean spline = parameters.getParameter(RubberBandCorrectorParameters.SPLINE).getValue();
-    double bend = parameters.getParameter(RubberBandCorrectorParameters.BEND_FACTOR).getValue();
-
-    final double[] baseline;
+    final double df = parameters.getParameter(RubberBandCorrectorParameters.DF).getValue();
+    final boolean spline =
+        parameters.getParameter(RubberBandCorrectorParameters.SPLINE).getValue();
+    final double bend =
+        parameters.getParameter(RubberBandCorrectorParameters.BEND_FACTOR).getValue();
 
-    // Set chromatogram.
-    rSession.assign("chromatogram", chromatogram);
-    // Transform chromatogram.
-    rSession.eval("mat <- matrix(chromatogram, nrow=1)");
-    rSession.eval("spc <- new (\"hyperSpec\", spc = mat, wavelength = as.numeric(seq(" + 1 + ", "
-        + chromatogram.length + ")))");
-    // Auto noise ?
-    rSession.eval("noise <- " + ((autoNoise) ? "min(mat)" : "" + noise));
-    // Bend
-    rSession.eval("bend <- " + bend + " * wl.eval(spc, function(x) x^2, normalize.wl=normalize01)");
-    // Calculate baseline.
-    rSession.eval("baseline <- spc.rubberband(spc + bend, noise = noise, df = " + df + ", spline="
-        + (spline ? "T" : "F") + ") - bend");
-    // 'NA' might appear in 'baseline' array when 'spline' parameter set to
-    // 'FALSE',
-    // So handle them properly if necessary...
-    rSession.eval(
-        "if (is.na(baseline)) { baseline[is.na(baseline)] <- " + RSessionWrapper.NA_DOUBLE + " }");
-    rSession.eval("baseline <- orderwl(baseline)[[1]]");
-    baseline = ((double[][]) rSession.collect("baseline"))[0];
-    // Done: Refresh R code stack
-    rSession.clearCode();
+    double minIntensity = Double.POSITIVE_INFINITY;
+    if (autoNoise) {
+      for (double intensity : chromatogram) {
+        minIntensity = Math.min(minIntensity, intensity);
+      }
+    }
 
-    return baseline;
+    return BaselineAlgorithms.rubberBand(chromatogram,
+        autoNoise && chromatogram.length > 0 ? minIntensity : noise, df, bend, spline);
   }
 
   @Override
@@ -36,7 +36,7 @@ public class RubberBandCorrectorParameters extends SimpleParameterSet {
    * Noise level.
    */
   public static final DoubleParameter NOISE = new DoubleParameter("noise",
-      "Ignored if \"auto noise\" is checked. Noise level to be taken into account.",
+      "Ignored if \"auto noise\" is checked. Points up to this level above the convex hull are used as support points of the spline.",
       DecimalFormat.getNumberInstance(), 0.0, 0.0, null);
 
   /**
@@ -48,14 +48,15 @@ public class RubberBandCorrectorParameters extends SimpleParameterSet {
   /**
    * Degree of Freedom.
    */
-  public static final DoubleParameter DF = new DoubleParameter("df", "Degree of freedom.",
+  public static final DoubleParameter DF = new DoubleParameter("df",
+      "Degrees of freedom of the smoothing spline. Values <= 1 determine the smoothing by generalized cross validation.",
       DecimalFormat.getNumberInstance(), 0.0, 0.0, null);
 
   /**
    * Interpolating with spline.
    */
   public static final BooleanParameter SPLINE = new BooleanParameter("spline",
-      "Logical indicating whether the baseline should be an interpolating spline through the support points or piecewise linear.",
+      "Logical indicating whether the baseline should be a smoothing spline through the support points or piecewise linear.",
       true);
 
   /**
@@ -22,6 +22,7 @@ import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListBuilder;
 import io.github.mzmine.datamodel.features.ModularFeature;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.ModularFeatureListRow;
@@ -34,8 +35,6 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -124,8 +123,11 @@ public class FeatureListBlankSubtractionTask extends AbstractTask {
     alignedFeatureList.getRowTypes().values().forEach(result::addRowType);
     nonBlankFiles.forEach(f -> result.setSelectedScans(f, alignedFeatureList.getSeletedScans(f)));
 
-    Set<ModularFeatureListRow> filteredRows = ConcurrentHashMap.newKeySet();
-    alignedFeatureList.modularStream()/*.parallel()*/.forEach(row -> {
+    // rows are created in parallel and keep their ids and order
+    final FeatureListBuilder builder = new FeatureListBuilder(result, 1);
+    builder.addRows(alignedFeatureList.getRows(), (flRow, id) -> {
+      final ModularFeatureListRow row = (ModularFeatureListRow) flRow;
+      ModularFeatureListRow filteredRow = null;
       int numBlankDetections = 0;
       for (RawDataFile blankRaw : blankRaws) {
         if (row.hasFeature(blankRaw)) {
@@ -134,7 +136,7 @@ public class FeatureListBlankSubtractionTask extends AbstractTask {
       }
 
       if (numBlankDetections < minBlankDetections || checkFoldChange) {
-        final ModularFeatureListRow filteredRow = new ModularFeatureListRow(result, row.getID());
+        filteredRow = new ModularFeatureListRow(result, row.getID());
         final double blankIntensity =
             checkFoldChange ? getBlankIntensity(row, blankRaws, intensityType) : 1d;
         int numFeatures = 0;
@@ -149,18 +151,20 @@ public class FeatureListBlankSubtractionTask extends AbstractTask {
             }
           }
         }
-        // copy row types
-        if(numFeatures > 0) {
-//          row.stream().filter(e -> !(e.getKey() instanceof FeaturesType))
-//              .forEach(entry -> filteredRow.set(entry.getKey(), entry.getValue()));
-          filteredRows.add(filteredRow);
+        // only keep rows with features
+        if (numFeatures == 0) {
+          filteredRow = null;
         }
       }
 
       processedRows.getAndIncrement();
-    });
+      return filteredRow;
+    }, true, this::isCanceled);
 
-    filteredRows.forEach(result::addRow);
+    if (isCanceled()) {
+      return;
+    }
+    builder.build();
 
     result.getAppliedMethods().addAll(alignedFeatureList.getAppliedMethods());
     result.getAppliedMethods().add(
@@ -46,10 +46,12 @@ import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
+import it.unimi.dsi.fastutil.ints.IntArrays;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.IntStream;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -212,12 +214,31 @@ public class DuplicateFilterTask extends AbstractTask {
     flist.setRows(filteredRows);
   }
 
+  /**
+   * Removes all rows within m/z and RT tolerance of a row with a larger area. Instead of comparing
+   * all pairs of rows, every row only visits the rows within its m/z tolerance window by a sweep
+   * over the rows sorted by m/z.
+   *
+   * @return number of duplicates
+   */
   private int applyOldAverageFilter(MZTolerance mzTolerance, RTTolerance rtTolerance,
       boolean requireSameId, ModularFeatureListRow[] peakListRows, int rowCount) {
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.Area, SortingDirection.Descending));
+    final double[] mzs = new double[rowCount];
+    final float[] rts = new float[rowCount];
+    readAverageMzRt(peakListRows, mzs, rts);
+
+    // rows sorted by m/z for the sweep, the index into peakListRows is the area rank
+    final int[] byMz = new int[rowCount];
+    Arrays.setAll(byMz, i -> i);
+    IntArrays.quickSort(byMz, (a, b) -> Double.compare(mzs[a], mzs[b]));
+    final double[] sortedMzs = new double[rowCount];
+    for (int i = 0; i < rowCount; i++) {
+      sortedMzs[i] = mzs[byMz[i]];
+    }
 
-    // Loop through all feature list rows
+    // Loop through all feature list rows by descending area
     int removedDuplicates = 0;
     for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
       if (isCanceled()) {
@@ -225,27 +246,24 @@ public class DuplicateFilterTask extends AbstractTask {
       }
 
       final ModularFeatureListRow firstRow = peakListRows[firstRowIndex];
-
       if (firstRow != null) {
-        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
+        final Range<Double> mzRange = mzTolerance.getToleranceRange(mzs[firstRowIndex]);
+        final double upperMZ = mzRange.upperEndpoint();
+        for (int k = lowerBound(sortedMzs, mzRange.lowerEndpoint());
+            k < rowCount && sortedMzs[k] <= upperMZ; k++) {
+          // only rows with a smaller area are removed
+          final int secondRowIndex = byMz[k];
+          if (secondRowIndex <= firstRowIndex) {
+            continue;
           }
 
           final FeatureListRow secondRow = peakListRows[secondRowIndex];
-          if (secondRow != null) {
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            boolean sameMZRT = checkSameAverageRTMZ(firstRow, secondRow, mzTolerance, rtTolerance);
-
-            // Duplicate peaks?
-            if (sameID && sameMZRT) {
-              // second row deleted
-              removedDuplicates++;
-              peakListRows[secondRowIndex] = null;
-            }
+          if (secondRow != null && rtTolerance.checkWithinTolerance(rts[firstRowIndex],
+              rts[secondRowIndex]) && (!requireSameId || FeatureUtils.compareIdentities(firstRow,
+              secondRow))) {
+            // second row deleted
+            removedDuplicates++;
+            peakListRows[secondRowIndex] = null;
           }
         }
       }
@@ -261,6 +279,9 @@ public class DuplicateFilterTask extends AbstractTask {
     // sort by mz to limit number of iterations
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
+    final double[] mzs = new double[rowCount];
+    final float[] rts = new float[rowCount];
+    readAverageMzRt(peakListRows, mzs, rts);
 
     // Loop through all feature list rows
     int n = 0;
@@ -273,20 +294,17 @@ public class DuplicateFilterTask extends AbstractTask {
 
       if (firstRow != null) {
 
-        final double averageMZ1 = firstRow.getAverageMZ();
-        final Range<Double> mzRange = mzTolerance.getToleranceRange(averageMZ1);
+        final Range<Double> mzRange = mzTolerance.getToleranceRange(mzs[firstRowIndex]);
         double lowerMZ = mzRange.lowerEndpoint();
         double upperMZ = mzRange.upperEndpoint();
+        // changes when the first row becomes a consensus row
+        float firstRT = rts[firstRowIndex];
 
         for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
-
           final FeatureListRow secondRow = peakListRows[secondRowIndex];
           if (secondRow != null) {
             // check mz first to stop loop
-            final double averageMZ2 = secondRow.getAverageMZ();
+            final double averageMZ2 = mzs[secondRowIndex];
             if (averageMZ2 < lowerMZ) {
               continue;
             }
@@ -294,20 +312,15 @@ public class DuplicateFilterTask extends AbstractTask {
               break;
             }
 
-            // Compare identifications
-            final boolean sameID =
-                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
-
-            boolean sameRT = rtTolerance.checkWithinTolerance(firstRow.getAverageRT(),
-                secondRow.getAverageRT());
-
-            // Duplicate peaks?
-            if (sameID && sameRT) {
+            // Duplicate peaks? Compare RT and identifications
+            if (rtTolerance.checkWithinTolerance(firstRT, rts[secondRowIndex]) && (!requireSameId
+                || FeatureUtils.compareIdentities(firstRow, secondRow))) {
               // create consensus row in new filter
               // copy all detected features of row2 into row1
               // to exchange gap-filled against detected
               // features
               createConsensusFirstRow(newPeakList, rawFiles, firstRow, secondRow);
+              firstRT = firstRow.getAverageRT();
               // second row deleted
               n++;
               peakListRows[secondRowIndex] = null;
@@ -320,6 +333,33 @@ public class DuplicateFilterTask extends AbstractTask {
     return n;
   }
 
+  /**
+   * Reads the average m/z and RT of all rows in parallel.
+   */
+  private static void readAverageMzRt(ModularFeatureListRow[] rows, double[] mzs, float[] rts) {
+    IntStream.range(0, rows.length).parallel().forEach(i -> {
+      mzs[i] = rows[i].getAverageMZ();
+      rts[i] = rows[i].getAverageRT();
+    });
+  }
+
+  /**
+   * @return the index of the first value >= lower in the ascending values
+   */
+  private static int lowerBound(double[] sortedValues, double lower) {
+    int low = 0;
+    int high = sortedValues.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (sortedValues[mid] < lower) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
   /**
    * Removes duplicates when one feature in two rows match.
    *
@@ -331,6 +371,8 @@ public class DuplicateFilterTask extends AbstractTask {
     // sort by mz to limit number of iterations
     Arrays.sort(peakListRows,
         new FeatureListRowSorter(SortingProperty.MZ, SortingDirection.Ascending));
+    final double[] mzs = new double[rowCount];
+    readAverageMzRt(peakListRows, mzs, new float[rowCount]);
 
     // Loop through all feature list rows
     int n = 0;
@@ -362,14 +404,10 @@ public class DuplicateFilterTask extends AbstractTask {
         double upperMZ = mzTolerance.getToleranceRange(maxMZ).upperEndpoint();
 
         for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
-          if (isCanceled()) {
-            return -1;
-          }
-
           final FeatureListRow secondRow = peakListRows[secondRowIndex];
           if (secondRow != null) {
             // check mz first to stop loop
-            final double averageMZ2 = secondRow.getAverageMZ();
+            final double averageMZ2 = mzs[secondRowIndex];
             if (averageMZ2 < lowerMZ) {
               continue;
             }
@@ -464,20 +502,4 @@ public class DuplicateFilterTask extends AbstractTask {
     return false;
   }
 
-  /**
-   * Shares the same RT and mz
-   *
-   * @param firstRow
-   * @param secondRow
-   * @param mzTolerance
-   * @param rtTolerance
-   * @return
-   */
-  private boolean checkSameAverageRTMZ(FeatureListRow firstRow, FeatureListRow secondRow,
-      MZTolerance mzTolerance, RTTolerance rtTolerance) {
-    // Compare m/z and RT
-    return mzTolerance.checkWithinTolerance(firstRow.getAverageMZ(), secondRow.getAverageMZ())
-           && rtTolerance.checkWithinTolerance(firstRow.getAverageRT(), secondRow.getAverageRT());
-  }
-
 }
@@ -40,7 +40,6 @@ import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.scans.ScanUtils;
 import io.github.mzmine.util.scans.SpectraMerging;
 import io.github.mzmine.util.scans.SpectraMerging.MergingType;
 import java.time.Instant;
@@ -163,7 +162,13 @@ public class GroupMS2Task extends AbstractTask {
         double fmz = f.getMZ();
         Range<Float> rtRange = f.getRawDataPointsRTRange();
 
-        List<Scan> scans = ScanUtils.streamScans(raw, 2)
+        // candidates by the precursor m/z and rt index of the raw data file
+        final Range<Float> rtTolRange = rtTol.getToleranceRange(frt);
+        final Range<Float> candidateRtRange =
+            limitRTByFeature && rtRange.isConnected(rtTolRange) ? rtRange.intersection(rtTolRange)
+                : rtTolRange;
+        List<Scan> scans = raw.getScanTable()
+            .getMs2Scans(mzTol.getToleranceRange(fmz), candidateRtRange).stream()
             .filter(scan -> filterScan(scan, frt, fmz, rtRange)).collect(Collectors.toList());
 
         // set list to feature
@@ -194,10 +199,8 @@ public class GroupMS2Task extends AbstractTask {
     Range<Float> rtRange = feature.getRawDataPointsRTRange();
     Float mobility = feature.getMobility();
 
-    final List<? extends Scan> scans = feature.getRawDataFile().getScanNumbers(2).stream().filter(
-            scan -> (!limitRTByFeature && rtTol.checkWithinTolerance(frt, scan.getRetentionTime())) || (
-                limitRTByFeature && rtRange.contains(scan.getRetentionTime())))
-        .collect(Collectors.toList());
+    final List<? extends Scan> scans = List.of(feature.getRawDataFile()
+        .getScanNumbers(2, limitRTByFeature ? rtRange : rtTol.getToleranceRange(frt)));
 
     if (scans.isEmpty() || !(scans.get(0) instanceof Frame)) {
       return;
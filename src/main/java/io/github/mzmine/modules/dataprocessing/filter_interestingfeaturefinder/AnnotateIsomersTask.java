@@ -33,12 +33,10 @@ import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
 import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.FeatureListUtils;
 import io.github.mzmine.util.IonMobilityUtils;
 import io.github.mzmine.util.MemoryMapStorage;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
@@ -111,8 +109,7 @@ public class AnnotateIsomersTask extends AbstractTask {
   public void run() {
     setStatus(TaskStatus.PROCESSING);
 
-    final List<ModularFeatureListRow> rowsByMz = flist.modularStream()
-        .sorted(Comparator.comparingDouble(ModularFeatureListRow::getAverageMZ)).toList();
+    final List<ModularFeatureListRow> rows = flist.modularStream().toList();
     flist.addRowType(new PossibleIsomerType());
 
     // sort by decreasing intensity
@@ -120,7 +117,7 @@ public class AnnotateIsomersTask extends AbstractTask {
 //        (row1, row2) -> -1 * Double
 //            .compare(row1.getMaxDataPointIntensity(), row2.getMaxDataPointIntensity())).toList();
 
-    rowsByMz.parallelStream().forEach(row -> {
+    rows.parallelStream().forEach(row -> {
       if (isCanceled()) {
         return;
       }
@@ -137,9 +134,10 @@ public class AnnotateIsomersTask extends AbstractTask {
         return;
       }
 
-      var possibleRows = FeatureListUtils
-          .getRows(rowsByMz, rtTolerance.getToleranceRange(row.getAverageRT()),
-              mzTolerance.getToleranceRange(row.getAverageMZ()), true);
+      final List<ModularFeatureListRow> possibleRows = new ArrayList<>(
+          flist.getRowsInside(mzTolerance.getToleranceRange(row.getAverageMZ()),
+              rtTolerance.getToleranceRange(row.getAverageRT()), null).stream()
+              .map(ModularFeatureListRow.class::cast).toList());
 
       float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
 
@@ -24,10 +24,10 @@ import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
-import io.github.mzmine.datamodel.features.ModularFeatureListRow;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.datamodel.impl.SimpleIsotopePattern;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopePatternGrouper.IsotopeGroup;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
@@ -40,9 +40,10 @@ import io.github.mzmine.util.FeatureListRowSorter;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.logging.Logger;
@@ -54,14 +55,6 @@ import org.jetbrains.annotations.Nullable;
  */
 class IsotopeGrouperTask extends AbstractTask {
 
-  /**
-   * The isotopeDistance constant defines expected distance between isotopes. Actual weight of 1
-   * neutron is 1.008665 Da, but part of this mass is consumed as binding energy to other
-   * protons/neutrons. Actual mass increase of isotopes depends on chemical formula of the molecule.
-   * Since we don't know the formula, we can assume the distance to be ~1.0033 Da, with user-defined
-   * tolerance.
-   */
-  private static final double isotopeDistance = 1.0033;
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private final MZmineProject project;
   private final ModularFeatureList featureList;
@@ -76,8 +69,7 @@ class IsotopeGrouperTask extends AbstractTask {
   private final int maximumCharge;
   private final ParameterSet parameters;
   private final OriginalFeatureListOption handleOriginal;
-  // peaks counter
-  private int processedRows, totalRows;
+  private IsotopePatternGrouper grouper;
 
   /**
    *
@@ -113,10 +105,8 @@ class IsotopeGrouperTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    if (totalRows == 0) {
-      return 0.0f;
-    }
-    return (double) processedRows / (double) totalRows;
+    final IsotopePatternGrouper grouper = this.grouper;
+    return grouper == null ? 0d : grouper.getFinishedPercentage();
   }
 
   @Override
@@ -140,12 +130,6 @@ class IsotopeGrouperTask extends AbstractTask {
     };
     //    DataTypeUtils.copyTypes(featureList, deisotopedFeatureList, true, true);
 
-    // Collect all selected charge states
-    int[] charges = new int[maximumCharge];
-    for (int i = 0; i < maximumCharge; i++) {
-      charges[i] = i + 1;
-    }
-
     final FeatureListRowSorter rowsHeightSorter = new FeatureListRowSorter(SortingProperty.Height,
         SortingDirection.Descending);
     final FeatureListRowSorter rowsMzSorter = new FeatureListRowSorter(SortingProperty.MZ,
@@ -159,91 +143,57 @@ class IsotopeGrouperTask extends AbstractTask {
     List<FeatureListRow> rowsSortedByMz = new ArrayList<>(deisotopedFeatureList.getRows());
     rowsSortedByMz.sort(rowsMzSorter);
 
-    // Loop through all peaks
-    totalRows = rowsSortedByHeight.size();
-
-    // list of final rows (size is usually similar)
-    List<FeatureListRow> finalRows = new ArrayList<>((int) (totalRows * 0.9));
-
-    while (!rowsSortedByHeight.isEmpty()) {
-
-      if (isCanceled()) {
-        return;
-      }
-
-      ModularFeatureListRow mostIntenseRow = (ModularFeatureListRow) rowsSortedByHeight.remove(0);
-
-      // Check if peak was already deleted
-      if (mostIntenseRow == null) {
-        processedRows++;
-        continue;
-      }
-      // find index in mz sorted list
-      int indexMzSorted = Collections.binarySearch(rowsSortedByMz, mostIntenseRow, rowsMzSorter);
-      rowsSortedByMz.remove(indexMzSorted);
-
-      // Check which charge state fits best around this peak
-      int bestFitCharge = 0;
-      int bestFitScore = -1;
-      List<FeatureListRow> bestFitRows = null;
-      for (int charge : charges) {
-
-        List<FeatureListRow> fittedRows = new ArrayList<>();
-        fittedRows.add(mostIntenseRow);
-        // use rows sorted by mz
-        fitPattern(fittedRows, mostIntenseRow, charge, rowsSortedByMz, indexMzSorted);
-
-        int score = fittedRows.size();
-        if ((score > bestFitScore) || ((score == bestFitScore) && (bestFitCharge > charge))) {
-          bestFitScore = score;
-          bestFitCharge = charge;
-          bestFitRows = fittedRows;
-        }
-
-      }
+    // primitive columns in m/z order for the grouping
+    final int numRows = rowsSortedByMz.size();
+    final double[] mzs = new double[numRows];
+    final float[] rts = new float[numRows];
+    final float[] mobilities = new float[numRows];
+    final Reference2IntOpenHashMap<FeatureListRow> mzIndices = new Reference2IntOpenHashMap<>(
+        numRows);
+    for (int i = 0; i < numRows; i++) {
+      final FeatureListRow row = rowsSortedByMz.get(i);
+      mzs[i] = row.getAverageMZ();
+      rts[i] = row.getAverageRT();
+      final Float mobility = row.getAverageMobility();
+      mobilities[i] = mobility != null ? mobility : Float.NaN;
+      mzIndices.put(row, i);
+    }
+    final int[] heightOrder = new int[numRows];
+    for (int i = 0; i < numRows; i++) {
+      heightOrder[i] = mzIndices.getInt(rowsSortedByHeight.get(i));
+    }
 
-      assert bestFitRows != null;
+    grouper = new IsotopePatternGrouper(mzTolerance, rtTolerance,
+        useMobilityTolerance ? mobilityTolerance : null, monotonicShape, !chooseMostIntense,
+        maximumCharge);
+    final List<IsotopeGroup> groups = grouper.group(mzs, rts, mobilities, heightOrder,
+        this::isCanceled);
+    if (isCanceled()) {
+      return;
+    }
 
-      // Verify the number of detected isotopes. If there is only one
-      // isotope, we skip this left the original peak in the feature list.
-      if (bestFitRows.size() == 1) {
-        finalRows.add(mostIntenseRow);
-        processedRows++;
+    // list of final rows (size is usually similar)
+    List<FeatureListRow> finalRows = new ArrayList<>(groups.size());
+    for (IsotopeGroup group : groups) {
+      final FeatureListRow mainRow = rowsSortedByMz.get(group.mainRow());
+      finalRows.add(mainRow);
+      // If there is only one isotope, we left the original peak in the feature list.
+      if (group.charge() == 0) {
         continue;
       }
 
       // Convert the peak pattern to array
-      final DataPoint[] isotopes = bestFitRows.stream()
+      final DataPoint[] isotopes = Arrays.stream(group.rows()).mapToObj(rowsSortedByMz::get)
           .map(r -> new SimpleDataPoint(r.getAverageMZ(), r.getAverageHeight()))
           .sorted(new DataPointSorter(SortingProperty.MZ, SortingDirection.Ascending))
           .toArray(DataPoint[]::new);
       SimpleIsotopePattern newPattern = new SimpleIsotopePattern(isotopes,
-          IsotopePatternStatus.DETECTED, mostIntenseRow.toString());
+          IsotopePatternStatus.DETECTED, rowsSortedByMz.get(group.seed()).toString());
 
-      // Depending on user's choice, we leave either the most intense, or
-      // the lowest m/z peak
-      if (chooseMostIntense) {
-        bestFitRows.sort(rowsHeightSorter);
-      } else {
-        bestFitRows.sort(rowsMzSorter);
-      }
-
-      // add to final rows
-      final FeatureListRow mainRow = bestFitRows.get(0);
-      finalRows.add(mainRow);
       // set isotope pattern
       Feature feature = mainRow.getFeatures().get(0);
       feature.setIsotopePattern(newPattern);
-      feature.setCharge(bestFitCharge);
-
-      // Remove all peaks already assigned to isotope pattern
-      // first is already removed
-      bestFitRows.remove(0);
-      rowsSortedByHeight.removeAll(bestFitRows);
-      rowsSortedByMz.removeAll(bestFitRows);
-
-      // Update completion rate
-      processedRows += bestFitRows.size();
+      feature.setCharge(group.charge());
     }
 
     // Add task description to peakList
@@ -261,120 +211,4 @@ class IsotopeGrouperTask extends AbstractTask {
     logger.info("Finished isotopic peak grouper on " + featureList);
     setStatus(TaskStatus.FINISHED);
   }
-
-  /**
-   * Fits isotope pattern around one peak.
-   *
-   * @param row            Pattern is fitted around this peak
-   * @param charge         Charge state of the fitted pattern
-   * @param rowsSortedByMz rows sorted by mz
-   * @param startRowIndex  index to start with in mz sorted list
-   */
-  private void fitPattern(List<FeatureListRow> fittedRows, ModularFeatureListRow row, int charge,
-      List<FeatureListRow> rowsSortedByMz, int startRowIndex) {
-
-    if (charge == 0) {
-      return;
-    }
-
-    // Search for peaks before the start peak
-    if (!monotonicShape) {
-      fitHalfPattern(row, charge, -1, fittedRows, rowsSortedByMz, startRowIndex);
-    }
-
-    // Search for peaks after the start peak
-    fitHalfPattern(row, charge, 1, fittedRows, rowsSortedByMz, startRowIndex);
-  }
-
-  /**
-   * Helper method for fitPattern. Fits only one half of the pattern.
-   *
-   * @param row            Pattern is fitted around this peak
-   * @param charge         Charge state of the fitted pattern
-   * @param direction      Defines which half to fit: -1=fit to peaks before start M/Z, +1=fit to
-   *                       peaks after start M/Z
-   * @param fittedRows     All matching peaks will be added to this set
-   * @param rowsSortedByMz rows sorted by mz
-   * @param startRowIndex  index to start with in mz sorted list
-   */
-  private void fitHalfPattern(ModularFeatureListRow row, int charge, int direction,
-      List<FeatureListRow> fittedRows, List<FeatureListRow> rowsSortedByMz, int startRowIndex) {
-
-    // Use M/Z and RT of the strongest peak of the pattern (row)
-    double mainMZ = row.getAverageMZ();
-    float mainRT = row.getAverageRT();
-    Float mainMobility = row.getAverageMobility();
-
-    final double absoluteMzTolerance = mzTolerance.getMzToleranceForMass(mainMZ);
-
-    // Variable n is the number of peak we are currently searching. 1=first
-    // peak before/after start peak, 2=peak before/after previous, 3=...
-    boolean followingPeakFound;
-    int n = 1;
-    do {
-      // start at start row index in mz sorted list
-      int ind = startRowIndex;
-
-      // Assume we don't find match for n:th peak in the pattern (which
-      // will end the loop)
-      followingPeakFound = false;
-
-      // Loop through all peaks, and collect candidates for the n:th peak
-      // in the pattern
-      List<FeatureListRow> goodCandidates = new ArrayList<>();
-      for (; ind < rowsSortedByMz.size() && ind >= 0; ind += direction) {
-
-        ModularFeatureListRow candidatePeak = (ModularFeatureListRow) rowsSortedByMz.get(ind);
-
-        if (candidatePeak == null) {
-          continue;
-        }
-
-        // Get properties of the candidate peak
-        double candidatePeakMZ = candidatePeak.getAverageMZ();
-
-        // Does this peak fill all requirements of a candidate?
-        // - within tolerances from the expected location (M/Z and RT)
-        // - not already a fitted peak (only necessary to avoid
-        // conflicts when parameters are set too wide)
-        double isotopeMZ = candidatePeakMZ - isotopeDistance * direction * n / charge;
-        double deltaMZ = isotopeMZ - mainMZ;
-
-        // break the loop if deltaMZ reaches out of the maximum allowed mz tolerance (one sided check)
-        if (deltaMZ * direction > absoluteMzTolerance) {
-          break;
-        }
-
-        // check if in range
-        if (Math.abs(deltaMZ) <= absoluteMzTolerance && rtTolerance.checkWithinTolerance(
-            candidatePeak.getAverageRT(), mainRT)) {
-          if (!useMobilityTolerance || mainMobility == null || checkCandidateMobility(mainMobility,
-              candidatePeak)) {
-            goodCandidates.add(candidatePeak);
-          }
-
-        }
-
-      }
-
-      // Add all good candidates to the isotope pattern (note: in MZmine
-      // 2.3 and older, only the highest candidate was added)
-      if (!goodCandidates.isEmpty()) {
-
-        fittedRows.addAll(goodCandidates);
-
-        // n:th peak was found, so let's move on to n+1
-        n++;
-        followingPeakFound = true;
-      }
-
-    } while (followingPeakFound);
-  }
-
-  private boolean checkCandidateMobility(Float mainMobility, FeatureListRow row) {
-    Float candidateMobility = row.getAverageMobility();
-    return candidateMobility == null || mobilityTolerance.checkWithinTolerance(mainMobility,
-        candidateMobility);
-  }
-
 }
@@ -0,0 +1,412 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_isotopegrouper;
+
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Greedy isotope pattern grouping on primitive row columns. The rows are given in the order of the
+ * m/z sort key of {@link io.github.mzmine.util.FeatureListRowSorter} (m/z + rt / 10<sup>7</sup>)
+ * and are grouped in order of descending height: the most intense remaining row is the seed of a
+ * pattern, the best fitting charge state is chosen and the rows of the pattern are removed.
+ * <p>
+ * The matching is done speculatively and in parallel: for every row and charge, all rows that
+ * would match the n-th isotope are collected assuming that all rows are still available. A serial
+ * pass in height order then filters these candidates by the rows that are actually left, which
+ * reproduces the result of the sequential search exactly, including the position dependent stop
+ * criteria of the search in the m/z sorted list.
+ */
+public class IsotopePatternGrouper {
+
+  /**
+   * The isotopeDistance constant defines expected distance between isotopes. Actual weight of 1
+   * neutron is 1.008665 Da, but part of this mass is consumed as binding energy to other
+   * protons/neutrons. Actual mass increase of isotopes depends on chemical formula of the molecule.
+   * Since we don't know the formula, we can assume the distance to be ~1.0033 Da, with user-defined
+   * tolerance.
+   */
+  public static final double isotopeDistance = 1.0033;
+  // rounding margin for the bounds of the m/z sort key
+  private static final double KEY_EPSILON = 1E-9;
+
+  private final MZTolerance mzTolerance;
+  private final RTTolerance rtTolerance;
+  private final MobilityTolerance mobilityTolerance;
+  private final boolean monotonicShape;
+  private final boolean keepLowestMz;
+  private final int maximumCharge;
+
+  private final AtomicInteger matchedRows = new AtomicInteger(0);
+  private final AtomicInteger groupedRows = new AtomicInteger(0);
+  private volatile int totalRows = 0;
+
+  /**
+   * @param mobilityTolerance null if the mobility shall not be checked.
+   * @param monotonicShape    only search for isotopes above the seed m/z.
+   * @param keepLowestMz      true to represent a pattern by the row with the lowest m/z, false to
+   *                          represent it by the most intense row.
+   * @param maximumCharge     the charge states 1 to maximumCharge are tested.
+   */
+  public IsotopePatternGrouper(@NotNull MZTolerance mzTolerance, @NotNull RTTolerance rtTolerance,
+      @Nullable MobilityTolerance mobilityTolerance, boolean monotonicShape, boolean keepLowestMz,
+      int maximumCharge) {
+    this.mzTolerance = mzTolerance;
+    this.rtTolerance = rtTolerance;
+    this.mobilityTolerance = mobilityTolerance;
+    this.monotonicShape = monotonicShape;
+    this.keepLowestMz = keepLowestMz;
+    this.maximumCharge = maximumCharge;
+  }
+
+  /**
+   * @return the progress from 0 to 1.
+   */
+  public double getFinishedPercentage() {
+    final int total = totalRows;
+    return total == 0 ? 0d : 0.5 * (matchedRows.get() + groupedRows.get()) / total;
+  }
+
+  /**
+   * Groups the rows.
+   *
+   * @param mzs         m/z of the rows, sorted by the m/z sort key.
+   * @param rts         retention times of the rows.
+   * @param mobilities  mobilities of the rows, NaN if a row has no mobility.
+   * @param heightOrder indices of the rows in order of descending height.
+   * @param isCanceled  cancels the grouping.
+   * @return the groups in the order they were formed. Each row that is not part of a pattern is a
+   * group of its own. Empty if canceled.
+   */
+  @NotNull
+  public List<IsotopeGroup> group(@NotNull double[] mzs, @NotNull float[] rts,
+      @NotNull float[] mobilities, @NotNull int[] heightOrder, @NotNull BooleanSupplier isCanceled) {
+    final int numRows = mzs.length;
+    totalRows = numRows;
+    if (numRows == 0) {
+      return List.of();
+    }
+
+    // same sort key as used for the m/z order of the rows. A row with a higher key may have a
+    // slightly lower m/z, so the search windows are widened by the rt range.
+    final double[] keys = new double[numRows];
+    float minRt = Float.POSITIVE_INFINITY;
+    float maxRt = Float.NEGATIVE_INFINITY;
+    for (int i = 0; i < numRows; i++) {
+      keys[i] = mzs[i] + rts[i] / 10000000.0;
+      minRt = Math.min(minRt, rts[i]);
+      maxRt = Math.max(maxRt, rts[i]);
+    }
+    final double minKeyShift = minRt / 10000000.0 - KEY_EPSILON;
+    final double maxKeyShift = maxRt / 10000000.0 + KEY_EPSILON;
+
+    // speculative matching with all rows available
+    final int[][] matches = new int[numRows][];
+    IntStream.range(0, numRows).parallel().forEach(seed -> {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      final IntArrayList seedMatches = new IntArrayList();
+      for (int charge = 1; charge <= maximumCharge; charge++) {
+        if (!monotonicShape) {
+          matchHalfPattern(seed, charge, -1, mzs, rts, mobilities, keys, minKeyShift,
+              maxKeyShift, seedMatches);
+        }
+        matchHalfPattern(seed, charge, 1, mzs, rts, mobilities, keys, minKeyShift, maxKeyShift,
+            seedMatches);
+      }
+      matches[seed] = seedMatches.toIntArray();
+      matchedRows.incrementAndGet();
+    });
+    if (isCanceled.getAsBoolean()) {
+      return List.of();
+    }
+
+    // greedy grouping in height order on the rows that are left
+    final boolean[] removed = new boolean[numRows];
+    final int[] nextCandidate = new int[numRows + 1];
+    for (int i = 0; i <= numRows; i++) {
+      nextCandidate[i] = i;
+    }
+
+    final List<IsotopeGroup> groups = new ArrayList<>();
+    for (int seed : heightOrder) {
+      if (isCanceled.getAsBoolean()) {
+        return List.of();
+      }
+      if (removed[seed]) {
+        continue;
+      }
+      remove(seed, removed, nextCandidate);
+      // the search starts at the next row that is left, no search without such a row
+      final int next = findNextRow(seed + 1, nextCandidate);
+      final int firstRowAbove = next < numRows ? next : -1;
+
+      int bestFitCharge = 0;
+      int[] bestFitRows = null;
+      int offset = 0;
+      final int[] seedMatches = matches[seed];
+      final IntArrayList fittedRows = new IntArrayList();
+      for (int charge = 1; charge <= maximumCharge; charge++) {
+        fittedRows.clear();
+        fittedRows.add(seed);
+        if (!monotonicShape) {
+          offset = fitHalfPattern(seed, -1, seedMatches, offset, firstRowAbove, removed,
+              fittedRows);
+        }
+        offset = fitHalfPattern(seed, 1, seedMatches, offset, firstRowAbove, removed,
+            fittedRows);
+        if (bestFitRows == null || fittedRows.size() > bestFitRows.length) {
+          bestFitCharge = charge;
+          bestFitRows = fittedRows.toIntArray();
+        }
+      }
+
+      if (bestFitRows.length == 1) {
+        groups.add(new IsotopeGroup(seed, seed, 0, bestFitRows));
+        groupedRows.incrementAndGet();
+        continue;
+      }
+
+      // the seed is the most intense row of the pattern
+      int mainRow = seed;
+      if (keepLowestMz) {
+        for (int row : bestFitRows) {
+          if (row < mainRow) {
+            mainRow = row;
+          }
+        }
+      }
+      // all rows are removed, the main row stays available if it is contained only once
+      boolean mainRowSkipped = false;
+      for (int row : bestFitRows) {
+        if (row == mainRow && !mainRowSkipped) {
+          mainRowSkipped = true;
+          continue;
+        }
+        if (!removed[row]) {
+          remove(row, removed, nextCandidate);
+          groupedRows.incrementAndGet();
+        }
+      }
+      groups.add(new IsotopeGroup(seed, mainRow, bestFitCharge, bestFitRows));
+      groupedRows.incrementAndGet();
+    }
+    return groups;
+  }
+
+  private static void remove(int row, boolean[] removed, int[] nextCandidate) {
+    removed[row] = true;
+    nextCandidate[row] = row + 1;
+  }
+
+  /**
+   * @return the first row at or after the index that was not removed, the number of rows if there
+   * is none.
+   */
+  private static int findNextRow(int index, int[] nextCandidate) {
+    int root = index;
+    while (nextCandidate[root] != root) {
+      root = nextCandidate[root];
+    }
+    // path compression
+    while (nextCandidate[index] != root) {
+      final int next = nextCandidate[index];
+      nextCandidate[index] = root;
+      index = next;
+    }
+    return root;
+  }
+
+  /**
+   * Collects the candidates of one half of a pattern for all rows being available. The
+   * candidates of each isotope are stored in the order of the sequential search, rows that stop the
+   * sequential search are stored as their bitwise complement. The isotopes are stored until the
+   * first isotope without any matching row.
+   * <p>
+   * Format: number of isotopes, then for each isotope the number of entries and the entries.
+   */
+  private void matchHalfPattern(int seed, int charge, int direction, double[] mzs, float[] rts,
+      float[] mobilities, double[] keys, double minKeyShift, double maxKeyShift,
+      IntArrayList dst) {
+    final int numRows = mzs.length;
+    final double mainMZ = mzs[seed];
+    final float mainRT = rts[seed];
+    final float mainMobility = mobilities[seed];
+    final double absoluteMzTolerance = mzTolerance.getMzToleranceForMass(mainMZ);
+
+    final int numIsotopesIndex = dst.size();
+    dst.add(0);
+    int numIsotopes = 0;
+    for (int n = 1; ; n++) {
+      final double expectedMz = mainMZ + isotopeDistance * direction * n / charge;
+      final double lowerKey = expectedMz - absoluteMzTolerance + minKeyShift;
+      final double upperKey = expectedMz + absoluteMzTolerance + maxKeyShift;
+
+      final int countIndex = dst.size();
+      dst.add(0);
+      int numMatches = 0;
+      if (direction > 0) {
+        // rows below the lower key are below the window, rows above the upper key and all
+        // following rows stop the search
+        for (int i = Math.max(seed + 1, lowerBound(keys, lowerKey)); i < numRows; i++) {
+          if (keys[i] > upperKey) {
+            break;
+          }
+          final int result = checkCandidate(i, n, charge, direction, mainMZ, mainRT, mainMobility,
+              absoluteMzTolerance, mzs, rts, mobilities);
+          if (result != 0) {
+            dst.add(result > 0 ? i : ~i);
+            numMatches += result > 0 ? 1 : 0;
+          }
+        }
+      } else {
+        // the search starts at the first available row above the seed
+        for (int i = seed + 1; i < numRows && keys[i] <= upperKey; i++) {
+          final int result = checkCandidate(i, n, charge, direction, mainMZ, mainRT, mainMobility,
+              absoluteMzTolerance, mzs, rts, mobilities);
+          if (result != 0) {
+            dst.add(result > 0 ? i : ~i);
+            numMatches += result > 0 ? 1 : 0;
+          }
+        }
+        for (int i = Math.min(seed - 1, lowerBound(keys, upperKey) - 1); i >= 0; i--) {
+          if (keys[i] < lowerKey) {
+            break;
+          }
+          final int result = checkCandidate(i, n, charge, direction, mainMZ, mainRT, mainMobility,
+              absoluteMzTolerance, mzs, rts, mobilities);
+          if (result != 0) {
+            dst.add(result > 0 ? i : ~i);
+            numMatches += result > 0 ? 1 : 0;
+          }
+        }
+      }
+
+      if (numMatches == 0) {
+        dst.size(countIndex);
+        break;
+      }
+      dst.set(countIndex, dst.size() - countIndex - 1);
+      numIsotopes++;
+    }
+    dst.set(numIsotopesIndex, numIsotopes);
+  }
+
+  /**
+   * Same checks as the sequential search.
+   *
+   * @return 1 if the row matches the n-th isotope, -1 if the row stops the search, 0 otherwise.
+   */
+  private int checkCandidate(int i, int n, int charge, int direction, double mainMZ, float mainRT,
+      float mainMobility, double absoluteMzTolerance, double[] mzs, float[] rts,
+      float[] mobilities) {
+    final double isotopeMZ = mzs[i] - isotopeDistance * direction * n / charge;
+    final double deltaMZ = isotopeMZ - mainMZ;
+
+    // one sided check, the sequential search stops here
+    if (deltaMZ * direction > absoluteMzTolerance) {
+      return -1;
+    }
+
+    if (Math.abs(deltaMZ) <= absoluteMzTolerance && rtTolerance.checkWithinTolerance(rts[i],
+        mainRT)) {
+      if (mobilityTolerance == null || Float.isNaN(mainMobility) || Float.isNaN(mobilities[i])
+          || mobilityTolerance.checkWithinTolerance(mainMobility, mobilities[i])) {
+        return 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Filters the speculative candidates of one half of a pattern by the rows that are left.
+   *
+   * @param offset        start of the half pattern in the matches of the seed.
+   * @param firstRowAbove the first available row above the seed, -1 if there is none.
+   * @return the offset of the next half pattern.
+   */
+  private static int fitHalfPattern(int seed, int direction, int[] seedMatches, int offset,
+      int firstRowAbove, boolean[] removed, IntArrayList fittedRows) {
+    final int numIsotopes = seedMatches[offset++];
+    boolean searching = firstRowAbove != -1;
+    for (int n = 0; n < numIsotopes; n++) {
+      final int numEntries = seedMatches[offset++];
+      final int end = offset + numEntries;
+      if (searching) {
+        int found = 0;
+        for (int e = offset; e < end; e++) {
+          final int entry = seedMatches[e];
+          final int row = entry >= 0 ? entry : ~entry;
+          // searching downwards, the only row above the seed that is visited is the first one
+          final boolean visited =
+              direction < 0 && row > seed ? row == firstRowAbove : !removed[row];
+          if (!visited) {
+            continue;
+          }
+          if (entry < 0) {
+            break;
+          }
+          fittedRows.add(row);
+          found++;
+        }
+        searching = found > 0;
+      }
+      offset = end;
+    }
+    return offset;
+  }
+
+  /**
+   * @return the first index with a value >= key.
+   */
+  private static int lowerBound(double[] values, double key) {
+    int low = 0;
+    int high = values.length;
+    while (low < high) {
+      final int mid = (low + high) >>> 1;
+      if (values[mid] < key) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @param seed      the row that started the search.
+   * @param mainRow   the row that represents the group.
+   * @param charge    the charge of the pattern, 0 if the seed is not part of a pattern.
+   * @param rows      the rows of the pattern in the order they were found, starting with the
+   *                  seed. May contain rows multiple times, if the tolerances overlap.
+   */
+  public record IsotopeGroup(int seed, int mainRow, int charge, @NotNull int[] rows) {
+
+  }
+}
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.filter_rowsfilter;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.IsotopePattern;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.types.annotations.GNPSSpectralLibraryMatchesType;
+import io.github.mzmine.datamodel.features.types.annotations.LipidMatchListType;
+import io.github.mzmine.modules.dataprocessing.id_gnpsresultsimport.GNPSLibraryMatch;
+import io.github.mzmine.modules.dataprocessing.id_gnpsresultsimport.GNPSLibraryMatch.ATT;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.MatchedLipid;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.UserParameter;
+import io.github.mzmine.parameters.parametertypes.massdefect.MassDefectFilter;
+import io.github.mzmine.util.FormulaUtils;
+import io.github.mzmine.util.RangeUtils;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBFeatureIdentity;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The enabled criteria of the {@link RowsFilterParameters}, compiled into a single predicate over
+ * primitive columns of the rows. The rows are processed in chunks: the values of a chunk are read
+ * from the rows into the columns once, then the predicate is evaluated on the columns. Chunks are
+ * independent and may be processed in parallel.
+ */
+public class CompiledRowsFilter {
+
+  private static final int CHUNK_SIZE = 1024;
+
+  private final MZmineProject project;
+  private final String groupingParameter;
+
+  // which columns are read
+  private final boolean readMz;
+  private final boolean readRt;
+  private final boolean readFeatureCount;
+  private final boolean readFeatureStats;
+  private final boolean readFwhm;
+  private final boolean readCharge;
+  private final boolean readKendrick;
+  private final boolean readIdentified;
+  private final boolean readIdentityText;
+  private final boolean readCommentText;
+  private final boolean readMs2;
+
+  private final String searchText;
+  private final String commentSearchText;
+  // Kendrick mass defect
+  private final double kendrickMassFactor;
+  private final double kendrickMassBaseMass;
+  private final int kendrickCharge;
+  private final int divisor;
+  private final double shift;
+  private final boolean useRemainderOfKendrickMass;
+
+  // the criteria on the columns
+  private final IntPredicate criteria;
+
+  // columns of the current rows
+  private double[] mzs;
+  private float[] rts;
+  private int[] featureCounts;
+  private int[] isotopePatternSizes;
+  private double[] durations;
+  private float[] fwhms;
+  private int[] charges;
+  private double[] kendrickMassDefects;
+  private boolean[] identified;
+  private boolean[] identityTextFound;
+  private boolean[] commentTextFound;
+  private boolean[] ms2Found;
+
+  public CompiledRowsFilter(@NotNull MZmineProject project, @NotNull ParameterSet parameters) {
+    this.project = project;
+    groupingParameter = (String) parameters.getValue(RowsFilterParameters.GROUPSPARAMETER);
+
+    final boolean filterByMinFeatureCount = parameters.getValue(
+        RowsFilterParameters.MIN_FEATURE_COUNT);
+    final boolean filterByMinIsotopePatternSize = parameters.getValue(
+        RowsFilterParameters.MIN_ISOTOPE_PATTERN_COUNT);
+    final boolean filterByMzRange = parameters.getValue(RowsFilterParameters.MZ_RANGE);
+    final boolean filterByRtRange = parameters.getValue(RowsFilterParameters.RT_RANGE);
+    final boolean filterByDuration = parameters.getValue(RowsFilterParameters.FEATURE_DURATION);
+    final boolean filterByFWHM = parameters.getValue(RowsFilterParameters.FWHM);
+    final boolean filterByCharge = parameters.getValue(RowsFilterParameters.CHARGE);
+    final boolean filterByKMD = parameters.getValue(RowsFilterParameters.KENDRICK_MASS_DEFECT);
+    final boolean filterByMS2 = parameters.getValue(RowsFilterParameters.MS2_Filter);
+    final boolean filterByMassDefect = parameters.getValue(RowsFilterParameters.massDefect);
+
+    readIdentified = parameters.getValue(RowsFilterParameters.HAS_IDENTITIES);
+    readIdentityText = parameters.getValue(RowsFilterParameters.IDENTITY_TEXT);
+    readCommentText = parameters.getValue(RowsFilterParameters.COMMENT_TEXT);
+    readMz = filterByMzRange || filterByMassDefect;
+    readRt = filterByRtRange;
+    readFeatureCount = filterByMinFeatureCount || filterByDuration || filterByMS2;
+    readFeatureStats = filterByMinIsotopePatternSize || filterByDuration;
+    readFwhm = filterByFWHM;
+    readCharge = filterByCharge;
+    readKendrick = filterByKMD;
+    readMs2 = filterByMS2;
+
+    searchText = parameters.getParameter(RowsFilterParameters.IDENTITY_TEXT)
+        .getEmbeddedParameter().getValue().toLowerCase().trim();
+    commentSearchText = parameters.getParameter(RowsFilterParameters.COMMENT_TEXT)
+        .getEmbeddedParameter().getValue().toLowerCase().trim();
+
+    final KendrickMassDefectFilterParameters kendrickParam = parameters.getParameter(
+        RowsFilterParameters.KENDRICK_MASS_DEFECT).getEmbeddedParameters();
+    final String kendrickMassBase = kendrickParam.getParameter(
+        KendrickMassDefectFilterParameters.kendrickMassBase).getValue();
+    shift = kendrickParam.getParameter(KendrickMassDefectFilterParameters.shift).getValue();
+    kendrickCharge = kendrickParam.getParameter(KendrickMassDefectFilterParameters.charge)
+        .getValue();
+    divisor = kendrickParam.getParameter(KendrickMassDefectFilterParameters.divisor).getValue();
+    useRemainderOfKendrickMass = kendrickParam.getParameter(
+        KendrickMassDefectFilterParameters.useRemainderOfKendrickMass).getValue();
+    // the exact mass of the Kendrick mass base is calculated once instead of for every row
+    kendrickMassBaseMass = filterByKMD ? FormulaUtils.calculateExactMass(kendrickMassBase) : 1d;
+    kendrickMassFactor =
+        Math.round(kendrickMassBaseMass / divisor) / (kendrickMassBaseMass / divisor);
+
+    // compile the criteria
+    IntPredicate compiled = i -> true;
+    if (filterByMinFeatureCount) {
+      // Handle < 1 values for minFeatureCount and round down to nearest whole number
+      final Double minCount = parameters.getParameter(RowsFilterParameters.MIN_FEATURE_COUNT)
+          .getEmbeddedParameter().getValue();
+      final int intMinCount = minCount == null || minCount < 1 ? 1 : minCount.intValue();
+      compiled = compiled.and(i -> featureCounts[i] >= intMinCount);
+    }
+    if (readIdentified) {
+      compiled = compiled.and(i -> identified[i]);
+    }
+    if (filterByMzRange) {
+      final DoublePredicate mzRange = toPredicate(
+          parameters.getParameter(RowsFilterParameters.MZ_RANGE).getEmbeddedParameter()
+              .getValue());
+      compiled = compiled.and(i -> mzRange.test(mzs[i]));
+    }
+    if (filterByRtRange) {
+      final DoublePredicate rtRange = toPredicate(RangeUtils.toFloatRange(
+          parameters.getParameter(RowsFilterParameters.RT_RANGE).getEmbeddedParameter()
+              .getValue()));
+      compiled = compiled.and(i -> rtRange.test(rts[i]));
+    }
+    if (readIdentityText) {
+      compiled = compiled.and(i -> identityTextFound[i]);
+    }
+    if (readCommentText) {
+      compiled = compiled.and(i -> commentTextFound[i]);
+    }
+    if (filterByMinIsotopePatternSize) {
+      final int minIsotopePatternSize = parameters.getParameter(
+          RowsFilterParameters.MIN_ISOTOPE_PATTERN_COUNT).getEmbeddedParameter().getValue();
+      compiled = compiled.and(i -> isotopePatternSizes[i] >= minIsotopePatternSize);
+    }
+    if (filterByDuration) {
+      final DoublePredicate durationRange = toPredicate(
+          parameters.getParameter(RowsFilterParameters.FEATURE_DURATION).getEmbeddedParameter()
+              .getValue());
+      compiled = compiled.and(i -> durationRange.test(durations[i]));
+    }
+    if (filterByFWHM) {
+      // rows without FWHM pass
+      final DoublePredicate fwhmRange = toPredicate(RangeUtils.toFloatRange(
+          parameters.getParameter(RowsFilterParameters.FWHM).getEmbeddedParameter().getValue()));
+      compiled = compiled.and(i -> Float.isNaN(fwhms[i]) || fwhmRange.test(fwhms[i]));
+    }
+    if (filterByCharge) {
+      final DoublePredicate chargeRange = toPredicate(
+          parameters.getParameter(RowsFilterParameters.CHARGE).getEmbeddedParameter().getValue());
+      compiled = compiled.and(i -> charges[i] != 0 && chargeRange.test(charges[i]));
+    }
+    if (filterByKMD) {
+      final DoublePredicate rangeKMD = toPredicate(kendrickParam.getParameter(
+          KendrickMassDefectFilterParameters.kendrickMassDefectRange).getValue());
+      compiled = compiled.and(i -> rangeKMD.test(kendrickMassDefects[i]));
+    }
+    if (filterByMS2) {
+      compiled = compiled.and(i -> ms2Found[i]);
+    }
+    if (filterByMassDefect) {
+      final MassDefectFilter massDefectFilter = parameters.getParameter(
+          RowsFilterParameters.massDefect).getEmbeddedParameter().getValue();
+      compiled = compiled.and(i -> massDefectFilter.contains(mzs[i]));
+    }
+    criteria = compiled;
+  }
+
+  /**
+   * @param range a range of numbers
+   * @return a predicate on primitive values that is equal to {@link Range#contains(Comparable)}
+   */
+  private static DoublePredicate toPredicate(@NotNull Range<? extends Number> range) {
+    final boolean hasLower = range.hasLowerBound();
+    final boolean hasUpper = range.hasUpperBound();
+    final double lower = hasLower ? range.lowerEndpoint().doubleValue() : 0d;
+    final double upper = hasUpper ? range.upperEndpoint().doubleValue() : 0d;
+    final boolean lowerClosed = hasLower && range.lowerBoundType() == BoundType.CLOSED;
+    final boolean upperClosed = hasUpper && range.upperBoundType() == BoundType.CLOSED;
+    return v -> (!hasLower || (lowerClosed ? v >= lower : v > lower)) && (!hasUpper || (upperClosed
+        ? v <= upper : v < upper));
+  }
+
+  /**
+   * Evaluates all enabled criteria on the rows. Not thread safe, one instance evaluates one array
+   * of rows at a time.
+   *
+   * @param rows       the rows to test
+   * @param parallel   process chunks of rows in parallel
+   * @param isCanceled checked between chunks
+   * @param processed  incremented for every processed row, may be null
+   * @return true for every row that passes all criteria, null if canceled
+   */
+  @Nullable
+  public boolean[] test(@NotNull FeatureListRow[] rows, boolean parallel,
+      @NotNull BooleanSupplier isCanceled, @Nullable AtomicInteger processed) {
+    final int n = rows.length;
+    mzs = readMz ? new double[n] : null;
+    rts = readRt ? new float[n] : null;
+    featureCounts = readFeatureCount ? new int[n] : null;
+    isotopePatternSizes = readFeatureStats ? new int[n] : null;
+    durations = readFeatureStats ? new double[n] : null;
+    fwhms = readFwhm ? new float[n] : null;
+    charges = readCharge ? new int[n] : null;
+    kendrickMassDefects = readKendrick ? new double[n] : null;
+    identified = readIdentified ? new boolean[n] : null;
+    identityTextFound = readIdentityText ? new boolean[n] : null;
+    commentTextFound = readCommentText ? new boolean[n] : null;
+    ms2Found = readMs2 ? new boolean[n] : null;
+
+    final boolean[] passed = new boolean[n];
+    final int numChunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    IntStream chunks = IntStream.range(0, numChunks);
+    if (parallel) {
+      chunks = chunks.parallel();
+    }
+    chunks.forEach(chunk -> {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      final int from = chunk * CHUNK_SIZE;
+      final int to = Math.min(n, from + CHUNK_SIZE);
+      for (int i = from; i < to; i++) {
+        readColumns(rows[i], i);
+      }
+      for (int i = from; i < to; i++) {
+        passed[i] = criteria.test(i);
+      }
+      if (processed != null) {
+        processed.addAndGet(to - from);
+      }
+    });
+    return isCanceled.getAsBoolean() ? null : passed;
+  }
+
+  /**
+   * Reads the values of all required columns from one row.
+   */
+  private void readColumns(@NotNull FeatureListRow row, int i) {
+    final int featureCount = readFeatureCount || readFeatureStats ? getFeatureCount(row) : 0;
+    if (readFeatureCount) {
+      featureCounts[i] = featureCount;
+    }
+    if (readMz) {
+      mzs[i] = row.getAverageMZ();
+    }
+    if (readRt) {
+      rts[i] = row.getAverageRT();
+    }
+
+    final List<MatchedLipid> matchedLipids =
+        readIdentified || readIdentityText ? row.get(LipidMatchListType.class) : null;
+    if (readIdentified) {
+      final List<SpectralDBFeatureIdentity> matches = row.getSpectralLibraryMatches();
+      final List<GNPSLibraryMatch> gnps = row.get(GNPSSpectralLibraryMatchesType.class);
+      identified[i] = row.getPreferredFeatureIdentity() != null || (matchedLipids != null
+          && !matchedLipids.isEmpty()) || (gnps != null && !gnps.isEmpty()) || (matches != null
+          && !matches.isEmpty());
+    }
+    if (readIdentityText) {
+      identityTextFound[i] = containsIdentityText(row, matchedLipids);
+    }
+    if (readCommentText) {
+      final String comment = row.getComment();
+      commentTextFound[i] =
+          comment != null && comment.toLowerCase().trim().contains(commentSearchText);
+    }
+
+    if (readFeatureStats) {
+      // max isotope pattern size and average duration
+      int maxIsotopePatternSizeOnRow = 1;
+      double avgDuration = 0.0;
+      for (final Feature p : row.getFeatures()) {
+        final IsotopePattern pattern = p.getIsotopePattern();
+        if (pattern != null && maxIsotopePatternSizeOnRow < pattern.getNumberOfDataPoints()) {
+          maxIsotopePatternSizeOnRow = pattern.getNumberOfDataPoints();
+        }
+        avgDuration += RangeUtils.rangeLength(p.getRawDataPointsRTRange());
+      }
+      isotopePatternSizes[i] = maxIsotopePatternSizeOnRow;
+      durations[i] = avgDuration / featureCount;
+    }
+
+    if (readFwhm || readCharge || readKendrick) {
+      final Feature best = row.getBestFeature();
+      if (readFwhm) {
+        final Float fwhm = best.getFWHM();
+        fwhms[i] = fwhm == null ? Float.NaN : fwhm;
+      }
+      if (readCharge) {
+        final Integer charge = best.getCharge();
+        charges[i] = charge == null ? 0 : charge;
+      }
+      if (readKendrick) {
+        kendrickMassDefects[i] = getShiftedKendrickMassDefect(best.getMZ());
+      }
+    }
+
+    if (readMs2) {
+      // passes if at least one of the counted features has a fragment scan
+      final List<? extends Feature> features = row.getFeatures();
+      boolean found = false;
+      for (int f = 0; f < featureCount && !found; f++) {
+        found = features.get(f).getMostIntenseFragmentScan() != null;
+      }
+      ms2Found[i] = found;
+    }
+  }
+
+  private boolean containsIdentityText(@NotNull FeatureListRow row,
+      @Nullable List<MatchedLipid> matchedLipids) {
+    if (row.getPeakIdentities() != null) {
+      for (var id : row.getPeakIdentities()) {
+        if (id != null && id.getName().toLowerCase().trim().contains(searchText)) {
+          return true;
+        }
+      }
+    }
+    if (matchedLipids != null) {
+      for (var id : matchedLipids) {
+        if (id != null && id.getLipidAnnotation().getAnnotation().toLowerCase().trim()
+            .contains(searchText)) {
+          return true;
+        }
+      }
+    }
+    if (row.getSpectralLibraryMatches() != null) {
+      for (var id : row.getSpectralLibraryMatches()) {
+        if (id != null && id.getName().toLowerCase().trim().contains(searchText)) {
+          return true;
+        }
+      }
+    }
+    final List<GNPSLibraryMatch> gnps = row.get(GNPSSpectralLibraryMatchesType.class);
+    if (gnps != null) {
+      for (var id : gnps) {
+        if (id != null && id.getResultOr(ATT.COMPOUND_NAME, "").toLowerCase().trim()
+            .contains(searchText)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the shifted Kendrick mass defect or remainder of Kendrick mass
+   */
+  private double getShiftedKendrickMassDefect(double valueMZ) {
+    double defectOrRemainder;
+    if (!useRemainderOfKendrickMass) {
+      // calc Kendrick mass defect
+      defectOrRemainder = Math.ceil(kendrickCharge * (valueMZ * kendrickMassFactor)) //
+                          - kendrickCharge * (valueMZ * kendrickMassFactor);
+    } else {
+      // calc Kendrick mass remainder
+      final double remainder =
+          (kendrickCharge * (divisor - Math.round(kendrickMassBaseMass)) * valueMZ)
+          / kendrickMassBaseMass;
+      defectOrRemainder = remainder - Math.floor(remainder);
+    }
+
+    // shift Kendrick mass defect or remainder of Kendrick mass
+    return defectOrRemainder + shift - Math.floor(defectOrRemainder + shift);
+  }
+
+  private int getFeatureCount(FeatureListRow row) {
+    String groupingParameter = this.groupingParameter;
+    if (groupingParameter.contains("Filtering by ")) {
+      HashMap<String, Integer> groups = new HashMap<>();
+      for (RawDataFile file : project.getDataFiles()) {
+        UserParameter<?, ?>[] params = project.getParameters();
+        for (UserParameter<?, ?> p : params) {
+          groupingParameter = groupingParameter.replace("Filtering by ", "");
+          if (groupingParameter.equals(p.getName())) {
+            String parameterValue = String.valueOf(project.getParameterValue(p, file));
+            if (row.hasFeature(file)) {
+              if (groups.containsKey(parameterValue)) {
+                groups.put(parameterValue, groups.get(parameterValue) + 1);
+              } else {
+                groups.put(parameterValue, 1);
+              }
+            } else {
+              groups.put(parameterValue, 0);
+            }
+          }
+        }
+      }
+
+      int min = Integer.MAX_VALUE;
+      for (int val : groups.values()) {
+        if (val < min) {
+          min = val;
+        }
+      }
+      return min;
+
+    } else {
+      return row.getNumberOfFeatures();
+    }
+  }
+}
@@ -18,25 +18,22 @@
 
 package io.github.mzmine.modules.dataprocessing.filter_scansmoothing;
 
-import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
-import io.github.mzmine.datamodel.impl.SimpleDataPoint;
-import io.github.mzmine.datamodel.impl.SimpleScan;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
-import io.github.mzmine.util.DataPointUtils;
 import io.github.mzmine.util.MemoryMapStorage;
-import io.github.mzmine.util.scans.ScanUtils;
+import io.github.mzmine.util.scans.ParallelScanFilter;
+import io.github.mzmine.util.scans.ScanRingBuffer;
 import java.io.IOException;
 import java.time.Instant;
-import java.util.Date;
-import java.util.List;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -49,8 +46,9 @@ public class ScanSmoothingTask extends AbstractTask {
   private final RawDataFile dataFile;
 
   // scan counter
-  private int processedScans = 0, totalScans;
-  private List<Scan> scanNumbers;
+  private final AtomicInteger processedScans = new AtomicInteger(0);
+  private int totalScans;
+  private Scan[] scans;
 
   // User parameters
   private String suffix;
@@ -103,7 +101,7 @@ public class ScanSmoothingTask extends AbstractTask {
     if (totalScans == 0)
       return 0;
     else
-      return (double) processedScans / totalScans;
+      return (double) processedScans.get() / totalScans;
   }
 
   public RawDataFile getDataFile() {
@@ -120,143 +118,39 @@ public class ScanSmoothingTask extends AbstractTask {
 
     logger.info("Started Scan Smoothing on " + dataFile);
 
-    scanNumbers = dataFile.getScanNumbers(1);
-    totalScans = scanNumbers.size();
+    scans = dataFile.getScanNumbers(1).toArray(Scan[]::new);
+    totalScans = scans.length;
 
-    RawDataFile newRDFW = null;
-    int timepassed = 0;
-    int mzpassed = 0;
     try {
-      newRDFW = MZmineCore.createNewFile(dataFile.getName() + ' ' + suffix, null, storage);
-
-      DataPoint mzValues[][] = null; // [relative scan][j value]
-      int i, j, si, sj, ii, k, ssi, ssj;
-      for (i = 0; i < totalScans; i++) {
-
-        if (isCanceled())
-          return;
-
-        // Smoothing in TIME space
-        Scan scan = scanNumbers.get(i);
-        if (scan != null) {
-          double rt = scan.getRetentionTime();
-          DataPoint[] newDP = null;
-          sj = si = i;
-          ssi = ssj = i;
-          if (timeSpan > 0 || scanSpan > 0) {
-            double timeMZtol = Math.max(mzTol, 1e-5);
-            for (si = i; si > 1; si--) {
-              Scan scanS = scanNumbers.get(si - 1);
-              if (scanS == null || scanS.getRetentionTime() < rt - timeSpan / 2) {
-                break;
-              }
-            }
-            for (sj = i; sj < totalScans - 1; sj++) {
-              Scan scanS = scanNumbers.get(sj + 1);
-              if (scanS == null || scanS.getRetentionTime() >= rt + timeSpan / 2) {
-                break;
-              }
-            }
-            ssi = i - (scanSpan - 1) / 2;
-            ssj = i + (scanSpan - 1) / 2;
-            if (ssi < 0) {
-              ssj += -ssi;
-              ssi = 0;
-            }
-            if (ssj >= totalScans) {
-              ssi -= (ssj - totalScans + 1);
-              ssj = totalScans - 1;
-            }
-            if (sj - si + 1 < scanSpan) {
-              si = ssi;
-              sj = ssj;
-              // si = Math.min(si, ssi);
-              // sj = Math.max(sj, ssj);
-            }
-            if (sj > si) {
-              timepassed++;
-              // Allocate
-              if (mzValues == null || mzValues.length < sj - si + 1)
-                mzValues = new DataPoint[sj - si + 1][];
-              // Load Data Points
-              for (j = si; j <= sj; j++) {
-                Scan xscan = scanNumbers.get(j);
-                mzValues[j - si] = ScanUtils.extractDataPoints(xscan);
-              }
-              // Estimate Averages
-              ii = i - si;
-              newDP = new DataPoint[mzValues[ii].length];
-              for (k = 0; k < mzValues[ii].length; k++) {
-                DataPoint dp = mzValues[ii][k];
-                double mz = dp.getMZ();
-                double intensidad = 0;
-                if (dp.getIntensity() > 0) { // only process
-                  // those > 0
-                  double a = 0;
-                  short c = 0;
-                  int f = 0;
-                  for (j = 0; j < mzValues.length; j++) {
-                    // System.out.println(j);
-                    if (mzValues[j].length > k
-                        && Math.abs(mzValues[j][k].getMZ() - mz) < timeMZtol) {
-                      f = k;
-                    } else {
-                      f = findFirstMass(mz, mzValues[j]);
-                      if (Math.abs(mzValues[j][f].getMZ() - mz) > timeMZtol) {
-                        f = -f;
-                      }
-                    }
-                    if (f >= 0 && mzValues[j][f].getIntensity() >= minimumHeight) {
-                      a += mzValues[j][f].getIntensity();
-                      c++;
-                    } else {
-                      c = (short) (c + 0);
-                    }
-                  }
-                  intensidad = c > 0 ? a / c : 0;
-                }
-                newDP[k] = new SimpleDataPoint(mz, intensidad);
-              }
-            }
-          } else if (scan != null) {
-            newDP = ScanUtils.extractDataPoints(scan);
-          }
-
-          // Smoothing in MZ space
-
-          if ((mzTol > 0 || mzPoints > 0)) {
-            mzpassed++;
-            DataPoint[] updatedDP = new DataPoint[newDP.length];
-            for (k = 0; k < newDP.length; k++) {
-              double mz = newDP[k].getMZ();
-              double intensidad = 0;
-              if (newDP[k].getIntensity() > 0) {
-                for (si = k; si > 0
-                    && (newDP[si].getMZ() + mzTol >= mz || k - si <= mzPoints); si--);
-                for (sj = k; sj < newDP.length - 1
-                    && (newDP[sj].getMZ() - mzTol <= mz || sj - k <= mzPoints); sj++);
-                double sum = 0;
-                for (j = si; j <= sj; j++) {
-                  sum += newDP[j].getIntensity();
-                }
-                intensidad = sum / (sj - si + 1);
-              }
-              updatedDP[k] = new SimpleDataPoint(mz, intensidad);
-            }
-            newDP = updatedDP;
-          }
-
-          // Register new smoothing data
-          if (scan != null && newDP != null) {
-            double[][] dp = DataPointUtils.getDataPointsAsDoubleArray(newDP);
-            final SimpleScan newScan = new SimpleScan(newRDFW, scan, dp[0], dp[1]);
-            newRDFW.addScan(newScan);
-          }
+      RawDataFile newRDFW = MZmineCore
+          .createNewFile(dataFile.getName() + ' ' + suffix, null, storage);
+
+      // windows of smoothing in TIME space
+      final int[] windowStart = new int[totalScans];
+      final int[] windowEnd = new int[totalScans];
+      int timepassed = 0;
+      for (int i = 0; i < totalScans; i++) {
+        setTimeWindow(i, windowStart, windowEnd);
+        if (windowEnd[i] > windowStart[i]) {
+          timepassed++;
         }
-        processedScans++;
       }
+      final int mzpassed = (mzTol > 0 || mzPoints > 0) ? totalScans : 0;
+      final double timeMZtol = Math.max(mzTol, 1e-5);
+
+      final boolean finished = ParallelScanFilter.filterScans(newRDFW, scans, windowStart,
+          windowEnd, (i, buffer) -> {
+            final int n = buffer.getNumberOfDataPoints(i);
+            double[] intensities = windowEnd[i] > windowStart[i] ? smoothTime(i, windowStart[i],
+                windowEnd[i], buffer, timeMZtol, minimumHeight)
+                : Arrays.copyOf(buffer.getIntensityValues(i), n);
+            if (mzpassed > 0) {
+              intensities = smoothMz(buffer.getMzValues(i), intensities, n, mzTol, mzPoints);
+            }
+            return intensities;
+          }, this::isCanceled, processedScans);
 
-      if (!isCanceled()) {
+      if (finished && !isCanceled()) {
         newRDF = newRDFW;
         for (FeatureListAppliedMethod appliedMethod : dataFile.getAppliedMethods()) {
           newRDF.getAppliedMethods().add(appliedMethod);
@@ -285,19 +179,132 @@ public class ScanSmoothingTask extends AbstractTask {
 
     } catch (IOException e) {
       e.printStackTrace();
+      setErrorMessage("Could not create new raw data file: " + e.getMessage());
+      setStatus(TaskStatus.ERROR);
     }
 
   }
 
-  static int findFirstMass(double mass, DataPoint mzValues[]) {
+  /**
+   * Sets the window of scans that are averaged for scan i. All scans within the time span or, if
+   * this are fewer scans than the scan span, the scan span around scan i.
+   */
+  private void setTimeWindow(int i, int[] windowStart, int[] windowEnd) {
+    int si = i;
+    int sj = i;
+    if (timeSpan > 0 || scanSpan > 0) {
+      final double rt = scans[i].getRetentionTime();
+      for (si = i; si > 0; si--) {
+        if (scans[si - 1].getRetentionTime() < rt - timeSpan / 2) {
+          break;
+        }
+      }
+      for (sj = i; sj < totalScans - 1; sj++) {
+        if (scans[sj + 1].getRetentionTime() >= rt + timeSpan / 2) {
+          break;
+        }
+      }
+      int ssi = i - (scanSpan - 1) / 2;
+      int ssj = i + (scanSpan - 1) / 2;
+      if (ssi < 0) {
+        ssj += -ssi;
+        ssi = 0;
+      }
+      if (ssj >= totalScans) {
+        ssi = Math.max(0, ssi - (ssj - totalScans + 1));
+        ssj = totalScans - 1;
+      }
+      if (sj - si + 1 < scanSpan) {
+        si = ssi;
+        sj = ssj;
+      }
+    }
+    windowStart[i] = si;
+    windowEnd[i] = sj;
+  }
+
+  /**
+   * Averages the intensity of each data point of scan i over all scans in the window that have a
+   * data point within the m/z tolerance and above the minimum height.
+   */
+  static double[] smoothTime(int i, int windowStart, int windowEnd, ScanRingBuffer buffer,
+      double mzTol, double minimumHeight) {
+    final int n = buffer.getNumberOfDataPoints(i);
+    final double[] mzs = buffer.getMzValues(i);
+    final double[] intensities = buffer.getIntensityValues(i);
+    final double[] smoothed = new double[n];
+    for (int k = 0; k < n; k++) {
+      // only process those > 0
+      if (intensities[k] <= 0) {
+        continue;
+      }
+      final double mz = mzs[k];
+      double sum = 0;
+      int count = 0;
+      for (int j = windowStart; j <= windowEnd; j++) {
+        final int nj = buffer.getNumberOfDataPoints(j);
+        if (nj == 0) {
+          continue;
+        }
+        final double[] mzsJ = buffer.getMzValues(j);
+        int f;
+        if (nj > k && Math.abs(mzsJ[k] - mz) < mzTol) {
+          f = k;
+        } else {
+          f = findFirstMass(mz, mzsJ, nj);
+          if (Math.abs(mzsJ[f] - mz) > mzTol) {
+            continue;
+          }
+        }
+        final double intensity = buffer.getIntensityValues(j)[f];
+        if (intensity >= minimumHeight) {
+          sum += intensity;
+          count++;
+        }
+      }
+      smoothed[k] = count > 0 ? sum / count : 0;
+    }
+    return smoothed;
+  }
+
+  /**
+   * Smoothing in MZ space: averages the intensity of each data point over all neighbours within
+   * the m/z tolerance or the minimum number of points.
+   */
+  static double[] smoothMz(double[] mzs, double[] intensities, int n, double mzTol,
+      int mzPoints) {
+    final double[] prefixSums = new double[n + 1];
+    for (int k = 0; k < n; k++) {
+      prefixSums[k + 1] = prefixSums[k] + intensities[k];
+    }
+    final double[] smoothed = new double[n];
+    for (int k = 0; k < n; k++) {
+      if (intensities[k] <= 0) {
+        continue;
+      }
+      final double mz = mzs[k];
+      int si = k;
+      while (si > 0 && (mzs[si] + mzTol >= mz || k - si <= mzPoints)) {
+        si--;
+      }
+      int sj = k;
+      while (sj < n - 1 && (mzs[sj] - mzTol <= mz || sj - k <= mzPoints)) {
+        sj++;
+      }
+      smoothed[k] = (prefixSums[sj + 1] - prefixSums[si]) / (sj - si + 1);
+    }
+    return smoothed;
+  }
+
+  static int findFirstMass(double mass, double[] mzs, int numValues) {
     int l = 0;
-    int r = mzValues.length - 1;
+    int r = numValues - 1;
     int mid = 0;
     while (l < r) {
       mid = (r + l) / 2;
-      if (mzValues[mid].getMZ() > mass) {
+      if (mzs[mid] > mass) {
         r = mid - 1;
-      } else if (mzValues[mid].getMZ() < mass) {
+      } else if (mzs[mid] < mass) {
         l = mid + 1;
       } else {
         r = mid;
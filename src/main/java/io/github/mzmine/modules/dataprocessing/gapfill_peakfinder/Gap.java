@@ -23,6 +23,7 @@ import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.FeatureStatus;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.MzBinnedXicIndex;
 import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
 import io.github.mzmine.datamodel.featuredata.impl.SimpleIonTimeSeries;
 import io.github.mzmine.datamodel.features.Feature;
@@ -34,6 +35,7 @@ import io.github.mzmine.util.RangeUtils;
 import io.github.mzmine.util.scans.ScanUtils;
 import java.util.ArrayList;
 import java.util.List;
+import org.jetbrains.annotations.NotNull;
 
 public class Gap {
 
@@ -84,7 +86,35 @@ public class Gap {
     } else {
       currentDataPoint = new GapDataPointImpl(scan, RangeUtils.rangeCenter(mzRange), scanRT, 0);
     }
+    offerNextDataPoint(currentDataPoint);
+  }
+
+  /**
+   * Offers the base peaks of all indexed scans within the rt range. Same as offering all scans to
+   * {@link #offerNextScan(Scan)}, but only the data points within the m/z range are read.
+   *
+   * @param index the m/z index of the scans (mass lists).
+   */
+  public void offerScans(@NotNull MzBinnedXicIndex index) {
+    final int[] scanRange = index.getScanIndexRange(rtRange);
+    final int numScans = scanRange[1] - scanRange[0];
+    final double[] mzs = new double[numScans];
+    final double[] intensities = new double[numScans];
+    index.getBasePeaks(mzRange, scanRange[0], scanRange[1], mzs, intensities);
+
+    final double mzCenter = RangeUtils.rangeCenter(mzRange);
+    for (int i = 0; i < numScans; i++) {
+      final Scan scan = index.getScans().get(scanRange[0] + i);
+      final float scanRT = scan.getRetentionTime();
+      if (intensities[i] > 0) {
+        offerNextDataPoint(new GapDataPointImpl(scan, mzs[i], scanRT, intensities[i]));
+      } else {
+        offerNextDataPoint(new GapDataPointImpl(scan, mzCenter, scanRT, 0));
+      }
+    }
+  }
 
+  protected void offerNextDataPoint(GapDataPoint currentDataPoint) {
     // If we have not yet started, just create a new peak
     if (currentPeakDataPoints == null) {
       currentPeakDataPoints = new ArrayList<>();
@@ -28,6 +28,7 @@ import io.github.mzmine.datamodel.data_access.EfficientDataAccess;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.MobilityScanDataType;
 import io.github.mzmine.datamodel.data_access.EfficientDataAccess.ScanDataType;
 import io.github.mzmine.datamodel.data_access.MobilityScanDataAccess;
+import io.github.mzmine.datamodel.data_access.MzBinnedXicIndex;
 import io.github.mzmine.datamodel.data_access.ScanDataAccess;
 import io.github.mzmine.datamodel.features.Feature;
 import io.github.mzmine.datamodel.features.FeatureListRow;
@@ -221,7 +222,20 @@ class MultiThreadPeakFinderTask extends AbstractTask {
 
     } else {
       // no IMS dimension
+      // the m/z index of the file is created once, gaps only read the data points in their range
+      final MzBinnedXicIndex index = file.getXicIndex(peakList.getSeletedScans(file));
+      if (index != null) {
+        for (Gap gap : gaps) {
+          if (isCanceled()) {
+            return;
+          }
+          gap.offerScans(index);
+        }
+        processedScans.addAndGet(index.getNumberOfScans());
+        return;
+      }
 
+      // too many data points for an index
       final ScanDataAccess scanAccess = EfficientDataAccess.of(file, ScanDataType.CENTROID,
           peakList.getSeletedScans(file));
       while (scanAccess.hasNextScan()) {
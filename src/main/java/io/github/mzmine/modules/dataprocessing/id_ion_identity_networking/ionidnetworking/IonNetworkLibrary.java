@@ -54,6 +54,8 @@ public class IonNetworkLibrary {
   private final IonModification[] selectedAdducts;
   private final IonModification[] selectedMods;
   private List<IonType> allAdducts = new ArrayList<>();
+  // [i][k] true if allAdducts i and k may describe two ions of the same molecule
+  private boolean[][] compatibleAdducts = new boolean[0][0];
   private final boolean isPositive;
   private final int maxCharge;
   private final int maxMolecules;
@@ -121,12 +123,44 @@ public class IonNetworkLibrary {
     }
 
     addModification();
+    createCompatibleAdducts();
     // print them out
     for (IonType a : allAdducts) {
       LOG.finest("Adding modification: " + a.toString());
     }
   }
 
+  /**
+   * Checks all pairs of adducts once, independent of the rows that are compared later
+   */
+  private void createCompatibleAdducts() {
+    final int size = allAdducts.size();
+    compatibleAdducts = new boolean[size][size];
+    for (int i = 0; i < size; i++) {
+      final IonType adduct = allAdducts.get(i);
+      for (int k = 0; k < size; k++) {
+        final IonType adduct2 = allAdducts.get(k);
+        // do not check if MOL = MOL and MOL>1
+        // only one can be modified
+        compatibleAdducts[i][k] = !adduct.equals(adduct2) //
+                                  && checkMolCount(adduct, adduct2) //
+                                  && checkMaxMod(adduct, adduct2) //
+                                  && checkMultiChargeDifference(adduct, adduct2) //
+                                  && checkSameAdducts(adduct, adduct2);
+      }
+    }
+  }
+
+  /**
+   * @param i index in {@link #getAllAdducts()}
+   * @param k index in {@link #getAllAdducts()}
+   * @return true if a row of adduct i and another row of adduct k could originate from the same
+   * neutral molecule. Charge states of the rows are not checked
+   */
+  public boolean isCompatible(int i, int k) {
+    return compatibleAdducts[i][k];
+  }
+
   /**
    * Does find all possible adduct combinations
    */
@@ -151,39 +185,15 @@ public class IonNetworkLibrary {
     z2 = Math.abs(z2);
     List<IonIdentity[]> list = new ArrayList<>();
     // check all combinations of adducts
-    for (IonType adduct : allAdducts) {
-      for (IonType adduct2 : allAdducts) {
-        if (adduct.equals(adduct2)) {
-          continue;
-        }
-
-        // do not check if MOL = MOL and MOL>1
-        // only one can be modified
+    for (int i = 0; i < allAdducts.size(); i++) {
+      for (int k = 0; k < allAdducts.size(); k++) {
+        IonType adduct = allAdducts.get(i);
+        IonType adduct2 = allAdducts.get(k);
         // check charge state if absCharge is not -1 or 0 (no charge detected)
-        if (checkMolCount(adduct, adduct2) //
-            && checkMaxMod(adduct, adduct2) //
-            && checkChargeStates(adduct, adduct2, z1, z2) //
-            && checkMultiChargeDifference(adduct, adduct2) //
-            && checkSameAdducts(adduct, adduct2)) {
+        if (compatibleAdducts[i][k] && checkChargeStates(adduct, adduct2, z1, z2)) {
           // checks each raw file - only true if all m/z are in range
           if (checkAdduct(featureList, row1, row2, adduct, adduct2, mode, minHeight)) {
-            // is a2 a modification of a1? (same adducts - different mods
-            if (adduct2.isModificationOf(adduct)) {
-              IonType mod = adduct2.subtractMods(adduct);
-              IonType undefined =
-                  new IonType(IonModification.getUndefinedforCharge(adduct.getCharge()));
-              list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, undefined, row1, mod));
-            } else if (adduct.isModificationOf(adduct2)) {
-              IonType mod = adduct.subtractMods(adduct2);
-              IonType undefined =
-                  new IonType(IonModification.getUndefinedforCharge(adduct2.getCharge()));
-              list.add(IonIdentity.addAdductIdentityToRow(mzTolerance, row1, mod, row2, undefined));
-            } else {
-              // Add adduct identity and notify GUI.
-              // only if not already present
-              list.add(
-                  IonIdentity.addAdductIdentityToRow(mzTolerance, row1, adduct, row2, adduct2));
-            }
+            list.add(addAdductIdentity(row1, row2, adduct, adduct2));
           }
         }
       }
@@ -192,6 +202,29 @@ public class IonNetworkLibrary {
     return list;
   }
 
+  /**
+   * Adds the identities of a matching adduct pair to both rows
+   *
+   * @return the identities of row1 and row2
+   */
+  IonIdentity[] addAdductIdentity(final FeatureListRow row1, final FeatureListRow row2,
+      final IonType adduct, final IonType adduct2) {
+    // is a2 a modification of a1? (same adducts - different mods
+    if (adduct2.isModificationOf(adduct)) {
+      IonType mod = adduct2.subtractMods(adduct);
+      IonType undefined = new IonType(IonModification.getUndefinedforCharge(adduct.getCharge()));
+      return IonIdentity.addAdductIdentityToRow(mzTolerance, row1, undefined, row1, mod);
+    } else if (adduct.isModificationOf(adduct2)) {
+      IonType mod = adduct.subtractMods(adduct2);
+      IonType undefined = new IonType(IonModification.getUndefinedforCharge(adduct2.getCharge()));
+      return IonIdentity.addAdductIdentityToRow(mzTolerance, row1, mod, row2, undefined);
+    } else {
+      // Add adduct identity and notify GUI.
+      // only if not already present
+      return IonIdentity.addAdductIdentityToRow(mzTolerance, row1, adduct, row2, adduct2);
+    }
+  }
+
 
   /**
    * Searches for an IonType for row that matches in network
@@ -301,7 +334,7 @@ public class IonNetworkLibrary {
    * @param minHeight exclude smaller peaks as they can have a higher mz difference
    * @return false if one peak pair with height>=minHeight is outside of mzTolerance
    */
-  private boolean checkAdduct(final FeatureList featureList, final FeatureListRow row1,
+  boolean checkAdduct(final FeatureList featureList, final FeatureListRow row1,
       final FeatureListRow row2, final IonType adduct, final IonType adduct2, final CheckMode mode,
       double minHeight) {
     // averarge mz
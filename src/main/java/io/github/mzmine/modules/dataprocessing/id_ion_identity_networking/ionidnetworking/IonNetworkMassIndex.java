@@ -0,0 +1,237 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.RowGroup;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
+import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkLibrary.CheckMode;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Hashed neutral mass index of all (row, ion type) combinations of a row group. Every entry holds
+ * the neutral mass range that results from the m/z values of a row, if the row was the given ion
+ * type. The entries are hashed into buckets that are at least as wide as the largest mass
+ * tolerance, so two entries can only describe the same neutral molecule if they are in the same or
+ * in neighbouring buckets. This replaces the comparison of all row pairs against all ion type
+ * pairs by a few bucket lookups per entry.
+ * <p></p>
+ * The index only finds candidates. Each candidate still has to be checked with {@link
+ * IonNetworkLibrary#checkAdduct(FeatureList, FeatureListRow, FeatureListRow, IonType, IonType,
+ * CheckMode, double)}.
+ */
+public class IonNetworkMassIndex {
+
+  private final int[] rows;
+  private final int[] ions;
+  private final double[] minMasses;
+  private final double[] maxMasses;
+  private final MZTolerance mzTolerance;
+  private final double bucketWidth;
+  private final double maxMassSpan;
+  private final Long2ObjectOpenHashMap<IntArrayList> buckets;
+
+  /**
+   * @param rows        row index of each entry
+   * @param ions        ion type index of each entry
+   * @param minMasses   lowest neutral mass of each entry
+   * @param maxMasses   highest neutral mass of each entry
+   * @param mzTolerance the tolerance for two neutral masses to match
+   */
+  public IonNetworkMassIndex(@NotNull int[] rows, @NotNull int[] ions, @NotNull double[] minMasses,
+      @NotNull double[] maxMasses, @NotNull MZTolerance mzTolerance) {
+    this.rows = rows;
+    this.ions = ions;
+    this.minMasses = minMasses;
+    this.maxMasses = maxMasses;
+    this.mzTolerance = mzTolerance;
+
+    double maxTolerance = 0;
+    double maxSpan = 0;
+    for (int i = 0; i < rows.length; i++) {
+      maxTolerance = Math.max(maxTolerance, getTolerance(i));
+      maxSpan = Math.max(maxSpan, maxMasses[i] - minMasses[i]);
+    }
+    // a zero tolerance would result in infinite bucket indices
+    bucketWidth = Math.max(maxTolerance, 1E-6);
+    maxMassSpan = maxSpan;
+
+    // entries are only put into the bucket of their lowest mass. Lookups compensate for the
+    // mass span of the entries
+    buckets = new Long2ObjectOpenHashMap<>();
+    for (int i = 0; i < rows.length; i++) {
+      buckets.computeIfAbsent(toBucket(minMasses[i]), key -> new IntArrayList()).add(i);
+    }
+  }
+
+  /**
+   * Creates the index of a row group. Only ion types that fit to the charge state of a row are
+   * added.
+   *
+   * @param mode      {@link CheckMode#AVGERAGE} uses the average m/z of each row, all other modes
+   *                  use the m/z range of all features with a height of at least minHeight
+   * @param minHeight minimum feature height (not used for {@link CheckMode#AVGERAGE})
+   */
+  public static IonNetworkMassIndex create(@NotNull IonNetworkLibrary library,
+      @NotNull FeatureList featureList, @NotNull RowGroup group, @NotNull CheckMode mode,
+      double minHeight) {
+    final List<IonType> allIons = library.getAllAdducts();
+    final int capacity = group.size() * allIons.size();
+    int[] rows = new int[capacity];
+    int[] ions = new int[capacity];
+    double[] minMasses = new double[capacity];
+    double[] maxMasses = new double[capacity];
+    int size = 0;
+
+    for (int r = 0; r < group.size(); r++) {
+      final FeatureListRow row = group.get(r);
+      double minMz;
+      double maxMz;
+      if (mode.equals(CheckMode.AVGERAGE)) {
+        minMz = row.getAverageMZ();
+        maxMz = minMz;
+      } else {
+        minMz = Double.POSITIVE_INFINITY;
+        maxMz = Double.NEGATIVE_INFINITY;
+        for (RawDataFile raw : featureList.getRawDataFiles()) {
+          final Feature f = row.getFeature(raw);
+          if (f != null && f.getHeight() >= minHeight) {
+            minMz = Math.min(minMz, f.getMZ());
+            maxMz = Math.max(maxMz, f.getMZ());
+          }
+        }
+        if (minMz > maxMz) {
+          // rows without a feature above the minimum height cannot be matched
+          continue;
+        }
+      }
+
+      final Integer rowCharge = row.getRowCharge();
+      final int z = rowCharge == null ? 0 : Math.abs(rowCharge);
+      for (int t = 0; t < allIons.size(); t++) {
+        final IonType ion = allIons.get(t);
+        if (z == 0 || ion.getAbsCharge() == z) {
+          rows[size] = r;
+          ions[size] = t;
+          // the neutral mass increases with the m/z
+          minMasses[size] = ion.getMass(minMz);
+          maxMasses[size] = ion.getMass(maxMz);
+          size++;
+        }
+      }
+    }
+
+    return new IonNetworkMassIndex(Arrays.copyOf(rows, size), Arrays.copyOf(ions, size),
+        Arrays.copyOf(minMasses, size), Arrays.copyOf(maxMasses, size),
+        library.getMzTolerance());
+  }
+
+  /**
+   * Finds all pairs of entries with a lower row index for the first entry and overlapping neutral
+   * mass ranges (plus the mass tolerance).
+   *
+   * @param filter only candidates accepted by this filter are returned
+   * @return the candidates sorted by row index 1, row index 2, ion index 1, and ion index 2
+   */
+  @NotNull
+  public List<Candidate> findCandidates(@NotNull CandidateFilter filter) {
+    List<Candidate> candidates = new ArrayList<>();
+    for (int a = 0; a < rows.length; a++) {
+      final double tolerance = getTolerance(a);
+      final double lower = minMasses[a] - tolerance;
+      final double upper = maxMasses[a] + tolerance;
+      // entries are hashed by their lowest mass
+      final long firstBucket = toBucket(lower - maxMassSpan);
+      final long lastBucket = toBucket(upper);
+      for (long bucket = firstBucket; bucket <= lastBucket; bucket++) {
+        final IntArrayList entries = buckets.get(bucket);
+        if (entries == null) {
+          continue;
+        }
+        for (int i = 0; i < entries.size(); i++) {
+          final int b = entries.getInt(i);
+          if (rows[a] < rows[b] && minMasses[b] <= upper && maxMasses[b] >= lower
+              && filter.accept(rows[a], ions[a], rows[b], ions[b])) {
+            candidates.add(new Candidate(rows[a], ions[a], rows[b], ions[b]));
+          }
+        }
+      }
+    }
+    Collections.sort(candidates);
+    return candidates;
+  }
+
+  /**
+   * @return the number of (row, ion type) entries
+   */
+  public int size() {
+    return rows.length;
+  }
+
+  /**
+   * The tolerance is the largest at the highest mass of an entry
+   */
+  private double getTolerance(int entry) {
+    return Math.max(mzTolerance.getMzToleranceForMass(minMasses[entry]),
+        mzTolerance.getMzToleranceForMass(maxMasses[entry]));
+  }
+
+  private long toBucket(double mass) {
+    return (long) Math.floor(mass / bucketWidth);
+  }
+
+  @FunctionalInterface
+  public interface CandidateFilter {
+
+    boolean accept(int row1, int ion1, int row2, int ion2);
+  }
+
+  /**
+   * Row 1 as ion type 1 and row 2 as ion type 2 might originate from the same neutral molecule.
+   * Sorted in the same order as the nested loops over rows and ion types.
+   */
+  public record Candidate(int row1, int ion1, int row2, int ion2) implements
+      Comparable<Candidate> {
+
+    @Override
+    public int compareTo(@NotNull Candidate o) {
+      int c = Integer.compare(row1, o.row1);
+      if (c == 0) {
+        c = Integer.compare(row2, o.row2);
+      }
+      if (c == 0) {
+        c = Integer.compare(ion1, o.ion1);
+      }
+      if (c == 0) {
+        c = Integer.compare(ion2, o.ion2);
+      }
+      return c;
+    }
+  }
+}
@@ -20,13 +20,15 @@ package io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionid
 import com.google.common.util.concurrent.AtomicDouble;
 import io.github.msdk.MSDKRuntimeException;
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.RowGroup;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.datamodel.features.types.annotations.iin.IonIdentityListType;
-import io.github.mzmine.datamodel.identities.iontype.IonIdentity;
 import io.github.mzmine.datamodel.identities.iontype.IonNetworkLogic;
+import io.github.mzmine.datamodel.identities.iontype.IonType;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkLibrary.CheckMode;
+import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkMassIndex.Candidate;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.refinement.IonNetworkRefinementParameters;
 import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.refinement.IonNetworkRefinementTask;
 import io.github.mzmine.parameters.ParameterSet;
@@ -38,7 +40,7 @@ import io.github.mzmine.taskcontrol.TaskStatus;
 import java.time.Instant;
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -140,9 +142,9 @@ public class IonNetworkingTask extends AbstractTask {
       throw new MSDKRuntimeException(
           "Run grouping before: No groups found for peakList + " + featureList.getName());
     }
-    //
-    AtomicInteger compared = new AtomicInteger(0);
-    AtomicInteger annotPairs = new AtomicInteger(0);
+    // groups are annotated concurrently, rows are only part of one group
+    LongAdder compared = new LongAdder();
+    LongAdder annotPairs = new LongAdder();
     // for all groups
     groups.parallelStream().forEach(g -> {
       if (!this.isCanceled()) {
@@ -150,35 +152,58 @@ public class IonNetworkingTask extends AbstractTask {
         stageProgress.addAndGet(1d / groups.size());
       }
     });
-    LOG.info("Corr: A total of " + compared.get() + " row2row adduct comparisons with " + annotPairs
-        .get() + " annotation pairs");
+    LOG.info("Corr: A total of " + compared.sum() + " row2row adduct comparisons with " + annotPairs
+        .sum() + " annotation pairs");
 
     refineAndFinishNetworks();
   }
 
   /**
-   * Annotates all rows in a group
+   * Annotates all rows in a group. Only pairs of rows and adducts with matching neutral masses are
+   * looked up in the {@link IonNetworkMassIndex} and checked.
    *
    * @param g
    * @param compared
    * @param annotPairs
    */
-  private void annotateGroup(RowGroup g, AtomicInteger compared, AtomicInteger annotPairs) {
-    for (int i = 0; i < g.size() - 1; i++) {
-      // check against existing networks
-      for (int k = i + 1; k < g.size(); k++) {
-        // only if row i and k are correlated
-        if (g.isCorrelated(i, k)) {
-          compared.incrementAndGet();
-          // check for adducts in library
-          List<IonIdentity[]> id = library
-              .findAdducts(featureList, g.get(i), g.get(k), adductCheckMode, minHeight);
-          if (!id.isEmpty()) {
-            annotPairs.incrementAndGet();
-          }
+  private void annotateGroup(RowGroup g, LongAdder compared, LongAdder annotPairs) {
+    if (g.size() < 2) {
+      return;
+    }
+    IonNetworkMassIndex index = IonNetworkMassIndex
+        .create(library, featureList, g, adductCheckMode, minHeight);
+    // only if row i and k are correlated
+    List<Candidate> candidates = index.findCandidates(
+        (row1, ion1, row2, ion2) -> library.isCompatible(ion1, ion2) && g.isCorrelated(row1, row2));
+
+    List<IonType> adducts = library.getAllAdducts();
+    int lastRow1 = -1;
+    int lastRow2 = -1;
+    boolean annotated = false;
+    // candidates are sorted by rows first
+    for (Candidate c : candidates) {
+      if (c.row1() != lastRow1 || c.row2() != lastRow2) {
+        if (annotated) {
+          annotPairs.increment();
         }
+        lastRow1 = c.row1();
+        lastRow2 = c.row2();
+        annotated = false;
       }
-      // finished.incrementAndGet();
+      compared.increment();
+      FeatureListRow row1 = g.get(c.row1());
+      FeatureListRow row2 = g.get(c.row2());
+      IonType adduct = adducts.get(c.ion1());
+      IonType adduct2 = adducts.get(c.ion2());
+      // checks each raw file - only true if all m/z are in range
+      if (library.checkAdduct(featureList, row1, row2, adduct, adduct2, adductCheckMode,
+          minHeight)) {
+        library.addAdductIdentity(row1, row2, adduct, adduct2);
+        annotated = true;
+      }
+    }
+    if (annotated) {
+      annotPairs.increment();
     }
   }
 
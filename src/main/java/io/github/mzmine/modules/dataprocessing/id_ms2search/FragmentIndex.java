@@ -0,0 +1,140 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.dataprocessing.id_ms2search;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Inverted index from fragment m/z bins to the spectra that contain at least one fragment ion in
+ * the bin. Two fragment ions within the m/z tolerance are always in the same or in neighbouring
+ * bins, if the bin width is at least the absolute m/z tolerance. Therefore, only spectra that share
+ * a bin (or a neighbouring bin) with a query spectrum can have matching ions.
+ * <p></p>
+ * The index is stored in compressed sparse row format: {@link #bins} contains all occupied bins in
+ * ascending order and the spectra of bins[i] are spectrumIndices[offsets[i]] to
+ * spectrumIndices[offsets[i + 1] - 1].
+ */
+class FragmentIndex {
+
+  private final double binWidth;
+  private final int[] bins;
+  private final int[] offsets;
+  private final int[] spectrumIndices;
+
+  /**
+   * @param spectra  the m/z values of all spectra, sorted ascending. Null for rows without a
+   *                 spectrum.
+   * @param binWidth the bin width. Must not be smaller than the absolute m/z tolerance.
+   */
+  FragmentIndex(@NotNull final List<double[]> spectra, final double binWidth) {
+    this.binWidth = binWidth;
+
+    // (bin, spectrum) pairs encoded in a long, so sorting them groups the spectra by bin
+    int numEntries = 0;
+    long[] entries = new long[1024];
+    for (int s = 0; s < spectra.size(); s++) {
+      final double[] mzs = spectra.get(s);
+      if (mzs == null) {
+        continue;
+      }
+      int lastBin = -1;
+      for (final double mz : mzs) {
+        final int bin = toBin(mz);
+        if (bin == lastBin) {
+          continue;
+        }
+        lastBin = bin;
+        if (numEntries == entries.length) {
+          entries = Arrays.copyOf(entries, entries.length * 2);
+        }
+        entries[numEntries++] = ((long) bin << 32) | s;
+      }
+    }
+    Arrays.sort(entries, 0, numEntries);
+
+    final IntArrayList binList = new IntArrayList();
+    final IntArrayList offsetList = new IntArrayList();
+    spectrumIndices = new int[numEntries];
+    for (int i = 0; i < numEntries; i++) {
+      final int bin = (int) (entries[i] >>> 32);
+      if (binList.isEmpty() || binList.getInt(binList.size() - 1) != bin) {
+        binList.add(bin);
+        offsetList.add(i);
+      }
+      spectrumIndices[i] = (int) entries[i];
+    }
+    offsetList.add(numEntries);
+    bins = binList.toIntArray();
+    offsets = offsetList.toIntArray();
+  }
+
+  /**
+   * @param maxMz   the maximum fragment m/z.
+   * @param ppm     the relative m/z tolerance.
+   * @return a bin width that is at least the absolute m/z tolerance at the maximum m/z.
+   */
+  static double getBinWidth(final double maxMz, final double ppm) {
+    // keep the number of bins within the int range
+    return Math.max(maxMz * ppm * 1E-6, maxMz / (Integer.MAX_VALUE / 4d));
+  }
+
+  /**
+   * @param mzs the m/z values of the query spectrum.
+   * @return the indices of all spectra that share a bin or a neighbouring bin with any of the
+   * given m/z values. Sorted ascending without duplicates.
+   */
+  @NotNull
+  int[] getCandidates(@Nullable final double[] mzs) {
+    if (mzs == null || bins.length == 0) {
+      return new int[0];
+    }
+    final IntArrayList candidates = new IntArrayList();
+    int lastBin = Integer.MIN_VALUE;
+    for (final double mz : mzs) {
+      final int bin = toBin(mz);
+      // bins are ascending, so only bins that were not visited for the last ion are added
+      for (int b = Math.max(bin - 1, lastBin + 2); b <= bin + 1; b++) {
+        final int binIndex = Arrays.binarySearch(bins, b);
+        if (binIndex >= 0) {
+          candidates.addElements(candidates.size(), spectrumIndices, offsets[binIndex],
+              offsets[binIndex + 1] - offsets[binIndex]);
+        }
+      }
+      lastBin = bin;
+    }
+
+    final int[] result = candidates.toIntArray();
+    Arrays.sort(result);
+    int size = 0;
+    for (int i = 0; i < result.length; i++) {
+      if (size == 0 || result[size - 1] != result[i]) {
+        result[size++] = result[i];
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  private int toBin(final double mz) {
+    return (int) (mz / binWidth);
+  }
+}
@@ -22,6 +22,7 @@ import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.impl.SimpleParameterSet;
 import io.github.mzmine.parameters.parametertypes.DoubleParameter;
 import io.github.mzmine.parameters.parametertypes.IntegerParameter;
+import io.github.mzmine.parameters.parametertypes.OptionalParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsParameter;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZToleranceParameter;
 
@@ -46,9 +47,14 @@ public class Ms2SearchParameters extends SimpleParameterSet {
   public static final DoubleParameter scoreThreshold = new DoubleParameter(
       "Minimum spectral match score to report", "Minimum MS2 comparison score to report");
 
+  public static final OptionalParameter<IntegerParameter> maxMatchesPerRow =
+      new OptionalParameter<>(new IntegerParameter("Maximum matches per row",
+          "If checked, only the best scoring matches are reported for each row of feature list 1",
+          10, 1, null), false);
+
   public Ms2SearchParameters() {
     super(new Parameter[]{peakList1, peakList2, mzTolerance, intensityThreshold,
-        minimumIonsMatched, scoreThreshold});
+        minimumIonsMatched, scoreThreshold, maxMatchesPerRow});
   }
 
 }
@@ -26,23 +26,28 @@ import io.github.mzmine.datamodel.features.FeatureList;
 import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.datamodel.features.ModularFeatureList;
 import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 
 class Ms2SearchTask extends AbstractTask {
 
   private Logger logger = Logger.getLogger(this.getClass().getName());
 
-  private int finishedRows, totalRows;
+  private final AtomicInteger finishedRows = new AtomicInteger(0);
+  private int totalRows;
   private FeatureList peakList1;
   private FeatureList peakList2;
 
@@ -51,6 +56,8 @@ class Ms2SearchTask extends AbstractTask {
   private double scoreThreshold;
   private double intensityThreshold;
   private int minimumIonsMatched;
+  // maximum number of reported matches per row of feature list 1. 0 for all matches
+  private int maxMatchesPerRow;
 
   /**
    * @param parameters
@@ -69,6 +76,11 @@ class Ms2SearchTask extends AbstractTask {
     intensityThreshold = parameters.getParameter(Ms2SearchParameters.intensityThreshold).getValue();
 
     minimumIonsMatched = parameters.getParameter(Ms2SearchParameters.minimumIonsMatched).getValue();
+
+    maxMatchesPerRow =
+        parameters.getParameter(Ms2SearchParameters.maxMatchesPerRow).getValue() ? parameters
+            .getParameter(Ms2SearchParameters.maxMatchesPerRow).getEmbeddedParameter().getValue()
+            : 0;
   }
 
   /**
@@ -78,7 +90,7 @@ class Ms2SearchTask extends AbstractTask {
   public double getFinishedPercentage() {
     if (totalRows == 0)
       return 0;
-    return ((double) finishedRows) / totalRows;
+    return ((double) finishedRows.get()) / totalRows;
   }
 
   /**
@@ -100,38 +112,80 @@ class Ms2SearchTask extends AbstractTask {
     logger.info("Starting MS2 similarity search between " + peakList1 + " and " + peakList2
         + " with mz tolerance:" + mzTolerance.getPpmTolerance());
 
-    Ms2SearchResult searchResult;
     FeatureListRow rows1[] = peakList1.getRows().toArray(FeatureListRow[]::new);
     FeatureListRow rows2[] = peakList2.getRows().toArray(FeatureListRow[]::new);
 
-    int rows1Length = rows1.length;
-    int rows2Length = rows2.length;
-
-    totalRows = rows1Length;
-
-    for (int i = 0; i < rows1Length; i++) {
-      for (int j = 0; j < rows2Length; j++) {
-        Feature featureA = rows1[i].getBestFeature();
-        Feature featureB = rows2[j].getBestFeature();
-        // Complication. The "best" peak, may not have the "best"
-        // fragmentation
-        Scan scanA = rows1[i].getMostIntenseFragmentScan();
-        Scan scanB = rows2[j].getMostIntenseFragmentScan();
+    totalRows = rows1.length;
 
-        searchResult =
-            simpleMS2similarity(scanA, scanB, intensityThreshold, mzTolerance);
+    // Complication. The "best" peak, may not have the "best"
+    // fragmentation
+    final List<FragmentSpectrum> spectra1 = getFragmentSpectra(rows1);
+    final List<FragmentSpectrum> spectra2 = getFragmentSpectra(rows2);
+    if (spectra1 == null || spectra2 == null) {
+      return;
+    }
 
-        // Report the final score to the peaklist identity
-        if (searchResult != null && searchResult.getScore() > scoreThreshold
-            && searchResult.getNumIonsMatched() >= minimumIonsMatched)
-          this.addMS2Identity(rows1[i], featureA, featureB, searchResult);
+    // only row pairs sharing fragment bins can have matching ions. If the thresholds allow results
+    // without matching ions, all pairs have to be compared.
+    final boolean requiresMatchedIons = minimumIonsMatched > 0 || scoreThreshold >= 0;
+    final double mzRangePPM = mzTolerance.getPpmTolerance();
+    final double maxMz = Math.max(getMaxMz(spectra1), getMaxMz(spectra2));
+    final FragmentIndex index = new FragmentIndex(
+        spectra2.stream().map(s -> s != null ? s.mzs() : null).toList(),
+        FragmentIndex.getBinWidth(maxMz, mzRangePPM));
+    final int[] allRows2 = IntStream.range(0, rows2.length).toArray();
+
+    final List<List<Ms2SearchMatch>> matches = IntStream.range(0, rows1.length).parallel()
+        .mapToObj(i -> {
+          final FragmentSpectrum spectrumA = spectra1.get(i);
+          if (isCanceled() || spectrumA == null) {
+            finishedRows.incrementAndGet();
+            return List.<Ms2SearchMatch>of();
+          }
+
+          final int[] candidates =
+              requiresMatchedIons ? index.getCandidates(spectrumA.mzs()) : allRows2;
+          List<Ms2SearchMatch> rowMatches = new ArrayList<>();
+          for (int j : candidates) {
+            final FragmentSpectrum spectrumB = spectra2.get(j);
+            if (spectrumB == null) {
+              continue;
+            }
+            final Ms2SearchMatch match = simpleMS2similarity(j, spectrumA, spectrumB, mzRangePPM,
+                null);
+            // Report the final score to the peaklist identity
+            if (match.score() > scoreThreshold && match.numIonsMatched() >= minimumIonsMatched) {
+              rowMatches.add(match);
+            }
+          }
+
+          if (maxMatchesPerRow > 0 && rowMatches.size() > maxMatchesPerRow) {
+            // keep the best matches, but report them in the order of feature list 2
+            rowMatches.sort(Comparator.comparingDouble(Ms2SearchMatch::score).reversed()
+                .thenComparingInt(Ms2SearchMatch::rowIndex));
+            rowMatches = new ArrayList<>(rowMatches.subList(0, maxMatchesPerRow));
+            rowMatches.sort(Comparator.comparingInt(Ms2SearchMatch::rowIndex));
+          }
+
+          // Update progress bar
+          finishedRows.incrementAndGet();
+          return rowMatches;
+        }).toList();
+
+    if (isCanceled()) {
+      return;
+    }
 
-        if (isCanceled())
-          return;
+    // identities are added on this thread in the order of the feature lists
+    for (int i = 0; i < rows1.length; i++) {
+      for (Ms2SearchMatch match : matches.get(i)) {
+        final List<DataPoint> matchedIons = new ArrayList<>();
+        simpleMS2similarity(match.rowIndex(), spectra1.get(i), spectra2.get(match.rowIndex()),
+            mzRangePPM, matchedIons);
+        this.addMS2Identity(rows1[i], rows1[i].getBestFeature(),
+            rows2[match.rowIndex()].getBestFeature(),
+            new Ms2SearchResult(match.score(), "simple", matchedIons));
       }
-
-      // Update progress bar
-      finishedRows++;
     }
 
     // Add task description to peakList
@@ -145,93 +199,98 @@ class Ms2SearchTask extends AbstractTask {
 
   }
 
-  private Ms2SearchResult simpleMS2similarity(Scan scanMS2A, Scan scanMS2B,
-      double intensityThreshold, MZTolerance mzRange) {
-
-    double runningScoreTotal = 0.0;
-    double mzRangePPM = mzRange.getPpmTolerance();
-
-    List<DataPoint> matchedIons = new ArrayList<DataPoint>();
-
-    // Fetch 1st feature MS2 scan.
-    // int ms2ScanNumberA = featureA.getMostIntenseFragmentScanNumber();
-    // Scan scanMS2A = featureA.getDataFile().getScan(ms2ScanNumberA);
-
-    // Fetch 2nd feature MS2 scan.
-    // int ms2ScanNumberB = featureB.getMostIntenseFragmentScanNumber();
-    // Scan scanMS2B = featureB.getDataFile().getScan(ms2ScanNumberB);
-
-    if (scanMS2A == null || scanMS2B == null) {
-      return null;
-    }
+  /**
+   * Extracts the mass lists of the most intense fragment scans of all rows.
+   *
+   * @return the spectra in the order of the rows. Null elements for rows without a fragment scan or
+   * without data points. Null, if a fragment scan does not have a mass list.
+   */
+  @Nullable
+  private List<FragmentSpectrum> getFragmentSpectra(FeatureListRow[] rows) {
+    final List<FragmentSpectrum> spectra = new ArrayList<>(rows.length);
+    for (FeatureListRow row : rows) {
+      final Scan scan = row.getMostIntenseFragmentScan();
+      if (scan == null) {
+        spectra.add(null);
+        continue;
+      }
 
-    // Fetch centroided data
-    MassList massListA = scanMS2A.getMassList();
-    MassList massListB = scanMS2B.getMassList();
-
-    if (massListA == null) {
-      // Will this work properly? As this function isn't directly the
-      // task?
-      setStatus(TaskStatus.ERROR);
-      setErrorMessage("Scan " + scanMS2A.getDataFile().getName() + " #" + scanMS2A.getScanNumber()
-          + " does not have a mass list");
-      return null;
-    }
+      // Fetch centroided data
+      final MassList massList = scan.getMassList();
+      if (massList == null) {
+        setStatus(TaskStatus.ERROR);
+        setErrorMessage("Scan " + scan.getDataFile().getName() + " #" + scan.getScanNumber()
+            + " does not have a mass list");
+        return null;
+      }
 
-    if (massListB == null) {
-      // Will this work properly? As this function isn't directly the
-      // task?
-      setStatus(TaskStatus.ERROR);
-      setErrorMessage("Scan " + scanMS2B.getDataFile().getName() + " #" + scanMS2B.getScanNumber()
-          + " does not have a mass list");
-      return null;
+      final int numIons = massList.getNumberOfDataPoints();
+      if (numIons == 0) {
+        spectra.add(null);
+        continue;
+      }
+      spectra.add(new FragmentSpectrum(massList.getMzValues(new double[numIons]),
+          massList.getIntensityValues(new double[numIons])));
     }
+    return spectra;
+  }
 
-    DataPoint[] ionsA = null;
-    DataPoint[] ionsB = null;
-
-    ionsA = massListA.getDataPoints();
-    ionsB = massListB.getDataPoints();
-
-    if (ionsA == null || ionsB == null || ionsA.length == 0 || ionsB.length == 0) {
-      // Fall back to profile data?
-      // Profile / raw data.
-      // ionsA = scanMS2A.getDataPointsOverIntensity(intensityThreshold);
-      // ionsB = scanMS2B.getDataPointsOverIntensity(intensityThreshold);
-      return null;
+  private static double getMaxMz(List<FragmentSpectrum> spectra) {
+    double maxMz = 0d;
+    for (FragmentSpectrum spectrum : spectra) {
+      if (spectrum != null) {
+        maxMz = Math.max(maxMz, spectrum.mzs()[spectrum.mzs().length - 1]);
+      }
     }
+    return maxMz;
+  }
 
-    // Compare every ion peak in MS2 scan A, to every ion peak in MS2 scan
-    // B.
-    double ionsBMaxMZ = ionsB[ionsB.length - 1].getMZ();
-    for (int i = 0; i < ionsA.length; i++) {
+  /**
+   * Compares every ion in MS2 scan A to the ions in MS2 scan B within the m/z tolerance. Both mass
+   * lists are sorted by m/z, so the ions are matched in a single merge pass: The window of ions of B
+   * within the tolerance of the current ion of A only moves to higher m/z values.
+   *
+   * @param rowIndexB   the index of the row of spectrum B.
+   * @param matchedIons list to collect the matched ions of A or null.
+   * @return the score and the number of matched ions.
+   */
+  private static Ms2SearchMatch simpleMS2similarity(int rowIndexB, FragmentSpectrum spectrumA,
+      FragmentSpectrum spectrumB, double mzRangePPM, @Nullable List<DataPoint> matchedIons) {
 
-      double iMZ = ionsA[i].getMZ();
-      double mzRangeAbsolute = iMZ * 1e-6 * mzRangePPM;
+    final double[] mzsA = spectrumA.mzs();
+    final double[] mzsB = spectrumB.mzs();
+    final double[] intensitiesA = spectrumA.intensities();
+    final double[] intensitiesB = spectrumB.intensities();
 
-      if (iMZ - mzRangeAbsolute > ionsBMaxMZ)
-        break; // Potential speedup heuristic. If any i is greater than
-               // the max of j, no more
-               // matches are possible.
+    double runningScoreTotal = 0.0;
+    int numIonsMatched = 0;
 
-      for (int j = 0; j < ionsB.length; j++) {
+    // first ion of B that may be within the tolerance of the current ion of A
+    int windowStart = 0;
+    for (int i = 0; i < mzsA.length && windowStart < mzsB.length; i++) {
+      final double iMZ = mzsA[i];
+      final double mzRangeAbsolute = iMZ * 1e-6 * mzRangePPM;
 
-        double jMZ = ionsB[j].getMZ();
+      while (windowStart < mzsB.length && iMZ - mzsB[windowStart] >= mzRangeAbsolute) {
+        windowStart++;
+      }
 
-        if (iMZ < jMZ - mzRangeAbsolute)
-          break; // Potential speedup heuristic. iMZ smaller than jMZ.
-                 // Skip the rest of the j's as
-                 // they can only increase.
+      for (int j = windowStart; j < mzsB.length; j++) {
+        final double jMZ = mzsB[j];
+        if (iMZ < jMZ - mzRangeAbsolute) {
+          break;
+        }
 
         if (Math.abs(iMZ - jMZ) < mzRangeAbsolute) {
-          runningScoreTotal += ionsA[i].getIntensity() * ionsB[j].getIntensity();
-          matchedIons.add(ionsA[i]);
+          runningScoreTotal += intensitiesA[i] * intensitiesB[j];
+          numIonsMatched++;
+          if (matchedIons != null) {
+            matchedIons.add(new SimpleDataPoint(iMZ, intensitiesA[i]));
+          }
         }
-
       }
     }
-    Ms2SearchResult result = new Ms2SearchResult(runningScoreTotal, "simple", matchedIons);
-    return result;
+    return new Ms2SearchMatch(rowIndexB, runningScoreTotal, numIonsMatched);
   }
 
   /**
@@ -242,4 +301,18 @@ class Ms2SearchTask extends AbstractTask {
     Ms2Identity newIdentity = new Ms2Identity(featureA, featureB, searchResult);
     row1.addFeatureIdentity(newIdentity, false);
   }
+
+  /**
+   * The centroided fragment ions of a row, sorted by m/z.
+   */
+  private record FragmentSpectrum(double[] mzs, double[] intensities) {
+
+  }
+
+  /**
+   * Score of a row of feature list 1 against the row with the given index in feature list 2.
+   */
+  private record Ms2SearchMatch(int rowIndex, double score, int numIonsMatched) {
+
+  }
 }
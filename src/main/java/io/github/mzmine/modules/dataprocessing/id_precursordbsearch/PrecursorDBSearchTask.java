@@ -172,8 +172,9 @@ class PrecursorDBSearchTask extends AbstractTask {
                 if (this.isCanceled())
                   break;
 
-                if (checkRT(row, (Float) db.getField(DBEntryField.RT).orElse(null))
-                    && checkMZ(row, db.getPrecursorMZ())) {
+                // precursor m/z first, it does not parse indexed library entries
+                if (checkMZ(row, db.getPrecursorMZ())
+                    && checkRT(row, (Float) db.getField(DBEntryField.RT).orElse(null))) {
                   // add identity
                   row.addFeatureIdentity(
                       new PrecursorDBFeatureIdentity(db, PrecursorDBSearchModule.MODULE_NAME), false);
@@ -375,9 +375,9 @@ public class RowsSpectralMatchTask extends AbstractTask {
    */
   private SpectralSimilarity matchSpectrum(Float rowRT, double rowMZ, DataPoint[] rowMassList,
       SpectralDBEntry ident) {
-    // retention time
     // MS level 1 or check precursorMZ
-    if (checkRT(rowRT, ident) && (msLevel == 1 || checkPrecursorMZ(rowMZ, ident))) {
+    // retention time (after the precursor m/z, which does not parse indexed library entries)
+    if ((msLevel == 1 || checkPrecursorMZ(rowMZ, ident)) && checkRT(rowRT, ident)) {
       DataPoint[] library = ident.getDataPoints();
       if (removeIsotopes) {
         library = removeIsotopes(library);
@@ -33,6 +33,7 @@ import io.github.mzmine.modules.io.export_features_gnps.fbmn.FeatureListRowsFilt
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -108,6 +109,11 @@ public class CSVExportModularTask extends AbstractTask {
     return (double) processedRows / (double) totalRows;
   }
 
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
+  }
+
   @Override
   public String getTaskDescription() {
     return "Exporting feature list(s) " + Arrays.toString(featureLists)
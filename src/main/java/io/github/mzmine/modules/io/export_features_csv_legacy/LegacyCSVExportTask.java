@@ -31,6 +31,7 @@ import io.github.mzmine.modules.io.export_features_gnps.fbmn.FeatureListRowsFilt
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
 import io.github.mzmine.util.FeatureUtils;
 import io.github.mzmine.util.RangeUtils;
 import java.io.File;
@@ -122,6 +123,11 @@ public class LegacyCSVExportTask extends AbstractTask {
     return (double) processedRows / (double) totalRows;
   }
 
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
+  }
+
   @Override
   public String getTaskDescription() {
     return "Exporting feature list(s) " + Arrays.toString(featureLists)
@@ -44,6 +44,7 @@ import io.github.mzmine.modules.tools.msmsspectramerge.MsMsSpectraMergeParameter
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -245,6 +246,11 @@ public class GnpsFbmnExportTask extends AbstractTask {
 
   }
 
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
+  }
+
   public String getTaskDescription() {
     return "Exporting GNPS of feature list(s) " + Arrays.toString(featureLists) + " to MGF file(s)";
   }
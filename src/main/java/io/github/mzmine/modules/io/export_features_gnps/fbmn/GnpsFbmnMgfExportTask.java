@@ -42,7 +42,12 @@ import io.github.mzmine.modules.tools.msmsspectramerge.MsMsSpectraMergeParameter
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
+import io.github.mzmine.util.exceptions.MissingMassListException;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.OrderedParallelWriter;
+import io.github.mzmine.util.io.OrderedParallelWriter.ItemFormatter;
+import io.github.mzmine.util.io.OrderedParallelWriter.NumberAppender;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -179,14 +184,44 @@ public class GnpsFbmnMgfExportTask extends AbstractTask {
   }
 
   private int export(FeatureList featureList, FileWriter writer, File curFile) throws IOException {
-    final String newLine = System.lineSeparator();
-
     // count exported
     int count = 0;
-    for (FeatureListRow row : featureList.getRows()) {
+    try {
+      count = OrderedParallelWriter
+          .write(writer, featureList.getRows(), RowFormatter::new, this::isCanceled);
+    } catch (MissingMassListException e) {
+      setErrorMessage("MS2 scan has no mass list. Run Mass detection on all scans");
+      setStatus(TaskStatus.ERROR);
+      return count;
+    }
+
+    if (count == 0)
+      logger.log(Level.WARNING, "No MS/MS scans exported.");
+    else
+      logger.info(
+          MessageFormat.format("Total of {0} feature rows (MS/MS mass lists) were exported ({1})",
+              count, featureList.getName()));
+
+    return count;
+  }
+
+  /**
+   * Formats the most intense MS/MS spectrum of rows. One instance per thread.
+   */
+  private class RowFormatter implements ItemFormatter<FeatureListRow> {
+
+    private final String newLine = System.lineSeparator();
+    private final NumberAppender mzForm = new NumberAppender(GnpsFbmnMgfExportTask.this.mzForm);
+    private final NumberAppender intensityForm = new NumberAppender(
+        GnpsFbmnMgfExportTask.this.intensityForm);
+    private final NumberAppender rtsForm = new NumberAppender(
+        GnpsFbmnMgfExportTask.this.rtsForm);
+
+    @Override
+    public boolean format(FeatureListRow row, StringBuilder b) {
       // do not export if no MSMS
       if (!filter.filter(row)) {
-        continue;
+        return false;
       }
 
       String rowID = Integer.toString(row.getID());
@@ -195,77 +230,61 @@ public class GnpsFbmnMgfExportTask extends AbstractTask {
       // Get the MS/MS scan number
       Feature bestFeature = row.getBestFeature();
       if (bestFeature == null) {
-        continue;
+        return false;
       }
       Scan msmsScan = row.getMostIntenseFragmentScan();
-      if (msmsScan != null) {
-        // MS/MS scan must exist, because msmsScanNumber was > 0
-
-        MassList massList = msmsScan.getMassList();
-
-        if (massList == null) {
-          setErrorMessage("MS2 scan has no mass list. Run Mass detection on all scans");
-          setStatus(TaskStatus.ERROR);
-          return count;
-        }
-
-        writer.write("BEGIN IONS" + newLine);
-
-        if (rowID != null)
-          writer.write("FEATURE_ID=" + rowID + newLine);
-
-        String mass = mzForm.format(row.getAverageMZ());
-        if (mass != null)
-          writer.write("PEPMASS=" + mass + newLine);
+      if (msmsScan == null) {
+        return false;
+      }
+      // MS/MS scan must exist, because msmsScanNumber was > 0
+      MassList massList = msmsScan.getMassList();
 
-        if (rowID != null) {
-          writer.write("SCANS=" + rowID + newLine);
-          writer.write("RTINSECONDS=" + rtsForm.format(retTimeInSeconds) + newLine);
-        }
+      if (massList == null) {
+        throw new MissingMassListException(msmsScan);
+      }
 
-        int msmsCharge = Objects.requireNonNullElse(msmsScan.getPrecursorCharge(), 0);
-        String msmsPolarity = msmsScan.getPolarity().asSingleChar();
-        if (msmsPolarity.equals("0"))
-          msmsPolarity = "";
-        if (msmsCharge == 0) {
-          msmsCharge = 1;
-          msmsPolarity = "";
-        }
-        writer.write("CHARGE=" + msmsCharge + msmsPolarity + newLine);
-
-        writer.write("MSLEVEL=2" + newLine);
-
-        DataPoint[] dataPoints = massList.getDataPoints();
-        if (mergeParameters != null) {
-          MsMsSpectraMergeModule merger =
-              MZmineCore.getModuleInstance(MsMsSpectraMergeModule.class);
-          MergedSpectrum spectrum =
-              merger.getBestMergedSpectrum(mergeParameters, row);
-          if (spectrum != null) {
-            dataPoints = spectrum.data;
-            writer.write("MERGED_STATS=");
-            writer.write(spectrum.getMergeStatsDescription());
-            writer.write(newLine);
-          }
-        }
-        for (DataPoint feature : dataPoints) {
-          writer.write(mzForm.format(feature.getMZ()) + " " + intensityForm.format(feature.getIntensity())
-              + newLine);
+      b.append("BEGIN IONS").append(newLine);
+      b.append("FEATURE_ID=").append(rowID).append(newLine);
+      mzForm.append(b.append("PEPMASS="), row.getAverageMZ()).append(newLine);
+      b.append("SCANS=").append(rowID).append(newLine);
+      rtsForm.append(b.append("RTINSECONDS="), retTimeInSeconds).append(newLine);
+
+      int msmsCharge = Objects.requireNonNullElse(msmsScan.getPrecursorCharge(), 0);
+      String msmsPolarity = msmsScan.getPolarity().asSingleChar();
+      if (msmsPolarity.equals("0"))
+        msmsPolarity = "";
+      if (msmsCharge == 0) {
+        msmsCharge = 1;
+        msmsPolarity = "";
+      }
+      b.append("CHARGE=").append(msmsCharge).append(msmsPolarity).append(newLine);
+
+      b.append("MSLEVEL=2").append(newLine);
+
+      DataPoint[] dataPoints = massList.getDataPoints();
+      if (mergeParameters != null) {
+        MsMsSpectraMergeModule merger =
+            MZmineCore.getModuleInstance(MsMsSpectraMergeModule.class);
+        MergedSpectrum spectrum =
+            merger.getBestMergedSpectrum(mergeParameters, row);
+        if (spectrum != null) {
+          dataPoints = spectrum.data;
+          b.append("MERGED_STATS=").append(spectrum.getMergeStatsDescription()).append(newLine);
         }
-        writer.write("END IONS" + newLine);
-        writer.write(newLine);
-        count++;
       }
+      for (DataPoint feature : dataPoints) {
+        mzForm.append(b, feature.getMZ()).append(' ');
+        intensityForm.append(b, feature.getIntensity()).append(newLine);
+      }
+      b.append("END IONS").append(newLine);
+      b.append(newLine);
+      return true;
     }
+  }
 
-    if (count == 0)
-      logger.log(Level.WARNING, "No MS/MS scans exported.");
-    else
-      logger.info(
-          MessageFormat.format("Total of {0} feature rows (MS/MS mass lists) were exported ({1})",
-              count, featureList.getName()));
-
-    return count;
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
   }
 
   @Override
@@ -25,6 +25,10 @@ import io.github.mzmine.modules.io.export_features_mgf.AdapMgfExportParameters.M
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
+import io.github.mzmine.util.io.OrderedParallelWriter;
+import io.github.mzmine.util.io.OrderedParallelWriter.ItemFormatter;
+import io.github.mzmine.util.io.OrderedParallelWriter.NumberAppender;
 import io.github.mzmine.util.scans.ScanUtils;
 import io.github.mzmine.util.scans.ScanUtils.IntegerMode;
 import java.io.File;
@@ -34,6 +38,7 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.time.Instant;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 import org.jetbrains.annotations.NotNull;
@@ -60,7 +65,7 @@ public class AdapMgfExportTask extends AbstractTask {
   private final IntegerMode roundMode;
   private MzMode representativeMZ;
   private final int totalRows;
-  private int finishedRows = 0;
+  private final AtomicInteger finishedRows = new AtomicInteger(0);
 
   public AdapMgfExportTask(ParameterSet parameters, @NotNull Instant moduleCallDate) {
     this(parameters, parameters.getParameter(AdapMgfExportParameters.FEATURE_LISTS).getValue()
@@ -84,7 +89,12 @@ public class AdapMgfExportTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    return totalRows != 0 ? finishedRows / totalRows : 0;
+    return totalRows != 0 ? finishedRows.get() / totalRows : 0;
+  }
+
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
   }
 
   @Override
@@ -158,56 +168,71 @@ public class AdapMgfExportTask extends AbstractTask {
   }
 
   private void exportFeatureList(FeatureList featureList, FileWriter writer) throws IOException {
-    for (FeatureListRow row : featureList.getRows()) {
+    OrderedParallelWriter.write(writer, featureList.getRows(), RowFormatter::new, this::isCanceled);
+  }
+
+  /**
+   * Formats the isotope pattern of rows. One instance per thread.
+   */
+  private class RowFormatter implements ItemFormatter<FeatureListRow> {
+
+    private final NumberAppender mzForm = new NumberAppender(AdapMgfExportTask.this.mzForm);
+    private final NumberAppender mzNominalForm = new NumberAppender(
+        AdapMgfExportTask.this.mzNominalForm);
+    private final NumberAppender intensityForm = new NumberAppender(
+        AdapMgfExportTask.this.intensityForm);
+    private final NumberAppender rtsForm = new NumberAppender(AdapMgfExportTask.this.rtsForm);
+
+    @Override
+    public boolean format(FeatureListRow row, StringBuilder b) {
       IsotopePattern ip = row.getBestIsotopePattern();
       if (ip == null) {
-        continue;
+        return false;
       }
 
-      exportRow(writer, row, ip);
+      exportRow(b, row, ip);
 
-      finishedRows++;
+      finishedRows.incrementAndGet();
+      return true;
     }
-  }
 
-  private void exportRow(FileWriter writer, FeatureListRow row, IsotopePattern ip)
-      throws IOException {
-    // data points of this cluster
-    DataPoint dataPoints[] = ScanUtils.extractDataPoints(ip);
-    if (!fractionalMZ) {
-      dataPoints = ScanUtils.integerDataPoints(dataPoints, roundMode);
-    }
-    // get m/z and rt
-    double mz = getRepresentativeMZ(row, dataPoints);
-    String retTimeInSeconds = rtsForm.format(row.getAverageRT() * 60);
-    // write
-    writer.write("BEGIN IONS" + newLine);
-    writer.write("FEATURE_ID=" + row.getID() + newLine);
-    writer.write("PEPMASS=" + formatMZ(mz) + newLine);
-    writer.write("RTINSECONDS=" + retTimeInSeconds + newLine);
-    writer.write("SCANS=" + row.getID() + newLine);
-
-    // needs to be MSLEVEL=2 for GC-GNPS (even for GC-EI-MS data)
-    writer.write("MSLEVEL=2" + newLine);
-    writer.write("CHARGE=1+" + newLine);
-
-    for (DataPoint point : dataPoints) {
-      String line = formatMZ(point.getMZ()) + " " + intensityForm.format(point.getIntensity());
-      writer.write(line + newLine);
-    }
+    private void exportRow(StringBuilder b, FeatureListRow row, IsotopePattern ip) {
+      // data points of this cluster
+      DataPoint dataPoints[] = ScanUtils.extractDataPoints(ip);
+      if (!fractionalMZ) {
+        dataPoints = ScanUtils.integerDataPoints(dataPoints, roundMode);
+      }
+      // get m/z and rt
+      double mz = getRepresentativeMZ(row, dataPoints);
+      // write
+      b.append("BEGIN IONS").append(newLine);
+      b.append("FEATURE_ID=").append(row.getID()).append(newLine);
+      formatMZ(b.append("PEPMASS="), mz).append(newLine);
+      rtsForm.append(b.append("RTINSECONDS="), row.getAverageRT() * 60).append(newLine);
+      b.append("SCANS=").append(row.getID()).append(newLine);
+
+      // needs to be MSLEVEL=2 for GC-GNPS (even for GC-EI-MS data)
+      b.append("MSLEVEL=2").append(newLine);
+      b.append("CHARGE=1+").append(newLine);
+
+      for (DataPoint point : dataPoints) {
+        formatMZ(b, point.getMZ()).append(' ');
+        intensityForm.append(b, point.getIntensity()).append(newLine);
+      }
 
-    writer.write("END IONS" + newLine);
-    writer.write(newLine);
-  }
+      b.append("END IONS").append(newLine);
+      b.append(newLine);
+    }
 
-  /**
-   * Format as nominal or fractional
-   *
-   * @param mz
-   * @return
-   */
-  private String formatMZ(double mz) {
-    return fractionalMZ ? mzForm.format(mz) : mzNominalForm.format(mz);
+    /**
+     * Format as nominal or fractional
+     *
+     * @param mz
+     * @return
+     */
+    private StringBuilder formatMZ(StringBuilder b, double mz) {
+      return fractionalMZ ? mzForm.append(b, mz) : mzNominalForm.append(b, mz);
+    }
   }
 
   private double getRepresentativeMZ(FeatureListRow row, DataPoint[] data) {
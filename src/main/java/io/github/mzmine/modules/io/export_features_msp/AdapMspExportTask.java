@@ -25,6 +25,8 @@ import io.github.mzmine.datamodel.features.FeatureListRow;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
+import io.github.mzmine.util.io.OrderedParallelWriter;
 import io.github.mzmine.util.scans.ScanUtils;
 import io.github.mzmine.util.scans.ScanUtils.IntegerMode;
 import java.io.File;
@@ -82,6 +84,11 @@ public class AdapMspExportTask extends AbstractTask {
     return 0.0;
   }
 
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
+  }
+
   @Override
   public String getTaskDescription() {
     return "Exporting feature list(s) " + Arrays.toString(featureLists) + " to MSP file(s)";
@@ -159,63 +166,62 @@ public class AdapMspExportTask extends AbstractTask {
       throws IOException {
     final String newLine = System.lineSeparator();
 
-    for (FeatureListRow row : featureList.getRows()) {
-      IsotopePattern ip = row.getBestIsotopePattern();
-      if (ip == null)
-        continue;
+    OrderedParallelWriter.write(writer, featureList.getRows(),
+        () -> (row, b) -> exportRow(row, b, newLine), this::isCanceled);
+  }
 
-      String name = row.toString();
-      if (name != null)
-        writer.write("Name: " + name + newLine);
+  private boolean exportRow(FeatureListRow row, StringBuilder b, String newLine) {
+    IsotopePattern ip = row.getBestIsotopePattern();
+    if (ip == null)
+      return false;
 
-      FeatureIdentity identity = row.getPreferredFeatureIdentity();
-      if (identity != null) {
-        // String name = identity.getName();
-        // if (name != null) writer.write("Name: " + name + newLine);
+    String name = row.toString();
+    if (name != null)
+      b.append("Name: ").append(name).append(newLine);
 
-        String formula = identity.getPropertyValue(FeatureIdentity.PROPERTY_FORMULA);
-        if (formula != null)
-          writer.write("Formula: " + formula + newLine);
+    FeatureIdentity identity = row.getPreferredFeatureIdentity();
+    if (identity != null) {
+      // String name = identity.getName();
+      // if (name != null) writer.write("Name: " + name + newLine);
 
-        String id = identity.getPropertyValue(FeatureIdentity.PROPERTY_ID);
-        if (id != null)
-          writer.write("Comments: " + id + newLine);
-      }
+      String formula = identity.getPropertyValue(FeatureIdentity.PROPERTY_FORMULA);
+      if (formula != null)
+        b.append("Formula: ").append(formula).append(newLine);
 
-      String rowID = Integer.toString(row.getID());
-      if (rowID != null)
-        writer.write("DB#: " + rowID + newLine);
+      String id = identity.getPropertyValue(FeatureIdentity.PROPERTY_ID);
+      if (id != null)
+        b.append("Comments: ").append(id).append(newLine);
+    }
 
-      if (addRetTime) {
-        String attributeName = checkAttributeName(retTimeAttributeName);
-        writer.write(attributeName + ": " + row.getAverageRT() + newLine);
-      }
+    b.append("DB#: ").append(row.getID()).append(newLine);
 
-      FeatureInformation featureInformation = row.getFeatureInformation();
-      if (addAnovaPValue && featureInformation != null
-          && featureInformation.getAllProperties().containsKey("ANOVA_P_VALUE")) {
-        String attributeName = checkAttributeName(anovaAttributeName);
-        String value = featureInformation.getPropertyValue("ANOVA_P_VALUE");
-        if (value.trim().length() > 0)
-          writer.write(attributeName + ": " + value + newLine);
-      }
+    if (addRetTime) {
+      String attributeName = checkAttributeName(retTimeAttributeName);
+      b.append(attributeName).append(": ").append(row.getAverageRT()).append(newLine);
+    }
 
-      DataPoint[] dataPoints = ScanUtils.extractDataPoints(ip);
+    FeatureInformation featureInformation = row.getFeatureInformation();
+    if (addAnovaPValue && featureInformation != null
+        && featureInformation.getAllProperties().containsKey("ANOVA_P_VALUE")) {
+      String attributeName = checkAttributeName(anovaAttributeName);
+      String value = featureInformation.getPropertyValue("ANOVA_P_VALUE");
+      if (value.trim().length() > 0)
+        b.append(attributeName).append(": ").append(value).append(newLine);
+    }
 
-      if (integerMZ)
-        dataPoints = ScanUtils.integerDataPoints(dataPoints, roundMode);
+    DataPoint[] dataPoints = ScanUtils.extractDataPoints(ip);
 
-      String numFeatures = Integer.toString(dataPoints.length);
-      if (numFeatures != null)
-        writer.write("Num Features: " + numFeatures + newLine);
+    if (integerMZ)
+      dataPoints = ScanUtils.integerDataPoints(dataPoints, roundMode);
 
-      for (DataPoint point : dataPoints) {
-        String line = point.getMZ() + " " + point.getIntensity();
-        writer.write(line + newLine);
-      }
+    b.append("Num Features: ").append(dataPoints.length).append(newLine);
 
-      writer.write(newLine);
+    for (DataPoint point : dataPoints) {
+      b.append(point.getMZ()).append(' ').append(point.getIntensity()).append(newLine);
     }
+
+    b.append(newLine);
+    return true;
   }
 
   private String checkAttributeName(String name) {
@@ -50,7 +50,11 @@ import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
 import io.github.mzmine.util.files.FileAndPathUtil;
+import io.github.mzmine.util.io.OrderedParallelWriter;
+import io.github.mzmine.util.io.OrderedParallelWriter.ItemFormatter;
+import io.github.mzmine.util.io.OrderedParallelWriter.NumberAppender;
 import io.github.mzmine.util.scans.ScanUtils;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -65,6 +69,7 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -93,7 +98,8 @@ public class SiriusExportTask extends AbstractTask {
   private final Boolean excludeMultimers;
   private final Boolean needAnnotation;
   // rows
-  protected long finishedRows, totalRows;
+  protected final AtomicLong finishedRows = new AtomicLong(0);
+  protected long totalRows;
   // by robin
   private NumberFormat mzForm = MZmineCore.getConfiguration().getMZFormat();
   private NumberFormat intensityForm = MZmineCore.getConfiguration().getIntensityFormat();
@@ -101,8 +107,6 @@ public class SiriusExportTask extends AbstractTask {
   private NumberFormat rtsForm = new DecimalFormat("0.###");
   // correlation
   private NumberFormat corrForm = new DecimalFormat("0.0000");
-  // next id for renumbering
-  private int nextID = 1;
   private boolean renumberID;
 
   SiriusExportTask(ParameterSet parameters, @NotNull Instant moduleCallDate) {
@@ -129,7 +133,12 @@ public class SiriusExportTask extends AbstractTask {
 
   @Override
   public double getFinishedPercentage() {
-    return (totalRows == 0 ? 0.0 : (double) finishedRows / (double) totalRows);
+    return (totalRows == 0 ? 0.0 : (double) finishedRows.get() / (double) totalRows);
+  }
+
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
   }
 
   @Override
@@ -188,7 +197,9 @@ public class SiriusExportTask extends AbstractTask {
   public void runSingleRow(FeatureListRow row) {
     setStatus(TaskStatus.PROCESSING);
     try (final BufferedWriter bw = new BufferedWriter(new FileWriter(fileName, true))) {
-      exportFeatureListRow(row, bw);
+      final StringBuilder b = new StringBuilder();
+      new RowFormatter().exportFeatureListRow(row, b);
+      bw.append(b);
     } catch (IOException e) {
       setStatus(TaskStatus.ERROR);
       setErrorMessage("Could not open file " + fileName + " for writing.");
@@ -203,9 +214,12 @@ public class SiriusExportTask extends AbstractTask {
     // prefill statistics
     prefillStatistics(rows);
     try (final BufferedWriter bw = new BufferedWriter(new FileWriter(fileName, true))) {
+      final RowFormatter formatter = new RowFormatter();
+      final StringBuilder b = new StringBuilder();
       for (FeatureListRow row : rows) {
-        exportFeatureListRow(row, bw);
+        formatter.exportFeatureListRow(row, b);
       }
+      bw.append(b);
     } catch (IOException e) {
       setStatus(TaskStatus.ERROR);
       setErrorMessage("Could not open file " + fileName + " for writing.");
@@ -222,130 +236,10 @@ public class SiriusExportTask extends AbstractTask {
 
   private int exportFeatureList(FeatureList featureList, BufferedWriter writer)
       throws IOException {
-    int exported = 0;
-    for (FeatureListRow row : featureList.getRows()) {
-      if (isCanceled()) {
-        return exported;
-      }
-
-      IonIdentity adduct = row.getBestIonIdentity();
-      boolean fitCharge = !excludeMultiCharge || row.getRowCharge() <= 1;
-      boolean fitAnnotation = !needAnnotation || adduct != null;
-      boolean fitMol =
-          !excludeMultimers || adduct == null || adduct.getIonType().getMolecules() <= 1;
-      if (fitAnnotation && fitCharge && fitMol && hasMsMsOrIsotopes(row)) {
-        if (exportFeatureListRow(row, writer)) {
-          exported++;
-        }
-      }
-      finishedRows++;
-    }
-    return exported;
-  }
-
-  private boolean exportFeatureListRow(FeatureListRow row, BufferedWriter writer) throws IOException {
-    // get row charge and polarity
-    char polarity = 0;
-    for (Feature f : row.getFeatures()) {
-      if (f.getRepresentativeScan() == null) {
-        continue;
-      }
-      char pol = f.getRepresentativeScan().getPolarity().asSingleChar().charAt(0);
-      if (pol != polarity && polarity != 0) {
-        setErrorMessage(
-            "Joined features have different polarity. This is most likely a bug. If not, please separate them as individual features and/or write a feature request on github.");
-        setStatus(TaskStatus.ERROR);
-        return false;
-      } else {
-        polarity = pol;
-      }
-    }
-
-    // MS annotation and feature correlation group
-    // can be null (both)
-    // run MS annotations module or better metaMSEcorrelate
-    String msAnnotationsFlags = createMSAnnotationFlags(row, mzForm);
-
-    if (mergeEnabled) {
-      MergeMode mergeMode =
-          mergeParameters.getParameter(MsMsSpectraMergeParameters.MERGE_MODE).getValue();
-      MsMsSpectraMergeModule merger = MZmineCore.getModuleInstance(MsMsSpectraMergeModule.class);
-      if (mergeMode != MergeMode.ACROSS_SAMPLES) {
-        for (Feature f : row.getFeatures()) {
-          if (f.getFeatureStatus() == FeatureStatus.DETECTED
-              && f.getMostIntenseFragmentScan() != null) {
-            // write correlation spectrum
-            writeHeader(writer, row, f.getRawDataFile(), polarity, MsType.CORRELATED, -1, null, msAnnotationsFlags);
-            writeCorrelationSpectrum(writer, f);
-            if (mergeMode == MergeMode.CONSECUTIVE_SCANS) {
-              // merge MS/MS
-              List<MergedSpectrum> spectra =
-                  merger.mergeConsecutiveScans(mergeParameters, f);
-              for (MergedSpectrum spectrum : spectra) {
-                writeHeader(writer, row, f.getRawDataFile(), polarity, MsType.MSMS,
-                    spectrum.filterByRelativeNumberOfScans(mergeParameters
-                        .getParameter(MsMsSpectraMergeParameters.FEATURE_COUNT_PARAMETER)
-                        .getValue()), msAnnotationsFlags);
-                writeSpectrum(writer, spectrum.data);
-              }
-            } else {
-              MergedSpectrum spectrum = merger.mergeFromSameSample(mergeParameters, f)
-                  .filterByRelativeNumberOfScans(mergeParameters
-                      .getParameter(MsMsSpectraMergeParameters.FEATURE_COUNT_PARAMETER).getValue());
-              if (spectrum.data.length > 0) {
-                writeHeader(writer, row, f.getRawDataFile(), polarity, MsType.MSMS, spectrum, msAnnotationsFlags);
-                writeSpectrum(writer, spectrum.data);
-              }
-            }
-          }
-        }
-      } else {
-        // write correlation spectrum
-        writeHeader(writer, row, row.getBestFeature().getRawDataFile(), polarity, MsType.CORRELATED,
-            -1, null, msAnnotationsFlags);
-        writeCorrelationSpectrum(writer, row.getBestFeature());
-        // merge everything into one
-        MergedSpectrum spectrum = merger.mergeAcrossSamples(mergeParameters, row)
-            .filterByRelativeNumberOfScans(mergeParameters
-                .getParameter(MsMsSpectraMergeParameters.FEATURE_COUNT_PARAMETER).getValue());
-        if (spectrum.data.length > 0) {
-          writeHeader(writer, row, row.getBestFeature().getRawDataFile(), polarity, MsType.MSMS,
-              spectrum, msAnnotationsFlags);
-          writeSpectrum(writer, spectrum.data);
-        }
-      }
-    } else {
-      // No merging
-      Feature bestFeature = row.getBestFeature();
-      MassList ms1MassList = bestFeature.getRepresentativeScan().getMassList();
-      if(ms1MassList==null) {
-        setErrorMessage("A mass list was missing for scan "
-                        + ScanUtils.scanToString(bestFeature.getRepresentativeScan(), true)
-                        + ". Maybe rerun mass detection on MS2 and MS1 without scan filtering (e.g., by retention time range).");
-        setStatus(TaskStatus.ERROR);
-        return false;
-      }
-        writeHeader(writer, row, bestFeature.getRawDataFile(), polarity, MsType.MS,
-            bestFeature.getRepresentativeScan(), msAnnotationsFlags);
-        writeSpectrum(writer, ms1MassList.getDataPoints());
-
-      for (Feature f : row.getFeatures()) {
-        for (Scan ms2scan : f.getAllMS2FragmentScans()) {
-          writeHeader(writer, row, f.getRawDataFile(), polarity, MsType.MSMS, ms2scan, msAnnotationsFlags);
-          MassList ms2MassList = ms2scan.getMassList();
-          if (ms2MassList == null || (excludeEmptyMSMS && ms2MassList.getNumberOfDataPoints()<=0)) {
-            continue;
-          }
-          writeSpectrum(writer, ms2MassList.getDataPoints());
-        }
-      }
-
-    }
-    nextID++;
-    return true;
+    return OrderedParallelWriter
+        .write(writer, featureList.getRows(), RowFormatter::new, this::isCanceled);
   }
 
-
   /**
    * Creates header for groupID, compoundGroupID compoundMass and ion annotation
    *
@@ -400,124 +294,250 @@ public class SiriusExportTask extends AbstractTask {
     return false;
   }
 
-  private void writeHeader(BufferedWriter writer, FeatureListRow row, RawDataFile raw,
-      char polarity, MsType msType, MergedSpectrum mergedSpectrum, String msAnnotationsFlags) throws IOException {
-    writeHeader(writer, row, raw, polarity, msType, row.getID(), Arrays
-        .stream(mergedSpectrum.origins).map(RawDataFile::getName).collect(Collectors.toList()), msAnnotationsFlags);
-    // add additional fields
-    writer.write("MERGED_SCANS=");
-    writer.write(String.valueOf(mergedSpectrum.scanIds[0]));
-    for (int k = 1; k < mergedSpectrum.scanIds.length; ++k) {
-      writer.write(',');
-      writer.write(String.valueOf(mergedSpectrum.scanIds[k]));
+  /**
+   * Formats all spectra of rows. One instance per thread.
+   */
+  private class RowFormatter implements ItemFormatter<FeatureListRow> {
+
+    private final String newLine = System.lineSeparator();
+    private final NumberFormat mzForm = (NumberFormat) SiriusExportTask.this.mzForm.clone();
+    private final NumberAppender intensityForm = new NumberAppender(
+        SiriusExportTask.this.intensityForm);
+
+    @Override
+    public boolean format(FeatureListRow row, StringBuilder b) {
+      IonIdentity adduct = row.getBestIonIdentity();
+      boolean fitCharge = !excludeMultiCharge || row.getRowCharge() <= 1;
+      boolean fitAnnotation = !needAnnotation || adduct != null;
+      boolean fitMol =
+          !excludeMultimers || adduct == null || adduct.getIonType().getMolecules() <= 1;
+      boolean exported = fitAnnotation && fitCharge && fitMol && hasMsMsOrIsotopes(row)
+                         && exportFeatureListRow(row, b);
+      finishedRows.incrementAndGet();
+      return exported;
     }
-    writer.newLine();
-    writer.write("MERGED_STATS=");
-    writer.write(mergedSpectrum.getMergeStatsDescription());
-    writer.newLine();
-  }
 
-  private void writeHeader(BufferedWriter writer, FeatureListRow row, RawDataFile raw,
-      char polarity, MsType msType, Scan scanNumber, String msAnnotationsFlags) throws IOException {
-    writeHeader(writer, row, raw, polarity, msType, scanNumber.getScanNumber(), null, msAnnotationsFlags);
-  }
+    private boolean exportFeatureListRow(FeatureListRow row, StringBuilder b) {
+      // get row charge and polarity
+      char polarity = 0;
+      for (Feature f : row.getFeatures()) {
+        if (f.getRepresentativeScan() == null) {
+          continue;
+        }
+        char pol = f.getRepresentativeScan().getPolarity().asSingleChar().charAt(0);
+        if (pol != polarity && polarity != 0) {
+          setErrorMessage(
+              "Joined features have different polarity. This is most likely a bug. If not, please separate them as individual features and/or write a feature request on github.");
+          setStatus(TaskStatus.ERROR);
+          return false;
+        } else {
+          polarity = pol;
+        }
+      }
+
+      // MS annotation and feature correlation group
+      // can be null (both)
+      // run MS annotations module or better metaMSEcorrelate
+      String msAnnotationsFlags = createMSAnnotationFlags(row, mzForm);
+
+      if (mergeEnabled) {
+        MergeMode mergeMode =
+            mergeParameters.getParameter(MsMsSpectraMergeParameters.MERGE_MODE).getValue();
+        MsMsSpectraMergeModule merger = MZmineCore.getModuleInstance(MsMsSpectraMergeModule.class);
+        if (mergeMode != MergeMode.ACROSS_SAMPLES) {
+          for (Feature f : row.getFeatures()) {
+            if (f.getFeatureStatus() == FeatureStatus.DETECTED
+                && f.getMostIntenseFragmentScan() != null) {
+              // write correlation spectrum
+              writeHeader(b, row, f.getRawDataFile(), polarity, MsType.CORRELATED, -1, null, msAnnotationsFlags);
+              writeCorrelationSpectrum(b, f);
+              if (mergeMode == MergeMode.CONSECUTIVE_SCANS) {
+                // merge MS/MS
+                List<MergedSpectrum> spectra =
+                    merger.mergeConsecutiveScans(mergeParameters, f);
+                for (MergedSpectrum spectrum : spectra) {
+                  writeHeader(b, row, f.getRawDataFile(), polarity, MsType.MSMS,
+                      spectrum.filterByRelativeNumberOfScans(mergeParameters
+                          .getParameter(MsMsSpectraMergeParameters.FEATURE_COUNT_PARAMETER)
+                          .getValue()), msAnnotationsFlags);
+                  writeSpectrum(b, spectrum.data);
+                }
+              } else {
+                MergedSpectrum spectrum = merger.mergeFromSameSample(mergeParameters, f)
+                    .filterByRelativeNumberOfScans(mergeParameters
+                        .getParameter(MsMsSpectraMergeParameters.FEATURE_COUNT_PARAMETER).getValue());
+                if (spectrum.data.length > 0) {
+                  writeHeader(b, row, f.getRawDataFile(), polarity, MsType.MSMS, spectrum, msAnnotationsFlags);
+                  writeSpectrum(b, spectrum.data);
+                }
+              }
+            }
+          }
+        } else {
+          // write correlation spectrum
+          writeHeader(b, row, row.getBestFeature().getRawDataFile(), polarity, MsType.CORRELATED,
+              -1, null, msAnnotationsFlags);
+          writeCorrelationSpectrum(b, row.getBestFeature());
+          // merge everything into one
+          MergedSpectrum spectrum = merger.mergeAcrossSamples(mergeParameters, row)
+              .filterByRelativeNumberOfScans(mergeParameters
+                  .getParameter(MsMsSpectraMergeParameters.FEATURE_COUNT_PARAMETER).getValue());
+          if (spectrum.data.length > 0) {
+            writeHeader(b, row, row.getBestFeature().getRawDataFile(), polarity, MsType.MSMS,
+                spectrum, msAnnotationsFlags);
+            writeSpectrum(b, spectrum.data);
+          }
+        }
+      } else {
+        // No merging
+        Feature bestFeature = row.getBestFeature();
+        MassList ms1MassList = bestFeature.getRepresentativeScan().getMassList();
+        if(ms1MassList==null) {
+          setErrorMessage("A mass list was missing for scan "
+                          + ScanUtils.scanToString(bestFeature.getRepresentativeScan(), true)
+                          + ". Maybe rerun mass detection on MS2 and MS1 without scan filtering (e.g., by retention time range).");
+          setStatus(TaskStatus.ERROR);
+          return false;
+        }
+          writeHeader(b, row, bestFeature.getRawDataFile(), polarity, MsType.MS,
+              bestFeature.getRepresentativeScan(), msAnnotationsFlags);
+          writeSpectrum(b, ms1MassList.getDataPoints());
+
+        for (Feature f : row.getFeatures()) {
+          for (Scan ms2scan : f.getAllMS2FragmentScans()) {
+            writeHeader(b, row, f.getRawDataFile(), polarity, MsType.MSMS, ms2scan, msAnnotationsFlags);
+            MassList ms2MassList = ms2scan.getMassList();
+            if (ms2MassList == null || (excludeEmptyMSMS && ms2MassList.getNumberOfDataPoints()<=0)) {
+              continue;
+            }
+            writeSpectrum(b, ms2MassList.getDataPoints());
+          }
+        }
 
-  private void writeHeader(BufferedWriter writer, FeatureListRow row, RawDataFile raw,
-      char polarity, MsType msType, Integer scanNumber, List<String> sources, String msAnnotationsFlags) throws IOException {
-    final Feature feature = row.getFeature(raw);
-    writer.write("BEGIN IONS");
-    writer.newLine();
-    writer.write("FEATURE_ID=");
-    writer.write(String.valueOf(row.getID()));
-    writer.newLine();
-    writer.write("PEPMASS=");
-    writer.write(String.valueOf(row.getBestFeature().getMZ()));
-    writer.newLine();
-    // ion identity etc
-    if (msAnnotationsFlags != null && !msAnnotationsFlags.isEmpty()) {
-      writer.write(msAnnotationsFlags);
+      }
+      return true;
     }
 
-    writer.write("CHARGE=");
-    if (polarity == '-') {
-      writer.write("-");
+
+    private void writeHeader(StringBuilder b, FeatureListRow row, RawDataFile raw,
+        char polarity, MsType msType, MergedSpectrum mergedSpectrum, String msAnnotationsFlags) {
+      writeHeader(b, row, raw, polarity, msType, row.getID(), Arrays
+          .stream(mergedSpectrum.origins).map(RawDataFile::getName).collect(Collectors.toList()), msAnnotationsFlags);
+      // add additional fields
+      b.append("MERGED_SCANS=");
+      b.append(mergedSpectrum.scanIds[0]);
+      for (int k = 1; k < mergedSpectrum.scanIds.length; ++k) {
+        b.append(',');
+        b.append(mergedSpectrum.scanIds[k]);
+      }
+      b.append(newLine);
+      b.append("MERGED_STATS=");
+      b.append(mergedSpectrum.getMergeStatsDescription());
+      b.append(newLine);
     }
-    writer.write(String.valueOf(Math.abs(row.getRowCharge())));
-    writer.newLine();
-    writer.write("RTINSECONDS=");
-    writer.write(String.valueOf(feature.getRT() * 60d));
-    writer.newLine();
-    switch (msType) {
-      case CORRELATED:
-        writer.write("SPECTYPE=CORRELATED MS");
-        writer.newLine();
-      case MS:
-        writer.write("MSLEVEL=1");
-        writer.newLine();
-        break;
-      case MSMS:
-        writer.write("MSLEVEL=2");
-        writer.newLine();
+
+    private void writeHeader(StringBuilder b, FeatureListRow row, RawDataFile raw,
+        char polarity, MsType msType, Scan scanNumber, String msAnnotationsFlags) {
+      writeHeader(b, row, raw, polarity, msType, scanNumber.getScanNumber(), null, msAnnotationsFlags);
     }
-    writer.write("FILENAME=");
-    if (sources != null) {
-      final String[] uniqSources = new HashSet<>(sources).toArray(new String[0]);
-      writer.write(escape(uniqSources[0], ";"));
-      for (int i = 1; i < uniqSources.length; ++i) {
-        writer.write(";");
-        writer.write(escape(uniqSources[i], ";"));
+
+    private void writeHeader(StringBuilder b, FeatureListRow row, RawDataFile raw,
+        char polarity, MsType msType, Integer scanNumber, List<String> sources, String msAnnotationsFlags) {
+      final Feature feature = row.getFeature(raw);
+      b.append("BEGIN IONS");
+      b.append(newLine);
+      b.append("FEATURE_ID=");
+      b.append(row.getID());
+      b.append(newLine);
+      b.append("PEPMASS=");
+      b.append(row.getBestFeature().getMZ());
+      b.append(newLine);
+      // ion identity etc
+      if (msAnnotationsFlags != null && !msAnnotationsFlags.isEmpty()) {
+        b.append(msAnnotationsFlags);
       }
-      writer.newLine();
-    } else if (msType == MsType.CORRELATED) {
-      RawDataFile[] raws = row.getRawDataFiles().toArray(new RawDataFile[0]);
-      final Set<String> set = new HashSet<>();
-      for (RawDataFile f : raws) {
-        set.add(f.getName());
+
+      b.append("CHARGE=");
+      if (polarity == '-') {
+        b.append("-");
       }
-      final String[] uniqSources = set.toArray(new String[0]);
-      writer.write(escape(uniqSources[0], ";"));
-      for (int i = 1; i < uniqSources.length; ++i) {
-        writer.write(";");
-        writer.write(escape(uniqSources[i], ";"));
+      b.append(Math.abs(row.getRowCharge()));
+      b.append(newLine);
+      b.append("RTINSECONDS=");
+      b.append(feature.getRT() * 60d);
+      b.append(newLine);
+      switch (msType) {
+        case CORRELATED:
+          b.append("SPECTYPE=CORRELATED MS");
+          b.append(newLine);
+        case MS:
+          b.append("MSLEVEL=1");
+          b.append(newLine);
+          break;
+        case MSMS:
+          b.append("MSLEVEL=2");
+          b.append(newLine);
+      }
+      b.append("FILENAME=");
+      if (sources != null) {
+        final String[] uniqSources = new HashSet<>(sources).toArray(new String[0]);
+        b.append(escape(uniqSources[0], ";"));
+        for (int i = 1; i < uniqSources.length; ++i) {
+          b.append(";");
+          b.append(escape(uniqSources[i], ";"));
+        }
+        b.append(newLine);
+      } else if (msType == MsType.CORRELATED) {
+        RawDataFile[] raws = row.getRawDataFiles().toArray(new RawDataFile[0]);
+        final Set<String> set = new HashSet<>();
+        for (RawDataFile f : raws) {
+          set.add(f.getName());
+        }
+        final String[] uniqSources = set.toArray(new String[0]);
+        b.append(escape(uniqSources[0], ";"));
+        for (int i = 1; i < uniqSources.length; ++i) {
+          b.append(";");
+          b.append(escape(uniqSources[i], ";"));
+        }
+        b.append(newLine);
+      } else {
+        b.append(feature.getRawDataFile().getName());
+        b.append(newLine);
+      }
+      if (scanNumber != -1) {
+        b.append("SCANS=");
+        b.append(scanNumber);
+        b.append(newLine);
       }
-      writer.newLine();
-    } else {
-      writer.write(feature.getRawDataFile().getName());
-      writer.newLine();
-    }
-    if (scanNumber != -1) {
-      writer.write("SCANS=");
-      writer.write(String.valueOf(scanNumber));
-      writer.newLine();
     }
-  }
 
-  private void writeCorrelationSpectrum(BufferedWriter writer, Feature feature) throws IOException {
-    if (feature.getIsotopePattern() != null) {
-      writeSpectrum(writer, ScanUtils.extractDataPoints(feature.getIsotopePattern()));
-    } else {
-      // write nothing
-      writer.write(String.valueOf(feature.getMZ()));
-      writer.write(' ');
-      writer.write("100.0");
-      writer.newLine();
-      writer.write("END IONS");
-      writer.newLine();
-      writer.newLine();
+    private void writeCorrelationSpectrum(StringBuilder b, Feature feature) {
+      if (feature.getIsotopePattern() != null) {
+        writeSpectrum(b, ScanUtils.extractDataPoints(feature.getIsotopePattern()));
+      } else {
+        // write nothing
+        b.append(feature.getMZ());
+        b.append(' ');
+        b.append("100.0");
+        b.append(newLine);
+        b.append("END IONS");
+        b.append(newLine);
+        b.append(newLine);
+      }
     }
-  }
 
-  private void writeSpectrum(BufferedWriter writer, DataPoint[] spectrum) throws IOException {
-    for (int i = 0; i < spectrum.length; i++) {
-      writer.write(String.valueOf(spectrum[i].getMZ()));
-      writer.write(' ');
-      writer.write(intensityForm.format(spectrum[i].getIntensity()));
-      writer.newLine();
+    private void writeSpectrum(StringBuilder b, DataPoint[] spectrum) {
+      for (int i = 0; i < spectrum.length; i++) {
+        b.append(spectrum[i].getMZ());
+        b.append(' ');
+        intensityForm.append(b, spectrum[i].getIntensity());
+        b.append(newLine);
 
+      }
+      b.append("END IONS");
+      b.append(newLine);
+      b.append(newLine);
     }
-    writer.write("END IONS");
-    writer.newLine();
-    writer.newLine();
   }
 
   private String escape(String name, String s) {
@@ -31,6 +31,7 @@ import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.impl.MZmineToMSDKRawDataFile;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
 import org.jetbrains.annotations.NotNull;
 
 public class NetCDFExportTask extends AbstractTask {
@@ -53,6 +54,11 @@ public class NetCDFExportTask extends AbstractTask {
     this.outFilename = outFilename;
   }
 
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
+  }
+
   /**
    * @see io.github.mzmine.taskcontrol.Task#getTaskDescription()
    */
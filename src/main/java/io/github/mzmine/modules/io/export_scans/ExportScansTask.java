@@ -31,6 +31,7 @@ import io.github.mzmine.datamodel.impl.MZmineToMSDKMsScan;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.scans.ScanUtils;
 import java.io.BufferedWriter;
@@ -72,6 +73,11 @@ public class ExportScansTask extends AbstractTask {
         .getRealFilePath(parameters.getParameter(ExportScansParameters.file).getValue(), extension);
   }
 
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
+  }
+
   @Override
   public String getTaskDescription() {
     if (scans == null) {
@@ -30,6 +30,7 @@ import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
 import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
@@ -66,6 +67,11 @@ public class IcpMsCVSImportTask extends AbstractTask {
     this.module = module;
   }
 
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
+  }
+
   @Override
   public String getTaskDescription() {
     return null;
@@ -34,6 +34,7 @@ import io.github.mzmine.modules.MZmineModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
 import io.github.mzmine.modules.io.import_rawdata_all.AdvancedSpectraImportParameters;
+import io.github.mzmine.modules.io.import_rawdata_mzxml.MzXMLIndexedReader.MzXMLScan;
 import io.github.mzmine.parameters.ParameterSet;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
@@ -48,6 +49,7 @@ import java.time.Instant;
 import java.util.Base64;
 import java.util.Date;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.logging.Logger;
 import java.util.zip.DataFormatException;
 import javax.xml.datatype.DatatypeFactory;
@@ -174,8 +176,13 @@ public class MzXMLImportTask extends AbstractTask {
 
       dataTypeFactory = DatatypeFactory.newInstance();
 
-      SAXParser saxParser = factory.newSAXParser();
-      saxParser.parse(file, handler);
+      if (!readIndexedFile()) {
+        SAXParser saxParser = factory.newSAXParser();
+        saxParser.parse(file, handler);
+      }
+      if (isCanceled()) {
+        return;
+      }
 
       newMZmineFile.getAppliedMethods()
           .add(new SimpleFeatureListAppliedMethod(module, parameters, getModuleCallDate()));
@@ -211,6 +218,101 @@ public class MzXMLImportTask extends AbstractTask {
     return "Opening file " + file;
   }
 
+  /**
+   * Files with a scan index are memory mapped and the scans of each batch are decoded in parallel.
+   * The scans are added in the order of the file.
+   *
+   * @return false if the file has no valid scan index and needs to be parsed sequentially.
+   */
+  private boolean readIndexedFile() throws IOException {
+    try (MzXMLIndexedReader reader = MzXMLIndexedReader.open(file)) {
+      if (reader == null) {
+        logger.fine(() -> "No valid scan index in " + file + ", parsing sequentially");
+        return false;
+      }
+
+      totalScans = reader.getNumberOfScans();
+      int from = 0;
+      while (from < totalScans) {
+        if (isCanceled()) {
+          return true;
+        }
+        final int to = reader.getBatchEnd(from);
+        final List<MzXMLScan> parsed = reader.readScans(from, to);
+        // mass detectors may cache values between calls and are not used concurrently
+        final List<SimpleScan> scans = (applyMassDetection ? parsed.stream()
+            : parsed.parallelStream()).map(
+            scan -> createScan(scan.scanNumber(), scan.msLevel(), scan.retentionTime(),
+                scan.polarity(), scan.scanId(), scan.precursorMz(), scan.precursorCharge(),
+                scan.mzs(), scan.intensities())).toList();
+        for (SimpleScan scan : scans) {
+          newMZmineFile.addScan(scan);
+          parsedScans++;
+        }
+        from = to;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Creates the scan and applies the mass detection if selected.
+   */
+  private SimpleScan createScan(int scanNumber, int msLevel, float retentionTime,
+      PolarityType polarity, String scanId, double precursorMz, int precursorCharge,
+      double[] mzValues, double[] intensityValues) {
+    final DDAMsMsInfo info =
+        msLevel != 1 && Double.compare(precursorMz, 0d) != 0 ? new DDAMsMsInfoImpl(precursorMz,
+            precursorCharge, null, null, null, msLevel, ActivationMethod.UNKNOWN, null) : null;
+
+    if (applyMassDetection) {
+      // wrap scan
+      double[][] mzIntensities = null;
+
+      // apply mass detection
+      if (ms1Detector != null && msLevel == 1) {
+        mzIntensities = applyMassDetection(ms1Detector, mzValues, intensityValues);
+      } else if (ms2Detector != null && msLevel >= 2) {
+        mzIntensities = applyMassDetection(ms2Detector, mzValues, intensityValues);
+      }
+
+      if (mzIntensities != null) {
+        // Set the centroided / thresholded data points to the scan
+        final SimpleScan scan = new SimpleScan(newMZmineFile, scanNumber, msLevel, retentionTime,
+            info, mzIntensities[0], mzIntensities[1], MassSpectrumType.CENTROIDED, polarity,
+            scanId, null);
+
+        // create mass list and scan. Override data points and spectrum type
+        ScanPointerMassList newMassList = new ScanPointerMassList(scan);
+        scan.addMassList(newMassList);
+        return scan;
+      }
+    }
+
+    // if no mass dection was applied - just create the scan
+    // Auto-detect whether this scan is centroided
+    MassSpectrumType spectrumType = ScanUtils.detectSpectrumType(mzValues, intensityValues);
+
+    // Set the final data points to the scan
+    return new SimpleScan(newMZmineFile, scanNumber, msLevel, retentionTime, info, mzValues,
+        intensityValues, spectrumType, polarity, scanId, null);
+  }
+
+  /**
+   * Apply mass detection
+   *
+   * @param msDetector  mass detection module
+   * @param mzs         input values for mass detection
+   * @param intensities input values
+   * @return new mzs: double[0]; new intensities: double[1] arrays
+   */
+  private double[][] applyMassDetection(MZmineProcessingStep<MassDetector> msDetector,
+      double[] mzs, double[] intensities) {
+    // wrap data points in a simple mass spectrum
+    return msDetector.getModule()
+        .getMassValues(new SimpleMassSpectrum(mzs, intensities), msDetector.getParameterSet());
+  }
+
   private class MzXMLHandler extends DefaultHandler {
 
 
@@ -430,66 +532,13 @@ public class MzXMLImportTask extends AbstractTask {
           throw new SAXException("Parsing Cancelled");
         }
 
-        if (applyMassDetection) {
-          // wrap scan
-          double[][] mzIntensities = null;
-
-          // apply mass detection
-          if (ms1Detector != null && msLevel == 1) {
-            mzIntensities = applyMassDetection(ms1Detector, mzValues, intensityValues);
-          } else if (ms2Detector != null && msLevel >= 2) {
-            mzIntensities = applyMassDetection(ms2Detector, mzValues, intensityValues);
-          }
-
-          if (mzIntensities != null) {
-            final DDAMsMsInfo info =
-                msLevel != 1 && Double.compare(precursorMz, 0d) != 0 ? new DDAMsMsInfoImpl(
-                    precursorMz, precursorCharge, null, null, null, msLevel,
-                    ActivationMethod.UNKNOWN, null) : null;
-            // Set the centroided / thresholded data points to the scan
-            buildingScan = new SimpleScan(newMZmineFile, scanNumber, msLevel, retentionTime, info,
-                mzIntensities[0], mzIntensities[1], MassSpectrumType.CENTROIDED, polarity, scanId,
-                null);
-
-            // create mass list and scan. Override data points and spectrum type
-            ScanPointerMassList newMassList = new ScanPointerMassList(buildingScan);
-            buildingScan.addMassList(newMassList);
-          }
-        }
-
-        // if no mass dection was applied - just create the scan
-        if (buildingScan == null) {
-          // Auto-detect whether this scan is centroided
-          MassSpectrumType spectrumType = ScanUtils.detectSpectrumType(mzValues, intensityValues);
-
-          final DDAMsMsInfo info =
-              msLevel != 1 && precursorMz != 0d ? new DDAMsMsInfoImpl(precursorMz, precursorCharge,
-                  null, null, null, msLevel, ActivationMethod.UNKNOWN, null) : null;
-
-          // Set the final data points to the scan
-          buildingScan = new SimpleScan(newMZmineFile, scanNumber, msLevel, retentionTime, info,
-              mzValues, intensityValues, spectrumType, polarity, scanId, null);
-        }
+        buildingScan = createScan(scanNumber, msLevel, retentionTime, polarity, scanId,
+            precursorMz, precursorCharge, mzValues, intensityValues);
 
         return;
       }
     }
 
-    /**
-     * Apply mass detection
-     *
-     * @param msDetector  mass detection module
-     * @param mzs         input values for mass detection
-     * @param intensities input values
-     * @return new mzs: double[0]; new intensities: double[1] arrays
-     */
-    private double[][] applyMassDetection(MZmineProcessingStep<MassDetector> msDetector,
-        double[] mzs, double[] intensities) {
-      // wrap data points in a simple mass spectrum
-      return msDetector.getModule()
-          .getMassValues(new SimpleMassSpectrum(mzs, intensities), msDetector.getParameterSet());
-    }
-
     private void reset() {
       buildingScan = null;
       retentionTime = 0;
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.io.import_rawdata_mzxml;
+
+import io.github.mzmine.datamodel.PolarityType;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads the scans of an mzXML file by the offsets of its scan index. The file is memory mapped in
+ * batches of scans and the scan elements of a batch are parsed and their peaks decoded in parallel,
+ * directly from the mapped buffer. Only the attributes needed for the import are parsed.
+ * <p></p>
+ * {@link #open(File)} returns null for files without a valid index, those need to be parsed
+ * sequentially.
+ */
+class MzXMLIndexedReader implements AutoCloseable {
+
+  // the index offset is written at the end of the file
+  private static final int INDEX_OFFSET_SEARCH_BYTES = 4096;
+  // a batch is mapped and decoded at once
+  private static final int MAX_BATCH_SCANS = 1000;
+  private static final long MAX_BATCH_BYTES = 1L << 29;
+
+  private static final byte[] SCAN_TAG = ascii("<scan");
+  private static final byte[] PEAKS_TAG = ascii("<peaks");
+  private static final byte[] PRECURSOR_TAG = ascii("<precursorMz");
+  private static final byte[] OFFSET_TAG = ascii("<offset");
+  private static final byte[] INDEX_TAG = ascii("<index");
+  private static final byte[] INDEX_END_TAG = ascii("</index>");
+  private static final byte[] INDEX_OFFSET_TAG = ascii("<indexOffset>");
+
+  private final FileChannel channel;
+  // sorted offsets of the scan elements
+  private final long[] scanOffsets;
+  // start of the index element, end of the last scan
+  private final long indexOffset;
+  private final DatatypeFactory dataTypeFactory;
+
+  private MzXMLIndexedReader(FileChannel channel, long[] scanOffsets, long indexOffset)
+      throws DatatypeConfigurationException {
+    this.channel = channel;
+    this.scanOffsets = scanOffsets;
+    this.indexOffset = indexOffset;
+    dataTypeFactory = DatatypeFactory.newInstance();
+  }
+
+  /**
+   * @return a reader or null if the file has no scan index or the offsets do not point to scan
+   * elements.
+   */
+  @Nullable
+  static MzXMLIndexedReader open(@NotNull File file) throws IOException {
+    final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      final long indexOffset = readIndexOffset(channel);
+      final long[] offsets = indexOffset > 0 ? readScanOffsets(channel, indexOffset) : null;
+      if (offsets == null || offsets.length == 0 || !checkScanOffsets(channel, offsets)) {
+        channel.close();
+        return null;
+      }
+      return new MzXMLIndexedReader(channel, offsets, indexOffset);
+    } catch (IOException | RuntimeException | DatatypeConfigurationException e) {
+      channel.close();
+      if (e instanceof IOException ioe) {
+        throw ioe;
+      }
+      return null;
+    }
+  }
+
+  private static long readIndexOffset(FileChannel channel) throws IOException {
+    final long size = channel.size();
+    final int length = (int) Math.min(size, INDEX_OFFSET_SEARCH_BYTES);
+    final ByteBuffer tail = ByteBuffer.allocate(length);
+    readFully(channel, tail, size - length);
+    final int start = indexOf(tail, INDEX_OFFSET_TAG, 0, length);
+    if (start == -1) {
+      return -1;
+    }
+    final String value = text(tail, start + INDEX_OFFSET_TAG.length, indexOf(tail, (byte) '<',
+        start + INDEX_OFFSET_TAG.length, length));
+    final long offset = Long.parseLong(value.trim());
+    return offset > 0 && offset < size ? offset : -1;
+  }
+
+  /**
+   * @return the offsets of the scan index, sorted, or null if there is no scan index.
+   */
+  @Nullable
+  private static long[] readScanOffsets(FileChannel channel, long indexOffset)
+      throws IOException {
+    final long length = channel.size() - indexOffset;
+    if (length > Integer.MAX_VALUE) {
+      return null;
+    }
+    final ByteBuffer index = channel.map(MapMode.READ_ONLY, indexOffset, length);
+    final int limit = index.limit();
+
+    int pos = 0;
+    while (true) {
+      final int indexStart = indexOf(index, INDEX_TAG, pos, limit);
+      if (indexStart == -1) {
+        return null;
+      }
+      final int indexTagEnd = indexOf(index, (byte) '>', indexStart, limit);
+      final int indexEnd = indexOf(index, INDEX_END_TAG, indexTagEnd, limit);
+      if (indexTagEnd == -1 || indexEnd == -1) {
+        return null;
+      }
+      final Map<String, String> attributes = parseAttributes(index,
+          indexStart + INDEX_TAG.length, indexTagEnd);
+      if (!"scan".equals(attributes.get("name"))) {
+        pos = indexEnd;
+        continue;
+      }
+
+      long[] offsets = new long[1024];
+      int numOffsets = 0;
+      int offsetStart = indexOf(index, OFFSET_TAG, indexTagEnd, indexEnd);
+      while (offsetStart != -1) {
+        final int valueStart = indexOf(index, (byte) '>', offsetStart, indexEnd) + 1;
+        final int valueEnd = indexOf(index, (byte) '<', valueStart, indexEnd);
+        if (numOffsets == offsets.length) {
+          offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[numOffsets++] = Long.parseLong(text(index, valueStart, valueEnd).trim());
+        offsetStart = indexOf(index, OFFSET_TAG, valueEnd, indexEnd);
+      }
+      offsets = Arrays.copyOf(offsets, numOffsets);
+      // scans are imported in the order of the file
+      Arrays.sort(offsets);
+      return offsets;
+    }
+  }
+
+  /**
+   * Some converters write wrong offsets, e.g., after line endings were changed.
+   *
+   * @return true if all offsets point to the start of a scan element.
+   */
+  private static boolean checkScanOffsets(FileChannel channel, long[] offsets) throws IOException {
+    final ByteBuffer start = ByteBuffer.allocate(SCAN_TAG.length);
+    for (final long offset : offsets) {
+      start.clear();
+      readFully(channel, start, offset);
+      if (indexOf(start, SCAN_TAG, 0, SCAN_TAG.length) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer dst, long position)
+      throws IOException {
+    while (dst.hasRemaining()) {
+      if (channel.read(dst, position + dst.position()) == -1) {
+        throw new IOException("Unexpected end of file");
+      }
+    }
+  }
+
+  int getNumberOfScans() {
+    return scanOffsets.length;
+  }
+
+  /**
+   * @param from the first scan of the batch.
+   * @return the end (exclusive) of the batch starting at from.
+   */
+  int getBatchEnd(int from) {
+    int to = from + 1;
+    while (to < scanOffsets.length && to - from < MAX_BATCH_SCANS
+           && scanOffsets[to] - scanOffsets[from] < MAX_BATCH_BYTES) {
+      to++;
+    }
+    return to;
+  }
+
+  /**
+   * Maps the scans [from, to) and parses them in parallel.
+   *
+   * @return the scans in the order of the file.
+   */
+  @NotNull
+  List<MzXMLScan> readScans(int from, int to) throws IOException {
+    final long start = scanOffsets[from];
+    final long end = to < scanOffsets.length ? scanOffsets[to] : indexOffset;
+    if (end - start > Integer.MAX_VALUE) {
+      throw new IOException("Scan elements exceed the maximum size of 2 GB");
+    }
+    final ByteBuffer batch = channel.map(MapMode.READ_ONLY, start, end - start);
+
+    try {
+      return Arrays.asList(IntStream.range(from, to).parallel().mapToObj(i -> {
+        final int scanStart = (int) (scanOffsets[i] - start);
+        final int scanEnd = (int) ((i + 1 < to ? scanOffsets[i + 1] : end) - start);
+        try {
+          return parseScan(batch.slice(scanStart, scanEnd - scanStart));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }).toArray(MzXMLScan[]::new));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * @param scan the bytes from the start of the scan element up to the next scan element.
+   */
+  private MzXMLScan parseScan(ByteBuffer scan) throws IOException {
+    final int limit = scan.limit();
+    final int scanTagEnd = indexOf(scan, (byte) '>', 0, limit);
+    if (scanTagEnd == -1) {
+      throw new IOException("Corrupt mzXML file, scan element is not closed");
+    }
+    final Map<String, String> scanAttributes = parseAttributes(scan, SCAN_TAG.length, scanTagEnd);
+
+    final int scanNumber = Integer.parseInt(scanAttributes.get("num"));
+    // mzXML files with empty msLevel attribute do exist, so we use 1 as default
+    final String msLevelAttr = scanAttributes.get("msLevel");
+    final int msLevel =
+        msLevelAttr == null || msLevelAttr.isEmpty() ? 1 : Integer.parseInt(msLevelAttr);
+    // same limit as the sequential parser
+    if (msLevel > 9) {
+      throw new IOException("The value of msLevel is bigger than 10");
+    }
+    final String filterLine = scanAttributes.get("filterLine");
+    final String scanId =
+        filterLine == null || filterLine.isEmpty() ? scanAttributes.get("scanType") : filterLine;
+    final String polarityAttr = scanAttributes.get("polarity");
+    final PolarityType polarity =
+        polarityAttr != null && polarityAttr.length() == 1 ? PolarityType.fromSingleChar(
+            polarityAttr) : PolarityType.UNKNOWN;
+    final int peaksCount = Integer.parseInt(scanAttributes.get("peaksCount"));
+    final String retentionTimeAttr = scanAttributes.get("retentionTime");
+    if (retentionTimeAttr == null) {
+      throw new IOException("This file does not contain retentionTime for scans");
+    }
+    final float retentionTime = parseRetentionTime(retentionTimeAttr);
+
+    final int peaksStart = indexOf(scan, PEAKS_TAG, scanTagEnd, limit);
+    if (peaksStart == -1) {
+      throw new IOException("Corrupt mzXML file, no peaks in scan " + scanNumber);
+    }
+
+    // precursor is written before the peaks
+    double precursorMz = 0d;
+    int precursorCharge = 0;
+    final int precursorStart = indexOf(scan, PRECURSOR_TAG, scanTagEnd, peaksStart);
+    if (precursorStart != -1) {
+      final int precursorTagEnd = indexOf(scan, (byte) '>', precursorStart, peaksStart);
+      final String chargeAttr = parseAttributes(scan, precursorStart + PRECURSOR_TAG.length,
+          precursorTagEnd).get("precursorCharge");
+      if (chargeAttr != null) {
+        precursorCharge = Integer.parseInt(chargeAttr);
+      }
+      final String mz = text(scan, precursorTagEnd + 1,
+          indexOf(scan, (byte) '<', precursorTagEnd, peaksStart)).trim();
+      if (!mz.isEmpty()) {
+        precursorMz = Double.parseDouble(mz);
+      }
+    }
+
+    final int peaksTagEnd = indexOf(scan, (byte) '>', peaksStart, limit);
+    final Map<String, String> peaksAttributes = parseAttributes(scan,
+        peaksStart + PEAKS_TAG.length, peaksTagEnd);
+    final double[] mzs = new double[peaksCount];
+    final double[] intensities = new double[peaksCount];
+    if (peaksCount > 0) {
+      final int peaksEnd = indexOf(scan, (byte) '<', peaksTagEnd, limit);
+      if (peaksEnd == -1) {
+        throw new IOException("Corrupt mzXML file, peaks of scan " + scanNumber + " not closed");
+      }
+      final String compressionType = peaksAttributes.get("compressionType");
+      final boolean compressed = compressionType != null && !compressionType.equals("none");
+      final boolean doublePrecision = "64".equals(peaksAttributes.get("precision"));
+      decodePeaks(scan.slice(peaksTagEnd + 1, peaksEnd - peaksTagEnd - 1), compressed,
+          doublePrecision, mzs, intensities);
+    }
+
+    return new MzXMLScan(scanNumber, msLevel, retentionTime, polarity, scanId, precursorMz,
+        precursorCharge, mzs, intensities);
+  }
+
+  /**
+   * Decodes base64 encoded, optionally zlib compressed m/z-intensity pairs in network byte order.
+   */
+  private static void decodePeaks(ByteBuffer base64, boolean compressed, boolean doublePrecision,
+      double[] mzs, double[] intensities) throws IOException {
+    final int numValues = mzs.length * 2;
+    final int numBytes = numValues * (doublePrecision ? Double.BYTES : Float.BYTES);
+
+    // mime decoder skips line breaks
+    ByteBuffer bytes;
+    try {
+      bytes = Base64.getMimeDecoder().decode(base64);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Corrupt mzXML file, invalid base64 peaks", e);
+    }
+
+    if (compressed) {
+      final Inflater inflater = new Inflater();
+      try {
+        inflater.setInput(bytes);
+        final ByteBuffer inflated = ByteBuffer.allocate(numBytes);
+        while (inflated.hasRemaining() && !inflater.finished()) {
+          if (inflater.inflate(inflated) == 0 && (inflater.needsInput()
+                                                  || inflater.needsDictionary())) {
+            break;
+          }
+        }
+        inflated.flip();
+        bytes = inflated;
+      } catch (DataFormatException e) {
+        throw new IOException("Corrupt compressed peak: " + e, e);
+      } finally {
+        inflater.end();
+      }
+    }
+
+    if (bytes.remaining() < numBytes) {
+      throw new IOException("Corrupt mzXML file, expected " + numBytes + " bytes of peaks but got "
+                            + bytes.remaining());
+    }
+
+    // pairOrder is always m/z-int, byte order is network (big endian)
+    if (doublePrecision) {
+      final DoubleBuffer values = bytes.asDoubleBuffer();
+      for (int i = 0; i < mzs.length; i++) {
+        mzs[i] = values.get(2 * i);
+        intensities[i] = values.get(2 * i + 1);
+      }
+    } else {
+      final FloatBuffer values = bytes.asFloatBuffer();
+      for (int i = 0; i < mzs.length; i++) {
+        mzs[i] = values.get(2 * i);
+        intensities[i] = values.get(2 * i + 1);
+      }
+    }
+  }
+
+  /**
+   * Most files use seconds (PT12.3S), other durations are parsed by the {@link DatatypeFactory}.
+   *
+   * @return the retention time in minutes.
+   */
+  private float parseRetentionTime(String duration) {
+    if (duration.startsWith("PT") && duration.endsWith("S") && duration.indexOf('M') == -1
+        && duration.indexOf('H') == -1) {
+      try {
+        return (float) (Double.parseDouble(duration.substring(2, duration.length() - 1)) / 60d);
+      } catch (NumberFormatException e) {
+        // parse below
+      }
+    }
+    synchronized (dataTypeFactory) {
+      return (float) (dataTypeFactory.newDuration(duration).getTimeInMillis(new Date()) / 1000d
+                      / 60d);
+    }
+  }
+
+  /**
+   * Parses the attributes name="value" within [from, to) of a start tag.
+   */
+  private static Map<String, String> parseAttributes(ByteBuffer buffer, int from, int to) {
+    final Map<String, String> attributes = new HashMap<>();
+    int pos = from;
+    while (pos < to) {
+      final int equals = indexOf(buffer, (byte) '=', pos, to);
+      if (equals == -1) {
+        break;
+      }
+      final String name = text(buffer, pos, equals).trim();
+      int valueStart = equals + 1;
+      while (valueStart < to && buffer.get(valueStart) != '"' && buffer.get(valueStart) != '\'') {
+        valueStart++;
+      }
+      if (valueStart >= to) {
+        break;
+      }
+      final int valueEnd = indexOf(buffer, buffer.get(valueStart), valueStart + 1, to);
+      if (valueEnd == -1) {
+        break;
+      }
+      attributes.put(name, unescape(text(buffer, valueStart + 1, valueEnd)));
+      pos = valueEnd + 1;
+    }
+    return attributes;
+  }
+
+  private static String unescape(String value) {
+    if (value.indexOf('&') == -1) {
+      return value;
+    }
+    return value.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+        .replace("&apos;", "'").replace("&amp;", "&");
+  }
+
+  private static String text(ByteBuffer buffer, int from, int to) {
+    final byte[] bytes = new byte[Math.max(0, to - from)];
+    buffer.get(from, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static int indexOf(ByteBuffer buffer, byte b, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer.get(i) == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int indexOf(ByteBuffer buffer, byte[] pattern, int from, int to) {
+    final int last = to - pattern.length;
+    outer:
+    for (int i = from; i <= last; i++) {
+      for (int j = 0; j < pattern.length; j++) {
+        if (buffer.get(i + j) != pattern[j]) {
+          continue outer;
+        }
+      }
+      return i;
+    }
+    return -1;
+  }
+
+  private static byte[] ascii(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  /**
+   * The values of a scan element needed for the import.
+   */
+  record MzXMLScan(int scanNumber, int msLevel, float retentionTime, PolarityType polarity,
+                   String scanId, double precursorMz, int precursorCharge, double[] mzs,
+                   double[] intensities) {
+
+  }
+}
@@ -21,6 +21,7 @@ package io.github.mzmine.modules.io.import_spectral_library;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
@@ -56,6 +57,11 @@ class SpectralLibraryImportTask extends AbstractTask {
     return parser == null ? 0 : parser.getProgress();
   }
 
+  @Override
+  public TaskType getTaskType() {
+    return TaskType.IO;
+  }
+
   @Override
   public String getTaskDescription() {
     return "Import spectral library from " + dataBaseFile;
@@ -1,6 +1,9 @@
 package io.github.mzmine.modules.io.projectload.version_3_0;
 
 import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
+import io.github.mzmine.datamodel.features.SimpleFeatureListAppliedMethod;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
@@ -15,11 +18,14 @@ import io.github.mzmine.parameters.parametertypes.filenames.FileNamesParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilePlaceholder;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.AllTasksFinishedListener;
 import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.StreamCopy;
 import io.github.mzmine.util.ZipUtils;
 import java.io.File;
@@ -28,6 +34,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Date;
@@ -37,15 +44,18 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.zip.ZipFile;
+import javafx.scene.paint.Color;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
@@ -62,6 +72,7 @@ public class RawDataFileOpenHandler_3_0 extends AbstractTask implements RawDataF
   private MZmineProject project;
   private AbstractTask currentTask;
   private ZipFile zipFile;
+  private boolean loadingStores = false;
 
   public RawDataFileOpenHandler_3_0(@NotNull Instant moduleCallDate) {
     super(null, moduleCallDate);
@@ -86,6 +97,19 @@ public class RawDataFileOpenHandler_3_0 extends AbstractTask implements RawDataF
   @Override
   public void run() {
     setStatus(TaskStatus.PROCESSING);
+
+    if (zipFile != null && zipFile.getEntry(RawDataFileSaveHandler.RAW_DATA_STORES_FILENAME) != null) {
+      if (loadRawDataFileStores()) {
+        setStatus(TaskStatus.FINISHED);
+        return;
+      }
+      if (isCanceled()) {
+        return;
+      }
+      logger.warning("Cannot load raw data file stores, replaying the raw data import batch.");
+    }
+
+    // fallback for projects without stores
     if (batchFileStream != null) {
       try {
         if (!loadRawDataFiles()) {
@@ -158,15 +182,131 @@ public class RawDataFileOpenHandler_3_0 extends AbstractTask implements RawDataF
     return queues;
   }
 
+  /**
+   * Loads the raw data files from the binary stores in the project file. The files are only added
+   * to the project if all stores were loaded.
+   *
+   * @return false if the stores could not be loaded and the import batch has to be replayed.
+   */
+  private boolean loadRawDataFileStores() {
+    loadingStores = true;
+    processedSteps = 0;
+    final List<RawDataFile> loadedFiles = new ArrayList<>();
+    try (InputStream is = zipFile.getInputStream(
+        zipFile.getEntry(RawDataFileSaveHandler.RAW_DATA_STORES_FILENAME))) {
+      final DocumentBuilder dBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+      final Document document = dBuilder.parse(is);
+      final NodeList fileElements = document.getElementsByTagName(CONST.XML_RAW_FILE_ELEMENT);
+      numSteps = fileElements.getLength();
+
+      for (int i = 0; i < fileElements.getLength(); i++) {
+        if (isCanceled()) {
+          return false;
+        }
+        loadedFiles.add(loadRawDataFileStore((Element) fileElements.item(i)));
+        processedSteps++;
+      }
+      loadedFiles.forEach(project::addFile);
+      loadedFiles.clear();
+      return true;
+    } catch (IOException | ParserConfigurationException | SAXException | XMLStreamException e) {
+      logger.log(Level.WARNING, "Error while loading raw data file stores.", e);
+      return false;
+    } finally {
+      loadingStores = false;
+      // the files are not added to the project, the import batch is replayed instead
+      loadedFiles.forEach(file -> discardStorage(file.getMemoryMapStorage()));
+    }
+  }
+
+  private void discardStorage(@Nullable MemoryMapStorage storage) {
+    if (storage == null) {
+      return;
+    }
+    try {
+      storage.discard(null);
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Cannot delete the temporary files of a raw data store.", e);
+    }
+  }
+
+  private RawDataFile loadRawDataFileStore(Element fileElement)
+      throws IOException, XMLStreamException {
+    final String name = getChildText(fileElement, CONST.XML_RAW_FILE_NAME_ELEMENT);
+    final String path = getChildText(fileElement, CONST.XML_RAW_FILE_PATH_ELEMENT);
+    final String storePath = getChildText(fileElement,
+        RawDataFileSaveHandler.XML_RAW_FILE_STORE_ELEMENT);
+    final Color color = Color.web(
+        getChildText(fileElement, RawDataFileSaveHandler.XML_RAW_FILE_COLOR_ELEMENT));
+    if (name == null || storePath == null || zipFile.getEntry(storePath) == null) {
+      throw new IOException("Incomplete raw data store for file " + name);
+    }
+
+    final MemoryMapStorage storage = MemoryMapStorage.forRawDataFile();
+    final RawDataFile file = IMSRawDataFileImpl.SAVE_IDENTIFIER.equals(
+        fileElement.getAttribute(RawDataFileSaveHandler.XML_RAW_FILE_TYPE_ATTR))
+        ? new IMSRawDataFileImpl(name, path, storage, color)
+        : new RawDataFileImpl(name, path, storage, color);
+
+    // zip entries cannot be mapped, extract the store first
+    final File storeFile = File.createTempFile("mzmine_rawdatastore", ".tmp");
+    storeFile.deleteOnExit();
+    boolean mapped = false;
+    try {
+      try (InputStream is = zipFile.getInputStream(zipFile.getEntry(storePath))) {
+        Files.copy(is, storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      mapped = new RawDataFileStoreReader(storeFile, file).read();
+    } catch (IOException | XMLStreamException | RuntimeException e) {
+      // the store file was handed over to the storage, if a data block was mapped
+      discardStorage(storage);
+      throw e;
+    } finally {
+      if (!mapped) {
+        // data was read to ram or loading failed
+        storeFile.delete();
+      }
+    }
+
+    final NodeList methodElements = fileElement.getElementsByTagName(
+        CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+    for (int i = 0; i < methodElements.getLength(); i++) {
+      final FeatureListAppliedMethod method = SimpleFeatureListAppliedMethod.loadValueFromXML(
+          (Element) methodElements.item(i));
+      if (method != null) {
+        file.getAppliedMethods().add(method);
+      }
+    }
+    return file;
+  }
+
+  /**
+   * @return The text content of the first direct child element with the given name or null.
+   */
+  @Nullable
+  private static String getChildText(Element parent, String childName) {
+    final NodeList children = parent.getChildNodes();
+    for (int i = 0; i < children.getLength(); i++) {
+      if (children.item(i) instanceof Element child && child.getTagName().equals(childName)) {
+        return child.getTextContent();
+      }
+    }
+    return null;
+  }
+
   @Override
   public String getTaskDescription() {
+    if (loadingStores) {
+      return "Importing raw data files from project. Loading data file " + (processedSteps + 1)
+          + "/" + numSteps + ".";
+    }
     return "Importing raw data files from project. Processing import batch step " + (processedSteps
         + 1) + "/" + numSteps + ".";
   }
 
   @Override
   public double getFinishedPercentage() {
-    return currentTask != null ? (double) (processedSteps) / numSteps : 0d;
+    return currentTask != null || loadingStores ? (double) (processedSteps) / numSteps : 0d;
   }
 
   public boolean loadRawDataFiles() throws InterruptedException {
@@ -0,0 +1,310 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.io.projectload.version_3_0;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
+import io.github.mzmine.modules.io.projectsave.RawDataFileStoreWriter;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Reads a binary store written by {@link RawDataFileStoreWriter} into a {@link RawDataFile}. If the
+ * raw data file has a {@link MemoryMapStorage}, the data blocks are mapped directly from the store
+ * file and the store file is handed over to the storage. Otherwise, the data is read into ram.
+ */
+public class RawDataFileStoreReader {
+
+  /**
+   * Maximum size of a single mapped region of the store file.
+   */
+  private static final long MAX_MAPPED_REGION = 1_000_000_000L;
+
+  private final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+  private final File storeFile;
+  private final RawDataFile file;
+  @Nullable
+  private final MemoryMapStorage storage;
+
+  private FileChannel channel;
+  private long dataEnd;
+  private ByteBuffer region;
+  private long regionStart;
+  /**
+   * True once a data block was mapped and the store file was handed over to the storage.
+   */
+  private boolean mapped;
+
+  /**
+   * @param storeFile The store file. Must not be deleted while the file is in use, if the data is
+   *                  mapped.
+   * @param file      The raw data file to add the scans to. Must not contain any scans.
+   */
+  public RawDataFileStoreReader(@NotNull File storeFile, @NotNull RawDataFile file) {
+    this.storeFile = storeFile;
+    this.file = file;
+    this.storage = file.getMemoryMapStorage();
+  }
+
+  /**
+   * Adds all scans of the store to the raw data file.
+   *
+   * @return true if data was mapped into the storage of the raw data file and the store file must
+   * be kept, false if the data was read into ram or all data blocks were empty and the store file
+   * can be deleted.
+   */
+  public boolean read() throws IOException, XMLStreamException {
+    try (RandomAccessFile raf = new RandomAccessFile(storeFile, "r")) {
+      channel = raf.getChannel();
+
+      final DataInputStream header = new DataInputStream(
+          new ByteArrayInputStream(readBytes(0, RawDataFileStoreWriter.HEADER_BYTES).array()));
+      if (header.readInt() != RawDataFileStoreWriter.MAGIC) {
+        throw new IOException("File " + storeFile + " is not a raw data store.");
+      }
+      final int version = header.readInt();
+      if (version < 1 || version > RawDataFileStoreWriter.VERSION) {
+        throw new IOException("Unsupported raw data store version " + version);
+      }
+
+      final long size = channel.size();
+      dataEnd = readBytes(size - Long.BYTES, Long.BYTES).getLong();
+      final DataInputStream table = new DataInputStream(
+          new ByteArrayInputStream(readBytes(dataEnd, size - Long.BYTES - dataEnd).array()));
+
+      final int numScans = table.readInt();
+      // ms/ms infos reference other scans, so they are loaded after all scans were added.
+      final List<String[]> msmsInfos = new ArrayList<>(numScans);
+      for (int i = 0; i < numScans; i++) {
+        msmsInfos.add(readScan(table));
+      }
+      if (version >= 2) {
+        readSegments(table);
+      }
+      readMsMsInfos(msmsInfos);
+    } finally {
+      channel = null;
+      region = null;
+    }
+    return mapped;
+  }
+
+  /**
+   * @return the serialised ms/ms info(s) of this scan.
+   */
+  private String[] readScan(DataInputStream table) throws IOException {
+    final boolean isFrame = table.readBoolean();
+    final MobilityType mobilityType = isFrame ? MobilityType.valueOf(table.readUTF()) : null;
+    final int scanNumber = table.readInt();
+    final int msLevel = table.readInt();
+    final float rt = table.readFloat();
+    final PolarityType polarity = PolarityType.valueOf(table.readUTF());
+    final MassSpectrumType spectrumType = MassSpectrumType.valueOf(table.readUTF());
+    final String scanDefinition = table.readUTF();
+    final Range<Double> scanMZRange = Range.closed(table.readDouble(), table.readDouble());
+
+    final long dataOffset = table.readLong();
+    final int numPoints = table.readInt();
+    final DoubleBuffer mzs = doubles(dataOffset, numPoints);
+    final DoubleBuffer intensities = doubles(dataOffset + (long) numPoints * Double.BYTES,
+        numPoints);
+
+    final SimpleScan scan;
+    if (isFrame) {
+      scan = new SimpleFrame(file, scanNumber, msLevel, rt, mzs, intensities, spectrumType,
+          polarity, scanDefinition, scanMZRange, mobilityType, null);
+    } else {
+      scan = new SimpleScan(file, scanNumber, msLevel, rt, null, mzs, intensities, spectrumType,
+          polarity, scanDefinition, scanMZRange);
+    }
+
+    final byte massListType = table.readByte();
+    if (massListType == RawDataFileStoreWriter.MASS_LIST_RAW_DATA) {
+      scan.addMassList(new ScanPointerMassList(scan));
+    } else if (massListType == RawDataFileStoreWriter.MASS_LIST_STORED) {
+      final long massListOffset = table.readLong();
+      final int massListPoints = table.readInt();
+      scan.addMassList(new SimpleMassList(doubles(massListOffset, massListPoints),
+          doubles(massListOffset + (long) massListPoints * Double.BYTES, massListPoints)));
+    }
+
+    final String[] msmsInfos;
+    if (isFrame) {
+      msmsInfos = readFrame((SimpleFrame) scan, table);
+    } else {
+      final String msmsInfo = table.readUTF();
+      msmsInfos = msmsInfo.isEmpty() ? new String[0] : new String[]{msmsInfo};
+    }
+    file.addScan(scan);
+    return msmsInfos;
+  }
+
+  private void readSegments(DataInputStream table) throws IOException {
+    final int numSegments = table.readInt();
+    for (int i = 0; i < numSegments; i++) {
+      final Range<Integer> segment = Range.closed(table.readInt(), table.readInt());
+      if (file instanceof IMSRawDataFileImpl imsFile) {
+        imsFile.addSegment(segment);
+      }
+    }
+  }
+
+  /**
+   * Reads the mobilities and mobility scans of the frame.
+   *
+   * @return the serialised precursor infos.
+   */
+  private String[] readFrame(SimpleFrame frame, DataInputStream table) throws IOException {
+    final long mobilitiesOffset = table.readLong();
+    final int numMobilityScans = table.readInt();
+    frame.setMobilities(doubles(mobilitiesOffset, numMobilityScans));
+
+    final long rawOffset = table.readLong();
+    final int numRawPoints = table.readInt();
+    final int rawMaxNumPoints = table.readInt();
+    final MobilityScanStorage mobilityScans = new MobilityScanStorage(frame,
+        doubles(rawOffset, numRawPoints),
+        doubles(rawOffset + (long) numRawPoints * Double.BYTES, numRawPoints),
+        ints(rawOffset + 2L * numRawPoints * Double.BYTES, numMobilityScans),
+        ints(rawOffset + 2L * numRawPoints * Double.BYTES + (long) numMobilityScans * Integer.BYTES,
+            numMobilityScans), rawMaxNumPoints);
+
+    final byte massListType = table.readByte();
+    if (massListType == RawDataFileStoreWriter.MASS_LIST_RAW_DATA) {
+      mobilityScans.setRawDataAsMassLists();
+    } else if (massListType == RawDataFileStoreWriter.MASS_LIST_STORED) {
+      final long offset = table.readLong();
+      final int numPoints = table.readInt();
+      final int maxNumPoints = table.readInt();
+      mobilityScans.setMassLists(doubles(offset, numPoints),
+          doubles(offset + (long) numPoints * Double.BYTES, numPoints),
+          ints(offset + 2L * numPoints * Double.BYTES, numMobilityScans),
+          ints(offset + 2L * numPoints * Double.BYTES + (long) numMobilityScans * Integer.BYTES,
+              numMobilityScans), maxNumPoints);
+    }
+    frame.setMobilityScanStorage(mobilityScans);
+
+    final String[] precursorInfos = new String[table.readInt()];
+    for (int i = 0; i < precursorInfos.length; i++) {
+      precursorInfos[i] = table.readUTF();
+    }
+    return precursorInfos;
+  }
+
+  private void readMsMsInfos(List<String[]> msmsInfos) throws XMLStreamException {
+    for (int i = 0; i < msmsInfos.size(); i++) {
+      final String[] xmls = msmsInfos.get(i);
+      if (xmls.length == 0) {
+        continue;
+      }
+
+      final Scan scan = file.getScan(i);
+      if (scan instanceof SimpleFrame frame) {
+        final Set<PasefMsMsInfo> precursorInfos = new HashSet<>();
+        for (String xml : xmls) {
+          precursorInfos.add((PasefMsMsInfo) parseMsMsInfo(xml));
+        }
+        frame.setPrecursorInfos(precursorInfos);
+      } else {
+        ((SimpleScan) scan).setMsMsInfo(parseMsMsInfo(xmls[0]));
+      }
+    }
+  }
+
+  private MsMsInfo parseMsMsInfo(String xml) throws XMLStreamException {
+    final XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(new StringReader(xml));
+    while (!reader.isStartElement()) {
+      reader.next();
+    }
+    final MsMsInfo info = MsMsInfo.loadFromXML(reader, file);
+    reader.close();
+    return info;
+  }
+
+  private DoubleBuffer doubles(long offset, int length) throws IOException {
+    return slice(offset, (long) length * Double.BYTES).asDoubleBuffer().asReadOnlyBuffer();
+  }
+
+  private IntBuffer ints(long offset, int length) throws IOException {
+    return slice(offset, (long) length * Integer.BYTES).asIntBuffer().asReadOnlyBuffer();
+  }
+
+  /**
+   * Maps the data block in the storage or reads it into ram, if there is no storage. Data blocks
+   * are requested in ascending order, so the store file is mapped in few large regions.
+   */
+  private ByteBuffer slice(long offset, long length) throws IOException {
+    if (storage == null || length == 0) {
+      return readBytes(offset, length);
+    }
+
+    if (region == null || offset < regionStart
+        || offset + length > regionStart + region.capacity()) {
+      final long regionSize = Math.max(length, Math.min(MAX_MAPPED_REGION, dataEnd - offset));
+      region = storage.mapFile(storeFile, offset, regionSize);
+      regionStart = offset;
+      mapped = true;
+    }
+    return region.slice((int) (offset - regionStart), (int) length);
+  }
+
+  private ByteBuffer readBytes(long offset, long length) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(length));
+    long position = offset;
+    while (buffer.hasRemaining()) {
+      final int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new EOFException("Unexpected end of raw data store " + storeFile);
+      }
+      position += read;
+    }
+    return buffer.flip();
+  }
+}
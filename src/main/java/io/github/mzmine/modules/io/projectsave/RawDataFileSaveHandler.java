@@ -18,17 +18,22 @@
 
 package io.github.mzmine.modules.io.projectsave;
 
+import io.github.mzmine.datamodel.IMSRawDataFile;
 import io.github.mzmine.datamodel.MZmineProject;
 import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
 import io.github.mzmine.modules.MZmineProcessingModule;
 import io.github.mzmine.modules.MZmineProcessingStep;
 import io.github.mzmine.modules.batchmode.BatchQueue;
+import io.github.mzmine.modules.io.projectload.version_3_0.CONST;
 import io.github.mzmine.parameters.Parameter;
 import io.github.mzmine.parameters.parametertypes.filenames.FileNamesParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilePlaceholder;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesParameter;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelection;
 import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
@@ -55,6 +60,7 @@ import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -77,6 +83,12 @@ public class RawDataFileSaveHandler extends AbstractTask {
   public static final String DATA_FILES_PREFIX = "$$";
   public static final String DATA_FILES_SUFFIX = DATA_FILES_PREFIX;
   public static final Pattern DATA_FILE_PATTERN = Pattern.compile("(\\$\\$)([^\\n]+)(\\$\\$)");
+  public static final String RAW_DATA_STORES_FILENAME = "raw_data_stores.xml";
+  public static final String DATA_STORES_FOLDER = "msdatastores/";
+  public static final String DATA_STORE_SUFFIX = ".mzstore";
+  public static final String XML_RAW_FILE_TYPE_ATTR = "type";
+  public static final String XML_RAW_FILE_COLOR_ELEMENT = "color";
+  public static final String XML_RAW_FILE_STORE_ELEMENT = "store";
 
   private final MZmineProject project;
   private Logger logger = Logger.getLogger(this.getClass().getName());
@@ -102,7 +114,7 @@ public class RawDataFileSaveHandler extends AbstractTask {
     this.saveFilesInProject = saveFilesInProject;
     files = List.of(project.getDataFiles());
     numSteps = 1 /*dissect + merge */ + (saveFilesInProject ? files.size() : 0) /*save files*/
-        + 1 /*save batch file*/;
+        + 1 /*save batch file*/ + files.size() /*save stores*/;
     stepProgress = 1 / (double) numSteps;
   }
 
@@ -164,6 +176,93 @@ public class RawDataFileSaveHandler extends AbstractTask {
     return true;
   }
 
+  /**
+   * Writes a binary store of every raw data file (scans, mass lists and mobility scans) and an
+   * index of the stores to the project file. When the project is loaded, the stores are mapped
+   * instead of replaying the import batch. The index is written last, so the batch is used as a
+   * fallback if not all files can be stored.
+   *
+   * @return false if the stores could not be saved.
+   */
+  public boolean saveRawDataFileStores() throws IOException {
+    if (!files.stream().allMatch(RawDataFileStoreWriter::isSupported)) {
+      logger.info(() -> "Not all raw data files can be stored in the project file. Raw data files "
+          + "will be restored from the import batch on project load.");
+      progress += stepProgress * files.size();
+      return true;
+    }
+
+    try {
+      final DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+      final DocumentBuilder dbBuilder = dbFactory.newDocumentBuilder();
+      final Document document = dbBuilder.newDocument();
+      final Element root = document.createElement(CONST.XML_ROOT_ELEMENT);
+      final Element filesElement = document.createElement(CONST.XML_RAW_FILES_LIST_ELEMENT);
+      root.appendChild(filesElement);
+      document.appendChild(root);
+
+      for (int i = 0; i < files.size(); i++) {
+        final RawDataFile file = files.get(i);
+        description = prefix + "Storing scans of data file " + file.getName() + ".";
+        final String storePath = DATA_STORES_FOLDER + i + DATA_STORE_SUFFIX;
+
+        zipStream.putNextEntry(new ZipEntry(storePath));
+        new RawDataFileStoreWriter(file).write(zipStream);
+        filesElement.appendChild(createStoreElement(document, file, storePath));
+        progress += stepProgress;
+      }
+
+      TransformerFactory transfac = TransformerFactory.newInstance();
+      Transformer transformer = transfac.newTransformer();
+      transformer.setOutputProperty(OutputKeys.METHOD, "xml");
+      transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+      transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+      transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+
+      zipStream.putNextEntry(new ZipEntry(RAW_DATA_STORES_FILENAME));
+      transformer.transform(new DOMSource(document), new StreamResult(zipStream));
+    } catch (ParserConfigurationException | TransformerException | XMLStreamException e) {
+      logger.log(Level.WARNING, "Could not save raw data file stores.\n" + e.getMessage(), e);
+      return false;
+    }
+    return true;
+  }
+
+  private Element createStoreElement(Document document, RawDataFile file, String storePath) {
+    final Element fileElement = document.createElement(CONST.XML_RAW_FILE_ELEMENT);
+    fileElement.setAttribute(XML_RAW_FILE_TYPE_ATTR,
+        file instanceof IMSRawDataFile ? IMSRawDataFileImpl.SAVE_IDENTIFIER
+            : RawDataFileImpl.SAVE_IDENTIFIER);
+
+    final Element nameElement = document.createElement(CONST.XML_RAW_FILE_NAME_ELEMENT);
+    nameElement.setTextContent(file.getName());
+    fileElement.appendChild(nameElement);
+
+    if (file.getAbsolutePath() != null) {
+      final Element pathElement = document.createElement(CONST.XML_RAW_FILE_PATH_ELEMENT);
+      pathElement.setTextContent(file.getAbsolutePath());
+      fileElement.appendChild(pathElement);
+    }
+
+    final Element colorElement = document.createElement(XML_RAW_FILE_COLOR_ELEMENT);
+    colorElement.setTextContent(file.getColor().toString());
+    fileElement.appendChild(colorElement);
+
+    final Element storeElement = document.createElement(XML_RAW_FILE_STORE_ELEMENT);
+    storeElement.setTextContent(storePath);
+    fileElement.appendChild(storeElement);
+
+    final Element appliedMethodsList = document.createElement(
+        CONST.XML_FLIST_APPLIED_METHODS_LIST_ELEMENT);
+    for (FeatureListAppliedMethod appliedMethod : file.getAppliedMethods()) {
+      Element methodElement = document.createElement(CONST.XML_FLIST_APPLIED_METHOD_ELEMENT);
+      appliedMethod.saveValueToXML(methodElement);
+      appliedMethodsList.appendChild(methodElement);
+    }
+    fileElement.appendChild(appliedMethodsList);
+    return fileElement;
+  }
+
   /**
    * Replaces the raw data file paths in case an independent project is saved to an MZmine project
    * file.
@@ -304,7 +403,7 @@ public class RawDataFileSaveHandler extends AbstractTask {
     setStatus(TaskStatus.PROCESSING);
 
     try {
-      if (!saveRawDataFilesAsBatch()) {
+      if (!saveRawDataFilesAsBatch() || !saveRawDataFileStores()) {
         setStatus(TaskStatus.ERROR);
         return;
       }
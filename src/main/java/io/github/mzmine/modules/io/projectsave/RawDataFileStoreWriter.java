@@ -0,0 +1,302 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.modules.io.projectsave;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.msms.MsMsInfo;
+import io.github.mzmine.datamodel.msms.PasefMsMsInfo;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.DoubleBuffer;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Writes the scans, mass lists, mobility scans and MS/MS information of a {@link RawDataFile} to a
+ * binary store, so the file does not have to be imported and processed again when a project is
+ * loaded. The store is read by the RawDataFileStoreReader, which maps the data blocks directly.
+ * <p>
+ * Layout (big endian): {@link #MAGIC}, {@link #VERSION}, the data blocks, the scan table followed
+ * by the acquisition segments of IMS files and the offset of the scan table as the last long.
+ * Spectra are written as a block of m/z values directly followed by a block of intensity values.
+ * The mobility scans of a frame are written as m/z block, intensity block, storage offsets (int)
+ * and base peak indices (int).
+ */
+public class RawDataFileStoreWriter {
+
+  /**
+   * "MZST"
+   */
+  public static final int MAGIC = 0x4D5A5354;
+  /**
+   * Version 2 added the acquisition segments of IMS files.
+   */
+  public static final int VERSION = 2;
+  /**
+   * magic + version
+   */
+  public static final int HEADER_BYTES = 2 * Integer.BYTES;
+
+  public static final byte MASS_LIST_NONE = 0;
+  public static final byte MASS_LIST_STORED = 1;
+  /**
+   * The scan (or the mobility scans) is used as mass list.
+   */
+  public static final byte MASS_LIST_RAW_DATA = 2;
+
+  private final XMLOutputFactory xmlOutputFactory = XMLOutputFactory.newInstance();
+  private final RawDataFile file;
+
+  private DataOutputStream out;
+  private long position;
+  private double[] mzBuffer = new double[0];
+  private double[] intensityBuffer = new double[0];
+
+  public RawDataFileStoreWriter(@NotNull RawDataFile file) {
+    this.file = file;
+  }
+
+  /**
+   * Imaging files and scans of other types than {@link SimpleScan} and {@link SimpleFrame} are not
+   * supported and have to be restored by replaying the import batch.
+   *
+   * @return true if the file can be written to a store.
+   */
+  public static boolean isSupported(@NotNull RawDataFile file) {
+    if (file.getClass() == RawDataFileImpl.class) {
+      return file.getScans().stream().allMatch(s -> s.getClass() == SimpleScan.class);
+    }
+    if (file.getClass() == IMSRawDataFileImpl.class) {
+      return file.getScans().stream().allMatch(s -> s.getClass() == SimpleFrame.class);
+    }
+    return false;
+  }
+
+  /**
+   * Writes the store to the given stream. The stream is flushed but not closed.
+   *
+   * @param os The stream.
+   */
+  public void write(@NotNull OutputStream os) throws IOException, XMLStreamException {
+    out = new DataOutputStream(new BufferedOutputStream(os));
+    position = 0;
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    position += HEADER_BYTES;
+
+    // the scan table is small compared to the data, keep it in memory until all data is written
+    final ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+    final DataOutputStream table = new DataOutputStream(tableBytes);
+    table.writeInt(file.getNumOfScans());
+    for (Scan scan : file.getScans()) {
+      writeScan(scan, table);
+    }
+    writeSegments(table);
+    table.flush();
+
+    final long tableOffset = position;
+    tableBytes.writeTo(out);
+    out.writeLong(tableOffset);
+    out.flush();
+  }
+
+  private void writeScan(Scan scan, DataOutputStream table) throws IOException, XMLStreamException {
+    table.writeBoolean(scan instanceof Frame);
+    if (scan instanceof Frame frame) {
+      table.writeUTF(frame.getMobilityType().name());
+    }
+    table.writeInt(scan.getScanNumber());
+    table.writeInt(scan.getMSLevel());
+    table.writeFloat(scan.getRetentionTime());
+    table.writeUTF(scan.getPolarity().name());
+    table.writeUTF(scan.getSpectrumType().name());
+    table.writeUTF(scan.getScanDefinition());
+    table.writeDouble(scan.getScanningMZRange().lowerEndpoint());
+    table.writeDouble(scan.getScanningMZRange().upperEndpoint());
+
+    table.writeLong(writeSpectrum(scan));
+    table.writeInt(scan.getNumberOfDataPoints());
+
+    final MassList massList = scan.getMassList();
+    if (massList == null) {
+      table.writeByte(MASS_LIST_NONE);
+    } else if (massList instanceof ScanPointerMassList) {
+      table.writeByte(MASS_LIST_RAW_DATA);
+    } else {
+      table.writeByte(MASS_LIST_STORED);
+      table.writeLong(writeSpectrum(massList));
+      table.writeInt(massList.getNumberOfDataPoints());
+    }
+
+    if (scan instanceof Frame frame) {
+      writeFrame(frame, table);
+    } else {
+      table.writeUTF(toXml(scan.getMsMsInfo()));
+    }
+  }
+
+  /**
+   * Writes the frame ranges of the acquisition segments, sorted by their first frame.
+   */
+  private void writeSegments(DataOutputStream table) throws IOException {
+    final List<Range<Integer>> segments =
+        file instanceof IMSRawDataFileImpl imsFile ? imsFile.getSegments().stream()
+            .sorted(Comparator.comparing(Range::lowerEndpoint)).toList() : List.of();
+    table.writeInt(segments.size());
+    for (Range<Integer> segment : segments) {
+      table.writeInt(segment.lowerEndpoint());
+      table.writeInt(segment.upperEndpoint());
+    }
+  }
+
+  private void writeFrame(Frame frame, DataOutputStream table)
+      throws IOException, XMLStreamException {
+    final DoubleBuffer mobilities = frame.getMobilities();
+    final double[] mobilityValues = new double[mobilities != null ? mobilities.capacity() : 0];
+    if (mobilities != null) {
+      mobilities.get(0, mobilityValues);
+    }
+    table.writeLong(position);
+    table.writeInt(mobilityValues.length);
+    writeValues(mobilityValues, mobilityValues.length);
+
+    final MobilityScanStorage storage = ((SimpleFrame) frame).getMobilityScanStorage();
+    final int numMobilityScans = storage.getNumberOfMobilityScans();
+    final int[] offsets = new int[numMobilityScans];
+    final int[] basePeakIndices = new int[numMobilityScans];
+
+    // raw data of the mobility scans
+    final int numRawPoints = storage.getRawTotalNumPoints();
+    ensureCapacity(numRawPoints);
+    storage.getAllRawMobilityScanMzValues(mzBuffer);
+    storage.getAllRawMobilityScanIntensityValues(intensityBuffer);
+    for (int i = 0; i < numMobilityScans; i++) {
+      offsets[i] = storage.getRawStorageOffset(i);
+      basePeakIndices[i] = storage.getRawBasePeakIndex(i);
+    }
+    table.writeLong(position);
+    table.writeInt(numRawPoints);
+    table.writeInt(storage.getRawMaxNumPoints());
+    writeValues(mzBuffer, numRawPoints);
+    writeValues(intensityBuffer, numRawPoints);
+    writeValues(offsets);
+    writeValues(basePeakIndices);
+
+    // mass lists of the mobility scans
+    if (!storage.hasMassLists()) {
+      table.writeByte(MASS_LIST_NONE);
+    } else if (storage.isRawDataUsedAsMassLists()) {
+      table.writeByte(MASS_LIST_RAW_DATA);
+    } else {
+      final int numMassListPoints = storage.getMassListTotalNumPoints();
+      ensureCapacity(numMassListPoints);
+      storage.getAllMassListMzValues(mzBuffer);
+      storage.getAllMassListIntensityValues(intensityBuffer);
+      for (int i = 0; i < numMobilityScans; i++) {
+        offsets[i] = storage.getMassListStorageOffset(i);
+        basePeakIndices[i] = storage.getMassListBasePeakIndex(i);
+      }
+      table.writeByte(MASS_LIST_STORED);
+      table.writeLong(position);
+      table.writeInt(numMassListPoints);
+      table.writeInt(storage.getMassListMaxNumPoints());
+      writeValues(mzBuffer, numMassListPoints);
+      writeValues(intensityBuffer, numMassListPoints);
+      writeValues(offsets);
+      writeValues(basePeakIndices);
+    }
+
+    final Set<PasefMsMsInfo> precursorInfos = frame.getImsMsMsInfos();
+    table.writeInt(precursorInfos.size());
+    for (PasefMsMsInfo info : precursorInfos) {
+      table.writeUTF(toXml(info));
+    }
+  }
+
+  /**
+   * @return the offset of the spectrum in the store.
+   */
+  private long writeSpectrum(MassSpectrum spectrum) throws IOException {
+    final int numPoints = spectrum.getNumberOfDataPoints();
+    ensureCapacity(numPoints);
+    spectrum.getMzValues(mzBuffer);
+    spectrum.getIntensityValues(intensityBuffer);
+
+    final long offset = position;
+    writeValues(mzBuffer, numPoints);
+    writeValues(intensityBuffer, numPoints);
+    return offset;
+  }
+
+  private void writeValues(double[] values, int length) throws IOException {
+    for (int i = 0; i < length; i++) {
+      out.writeDouble(values[i]);
+    }
+    position += (long) length * Double.BYTES;
+  }
+
+  private void writeValues(int[] values) throws IOException {
+    for (int value : values) {
+      out.writeInt(value);
+    }
+    position += (long) values.length * Integer.BYTES;
+  }
+
+  private void ensureCapacity(int numPoints) {
+    if (mzBuffer.length < numPoints) {
+      mzBuffer = new double[numPoints];
+      intensityBuffer = new double[numPoints];
+    }
+  }
+
+  /**
+   * @return The xml representation of the info or an empty string if the info is null.
+   */
+  private String toXml(@Nullable MsMsInfo info) throws XMLStreamException {
+    if (info == null) {
+      return "";
+    }
+    final StringWriter str = new StringWriter();
+    final XMLStreamWriter writer = xmlOutputFactory.createXMLStreamWriter(str);
+    info.writeToXML(writer);
+    writer.close();
+    return str.toString();
+  }
+}
@@ -36,6 +36,7 @@ import io.github.mzmine.datamodel.features.types.FeaturesType;
 import io.github.mzmine.datamodel.features.types.ImageType;
 import io.github.mzmine.datamodel.features.types.fx.ColumnID;
 import io.github.mzmine.datamodel.features.types.fx.ColumnType;
+import io.github.mzmine.datamodel.features.types.fx.GraphicalCellCache;
 import io.github.mzmine.datamodel.features.types.modifiers.ExpandableType;
 import io.github.mzmine.datamodel.features.types.modifiers.SubColumnsFactory;
 import io.github.mzmine.datamodel.features.types.numbers.AreaType;
@@ -66,10 +67,12 @@ import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.collections.transformation.FilteredList;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.control.Label;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.SelectionMode;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeTableColumn;
@@ -103,6 +106,14 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
 
   // column map to keep track of columns
   private final Map<TreeTableColumn<ModularFeatureListRow, ?>, ColumnID> newColumnMap;
+  // sample columns by raw data file. The sub columns are created when the sample column is
+  // scrolled into view for the first time
+  private final Map<TreeTableColumn<ModularFeatureListRow, ?>, RawDataFile> sampleColumns =
+      new LinkedHashMap<>();
+  private final Set<TreeTableColumn<ModularFeatureListRow, ?>> emptySampleColumns =
+      new HashSet<>();
+  private ScrollBar horizontalScrollBar;
+  private boolean sampleColumnUpdateScheduled = false;
   private final ObjectProperty<ModularFeatureList> featureListProperty = new SimpleObjectProperty<>();
 
   public FeatureTableFX() {
@@ -135,6 +146,11 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
     MenuItem showSmallItem = new MenuItem("Compact LC/GC-MS");
     showSmallItem.setOnAction(e -> showCompactChromatographyColumns());
     contextMenuHelper.getAdditionalMenuItems().add(showSmallItem);
+
+    // create the sample columns that are scrolled into view
+    widthProperty().addListener((observable, oldValue, newValue) -> scheduleSampleColumnUpdate());
+    skinProperty().addListener(
+        (observable, oldValue, newValue) -> MZmineCore.runLater(this::initHorizontalScrollBar));
   }
 
   private void setTableEditable(boolean state) {
@@ -178,24 +194,37 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
    * Listens to update the table if a row is added/removed to/from the feature list.
    */
   public void onChanged(final Change<? extends FeatureListRow> c) {
-    c.next();
-    if (!(c.wasAdded() || c.wasRemoved())) {
+    boolean addedOrRemoved = false;
+    while (c.next()) {
+      if (c.wasRemoved()) {
+        // drop the charts of removed rows
+        GraphicalCellCache.forTable(this).removeRows(c.getRemoved());
+      }
+      addedOrRemoved |= c.wasAdded() || c.wasRemoved();
+    }
+    if (!addedOrRemoved) {
       return;
     }
 
     MZmineCore.runLater(() -> {
       getRoot().getChildren().clear();
-      rowItems.clear();
-      // add rows
-      for (FeatureListRow row : featureListProperty.get().getRows()) {
-        final ModularFeatureListRow mrow = (ModularFeatureListRow) row;
-        rowItems.add(new TreeItem<>(mrow));
-      }
+      setRowItems(featureListProperty.get());
       getRoot().getChildren().addAll(filteredRowItems);
       this.sort();
     });
   }
 
+  /**
+   * Creates the tree items of all rows and sets them in one step.
+   */
+  private void setRowItems(@NotNull FeatureList flist) {
+    final List<TreeItem<ModularFeatureListRow>> items = new ArrayList<>(flist.getNumberOfRows());
+    for (FeatureListRow row : flist.getRows()) {
+      items.add(new TreeItem<>((ModularFeatureListRow) row));
+    }
+    rowItems.setAll(items);
+  }
+
   /**
    * Add all columns of {@link FeatureListRow} data
    *
@@ -424,6 +453,8 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
 
   public void applyVisibilityParametersToAllColumns() {
     this.getColumns().forEach(this::recursivelyApplyVisibilityParameterToColumn);
+    // the width of the sample columns may have changed
+    scheduleSampleColumnUpdate();
   }
 
   private void addFeaturesColumns() {
@@ -431,7 +462,9 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
       return;
     }
 
-    // Add feature columns for each raw file
+    // Add a sample column for each raw file. Only the sub columns of the first sample are created
+    // right away, the others when they are scrolled into view
+    boolean first = true;
     for (RawDataFile dataFile : getFeatureList().getRawDataFiles()) {
       TreeTableColumn<ModularFeatureListRow, String> sampleCol = new TreeTableColumn<>();
 
@@ -440,35 +473,145 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
       headerLabel.setTextFill(dataFile.getColor());
       headerLabel.setGraphic(new ImageView(FxIconUtil.getFileIcon(dataFile.getColor())));
       sampleCol.setGraphic(headerLabel);
+      sampleCol.setSortable(false);
+
+      sampleColumns.put(sampleCol, dataFile);
+      if (first) {
+        addFeatureSubColumns(sampleCol, dataFile);
+        first = false;
+      } else {
+        emptySampleColumns.add(sampleCol);
+      }
+      // Add sample column
+      // NOTE: sample column is not added to the columnMap
+      this.getColumns().add(sampleCol);
+    }
+    scheduleSampleColumnUpdate();
+  }
 
-      // Add sub columns of feature
-      for (DataType ftype : getFeatureList().getFeatureTypes().values()) {
-        if (ftype instanceof ImageType && !(dataFile instanceof ImagingRawDataFile)) {
-          // non-imaging files don't need a image column
-          continue;
-        } else if (ftype instanceof FeatureShapeIonMobilityRetentionTimeHeatMapType && (
-            !(dataFile instanceof IMSRawDataFile) || dataFile instanceof ImagingRawDataFile)) {
-          // non ims files or ims-imaging files don't need a ims trace column
-          continue;
+  /**
+   * Adds the columns of all feature types to a sample column.
+   */
+  private void addFeatureSubColumns(TreeTableColumn<ModularFeatureListRow, ?> sampleCol,
+      RawDataFile dataFile) {
+    // Add sub columns of feature
+    for (DataType ftype : getFeatureList().getFeatureTypes().values()) {
+      if (ftype instanceof ImageType && !(dataFile instanceof ImagingRawDataFile)) {
+        // non-imaging files don't need a image column
+        continue;
+      } else if (ftype instanceof FeatureShapeIonMobilityRetentionTimeHeatMapType && (
+          !(dataFile instanceof IMSRawDataFile) || dataFile instanceof ImagingRawDataFile)) {
+        // non ims files or ims-imaging files don't need a ims trace column
+        continue;
+      }
+
+      TreeTableColumn<ModularFeatureListRow, ?> subCol = ftype.createColumn(dataFile, null);
+      if (subCol != null) {
+        if (ftype instanceof ExpandableType) {
+          setupExpandableColumn(ftype, subCol, ColumnType.FEATURE_TYPE, dataFile);
         }
+        sampleCol.getColumns().add(subCol);
+        registerColumn(subCol, ColumnType.FEATURE_TYPE, ftype, dataFile);
+        if (!(ftype instanceof ExpandableType)) {
+          recursivelyApplyVisibilityParameterToColumn(subCol);
+        }
+      }
+    }
+  }
 
-        TreeTableColumn<ModularFeatureListRow, ?> subCol = ftype.createColumn(dataFile, null);
-        if (subCol != null) {
-          if (ftype instanceof ExpandableType) {
-            setupExpandableColumn(ftype, subCol, ColumnType.FEATURE_TYPE, dataFile);
-          }
-          sampleCol.getColumns().add(subCol);
-          registerColumn(subCol, ColumnType.FEATURE_TYPE, ftype, dataFile);
-          //          newColumnMap.put(subCol, new ColumnID(ftype, ColumnType.FEATURE_TYPE, dataFile));
-          if (!(ftype instanceof ExpandableType)) {
-            recursivelyApplyVisibilityParameterToColumn(subCol);
-          }
+  /**
+   * Finds the horizontal scroll bar of the table once the skin was created.
+   */
+  private void initHorizontalScrollBar() {
+    if (horizontalScrollBar != null) {
+      return;
+    }
+    for (Node node : lookupAll(".scroll-bar")) {
+      if (node instanceof ScrollBar bar && bar.getOrientation() == Orientation.HORIZONTAL) {
+        horizontalScrollBar = bar;
+        bar.valueProperty()
+            .addListener((observable, oldValue, newValue) -> scheduleSampleColumnUpdate());
+        scheduleSampleColumnUpdate();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Updates the sample columns once after all pending changes to the scroll position, the width or
+   * the visibility of the columns.
+   */
+  private void scheduleSampleColumnUpdate() {
+    if (sampleColumnUpdateScheduled || emptySampleColumns.isEmpty()) {
+      return;
+    }
+    sampleColumnUpdateScheduled = true;
+    MZmineCore.runLater(() -> {
+      sampleColumnUpdateScheduled = false;
+      createSampleColumnsInView();
+    });
+  }
+
+  /**
+   * Creates the sub columns of all sample columns in the visible part of the table. Sample columns
+   * without sub columns are placeholders with the width of a sample column with sub columns, so the
+   * horizontal scroll range stays the same.
+   */
+  private void createSampleColumnsInView() {
+    if (emptySampleColumns.isEmpty() || getFeatureList() == null) {
+      return;
+    }
+    final double placeholderWidth = getSampleColumnWidth();
+    final double viewStart = horizontalScrollBar != null ? horizontalScrollBar.getValue() : 0d;
+    final double viewEnd = viewStart + getWidth();
+
+    double x = 0;
+    for (TreeTableColumn<ModularFeatureListRow, ?> col : List.copyOf(getColumns())) {
+      final double width;
+      if (emptySampleColumns.contains(col)) {
+        if (placeholderWidth <= 0) {
+          // all feature columns are hidden
+          col.setVisible(false);
+          continue;
         }
+        col.setVisible(true);
+        col.setPrefWidth(placeholderWidth);
+        width = placeholderWidth;
+        if (x < viewEnd && x + width > viewStart) {
+          emptySampleColumns.remove(col);
+          addFeatureSubColumns(col, sampleColumns.get(col));
+        }
+      } else {
+        width = col.isVisible() ? col.getWidth() : 0d;
       }
-      // Add sample column
-      // NOTE: sample column is not added to the columnMap
-      this.getColumns().add(sampleCol);
+      x += width;
+    }
+  }
+
+  /**
+   * @return the width of the visible feature columns of a sample
+   */
+  private double getSampleColumnWidth() {
+    for (TreeTableColumn<ModularFeatureListRow, ?> col : sampleColumns.keySet()) {
+      if (!emptySampleColumns.contains(col)) {
+        return getVisibleWidth(col);
+      }
+    }
+    return 0d;
+  }
+
+  private static double getVisibleWidth(TreeTableColumn<ModularFeatureListRow, ?> col) {
+    if (!col.isVisible()) {
+      return 0d;
+    }
+    if (col.getColumns().isEmpty()) {
+      return col.getWidth();
     }
+    double width = 0d;
+    for (TreeTableColumn<ModularFeatureListRow, ?> child : col.getColumns()) {
+      width += getVisibleWidth(child);
+    }
+    return width;
   }
 
   private void initHandleDoubleClicks() {
@@ -621,10 +764,13 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
   private void initFeatureListListener() {
     featureListProperty().addListener((observable, oldValue, newValue) -> {
       MZmineCore.runLater(() -> {
-        // Clear old rows and old columns
+        // Clear old rows, old columns and charts
         getRoot().getChildren().clear();
         getColumns().clear();
+        sampleColumns.clear();
+        emptySampleColumns.clear();
         rowItems.clear();
+        GraphicalCellCache.forTable(this).clear();
 
         // remove the old listener
         if (oldValue != null) {
@@ -637,10 +783,7 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
         }
 
         // add rows
-        for (FeatureListRow row : newValue.getRows()) {
-          final ModularFeatureListRow mrow = (ModularFeatureListRow) row;
-          rowItems.add(new TreeItem<>(mrow));
-        }
+        setRowItems(newValue);
 
         TreeItem<ModularFeatureListRow> root = getRoot();
         root.getChildren().addAll(filteredRowItems);
@@ -687,8 +830,7 @@ public class FeatureTableFX extends TreeTableView<ModularFeatureListRow> impleme
       return;
     }
     flist.getRows().removeListener(this);
-    flist.modularParallelStream().forEach(ModularFeatureListRow::clearBufferedColCharts);
-    flist.parallelStreamFeatures().forEach(ModularFeature::clearBufferedColCharts);
+    GraphicalCellCache.forTable(this).clear();
   }
 
   public DataTypeCheckListParameter getRowTypesParameter() {
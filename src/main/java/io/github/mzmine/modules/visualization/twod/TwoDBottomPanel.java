@@ -31,8 +31,9 @@ import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.RangeUtils;
 import io.github.mzmine.util.SortingDirection;
 import io.github.mzmine.util.SortingProperty;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Vector;
+import java.util.List;
 import javafx.collections.FXCollections;
 import javafx.scene.control.Button;
 import javafx.scene.control.ComboBox;
@@ -191,8 +192,6 @@ class TwoDBottomPanel extends HBox {
     ModularFeatureList newList =
         new ModularFeatureList(selectedFeatureList.getName(), flistStorage, selectedFeatureList.getRawDataFiles());
 
-    Vector<FeatureListRow> featureRows = new Vector<FeatureListRow>();
-
     Range<Double> mzRange = selectedFeatureList.getRowsMZRange();
     Range<Float> rtRange = selectedFeatureList.getRowsRTRange();
 
@@ -202,11 +201,8 @@ class TwoDBottomPanel extends HBox {
       rtRange = RangeUtils.toFloatRange(masterFrame.getPlot().getXYPlot().getDomainRange());
     }
 
-    for (FeatureListRow featureListRow : selectedFeatureList.getRows()) {
-      if (mzRange.contains(featureListRow.getAverageMZ()) && rtRange.contains(featureListRow.getAverageRT())) {
-        featureRows.add(featureListRow);
-      }
-    }
+    List<FeatureListRow> featureRows = new ArrayList<>(
+        selectedFeatureList.getRowsInsideScanAndMZRange(rtRange, mzRange));
 
     Collections.sort(featureRows,
         new FeatureListRowSorter(SortingProperty.Intensity, SortingDirection.Descending));
@@ -214,7 +210,7 @@ class TwoDBottomPanel extends HBox {
     if (threshold > featureRows.size())
       threshold = featureRows.size();
     for (int i = 0; i < threshold; i++) {
-      newList.addRow(featureRows.elementAt(i));
+      newList.addRow(featureRows.get(i));
     }
     return newList;
   }
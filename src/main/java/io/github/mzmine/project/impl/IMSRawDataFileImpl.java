@@ -27,11 +27,13 @@ import io.github.mzmine.datamodel.Scan;
 import io.github.mzmine.util.MemoryMapStorage;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import javafx.collections.FXCollections;
@@ -275,6 +277,14 @@ public class IMSRawDataFileImpl extends RawDataFileImpl implements IMSRawDataFil
     segmentMobilityRange.put(frameRange, null);
   }
 
+  /**
+   * @return The frame ranges (inclusive) of the acquisition segments.
+   */
+  @NotNull
+  public Set<Range<Integer>> getSegments() {
+    return Collections.unmodifiableSet(segmentMobilityRange.keySet());
+  }
+
   /**
    * @param frameNumber The frame number
    * @param mobilitySpectrumNumber The mobility spectrum number with regard to the frame.
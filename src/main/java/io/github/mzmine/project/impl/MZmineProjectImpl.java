@@ -29,6 +29,7 @@ import io.github.mzmine.parameters.UserParameter;
 import io.github.mzmine.project.impl.ProjectChangeEvent.Type;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.spectraldb.entry.SpectralLibrary;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryIndex;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -398,6 +399,9 @@ public class MZmineProjectImpl implements MZmineProject {
       spectralLibraries.removeAll(library);
       fireLibrariesChangeEvent(List.of(library), Type.REMOVED);
     }
+    for (SpectralLibrary lib : library) {
+      SpectralLibraryIndex.release(lib.getPath());
+    }
   }
 
   @Override
@@ -25,12 +25,15 @@ import io.github.mzmine.datamodel.MassList;
 import io.github.mzmine.datamodel.PolarityType;
 import io.github.mzmine.datamodel.RawDataFile;
 import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.data_access.MzBinnedXicIndex;
+import io.github.mzmine.datamodel.data_access.ScanMetadataTable;
 import io.github.mzmine.datamodel.features.FeatureList.FeatureListAppliedMethod;
 import io.github.mzmine.main.MZmineCore;
 import io.github.mzmine.util.MemoryMapStorage;
 import io.github.mzmine.util.files.FileAndPathUtil;
 import io.github.mzmine.util.javafx.FxColorUtil;
 import java.io.IOException;
+import java.lang.ref.SoftReference;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Objects;
@@ -88,6 +91,12 @@ public class RawDataFileImpl implements RawDataFile {
   protected final ObservableList<FeatureListAppliedMethod> appliedMethods = FXCollections
       .observableArrayList();
 
+  // m/z index of the last requested scans. Reset when scans or mass lists change, released by the
+  // garbage collector when memory is low
+  private volatile SoftReference<MzBinnedXicIndex> xicIndex;
+  // scan metadata with rt and precursor indices. Reset when scans change
+  private volatile ScanMetadataTable scanTable;
+
   public RawDataFileImpl(@NotNull final String dataFileName, @Nullable final String absolutePath,
       @Nullable final MemoryMapStorage storage) throws IOException {
     this(dataFileName, absolutePath, storage,
@@ -156,42 +165,19 @@ public class RawDataFileImpl implements RawDataFile {
     if (rt > getDataRTRange(mslevel).upperEndpoint()) {
       return null;
     }
-    Range<Float> range = Range.closed(rt - 2, rt + 2);
-    Scan[] scanNumbers = getScanNumbers(mslevel, range);
-    double minDiff = 10E6;
-
-    for (int i = 0; i < scanNumbers.length; i++) {
-      Scan scanNum = scanNumbers[i];
-      double diff = Math.abs(rt - scanNum.getRetentionTime());
-      if (diff < minDiff) {
-        minDiff = diff;
-      } else if (diff > minDiff) { // not triggered in first run
-        return scanNumbers[i - 1]; // the previous one was better
-      }
-    }
-    return null;
+    return getScanTable().getClosestScan(mslevel, rt, 2f);
   }
 
   /**
    * @param rt The rt
-   * @return The scan at a given retention time within a range of 2 (min/sec?) or null if no scan
-   * can be found.
+   * @return The scan at a given retention time or null if no scan can be found.
    */
   @Override
   public Scan getScanNumberAtRT(float rt) {
     if (rt > getDataRTRange().upperEndpoint()) {
       return null;
     }
-    double minDiff = 10E10;
-    for (Scan scan : scans) {
-      double diff = Math.abs(rt - scan.getRetentionTime());
-      if (diff < minDiff) {
-        minDiff = diff;
-      } else if (diff > minDiff) { // not triggered in first run
-        return scan;
-      }
-    }
-    return null;
+    return getScanTable().getClosestScan(rt);
   }
 
   /**
@@ -200,7 +186,7 @@ public class RawDataFileImpl implements RawDataFile {
   @Override
   @NotNull
   public List<Scan> getScanNumbers(int msLevel) {
-    return scans.stream().filter(s -> s.getMSLevel() == msLevel).collect(Collectors.toList());
+    return getScanTable().getScans(msLevel);
   }
 
   /**
@@ -208,9 +194,7 @@ public class RawDataFileImpl implements RawDataFile {
    */
   @Override
   public @NotNull Scan[] getScanNumbers(int msLevel, @NotNull Range<Float> rtRange) {
-    return scans.stream()
-        .filter(s -> s.getMSLevel() == msLevel && rtRange.contains(s.getRetentionTime()))
-        .toArray(Scan[]::new);
+    return getScanTable().getScans(msLevel, rtRange);
   }
 
   /**
@@ -219,7 +203,7 @@ public class RawDataFileImpl implements RawDataFile {
   @Override
   @NotNull
   public int[] getMSLevels() {
-    return scans.stream().mapToInt(Scan::getMSLevel).distinct().sorted().toArray();
+    return getScanTable().getMSLevels();
   }
 
   /**
@@ -312,6 +296,8 @@ public class RawDataFileImpl implements RawDataFile {
     dataRTRange.clear();
     dataMaxBasePeakIntensity.clear();
     dataMaxTIC.clear();
+    xicIndex = null;
+    scanTable = null;
   }
 
 
@@ -417,7 +403,7 @@ public class RawDataFileImpl implements RawDataFile {
 
   @Override
   public int getNumOfScans(int msLevel) {
-    return getScanNumbers(msLevel).size();
+    return getScanTable().getNumberOfScans(msLevel);
   }
 
   @NotNull
@@ -521,6 +507,42 @@ public class RawDataFileImpl implements RawDataFile {
    * @param masses new mass list
    */
   public void applyMassListChanged(Scan scan, MassList old, MassList masses) {
+    xicIndex = null;
+  }
+
+  /**
+   * The index of the last requested scans is kept until the scans or mass lists of this file
+   * change or until memory is low.
+   */
+  @Nullable
+  @Override
+  public synchronized MzBinnedXicIndex getXicIndex(@NotNull List<? extends Scan> scans) {
+    final SoftReference<MzBinnedXicIndex> ref = xicIndex;
+    MzBinnedXicIndex index = ref != null ? ref.get() : null;
+    if (index == null || !index.getScans().equals(scans)) {
+      index = MzBinnedXicIndex.create(scans, storageMemoryMap);
+      xicIndex = index != null ? new SoftReference<>(index) : null;
+    }
+    return index;
+  }
+
+  /**
+   * The table is kept until scans are added to this file.
+   */
+  @NotNull
+  @Override
+  public ScanMetadataTable getScanTable() {
+    ScanMetadataTable table = scanTable;
+    if (table == null) {
+      synchronized (this) {
+        table = scanTable;
+        if (table == null) {
+          table = ScanMetadataTable.create(scans);
+          scanTable = table;
+        }
+      }
+    }
+    return table;
   }
 
   @Nullable
@@ -39,6 +39,17 @@ public interface Task extends Runnable {
    */
   public TaskPriority getTaskPriority();
 
+  /**
+   * The kind of work this task is mostly doing. I/O tasks, e.g., exporters, do not take one of the
+   * CPU threads. Importers that parse and decode the spectra (mzML, mzXML, TDF, ...) are CPU tasks.
+   * See {@link TaskType}.
+   *
+   * @return the type of this task, {@link TaskType#CPU} by default
+   */
+  public default TaskType getTaskType() {
+    return TaskType.CPU;
+  }
+
   /**
    * Cancel a running task by user request.
    */
@@ -20,6 +20,7 @@ package io.github.mzmine.taskcontrol;
 
 import io.github.mzmine.taskcontrol.impl.TaskQueue;
 import io.github.mzmine.taskcontrol.impl.WrappedTask;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * 
@@ -34,6 +35,15 @@ public interface TaskController {
 
   public WrappedTask[] addTasks(Task tasks[], TaskPriority[] priority);
 
+  /**
+   * Adds tasks that belong to a group, e.g., the steps of one of multiple concurrent batch jobs.
+   * Free threads are shared between the groups, so one group cannot starve the others by
+   * submitting many tasks.
+   *
+   * @param group the group or null for the default group
+   */
+  public WrappedTask[] addTasks(Task tasks[], @Nullable String group);
+
   public void setTaskPriority(Task task, TaskPriority priority);
 
   public void addTaskControlListener(TaskControlListener listener);
@@ -16,16 +16,13 @@
  *
  */
 
-package io.github.mzmine.modules.dataprocessing.featdet_gridmass;
+package io.github.mzmine.taskcontrol;
 
-import io.github.mzmine.datamodel.DataPoint;
-
-class IndexedDataPoint {
-  DataPoint datapoint;
-  int index;
-
-  public IndexedDataPoint(int index, DataPoint dp) {
-    this.datapoint = dp;
-    this.index = index;
-  }
+/**
+ * Defines the kind of work a task is mostly doing. The task controller starts CPU tasks according
+ * to the number of threads in the preferences. I/O tasks mostly wait for the disk or network and
+ * are started independently of the CPU tasks, so they do not block the CPU threads.
+ */
+public enum TaskType {
+  CPU, IO
 }
@@ -29,11 +29,17 @@ import io.github.mzmine.taskcontrol.TaskControlListener;
 import io.github.mzmine.taskcontrol.TaskController;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.taskcontrol.TaskType;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 import java.util.logging.Logger;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Task controller implementation
@@ -56,6 +62,12 @@ public class TaskControllerImpl implements TaskController, Runnable {
    */
   private Vector<WorkerThread> runningThreads;
 
+  /**
+   * Running threads of NORMAL priority tasks of {@link TaskType#IO}. These do not count towards the
+   * number of concurrent threads, the maximum number is specified separately in the preferences.
+   */
+  private Vector<WorkerThread> runningIoThreads;
+
   /**
    * Initialize the task controller
    */
@@ -65,6 +77,7 @@ public class TaskControllerImpl implements TaskController, Runnable {
     taskQueue = new TaskQueue();
 
     runningThreads = new Vector<WorkerThread>();
+    runningIoThreads = new Vector<WorkerThread>();
 
     // Create a low-priority thread that will manage the queue and start
     // worker threads for tasks
@@ -103,8 +116,23 @@ public class TaskControllerImpl implements TaskController, Runnable {
     return addTasks(tasks, prio);
   }
 
+  @Override
+  public WrappedTask[] addTasks(Task tasks[], @Nullable String group) {
+    if (tasks == null || tasks.length == 0) {
+      return new WrappedTask[0];
+    }
+
+    TaskPriority[] prio = Arrays.stream(tasks).map(Task::getTaskPriority)
+        .toArray(TaskPriority[]::new);
+    return addTasks(tasks, prio, group);
+  }
+
   @Override
   public WrappedTask[] addTasks(Task tasks[], TaskPriority[] priorities) {
+    return addTasks(tasks, priorities, null);
+  }
+
+  private WrappedTask[] addTasks(Task tasks[], TaskPriority[] priorities, @Nullable String group) {
     // It can sometimes happen during a batch that no tasks are actually
     // executed --> tasks[] array may be empty
     if ((tasks == null) || (tasks.length == 0)) {
@@ -115,7 +143,7 @@ public class TaskControllerImpl implements TaskController, Runnable {
     for (int i = 0; i < tasks.length; i++) {
       Task task = tasks[i];
       TaskPriority priority = priorities[i];
-      WrappedTask newQueueEntry = new WrappedTask(task, priority);
+      WrappedTask newQueueEntry = new WrappedTask(task, priority, group);
       taskQueue.addWrappedTask(newQueueEntry);
       wrappedTasks[i] = newQueueEntry;
       // logger.finest("Added wrapped task for " +
@@ -171,13 +199,8 @@ public class TaskControllerImpl implements TaskController, Runnable {
       }
 
       // Remove already finished threads from runningThreads
-      Iterator<WorkerThread> threadIterator = runningThreads.iterator();
-      while (threadIterator.hasNext()) {
-        WorkerThread thread = threadIterator.next();
-        if (thread.isFinished()) {
-          threadIterator.remove();
-        }
-      }
+      runningThreads.removeIf(WorkerThread::isFinished);
+      runningIoThreads.removeIf(WorkerThread::isFinished);
 
       // Get a snapshot of the queue
       WrappedTask[] queueSnapshot = taskQueue.getQueueSnapshot();
@@ -191,8 +214,15 @@ public class TaskControllerImpl implements TaskController, Runnable {
       } else {
         maxRunningThreads = parameter.getValue();
       }
+      // 0 for the same limit as the CPU tasks
+      final Integer maxIoParameter = MZmineCore.getConfiguration().getPreferences()
+          .getParameter(MZminePreferences.maxIoTasks).getValue();
+      final int maxRunningIoThreads =
+          maxIoParameter == null || maxIoParameter <= 0 ? maxRunningThreads : maxIoParameter;
 
       // Check all tasks in the queue
+      final List<WrappedTask> waitingCpuTasks = new ArrayList<>();
+      final List<WrappedTask> waitingIoTasks = new ArrayList<>();
       for (WrappedTask task : queueSnapshot) {
 
         // Skip assigned and canceled tasks
@@ -200,19 +230,18 @@ public class TaskControllerImpl implements TaskController, Runnable {
           continue;
         }
 
-        // Create a new thread if the task is high-priority or if we
-        // have less then maximum # of threads running
-        if ((task.getPriority() == TaskPriority.HIGH) || (runningThreads.size()
-            < maxRunningThreads)) {
-          WorkerThread newThread = new WorkerThread(task);
-
-          if (task.getPriority() == TaskPriority.NORMAL) {
-            runningThreads.add(newThread);
-          }
-
-          newThread.start();
+        // Create a new thread if the task is high-priority, the others wait for free threads
+        if (task.getPriority() == TaskPriority.HIGH) {
+          new WorkerThread(task).start();
+        } else if (task.getActualTask().getTaskType() == TaskType.IO) {
+          // I/O tasks have their own threads and do not block the CPU threads
+          waitingIoTasks.add(task);
+        } else {
+          waitingCpuTasks.add(task);
         }
       }
+      startTasksFairly(waitingCpuTasks, runningThreads, maxRunningThreads);
+      startTasksFairly(waitingIoTasks, runningIoThreads, maxRunningIoThreads);
 
       // Refresh the tasks window
       Desktop desktop = MZmineCore.getDesktop();
@@ -231,6 +260,55 @@ public class TaskControllerImpl implements TaskController, Runnable {
 
   }
 
+  /**
+   * Starts waiting tasks while there are less than the maximum number of threads running. Tasks
+   * of different groups (see {@link #addTasks(Task[], String)}) take turns: the next task is
+   * taken from the group with the fewest running tasks, within a group tasks start in queue
+   * order.
+   *
+   * @param waitingTasks tasks in queue order
+   * @param threads      the running threads of this type of tasks
+   * @param maxThreads   maximum number of running threads
+   */
+  private void startTasksFairly(List<WrappedTask> waitingTasks, Vector<WorkerThread> threads,
+      int maxThreads) {
+    if (waitingTasks.isEmpty() || threads.size() >= maxThreads) {
+      return;
+    }
+
+    final Map<String, Integer> runningPerGroup = new HashMap<>();
+    for (WorkerThread thread : threads.toArray(WorkerThread[]::new)) {
+      runningPerGroup.merge(thread.getWrappedTask().getGroup(), 1, Integer::sum);
+    }
+    final Map<String, ArrayDeque<WrappedTask>> waitingPerGroup = new LinkedHashMap<>();
+    for (WrappedTask task : waitingTasks) {
+      waitingPerGroup.computeIfAbsent(task.getGroup(), g -> new ArrayDeque<>()).add(task);
+    }
+
+    while (threads.size() < maxThreads && !waitingPerGroup.isEmpty()) {
+      String nextGroup = null;
+      int minRunning = Integer.MAX_VALUE;
+      for (String group : waitingPerGroup.keySet()) {
+        final int running = runningPerGroup.getOrDefault(group, 0);
+        if (running < minRunning) {
+          minRunning = running;
+          nextGroup = group;
+        }
+      }
+
+      final ArrayDeque<WrappedTask> groupTasks = waitingPerGroup.get(nextGroup);
+      final WrappedTask task = groupTasks.poll();
+      if (groupTasks.isEmpty()) {
+        waitingPerGroup.remove(nextGroup);
+      }
+
+      WorkerThread newThread = new WorkerThread(task);
+      threads.add(newThread);
+      runningPerGroup.merge(nextGroup, 1, Integer::sum);
+      newThread.start();
+    }
+  }
+
   @Override
   public void setTaskPriority(Task task, TaskPriority priority) {
 
@@ -268,10 +346,12 @@ public class TaskControllerImpl implements TaskController, Runnable {
       }
     }
 
-    var running = runningThreads.toArray(WorkerThread[]::new);
-    for (WorkerThread runningThread : running) {
-      if (clazz.isInstance(runningThread.getWrappedTask().getActualTask())) {
-        return true;
+    for (Vector<WorkerThread> threads : List.of(runningThreads, runningIoThreads)) {
+      var running = threads.toArray(WorkerThread[]::new);
+      for (WorkerThread runningThread : running) {
+        if (clazz.isInstance(runningThread.getWrappedTask().getActualTask())) {
+          return true;
+        }
       }
     }
 
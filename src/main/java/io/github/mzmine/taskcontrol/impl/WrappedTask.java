@@ -22,6 +22,7 @@ import io.github.mzmine.taskcontrol.Task;
 import io.github.mzmine.taskcontrol.TaskPriority;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Wrapper class for Tasks that stores additional information
@@ -45,10 +46,24 @@ public class WrappedTask {
   private Task task;
   private TaskPriority priority;
   private WorkerThread assignedTo;
+  private final String group;
 
   public WrappedTask(Task task, TaskPriority priority) {
+    this(task, priority, null);
+  }
+
+  public WrappedTask(Task task, TaskPriority priority, @Nullable String group) {
     this.task = task;
     this.priority = priority;
+    this.group = group;
+  }
+
+  /**
+   * @return the group that shares threads with other groups, or null for the default group
+   */
+  @Nullable
+  String getGroup() {
+    return group;
   }
 
   /**
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keeps track of the bytes stored by {@link MemoryMapStorage}s and decides whether a new array is
+ * kept on the heap or written to a memory mapped temp file. Arrays are kept on the heap as long as
+ * the configured budget is not exhausted, all further arrays spill to the memory mapped files. Each
+ * storage counts the bytes it keeps on the heap and releases them from the budget when it is
+ * discarded, together with its temporary files.
+ * <p>
+ * A budget of 0 (the default) memory maps everything, which is the behaviour of {@link
+ * MemoryMapStorage} without a budget. The {@link io.github.mzmine.main.KeepInMemory} option is
+ * applied before the budget, data of categories that are kept in memory never reach a storage.
+ */
+public class MemoryBudgetManager {
+
+  private static final Logger logger = Logger.getLogger(MemoryBudgetManager.class.getName());
+  private static final MemoryBudgetManager instance = new MemoryBudgetManager();
+
+  private final AtomicLong budget = new AtomicLong(0L);
+  private final AtomicLong residentTotal = new AtomicLong(0L);
+
+  private final AtomicLongArray residentBytes = new AtomicLongArray(Category.values().length);
+  private final AtomicLongArray residentArrays = new AtomicLongArray(Category.values().length);
+  private final AtomicLongArray spilledBytes = new AtomicLongArray(Category.values().length);
+  private final AtomicLongArray spilledArrays = new AtomicLongArray(Category.values().length);
+
+  private MemoryBudgetManager() {
+  }
+
+  @NotNull
+  public static MemoryBudgetManager getInstance() {
+    return instance;
+  }
+
+  /**
+   * @param bytes the number of bytes that may be kept on the heap by all {@link MemoryMapStorage}s.
+   *              0 to memory map all data. Only applies to new data.
+   */
+  public void setBudget(final long bytes) {
+    budget.set(Math.max(0L, bytes));
+    logger.info(() -> "Memory budget for temporary data set to " + (bytes >> 20) + " MB");
+  }
+
+  public long getBudget() {
+    return budget.get();
+  }
+
+  /**
+   * @return the number of bytes that are currently kept on the heap.
+   */
+  public long getResidentBytes() {
+    return residentTotal.get();
+  }
+
+  /**
+   * Reserves heap space for an array. If the reservation succeeds, the space has to be returned
+   * with {@link #release(Category, long, long)} once the array is no longer used.
+   *
+   * @param category the storage category of the array
+   * @param bytes    the size of the array in bytes
+   * @return true if the array may be kept on the heap, false if it has to be memory mapped.
+   */
+  public boolean tryReserve(@NotNull final Category category, final long bytes) {
+    final long limit = budget.get();
+    long current;
+    do {
+      current = residentTotal.get();
+      if (current + bytes > limit) {
+        return false;
+      }
+    } while (!residentTotal.compareAndSet(current, current + bytes));
+
+    final int c = category.ordinal();
+    residentBytes.addAndGet(c, bytes);
+    residentArrays.incrementAndGet(c);
+    return true;
+  }
+
+  /**
+   * Releases the space reserved by {@link #tryReserve(Category, long)} for a number of arrays.
+   *
+   * @param category the storage category of the arrays
+   * @param bytes    the reserved bytes of all arrays
+   * @param arrays   the number of arrays
+   */
+  public void release(@NotNull final Category category, final long bytes, final long arrays) {
+    if (arrays == 0L) {
+      return;
+    }
+    final int c = category.ordinal();
+    residentTotal.addAndGet(-bytes);
+    residentBytes.addAndGet(c, -bytes);
+    residentArrays.addAndGet(c, -arrays);
+  }
+
+  /**
+   * Records an array that was written to a memory mapped file.
+   */
+  public void recordSpill(@NotNull final Category category, final long bytes) {
+    final int c = category.ordinal();
+    spilledBytes.addAndGet(c, bytes);
+    spilledArrays.incrementAndGet(c);
+  }
+
+  @NotNull
+  public Metrics getMetrics(@NotNull final Category category) {
+    final int c = category.ordinal();
+    return new Metrics(category, residentBytes.get(c), residentArrays.get(c), spilledBytes.get(c),
+        spilledArrays.get(c));
+  }
+
+  @NotNull
+  public List<Metrics> getMetrics() {
+    return Arrays.stream(Category.values()).map(this::getMetrics).toList();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder b = new StringBuilder("Memory budget: ").append(getResidentBytes() >> 20)
+        .append("/").append(getBudget() >> 20).append(" MB used");
+    for (Metrics m : getMetrics()) {
+      b.append("\n").append(m);
+    }
+    return b.toString();
+  }
+
+  /**
+   * The kind of data stored by a {@link MemoryMapStorage}.
+   */
+  public enum Category {
+    FEATURES, RAW_FILES, MASS_LISTS, OTHER
+  }
+
+  /**
+   * @param residentBytes  bytes that are currently kept on the heap
+   * @param residentArrays number of arrays that are currently kept on the heap
+   * @param spilledBytes   bytes that were written to memory mapped files
+   * @param spilledArrays  number of arrays that were written to memory mapped files
+   */
+  public record Metrics(Category category, long residentBytes, long residentArrays,
+                        long spilledBytes, long spilledArrays) {
+
+    @Override
+    public String toString() {
+      return String.format("%s: %d MB in %d arrays on heap, %d MB in %d arrays memory mapped",
+          category, residentBytes >> 20, residentArrays, spilledBytes >> 20, spilledArrays);
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package io.github.mzmine.util;
 
 import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.util.MemoryBudgetManager.Category;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
@@ -29,6 +30,7 @@ import java.nio.IntBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -60,6 +62,11 @@ import sun.misc.Unsafe;
  * The total amount of storage space is also limited by the amount of addressable virtual memory
  * (e.g., 128TB on Linux). For this reason, this approach requires a 64-bit system - the limit would
  * be only 2GB on a 32-bit system.
+ * <p>
+ * If a memory budget is set in the {@link MemoryBudgetManager}, arrays are kept in heap buffers
+ * until the budget is exhausted and only the remaining arrays are written to the temporary files.
+ * Consumers of the returned buffers do not see a difference. The heap space is returned to the
+ * budget when the storage is discarded.
  */
 public class MemoryMapStorage {
 
@@ -71,6 +78,15 @@ public class MemoryMapStorage {
   private final Logger logger = Logger.getLogger(this.getClass().getName());
   private final Set<File> temporaryFiles = new HashSet<>();
   private final List<MappedByteBuffer> mappedByteBufferList = new ArrayList<>();
+  private final MemoryBudgetManager budgetManager = MemoryBudgetManager.getInstance();
+  private final Category category;
+
+  /**
+   * Bytes and number of the arrays kept on the heap by this storage, released from the budget in
+   * {@link #discard(Unsafe)}.
+   */
+  private long heapBytes = 0L;
+  private long heapArrays = 0L;
 
   private static boolean storeFeaturesInRam = false;
   private static boolean storeRawFilesInRam = false;
@@ -81,7 +97,7 @@ public class MemoryMapStorage {
    */
   @Nullable
   public static MemoryMapStorage forFeatureList() {
-    return storeFeaturesInRam ? null : new MemoryMapStorage();
+    return storeFeaturesInRam ? null : new MemoryMapStorage(Category.FEATURES);
   }
 
   /**
@@ -89,7 +105,7 @@ public class MemoryMapStorage {
    */
   @Nullable
   public static MemoryMapStorage forRawDataFile() {
-    return storeRawFilesInRam ? null : new MemoryMapStorage();
+    return storeRawFilesInRam ? null : new MemoryMapStorage(Category.RAW_FILES);
   }
 
   /**
@@ -97,15 +113,16 @@ public class MemoryMapStorage {
    */
   @Nullable
   public static MemoryMapStorage forMassList() {
-    return storeMassListsInRam ? null : new MemoryMapStorage();
+    return storeMassListsInRam ? null : new MemoryMapStorage(Category.MASS_LISTS);
   }
 
   @NotNull
   public static MemoryMapStorage create() {
-    return new MemoryMapStorage();
+    return new MemoryMapStorage(Category.OTHER);
   }
 
-  private MemoryMapStorage() {
+  private MemoryMapStorage(@NotNull final Category category) {
+    this.category = category;
     // register this storage to MZmineCore, so we can delete all temp files later.
     MZmineCore.registerStorage(this);
   }
@@ -149,6 +166,23 @@ public class MemoryMapStorage {
 
   }
 
+  /**
+   * Reserves heap space for an array in the memory budget or records that the array is memory
+   * mapped.
+   *
+   * @param bytes the size of the array in bytes
+   * @return true if the array shall be kept on the heap.
+   */
+  private boolean keepOnHeap(final long bytes) {
+    if (budgetManager.tryReserve(category, bytes)) {
+      heapBytes += bytes;
+      heapArrays++;
+      return true;
+    }
+    budgetManager.recordSpill(category, bytes);
+    return false;
+  }
+
   /**
    * Store the given double[] array in a memory-mapped temporary file and return a read-only
    * DoubleBuffer that can access the data.
@@ -177,6 +211,12 @@ public class MemoryMapStorage {
   public synchronized DoubleBuffer storeData(@NotNull final double data[], int offset,
       int length) throws IOException {
 
+    // keep the data on the heap while the memory budget allows it
+    if (keepOnHeap((long) length * Double.BYTES)) {
+      final double[] copy = Arrays.copyOfRange(data, offset, offset + length);
+      return DoubleBuffer.wrap(copy).asReadOnlyBuffer();
+    }
+
     // If we have no storage file or if the current file is full, create a new one
     if ((currentMappedFile == null)
         || (currentMappedFile.position() + (length * Double.BYTES) > STORAGE_FILE_CAPACITY)) {
@@ -234,6 +274,12 @@ public class MemoryMapStorage {
   public synchronized FloatBuffer storeData(@NotNull final float data[], int offset,
       int length) throws IOException {
 
+    // keep the data on the heap while the memory budget allows it
+    if (keepOnHeap((long) length * Float.BYTES)) {
+      final float[] copy = Arrays.copyOfRange(data, offset, offset + length);
+      return FloatBuffer.wrap(copy).asReadOnlyBuffer();
+    }
+
     // If we have no storage file or if the current file is full, create a new one
     if ((currentMappedFile == null)
         || (currentMappedFile.position() + (length * Float.BYTES) > STORAGE_FILE_CAPACITY)) {
@@ -290,6 +336,12 @@ public class MemoryMapStorage {
   public synchronized IntBuffer storeData(@NotNull final int data[], int offset,
       int length) throws IOException {
 
+    // keep the data on the heap while the memory budget allows it
+    if (keepOnHeap((long) length * Integer.BYTES)) {
+      final int[] copy = Arrays.copyOfRange(data, offset, offset + length);
+      return IntBuffer.wrap(copy).asReadOnlyBuffer();
+    }
+
     // If we have no storage file or if the current file is full, create a new one
     if ((currentMappedFile == null)
         || (currentMappedFile.position() + (length * Integer.BYTES) > STORAGE_FILE_CAPACITY)) {
@@ -320,7 +372,35 @@ public class MemoryMapStorage {
   }
 
   /**
-   * Discard this memory-mapped storage and remove all the associated temporary files.
+   * Maps a region of an existing file read-only into memory, e.g., a data file store that was
+   * extracted from a project file. The file is handed over to this storage and removed when the
+   * storage is discarded. The region must not exceed 2GB.
+   *
+   * @param file     the file to map
+   * @param position the start of the region in bytes
+   * @param size     the size of the region in bytes
+   * @return a read-only ByteBuffer that is directly mapped to the region of the file
+   * @throws IOException
+   */
+  @NotNull
+  public synchronized ByteBuffer mapFile(@NotNull final File file, final long position,
+      final long size) throws IOException {
+    if (temporaryFiles.add(file)) {
+      file.deleteOnExit();
+    }
+
+    try (RandomAccessFile mappedFile = new RandomAccessFile(file, "r")) {
+      // the memory mapping remains after closing the file
+      final MappedByteBuffer mappedFileBuffer = mappedFile.getChannel()
+          .map(FileChannel.MapMode.READ_ONLY, position, size);
+      mappedByteBufferList.add(mappedFileBuffer);
+      return mappedFileBuffer;
+    }
+  }
+
+  /**
+   * Discard this memory-mapped storage and remove all the associated temporary files. The heap
+   * space of the arrays kept in memory is returned to the memory budget.
    */
   public synchronized void discard(Unsafe theUnsafe) throws IOException {
 
@@ -338,6 +418,10 @@ public class MemoryMapStorage {
 
     temporaryFiles.clear();
     currentMappedFile = null;
+
+    budgetManager.release(category, heapBytes, heapArrays);
+    heapBytes = 0L;
+    heapArrays = 0L;
   }
 
 
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Formats items in parallel and writes them in their original order. Items are split into chunks,
+ * each chunk is formatted by a worker into a pooled text buffer and a single writer (the calling
+ * thread) appends the buffers in chunk order. Only a limited number of chunks is formatted ahead of
+ * the writer, which bounds the memory.
+ * <p></p>
+ * The output is the same as if all items were formatted one after another into the writer.
+ */
+public class OrderedParallelWriter {
+
+  private static final int CHUNK_SIZE = 32;
+  private static final int INITIAL_BUFFER_CAPACITY = 1 << 16;
+
+  /**
+   * Formats one item into a buffer. Instances are created for each chunk and are only used by one
+   * thread, so they may keep non thread-safe state, e.g., cloned number formats.
+   *
+   * @param <T> the item type
+   */
+  @FunctionalInterface
+  public interface ItemFormatter<T> {
+
+    /**
+     * @param item the item
+     * @param out  append the text here
+     * @return true if the item was exported. Only used to count the exported items
+     */
+    boolean format(T item, StringBuilder out) throws IOException;
+  }
+
+  /**
+   * @param writer     the target writer. Only used by the calling thread
+   * @param items      all items in output order
+   * @param formatters creates a formatter for each chunk
+   * @param isCanceled stops formatting and writing
+   * @return the number of exported items
+   * @throws IOException      on write errors or from the formatter. The output of all items before
+   *                          the item that failed is written first.
+   * @throws RuntimeException from the formatter. The output of all items before the item that
+   *                          failed is written first.
+   */
+  public static <T> int write(@NotNull Writer writer, @NotNull List<T> items,
+      @NotNull Supplier<ItemFormatter<T>> formatters, @NotNull BooleanSupplier isCanceled)
+      throws IOException {
+    final int numChunks = (items.size() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    final int window = Math.max(2, ForkJoinPool.getCommonPoolParallelism() * 2);
+    final ArrayDeque<StringBuilder> bufferPool = new ArrayDeque<>();
+    final ArrayDeque<CompletableFuture<Chunk>> pending = new ArrayDeque<>();
+
+    // chars are copied into this array for writing
+    char[] chars = new char[INITIAL_BUFFER_CAPACITY];
+    int nextChunk = 0;
+    int exported = 0;
+    for (int c = 0; c < numChunks; c++) {
+      // keep the workers busy
+      while (nextChunk < numChunks && nextChunk < c + window) {
+        final int from = nextChunk * CHUNK_SIZE;
+        final int to = Math.min(items.size(), from + CHUNK_SIZE);
+        final StringBuilder buffer =
+            bufferPool.isEmpty() ? new StringBuilder(INITIAL_BUFFER_CAPACITY) : bufferPool.pop();
+        pending.add(CompletableFuture.supplyAsync(
+            () -> formatChunk(items.subList(from, to), formatters.get(), buffer, isCanceled)));
+        nextChunk++;
+      }
+
+      final Chunk chunk = pending.poll().join();
+      if (isCanceled.getAsBoolean()) {
+        return exported;
+      }
+      final int length = chunk.buffer.length();
+      if (chars.length < length) {
+        chars = new char[Math.max(length, chars.length * 2)];
+      }
+      chunk.buffer.getChars(0, length, chars, 0);
+      writer.write(chars, 0, length);
+      exported += chunk.exported;
+      if (chunk.error != null) {
+        if (chunk.error instanceof IOException ioe) {
+          throw ioe;
+        }
+        throw (RuntimeException) chunk.error;
+      }
+      chunk.buffer.setLength(0);
+      bufferPool.push(chunk.buffer);
+    }
+    return exported;
+  }
+
+  private static <T> Chunk formatChunk(List<T> items, ItemFormatter<T> formatter,
+      StringBuilder buffer, BooleanSupplier isCanceled) {
+    int exported = 0;
+    for (T item : items) {
+      if (isCanceled.getAsBoolean()) {
+        break;
+      }
+      final int length = buffer.length();
+      try {
+        if (formatter.format(item, buffer)) {
+          exported++;
+        }
+      } catch (IOException | RuntimeException e) {
+        // only write the items before the failed item
+        buffer.setLength(length);
+        return new Chunk(buffer, exported, e);
+      }
+    }
+    return new Chunk(buffer, exported, null);
+  }
+
+  /**
+   * Formats numbers without creating intermediate strings. The result equals {@link
+   * NumberFormat#format(double)}. Not thread-safe, create one instance per thread.
+   */
+  public static class NumberAppender {
+
+    private final NumberFormat format;
+    private final StringBuffer buffer = new StringBuffer(32);
+    private final FieldPosition position = new FieldPosition(0);
+
+    /**
+     * @param format is cloned, as number formats are not thread-safe
+     */
+    public NumberAppender(@NotNull NumberFormat format) {
+      this.format = (NumberFormat) format.clone();
+    }
+
+    public StringBuilder append(StringBuilder out, double value) {
+      buffer.setLength(0);
+      format.format(value, buffer, position);
+      return out.append(buffer);
+    }
+  }
+
+  private record Chunk(StringBuilder buffer, int exported, Exception error) {
+
+  }
+}
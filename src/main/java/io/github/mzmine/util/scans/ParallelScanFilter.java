@@ -0,0 +1,140 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util.scans;
+
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.impl.StorageUtils;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs a raw data filter that computes each new scan from a window of neighbouring scans in
+ * parallel. The scans are split into blocks of consecutive scans. Each block slides a {@link
+ * ScanRingBuffer} over its scans, the neighbours before the first and after the last scan of the
+ * block (the halo) are read by both adjacent blocks. The new data points of a block are stored
+ * with one call to the memory map storage of the new file.
+ */
+public class ParallelScanFilter {
+
+  /**
+   * Number of scans processed by one thread at a time
+   */
+  public static final int DEFAULT_BLOCK_SIZE = 64;
+
+  private ParallelScanFilter() {
+  }
+
+  /**
+   * Computes the new intensities of one scan
+   */
+  @FunctionalInterface
+  public interface ScanIntensityFunction {
+
+    /**
+     * @param scanIndex the index of the scan
+     * @param buffer    provides the data points of all scans in the window of the scan
+     * @return the new intensities for the m/z values of the scan. Length must be at least the
+     * number of data points of the scan.
+     */
+    double[] apply(int scanIndex, ScanRingBuffer buffer);
+  }
+
+  /**
+   * Filters all scans and adds the new scans to the new file in the original order. The new scans
+   * keep the m/z values and meta data of the original scans.
+   *
+   * @param newFile         the new file
+   * @param scans           the scans to filter
+   * @param windowStart     index of the first scan in the window of each scan (inclusive)
+   * @param windowEnd       index of the last scan in the window of each scan (inclusive)
+   * @param function        computes the new intensities of a scan
+   * @param isCanceled      checked between scans
+   * @param processedScans  incremented for each processed scan
+   * @return false if canceled
+   */
+  public static boolean filterScans(@NotNull RawDataFile newFile, @NotNull Scan[] scans,
+      @NotNull int[] windowStart, @NotNull int[] windowEnd,
+      @NotNull ScanIntensityFunction function, @NotNull BooleanSupplier isCanceled,
+      @NotNull AtomicInteger processedScans) throws IOException {
+    final int numScans = scans.length;
+    final int numBlocks = (numScans + DEFAULT_BLOCK_SIZE - 1) / DEFAULT_BLOCK_SIZE;
+    final SimpleScan[] newScans = new SimpleScan[numScans];
+
+    IntStream.range(0, numBlocks).parallel().forEach(block -> {
+      if (isCanceled.getAsBoolean()) {
+        return;
+      }
+      final int from = block * DEFAULT_BLOCK_SIZE;
+      final int to = Math.min(numScans, from + DEFAULT_BLOCK_SIZE);
+
+      int capacity = 1;
+      int numValues = 0;
+      for (int i = from; i < to; i++) {
+        capacity = Math.max(capacity, windowEnd[i] - windowStart[i] + 1);
+        numValues += scans[i].getNumberOfDataPoints();
+      }
+      final ScanRingBuffer buffer = new ScanRingBuffer(scans, capacity);
+
+      // all values of the block in one array
+      final double[] mzs = new double[numValues];
+      final double[] intensities = new double[numValues];
+      final int[] offsets = new int[to - from + 1];
+      for (int i = from; i < to; i++) {
+        if (isCanceled.getAsBoolean()) {
+          return;
+        }
+        final int offset = offsets[i - from];
+        final int n = buffer.getNumberOfDataPoints(i);
+        final double[] newIntensities = function.apply(i, buffer);
+        System.arraycopy(buffer.getMzValues(i), 0, mzs, offset, n);
+        System.arraycopy(newIntensities, 0, intensities, offset, n);
+        offsets[i - from + 1] = offset + n;
+        processedScans.incrementAndGet();
+      }
+
+      final DoubleBuffer storedMzs = StorageUtils
+          .storeValuesToDoubleBuffer(newFile.getMemoryMapStorage(), mzs);
+      final DoubleBuffer storedIntensities = StorageUtils
+          .storeValuesToDoubleBuffer(newFile.getMemoryMapStorage(), intensities);
+      for (int i = from; i < to; i++) {
+        final Scan scan = scans[i];
+        final int offset = offsets[i - from];
+        final int n = offsets[i - from + 1] - offset;
+        newScans[i] = new SimpleScan(newFile, scan.getScanNumber(), scan.getMSLevel(),
+            scan.getRetentionTime(), scan.getMsMsInfo(), storedMzs.slice(offset, n),
+            storedIntensities.slice(offset, n), scan.getSpectrumType(), scan.getPolarity(),
+            scan.getScanDefinition(), scan.getScanningMZRange());
+      }
+    });
+
+    if (isCanceled.getAsBoolean()) {
+      return false;
+    }
+    for (SimpleScan newScan : newScans) {
+      newFile.addScan(newScan);
+    }
+    return true;
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util.scans;
+
+import io.github.mzmine.datamodel.Scan;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Ring buffer of the data points of neighbouring scans as primitive arrays. Used to slide a window
+ * over a list of scans: each scan is read once while the window moves forward and the arrays of
+ * scans that left the window are reused. Not thread safe, use one buffer per thread.
+ */
+public class ScanRingBuffer {
+
+  private final Scan[] scans;
+  private final int capacity;
+  private final int[] loadedScanIndex;
+  private final int[] numDataPoints;
+  private final double[][] mzs;
+  private final double[][] intensities;
+
+  /**
+   * @param scans    all scans, accessed by their index in this array
+   * @param capacity maximum number of scans that are accessed together (the window width)
+   */
+  public ScanRingBuffer(@NotNull Scan[] scans, int capacity) {
+    this.scans = scans;
+    this.capacity = Math.max(1, capacity);
+    loadedScanIndex = new int[this.capacity];
+    Arrays.fill(loadedScanIndex, -1);
+    numDataPoints = new int[this.capacity];
+    mzs = new double[this.capacity][];
+    intensities = new double[this.capacity][];
+  }
+
+  private int load(int scanIndex) {
+    final int slot = scanIndex % capacity;
+    if (loadedScanIndex[slot] != scanIndex) {
+      final Scan scan = scans[scanIndex];
+      final int n = scan.getNumberOfDataPoints();
+      if (mzs[slot] == null || mzs[slot].length < n) {
+        mzs[slot] = new double[n];
+        intensities[slot] = new double[n];
+      }
+      scan.getMzValues(mzs[slot]);
+      scan.getIntensityValues(intensities[slot]);
+      numDataPoints[slot] = n;
+      loadedScanIndex[slot] = scanIndex;
+    }
+    return slot;
+  }
+
+  /**
+   * @return the number of data points of the scan
+   */
+  public int getNumberOfDataPoints(int scanIndex) {
+    return numDataPoints[load(scanIndex)];
+  }
+
+  /**
+   * The returned array may be longer than the number of data points and is reused when the scan
+   * leaves the window, copy values that are kept.
+   *
+   * @return the m/z values of the scan
+   */
+  public double[] getMzValues(int scanIndex) {
+    return mzs[load(scanIndex)];
+  }
+
+  /**
+   * The returned array may be longer than the number of data points and is reused when the scan
+   * leaves the window, copy values that are kept.
+   *
+   * @return the intensity values of the scan
+   */
+  public double[] getIntensityValues(int scanIndex) {
+    return intensities[load(scanIndex)];
+  }
+}
@@ -112,15 +112,15 @@ public class SpectralDBEntry {
   }
 
   public Double getPrecursorMZ() {
-    return (Double) fields.get(DBEntryField.MZ);
+    return (Double) getFields().get(DBEntryField.MZ);
   }
 
   public Optional<Object> getField(DBEntryField f) {
-    return Optional.ofNullable(fields.get(f));
+    return Optional.ofNullable(getFields().get(f));
   }
 
   public <T> T getOrElse(DBEntryField f, T defaultValue) {
-    final Object value = fields.get(f);
+    final Object value = getFields().get(f);
     return value == null ? defaultValue : (T) value;
   }
 
@@ -128,11 +128,23 @@ public class SpectralDBEntry {
     return dps;
   }
 
+  /**
+   * All access to the metadata goes through this method, so entries that are parsed on demand can
+   * override it together with {@link #getDataPoints()}
+   *
+   * @return the metadata fields
+   */
+  protected Map<DBEntryField, Object> getFields() {
+    return fields;
+  }
+
   public void saveToXML(XMLStreamWriter writer) throws XMLStreamException {
     writer.writeStartElement(XML_ELEMENT);
 
-    double[] mzs = Arrays.stream(dps).mapToDouble(DataPoint::getMZ).toArray();
-    double[] intensities = Arrays.stream(dps).mapToDouble(DataPoint::getIntensity).toArray();
+    final DataPoint[] dataPoints = getDataPoints();
+    double[] mzs = Arrays.stream(dataPoints).mapToDouble(DataPoint::getMZ).toArray();
+    double[] intensities = Arrays.stream(dataPoints).mapToDouble(DataPoint::getIntensity)
+        .toArray();
 
     writer.writeStartElement(CONST.XML_MZ_VALUES_ELEMENT);
     writer.writeCharacters(ParsingUtils.doubleArrayToString(mzs, mzs.length));
@@ -142,7 +154,7 @@ public class SpectralDBEntry {
     writer.writeEndElement(); // intensities
 
     writer.writeStartElement(XML_DB_FIELD_LIST_ELEMENT);
-    for (Entry<DBEntryField, Object> entry : fields.entrySet()) {
+    for (Entry<DBEntryField, Object> entry : getFields().entrySet()) {
       var key = entry.getKey();
       var value = entry.getValue();
       writer.writeStartElement(XML_DB_FIELD_ELEMENT);
@@ -164,15 +176,15 @@ public class SpectralDBEntry {
       return false;
     }
     SpectralDBEntry that = (SpectralDBEntry) o;
-    boolean b1 = Arrays.equals(dps, that.dps);
-    boolean b2 = Objects.equals(fields, that.fields);
+    boolean b1 = Arrays.equals(getDataPoints(), that.getDataPoints());
+    boolean b2 = Objects.equals(getFields(), that.getFields());
     return b1 && b2;
   }
 
   @Override
   public int hashCode() {
-    int result = Objects.hash(fields);
-    result = 31 * result + Arrays.hashCode(dps);
+    int result = Objects.hash(getFields());
+    result = 31 * result + Arrays.hashCode(getDataPoints());
     return result;
   }
 }
@@ -46,16 +46,9 @@ public class AutoLibraryParser extends SpectralDBParser {
     FileTypeFilter msp = new FileTypeFilter("msp", "");
     FileTypeFilter mgf = new FileTypeFilter("mgf", "");
     FileTypeFilter jdx = new FileTypeFilter("jdx", "");
-    long totalLines;
-    try {
-      totalLines = FileAndPathUtil.countLines(dataBaseFile);
-    } catch (Exception ex) {
-      logger.log(Level.WARNING,
-          "Could not count lines in data base file: " + dataBaseFile.getAbsolutePath(), ex);
-      totalLines = 0L;
-    }
 
     if (json.accept(dataBaseFile)) {
+      final long totalLines = countLines(dataBaseFile);
       // test Gnps and MONA json parser
       SpectralDBParser[] parser =
           new SpectralDBParser[]{new MonaJsonParser(bufferEntries, processor),
@@ -94,8 +87,9 @@ public class AutoLibraryParser extends SpectralDBParser {
             "Format not supported: " + dataBaseFile.getAbsolutePath()));
       }
 
+      // indexed parsers report the progress of their scan over the file
       if (subParser instanceof SpectralDBTextParser txtParser) {
-        txtParser.setTotalLines(totalLines);
+        txtParser.setTotalLines(countLines(dataBaseFile));
       }
       // parse the file
       boolean state = subParser.parse(mainTask, dataBaseFile);
@@ -111,6 +105,16 @@ public class AutoLibraryParser extends SpectralDBParser {
     }
   }
 
+  private long countLines(File dataBaseFile) {
+    try {
+      return FileAndPathUtil.countLines(dataBaseFile);
+    } catch (Exception ex) {
+      logger.log(Level.WARNING,
+          "Could not count lines in data base file: " + dataBaseFile.getAbsolutePath(), ex);
+      return 0L;
+    }
+  }
+
   @Override
   public double getProgress() {
     return subParser == null ? 0 : subParser.getProgress();
@@ -22,24 +22,22 @@ import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.modules.io.spectraldbsubmit.AdductParser;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
-import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
-import java.io.BufferedReader;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryIndex.LineScanner;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryIndex.NumberType;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Main format for library entries in GNPS
  *
  * @author Robin Schmid
  */
-public class GnpsMgfParser extends SpectralDBTextParser {
+public class GnpsMgfParser extends SpectralDBIndexedTextParser {
 
   public GnpsMgfParser(int bufferEntries, LibraryEntryProcessor processor) {
     super(bufferEntries, processor);
@@ -53,9 +51,29 @@ public class GnpsMgfParser extends SpectralDBTextParser {
 
   @Override
   public boolean parse(AbstractTask mainTask, File dataBaseFile) throws IOException {
-    super.parse(mainTask, dataBaseFile);
     logger.info("Parsing mgf spectral library " + dataBaseFile.getAbsolutePath());
+    return super.parse(mainTask, dataBaseFile);
+  }
 
+  @Override
+  protected @NotNull LineScanner createLineScanner() {
+    return new MgfLineScanner();
+  }
+
+  @Override
+  protected @NotNull EntryParser getEntryParser() {
+    return GnpsMgfParser::parseEntry;
+  }
+
+  /**
+   * Parses the metadata and data points of one entry
+   *
+   * @param text   the lines of one entry from BEGIN IONS to END IONS
+   * @param fields the metadata fields
+   * @param dps    the data points
+   */
+  private static void parseEntry(@NotNull String text, @NotNull Map<DBEntryField, Object> fields,
+      @NotNull List<DataPoint> dps) {
     // BEGIN IONS
     // meta data
     // SCANS=1 .... n (the scan ID; could be used to put all spectra of the
@@ -63,104 +81,170 @@ public class GnpsMgfParser extends SpectralDBTextParser {
     // data
     // END IONS
 
-    int correct = 0;
     State state = State.WAIT_FOR_META;
-    Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
-    List<DataPoint> dps = new ArrayList<>();
-    int sep = -1;
-    // create db
-    try (BufferedReader br = new BufferedReader(new FileReader(dataBaseFile))) {
-      for (String l; (l = br.readLine()) != null;) {
-        // main task was canceled?
-        if (mainTask != null && mainTask.isCanceled()) {
-          return false;
+    for (String l : text.lines().toList()) {
+      try {
+        if (l.length() > 1) {
+          // meta data start?
+          if (state.equals(State.WAIT_FOR_META)) {
+            if (l.equalsIgnoreCase("BEGIN IONS")) {
+              state = State.META;
+            }
+          } else if (l.equalsIgnoreCase("END IONS")) {
+            return;
+          } else if (l.toLowerCase().startsWith("scans")) {
+            // belongs to the previously created entry and
+            // is another spectrum
+
+            // data starts
+            state = State.DATA;
+          } else if (state == State.DATA) {
+            String[] data = l.split("\t");
+            dps.add(new SimpleDataPoint(Double.parseDouble(data[0]), Double.parseDouble(data[1])));
+          } else {
+            int sep = l.indexOf('=');
+            if (sep != -1 && sep < l.length() - 1) {
+              extractMetaData(fields, l, sep);
+            }
+          }
         }
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Error for entry", ex);
+        // the entry is skipped
+        fields.clear();
+        dps.clear();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Extracts metadata from a line which is separated by '=' and inserts the metadata into a map.
+   * Adducts at the end of the name are added as ion type.
+   *
+   * @param fields The map of metadata fields
+   * @param line   String with metadata
+   * @param sep    index of the separation char '='
+   */
+  private static void extractMetaData(Map<DBEntryField, Object> fields, String line, int sep) {
+    DBEntryField field = DBEntryField.forMgfID(line.substring(0, sep));
+    if (field != null) {
+      String content = line.substring(sep + 1, line.length());
+      if (!content.isEmpty()) {
         try {
-          if (l.length() > 1) {
-            // meta data start?
-            if (state.equals(State.WAIT_FOR_META)) {
-              if (l.equalsIgnoreCase("BEGIN IONS")) {
-                fields = new EnumMap<>(fields);
-                dps.clear();
-                state = State.META;
-              }
-            } else {
-              if (l.equalsIgnoreCase("END IONS")) {
-                // add entry and reset
-                if (fields.size() > 1 && dps.size() > 1) {
-                  SpectralDBEntry entry =
-                      new SpectralDBEntry(fields, dps.toArray(new DataPoint[dps.size()]));
-                  // add and push
-                  addLibraryEntry(entry);
-                  correct++;
-                }
-                state = State.WAIT_FOR_META;
-              } else if (l.toLowerCase().startsWith("scans")) {
-                // belongs to the previously created entry and
-                // is another spectrum
-
-                // data starts
-                state = State.DATA;
-              } else {
-                switch (state) {
-                  case WAIT_FOR_META:
-                    // wait for next entry
-                    break;
-                  case DATA:
-                    String[] data = l.split("\t");
-                    dps.add(new SimpleDataPoint(Double.parseDouble(data[0]),
-                        Double.parseDouble(data[1])));
-                    break;
-                  case META:
-                    sep = l.indexOf('=');
-                    if (sep != -1 && sep < l.length() - 1) {
-                      DBEntryField field = DBEntryField.forMgfID(l.substring(0, sep));
-                      if (field != null) {
-                        String content = l.substring(sep + 1, l.length());
-                        if (!content.isEmpty()) {
-                          try {
-                            Object value = field.convertValue(content);
-
-                            // name
-                            if (field.equals(DBEntryField.NAME)) {
-                              String name = ((String) value);
-                              int lastSpace = name.lastIndexOf(' ');
-                              if (lastSpace != -1 && lastSpace < name.length() - 2) {
-                                String adductCandidate = name.substring(lastSpace + 1);
-                                // check for valid
-                                // adduct with the
-                                // adduct parser
-                                // from export
-                                // use as adduct
-                                String adduct = AdductParser.parse(adductCandidate);
-                                if (adduct != null && !adduct.isEmpty())
-                                  fields.put(DBEntryField.ION_TYPE, adduct);
-                              }
-                            }
-
-                            fields.put(field, value);
-                          } catch (Exception e) {
-                            logger.log(Level.WARNING, "Cannot convert value type of " + content
-                                + " to " + field.getObjectClass().toString(), e);
-                          }
-                        }
-                      }
-                    }
-                    break;
-                }
+          Object value = field.convertValue(content);
+
+          // name
+          if (field.equals(DBEntryField.NAME)) {
+            String name = ((String) value);
+            int lastSpace = name.lastIndexOf(' ');
+            if (lastSpace != -1 && lastSpace < name.length() - 2) {
+              String adductCandidate = name.substring(lastSpace + 1);
+              // check for valid
+              // adduct with the
+              // adduct parser
+              // from export
+              // use as adduct
+              String adduct = AdductParser.parse(adductCandidate);
+              if (adduct != null && !adduct.isEmpty()) {
+                fields.put(DBEntryField.ION_TYPE, adduct);
               }
             }
           }
-        } catch (Exception ex) {
-          logger.log(Level.WARNING, "Error for entry", ex);
-          state = State.WAIT_FOR_META;
+
+          fields.put(field, value);
+        } catch (Exception e) {
+          logger.log(Level.WARNING,
+              "Cannot convert value type of " + content + " to " + field.getObjectClass()
+                  .toString(), e);
         }
-        processedLines.incrementAndGet();
       }
-      // finish and process all entries
-      finish();
-      return true;
     }
   }
 
+  /**
+   * Finds the entries of a mgf file from BEGIN IONS to END IONS. Entries need at least two
+   * metadata fields and two data points. Like the entry parser, entries with data points that are
+   * no numbers or with zero intensities are skipped.
+   */
+  private static class MgfLineScanner implements LineScanner {
+
+    private static final String NAME_KEY = DBEntryField.NAME.getMgfID();
+    private static final String MZ_KEY = DBEntryField.MZ.getMgfID();
+
+    private State state = State.WAIT_FOR_META;
+    private long entryStart = -1;
+    private double precursorMZ = Double.NaN;
+    private String name = null;
+    private int metaLines = 0;
+    private int dataLines = 0;
+    private boolean zeroIntensity = false;
+
+    @Override
+    public void scanLine(@NotNull SpectralLibraryIndex index, long start, long end) {
+      if (end - start <= 1) {
+        return;
+      }
+      if (state == State.WAIT_FOR_META) {
+        if (isLine(index, start, end, "BEGIN IONS")) {
+          entryStart = start;
+          precursorMZ = Double.NaN;
+          name = null;
+          metaLines = 0;
+          dataLines = 0;
+          zeroIntensity = false;
+          state = State.META;
+        }
+      } else if (isLine(index, start, end, "END IONS")) {
+        if (metaLines > 1 && dataLines > 1 && !zeroIntensity) {
+          index.addEntry(entryStart, end, precursorMZ, name);
+        }
+        state = State.WAIT_FOR_META;
+      } else if (index.startsWithIgnoreCase(start, end, "scans")) {
+        state = State.DATA;
+      } else if (state == State.DATA) {
+        scanDataPoint(index, start, end);
+      } else {
+        final long sep = index.indexOf(start, end, "=");
+        if (sep != -1 && sep < end - 1) {
+          final String key = index.getText(start, sep);
+          if (DBEntryField.forMgfID(key) != null) {
+            metaLines++;
+          }
+          if (key.equalsIgnoreCase(NAME_KEY)) {
+            name = index.getText(sep + 1, end);
+          } else if (key.equalsIgnoreCase(MZ_KEY)) {
+            try {
+              precursorMZ = Double.parseDouble(index.getText(sep + 1, end));
+            } catch (NumberFormatException e) {
+              // same as the entry parser: the precursor m/z is missing
+            }
+          }
+        }
+      }
+    }
+
+    /**
+     * Checks the first two tab separated values of a data point line. Invalid lines skip the
+     * entry.
+     */
+    private void scanDataPoint(@NotNull SpectralLibraryIndex index, long start, long end) {
+      final long mzEnd = index.indexOf(start, end, "\t");
+      final long intensityEnd = mzEnd == -1 ? -1 : index.indexOf(mzEnd + 1, end, "\t");
+      final NumberType intensity = mzEnd == -1 ? NumberType.INVALID
+          : index.checkNumber(mzEnd + 1, intensityEnd == -1 ? end : intensityEnd);
+      if (intensity == NumberType.INVALID
+          || index.checkNumber(start, mzEnd) == NumberType.INVALID) {
+        logger.warning(() -> "Cannot parse data point " + index.getText(start, end));
+        state = State.WAIT_FOR_META;
+        return;
+      }
+      zeroIntensity |= intensity == NumberType.ZERO;
+      dataLines++;
+    }
+
+    private static boolean isLine(SpectralLibraryIndex index, long start, long end, String line) {
+      return end - start == line.length() && index.startsWithIgnoreCase(start, end, line);
+    }
+  }
 }
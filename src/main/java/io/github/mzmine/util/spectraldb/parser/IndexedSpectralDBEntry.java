@@ -0,0 +1,90 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.parser.SpectralDBIndexedTextParser.EntryParser;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Library entry that is backed by a {@link SpectralLibraryIndex}. The precursor m/z is read from
+ * the index, all other metadata and the data points are parsed on first access.
+ */
+class IndexedSpectralDBEntry extends SpectralDBEntry {
+
+  private final SpectralLibraryIndex index;
+  private final int entry;
+  private final EntryParser parser;
+
+  private volatile Map<DBEntryField, Object> fields;
+  private volatile DataPoint[] dps;
+
+  IndexedSpectralDBEntry(@NotNull SpectralLibraryIndex index, int entry,
+      @NotNull EntryParser parser) {
+    super(null, null);
+    this.index = index;
+    this.entry = entry;
+    this.parser = parser;
+  }
+
+  @Override
+  public Double getPrecursorMZ() {
+    final double mz = index.getPrecursorMZ(entry);
+    return Double.isNaN(mz) ? null : mz;
+  }
+
+  @Override
+  public DataPoint[] getDataPoints() {
+    parse();
+    return dps;
+  }
+
+  @Override
+  protected Map<DBEntryField, Object> getFields() {
+    parse();
+    return fields;
+  }
+
+  private void parse() {
+    if (dps != null) {
+      return;
+    }
+    synchronized (this) {
+      if (dps != null) {
+        return;
+      }
+      Map<DBEntryField, Object> parsedFields = new EnumMap<>(DBEntryField.class);
+      List<DataPoint> parsedDps = new ArrayList<>();
+      parser.parseEntry(index.getEntryText(entry), parsedFields, parsedDps);
+      fields = parsedFields;
+      // no 0 values allowed in entry. The index already skips such entries
+      if (parsedDps.stream().anyMatch(dp -> Double.compare(dp.getIntensity(), 0) == 0)) {
+        dps = new DataPoint[0];
+      } else {
+        dps = parsedDps.toArray(new DataPoint[0]);
+      }
+    }
+  }
+}
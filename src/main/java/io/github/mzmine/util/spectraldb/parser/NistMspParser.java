@@ -21,20 +21,18 @@ import io.github.mzmine.datamodel.DataPoint;
 import io.github.mzmine.datamodel.impl.SimpleDataPoint;
 import io.github.mzmine.taskcontrol.AbstractTask;
 import io.github.mzmine.util.spectraldb.entry.DBEntryField;
-import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
-import java.io.BufferedReader;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryIndex.LineScanner;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryIndex.NumberType;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-public class NistMspParser extends SpectralDBTextParser {
+public class NistMspParser extends SpectralDBIndexedTextParser {
 
   public NistMspParser(int bufferEntries, LibraryEntryProcessor processor) {
     super(bufferEntries, processor);
@@ -44,66 +42,59 @@ public class NistMspParser extends SpectralDBTextParser {
 
   @Override
   public boolean parse(AbstractTask mainTask, File dataBaseFile) throws IOException {
-    super.parse(mainTask, dataBaseFile);
     logger.info("Parsing NIST msp spectral library " + dataBaseFile.getAbsolutePath());
+    return super.parse(mainTask, dataBaseFile);
+  }
+
+  @Override
+  protected @NotNull LineScanner createLineScanner() {
+    return new MspLineScanner();
+  }
+
+  @Override
+  protected @NotNull EntryParser getEntryParser() {
+    return NistMspParser::parseEntry;
+  }
 
-    // metadata fields and data points
-    Map<DBEntryField, Object> fields = new EnumMap<>(DBEntryField.class);
-    List<DataPoint> dps = new ArrayList<>();
+  /**
+   * Parses the metadata and data points of one entry
+   *
+   * @param text   the lines of one entry
+   * @param fields the metadata fields
+   * @param dps    the data points
+   */
+  private static void parseEntry(@NotNull String text, @NotNull Map<DBEntryField, Object> fields,
+      @NotNull List<DataPoint> dps) {
     // separation index (metadata is separated by ': '
     int sep = -1;
     // currently loading data?
     boolean isData = false;
 
-    // read DB file
-    try (BufferedReader br = new BufferedReader(new FileReader(dataBaseFile))) {
-      for (String l; (l = br.readLine()) != null;) {
-        // main task was canceled?
-        if (mainTask != null && mainTask.isCanceled()) {
-          return false;
-        }
-        try {
-          if (l.length() > 1) {
-            // meta data?
-            sep = isData ? -1 : l.indexOf(": ");
-            if (sep != -1 && sep < l.length() - 2) {
-              extractMetaData(fields, l, sep);
-            } else {
-              // data?
-              DataPoint dp = extractDataPoint(l);
-              if (dp != null) {
-                dps.add(dp);
-                isData = true;
-              } else
-                isData = false;
-            }
+    for (String l : text.lines().toList()) {
+      try {
+        if (l.length() > 1) {
+          // meta data?
+          sep = isData ? -1 : l.indexOf(": ");
+          if (sep != -1 && sep < l.length() - 2) {
+            extractMetaData(fields, l, sep);
           } else {
-            // empty row
-            if (isData) {
-              // empty row after data
-              // add entry and reset
-              SpectralDBEntry entry =
-                  new SpectralDBEntry(fields, dps.toArray(new DataPoint[dps.size()]));
-              // add and push
-              addLibraryEntry(entry);
-              // reset
-              fields = new EnumMap<>(fields);
-              dps.clear();
+            // data?
+            DataPoint dp = extractDataPoint(l);
+            if (dp != null) {
+              dps.add(dp);
+              isData = true;
+            } else {
               isData = false;
             }
           }
-        } catch (Exception ex) {
-          logger.log(Level.WARNING, "Error for entry", ex);
-          // reset on error
-          isData = false;
-          fields = new EnumMap<>(fields);
-          dps.clear();
         }
-        processedLines.incrementAndGet();
+      } catch (Exception ex) {
+        logger.log(Level.WARNING, "Error for entry", ex);
+        // reset on error
+        isData = false;
+        fields.clear();
+        dps.clear();
       }
-      // finish and process all entries
-      finish();
-      return true;
     }
   }
 
@@ -114,7 +105,7 @@ public class NistMspParser extends SpectralDBTextParser {
    * @return DataPoint or null
    */
   @Nullable
-  private DataPoint extractDataPoint(String line) {
+  private static DataPoint extractDataPoint(String line) {
     // comment possible as mz intensity"
     String[] dataAndComment = line.split("\"");
     // split by space
@@ -136,7 +127,8 @@ public class NistMspParser extends SpectralDBTextParser {
    * @param line String with metadata
    * @param sep index of the separation char ':'
    */
-  private void extractMetaData(Map<DBEntryField, Object> fields, String line, int sep) {
+  private static void extractMetaData(Map<DBEntryField, Object> fields, String line,
+      int sep) {
     String key = line.substring(0, sep);
     DBEntryField field = DBEntryField.forMspID(key);
     if (field != null) {
@@ -155,4 +147,94 @@ public class NistMspParser extends SpectralDBTextParser {
     }
   }
 
+  /**
+   * Finds the entries of a msp file. An entry ends with the first empty line after its data
+   * points. Lines with less than two characters are empty lines. Data point lines are checked like
+   * {@link #extractDataPoint(String)} and entries with zero intensities are skipped.
+   */
+  private static class MspLineScanner implements LineScanner {
+
+    private static final String NAME_KEY = DBEntryField.NAME.getNistMspID();
+    private static final String MZ_KEY = DBEntryField.MZ.getNistMspID();
+
+    private long entryStart = -1;
+    private boolean isData = false;
+    private double precursorMZ = Double.NaN;
+    private String name = null;
+    private boolean zeroIntensity = false;
+
+    @Override
+    public void scanLine(@NotNull SpectralLibraryIndex index, long start, long end) {
+      if (end - start > 1) {
+        if (entryStart == -1) {
+          entryStart = start;
+        }
+        // meta data?
+        final long sep = isData ? -1 : index.indexOf(start, end, ": ");
+        if (sep != -1 && sep < end - 2) {
+          if (isKey(index, start, sep, NAME_KEY)) {
+            name = index.getText(sep + 2, end);
+          } else if (isKey(index, start, sep, MZ_KEY)) {
+            try {
+              precursorMZ = Double.parseDouble(index.getText(sep + 2, end));
+            } catch (NumberFormatException e) {
+              // same as the entry parser: the precursor m/z is missing
+            }
+          }
+        } else {
+          final NumberType intensity = checkDataPoint(index, start, end);
+          isData = intensity != NumberType.INVALID;
+          zeroIntensity |= intensity == NumberType.ZERO;
+        }
+      } else if (isData) {
+        // empty row after data
+        addEntry(index, start);
+      }
+    }
+
+    @Override
+    public void finish(@NotNull SpectralLibraryIndex index, long end) {
+      // last entry without an empty line at the end of the file
+      if (isData) {
+        addEntry(index, end);
+      }
+    }
+
+    private void addEntry(@NotNull SpectralLibraryIndex index, long end) {
+      if (!zeroIntensity) {
+        index.addEntry(entryStart, end, precursorMZ, name);
+      }
+      entryStart = -1;
+      isData = false;
+      zeroIntensity = false;
+      precursorMZ = Double.NaN;
+      name = null;
+    }
+
+    /**
+     * Same as {@link #extractDataPoint(String)}: the text before the first quote needs to be
+     * exactly two numbers separated by a space.
+     *
+     * @return the type of the intensity or INVALID if the line is no data point
+     */
+    private static NumberType checkDataPoint(@NotNull SpectralLibraryIndex index, long start,
+        long end) {
+      final long quote = index.indexOf(start, end, "\"");
+      long dataEnd = quote == -1 ? end : quote;
+      // trailing empty tokens are removed by String.split
+      while (dataEnd > start && index.byteAt(dataEnd - 1) == ' ') {
+        dataEnd--;
+      }
+      final long sep = index.indexOf(start, dataEnd, " ");
+      if (sep == -1 || index.indexOf(sep + 1, dataEnd, " ") != -1
+          || index.checkNumber(start, sep) == NumberType.INVALID) {
+        return NumberType.INVALID;
+      }
+      return index.checkNumber(sep + 1, dataEnd);
+    }
+
+    private static boolean isKey(SpectralLibraryIndex index, long start, long sep, String key) {
+      return sep - start == key.length() && index.startsWithIgnoreCase(start, sep, key);
+    }
+  }
 }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.taskcontrol.AbstractTask;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryIndex.LineScanner;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Text library parser that memory maps the library file and indexes all entries in one scan. The
+ * entries are pushed to the {@link LibraryEntryProcessor} without parsing their data points, which
+ * are only parsed for entries that are compared.
+ */
+public abstract class SpectralDBIndexedTextParser extends SpectralDBParser {
+
+  private volatile SpectralLibraryIndex index;
+
+  public SpectralDBIndexedTextParser(int bufferEntries, LibraryEntryProcessor processor) {
+    super(bufferEntries, processor);
+  }
+
+  @Override
+  public boolean parse(AbstractTask mainTask, File dataBaseFile) throws IOException {
+    final SpectralLibraryIndex index = SpectralLibraryIndex
+        .getOrCreate(dataBaseFile, getClass(), this::createLineScanner, i -> this.index = i,
+            () -> mainTask != null && mainTask.isCanceled());
+    if (index == null) {
+      return false;
+    }
+    this.index = index;
+
+    final EntryParser parser = getEntryParser();
+    for (int i = 0; i < index.size(); i++) {
+      // main task was canceled?
+      if (mainTask != null && mainTask.isCanceled()) {
+        return false;
+      }
+      pushLibraryEntry(new IndexedSpectralDBEntry(index, i, parser));
+    }
+    // finish and process all entries
+    finish();
+    return true;
+  }
+
+  /**
+   * @return a new scanner that finds the entries, their precursor m/z and name
+   */
+  @NotNull
+  protected abstract LineScanner createLineScanner();
+
+  /**
+   * The parser is kept by all entries, it should not reference this parser instance.
+   *
+   * @return the parser for the text of a single entry
+   */
+  @NotNull
+  protected abstract EntryParser getEntryParser();
+
+  @Override
+  public double getProgress() {
+    final SpectralLibraryIndex index = this.index;
+    return index == null ? 0 : index.getProgress();
+  }
+
+  /**
+   * Parses the text of one library entry
+   */
+  @FunctionalInterface
+  public interface EntryParser {
+
+    void parseEntry(@NotNull String text, @NotNull Map<DBEntryField, Object> fields,
+        @NotNull List<DataPoint> dps);
+  }
+}
@@ -65,6 +65,17 @@ public abstract class SpectralDBParser {
         .anyMatch(v -> Double.compare(v, 0) == 0)) {
       return false;
     }
+    pushLibraryEntry(entry);
+    return true;
+  }
+
+  /**
+   * Add DB entry and push every 1000 entries without checking the data points. Used for entries
+   * that are parsed on demand.
+   *
+   * @param entry handle parsed library entry
+   */
+  protected void pushLibraryEntry(SpectralDBEntry entry) {
     synchronized (LOCK) {
       // need double lock as list changes inside
       synchronized (list) {
@@ -79,7 +90,6 @@ public abstract class SpectralDBParser {
         }
       }
     }
-    return true;
   }
 
   /**
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+package io.github.mzmine.util.spectraldb.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Offset index of a memory mapped text library. One scan over the bytes of the file finds the start
+ * and end of each entry, its precursor m/z and name. The text of an entry is only decoded and
+ * parsed when it is needed, e.g., after the precursor m/z matched.
+ * <p></p>
+ * Indices are cached for each file and format and are reused as long as the modification time and
+ * the size of the file do not change. The cache holds the last {@link #MAX_CACHED_INDICES} indices
+ * as soft references and entries are released when the library is removed from the project.
+ */
+public class SpectralLibraryIndex {
+
+  private static final Logger logger = Logger.getLogger(SpectralLibraryIndex.class.getName());
+
+  // a single mapping is limited to 2 GB
+  private static final int SEGMENT_SHIFT = 30;
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+  private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+  // check for cancel and update progress every 16 MB
+  private static final int CHECK_INTERVAL_MASK = (1 << 24) - 1;
+
+  private static final int MAX_CACHED_INDICES = 16;
+  // least recently used order, access is synchronized on the map
+  private static final Map<CacheKey, SoftReference<SpectralLibraryIndex>> CACHE = new LinkedHashMap<>(
+      MAX_CACHED_INDICES, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Entry<CacheKey, SoftReference<SpectralLibraryIndex>> eldest) {
+      return size() > MAX_CACHED_INDICES;
+    }
+  };
+
+  private final File file;
+  private final long lastModified;
+  private final long fileSize;
+  private final MappedByteBuffer[] segments;
+
+  private long[] starts = new long[1024];
+  private long[] ends = new long[1024];
+  private double[] precursorMZs = new double[1024];
+  private String[] names = new String[1024];
+  private int size = 0;
+
+  // bytes scanned while the index is created
+  private volatile long scannedBytes = 0;
+
+  private SpectralLibraryIndex(@NotNull File file) throws IOException {
+    this.file = file;
+    this.lastModified = file.lastModified();
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      fileSize = channel.size();
+      segments = new MappedByteBuffer[(int) ((fileSize + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+      for (int i = 0; i < segments.length; i++) {
+        final long position = i * SEGMENT_SIZE;
+        // the mapping stays valid after the channel is closed
+        segments[i] = channel
+            .map(MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, fileSize - position));
+      }
+    }
+  }
+
+  /**
+   * Returns the cached index or scans the file. Only complete indices are cached.
+   *
+   * @param format     the parser class, the same file might be indexed by different formats
+   * @param scanner    creates the format specific scanner for the lines of the file
+   * @param progress   receives the index while it is created to report the scanned bytes
+   * @param isCanceled cancels the scan
+   * @return the index or null if canceled
+   */
+  @Nullable
+  public static SpectralLibraryIndex getOrCreate(@NotNull File file, @NotNull Class<?> format,
+      @NotNull Supplier<LineScanner> scanner,
+      @Nullable Consumer<SpectralLibraryIndex> progress,
+      @NotNull BooleanSupplier isCanceled) throws IOException {
+    final CacheKey key = new CacheKey(file.getAbsoluteFile(), format, file.length(),
+        file.lastModified());
+    synchronized (CACHE) {
+      final SoftReference<SpectralLibraryIndex> ref = CACHE.get(key);
+      final SpectralLibraryIndex cached = ref == null ? null : ref.get();
+      if (cached != null && cached.isUpToDate()) {
+        logger.fine(() -> "Reusing spectral library index of " + file.getAbsolutePath());
+        return cached;
+      }
+      CACHE.remove(key);
+    }
+
+    final SpectralLibraryIndex index = new SpectralLibraryIndex(file);
+    if (progress != null) {
+      progress.accept(index);
+    }
+    if (!index.scan(scanner.get(), isCanceled)) {
+      return null;
+    }
+    synchronized (CACHE) {
+      CACHE.put(key, new SoftReference<>(index));
+    }
+    return index;
+  }
+
+  /**
+   * Removes all cached indices of a file, e.g., when the library is removed from the project. The
+   * mappings are unmapped once the entries of the library are no longer referenced.
+   */
+  public static void release(@NotNull File file) {
+    final File absoluteFile = file.getAbsoluteFile();
+    synchronized (CACHE) {
+      CACHE.keySet().removeIf(key -> key.file().equals(absoluteFile));
+    }
+  }
+
+  /**
+   * Splits the file into lines and passes them to the scanner. Line ends (\n and \r\n) are not
+   * part of the lines.
+   *
+   * @return false if canceled
+   */
+  private boolean scan(@NotNull LineScanner scanner, @NotNull BooleanSupplier isCanceled) {
+    long lineStart = 0;
+    for (int s = 0; s < segments.length; s++) {
+      final MappedByteBuffer segment = segments[s];
+      final long offset = s * SEGMENT_SIZE;
+      final int limit = segment.limit();
+      for (int i = 0; i < limit; i++) {
+        if (segment.get(i) == '\n') {
+          final long lineEnd = offset + i;
+          scanner.scanLine(this, lineStart, trimCarriageReturn(lineStart, lineEnd));
+          lineStart = lineEnd + 1;
+        }
+        if ((i & CHECK_INTERVAL_MASK) == 0) {
+          scannedBytes = offset + i;
+          if (isCanceled.getAsBoolean()) {
+            return false;
+          }
+        }
+      }
+    }
+    scannedBytes = fileSize;
+    if (lineStart < fileSize) {
+      scanner.scanLine(this, lineStart, trimCarriageReturn(lineStart, fileSize));
+    }
+    scanner.finish(this, fileSize);
+    trimToSize();
+    logger.info(() -> String
+        .format("Indexed %d library entries in %s", size, file.getAbsolutePath()));
+    return true;
+  }
+
+  private long trimCarriageReturn(long lineStart, long lineEnd) {
+    return lineEnd > lineStart && byteAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+  }
+
+  private void trimToSize() {
+    starts = Arrays.copyOf(starts, size);
+    ends = Arrays.copyOf(ends, size);
+    precursorMZs = Arrays.copyOf(precursorMZs, size);
+    names = Arrays.copyOf(names, size);
+  }
+
+  /**
+   * Called by the {@link LineScanner} for each entry
+   *
+   * @param start       first byte of the entry
+   * @param end         end of the entry (exclusive)
+   * @param precursorMZ the precursor m/z or NaN
+   * @param name        the name or null
+   */
+  public void addEntry(long start, long end, double precursorMZ, @Nullable String name) {
+    if (size == starts.length) {
+      final int capacity = size * 2;
+      starts = Arrays.copyOf(starts, capacity);
+      ends = Arrays.copyOf(ends, capacity);
+      precursorMZs = Arrays.copyOf(precursorMZs, capacity);
+      names = Arrays.copyOf(names, capacity);
+    }
+    starts[size] = start;
+    ends[size] = end;
+    precursorMZs[size] = precursorMZ;
+    names[size] = name;
+    size++;
+  }
+
+  public byte byteAt(long position) {
+    return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+  }
+
+  /**
+   * @return true if the line starts with the prefix (ASCII, case insensitive)
+   */
+  public boolean startsWithIgnoreCase(long start, long end, @NotNull String prefix) {
+    if (end - start < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (Character.toLowerCase((char) byteAt(start + i)) != Character
+          .toLowerCase(prefix.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the position of the first occurrence of the ASCII sequence in the line or -1
+   */
+  public long indexOf(long start, long end, @NotNull String sequence) {
+    final long last = end - sequence.length();
+    outer:
+    for (long p = start; p <= last; p++) {
+      for (int i = 0; i < sequence.length(); i++) {
+        if (byteAt(p + i) != sequence.charAt(i)) {
+          continue outer;
+        }
+      }
+      return p;
+    }
+    return -1;
+  }
+
+  /**
+   * Decodes the bytes as UTF-8
+   */
+  @NotNull
+  public String getText(long start, long end) {
+    final byte[] bytes = new byte[(int) (end - start)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = byteAt(start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Checks if the bytes are a number as parsed by {@link Double#parseDouble(String)}. Plain decimal
+   * numbers are checked on the bytes, all other formats are decoded and parsed.
+   */
+  @NotNull
+  public NumberType checkNumber(long start, long end) {
+    // trim like Double.parseDouble
+    while (start < end && (byteAt(start) & 0xff) <= ' ') {
+      start++;
+    }
+    while (end > start && (byteAt(end - 1) & 0xff) <= ' ') {
+      end--;
+    }
+    long p = start;
+    boolean negative = false;
+    if (p < end && (byteAt(p) == '+' || byteAt(p) == '-')) {
+      negative = byteAt(p) == '-';
+      p++;
+    }
+    boolean dot = false;
+    boolean digits = false;
+    boolean zero = true;
+    for (; p < end; p++) {
+      final byte b = byteAt(p);
+      if (b >= '0' && b <= '9') {
+        digits = true;
+        zero &= b == '0';
+      } else if (b == '.' && !dot) {
+        dot = true;
+      } else {
+        break;
+      }
+    }
+    if (p < end) {
+      // exponents, hex or special values
+      try {
+        return Double.compare(Double.parseDouble(getText(start, end)), 0) == 0 ? NumberType.ZERO
+            : NumberType.NON_ZERO;
+      } catch (NumberFormatException e) {
+        return NumberType.INVALID;
+      }
+    }
+    if (!digits) {
+      return NumberType.INVALID;
+    }
+    // -0 is not equal to 0 for Double.compare
+    return zero && !negative ? NumberType.ZERO : NumberType.NON_ZERO;
+  }
+
+  /**
+   * @return the text of an entry
+   * @throws IllegalStateException if the file was changed after it was indexed
+   */
+  @NotNull
+  public String getEntryText(int entry) {
+    if (!isUpToDate()) {
+      throw new IllegalStateException(
+          "Spectral library " + file.getAbsolutePath() + " changed after import, import it again");
+    }
+    try {
+      return getText(starts[entry], ends[entry]);
+    } catch (InternalError e) {
+      // the mapped file was truncated by another process
+      throw new IllegalStateException(
+          "Spectral library " + file.getAbsolutePath() + " changed after import, import it again",
+          e);
+    }
+  }
+
+  public double getPrecursorMZ(int entry) {
+    return precursorMZs[entry];
+  }
+
+  @Nullable
+  public String getName(int entry) {
+    return names[entry];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public double getProgress() {
+    return fileSize == 0 ? 1 : scannedBytes / (double) fileSize;
+  }
+
+  private boolean isUpToDate() {
+    return file.lastModified() == lastModified && file.length() == fileSize;
+  }
+
+  /**
+   * Format specific scanner for the lines of a library. A new instance is used for each scan.
+   */
+  public interface LineScanner {
+
+    /**
+     * @param index the index to read bytes from and to add entries to
+     * @param start first byte of the line
+     * @param end   end of the line (exclusive) without line separators
+     */
+    void scanLine(@NotNull SpectralLibraryIndex index, long start, long end);
+
+    /**
+     * Called after the last line
+     *
+     * @param end the end of the file
+     */
+    default void finish(@NotNull SpectralLibraryIndex index, long end) {
+    }
+  }
+
+  /**
+   * Result of {@link #checkNumber(long, long)}. Zero is only +0.0 as compared by {@link
+   * Double#compare(double, double)}.
+   */
+  public enum NumberType {
+    INVALID, ZERO, NON_ZERO
+  }
+
+  private record CacheKey(File file, Class<?> format, long size, long lastModified) {
+
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.filter_alignscans.AlignScansParameters;
+import io.github.mzmine.modules.dataprocessing.filter_alignscans.AlignScansTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Aligns small synthetic files with the {@link AlignScansTask}. All scans share the m/z values
+ * 100-109 and the same peak shape, scaled per scan.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class AlignScansTaskTest {
+
+  private static final double DELTA = 1E-9;
+  private static final double[] PROFILE = {1, 2, 5, 10, 20, 10, 5, 2, 1, 1};
+  private static final double[] SCALE = {1.0, 1.3, 0.8, 1.1, 1.5, 0.9, 1.2};
+
+  @BeforeAll
+  void initialise() {
+    MZmineCore.main(new String[]{"-r", "-m", "all"});
+  }
+
+  /**
+   * Scan 3 is shifted by one data point and is shifted back, the other scans are not changed.
+   */
+  @Test
+  void testShiftedScanIsAligned() throws IOException {
+    final double[][] intensities = new double[SCALE.length][];
+    for (int i = 0; i < SCALE.length; i++) {
+      intensities[i] = profile(SCALE[i], i == 3 ? 1 : 0);
+    }
+    final RawDataFile aligned = align(createFile(mzGrid(SCALE.length), intensities), 2);
+
+    assertEquals(SCALE.length, aligned.getNumOfScans());
+    final double[] expected = profile(SCALE[3], 0);
+    expected[expected.length - 1] = 0;
+    assertArrayEquals(expected, intensities(aligned.getScan(3)), DELTA);
+    for (int i = 0; i < SCALE.length; i++) {
+      if (i != 3) {
+        assertArrayEquals(intensities[i], intensities(aligned.getScan(i)), DELTA, "scan " + i);
+      }
+    }
+  }
+
+  /**
+   * The m/z values of scan 2 are below all m/z values of the other scans. The binary search ends
+   * at index 0 of the other scans, which is no match, so scan 2 has nothing to correlate with and
+   * is not shifted.
+   */
+  @Test
+  void testMissAtFirstIndexIsSkipped() throws IOException {
+    final double[][] mzs = mzGrid(5);
+    final double[][] intensities = new double[5][];
+    for (int i = 0; i < 5; i++) {
+      intensities[i] = profile(SCALE[i], 0);
+    }
+    for (int k = 0; k < mzs[2].length; k++) {
+      mzs[2][k] = 10 + k;
+    }
+    intensities[2] = new double[]{20, 1, 1, 2, 5, 10, 20, 10, 5, 2};
+    final RawDataFile aligned = align(createFile(mzs, intensities), 2);
+    assertArrayEquals(intensities[2], intensities(aligned.getScan(2)), DELTA);
+  }
+
+  /**
+   * The window of 11 scans is larger than the file and is clamped to the three scans.
+   */
+  @Test
+  void testWindowsClampedToScans() throws IOException {
+    final double[][] intensities = {profile(1, 0), profile(2, 0), profile(3, 0)};
+    final RawDataFile aligned = align(createFile(mzGrid(3), intensities), 5);
+    assertEquals(3, aligned.getNumOfScans());
+    for (int i = 0; i < 3; i++) {
+      assertArrayEquals(intensities[i], intensities(aligned.getScan(i)), DELTA, "scan " + i);
+    }
+  }
+
+  private static RawDataFile align(RawDataFile file, int scanSpan) {
+    final MZmineProject project = new MZmineProjectImpl();
+    project.addFile(file);
+    final ParameterSet parameters = new AlignScansParameters().cloneParameterSet();
+    parameters.setParameter(AlignScansParameters.scanSpan, scanSpan);
+    parameters.setParameter(AlignScansParameters.mzSpan, 1);
+    parameters.setParameter(AlignScansParameters.minimumHeight, 0d);
+    parameters.setParameter(AlignScansParameters.logTransform, false);
+    parameters.setParameter(AlignScansParameters.suffix, "aligned");
+    parameters.setParameter(AlignScansParameters.removeOld, false);
+
+    final AlignScansTask task = new AlignScansTask(project, file, parameters, null,
+        Instant.now());
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+    return Arrays.stream(project.getDataFiles())
+        .filter(f -> f.getName().equals(file.getName() + " aligned")).findFirst().orElseThrow();
+  }
+
+  /**
+   * @return the peak profile times scale, moved to higher m/z by shift data points
+   */
+  private static double[] profile(double scale, int shift) {
+    final double[] intensities = new double[PROFILE.length];
+    for (int k = 0; k < PROFILE.length; k++) {
+      intensities[k] = 1000 * scale * (k - shift >= 0 ? PROFILE[k - shift] : PROFILE[0]);
+    }
+    return intensities;
+  }
+
+  private static double[][] mzGrid(int numScans) {
+    final double[][] mzs = new double[numScans][PROFILE.length];
+    for (double[] scanMzs : mzs) {
+      for (int k = 0; k < scanMzs.length; k++) {
+        scanMzs[k] = 100 + k;
+      }
+    }
+    return mzs;
+  }
+
+  private static RawDataFile createFile(double[][] mzs, double[][] intensities)
+      throws IOException {
+    final RawDataFile file = new RawDataFileImpl("alignment test", null, null);
+    for (int i = 0; i < mzs.length; i++) {
+      file.addScan(new SimpleScan(file, i + 1, 1, i * 0.1f, null, mzs[i], intensities[i],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d)));
+    }
+    return file;
+  }
+
+  private static double[] intensities(Scan scan) {
+    return scan.getIntensityValues(new double[scan.getNumberOfDataPoints()]);
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.modules.dataprocessing.filter_baselinecorrection.correctors.BaselineAlgorithms;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class BaselineAlgorithmsTest {
+
+  private static final int LENGTH = 200;
+
+  /**
+   * A linear baseline with two gaussian peaks on top.
+   */
+  private static double[] createChromatogram() {
+    final double[] y = new double[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      y[i] = trueBaseline(i) + 1000 * Math.exp(-Math.pow(i - 80, 2) / 20)
+             + 500 * Math.exp(-Math.pow(i - 150, 2) / 10);
+    }
+    return y;
+  }
+
+  private static double trueBaseline(int i) {
+    return 100 + 0.5 * i;
+  }
+
+  @Test
+  void testAsymmetricLeastSquares() {
+    final double[] baseline = BaselineAlgorithms.asymmetricLeastSquares(createChromatogram(), 1E5,
+        0.001, 25);
+    assertEquals(LENGTH, baseline.length);
+    for (int i = 0; i < LENGTH; i++) {
+      assertEquals(trueBaseline(i), baseline[i], 2d);
+    }
+  }
+
+  @Test
+  void testRubberBand() {
+    final double[] y = createChromatogram();
+    // the noise must not shift the baseline
+    final double[] linear = BaselineAlgorithms.rubberBand(y, 100d, 0d, 0d, false);
+    final double[] spline = BaselineAlgorithms.rubberBand(y, 0d, 0d, 0d, true);
+    for (int i = 0; i < LENGTH; i++) {
+      assertEquals(trueBaseline(i), linear[i], 1E-6);
+      assertEquals(trueBaseline(i), spline[i], 1E-6);
+    }
+  }
+
+  @Test
+  void testRollingBall() {
+    final double[] y = new double[LENGTH];
+    for (int i = 0; i < LENGTH; i++) {
+      y[i] = 50d + (i == 100 ? 1000d : 0d);
+    }
+    final double[] baseline = BaselineAlgorithms.rollingBall(y, 5, 3);
+    for (int i = 0; i < LENGTH; i++) {
+      assertEquals(50d, baseline[i], 1E-9);
+    }
+  }
+
+  @Test
+  void testAsymmetricLeastSquaresReference() {
+    final double[] y = createNoisyChromatogram(80);
+    final double[] baseline = BaselineAlgorithms.asymmetricLeastSquares(y, 1E3, 0.01, 25);
+    final double[] reference = referenceAsymmetricLeastSquares(y, 1E3, 0.01, 25);
+    for (int i = 0; i < y.length; i++) {
+      assertEquals(reference[i], baseline[i], 1E-6 * Math.abs(reference[i]) + 1E-6);
+    }
+  }
+
+  @Test
+  void testRollingBallReference() {
+    final double[] y = createNoisyChromatogram(150);
+    final double[] baseline = BaselineAlgorithms.rollingBall(y, 7, 4);
+    final double[] reference = referenceRollingBall(y, 7, 4);
+    for (int i = 0; i < y.length; i++) {
+      assertEquals(reference[i], baseline[i], 1E-9);
+    }
+  }
+
+  @Test
+  void testLinearRubberBandReference() {
+    final double[] y = createNoisyChromatogram(60);
+    for (double bend : new double[]{0d, 500d}) {
+      final double[] baseline = BaselineAlgorithms.rubberBand(y, 10d, 0d, bend, false);
+      final double[] reference = referenceLowerHull(y, bend);
+      for (int i = 0; i < y.length; i++) {
+        assertEquals(reference[i], baseline[i], 1E-9);
+      }
+    }
+  }
+
+  @Test
+  void testSplineRubberBandReference() {
+    final double[] y = createNoisyChromatogram(40);
+    // all points are within the noise level, so the spline is fitted to the whole chromatogram
+    final double[] baseline = BaselineAlgorithms.rubberBand(y, 1E9, 6d, 0d, true);
+    final double[] reference = referenceSmoothingSpline(y, 6d);
+    for (int i = 0; i < y.length; i++) {
+      assertEquals(reference[i], baseline[i], 1E-6 * Math.abs(reference[i]) + 1E-6);
+    }
+
+    // as many degrees of freedom as support points interpolate the support points
+    final double[] interpolated = BaselineAlgorithms.rubberBand(y, 1E9, y.length, 0d, true);
+    for (int i = 0; i < y.length; i++) {
+      assertEquals(y[i], interpolated[i], 1E-6);
+    }
+  }
+
+  private static double[] createNoisyChromatogram(int length) {
+    final Random rand = new Random(42);
+    final double[] y = new double[length];
+    for (int i = 0; i < length; i++) {
+      y[i] = 200 + 300 * Math.sin(i / 15d) + 20 * rand.nextDouble()
+             + 2000 * Math.exp(-Math.pow(i - length / 2d, 2) / 8);
+    }
+    return y;
+  }
+
+  /**
+   * ptw::asysm with a dense solver.
+   */
+  private static double[] referenceAsymmetricLeastSquares(double[] y, double lambda, double p,
+      int maxIterations) {
+    final int n = y.length;
+    // D'D
+    final double[][] penalty = new double[n][n];
+    final double[] coefficients = {1, -2, 1};
+    for (int k = 0; k < n - 2; k++) {
+      for (int a = 0; a < 3; a++) {
+        for (int b = 0; b < 3; b++) {
+          penalty[k + a][k + b] += coefficients[a] * coefficients[b];
+        }
+      }
+    }
+    final double[] w = new double[n];
+    Arrays.fill(w, 1d);
+    double[] z = new double[n];
+    for (int it = 0; it < maxIterations; it++) {
+      final double[][] a = new double[n][n];
+      final double[] rhs = new double[n];
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          a[i][j] = lambda * penalty[i][j];
+        }
+        a[i][i] += w[i];
+        rhs[i] = w[i] * y[i];
+      }
+      final double[] zNew = solveDense(a, rhs);
+      double change = 0d;
+      for (int i = 0; i < n; i++) {
+        w[i] = y[i] > zNew[i] ? p : 1 - p;
+        change += Math.abs(zNew[i] - z[i]);
+      }
+      z = zNew;
+      if (change < 1E-8) {
+        break;
+      }
+    }
+    return z;
+  }
+
+  /**
+   * Moving minimum, maximum and average by scanning the whole window for each point.
+   */
+  private static double[] referenceRollingBall(double[] y, int wm, int ws) {
+    final int n = y.length;
+    final double[] min = new double[n];
+    final double[] max = new double[n];
+    final double[] avg = new double[n];
+    for (int i = 0; i < n; i++) {
+      min[i] = Double.POSITIVE_INFINITY;
+      for (int j = Math.max(0, i - wm); j <= Math.min(n - 1, i + wm); j++) {
+        min[i] = Math.min(min[i], y[j]);
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      max[i] = Double.NEGATIVE_INFINITY;
+      for (int j = Math.max(0, i - wm); j <= Math.min(n - 1, i + wm); j++) {
+        max[i] = Math.max(max[i], min[j]);
+      }
+    }
+    for (int i = 0; i < n; i++) {
+      double sum = 0;
+      int count = 0;
+      for (int j = Math.max(0, i - ws); j <= Math.min(n - 1, i + ws); j++) {
+        sum += max[j];
+        count++;
+      }
+      avg[i] = sum / count;
+    }
+    return avg;
+  }
+
+  /**
+   * The lower convex hull is the minimum of all chords that span a point.
+   */
+  private static double[] referenceLowerHull(double[] y, double bend) {
+    final int n = y.length;
+    final double[] bent = new double[n];
+    for (int i = 0; i < n; i++) {
+      bent[i] = y[i] + bend * Math.pow(i / (double) (n - 1), 2);
+    }
+    final double[] hull = new double[n];
+    for (int x = 0; x < n; x++) {
+      hull[x] = bent[x];
+      for (int j = 0; j < x; j++) {
+        for (int k = x + 1; k < n; k++) {
+          hull[x] = Math.min(hull[x], bent[j] + (bent[k] - bent[j]) * (x - j) / (k - j));
+        }
+      }
+      hull[x] -= bend * Math.pow(x / (double) (n - 1), 2);
+    }
+    return hull;
+  }
+
+  /**
+   * Smoothing spline with knots at 0..n-1 as dense (I + lambda * Q R^-1 Q')^-1 * y. Lambda is
+   * chosen for the trace of the smoother matrix to equal df.
+   */
+  private static double[] referenceSmoothingSpline(double[] y, double df) {
+    final int n = y.length;
+    final int k = n - 2;
+    final double[][] q = new double[n][k];
+    final double[][] r = new double[k][k];
+    for (int j = 0; j < k; j++) {
+      q[j][j] = 1;
+      q[j + 1][j] = -2;
+      q[j + 2][j] = 1;
+      r[j][j] = 2d / 3d;
+      if (j + 1 < k) {
+        r[j][j + 1] = 1d / 6d;
+        r[j + 1][j] = 1d / 6d;
+      }
+    }
+    final double[][] rInv = invertDense(r);
+    final double[][] penalty = new double[n][n];
+    for (int a = 0; a < n; a++) {
+      for (int b = 0; b < n; b++) {
+        for (int i = 0; i < k; i++) {
+          for (int j = 0; j < k; j++) {
+            penalty[a][b] += q[a][i] * rInv[i][j] * q[b][j];
+          }
+        }
+      }
+    }
+
+    double lo = -10;
+    double hi = 15;
+    double[][] smoother = null;
+    for (int it = 0; it < 100; it++) {
+      final double mid = (lo + hi) / 2;
+      final double lambda = Math.pow(10, mid);
+      final double[][] a = new double[n][n];
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          a[i][j] = lambda * penalty[i][j] + (i == j ? 1 : 0);
+        }
+      }
+      smoother = invertDense(a);
+      double trace = 0;
+      for (int i = 0; i < n; i++) {
+        trace += smoother[i][i];
+      }
+      if (trace > df) {
+        lo = mid;
+      } else {
+        hi = mid;
+      }
+    }
+    final double[] fitted = new double[n];
+    for (int i = 0; i < n; i++) {
+      for (int j = 0; j < n; j++) {
+        fitted[i] += smoother[i][j] * y[j];
+      }
+    }
+    return fitted;
+  }
+
+  private static double[][] invertDense(double[][] a) {
+    final int n = a.length;
+    final double[][] inverse = new double[n][n];
+    for (int col = 0; col < n; col++) {
+      final double[] unit = new double[n];
+      unit[col] = 1;
+      final double[] x = solveDense(a, unit);
+      for (int row = 0; row < n; row++) {
+        inverse[row][col] = x[row];
+      }
+    }
+    return inverse;
+  }
+
+  /**
+   * Gaussian elimination with partial pivoting.
+   */
+  private static double[] solveDense(double[][] matrix, double[] rhs) {
+    final int n = rhs.length;
+    final double[][] a = new double[n][];
+    for (int i = 0; i < n; i++) {
+      a[i] = Arrays.copyOf(matrix[i], n + 1);
+      a[i][n] = rhs[i];
+    }
+    for (int col = 0; col < n; col++) {
+      int pivot = col;
+      for (int row = col + 1; row < n; row++) {
+        if (Math.abs(a[row][col]) > Math.abs(a[pivot][col])) {
+          pivot = row;
+        }
+      }
+      final double[] tmp = a[col];
+      a[col] = a[pivot];
+      a[pivot] = tmp;
+      for (int row = col + 1; row < n; row++) {
+        final double factor = a[row][col] / a[col][col];
+        for (int c = col; c <= n; c++) {
+          a[row][c] -= factor * a[col][c];
+        }
+      }
+    }
+    final double[] x = new double[n];
+    for (int row = n - 1; row >= 0; row--) {
+      double v = a[row][n];
+      for (int c = row + 1; c < n; c++) {
+        v -= a[row][c] * x[c];
+      }
+      x[row] = v / a[row][row];
+    }
+    return x;
+  }
+}
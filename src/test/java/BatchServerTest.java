@@ -0,0 +1,104 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import io.github.mzmine.modules.batchmode.BatchServer;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Checks that the {@link BatchServer} only accepts batch XML from clients that are not web pages
+ * and that the XML cannot include external entities.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class BatchServerTest {
+
+  private static final String BATCH = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><batch/>";
+
+  private BatchServer server;
+  private HttpClient client;
+
+  @BeforeAll
+  public void init() throws IOException {
+    server = BatchServer.start(0, 1);
+    client = HttpClient.newHttpClient();
+  }
+
+  @AfterAll
+  public void tearDown() {
+    server.stop();
+  }
+
+  @Test
+  void testRejectsRequestsWithOrigin() throws Exception {
+    final HttpResponse<String> response = post(
+        request().header("Content-Type", "application/xml").header("Origin", "http://example.com"),
+        BATCH);
+    assertEquals(403, response.statusCode());
+
+    final HttpResponse<String> get = client.send(
+        request().header("Origin", "http://example.com").GET().build(), BodyHandlers.ofString());
+    assertEquals(403, get.statusCode());
+  }
+
+  @Test
+  void testRequiresXmlContentType() throws Exception {
+    assertEquals(415, post(request().header("Content-Type", "text/plain"), BATCH).statusCode());
+    assertEquals(415, post(request(), BATCH).statusCode());
+    // an empty batch passes the content type check and fails later
+    assertEquals(400,
+        post(request().header("Content-Type", "application/xml; charset=UTF-8"), BATCH)
+            .statusCode());
+  }
+
+  @Test
+  void testRejectsDoctype() throws Exception {
+    final String xxe = """
+        <?xml version="1.0" encoding="UTF-8"?>
+        <!DOCTYPE batch [<!ENTITY secret SYSTEM "file:///etc/hostname">]>
+        <batch><batchstep method="&secret;"/></batch>
+        """;
+    final HttpResponse<String> response = post(
+        request().header("Content-Type", "application/xml"), xxe);
+    assertEquals(400, response.statusCode());
+    // the response does not repeat the parser message
+    assertFalse(response.body().contains("DOCTYPE"), response.body());
+  }
+
+  private HttpRequest.Builder request() {
+    return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + "/jobs"));
+  }
+
+  private HttpResponse<String> post(HttpRequest.Builder request, String body)
+      throws IOException, InterruptedException {
+    return client.send(request.POST(BodyPublishers.ofString(body)).build(),
+        BodyHandlers.ofString());
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.features.FeatureListBuilder;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.features.types.annotations.CommentType;
+import io.github.mzmine.datamodel.features.types.numbers.MZType;
+import io.github.mzmine.datamodel.features.types.numbers.RTType;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Creates rows in parallel, while some of the rows still register a new type.
+ */
+class FeatureListBuilderTest {
+
+  private static final int NUM_ROWS = 50_000;
+
+  @Test
+  void testParallelRowsWithLateTypes() {
+    final ModularFeatureList flist = new ModularFeatureList("builder", null);
+    final FeatureListBuilder builder = new FeatureListBuilder(flist, 1).addRowTypes(new MZType());
+
+    final List<Integer> sources = IntStream.range(0, NUM_ROWS).boxed().toList();
+    final int added = builder.addRows(sources, (i, id) -> {
+      if (i % 7 == 0) {
+        return null;
+      }
+      final ModularFeatureListRow row = new ModularFeatureListRow(flist, id);
+      row.set(MZType.class, 100d + i);
+      // registered by rows of the parallel section
+      if (i % 1000 == 999) {
+        row.set(CommentType.class, "row " + i);
+      }
+      if (i > NUM_ROWS / 2) {
+        row.set(RTType.class, i / 1000f);
+      }
+      return row;
+    }, true, () -> false);
+    builder.build();
+
+    final int expected = (int) sources.stream().filter(i -> i % 7 != 0).count();
+    assertEquals(expected, added);
+    assertEquals(expected, flist.getNumberOfRows());
+    assertTrue(flist.hasRowType(MZType.class));
+    assertTrue(flist.hasRowType(CommentType.class));
+    assertTrue(flist.hasRowType(RTType.class));
+
+    int lastId = 0;
+    for (FeatureListRow row : flist.getRows()) {
+      final int i = row.getID() - 1;
+      assertTrue(row.getID() > lastId, "Rows are not in the order of the sources");
+      lastId = row.getID();
+      assertEquals(100d + i, row.getAverageMZ());
+      assertEquals(i % 1000 == 999 ? "row " + i : null, row.get(CommentType.class));
+    }
+  }
+}
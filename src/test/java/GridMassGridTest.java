@@ -0,0 +1,119 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.modules.dataprocessing.featdet_gridmass.GridMassGrid;
+import io.github.mzmine.modules.dataprocessing.featdet_gridmass.GridMassGrid.ProbeCenters;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Runs the GridMass smoothing and probing on a synthetic LC-MS run and compares the parallel to the
+ * serial result.
+ */
+class GridMassGridTest {
+
+  private static final int NUM_SCANS = 400;
+  private static final double[] PEAK_MZS = {150.0712, 201.1234, 245.5555, 280.0001};
+  private static final int[] PEAK_SCANS = {50, 130, 220, 350};
+  private static final double PEAK_HEIGHT = 1e5;
+  private static final double BACKGROUND_MZ = 299.9;
+
+  @Test
+  void testParallelSameAsSerial() {
+    final double[] rts = new double[NUM_SCANS];
+    final double[][][] data = createData(new Random(42), rts);
+
+    final GridMassGrid serialGrid = GridMassGrid.create(rts, i -> data[i], 0.05, 0.01, 1000,
+        false, () -> false);
+    assertNotNull(serialGrid);
+    final ProbeCenters serial = serialGrid.moveProbesToCenters(0.02, 2, 2, 0.01, 1000, false,
+        () -> false);
+
+    final GridMassGrid parallelGrid = GridMassGrid.create(rts, i -> data[i], 0.05, 0.01, 1000,
+        true, () -> false);
+    assertNotNull(parallelGrid);
+    final ProbeCenters parallel = parallelGrid.moveProbesToCenters(0.02, 2, 2, 0.01, 1000, true,
+        () -> false);
+
+    assertNotNull(serial);
+    assertNotNull(parallel);
+    assertEquals(serialGrid.getNumberOfDataPoints(), parallelGrid.getNumberOfDataPoints());
+    assertEquals(serialGrid.getMinMz(), parallelGrid.getMinMz());
+    assertEquals(serialGrid.getMaxMz(), parallelGrid.getMaxMz());
+    assertEquals(serial.size(), parallel.size());
+    assertArrayEquals(serial.mzs(), parallel.mzs());
+    assertArrayEquals(serial.scans(), parallel.scans());
+    assertArrayEquals(serial.centerMzs(), parallel.centerMzs());
+    assertArrayEquals(serial.centerScans(), parallel.centerScans());
+    assertArrayEquals(serial.centerIntensities(), parallel.centerIntensities());
+
+    // every synthetic peak is the center of at least one probe
+    for (int p = 0; p < PEAK_MZS.length; p++) {
+      boolean found = false;
+      for (int i = 0; i < parallel.size() && !found; i++) {
+        found = Math.abs(parallel.centerMzs()[i] - PEAK_MZS[p]) < 0.005
+            && Math.abs(parallel.centerScans()[i] - PEAK_SCANS[p]) <= 2
+            && parallel.centerIntensities()[i] > PEAK_HEIGHT / 2;
+      }
+      assertTrue(found, "Peak at m/z " + PEAK_MZS[p] + " was not found");
+    }
+  }
+
+  /**
+   * Gaussian chromatographic peaks and a constant background ion on top of random noise, sorted by
+   * m/z in each scan.
+   */
+  private static double[][][] createData(Random random, double[] rts) {
+    final double[][][] data = new double[NUM_SCANS][][];
+    for (int s = 0; s < NUM_SCANS; s++) {
+      rts[s] = s * 0.01;
+      final int numNoise = 500;
+      final double[] mzs = new double[numNoise + PEAK_MZS.length + 1];
+      final double[] intensities = new double[mzs.length];
+      for (int i = 0; i < numNoise; i++) {
+        mzs[i] = 100 + random.nextDouble() * 200;
+        intensities[i] = 50 + random.nextDouble() * 500;
+      }
+      for (int p = 0; p < PEAK_MZS.length; p++) {
+        final double d = (s - PEAK_SCANS[p]) / 6d;
+        mzs[numNoise + p] = PEAK_MZS[p] + (random.nextDouble() - 0.5) * 0.0004;
+        intensities[numNoise + p] = 100 + PEAK_HEIGHT * Math.exp(-0.5 * d * d);
+      }
+      mzs[mzs.length - 1] = BACKGROUND_MZ;
+      intensities[mzs.length - 1] = 5000;
+
+      final Integer[] order = new Integer[mzs.length];
+      Arrays.setAll(order, i -> i);
+      Arrays.sort(order, (a, b) -> Double.compare(mzs[a], mzs[b]));
+      final double[] sortedMzs = new double[mzs.length];
+      final double[] sortedIntensities = new double[mzs.length];
+      for (int i = 0; i < order.length; i++) {
+        sortedMzs[i] = mzs[order[i]];
+        sortedIntensities[i] = intensities[order[i]];
+      }
+      data[s] = new double[][]{sortedMzs, sortedIntensities};
+    }
+    return data;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.featuredata.IonTimeSeries;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogrambuilder.Chromatogram;
+import io.github.mzmine.modules.dataprocessing.featdet_gridmass.GridMassParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_gridmass.GridMassTask;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.File;
+import java.time.Instant;
+import java.util.List;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Runs GridMass on a test file and compares the features to the previous implementation, see
+ * {@link LegacyGridMass}.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class GridMassTaskTest {
+
+  private static final Logger logger = Logger.getLogger(GridMassTaskTest.class.getName());
+
+  private static final double MZ_TOLERANCE = 0.1;
+  private static final double MIN_TIME_SPAN = 0.1;
+  private static final double MAX_TIME_SPAN = 1.0;
+  private static final double MIN_HEIGHT = 1E5;
+  private static final double INTENSITY_SIMILARITY = 0.5;
+  private static final double SMOOTHING_TIME = 0.05;
+  private static final double SMOOTHING_MZ = 0.05;
+  private static final String IGNORE_TIMES = "0-0";
+  private static final String SUFFIX = "gridmass";
+
+  private MZmineProject project;
+  private RawDataFile raw;
+
+  @BeforeAll
+  public void init() throws InterruptedException {
+    MZmineTestUtil.cleanProject();
+    project = MZmineCore.getProjectManager().getCurrentProject();
+
+    final File file = new File(GridMassTaskTest.class.getClassLoader()
+        .getResource("rawdatafiles/DOM_b.mzXML").getFile());
+    final AllSpectralDataImportParameters paramDataImport = new AllSpectralDataImportParameters();
+    paramDataImport.setParameter(AllSpectralDataImportParameters.fileNames, new File[]{file});
+    paramDataImport.setParameter(AllSpectralDataImportParameters.advancedImport, false);
+    final TaskResult finished = MZmineTestUtil.callModuleWithTimeout(30,
+        AllSpectralDataImportModule.class, paramDataImport);
+    assertEquals(TaskResult.FINISHED, finished);
+    assertEquals(1, project.getDataFiles().length);
+    raw = project.getDataFiles()[0];
+  }
+
+  @AfterAll
+  public void tearDown() {
+    MZmineTestUtil.cleanProject();
+  }
+
+  @Test
+  void testSameFeaturesAsLegacy() {
+    final ScanSelection scanSelection = new ScanSelection(1);
+    final List<Chromatogram> expected = new LegacyGridMass(raw,
+        scanSelection.getMatchingScans(raw), MZ_TOLERANCE, MIN_TIME_SPAN, MAX_TIME_SPAN,
+        MIN_HEIGHT, INTENSITY_SIMILARITY, SMOOTHING_TIME, SMOOTHING_MZ, IGNORE_TIMES).run();
+    assertFalse(expected.isEmpty(), "The reference found no features");
+
+    final ParameterSet parameters = new GridMassParameters().cloneParameterSet();
+    parameters.setParameter(GridMassParameters.scanSelection, scanSelection);
+    parameters.setParameter(GridMassParameters.suffix, SUFFIX);
+    parameters.setParameter(GridMassParameters.minimumHeight, MIN_HEIGHT);
+    parameters.setParameter(GridMassParameters.mzTolerance, MZ_TOLERANCE);
+    parameters.setParameter(GridMassParameters.timeSpan,
+        Range.closed(MIN_TIME_SPAN, MAX_TIME_SPAN));
+    parameters.setParameter(GridMassParameters.smoothingTimeSpan, SMOOTHING_TIME);
+    parameters.setParameter(GridMassParameters.smoothingTimeMZ, SMOOTHING_MZ);
+    parameters.setParameter(GridMassParameters.intensitySimilarity, INTENSITY_SIMILARITY);
+    parameters.setParameter(GridMassParameters.ignoreTimes, IGNORE_TIMES);
+
+    final GridMassTask task = new GridMassTask(project, raw, parameters, null, Instant.now());
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+
+    final FeatureList flist = project.getCurrentFeatureLists().stream()
+        .filter(f -> f.getName().equals(raw + " " + SUFFIX)).findFirst().orElse(null);
+    assertNotNull(flist);
+    logger.info("GridMass found " + flist.getNumberOfRows() + " features, the reference "
+        + expected.size());
+
+    // same features in the same order
+    assertEquals(expected.size(), flist.getNumberOfRows());
+    for (int i = 0; i < expected.size(); i++) {
+      final Chromatogram chrom = expected.get(i);
+      final FeatureListRow row = flist.getRow(i);
+      final Feature feature = row.getFeature(raw);
+      assertNotNull(feature);
+      final IonTimeSeries<? extends Scan> series = feature.getFeatureData();
+      assertEquals(chrom.getDataPoints().size(), series.getNumberOfValues(),
+          "Number of data points of feature " + i);
+      for (int j = 0; j < series.getNumberOfValues(); j++) {
+        final DataPoint dp = chrom.getDataPoint(series.getSpectrum(j));
+        assertNotNull(dp, "Feature " + i + " has a data point in another scan");
+        assertEquals(dp.getMZ(), series.getMZ(j), "m/z of feature " + i);
+        assertEquals(dp.getIntensity(), series.getIntensity(j), "Intensity of feature " + i);
+      }
+    }
+  }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.featuredata.IonMobilitySeries;
+import io.github.mzmine.datamodel.featuredata.IonMobilogramTimeSeries;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.featdet_ionmobilitytracebuilder.AdvancedImsTraceBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_ionmobilitytracebuilder.IonMobilityTraceBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_ionmobilitytracebuilder.IonMobilityTraceBuilderTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javafx.scene.paint.Color;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Builds ion mobility traces of a small synthetic drift tube file with the parallel and the
+ * previous trace builder and compares the detected signals. The zeros that pad the traces are not
+ * compared, the parallel builder places them by mobility scan index.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class IonMobilityTraceBuilderTest {
+
+  private static final int NUM_FRAMES = 40;
+  private static final int NUM_MOBILITY_SCANS = 30;
+  private static final double MIN_RELATIVE_INTENSITY = 0.01;
+
+  /**
+   * m/z, frame and mobility scan of the apex, height. Two ions with close m/z and two ions with the
+   * same m/z at different retention times, which end up in the same trace.
+   */
+  private static final double[][] ANALYTES = {{150.0712, 10, 8, 1E5}, {150.0912, 14, 20, 5E4},
+      {302.1451, 12, 15, 2E5}, {455.2903, 8, 10, 8E4}, {455.2903, 30, 12, 6E4},
+      {612.4012, 25, 22, 3E5}, {788.5555, 20, 5, 1E4}};
+  private static final int NUM_TRACES = ANALYTES.length - 1;
+  // elutes too short for a trace
+  private static final double SHORT_ANALYTE_MZ = 700.3333;
+
+  private IMSRawDataFileImpl file;
+
+  @BeforeAll
+  void initialise() throws IOException {
+    MZmineCore.main(new String[]{"-r", "-m", "all"});
+    file = createFile(new Random(7));
+  }
+
+  @Test
+  void testParallelSameAsPrevious() {
+    final MZmineProject project = new MZmineProjectImpl();
+    final FeatureList previous = buildTraces(project, false);
+    final FeatureList parallel = buildTraces(project, true);
+
+    Assertions.assertEquals(NUM_TRACES, previous.getNumberOfRows());
+    Assertions.assertEquals(previous.getNumberOfRows(), parallel.getNumberOfRows());
+    for (int i = 0; i < previous.getNumberOfRows(); i++) {
+      final FeatureListRow expectedRow = previous.getRow(i);
+      final FeatureListRow actualRow = parallel.getRow(i);
+      Assertions.assertEquals(expectedRow.getAverageMZ(), actualRow.getAverageMZ(), 1E-4,
+          "m/z of row " + i);
+
+      final IonMobilogramTimeSeries expected = (IonMobilogramTimeSeries) expectedRow
+          .getFeature(file).getFeatureData();
+      final IonMobilogramTimeSeries actual = (IonMobilogramTimeSeries) actualRow.getFeature(file)
+          .getFeatureData();
+      Assertions.assertEquals(nonZeroFrames(expected), nonZeroFrames(actual),
+          "Frames of row " + i);
+      Assertions.assertEquals(nonZeroMobilityScans(expected), nonZeroMobilityScans(actual),
+          "Mobility scans of row " + i);
+    }
+  }
+
+  private FeatureList buildTraces(MZmineProject project, boolean parallel) {
+    final String suffix = parallel ? "parallel" : "previous";
+    final ParameterSet parameters = new IonMobilityTraceBuilderParameters().cloneParameterSet();
+    parameters.setParameter(IonMobilityTraceBuilderParameters.scanSelection, new ScanSelection(1));
+    parameters.setParameter(IonMobilityTraceBuilderParameters.mzTolerance,
+        new MZTolerance(0.002, 5));
+    parameters.setParameter(IonMobilityTraceBuilderParameters.minDataPointsRt, 5);
+    parameters.setParameter(IonMobilityTraceBuilderParameters.minTotalSignals, 20);
+    parameters.setParameter(IonMobilityTraceBuilderParameters.suffix, suffix);
+
+    final ParameterSet advanced = new AdvancedImsTraceBuilderParameters().cloneParameterSet();
+    advanced.setParameter(AdvancedImsTraceBuilderParameters.timsBinningWidth, false);
+    advanced.setParameter(AdvancedImsTraceBuilderParameters.twimsBinningWidth, false);
+    advanced.setParameter(AdvancedImsTraceBuilderParameters.dtimsBinningWidth, true);
+    advanced.getParameter(AdvancedImsTraceBuilderParameters.dtimsBinningWidth)
+        .getEmbeddedParameter().setValue(1);
+    advanced.setParameter(AdvancedImsTraceBuilderParameters.parallelTraceBuilder, parallel);
+    parameters.getParameter(IonMobilityTraceBuilderParameters.advancedParameters)
+        .setValue(advanced);
+
+    final IonMobilityTraceBuilderTask task = new IonMobilityTraceBuilderTask(project, file,
+        new ArrayList<>(file.getFrames()), parameters, Instant.now());
+    task.run();
+    Assertions.assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+
+    return project.getCurrentFeatureLists().stream()
+        .filter(flist -> flist.getName().equals(file.getName() + " " + suffix)).findFirst()
+        .orElseThrow();
+  }
+
+  /**
+   * @return frame number, m/z and intensity of all frames with a signal.
+   */
+  private static List<String> nonZeroFrames(IonMobilogramTimeSeries series) {
+    final List<String> frames = new ArrayList<>();
+    for (int i = 0; i < series.getNumberOfValues(); i++) {
+      if (series.getIntensity(i) > 0) {
+        frames.add(String.format("%d %.4f %.1f", series.getSpectrum(i).getFrameId(),
+            series.getMZ(i), series.getIntensity(i)));
+      }
+    }
+    return frames;
+  }
+
+  /**
+   * @return frame number, mobility scan number, m/z and intensity of all mobility scans with a
+   * signal.
+   */
+  private static List<String> nonZeroMobilityScans(IonMobilogramTimeSeries series) {
+    final List<String> scans = new ArrayList<>();
+    for (IonMobilitySeries mobilogram : series.getMobilograms()) {
+      for (int i = 0; i < mobilogram.getNumberOfValues(); i++) {
+        if (mobilogram.getIntensity(i) > 0) {
+          scans.add(String.format("%d %d %.4f %.1f",
+              mobilogram.getSpectrum(i).getFrame().getFrameId(),
+              mobilogram.getSpectrum(i).getMobilityScanNumber(), mobilogram.getMZ(i),
+              mobilogram.getIntensity(i)));
+        }
+      }
+    }
+    return scans;
+  }
+
+  /**
+   * Gaussian peaks in retention time and mobility. The m/z values scatter by less than the m/z
+   * tolerance, so every ion has one signal per mobility scan.
+   */
+  private static IMSRawDataFileImpl createFile(Random random) throws IOException {
+    final IMSRawDataFileImpl file = new IMSRawDataFileImpl("ims trace test", null, null,
+        Color.BLACK);
+    final double[] mobilities = new double[NUM_MOBILITY_SCANS];
+    for (int i = 0; i < NUM_MOBILITY_SCANS; i++) {
+      mobilities[i] = 20 + i * 0.5;
+    }
+
+    for (int f = 0; f < NUM_FRAMES; f++) {
+      final List<BuildingMobilityScan> mobilityScans = new ArrayList<>();
+      final double[] summed = new double[ANALYTES.length + 1];
+      final double[] frameMzs = new double[ANALYTES.length + 1];
+      for (int m = 0; m < NUM_MOBILITY_SCANS; m++) {
+        final List<double[]> signals = new ArrayList<>();
+        for (int a = 0; a < ANALYTES.length; a++) {
+          final double[] analyte = ANALYTES[a];
+          final double dRt = (f - analyte[1]) / 2.5;
+          final double dMobility = (m - analyte[2]) / 2d;
+          final double factor = Math.exp(-0.5 * (dRt * dRt + dMobility * dMobility));
+          if (factor >= MIN_RELATIVE_INTENSITY) {
+            final double mz = analyte[0] + (random.nextDouble() - 0.5) * 0.001;
+            signals.add(new double[]{mz, analyte[3] * factor});
+            summed[a] += analyte[3] * factor;
+            frameMzs[a] = analyte[0];
+          }
+        }
+        // elutes in two frames only
+        if ((f == 17 || f == 18) && m >= 10 && m < 20) {
+          signals.add(new double[]{SHORT_ANALYTE_MZ, 5E4});
+          summed[ANALYTES.length] += 5E4;
+          frameMzs[ANALYTES.length] = SHORT_ANALYTE_MZ;
+        }
+        signals.sort((s1, s2) -> Double.compare(s1[0], s2[0]));
+        mobilityScans.add(new BuildingMobilityScan(m,
+            signals.stream().mapToDouble(s -> s[0]).toArray(),
+            signals.stream().mapToDouble(s -> s[1]).toArray()));
+      }
+
+      final List<double[]> frameSignals = new ArrayList<>();
+      for (int a = 0; a < summed.length; a++) {
+        if (summed[a] > 0) {
+          frameSignals.add(new double[]{frameMzs[a], summed[a]});
+        }
+      }
+      frameSignals.sort((s1, s2) -> Double.compare(s1[0], s2[0]));
+      final SimpleFrame frame = new SimpleFrame(file, f, 1, f * 0.05f,
+          frameSignals.stream().mapToDouble(s -> s[0]).toArray(),
+          frameSignals.stream().mapToDouble(s -> s[1]).toArray(), MassSpectrumType.CENTROIDED,
+          PolarityType.POSITIVE, "frame " + f, Range.closed(100d, 1000d),
+          MobilityType.DRIFT_TUBE, null);
+      frame.setMobilities(mobilities);
+      frame.setMobilityScans(mobilityScans, true);
+      frame.addMassList(new ScanPointerMassList(frame));
+      file.addScan(frame);
+    }
+    return file;
+  }
+}
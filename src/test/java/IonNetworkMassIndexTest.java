@@ -0,0 +1,111 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkMassIndex;
+import io.github.mzmine.modules.dataprocessing.id_ion_identity_networking.ionidnetworking.IonNetworkMassIndex.Candidate;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the candidates of the neutral mass index with the comparison of all entry pairs
+ */
+public class IonNetworkMassIndexTest {
+
+  private static final MZTolerance TOLERANCE = new MZTolerance(0.002, 10);
+
+  @Test
+  void testPointMasses() {
+    // average mode: every entry has a single neutral mass
+    Random rand = new Random(42);
+    int entries = 3000;
+    int[] rows = new int[entries];
+    int[] ions = new int[entries];
+    double[] masses = new double[entries];
+    for (int i = 0; i < entries; i++) {
+      rows[i] = i / 30;
+      ions[i] = i % 30;
+      // some neutral masses are shared between rows
+      masses[i] = rand.nextInt(4) == 0 ? 100 + rand.nextInt(20) + rand.nextDouble() * 0.004
+          : 50 + rand.nextDouble() * 1500;
+    }
+    IonNetworkMassIndex index = new IonNetworkMassIndex(rows, ions, masses, masses, TOLERANCE);
+    List<Candidate> candidates = index.findCandidates((r1, i1, r2, i2) -> true);
+
+    List<Candidate> expected = bruteForce(rows, ions, masses, masses);
+    assertEquals(expected, candidates);
+
+    // all real matches are candidates
+    int matches = 0;
+    for (int a = 0; a < entries; a++) {
+      for (int b = 0; b < entries; b++) {
+        if (rows[a] < rows[b] && TOLERANCE.checkWithinTolerance(masses[a], masses[b])) {
+          assertTrue(candidates.contains(new Candidate(rows[a], ions[a], rows[b], ions[b])));
+          matches++;
+        }
+      }
+    }
+    assertTrue(matches > 0);
+  }
+
+  @Test
+  void testMassRangesAndFilter() {
+    // feature modes: neutral mass ranges of different widths
+    Random rand = new Random(7);
+    int entries = 2000;
+    int[] rows = new int[entries];
+    int[] ions = new int[entries];
+    double[] minMasses = new double[entries];
+    double[] maxMasses = new double[entries];
+    for (int i = 0; i < entries; i++) {
+      rows[i] = i / 20;
+      ions[i] = i % 20;
+      minMasses[i] = 200 + rand.nextDouble() * 50;
+      maxMasses[i] = minMasses[i] + (rand.nextInt(10) == 0 ? 0.5 : rand.nextDouble() * 0.01);
+    }
+    IonNetworkMassIndex index = new IonNetworkMassIndex(rows, ions, minMasses, maxMasses,
+        TOLERANCE);
+    List<Candidate> candidates = index.findCandidates((r1, i1, r2, i2) -> i1 != i2);
+
+    List<Candidate> expected = bruteForce(rows, ions, minMasses, maxMasses);
+    expected.removeIf(c -> c.ion1() == c.ion2());
+    assertEquals(expected, candidates);
+  }
+
+  private static List<Candidate> bruteForce(int[] rows, int[] ions, double[] minMasses,
+      double[] maxMasses) {
+    List<Candidate> list = new ArrayList<>();
+    for (int a = 0; a < rows.length; a++) {
+      double tol = Math.max(TOLERANCE.getMzToleranceForMass(minMasses[a]),
+          TOLERANCE.getMzToleranceForMass(maxMasses[a]));
+      for (int b = 0; b < rows.length; b++) {
+        if (rows[a] < rows[b] && minMasses[b] <= maxMasses[a] + tol
+            && maxMasses[b] >= minMasses[a] - tol) {
+          list.add(new Candidate(rows[a], ions[a], rows[b], ions[b]));
+        }
+      }
+    }
+    list.sort(null);
+    return list;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopePatternGrouper;
+import io.github.mzmine.modules.dataprocessing.filter_isotopegrouper.IsotopePatternGrouper.IsotopeGroup;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.mobilitytolerance.MobilityTolerance;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the {@link IsotopePatternGrouper} to the sequential search on lists, which was used by
+ * the isotope grouper before.
+ */
+class IsotopePatternGrouperTest {
+
+  private static final int NUM_ROWS = 3000;
+
+  @Test
+  void testSameResultAsSequentialSearch() {
+    final MobilityTolerance mobilityTolerance = new MobilityTolerance(0.01f);
+    for (int seed = 0; seed < 8; seed++) {
+      final Rows rows = createRows(new Random(seed), seed % 2 == 0);
+      for (boolean monotonic : new boolean[]{false, true}) {
+        for (boolean lowestMz : new boolean[]{false, true}) {
+          for (MZTolerance mzTol : new MZTolerance[]{new MZTolerance(0.003, 10),
+              new MZTolerance(0.3, 0)}) {
+            final RTTolerance rtTol = new RTTolerance(true, 0.05f);
+            final MobilityTolerance mobTol = seed % 4 == 0 ? mobilityTolerance : null;
+            final List<IsotopeGroup> groups = new IsotopePatternGrouper(mzTol, rtTol, mobTol,
+                monotonic, lowestMz, 3).group(rows.mzs, rows.rts, rows.mobilities,
+                rows.heightOrder, () -> false);
+            final List<IsotopeGroup> expected = sequentialSearch(rows, mzTol, rtTol, mobTol,
+                monotonic, lowestMz, 3);
+
+            assertEquals(expected.size(), groups.size());
+            for (int i = 0; i < expected.size(); i++) {
+              assertEquals(expected.get(i).seed(), groups.get(i).seed());
+              assertEquals(expected.get(i).mainRow(), groups.get(i).mainRow());
+              assertEquals(expected.get(i).charge(), groups.get(i).charge());
+              assertArrayEquals(expected.get(i).rows(), groups.get(i).rows());
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Isotope patterns of random charge with noise rows in between, sorted by m/z + rt / 1E7.
+   */
+  private static Rows createRows(Random random, boolean withMobility) {
+    final List<double[]> rows = new ArrayList<>(); // mz, rt, mobility, height
+    while (rows.size() < NUM_ROWS) {
+      final double mz = 100 + random.nextDouble() * 200;
+      final double rt = random.nextDouble() * 5;
+      final double mobility = withMobility ? 0.6 + random.nextDouble() * 0.6 : Double.NaN;
+      final int charge = 1 + random.nextInt(3);
+      final double height = 1E3 + random.nextInt(1000) * 1E3;
+      final int numIsotopes = 1 + random.nextInt(4);
+      for (int i = 0; i < numIsotopes; i++) {
+        rows.add(new double[]{mz + 1.0033 * i / charge + random.nextGaussian() * 0.001,
+            rt + random.nextGaussian() * 0.01, mobility, height / (1 + i)});
+      }
+    }
+    rows.sort(Comparator.comparingDouble(r -> r[0] + (float) r[1] / 10000000.0));
+
+    final Rows result = new Rows(rows.size());
+    for (int i = 0; i < rows.size(); i++) {
+      result.mzs[i] = rows.get(i)[0];
+      result.rts[i] = (float) rows.get(i)[1];
+      result.mobilities[i] = (float) rows.get(i)[2];
+      result.heights[i] = rows.get(i)[3];
+    }
+    result.heightOrder = IntStream.range(0, rows.size()).boxed()
+        .sorted((a, b) -> Double.compare(result.heights[b], result.heights[a]))
+        .mapToInt(Integer::intValue).toArray();
+    return result;
+  }
+
+  /**
+   * The sequential search of the isotope grouper on lists of row indices.
+   */
+  private static List<IsotopeGroup> sequentialSearch(Rows rows, MZTolerance mzTol,
+      RTTolerance rtTol, MobilityTolerance mobTol, boolean monotonic, boolean lowestMz,
+      int maxCharge) {
+    final List<Integer> byHeight = new ArrayList<>(
+        IntStream.of(rows.heightOrder).boxed().toList());
+    final List<Integer> byMz = new ArrayList<>(
+        IntStream.range(0, rows.mzs.length).boxed().toList());
+    final List<IsotopeGroup> groups = new ArrayList<>();
+
+    while (!byHeight.isEmpty()) {
+      final int seed = byHeight.remove(0);
+      final int index = byMz.indexOf(seed);
+      byMz.remove(index);
+
+      int bestCharge = 0;
+      List<Integer> best = null;
+      for (int charge = 1; charge <= maxCharge; charge++) {
+        final List<Integer> fitted = new ArrayList<>(List.of(seed));
+        if (!monotonic) {
+          fitHalf(rows, seed, charge, -1, fitted, byMz, index, mzTol, rtTol, mobTol);
+        }
+        fitHalf(rows, seed, charge, 1, fitted, byMz, index, mzTol, rtTol, mobTol);
+        if (best == null || fitted.size() > best.size()) {
+          best = fitted;
+          bestCharge = charge;
+        }
+      }
+
+      final int[] fitted = best.stream().mapToInt(Integer::intValue).toArray();
+      if (best.size() == 1) {
+        groups.add(new IsotopeGroup(seed, seed, 0, fitted));
+        continue;
+      }
+      final List<Integer> sorted = new ArrayList<>(best);
+      if (lowestMz) {
+        sorted.sort(Comparator.comparingDouble(i -> rows.mzs[i] + rows.rts[i] / 10000000.0));
+      } else {
+        sorted.sort((a, b) -> Double.compare(rows.heights[b], rows.heights[a]));
+      }
+      final int main = sorted.remove(0);
+      groups.add(new IsotopeGroup(seed, main, bestCharge, fitted));
+      byHeight.removeAll(sorted);
+      byMz.removeAll(sorted);
+    }
+    return groups;
+  }
+
+  private static void fitHalf(Rows rows, int seed, int charge, int direction,
+      List<Integer> fitted, List<Integer> byMz, int start, MZTolerance mzTol, RTTolerance rtTol,
+      MobilityTolerance mobTol) {
+    final double mainMz = rows.mzs[seed];
+    final double tolerance = mzTol.getMzToleranceForMass(mainMz);
+    for (int n = 1; ; n++) {
+      final List<Integer> candidates = new ArrayList<>();
+      for (int ind = start; ind < byMz.size() && ind >= 0; ind += direction) {
+        final int candidate = byMz.get(ind);
+        final double isotopeMz =
+            rows.mzs[candidate] - IsotopePatternGrouper.isotopeDistance * direction * n / charge;
+        final double delta = isotopeMz - mainMz;
+        if (delta * direction > tolerance) {
+          break;
+        }
+        if (Math.abs(delta) <= tolerance && rtTol.checkWithinTolerance(rows.rts[candidate],
+            rows.rts[seed]) && (mobTol == null || Float.isNaN(rows.mobilities[seed])
+            || mobTol.checkWithinTolerance(rows.mobilities[seed], rows.mobilities[candidate]))) {
+          candidates.add(candidate);
+        }
+      }
+      if (candidates.isEmpty()) {
+        return;
+      }
+      fitted.addAll(candidates);
+    }
+  }
+
+  private static class Rows {
+
+    private final double[] mzs;
+    private final float[] rts;
+    private final float[] mobilities;
+    private final double[] heights;
+    private int[] heightOrder;
+
+    private Rows(int size) {
+      mzs = new double[size];
+      rts = new float[size];
+      mobilities = new float[size];
+      heights = new double[size];
+    }
+  }
+}
@@ -0,0 +1,739 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleDataPoint;
+import io.github.mzmine.modules.dataprocessing.featdet_chromatogrambuilder.Chromatogram;
+import io.github.mzmine.util.scans.ScanUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The GridMass algorithm as it was before the grid was stored in primitive arrays and smoothed and
+ * probed in parallel (Datum objects, serial smoothing and probing). Used as reference for the
+ * current implementation. Logging, debug output and the progress were removed, the algorithm is
+ * unchanged.
+ */
+class LegacyGridMass {
+
+  private final RawDataFile dataFile;
+  private final Scan[] scans;
+  private final int totalScans;
+  private Datum[][] roi;
+  private double[] retentiontime;
+
+  private final double mzTol;
+  private final double intensitySimilarity;
+  private final double minimumTimeSpan, maximumTimeSpan;
+  private final double smoothTimeSpan, smoothTimeMZ;
+  private final double minimumHeight;
+  private final String ignoreTimes;
+  private double rtPerScan;
+  private int tolScans;
+  private int maxTolScans;
+
+  private double minMasa = 0;
+  private double maxMasa = 0;
+
+  LegacyGridMass(RawDataFile dataFile, Scan[] scans, double mzTol, double minimumTimeSpan,
+      double maximumTimeSpan, double minimumHeight, double intensitySimilarity,
+      double smoothTimeSpan, double smoothTimeMZ, String ignoreTimes) {
+    this.dataFile = dataFile;
+    this.scans = scans;
+    this.totalScans = scans.length;
+    this.mzTol = mzTol;
+    this.minimumTimeSpan = minimumTimeSpan;
+    this.maximumTimeSpan = maximumTimeSpan;
+    this.minimumHeight = minimumHeight;
+    this.intensitySimilarity = intensitySimilarity;
+    this.smoothTimeSpan = smoothTimeSpan;
+    this.smoothTimeMZ = smoothTimeMZ;
+    this.ignoreTimes = ignoreTimes;
+  }
+
+  /**
+   * @return the finished chromatograms in the order the features were added to the feature list
+   */
+  List<Chromatogram> run() {
+    int i, j;
+    Scan scan = scans[0];
+    double minRT = scan.getRetentionTime();
+    double maxRT = scan.getRetentionTime();
+    retentiontime = new double[totalScans];
+    for (i = 0; i < totalScans; i++) {
+      scan = scans[i];
+      double irt = scan.getRetentionTime();
+      if (irt < minRT)
+        minRT = irt;
+      if (irt > maxRT)
+        maxRT = irt;
+      retentiontime[i] = irt;
+    }
+    rtPerScan = (maxRT - minRT) / i;
+    tolScans = Math.max(2, (int) ((minimumTimeSpan / rtPerScan)));
+    maxTolScans = Math.max(2, (int) ((maximumTimeSpan / rtPerScan)));
+
+    roi = new Datum[totalScans][];
+    minMasa = Double.MAX_VALUE;
+    maxMasa = 0;
+    boolean[] scanOk = new boolean[totalScans];
+    Arrays.fill(scanOk, true);
+
+    IndexedDataPoint[][] data =
+        smoothDataPoints(dataFile, smoothTimeSpan, smoothTimeMZ, 0, minimumHeight);
+
+    for (i = 0; i < totalScans; i++) {
+      IndexedDataPoint mzv[] = data[i];
+      for (j = 0; j < mzv.length; j++) {
+        if (mzv[j].datapoint.getMZ() < minMasa)
+          minMasa = mzv[j].datapoint.getMZ();
+        if (mzv[j].datapoint.getMZ() > maxMasa)
+          maxMasa = mzv[j].datapoint.getMZ();
+      }
+    }
+
+    String[] it = ignoreTimes.trim().split(", ?");
+    for (j = 0; j < it.length; j++) {
+      String itj[] = it[j].split("-");
+      if (itj.length == 2) {
+        Double a = Double.parseDouble(itj[0].trim());
+        Double b = Double.parseDouble(itj[1].trim());
+        for (i = Math.abs(Arrays.binarySearch(retentiontime, a)); i < totalScans
+            && retentiontime[i] <= b; i++) {
+          if (retentiontime[i] >= a) {
+            scanOk[i] = false;
+          }
+        }
+      }
+    }
+
+    for (i = 0; i < totalScans; i++) {
+      if (scanOk[i]) {
+        scan = scans[i];
+        IndexedDataPoint mzv[] = data[i];
+        ArrayList<Datum> dal = new ArrayList<Datum>();
+        for (j = 0; j < mzv.length; j++) {
+          if (mzv[j].datapoint.getIntensity() >= minimumHeight) {
+            SimpleDataPoint origDP = new SimpleDataPoint(scan.getMzValue(mzv[j].index),
+                scan.getIntensityValue(mzv[j].index));
+            dal.add(new Datum(mzv[j].datapoint, i, origDP));
+          }
+        }
+        roi[i] = dal.toArray(new Datum[0]);
+      }
+    }
+
+    // (1) Generate probes all over
+    double byMZ = Math.max(mzTol * 2, 1e-6);
+    int byScan = Math.max(1, tolScans / 4);
+    double m;
+    int ndata = (int) Math
+        .round((((double) totalScans / (double) byScan) + 1) * ((maxMasa - minMasa + byMZ) / byMZ));
+    Probe probes[] = new Probe[ndata];
+    int idata = 0;
+    for (i = 0; i < totalScans; i += byScan) {
+      for (m = minMasa - (i % 2) * byMZ / 2; m <= maxMasa; m += byMZ) {
+        probes[idata++] = new Probe(m, i);
+      }
+    }
+
+    // (2) Move each probe to their closest center
+    double mzR = byMZ / 2;
+    int scanR = Math.max(byScan - 1, 2);
+    int okProbes = 0;
+    for (i = 0; i < idata; i++) {
+      moveProbeToCenter(probes[i], scanR, mzR);
+      if (probes[i].intensityCenter < minimumHeight) {
+        probes[i] = null;
+      } else {
+        okProbes++;
+      }
+    }
+    if (okProbes > 0) {
+      Probe[] pArr = new Probe[okProbes];
+      for (okProbes = i = 0; i < idata; i++) {
+        if (probes[i] != null) {
+          pArr[okProbes++] = probes[i];
+        }
+      }
+      probes = pArr;
+    }
+    // (3) Assign spot id to each "center"
+    Arrays.sort(probes);
+    SpotByProbes sbp = new SpotByProbes();
+    ArrayList<SpotByProbes> spots = new ArrayList<SpotByProbes>();
+    double mzA = -1;
+    int scanA = -1;
+    for (i = 0; i < probes.length; i++) {
+      if (probes[i] != null && probes[i].intensityCenter >= minimumHeight) {
+        if (probes[i].mzCenter != mzA || probes[i].scanCenter != scanA) {
+          if (sbp.size() > 0) {
+            spots.add(sbp);
+            sbp.assignSpotId();
+          }
+          sbp = new SpotByProbes();
+          mzA = probes[i].mzCenter;
+          scanA = probes[i].scanCenter;
+        }
+        sbp.addProbe(probes[i]);
+      }
+    }
+    if (sbp.size() > 0) {
+      spots.add(sbp);
+      sbp.assignSpotId();
+    }
+
+    for (SpotByProbes sx : spots) {
+      if (sx.size() > 0) {
+        assignSpotIdToDatumsFromScans(sx, scanR, mzR);
+      }
+    }
+
+    // (4) Join Tolerable Centers
+    int criticScans = Math.max(1, tolScans / 2);
+    for (i = 0; i < spots.size() - 1; i++) {
+      SpotByProbes s1 = spots.get(i);
+      if (s1.center != null && s1.size() > 0) {
+        for (j = i; j > 0 && j < spots.size() && spots.get(j - 1).center != null
+            && spots.get(j - 1).center.mzCenter + mzTol > s1.center.mzCenter; j--);
+        for (; j < spots.size(); j++) {
+          SpotByProbes s2 = spots.get(j);
+          if (i != j && s2.center != null) {
+            if (s2.center.mzCenter - s1.center.mzCenter > mzTol)
+              break;
+            int l = Math.min(Math.abs(s1.minScan - s2.minScan), Math.abs(s1.minScan - s2.maxScan));
+            int r = Math.min(Math.abs(s1.maxScan - s2.minScan), Math.abs(s1.maxScan - s2.maxScan));
+            int d = Math.min(l, r);
+            boolean overlap = !(s2.maxScan < s1.minScan || s2.minScan > s1.maxScan);
+            if ((d <= criticScans || overlap) && (intensityRatio(s1.center.intensityCenter,
+                s2.center.intensityCenter) > intensitySimilarity)) {
+              assignSpotIdToDatumsFromSpotId(s1, s2, mzR);
+              s1.addProbesFromSpot(s2, true);
+              j = i; // restart
+            }
+          }
+        }
+      }
+    }
+
+    // (5) Remove "Large" spanned masses
+    for (i = 0; i < spots.size() - 1; i++) {
+      SpotByProbes s1 = spots.get(i);
+      if (s1.center != null && s1.size() > 0) {
+        int totalScans = s1.maxScan - s1.minScan + 1;
+        int lScan = s1.minScan;
+        int rScan = s1.maxScan;
+        ArrayList<Integer> toRemove = new ArrayList<Integer>();
+        toRemove.add(i);
+        for (j = i; j > 0 && j < spots.size() && spots.get(j - 1).center != null
+            && spots.get(j - 1).center.mzCenter + mzTol > s1.center.mzCenter; j--);
+        for (; j < spots.size(); j++) {
+          SpotByProbes s2 = spots.get(j);
+          if (i != j && s2.center != null) {
+            if (s2.center.mzCenter - s1.center.mzCenter > mzTol)
+              break;
+            if (intensityRatio(s1.center.intensityCenter,
+                s2.center.intensityCenter) > intensitySimilarity) {
+              int dl = Math.min(Math.abs(lScan - s2.minScan), Math.abs(lScan - s2.maxScan));
+              int dr = Math.min(Math.abs(rScan - s2.minScan), Math.abs(rScan - s2.maxScan));
+              int md = Math.min(dl, dr);
+              if (md <= maxTolScans || !(s2.maxScan < lScan || s2.minScan > rScan)) {
+                totalScans += s2.maxScan - s2.minScan + 1;
+                toRemove.add(j);
+                lScan = Math.min(lScan, s2.minScan);
+                rScan = Math.max(rScan, s2.maxScan);
+              }
+            }
+          }
+        }
+        if (totalScans * rtPerScan > maximumTimeSpan) {
+          for (Integer J : toRemove) {
+            spots.get(J).clear();
+          }
+        }
+      }
+    }
+
+    // Build peaks from assigned datums
+    final List<Chromatogram> peaks = new ArrayList<>();
+    for (SpotByProbes sx : spots) {
+      if (sx.size() > 0 && sx.maxScan - sx.minScan + 1 >= tolScans) {
+        sx.buildMaxDatumFromScans(roi, minimumHeight);
+        if (sx.getMaxDatumScans() >= tolScans && (sx.getContigousMaxDatumScans() >= tolScans
+            || sx.getContigousToMaxDatumScansRatio() > 0.5)) {
+          Chromatogram peak = new Chromatogram(dataFile, scans);
+          if (addMaxDatumFromScans(sx, peak) > 0) {
+            peak.finishChromatogram();
+            if (peak.getArea() > 1e-6) {
+              peaks.add(peak);
+            }
+          }
+        }
+      }
+    }
+    return peaks;
+  }
+
+  private double intensityRatio(double int1, double int2) {
+    return Math.min(int1, int2) / Math.max(int1, int2);
+  }
+
+  private IndexedDataPoint[][] smoothDataPoints(RawDataFile dataFile, double timeSpan,
+      double timeMZSpan, int scanSpan, double minimumHeight) {
+    List<Scan> scanNumbers = dataFile.getScanNumbers(1);
+    int totalScans = scanNumbers.size();
+    DataPoint mzValues[][] = null; // [relative scan][j value]
+    DataPoint mzValuesJ[] = null;
+    Scan mzValuesScan[] = null;
+    int mzValuesMZidx[] = null;
+    IndexedDataPoint newMZValues[][] = null;
+    IndexedDataPoint tmpDP[] = new IndexedDataPoint[0];
+    newMZValues = new IndexedDataPoint[totalScans][];
+    int i, j, si, sj, ii, k, ssi, ssj, m;
+    double timeSmoothingMZtol = Math.max(timeMZSpan, 1e-6);
+
+    for (i = 0; i < totalScans; i++) {
+      // Smoothing in TIME space
+      Scan scan = scanNumbers.get(i);
+      double rt = retentiontime[i];
+      DataPoint[] xDP = null;
+      IndexedDataPoint[] iDP = null;
+      sj = si = i;
+      ssi = ssj = i;
+      int t = 0;
+      if (timeSpan > 0 || scanSpan > 0) {
+        if (scan != null) {
+          for (si = i; si > 1; si--) {
+            if (retentiontime[si - 1] < rt - timeSpan / 2) {
+              break;
+            }
+          }
+          for (sj = i; sj < totalScans - 1; sj++) {
+            if (retentiontime[sj + 1] >= rt + timeSpan / 2) {
+              break;
+            }
+          }
+          ssi = i - (scanSpan - 1) / 2;
+          ssj = i + (scanSpan - 1) / 2;
+          if (ssi < 0) {
+            ssj += -ssi;
+            ssi = 0;
+          }
+          if (ssj >= totalScans) {
+            ssi -= (ssj - totalScans + 1);
+            ssj = totalScans - 1;
+          }
+          if (sj - si + 1 < scanSpan) {
+            si = ssi;
+            sj = ssj;
+          }
+        }
+        if (scan != null && sj > si) {
+          // Allocate
+          if (mzValues == null || mzValues.length < sj - si + 1) {
+            mzValues = new DataPoint[sj - si + 1][];
+            mzValuesScan = new Scan[sj - si + 1];
+            mzValuesMZidx = new int[sj - si + 1];
+          }
+          // Load Data Points
+          for (j = si; j <= sj; j++) {
+            int jsi = j - si;
+            if (mzValues[jsi] == null || jsi >= mzValuesScan.length - 1
+                || !mzValuesScan[jsi + 1].equals(scanNumbers.get(j))) {
+              Scan xscan = scanNumbers.get(j);
+              mzValues[jsi] = ScanUtils.extractDataPoints(xscan);
+              mzValuesScan[jsi] = scanNumbers.get(j);
+            } else {
+              mzValues[jsi] = mzValues[jsi + 1];
+              mzValuesScan[jsi] = mzValuesScan[jsi + 1];
+            }
+            mzValuesMZidx[jsi] = 0;
+          }
+          // Estimate Averages
+          ii = i - si;
+          if (tmpDP.length < mzValues[ii].length)
+            tmpDP = new IndexedDataPoint[mzValues[ii].length * 3 / 2];
+          for (k = 0; k < mzValues[ii].length; k++) {
+            DataPoint dp = mzValues[ii][k];
+            double mz = dp.getMZ();
+            double intensidad = 0;
+            if (dp.getIntensity() > 0) { // only process those > 0
+              double a = 0;
+              short c = 0;
+              int f = 0;
+              for (j = 0; j <= sj - si; j++) {
+                for (mzValuesJ = mzValues[j]; mzValuesMZidx[j] < mzValuesJ.length - 1
+                    && mzValuesJ[mzValuesMZidx[j] + 1].getMZ() < mz
+                        - timeSmoothingMZtol; mzValuesMZidx[j]++);
+
+                f = mzValuesMZidx[j];
+
+                for (m = mzValuesMZidx[j] + 1; m < mzValuesJ.length
+                    && mzValuesJ[m].getMZ() < mz + timeSmoothingMZtol; m++) {
+                  if (Math.abs(mzValuesJ[m].getMZ() - mz) < Math.abs(mzValuesJ[f].getMZ() - mz)) {
+                    f = m;
+                  } else {
+                    break;
+                  }
+                }
+                if (f > 0 && f < mzValuesJ.length
+                    && Math.abs(mzValuesJ[f].getMZ() - mz) <= timeSmoothingMZtol
+                    && mzValuesJ[f].getIntensity() > 0) {
+                  a += mzValuesJ[f].getIntensity();
+                  c++;
+                }
+              }
+              intensidad = c > 0 ? a / c : 0;
+              if (intensidad >= minimumHeight) {
+                tmpDP[t++] = new IndexedDataPoint(k, new SimpleDataPoint(mz, intensidad));
+              }
+            }
+          }
+
+        }
+      } else if (scan != null) {
+        xDP = ScanUtils.extractDataPoints(scan);
+        if (tmpDP.length < xDP.length)
+          tmpDP = new IndexedDataPoint[xDP.length];
+        for (k = 0; k < xDP.length; k++) {
+          if (xDP[k].getIntensity() >= minimumHeight) {
+            tmpDP[t++] = new IndexedDataPoint(k, xDP[k]);
+          }
+        }
+      }
+      iDP = new IndexedDataPoint[t];
+      for (k = 0; k < t; k++) {
+        iDP[k] = tmpDP[k];
+      }
+      newMZValues[i] = iDP;
+    }
+
+    return newMZValues;
+  }
+
+  private int addMaxDatumFromScans(SpotByProbes s, Chromatogram peak) {
+    int i, j;
+    int adds = 0;
+    for (i = s.minScan; i <= s.maxScan; i++) {
+      Datum[] di = roi[i];
+      if (di != null && di.length > 0) {
+        Datum max = new Datum(new SimpleDataPoint(0, -1), 0, new SimpleDataPoint(0, -1));
+        int idx = findFirstMass(s.minMZ, di);
+        for (j = idx; j < di.length && di[j].mz <= s.maxMZ; j++) {
+          Datum d = di[j];
+          if (d.spotId == s.spotId) {
+            if (d.intensity > max.intensity && d.mz >= s.minMZ && d.intensity > minimumHeight) {
+              max = d;
+            }
+          }
+        }
+        if (max.intensity > 0) {
+          adds++;
+          peak.addMzPeak(scans[i], new SimpleDataPoint(max.mzOriginal, max.intensityOriginal));
+        }
+      }
+    }
+    return adds;
+  }
+
+  private void assignSpotIdToDatumsFromScans(SpotByProbes s, int sRadius, double mzRadius) {
+    int i, j;
+    for (i = s.minScan; i <= s.maxScan; i++) {
+      Datum[] di = roi[i];
+      if (di != null && di.length > 0) {
+        int idx = findFirstMass(s.minMZ - mzRadius, di);
+        for (j = idx; j < di.length && di[j].mz <= s.maxMZ + mzRadius; j++) {
+          Datum d = di[j];
+          if (d.mz >= s.minMZ - mzRadius) {
+            if (d.spotId != 0) {
+              // Some spot already assigned this to it. Check exactly who is the winner
+              Probe p = new Probe(d.mz, d.scan);
+              moveProbeToCenter(p, sRadius, mzRadius);
+              if (p.mzCenter == s.center.mzCenter && p.scanCenter == s.center.scanCenter) {
+                s.setSpotIdToDatum(d);
+              }
+            } else {
+              s.setSpotIdToDatum(d);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void assignSpotIdToDatumsFromSpotId(SpotByProbes s, SpotByProbes s2,
+      double mzRadius) {
+    int i, j;
+    int oldSpotId = s2.spotId;
+    int mxScan = Math.max(s.maxScan, s2.maxScan);
+    double minMZ = Math.min(s.minMZ, s2.minMZ);
+    double maxMZ = Math.max(s.maxMZ, s2.maxMZ);
+    for (i = Math.min(s.minScan, s2.minScan); i <= mxScan; i++) {
+      Datum[] di = roi[i];
+      if (di != null && di.length > 0) {
+        int idx = findFirstMass(minMZ - mzRadius, di);
+        for (j = idx; j < di.length && di[j].mz <= maxMZ + mzRadius; j++) {
+          Datum d = di[j];
+          if (d.spotId == oldSpotId) {
+            s.setSpotIdToDatum(d);
+          }
+        }
+      }
+    }
+  }
+
+  private void moveProbeToCenter(Probe p, int sRadius, double mzRadius) {
+    int i, j, k;
+    double maxMZ, minMZ;
+    boolean move = true;
+    Datum max = new Datum(new SimpleDataPoint(0, -1), 0, new SimpleDataPoint(0, -1));
+    while (move) {
+      k = Math.min(totalScans - 1, p.scanCenter + sRadius);
+      for (i = Math.max(p.scanCenter - sRadius, 0); i <= k; i++) {
+        Datum[] di = roi[i];
+        if (di != null && di.length > 0) {
+          minMZ = p.mzCenter - mzRadius;
+          int idx = findFirstMass(minMZ, di);
+          maxMZ = p.mzCenter + mzRadius;
+          for (j = idx; j < di.length && di[j].mz <= maxMZ; j++) {
+            Datum d = di[j];
+            if (d.intensity > max.intensity && d.mz >= minMZ) {
+              max = d;
+            }
+          }
+        }
+      }
+      if (max.intensity >= 0 && (max.mz != p.mzCenter || max.scan != p.scanCenter)) {
+        p.mzCenter = max.mz;
+        p.scanCenter = max.scan;
+        p.intensityCenter = max.intensity;
+      } else {
+        move = false;
+      }
+    }
+  }
+
+  private static int findFirstMass(double mass, Datum mzValues[]) {
+    int l = 0;
+    int r = mzValues.length - 1;
+    int mid = 0;
+    while (l < r) {
+      mid = (r + l) / 2;
+      if (mzValues[mid].mz > mass) {
+        r = mid - 1;
+      } else if (mzValues[mid].mz < mass) {
+        l = mid + 1;
+      } else {
+        return mid;
+      }
+    }
+    while (l > 0 && mzValues[l].mz > mass)
+      l--;
+    return l;
+  }
+
+  private static class IndexedDataPoint {
+
+    final DataPoint datapoint;
+    final int index;
+
+    IndexedDataPoint(int index, DataPoint dp) {
+      this.datapoint = dp;
+      this.index = index;
+    }
+  }
+
+  private static class Datum {
+
+    final double mz;
+    final double intensity;
+    final int scan;
+    final double mzOriginal;
+    final double intensityOriginal;
+    int spotId = 0;
+
+    Datum(DataPoint dp, int iScan, DataPoint dpOriginal) {
+      mz = dp.getMZ();
+      intensity = dp.getIntensity();
+      scan = iScan;
+      mzOriginal = dpOriginal.getMZ();
+      intensityOriginal = dpOriginal.getIntensity();
+    }
+  }
+
+  private static class Probe implements Comparable<Probe> {
+
+    final double mz;
+    final int scan;
+    double mzCenter;
+    int scanCenter;
+    double intensityCenter = -1;
+
+    Probe(double mz, int scan) {
+      this.mz = this.mzCenter = mz;
+      this.scan = this.scanCenter = scan;
+    }
+
+    @Override
+    public int compareTo(Probe other) {
+      if (other == null)
+        return -1;
+      if (mzCenter < other.mzCenter)
+        return -1;
+      if (mzCenter > other.mzCenter)
+        return 1;
+      if (scanCenter < other.scanCenter)
+        return -1;
+      if (scanCenter > other.scanCenter)
+        return 1;
+      return 0;
+    }
+  }
+
+  private static class SpotByProbes {
+
+    private static int sid = 0;
+
+    final ArrayList<Probe> probes = new ArrayList<Probe>();
+    int minScan = Integer.MAX_VALUE;
+    int maxScan = Integer.MIN_VALUE;
+    double maxMZ = Double.NEGATIVE_INFINITY;
+    double minMZ = Double.POSITIVE_INFINITY;
+    int spotId = -1;
+    Probe center = null;
+    int consecutiveScans = 0;
+    ArrayList<Datum> maxDatums = null;
+
+    void assignSpotId() {
+      if (spotId < 0) {
+        sid++;
+        spotId = sid;
+      }
+    }
+
+    int size() {
+      return probes.size();
+    }
+
+    void addProbe(Probe p) {
+      probes.add(p);
+      if (center == null)
+        center = p;
+      if (p.mz > maxMZ)
+        maxMZ = p.mz;
+      if (p.mz < minMZ)
+        minMZ = p.mz;
+      if (p.mzCenter > maxMZ)
+        maxMZ = p.mzCenter;
+      if (p.mzCenter < minMZ)
+        minMZ = p.mzCenter;
+      if (p.scan > maxScan)
+        maxScan = p.scan;
+      if (p.scan < minScan)
+        minScan = p.scan;
+      if (p.scanCenter > maxScan)
+        maxScan = p.scanCenter;
+      if (p.scanCenter < minScan)
+        minScan = p.scanCenter;
+    }
+
+    void setSpotIdToDatum(Datum d) {
+      d.spotId = spotId;
+      if (d.mz > maxMZ)
+        maxMZ = d.mz;
+      if (d.mz < minMZ)
+        minMZ = d.mz;
+      if (d.scan > maxScan)
+        maxScan = d.scan;
+      if (d.scan < minScan)
+        minScan = d.scan;
+    }
+
+    void addProbesFromSpot(SpotByProbes sbp, boolean clear) {
+      for (Probe p : sbp.probes) {
+        addProbe(p);
+      }
+      if (center.intensityCenter < sbp.center.intensityCenter)
+        center = sbp.center;
+      if (clear) {
+        sbp.clear();
+      }
+    }
+
+    void clear() {
+      probes.clear();
+      center = null;
+      spotId = -1;
+      minScan = Integer.MAX_VALUE;
+      maxScan = Integer.MIN_VALUE;
+      maxMZ = Double.NEGATIVE_INFINITY;
+      minMZ = Double.POSITIVE_INFINITY;
+    }
+
+    void buildMaxDatumFromScans(Datum[][] roi, double minimumHeight) {
+      int i, j;
+      ArrayList<Datum> mxD = new ArrayList<Datum>();
+      int cont = 0;
+      consecutiveScans = 0;
+      for (i = minScan; i <= maxScan; i++) {
+        Datum[] di = roi[i];
+        if (di != null && di.length > 0) {
+          Datum max = null;
+          int idx = findFirstMass(minMZ, di);
+          for (j = idx; j < di.length && di[j].mz <= maxMZ; j++) {
+            Datum d = di[j];
+            if (d.spotId == spotId) {
+              if ((max == null || d.intensity > max.intensity) && d.intensity > minimumHeight) {
+                max = d;
+              }
+            }
+          }
+          if (max != null && max.intensity > 0) {
+            mxD.add(max);
+            cont++;
+          } else {
+            cont = 0;
+          }
+        } else {
+          cont = 0;
+        }
+        if (cont > consecutiveScans)
+          consecutiveScans = cont;
+      }
+      maxDatums = mxD;
+    }
+
+    int getMaxDatumScans() {
+      return (maxDatums == null || maxDatums.size() == 0 ? 0
+          : maxDatums.get(maxDatums.size() - 1).scan - maxDatums.get(0).scan + 1);
+    }
+
+    int getContigousMaxDatumScans() {
+      return (maxDatums == null || maxDatums.size() == 0 ? 0 : consecutiveScans);
+    }
+
+    float getContigousToMaxDatumScansRatio() {
+      if (maxDatums == null || maxDatums.size() == 0)
+        return 0;
+      return ((float) getContigousMaxDatumScans() / (float) getMaxDatumScans());
+    }
+  }
+}
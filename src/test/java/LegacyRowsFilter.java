@@ -0,0 +1,380 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.IsotopePattern;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.types.annotations.GNPSSpectralLibraryMatchesType;
+import io.github.mzmine.datamodel.features.types.annotations.LipidMatchListType;
+import io.github.mzmine.modules.dataprocessing.filter_rowsfilter.KendrickMassDefectFilterParameters;
+import io.github.mzmine.modules.dataprocessing.filter_rowsfilter.RowsFilterParameters;
+import io.github.mzmine.modules.dataprocessing.id_gnpsresultsimport.GNPSLibraryMatch;
+import io.github.mzmine.modules.dataprocessing.id_gnpsresultsimport.GNPSLibraryMatch.ATT;
+import io.github.mzmine.modules.dataprocessing.id_lipididentification.lipidutils.MatchedLipid;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.UserParameter;
+import io.github.mzmine.parameters.parametertypes.massdefect.MassDefectFilter;
+import io.github.mzmine.util.FormulaUtils;
+import io.github.mzmine.util.RangeUtils;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBFeatureIdentity;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The row criteria of the previous RowsFilterTask, which tested every row one after the other.
+ * Used as a reference for the CompiledRowsFilter. Only the criteria are ported, the feature list
+ * handling is left out.
+ */
+class LegacyRowsFilter {
+
+  private LegacyRowsFilter() {
+  }
+
+  /**
+   * @return true for every row that passes all enabled criteria
+   */
+  static boolean[] matchesAllCriteria(MZmineProject project, ParameterSet parameters,
+      List<FeatureListRow> rows) {
+    // Get parameters.
+    final boolean onlyIdentified = parameters.getValue(RowsFilterParameters.HAS_IDENTITIES);
+    final boolean filterByIdentityText = parameters.getValue(RowsFilterParameters.IDENTITY_TEXT);
+    final boolean filterByCommentText = parameters.getValue(RowsFilterParameters.COMMENT_TEXT);
+    final String groupingParameter = (String) parameters.getValue(
+        RowsFilterParameters.GROUPSPARAMETER);
+    final boolean filterByMinFeatureCount = parameters.getValue(
+        RowsFilterParameters.MIN_FEATURE_COUNT);
+    final boolean filterByMinIsotopePatternSize = parameters.getValue(
+        RowsFilterParameters.MIN_ISOTOPE_PATTERN_COUNT);
+    final boolean filterByMzRange = parameters.getValue(RowsFilterParameters.MZ_RANGE);
+    final boolean filterByRtRange = parameters.getValue(RowsFilterParameters.RT_RANGE);
+    final boolean filterByDuration = parameters.getValue(RowsFilterParameters.FEATURE_DURATION);
+    final boolean filterByFWHM = parameters.getValue(RowsFilterParameters.FWHM);
+    final boolean filterByCharge = parameters.getValue(RowsFilterParameters.CHARGE);
+    final boolean filterByKMD = parameters.getValue(RowsFilterParameters.KENDRICK_MASS_DEFECT);
+    final boolean filterByMS2 = parameters.getValue(RowsFilterParameters.MS2_Filter);
+    Double minCount = parameters.getParameter(RowsFilterParameters.MIN_FEATURE_COUNT)
+        .getEmbeddedParameter().getValue();
+    final boolean filterByMassDefect = parameters.getValue(RowsFilterParameters.massDefect);
+    final MassDefectFilter massDefectFilter =
+        filterByMassDefect ? parameters.getParameter(RowsFilterParameters.massDefect)
+            .getEmbeddedParameter().getValue() : MassDefectFilter.ALL;
+
+    // get embedded parameters
+    final KendrickMassDefectFilterParameters kendrickParam = parameters.getParameter(
+        RowsFilterParameters.KENDRICK_MASS_DEFECT).getEmbeddedParameters();
+    final Range<Double> rangeKMD = kendrickParam.getParameter(
+        KendrickMassDefectFilterParameters.kendrickMassDefectRange).getValue();
+    final String kendrickMassBase = kendrickParam.getParameter(
+        KendrickMassDefectFilterParameters.kendrickMassBase).getValue();
+    final Double shift = kendrickParam.getParameter(KendrickMassDefectFilterParameters.shift)
+        .getValue();
+    final Integer kendrickCharge = kendrickParam.getParameter(
+        KendrickMassDefectFilterParameters.charge).getValue();
+    final Integer divisor = kendrickParam.getParameter(KendrickMassDefectFilterParameters.divisor)
+        .getValue();
+    final Boolean useRemainderOfKendrickMass = kendrickParam.getParameter(
+        KendrickMassDefectFilterParameters.useRemainderOfKendrickMass).getValue();
+    final Range<Integer> chargeRange =
+        filterByCharge ? parameters.getParameter(RowsFilterParameters.CHARGE).getEmbeddedParameter()
+            .getValue() : null;
+    final Range<Double> durationRange =
+        filterByDuration ? parameters.getParameter(RowsFilterParameters.FEATURE_DURATION)
+            .getEmbeddedParameter().getValue() : null;
+    final Integer minIsotopePatternSize = parameters.getParameter(
+        RowsFilterParameters.MIN_ISOTOPE_PATTERN_COUNT).getEmbeddedParameter().getValue();
+    final String commentSearchText = parameters.getParameter(RowsFilterParameters.COMMENT_TEXT)
+        .getEmbeddedParameter().getValue().toLowerCase().trim();
+    final String searchText = parameters.getParameter(RowsFilterParameters.IDENTITY_TEXT)
+        .getEmbeddedParameter().getValue().toLowerCase().trim();
+    final Range<Double> mzRange =
+        filterByMzRange ? parameters.getParameter(RowsFilterParameters.MZ_RANGE)
+            .getEmbeddedParameter().getValue() : null;
+    final Range<Float> rtRange = filterByRtRange ? RangeUtils.toFloatRange(
+        parameters.getParameter(RowsFilterParameters.RT_RANGE).getEmbeddedParameter().getValue())
+        : null;
+    final Range<Float> FWHMRange = filterByFWHM ? RangeUtils.toFloatRange(
+        parameters.getParameter(RowsFilterParameters.FWHM).getEmbeddedParameter().getValue())
+        : null;
+
+    // Keep rows that don't match any criteria. Keep by default.
+    boolean filterRowCriteriaFailed;
+
+    // Handle < 1 values for minFeatureCount
+    if ((minCount == null) || (minCount < 1)) {
+      minCount = 1.0;
+    }
+    // Round value down to nearest hole number
+    int intMinCount = minCount.intValue();
+
+    final boolean[] passed = new boolean[rows.size()];
+    for (int r = 0; r < rows.size(); r++) {
+      final FeatureListRow row = rows.get(r);
+      filterRowCriteriaFailed = false;
+
+      final int featureCount = getFeatureCount(project, row, groupingParameter);
+
+      // Check number of features.
+      if (filterByMinFeatureCount) {
+        if (featureCount < intMinCount) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Check identities.
+      List<MatchedLipid> matchedLipids = row.get(LipidMatchListType.class);
+      if (onlyIdentified) {
+        List<SpectralDBFeatureIdentity> matches = row.getSpectralLibraryMatches();
+        List<GNPSLibraryMatch> gnps = row.get(GNPSSpectralLibraryMatchesType.class);
+
+        boolean noIdentity = (row.getPreferredFeatureIdentity() == null);
+        boolean noLipid = matchedLipids == null || matchedLipids.isEmpty();
+        boolean noGNPS = gnps == null || gnps.isEmpty();
+        boolean noMatch = matches == null || matches.isEmpty();
+
+        if (noIdentity && noLipid && noGNPS && noMatch) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Check average m/z.
+      if (filterByMzRange) {
+        if (!mzRange.contains(row.getAverageMZ())) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Check average RT.
+      if (filterByRtRange) {
+        if (!rtRange.contains(row.getAverageRT())) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Search feature identity text.
+      if (filterByIdentityText) {
+        boolean foundText = false;
+        if (row.getPeakIdentities() != null) {
+          for (var id : row.getPeakIdentities()) {
+            if (id != null && id.getName().toLowerCase().trim().contains(searchText)) {
+              foundText = true;
+              break;
+            }
+          }
+        }
+        if (matchedLipids != null && !foundText) {
+          for (var id : matchedLipids) {
+            if (id != null && id.getLipidAnnotation().getAnnotation().toLowerCase().trim()
+                .contains(searchText)) {
+              foundText = true;
+              break;
+            }
+          }
+        }
+        if (!foundText && row.getSpectralLibraryMatches() != null) {
+          for (var id : row.getSpectralLibraryMatches()) {
+            if (id != null && id.getName().toLowerCase().trim().contains(searchText)) {
+              foundText = true;
+              break;
+            }
+          }
+        }
+        if (!foundText && row.get(GNPSSpectralLibraryMatchesType.class) != null) {
+          for (var id : row.get(GNPSSpectralLibraryMatchesType.class)) {
+            if (id != null && id.getResultOr(ATT.COMPOUND_NAME, "").toLowerCase().trim()
+                .contains(searchText)) {
+              foundText = true;
+              break;
+            }
+          }
+        }
+
+        if (!foundText) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Search feature comment text.
+      if (filterByCommentText) {
+
+        if (row.getComment() == null) {
+          filterRowCriteriaFailed = true;
+        }
+        if (row.getComment() != null) {
+          final String rowText = row.getComment().toLowerCase().trim();
+          if (!rowText.contains(commentSearchText)) {
+            filterRowCriteriaFailed = true;
+          }
+        }
+      }
+
+      // Calculate average duration and isotope pattern count.
+      int maxIsotopePatternSizeOnRow = 1;
+      double avgDuration = 0.0;
+      final Feature[] features = row.getFeatures().toArray(new Feature[0]);
+      for (final Feature p : features) {
+
+        final IsotopePattern pattern = p.getIsotopePattern();
+        if (pattern != null && maxIsotopePatternSizeOnRow < pattern.getNumberOfDataPoints()) {
+
+          maxIsotopePatternSizeOnRow = pattern.getNumberOfDataPoints();
+        }
+
+        avgDuration += RangeUtils.rangeLength(p.getRawDataPointsRTRange());
+      }
+
+      // Check isotope pattern count.
+      if (filterByMinIsotopePatternSize) {
+        if (maxIsotopePatternSizeOnRow < minIsotopePatternSize) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Check average duration.
+      avgDuration /= featureCount;
+      if (filterByDuration) {
+        if (!durationRange.contains(avgDuration)) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Filter by FWHM range
+      if (filterByFWHM) {
+        // If any of the features fail the FWHM criteria,
+        Float FWHM_value = row.getBestFeature().getFWHM();
+        if (FWHM_value != null && !FWHMRange.contains(FWHM_value)) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Filter by charge range
+      if (filterByCharge) {
+        int charge = row.getBestFeature().getCharge();
+        if (charge == 0 || !chargeRange.contains(charge)) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Filter by KMD or RKM range
+      if (filterByKMD) {
+        // get m/z
+        Double valueMZ = row.getBestFeature().getMZ();
+
+        // calc exact mass of Kendrick mass base
+        double exactMassFormula = FormulaUtils.calculateExactMass(kendrickMassBase);
+
+        // calc exact mass of Kendrick mass factor
+        double kendrickMassFactor =
+            Math.round(exactMassFormula / divisor) / (exactMassFormula / divisor);
+
+        double defectOrRemainder;
+
+        if (!useRemainderOfKendrickMass) {
+          // calc Kendrick mass defect
+          defectOrRemainder = Math.ceil(kendrickCharge * (valueMZ * kendrickMassFactor)) //
+                              - kendrickCharge * (valueMZ * kendrickMassFactor);
+        } else {
+          // calc Kendrick mass remainder
+          defectOrRemainder = (kendrickCharge * (divisor - Math.round(
+              FormulaUtils.calculateExactMass(kendrickMassBase))) * valueMZ)
+                              / FormulaUtils.calculateExactMass(kendrickMassBase) - Math.floor(
+              (kendrickCharge * (divisor - Math.round(
+                  FormulaUtils.calculateExactMass(kendrickMassBase))) * valueMZ)
+              / FormulaUtils.calculateExactMass(kendrickMassBase));
+        }
+
+        // shift Kendrick mass defect or remainder of Kendrick mass
+        double kendrickMassDefectShifted =
+            defectOrRemainder + shift - Math.floor(defectOrRemainder + shift);
+
+        // check if shifted Kendrick mass defect or remainder of
+        // Kendrick mass is in range
+        if (!rangeKMD.contains(kendrickMassDefectShifted)) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      // Check ms2 filter .
+      if (filterByMS2) {
+        // iterates the features
+        int failCounts = 0;
+        for (int i = 0; i < featureCount; i++) {
+          if (row.getFeatures().get(i).getMostIntenseFragmentScan() == null) {
+            failCounts++;
+          }
+        }
+        if (failCounts == featureCount) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      if (filterByMassDefect) {
+        if (!massDefectFilter.contains(row.getAverageMZ())) {
+          filterRowCriteriaFailed = true;
+        }
+      }
+
+      passed[r] = !filterRowCriteriaFailed;
+    }
+    return passed;
+  }
+
+  private static int getFeatureCount(MZmineProject project, FeatureListRow row,
+      String groupingParameter) {
+    if (groupingParameter.contains("Filtering by ")) {
+      HashMap<String, Integer> groups = new HashMap<>();
+      for (RawDataFile file : project.getDataFiles()) {
+        UserParameter<?, ?>[] params = project.getParameters();
+        for (UserParameter<?, ?> p : params) {
+          groupingParameter = groupingParameter.replace("Filtering by ", "");
+          if (groupingParameter.equals(p.getName())) {
+            String parameterValue = String.valueOf(project.getParameterValue(p, file));
+            if (row.hasFeature(file)) {
+              if (groups.containsKey(parameterValue)) {
+                groups.put(parameterValue, groups.get(parameterValue) + 1);
+              } else {
+                groups.put(parameterValue, 1);
+              }
+            } else {
+              groups.put(parameterValue, 0);
+            }
+          }
+        }
+      }
+
+      Set<String> ref = groups.keySet();
+      Iterator<String> it = ref.iterator();
+      int min = Integer.MAX_VALUE;
+      while (it.hasNext()) {
+        String name = it.next();
+        int val = groups.get(name);
+        if (val < min) {
+          min = val;
+        }
+      }
+      return min;
+
+    } else {
+      return row.getNumberOfFeatures();
+    }
+  }
+}
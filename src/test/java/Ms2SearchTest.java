@@ -0,0 +1,282 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.FeatureIdentity;
+import io.github.mzmine.datamodel.FeatureStatus;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeature;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.features.ModularFeatureListRow;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.id_ms2search.Ms2SearchModule;
+import io.github.mzmine.modules.dataprocessing.id_ms2search.Ms2SearchParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Searches random fragment spectra with the MS2 similarity search and compares the identities to
+ * the previous comparison of every ion of every row pair. Most fragment ions are placed next to the
+ * edges of the m/z bins of the fragment index, and their partners in the other feature list just
+ * inside or just outside of the ppm tolerance.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class Ms2SearchTest {
+
+  private static final int NUM_ROWS_1 = 40;
+  private static final int NUM_ROWS_2 = 60;
+  private static final int POOL_SIZE = 150;
+  // the highest fragment m/z, the bin width of the index is MAX_MZ * ppm
+  private static final double MAX_MZ = 1000d;
+
+  private MZmineProject project;
+
+  @BeforeAll
+  void initialise() {
+    MZmineCore.main(new String[]{"-r", "-m", "all"});
+    MZmineTestUtil.cleanProject();
+    project = MZmineCore.getProjectManager().getCurrentProject();
+  }
+
+  @AfterAll
+  void tearDown() {
+    MZmineTestUtil.cleanProject();
+  }
+
+  @Test
+  void testSameAsAllPairs() throws Exception {
+    for (double ppm : new double[]{5, 10, 20}) {
+      final Random random = new Random((long) ppm);
+      final ModularFeatureList[] flists = createFeatureLists(random, ppm);
+      search(flists, ppm, 0);
+      assertIdentities(flists, ppm, 0);
+    }
+  }
+
+  @Test
+  void testMaxMatchesPerRow() throws Exception {
+    final double ppm = 10;
+    final ModularFeatureList[] flists = createFeatureLists(new Random(3), ppm);
+    for (int maxMatches : new int[]{1, 3}) {
+      search(flists, ppm, maxMatches);
+      assertIdentities(flists, ppm, maxMatches);
+    }
+  }
+
+  private void search(ModularFeatureList[] flists, double ppm, int maxMatches)
+      throws InterruptedException {
+    for (FeatureListRow row : flists[0].getRows()) {
+      ((ModularFeatureListRow) row).setPeakIdentities(new ArrayList<>());
+    }
+    final ParameterSet parameters = new Ms2SearchParameters().cloneParameterSet();
+    parameters.getParameter(Ms2SearchParameters.peakList1)
+        .setValue(new FeatureListsSelection(flists[0]));
+    parameters.getParameter(Ms2SearchParameters.peakList2)
+        .setValue(new FeatureListsSelection(flists[1]));
+    parameters.setParameter(Ms2SearchParameters.mzTolerance, new MZTolerance(0, ppm));
+    parameters.setParameter(Ms2SearchParameters.intensityThreshold, 0d);
+    parameters.setParameter(Ms2SearchParameters.minimumIonsMatched, 1);
+    parameters.setParameter(Ms2SearchParameters.scoreThreshold, 0d);
+    parameters.setParameter(Ms2SearchParameters.maxMatchesPerRow, maxMatches > 0);
+    parameters.getParameter(Ms2SearchParameters.maxMatchesPerRow).getEmbeddedParameter()
+        .setValue(Math.max(1, maxMatches));
+    assertEquals(TaskResult.FINISHED,
+        MZmineTestUtil.callModuleWithTimeout(60, Ms2SearchModule.class, parameters));
+  }
+
+  /**
+   * Compares the identities of each row of feature list 1 to the identities of the previous
+   * search. If maxMatches > 0, only the best scoring matches are expected, in the order of feature
+   * list 2.
+   */
+  private static void assertIdentities(ModularFeatureList[] flists, double ppm, int maxMatches) {
+    final List<FeatureListRow> rows1 = flists[0].getRows();
+    final List<FeatureListRow> rows2 = flists[1].getRows();
+    int numMatches = 0;
+    for (FeatureListRow row1 : rows1) {
+      final Scan scanA = row1.getMostIntenseFragmentScan();
+      List<Match> expected = new ArrayList<>();
+      for (int j = 0; j < rows2.size(); j++) {
+        final Match match = compareAllIons(j, scanA, rows2.get(j).getMostIntenseFragmentScan(),
+            ppm);
+        if (match.score() > 0 && match.matchedMzs().size() >= 1) {
+          expected.add(match);
+        }
+      }
+      if (maxMatches > 0 && expected.size() > maxMatches) {
+        expected.sort(Comparator.comparingDouble(Match::score).reversed()
+            .thenComparingInt(Match::rowIndex));
+        expected = new ArrayList<>(expected.subList(0, maxMatches));
+        expected.sort(Comparator.comparingInt(Match::rowIndex));
+      }
+      numMatches += expected.size();
+
+      final List<String> expectedNames = expected.stream()
+          .map(match -> identityName(rows2.get(match.rowIndex()), match)).toList();
+      final List<String> actualNames = row1.getPeakIdentities().stream()
+          .map(FeatureIdentity::getName).toList();
+      assertEquals(expectedNames, actualNames,
+          "Identities of row " + row1.getID() + " with " + ppm + " ppm");
+    }
+    assertTrue(numMatches > rows1.size(), "Too few matches to compare: " + numMatches);
+  }
+
+  /**
+   * The previous score: compares every ion of A to every ion of B
+   */
+  private static Match compareAllIons(int rowIndexB, Scan scanA, Scan scanB, double ppm) {
+    final MassList massListA = scanA.getMassList();
+    final MassList massListB = scanB.getMassList();
+    final double[] mzsA = massListA.getMzValues(new double[massListA.getNumberOfDataPoints()]);
+    final double[] intA = massListA.getIntensityValues(
+        new double[massListA.getNumberOfDataPoints()]);
+    final double[] mzsB = massListB.getMzValues(new double[massListB.getNumberOfDataPoints()]);
+    final double[] intB = massListB.getIntensityValues(
+        new double[massListB.getNumberOfDataPoints()]);
+
+    double score = 0;
+    final List<Double> matchedMzs = new ArrayList<>();
+    final double maxMzB = mzsB[mzsB.length - 1];
+    for (int i = 0; i < mzsA.length; i++) {
+      final double iMZ = mzsA[i];
+      final double mzRangeAbsolute = iMZ * 1e-6 * ppm;
+      if (iMZ - mzRangeAbsolute > maxMzB) {
+        break;
+      }
+      for (int j = 0; j < mzsB.length; j++) {
+        final double jMZ = mzsB[j];
+        if (iMZ < jMZ - mzRangeAbsolute) {
+          break;
+        }
+        if (Math.abs(iMZ - jMZ) < mzRangeAbsolute) {
+          score += intA[i] * intB[j];
+          matchedMzs.add(iMZ);
+        }
+      }
+    }
+    return new Match(rowIndexB, score, matchedMzs);
+  }
+
+  /**
+   * Same name as {@link io.github.mzmine.modules.dataprocessing.id_ms2search.Ms2Identity}
+   */
+  private static String identityName(FeatureListRow row2, Match match) {
+    final StringBuilder ions = new StringBuilder();
+    for (double mz : match.matchedMzs()) {
+      ions.append(ions.length() > 0 ? "_" : "").append(String.format("%.4f", mz));
+    }
+    return "MS2similarity m/z:" + MZmineCore.getConfiguration().getMZFormat()
+        .format(row2.getBestFeature().getMZ()) + " RT:" + MZmineCore.getConfiguration()
+        .getRTFormat().format(row2.getBestFeature().getRT()) + " Score:" + String.format("%3.1e",
+        match.score()) + " NumIonsMatched:" + match.matchedMzs().size() + " MatchedIons:" + ions;
+  }
+
+  /**
+   * Two feature lists with one fragment spectrum per row. The spectra of list 1 take ions from a
+   * pool of m/z values next to the bin edges, the spectra of list 2 take the same ions shifted by
+   * 99.9 % or 100.1 % of the tolerance, or by less, plus random ions.
+   */
+  private ModularFeatureList[] createFeatureLists(Random random, double ppm) throws IOException {
+    final double binWidth = MAX_MZ * ppm * 1E-6;
+    final double[] pool = new double[POOL_SIZE];
+    for (int i = 0; i < POOL_SIZE; i++) {
+      final long bin = (long) ((50 + random.nextDouble() * 900) / binWidth);
+      pool[i] = bin * binWidth + (random.nextBoolean() ? 1E-7 : -1E-7) * binWidth;
+    }
+    final double[] shifts = {0.999, -0.999, 1.001, -1.001, 0.5, -0.3};
+
+    final ModularFeatureList[] flists = new ModularFeatureList[2];
+    for (int l = 0; l < 2; l++) {
+      final int numRows = l == 0 ? NUM_ROWS_1 : NUM_ROWS_2;
+      final RawDataFile file = new RawDataFileImpl("ms2 search " + ppm + " " + l, null, null);
+      final ModularFeatureList flist = new ModularFeatureList("ms2 search " + ppm + " " + l, null,
+          file);
+      int scanNumber = 1;
+      for (int r = 0; r < numRows; r++) {
+        final TreeSet<Double> mzs = new TreeSet<>();
+        for (int i = 0; i < 15; i++) {
+          final double mz = pool[random.nextInt(POOL_SIZE)];
+          mzs.add(l == 0 ? mz
+              : mz * (1 + shifts[random.nextInt(shifts.length)] * ppm * 1E-6));
+        }
+        for (int i = 0; i < 5; i++) {
+          mzs.add(50 + random.nextDouble() * 900);
+        }
+        if (l == 1 && r == 0) {
+          mzs.add(MAX_MZ);
+        }
+        final double[] fragmentMzs = mzs.stream().mapToDouble(Double::doubleValue).toArray();
+        final double[] intensities = new double[fragmentMzs.length];
+        for (int i = 0; i < intensities.length; i++) {
+          intensities[i] = 1 + random.nextInt(1000);
+        }
+
+        final double precursorMz = 200 + r;
+        final float rt = 1 + r * 0.1f;
+        final Scan ms1 = new SimpleScan(file, scanNumber++, 1, rt, null,
+            new double[]{precursorMz}, new double[]{1E5}, MassSpectrumType.CENTROIDED,
+            PolarityType.POSITIVE, "", Range.closed(0d, 1100d));
+        final Scan ms2 = new SimpleScan(file, scanNumber++, 2, rt, null, fragmentMzs, intensities,
+            MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1100d));
+        ms2.addMassList(new ScanPointerMassList(ms2));
+        file.addScan(ms1);
+        file.addScan(ms2);
+
+        final ModularFeature feature = new ModularFeature(flist, file, precursorMz, rt, 1E5f, 1E5f,
+            List.of(ms1), new double[]{precursorMz}, new double[]{1E5}, FeatureStatus.DETECTED, ms1,
+            ms2, new Scan[]{ms2}, Range.singleton(rt), Range.singleton(precursorMz),
+            Range.singleton(1E5f));
+        flist.addRow(new ModularFeatureListRow(flist, r + 1, feature));
+      }
+      project.addFeatureList(flist);
+      flists[l] = flist;
+    }
+    return flists;
+  }
+
+  /**
+   * Score of a row of feature list 1 against the row with the given index in feature list 2
+   */
+  private record Match(int rowIndex, double score, List<Double> matchedMzs) {
+
+  }
+}
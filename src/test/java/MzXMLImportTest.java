@@ -0,0 +1,142 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.modules.io.import_rawdata_mzxml.MzXMLImportTask;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Imports the first 30 scans of DOM_b.mzXML through the scan index and through the sequential
+ * parser, which is used for the same file without its index offset.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class MzXMLImportTest {
+
+  private static final int NUM_SCANS = 30;
+
+  private File indexedFile;
+
+  @BeforeAll
+  void initialise() {
+    MZmineCore.main(new String[]{"-r", "-m", "all"});
+    indexedFile = new File(MzXMLImportTest.class.getClassLoader()
+        .getResource("rawdatafiles/DOM_b_indexed_small.mzXML").getFile());
+  }
+
+  @Test
+  void testIndexedSameAsSequential() throws IOException {
+    final RawDataFile indexed = importFile(indexedFile);
+    final RawDataFile sequential = importFile(withoutIndex(indexedFile));
+
+    assertEquals(NUM_SCANS, indexed.getNumOfScans());
+    assertEquals(sequential.getNumOfScans(), indexed.getNumOfScans());
+    assertTrue(indexed.getScans().stream().anyMatch(scan -> scan.getMSLevel() == 2));
+    for (int i = 0; i < NUM_SCANS; i++) {
+      final Scan expected = sequential.getScan(i);
+      final Scan actual = indexed.getScan(i);
+      final String scan = "scan " + expected.getScanNumber();
+      assertEquals(expected.getScanNumber(), actual.getScanNumber());
+      assertEquals(expected.getMSLevel(), actual.getMSLevel(), scan);
+      assertEquals(expected.getRetentionTime(), actual.getRetentionTime(), scan);
+      assertEquals(expected.getPolarity(), actual.getPolarity(), scan);
+      assertEquals(expected.getScanDefinition(), actual.getScanDefinition(), scan);
+      assertEquals(expected.getSpectrumType(), actual.getSpectrumType(), scan);
+      assertEquals(expected.getPrecursorMz(), actual.getPrecursorMz(), scan);
+      assertEquals(expected.getPrecursorCharge(), actual.getPrecursorCharge(), scan);
+      assertArrayEquals(expected.getMzValues(new double[expected.getNumberOfDataPoints()]),
+          actual.getMzValues(new double[actual.getNumberOfDataPoints()]), scan);
+      assertArrayEquals(
+          expected.getIntensityValues(new double[expected.getNumberOfDataPoints()]),
+          actual.getIntensityValues(new double[actual.getNumberOfDataPoints()]), scan);
+    }
+  }
+
+  /**
+   * Both parsers reject MS levels above 9. The level of the first scan is changed without moving
+   * the following scans, so the index stays valid.
+   */
+  @Test
+  void testMsLevelAboveNineRejected() throws IOException {
+    final String content = Files.readString(indexedFile.toPath(), StandardCharsets.ISO_8859_1);
+    final String msLevel = "\n          msLevel=\"2\"";
+    final int first = content.indexOf(msLevel);
+    assertTrue(first > 0 && first < content.indexOf("</scan>"));
+    final String changed = content.substring(0, first) + "\n         msLevel=\"10\""
+                           + content.substring(first + msLevel.length());
+    final File indexed = writeTempFile(changed);
+
+    assertEquals(TaskStatus.ERROR, runImport(indexed, createRawDataFile(indexed)).getStatus());
+    final File sequential = withoutIndex(indexed);
+    assertEquals(TaskStatus.ERROR,
+        runImport(sequential, createRawDataFile(sequential)).getStatus());
+  }
+
+  private static RawDataFile importFile(File file) throws IOException {
+    final RawDataFile newFile = createRawDataFile(file);
+    final MzXMLImportTask task = runImport(file, newFile);
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+    return newFile;
+  }
+
+  private static RawDataFile createRawDataFile(File file) throws IOException {
+    return new RawDataFileImpl(file.getName(), file.getAbsolutePath(), null);
+  }
+
+  private static MzXMLImportTask runImport(File file, RawDataFile newFile) {
+    final MZmineProject project = new MZmineProjectImpl();
+    final MzXMLImportTask task = new MzXMLImportTask(project, file, newFile,
+        AllSpectralDataImportModule.class, new AllSpectralDataImportParameters(), Instant.now());
+    task.run();
+    return task;
+  }
+
+  /**
+   * @return a copy without the index offset, which is parsed sequentially
+   */
+  private static File withoutIndex(File file) throws IOException {
+    final String content = Files.readString(file.toPath(), StandardCharsets.ISO_8859_1);
+    return writeTempFile(content.replaceAll("\\s*<indexOffset>\\d+</indexOffset>", ""));
+  }
+
+  private static File writeTempFile(String content) throws IOException {
+    final File file = File.createTempFile("mzmine_mzxml_test", ".mzXML");
+    file.deleteOnExit();
+    Files.writeString(file.toPath(), content, StandardCharsets.ISO_8859_1);
+    return file;
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.github.mzmine.util.io.OrderedParallelWriter;
+import io.github.mzmine.util.io.OrderedParallelWriter.NumberAppender;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+public class OrderedParallelWriterTest {
+
+  private static final NumberFormat MZ_FORMAT = new DecimalFormat("0.0000");
+  private static final NumberFormat INTENSITY_FORMAT = new DecimalFormat("0.0E0");
+
+  @Test
+  void testSameAsSerial() throws IOException {
+    Random rand = new Random(1);
+    List<double[]> items = IntStream.range(0, 5000)
+        .mapToObj(i -> rand.doubles(rand.nextInt(20) * 2, 0, 2000).toArray()).toList();
+
+    StringBuilder serial = new StringBuilder();
+    int serialCount = 0;
+    for (double[] item : items) {
+      if (item.length > 0) {
+        serialCount++;
+        serial.append("BEGIN IONS\n");
+        for (int i = 0; i < item.length; i += 2) {
+          serial.append(MZ_FORMAT.format(item[i])).append(' ')
+              .append(INTENSITY_FORMAT.format(item[i + 1])).append('\n');
+        }
+        serial.append("END IONS\n");
+      }
+    }
+
+    StringWriter writer = new StringWriter();
+    int count = OrderedParallelWriter.write(writer, items, () -> {
+      NumberAppender mz = new NumberAppender(MZ_FORMAT);
+      NumberAppender intensity = new NumberAppender(INTENSITY_FORMAT);
+      return (item, b) -> {
+        if (item.length == 0) {
+          return false;
+        }
+        b.append("BEGIN IONS\n");
+        for (int i = 0; i < item.length; i += 2) {
+          mz.append(b, item[i]).append(' ');
+          intensity.append(b, item[i + 1]).append('\n');
+        }
+        b.append("END IONS\n");
+        return true;
+      };
+    }, () -> false);
+
+    assertEquals(serialCount, count);
+    assertEquals(serial.toString(), writer.toString());
+  }
+
+  @Test
+  void testWritesItemsBeforeError() {
+    List<Integer> items = IntStream.range(0, 1000).boxed().toList();
+    StringWriter writer = new StringWriter();
+    assertThrows(IllegalStateException.class,
+        () -> OrderedParallelWriter.write(writer, items, () -> (item, b) -> {
+          b.append(item).append('\n');
+          if (item == 700) {
+            throw new IllegalStateException();
+          }
+          return true;
+        }, () -> false));
+
+    StringBuilder expected = new StringBuilder();
+    IntStream.range(0, 700).forEach(i -> expected.append(i).append('\n'));
+    assertEquals(expected.toString(), writer.toString());
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.scans.ParallelScanFilter;
+import io.github.mzmine.util.scans.ScanRingBuffer;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Filters a file with more scans than {@link ParallelScanFilter#DEFAULT_BLOCK_SIZE} in parallel
+ * and compares the result to the same filter computed serially on the original scans. The windows
+ * have different widths and cross the block boundaries, some scans are empty.
+ */
+public class ParallelScanFilterTest {
+
+  private static final int NUM_SCANS = 5 * ParallelScanFilter.DEFAULT_BLOCK_SIZE + 17;
+
+  @Test
+  void testParallelSameAsSerial() throws IOException {
+    final Random random = new Random(42);
+    final RawDataFile file = new RawDataFileImpl("parallel scan filter test", null, null);
+    for (int i = 0; i < NUM_SCANS; i++) {
+      final int n = i % 11 == 0 ? 0 : random.nextInt(30) + 1;
+      final double[] mzs = new double[n];
+      final double[] intensities = new double[n];
+      double mz = 100;
+      for (int k = 0; k < n; k++) {
+        mz += random.nextDouble() * 10;
+        mzs[k] = mz;
+        intensities[k] = random.nextDouble() * 1E5;
+      }
+      file.addScan(new SimpleScan(file, i + 1, 1, i * 0.01f, null, mzs, intensities,
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d)));
+    }
+    final Scan[] scans = file.getScans().toArray(Scan[]::new);
+
+    final int[] windowStart = new int[NUM_SCANS];
+    final int[] windowEnd = new int[NUM_SCANS];
+    for (int i = 0; i < NUM_SCANS; i++) {
+      windowStart[i] = Math.max(0, i - i % 5);
+      windowEnd[i] = Math.min(NUM_SCANS - 1, i + i % 7);
+    }
+
+    final RawDataFile filtered = new RawDataFileImpl("parallel scan filter test filtered", null,
+        null);
+    final AtomicInteger processed = new AtomicInteger();
+    assertTrue(ParallelScanFilter.filterScans(filtered, scans, windowStart, windowEnd,
+        (i, buffer) -> windowSum(i, windowStart[i], windowEnd[i], buffer), () -> false,
+        processed));
+    assertEquals(NUM_SCANS, processed.get());
+    assertEquals(NUM_SCANS, filtered.getNumOfScans());
+
+    for (int i = 0; i < NUM_SCANS; i++) {
+      final Scan original = scans[i];
+      final Scan scan = filtered.getScan(i);
+      assertEquals(original.getScanNumber(), scan.getScanNumber());
+      assertEquals(original.getRetentionTime(), scan.getRetentionTime());
+      assertArrayEquals(original.getMzValues(new double[original.getNumberOfDataPoints()]),
+          scan.getMzValues(new double[scan.getNumberOfDataPoints()]), "m/z of scan " + i);
+      assertArrayEquals(serialWindowSum(scans, i, windowStart[i], windowEnd[i]),
+          scan.getIntensityValues(new double[scan.getNumberOfDataPoints()]),
+          "intensities of scan " + i);
+    }
+  }
+
+  /**
+   * Sum of the intensities with the same index in all scans of the window, read from the buffer
+   */
+  private static double[] windowSum(int i, int windowStart, int windowEnd,
+      ScanRingBuffer buffer) {
+    final double[] sums = new double[buffer.getNumberOfDataPoints(i)];
+    for (int j = windowStart; j <= windowEnd; j++) {
+      final int n = Math.min(sums.length, buffer.getNumberOfDataPoints(j));
+      final double[] intensities = buffer.getIntensityValues(j);
+      for (int k = 0; k < n; k++) {
+        sums[k] += intensities[k];
+      }
+    }
+    return sums;
+  }
+
+  /**
+   * Same as {@link #windowSum(int, int, int, ScanRingBuffer)}, read from the scans
+   */
+  private static double[] serialWindowSum(Scan[] scans, int i, int windowStart, int windowEnd) {
+    final double[] sums = new double[scans[i].getNumberOfDataPoints()];
+    for (int j = windowStart; j <= windowEnd; j++) {
+      final int n = Math.min(sums.length, scans[j].getNumberOfDataPoints());
+      for (int k = 0; k < n; k++) {
+        sums[k] += scans[j].getIntensityValue(k);
+      }
+    }
+    return sums;
+  }
+}
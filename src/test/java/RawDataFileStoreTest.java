@@ -0,0 +1,297 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.Frame;
+import io.github.mzmine.datamodel.MassList;
+import io.github.mzmine.datamodel.MassSpectrum;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.MobilityType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.BuildingMobilityScan;
+import io.github.mzmine.datamodel.impl.DDAMsMsInfoImpl;
+import io.github.mzmine.datamodel.impl.MobilityScanStorage;
+import io.github.mzmine.datamodel.impl.SimpleFrame;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.datamodel.impl.masslist.ScanPointerMassList;
+import io.github.mzmine.datamodel.impl.masslist.SimpleMassList;
+import io.github.mzmine.datamodel.msms.ActivationMethod;
+import io.github.mzmine.datamodel.msms.DDAMsMsInfo;
+import io.github.mzmine.modules.io.projectload.version_3_0.RawDataFileStoreReader;
+import io.github.mzmine.modules.io.projectsave.RawDataFileStoreWriter;
+import io.github.mzmine.project.impl.IMSRawDataFileImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.util.MemoryMapStorage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import javafx.scene.paint.Color;
+import javax.xml.stream.XMLStreamException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Writes raw data files with {@link RawDataFileStoreWriter} and reads them back with {@link
+ * RawDataFileStoreReader}.
+ */
+public class RawDataFileStoreTest {
+
+  private final Random rnd = new Random(42);
+
+  @Test
+  public void testScans() throws IOException, XMLStreamException {
+    final RawDataFile file = new RawDataFileImpl("store test", null, null, Color.WHITE);
+    final SimpleScan ms1 = makeScan(file, 1, 1);
+    ms1.addMassList(new SimpleMassList(null, new double[]{100.1, 200.2},
+        new double[]{1000d, 2000d}));
+    file.addScan(ms1);
+
+    final SimpleScan ms2 = makeScan(file, 2, 2);
+    ms2.setMsMsInfo(
+        new DDAMsMsInfoImpl(150.05, 1, 25f, ms2, ms1, 2, ActivationMethod.CID,
+            Range.closed(149.55, 150.55)));
+    ms2.addMassList(new ScanPointerMassList(ms2));
+    file.addScan(ms2);
+
+    // no mass list
+    file.addScan(makeScan(file, 3, 1));
+
+    for (MemoryMapStorage storage : new MemoryMapStorage[]{null, MemoryMapStorage.create()}) {
+      final RawDataFile loaded = new RawDataFileImpl("store test", null, storage, Color.WHITE);
+      writeAndRead(file, loaded);
+
+      Assertions.assertEquals(file.getNumOfScans(), loaded.getNumOfScans());
+      for (int i = 0; i < file.getNumOfScans(); i++) {
+        assertScanEquals(file.getScan(i), loaded.getScan(i));
+      }
+      Assertions.assertTrue(loaded.getScan(1).getMassList() instanceof ScanPointerMassList);
+
+      final DDAMsMsInfo info = (DDAMsMsInfo) loaded.getScan(1).getMsMsInfo();
+      Assertions.assertNotNull(info);
+      Assertions.assertEquals(150.05, info.getIsolationMz());
+      Assertions.assertEquals(1, (int) info.getPrecursorCharge());
+      Assertions.assertEquals(25f, info.getActivationEnergy(), 0f);
+      Assertions.assertEquals(ActivationMethod.CID, info.getActivationMethod());
+      Assertions.assertEquals(Range.closed(149.55, 150.55), info.getIsolationWindow());
+      Assertions.assertSame(loaded.getScan(0), info.getParentScan());
+      Assertions.assertSame(loaded.getScan(1), info.getMsMsScan());
+    }
+  }
+
+  @Test
+  public void testFrames() throws IOException, XMLStreamException {
+    final IMSRawDataFileImpl file = new IMSRawDataFileImpl("store test", null, null,
+        Color.WHITE);
+
+    // raw data used as mass lists
+    final SimpleFrame centroided = makeFrame(file, 1);
+    final List<BuildingMobilityScan> scans = makeMobilityScans(20);
+    centroided.setMobilities(makeMobilities(scans.size()));
+    centroided.setMobilityScans(scans, true);
+    file.addScan(centroided);
+
+    // separate mass lists
+    final SimpleFrame profile = makeFrame(file, 2);
+    final List<BuildingMobilityScan> profileScans = makeMobilityScans(20);
+    profile.setMobilities(makeMobilities(profileScans.size()));
+    profile.setMobilityScans(profileScans, false);
+    final double[] massListMzs = new double[profileScans.size()];
+    final double[] massListIntensities = new double[profileScans.size()];
+    final int[] offsets = new int[profileScans.size()];
+    final int[] basePeakIndices = new int[profileScans.size()];
+    for (int i = 0; i < profileScans.size(); i++) {
+      massListMzs[i] = 100 + i;
+      massListIntensities[i] = 1000 * (i + 1);
+      offsets[i] = i;
+    }
+    profile.getMobilityScanStorage()
+        .setMassLists(DoubleBuffer.wrap(massListMzs), DoubleBuffer.wrap(massListIntensities),
+            IntBuffer.wrap(offsets), IntBuffer.wrap(basePeakIndices), 1);
+    profile.addMassList(new SimpleMassList(null, new double[]{300.3}, new double[]{5E4}));
+    file.addScan(profile);
+
+    // no mobility scans
+    final SimpleFrame empty = makeFrame(file, 3);
+    empty.setMobilities(DoubleBuffer.wrap(new double[0]));
+    empty.setMobilityScanStorage(
+        new MobilityScanStorage(empty, DoubleBuffer.wrap(new double[0]),
+            DoubleBuffer.wrap(new double[0]), IntBuffer.wrap(new int[0]),
+            IntBuffer.wrap(new int[0]), 0));
+    file.addScan(empty);
+
+    file.addSegment(Range.closed(1, 2));
+    file.addSegment(Range.closed(3, 3));
+
+    for (MemoryMapStorage storage : new MemoryMapStorage[]{null, MemoryMapStorage.create()}) {
+      final IMSRawDataFileImpl loaded = new IMSRawDataFileImpl("store test", null, storage,
+          Color.WHITE);
+      writeAndRead(file, loaded);
+
+      Assertions.assertEquals(file.getNumOfScans(), loaded.getNumOfScans());
+      Assertions.assertEquals(Set.of(Range.closed(1, 2), Range.closed(3, 3)),
+          loaded.getSegments());
+
+      for (int i = 0; i < file.getNumOfScans(); i++) {
+        final Frame frame = (Frame) file.getScan(i);
+        final Frame loadedFrame = (Frame) loaded.getScan(i);
+        assertScanEquals(frame, loadedFrame);
+        Assertions.assertEquals(frame.getMobilityType(), loadedFrame.getMobilityType());
+        Assertions.assertEquals(frame.getMobilityRange(), loadedFrame.getMobilityRange());
+        Assertions.assertEquals(frame.getNumberOfMobilityScans(),
+            loadedFrame.getNumberOfMobilityScans());
+
+        final MobilityScanStorage mobilityScans = frame.getMobilityScanStorage();
+        final MobilityScanStorage loadedMobilityScans = loadedFrame.getMobilityScanStorage();
+        Assertions.assertEquals(mobilityScans.hasMassLists(), loadedMobilityScans.hasMassLists());
+        Assertions.assertEquals(mobilityScans.isRawDataUsedAsMassLists(),
+            loadedMobilityScans.isRawDataUsedAsMassLists());
+        for (int j = 0; j < frame.getNumberOfMobilityScans(); j++) {
+          Assertions.assertEquals(frame.getMobilityForMobilityScanNumber(j),
+              loadedFrame.getMobilityForMobilityScanNumber(j));
+          assertSpectrumEquals(frame.getMobilityScan(j), loadedFrame.getMobilityScan(j));
+          if (mobilityScans.hasMassLists()) {
+            assertSpectrumEquals(mobilityScans.getMassList(j), loadedMobilityScans.getMassList(j));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testEmptyScansAreNotMapped() throws IOException, XMLStreamException {
+    final RawDataFile file = new RawDataFileImpl("store test", null, null, Color.WHITE);
+    for (int i = 1; i <= 2; i++) {
+      file.addScan(new SimpleScan(file, i, 1, i * 0.1f, null, new double[0], new double[0],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "scan " + i,
+          Range.closed(50d, 1000d)));
+    }
+
+    final File store = File.createTempFile("mzmine_store_test", ".tmp");
+    store.deleteOnExit();
+    try (OutputStream os = new FileOutputStream(store)) {
+      new RawDataFileStoreWriter(file).write(os);
+    }
+    final RawDataFile loaded = new RawDataFileImpl("store test", null,
+        MemoryMapStorage.create(), Color.WHITE);
+    // no block was mapped, the store file is not used by the storage and can be deleted
+    Assertions.assertFalse(new RawDataFileStoreReader(store, loaded).read());
+    Assertions.assertEquals(2, loaded.getNumOfScans());
+    Assertions.assertEquals(0, loaded.getScan(1).getNumberOfDataPoints());
+  }
+
+  private static void writeAndRead(RawDataFile file, RawDataFile loaded)
+      throws IOException, XMLStreamException {
+    final File store = File.createTempFile("mzmine_store_test", ".tmp");
+    store.deleteOnExit();
+    try (OutputStream os = new FileOutputStream(store)) {
+      new RawDataFileStoreWriter(file).write(os);
+    }
+    final boolean mapped = new RawDataFileStoreReader(store, loaded).read();
+    Assertions.assertEquals(loaded.getMemoryMapStorage() != null, mapped);
+  }
+
+  private SimpleScan makeScan(RawDataFile file, int scanNumber, int msLevel) {
+    final double[][] data = makeData(50);
+    return new SimpleScan(file, scanNumber, msLevel, scanNumber * 0.1f, null, data[0], data[1],
+        MassSpectrumType.PROFILE, PolarityType.POSITIVE, "scan " + scanNumber,
+        Range.closed(50d, 1000d));
+  }
+
+  private SimpleFrame makeFrame(RawDataFile file, int frameNumber) {
+    final double[][] data = makeData(30);
+    return new SimpleFrame(file, frameNumber, 1, frameNumber * 0.1f, data[0], data[1],
+        MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "frame " + frameNumber,
+        Range.closed(50d, 1000d), MobilityType.TIMS, null);
+  }
+
+  private List<BuildingMobilityScan> makeMobilityScans(int numScans) {
+    final List<BuildingMobilityScan> scans = new ArrayList<>();
+    for (int i = 0; i < numScans; i++) {
+      // every fifth mobility scan is empty
+      final double[][] data = makeData(i % 5 == 0 ? 0 : rnd.nextInt(40) + 1);
+      scans.add(new BuildingMobilityScan(i, data[0], data[1]));
+    }
+    return scans;
+  }
+
+  private static double[] makeMobilities(int numScans) {
+    final double[] mobilities = new double[numScans];
+    for (int i = 0; i < numScans; i++) {
+      mobilities[i] = 1.5 - i * 0.01;
+    }
+    return mobilities;
+  }
+
+  /**
+   * @return sorted m/z values and intensities
+   */
+  private double[][] makeData(int numPoints) {
+    final double[] mzs = new double[numPoints];
+    final double[] intensities = new double[numPoints];
+    double mz = 50;
+    for (int i = 0; i < numPoints; i++) {
+      mz += rnd.nextDouble() * 10;
+      mzs[i] = mz;
+      intensities[i] = rnd.nextDouble() * 1E5;
+    }
+    return new double[][]{mzs, intensities};
+  }
+
+  private static void assertScanEquals(Scan expected, Scan actual) {
+    Assertions.assertEquals(expected.getScanNumber(), actual.getScanNumber());
+    Assertions.assertEquals(expected.getMSLevel(), actual.getMSLevel());
+    Assertions.assertEquals(expected.getRetentionTime(), actual.getRetentionTime(), 0f);
+    Assertions.assertEquals(expected.getPolarity(), actual.getPolarity());
+    Assertions.assertEquals(expected.getSpectrumType(), actual.getSpectrumType());
+    Assertions.assertEquals(expected.getScanDefinition(), actual.getScanDefinition());
+    Assertions.assertEquals(expected.getScanningMZRange(), actual.getScanningMZRange());
+    assertSpectrumEquals(expected, actual);
+
+    final MassList massList = expected.getMassList();
+    if (massList == null) {
+      Assertions.assertNull(actual.getMassList());
+    } else {
+      Assertions.assertNotNull(actual.getMassList());
+      assertSpectrumEquals(massList, actual.getMassList());
+    }
+  }
+
+  private static void assertSpectrumEquals(MassSpectrum expected, MassSpectrum actual) {
+    final int numPoints = expected.getNumberOfDataPoints();
+    Assertions.assertEquals(numPoints, actual.getNumberOfDataPoints());
+    final double[] mzs = new double[numPoints];
+    final double[] intensities = new double[numPoints];
+    final double[] actualMzs = new double[numPoints];
+    final double[] actualIntensities = new double[numPoints];
+    expected.getMzValues(mzs);
+    expected.getIntensityValues(intensities);
+    actual.getMzValues(actualMzs);
+    actual.getIntensityValues(actualIntensities);
+    Assertions.assertArrayEquals(mzs, actualMzs);
+    Assertions.assertArrayEquals(intensities, actualIntensities);
+  }
+}
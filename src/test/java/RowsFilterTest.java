@@ -0,0 +1,407 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.features.Feature;
+import io.github.mzmine.datamodel.features.FeatureList;
+import io.github.mzmine.datamodel.features.FeatureListRow;
+import io.github.mzmine.datamodel.features.ModularFeatureList;
+import io.github.mzmine.datamodel.impl.SimpleFeatureIdentity;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.MZmineProcessingStep;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerModule;
+import io.github.mzmine.modules.dataprocessing.align_join.JoinAlignerParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ADAPChromatogramBuilderParameters;
+import io.github.mzmine.modules.dataprocessing.featdet_adapchromatogrambuilder.ModularADAPChromatogramBuilderModule;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.MassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetector;
+import io.github.mzmine.modules.dataprocessing.featdet_massdetection.centroid.CentroidMassDetectorParameters;
+import io.github.mzmine.modules.dataprocessing.filter_duplicatefilter.DuplicateFilterParameters;
+import io.github.mzmine.modules.dataprocessing.filter_duplicatefilter.DuplicateFilterParameters.FilterMode;
+import io.github.mzmine.modules.dataprocessing.filter_duplicatefilter.DuplicateFilterTask;
+import io.github.mzmine.modules.dataprocessing.filter_rowsfilter.CompiledRowsFilter;
+import io.github.mzmine.modules.dataprocessing.filter_rowsfilter.KendrickMassDefectFilterParameters;
+import io.github.mzmine.modules.dataprocessing.filter_rowsfilter.RowsFilterParameters;
+import io.github.mzmine.modules.impl.MZmineProcessingStepImpl;
+import io.github.mzmine.modules.io.import_rawdata_all.AdvancedSpectraImportParameters;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportModule;
+import io.github.mzmine.modules.io.import_rawdata_all.AllSpectralDataImportParameters;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.parameters.parametertypes.OriginalFeatureListHandlingParameter.OriginalFeatureListOption;
+import io.github.mzmine.parameters.parametertypes.massdefect.MassDefectFilter;
+import io.github.mzmine.parameters.parametertypes.selectors.FeatureListsSelection;
+import io.github.mzmine.parameters.parametertypes.selectors.RawDataFilesSelectionType;
+import io.github.mzmine.parameters.parametertypes.selectors.ScanSelection;
+import io.github.mzmine.parameters.parametertypes.tolerances.MZTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance;
+import io.github.mzmine.parameters.parametertypes.tolerances.RTTolerance.Unit;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import io.github.mzmine.util.FeatureListRowSorter;
+import io.github.mzmine.util.FeatureUtils;
+import io.github.mzmine.util.SortingDirection;
+import io.github.mzmine.util.SortingProperty;
+import java.io.File;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Compares the {@link CompiledRowsFilter} to the criteria of the previous rows filter, see {@link
+ * LegacyRowsFilter}, and the m/z sweep of the duplicate filter to the previous comparison of all
+ * pairs of rows. The feature list is aligned from the chromatograms of two test files. Some rows
+ * get comments, identities, charges and FWHM values, so every criterion has rows that pass and
+ * rows that fail.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class RowsFilterTest {
+
+  private static final Logger logger = Logger.getLogger(RowsFilterTest.class.getName());
+  private static final String ALIGNED_NAME = "aligned";
+
+  private MZmineProject project;
+  private ModularFeatureList flist;
+
+  @BeforeAll
+  public void init() throws InterruptedException {
+    MZmineTestUtil.cleanProject();
+    project = MZmineCore.getProjectManager().getCurrentProject();
+
+    final File[] files = new File[]{
+        new File(RowsFilterTest.class.getClassLoader().getResource("rawdatafiles/DOM_a.mzML")
+            .getFile()),
+        new File(RowsFilterTest.class.getClassLoader().getResource("rawdatafiles/DOM_b.mzXML")
+            .getFile())};
+    final AllSpectralDataImportParameters paramDataImport = new AllSpectralDataImportParameters();
+    paramDataImport.setParameter(AllSpectralDataImportParameters.fileNames, files);
+    paramDataImport.setParameter(AllSpectralDataImportParameters.advancedImport, true);
+    final AdvancedSpectraImportParameters advancedImport = paramDataImport.getParameter(
+        AllSpectralDataImportParameters.advancedImport).getEmbeddedParameters();
+    advancedImport.setParameter(AdvancedSpectraImportParameters.msMassDetection, true);
+    advancedImport.setParameter(AdvancedSpectraImportParameters.ms2MassDetection, true);
+    advancedImport.getParameter(AdvancedSpectraImportParameters.msMassDetection)
+        .getEmbeddedParameter().setValue(createCentroidMassDetector(1E5));
+    advancedImport.getParameter(AdvancedSpectraImportParameters.ms2MassDetection)
+        .getEmbeddedParameter().setValue(createCentroidMassDetector(0));
+    assertEquals(TaskResult.FINISHED, MZmineTestUtil.callModuleWithTimeout(30,
+        AllSpectralDataImportModule.class, paramDataImport));
+
+    final ADAPChromatogramBuilderParameters paramChrom = new ADAPChromatogramBuilderParameters();
+    paramChrom.getParameter(ADAPChromatogramBuilderParameters.dataFiles)
+        .setValue(RawDataFilesSelectionType.ALL_FILES);
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.scanSelection, new ScanSelection(1));
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.minimumScanSpan, 4);
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.mzTolerance,
+        new MZTolerance(0.002, 10));
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.startIntensity, 3E5);
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.IntensityThresh2, 1E5);
+    paramChrom.setParameter(ADAPChromatogramBuilderParameters.suffix, "chrom");
+    assertEquals(TaskResult.FINISHED, MZmineTestUtil.callModuleWithTimeout(30,
+        ModularADAPChromatogramBuilderModule.class, paramChrom));
+    assertEquals(2, project.getCurrentFeatureLists().size());
+
+    final JoinAlignerParameters paramAlign = new JoinAlignerParameters();
+    paramAlign.getParameter(JoinAlignerParameters.peakLists).setValue(new FeatureListsSelection(
+        project.getCurrentFeatureLists().toArray(ModularFeatureList[]::new)));
+    paramAlign.setParameter(JoinAlignerParameters.compareIsotopePattern, false);
+    paramAlign.setParameter(JoinAlignerParameters.compareSpectraSimilarity, false);
+    paramAlign.setParameter(JoinAlignerParameters.mobilityTolerance, false);
+    paramAlign.setParameter(JoinAlignerParameters.mobilityWeight, 0d);
+    paramAlign.setParameter(JoinAlignerParameters.MZTolerance, new MZTolerance(0.003, 10));
+    paramAlign.setParameter(JoinAlignerParameters.MZWeight, 3d);
+    paramAlign.setParameter(JoinAlignerParameters.RTTolerance, new RTTolerance(0.2f, Unit.MINUTES));
+    paramAlign.setParameter(JoinAlignerParameters.RTWeight, 1d);
+    paramAlign.setParameter(JoinAlignerParameters.SameChargeRequired, false);
+    paramAlign.setParameter(JoinAlignerParameters.SameIDRequired, false);
+    paramAlign.setParameter(JoinAlignerParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+    paramAlign.setParameter(JoinAlignerParameters.peakListName, ALIGNED_NAME);
+    assertEquals(TaskResult.FINISHED,
+        MZmineTestUtil.callModuleWithTimeout(30, JoinAlignerModule.class, paramAlign));
+
+    flist = (ModularFeatureList) project.getFeatureList(ALIGNED_NAME);
+    assertNotNull(flist);
+    assertTrue(flist.stream().anyMatch(row -> row.getNumberOfFeatures() == 2),
+        "No row with two features");
+
+    // values for the criteria that are not set by feature detection
+    final List<FeatureListRow> rows = flist.getRows();
+    for (int i = 0; i < rows.size(); i++) {
+      final FeatureListRow row = rows.get(i);
+      if (i % 4 == 0) {
+        row.setComment("Keep row " + i);
+      } else if (i % 7 == 0) {
+        row.setComment("Other row " + i);
+      }
+      if (i % 5 == 0) {
+        row.addFeatureIdentity(new SimpleFeatureIdentity("Compound " + i), true);
+      }
+      for (Feature feature : row.getFeatures()) {
+        feature.setCharge(i % 3);
+        if (i % 2 == 0) {
+          feature.setFWHM(0.01f * (i % 10));
+        }
+      }
+    }
+  }
+
+  @AfterAll
+  public void tearDown() {
+    MZmineTestUtil.cleanProject();
+  }
+
+  @Test
+  void testCompiledFilterSameAsLegacy() {
+    testCriteria("m/z and RT", p -> {
+      p.setParameter(RowsFilterParameters.MZ_RANGE, true);
+      p.getParameter(RowsFilterParameters.MZ_RANGE).getEmbeddedParameter()
+          .setValue(Range.closed(200d, 400d));
+      p.setParameter(RowsFilterParameters.RT_RANGE, true);
+      p.getParameter(RowsFilterParameters.RT_RANGE).getEmbeddedParameter()
+          .setValue(Range.closedOpen(7.5d, 8.5d));
+    });
+    testCriteria("feature count and duration", p -> {
+      p.setParameter(RowsFilterParameters.MIN_FEATURE_COUNT, true);
+      p.getParameter(RowsFilterParameters.MIN_FEATURE_COUNT).getEmbeddedParameter().setValue(2d);
+      p.setParameter(RowsFilterParameters.FEATURE_DURATION, true);
+      p.getParameter(RowsFilterParameters.FEATURE_DURATION).getEmbeddedParameter()
+          .setValue(Range.closed(0.05, 0.5));
+    });
+    testCriteria("isotope pattern", p -> {
+      p.setParameter(RowsFilterParameters.MIN_ISOTOPE_PATTERN_COUNT, true);
+      p.getParameter(RowsFilterParameters.MIN_ISOTOPE_PATTERN_COUNT).getEmbeddedParameter()
+          .setValue(2);
+    });
+    testCriteria("FWHM", p -> {
+      p.setParameter(RowsFilterParameters.FWHM, true);
+      p.getParameter(RowsFilterParameters.FWHM).getEmbeddedParameter()
+          .setValue(Range.closed(0.01, 0.05));
+    });
+    testCriteria("charge", p -> {
+      p.setParameter(RowsFilterParameters.CHARGE, true);
+      p.getParameter(RowsFilterParameters.CHARGE).getEmbeddedParameter()
+          .setValue(Range.closed(2, 3));
+    });
+    testCriteria("Kendrick mass defect", p -> {
+      p.setParameter(RowsFilterParameters.KENDRICK_MASS_DEFECT, true);
+      final ParameterSet kendrick = p.getParameter(RowsFilterParameters.KENDRICK_MASS_DEFECT)
+          .getEmbeddedParameters();
+      kendrick.setParameter(KendrickMassDefectFilterParameters.kendrickMassDefectRange,
+          Range.closed(0.1, 0.6));
+      kendrick.setParameter(KendrickMassDefectFilterParameters.shift, 0.1);
+    });
+    testCriteria("remainder of Kendrick mass", p -> {
+      p.setParameter(RowsFilterParameters.KENDRICK_MASS_DEFECT, true);
+      final ParameterSet kendrick = p.getParameter(RowsFilterParameters.KENDRICK_MASS_DEFECT)
+          .getEmbeddedParameters();
+      kendrick.setParameter(KendrickMassDefectFilterParameters.kendrickMassDefectRange,
+          Range.closed(0.2, 0.7));
+      kendrick.setParameter(KendrickMassDefectFilterParameters.kendrickMassBase, "H");
+      kendrick.setParameter(KendrickMassDefectFilterParameters.divisor, 2);
+      kendrick.setParameter(KendrickMassDefectFilterParameters.shift, 0.2);
+      kendrick.setParameter(KendrickMassDefectFilterParameters.useRemainderOfKendrickMass, true);
+    });
+    testCriteria("identities", p -> {
+      p.setParameter(RowsFilterParameters.HAS_IDENTITIES, true);
+      p.setParameter(RowsFilterParameters.IDENTITY_TEXT, true);
+      p.getParameter(RowsFilterParameters.IDENTITY_TEXT).getEmbeddedParameter()
+          .setValue(" compound 1");
+    });
+    testCriteria("comment", p -> {
+      p.setParameter(RowsFilterParameters.COMMENT_TEXT, true);
+      p.getParameter(RowsFilterParameters.COMMENT_TEXT).getEmbeddedParameter().setValue("KEEP");
+    });
+    testCriteria("MS2", p -> p.setParameter(RowsFilterParameters.MS2_Filter, true));
+    testCriteria("mass defect", p -> {
+      p.setParameter(RowsFilterParameters.massDefect, true);
+      p.getParameter(RowsFilterParameters.massDefect).getEmbeddedParameter()
+          .setValue(new MassDefectFilter(0.9, 0.2));
+    });
+    testCriteria("combined", p -> {
+      p.setParameter(RowsFilterParameters.MZ_RANGE, true);
+      p.getParameter(RowsFilterParameters.MZ_RANGE).getEmbeddedParameter()
+          .setValue(Range.closed(150d, 600d));
+      p.setParameter(RowsFilterParameters.MIN_FEATURE_COUNT, true);
+      p.getParameter(RowsFilterParameters.MIN_FEATURE_COUNT).getEmbeddedParameter().setValue(1d);
+      p.setParameter(RowsFilterParameters.CHARGE, true);
+      p.getParameter(RowsFilterParameters.CHARGE).getEmbeddedParameter()
+          .setValue(Range.closed(1, 2));
+      p.setParameter(RowsFilterParameters.COMMENT_TEXT, true);
+      p.getParameter(RowsFilterParameters.COMMENT_TEXT).getEmbeddedParameter().setValue("row");
+    });
+  }
+
+  @Test
+  void testDuplicateSweepSameAsAllPairs() {
+    final MZTolerance[] mzTolerances = {new MZTolerance(0.002, 5), new MZTolerance(0.02, 20),
+        new MZTolerance(0.5, 0)};
+    final RTTolerance[] rtTolerances = {new RTTolerance(0.05f, Unit.MINUTES),
+        new RTTolerance(0.3f, Unit.MINUTES), new RTTolerance(5f, Unit.PERCENT)};
+    int run = 0;
+    for (MZTolerance mzTol : mzTolerances) {
+      for (RTTolerance rtTol : rtTolerances) {
+        for (boolean requireSameId : new boolean[]{false, true}) {
+          final String suffix = "dup" + run++;
+          final ParameterSet param = new DuplicateFilterParameters().cloneParameterSet();
+          param.setParameter(DuplicateFilterParameters.suffix, suffix);
+          param.setParameter(DuplicateFilterParameters.filterMode, FilterMode.OLD_AVERAGE);
+          param.setParameter(DuplicateFilterParameters.mzDifferenceMax, mzTol);
+          param.setParameter(DuplicateFilterParameters.rtDifferenceMax, rtTol);
+          param.setParameter(DuplicateFilterParameters.requireSameIdentification, requireSameId);
+          param.setParameter(DuplicateFilterParameters.handleOriginal,
+              OriginalFeatureListOption.KEEP);
+
+          final DuplicateFilterTask task = new DuplicateFilterTask(project, flist, param, null,
+              Instant.now());
+          task.run();
+          assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+          final FeatureList filtered = project.getFeatureList(flist.getName() + " " + suffix);
+          assertNotNull(filtered);
+
+          final int[] expected = filterDuplicatesAllPairs(flist.getRows(), mzTol, rtTol,
+              requireSameId);
+          final int[] actual = filtered.getRows().stream().mapToInt(FeatureListRow::getID)
+              .sorted().toArray();
+          logger.finest(() -> String.format("Duplicate filter %s, %s, same ID %b: %d of %d rows",
+              mzTol, rtTol, requireSameId, actual.length, flist.getNumberOfRows()));
+          assertArrayEquals(expected, actual,
+              "Duplicate filter " + mzTol + ", " + rtTol + ", same ID " + requireSameId);
+          project.removeFeatureList(filtered);
+        }
+      }
+    }
+  }
+
+  /**
+   * Evaluates the criteria serial and in parallel and compares the results to the previous
+   * implementation.
+   */
+  private void testCriteria(String name, Consumer<ParameterSet> criteria) {
+    final ParameterSet param = createRowsFilterParameters();
+    criteria.accept(param);
+
+    final List<FeatureListRow> rows = flist.getRows();
+    final boolean[] expected = LegacyRowsFilter.matchesAllCriteria(project, param, rows);
+    final FeatureListRow[] rowArray = rows.toArray(FeatureListRow[]::new);
+    final boolean[] serial = new CompiledRowsFilter(project, param).test(rowArray, false,
+        () -> false, null);
+    final boolean[] parallel = new CompiledRowsFilter(project, param).test(rowArray, true,
+        () -> false, null);
+
+    int numPassed = 0;
+    for (boolean passed : expected) {
+      numPassed += passed ? 1 : 0;
+    }
+    logger.finest(name + ": " + numPassed + " of " + expected.length + " rows passed");
+    assertArrayEquals(expected, serial, name);
+    assertArrayEquals(expected, parallel, name + " in parallel");
+  }
+
+  /**
+   * @return parameters with all criteria disabled
+   */
+  private static ParameterSet createRowsFilterParameters() {
+    final ParameterSet param = new RowsFilterParameters().cloneParameterSet();
+    param.setParameter(RowsFilterParameters.SUFFIX, "filtered");
+    param.setParameter(RowsFilterParameters.MIN_FEATURE_COUNT, false);
+    param.setParameter(RowsFilterParameters.MIN_ISOTOPE_PATTERN_COUNT, false);
+    param.setParameter(RowsFilterParameters.MZ_RANGE, false);
+    param.setParameter(RowsFilterParameters.RT_RANGE, false);
+    param.setParameter(RowsFilterParameters.FEATURE_DURATION, false);
+    param.setParameter(RowsFilterParameters.FWHM, false);
+    param.setParameter(RowsFilterParameters.CHARGE, false);
+    param.setParameter(RowsFilterParameters.KENDRICK_MASS_DEFECT, false);
+    param.setParameter(RowsFilterParameters.GROUPSPARAMETER, RowsFilterParameters.defaultGrouping);
+    param.setParameter(RowsFilterParameters.HAS_IDENTITIES, false);
+    param.setParameter(RowsFilterParameters.IDENTITY_TEXT, false);
+    param.getParameter(RowsFilterParameters.IDENTITY_TEXT).getEmbeddedParameter().setValue("");
+    param.setParameter(RowsFilterParameters.COMMENT_TEXT, false);
+    param.getParameter(RowsFilterParameters.COMMENT_TEXT).getEmbeddedParameter().setValue("");
+    param.setParameter(RowsFilterParameters.REMOVE_ROW, RowsFilterParameters.removeRowChoices[0]);
+    param.setParameter(RowsFilterParameters.MS2_Filter, false);
+    param.setParameter(RowsFilterParameters.Reset_ID, false);
+    param.setParameter(RowsFilterParameters.massDefect, false);
+    param.setParameter(RowsFilterParameters.handleOriginal, OriginalFeatureListOption.KEEP);
+
+    final ParameterSet kendrick = param.getParameter(RowsFilterParameters.KENDRICK_MASS_DEFECT)
+        .getEmbeddedParameters();
+    kendrick.setParameter(KendrickMassDefectFilterParameters.kendrickMassDefectRange,
+        Range.closed(0d, 1d));
+    kendrick.setParameter(KendrickMassDefectFilterParameters.kendrickMassBase, "CH2");
+    kendrick.setParameter(KendrickMassDefectFilterParameters.shift, 0d);
+    kendrick.setParameter(KendrickMassDefectFilterParameters.charge, 1);
+    kendrick.setParameter(KendrickMassDefectFilterParameters.divisor, 1);
+    kendrick.setParameter(KendrickMassDefectFilterParameters.useRemainderOfKendrickMass, false);
+    return param;
+  }
+
+  /**
+   * The old average mode of the previous duplicate filter, which compared all pairs of rows.
+   *
+   * @return the sorted IDs of the remaining rows
+   */
+  private static int[] filterDuplicatesAllPairs(List<FeatureListRow> rows,
+      MZTolerance mzTolerance, RTTolerance rtTolerance, boolean requireSameId) {
+    final FeatureListRow[] peakListRows = rows.toArray(FeatureListRow[]::new);
+    final int rowCount = peakListRows.length;
+    Arrays.sort(peakListRows,
+        new FeatureListRowSorter(SortingProperty.Area, SortingDirection.Descending));
+
+    for (int firstRowIndex = 0; firstRowIndex < rowCount; firstRowIndex++) {
+      final FeatureListRow firstRow = peakListRows[firstRowIndex];
+      if (firstRow != null) {
+        for (int secondRowIndex = firstRowIndex + 1; secondRowIndex < rowCount; secondRowIndex++) {
+          final FeatureListRow secondRow = peakListRows[secondRowIndex];
+          if (secondRow != null) {
+            final boolean sameID =
+                !requireSameId || FeatureUtils.compareIdentities(firstRow, secondRow);
+            final boolean sameMZRT =
+                mzTolerance.checkWithinTolerance(firstRow.getAverageMZ(), secondRow.getAverageMZ())
+                && rtTolerance.checkWithinTolerance(firstRow.getAverageRT(),
+                    secondRow.getAverageRT());
+            if (sameID && sameMZRT) {
+              peakListRows[secondRowIndex] = null;
+            }
+          }
+        }
+      }
+    }
+    return Arrays.stream(peakListRows).filter(Objects::nonNull).mapToInt(FeatureListRow::getID)
+        .sorted().toArray();
+  }
+
+  private static MZmineProcessingStep<MassDetector> createCentroidMassDetector(double noise) {
+    final CentroidMassDetector detect = MZmineCore.getModuleInstance(CentroidMassDetector.class);
+    final CentroidMassDetectorParameters param = new CentroidMassDetectorParameters();
+    param.setParameter(CentroidMassDetectorParameters.noiseLevel, noise);
+    param.setParameter(CentroidMassDetectorParameters.detectIsotopes, false);
+    return new MZmineProcessingStepImpl<>(detect, param);
+  }
+}
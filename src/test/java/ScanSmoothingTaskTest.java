@@ -0,0 +1,172 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.common.collect.Range;
+import io.github.mzmine.datamodel.MZmineProject;
+import io.github.mzmine.datamodel.MassSpectrumType;
+import io.github.mzmine.datamodel.PolarityType;
+import io.github.mzmine.datamodel.RawDataFile;
+import io.github.mzmine.datamodel.Scan;
+import io.github.mzmine.datamodel.impl.SimpleScan;
+import io.github.mzmine.main.MZmineCore;
+import io.github.mzmine.modules.dataprocessing.filter_scansmoothing.ScanSmoothingParameters;
+import io.github.mzmine.modules.dataprocessing.filter_scansmoothing.ScanSmoothingTask;
+import io.github.mzmine.parameters.ParameterSet;
+import io.github.mzmine.project.impl.MZmineProjectImpl;
+import io.github.mzmine.project.impl.RawDataFileImpl;
+import io.github.mzmine.taskcontrol.TaskStatus;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+
+/**
+ * Smooths small synthetic files, one case for each window and matching rule of the
+ * {@link ScanSmoothingTask}. Each scan has its own intensity, so the expected values show which
+ * scans were averaged.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+public class ScanSmoothingTaskTest {
+
+  private static final double DELTA = 1E-9;
+
+  @BeforeAll
+  void initialise() {
+    MZmineCore.main(new String[]{"-r", "-m", "all"});
+  }
+
+  /**
+   * Scans 0-3 are 0.1 min apart, scans 4 and 5 are far away. The window of scan 3 is narrower than
+   * the window of scan 2 and must not contain scan 1.
+   */
+  @Test
+  void testWindowOnlyContainsItsScans() throws IOException {
+    final RawDataFile smoothed = smooth(createTimeSeriesFile(), 0.25, 0, 0, 0);
+    assertEquals(35, smoothed.getScan(3).getIntensityValue(0), DELTA);
+    assertEquals(30, smoothed.getScan(2).getIntensityValue(0), DELTA);
+  }
+
+  /**
+   * The window of scan 1 reaches back to scan 0.
+   */
+  @Test
+  void testTimeWindowReachesFirstScan() throws IOException {
+    final RawDataFile smoothed = smooth(createTimeSeriesFile(), 0.25, 0, 0, 0);
+    assertEquals(15, smoothed.getScan(0).getIntensityValue(0), DELTA);
+    assertEquals(20, smoothed.getScan(1).getIntensityValue(0), DELTA);
+  }
+
+  /**
+   * Scans 4 and 5 are the only scans in their windows and keep their intensities, also with m/z
+   * smoothing.
+   */
+  @Test
+  void testSingleScanWindowKeepsIntensities() throws IOException {
+    final RawDataFile timeOnly = smooth(createTimeSeriesFile(), 0.25, 0, 0, 0);
+    assertEquals(6, timeOnly.getNumOfScans());
+    assertEquals(50, timeOnly.getScan(4).getIntensityValue(0), DELTA);
+    assertEquals(60, timeOnly.getScan(5).getIntensityValue(0), DELTA);
+
+    final RawDataFile withMz = smooth(createTimeSeriesFile(), 0.25, 0, 0.001, 0);
+    assertEquals(6, withMz.getNumOfScans());
+    assertEquals(50, withMz.getScan(4).getIntensityValue(0), DELTA);
+    assertEquals(60, withMz.getScan(5).getIntensityValue(0), DELTA);
+  }
+
+  /**
+   * The scan span is larger than the file, all windows are clamped to the three scans.
+   */
+  @Test
+  void testWindowsClampedToScans() throws IOException {
+    final RawDataFile file = createFile(new float[]{0f, 0.1f, 0.2f},
+        new double[][]{{100}, {100}, {100}}, new double[][]{{10}, {20}, {30}});
+    final RawDataFile smoothed = smooth(file, 0, 5, 0, 0);
+    assertEquals(3, smoothed.getNumOfScans());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(20, smoothed.getScan(i).getIntensityValue(0), DELTA, "scan " + i);
+    }
+  }
+
+  /**
+   * The m/z 100 of scan 0 has no match in scan 1. The binary search ends at index 0 of scan 1,
+   * which must not be averaged. The m/z 200 of scan 1 has no match in scan 0 either.
+   */
+  @Test
+  void testMissAtFirstIndexIsSkipped() throws IOException {
+    final RawDataFile file = createFile(new float[]{0f, 0.1f},
+        new double[][]{{100, 150}, {200}}, new double[][]{{100, 100}, {1000}});
+    final RawDataFile smoothed = smooth(file, 0.25, 0, 0, 0);
+    assertArrayEquals(new double[]{100, 100}, intensities(smoothed.getScan(0)), DELTA);
+    assertArrayEquals(new double[]{1000}, intensities(smoothed.getScan(1)), DELTA);
+  }
+
+  private static RawDataFile smooth(RawDataFile file, double timeSpan, int scanSpan, double mzTol,
+      int mzPoints) {
+    final MZmineProject project = new MZmineProjectImpl();
+    project.addFile(file);
+    final ParameterSet parameters = new ScanSmoothingParameters().cloneParameterSet();
+    parameters.setParameter(ScanSmoothingParameters.timeSpan, timeSpan);
+    parameters.setParameter(ScanSmoothingParameters.scanSpan, scanSpan);
+    parameters.setParameter(ScanSmoothingParameters.mzTolerance, mzTol);
+    parameters.setParameter(ScanSmoothingParameters.mzPoints, mzPoints);
+    parameters.setParameter(ScanSmoothingParameters.minimumHeight, 0d);
+    parameters.setParameter(ScanSmoothingParameters.suffix, "smoothed");
+    parameters.setParameter(ScanSmoothingParameters.removeOld, false);
+
+    final ScanSmoothingTask task = new ScanSmoothingTask(project, file, parameters, null,
+        Instant.now());
+    task.run();
+    assertEquals(TaskStatus.FINISHED, task.getStatus(), task.getErrorMessage());
+    return Arrays.stream(project.getDataFiles())
+        .filter(f -> f.getName().equals(file.getName() + " smoothed")).findFirst().orElseThrow();
+  }
+
+  /**
+   * Six scans with one data point at m/z 100, intensity 10 times the scan index + 1
+   */
+  private static RawDataFile createTimeSeriesFile() throws IOException {
+    final float[] rts = {0f, 0.1f, 0.2f, 0.3f, 5f, 5.1f};
+    final double[][] mzs = new double[rts.length][];
+    final double[][] intensities = new double[rts.length][];
+    for (int i = 0; i < rts.length; i++) {
+      mzs[i] = new double[]{100};
+      intensities[i] = new double[]{10 * (i + 1)};
+    }
+    return createFile(rts, mzs, intensities);
+  }
+
+  private static RawDataFile createFile(float[] rts, double[][] mzs, double[][] intensities)
+      throws IOException {
+    final RawDataFile file = new RawDataFileImpl("smoothing test", null, null);
+    for (int i = 0; i < rts.length; i++) {
+      file.addScan(new SimpleScan(file, i + 1, 1, rts[i], null, mzs[i], intensities[i],
+          MassSpectrumType.CENTROIDED, PolarityType.POSITIVE, "", Range.closed(0d, 1000d)));
+    }
+    return file;
+  }
+
+  private static double[] intensities(Scan scan) {
+    return scan.getIntensityValues(new double[scan.getNumberOfDataPoints()]);
+  }
+}
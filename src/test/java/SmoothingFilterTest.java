@@ -0,0 +1,188 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.loess.LoessFilter;
+import io.github.mzmine.modules.dataprocessing.featdet_smoothing.savitzkygolay.SavitzkyGolayFilter;
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.commons.math3.analysis.interpolation.LoessInterpolator;
+import org.apache.commons.math3.exception.NumberIsTooSmallException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the buffered smoothing kernels to the implementations they replace. {@link
+ * LoessFilter} has to compute the same values as the commons math {@link LoessInterpolator}
+ * without robustness iterations, and the buffered Savitzky-Golay convolution the same values as
+ * the point by point convolution. Both are compared bit by bit.
+ */
+public class SmoothingFilterTest {
+
+  private static final double[] BANDWIDTHS = {0.05, 0.1, 0.25, 0.5, 0.75, 1d};
+
+  private static final int[] SG_WIDTHS = {0, 5, 7, 9, 11, 13, 15, 17, 19, 21, 23, 25};
+
+  @Test
+  void testLoessSameAsInterpolator() {
+    final Random random = new Random(42);
+    for (int n = 3; n <= 200; n += random.nextInt(7) + 1) {
+      final double[] x = randomIncreasing(random, n);
+      final double[] y = randomIntensities(random, n);
+      for (final double bandwidth : BANDWIDTHS) {
+        if ((int) (bandwidth * n) < 2) {
+          continue;
+        }
+        final double[] expected = new LoessInterpolator(bandwidth, 0).smooth(x, y);
+        final double[] actual = LoessFilter.smooth(x, y, n, bandwidth, null);
+        assertArrayEquals(expected, actual, "n = " + n + ", bandwidth = " + bandwidth);
+      }
+    }
+  }
+
+  @Test
+  void testLoessOversizedBuffers() {
+    // the data access buffers are longer than the series and contain leftovers
+    final Random random = new Random(7);
+    final int n = 57;
+    final double[] x = Arrays.copyOf(randomIncreasing(random, n), n + 20);
+    final double[] y = Arrays.copyOf(randomIntensities(random, n), n + 20);
+    Arrays.fill(y, n, y.length, 1E9);
+    final double[] dst = new double[n + 20];
+    Arrays.fill(dst, -1d);
+
+    final double[] expected = new LoessInterpolator(0.3, 0)
+        .smooth(Arrays.copyOf(x, n), Arrays.copyOf(y, n));
+    final double[] actual = LoessFilter.smooth(x, y, n, 0.3, dst);
+
+    assertTrue(actual == dst);
+    assertArrayEquals(expected, Arrays.copyOf(actual, n));
+    for (int i = n; i < dst.length; i++) {
+      assertTrue(dst[i] == -1d, "buffer was modified after the series at " + i);
+    }
+  }
+
+  @Test
+  void testLoessTwoOrLessPoints() {
+    final Random random = new Random(3);
+    for (int n = 1; n <= 2; n++) {
+      final double[] x = randomIncreasing(random, n);
+      final double[] y = randomIntensities(random, n);
+      for (final double bandwidth : BANDWIDTHS) {
+        final double[] expected = new LoessInterpolator(bandwidth, 0).smooth(x, y);
+        assertArrayEquals(y, expected);
+        assertArrayEquals(expected, LoessFilter.smooth(x, y, n, bandwidth, null),
+            "n = " + n + ", bandwidth = " + bandwidth);
+      }
+    }
+    assertArrayEquals(new double[0], LoessFilter.smooth(new double[0], new double[0], 0, 0.5,
+        null));
+  }
+
+  @Test
+  void testLoessBandwidthBelowTwoPoints() {
+    // the interpolator throws, the filter leaves the values unchanged
+    final Random random = new Random(5);
+    for (final int n : new int[]{3, 10, 39}) {
+      final double[] x = randomIncreasing(random, n);
+      final double[] y = randomIntensities(random, n);
+      final double bandwidth = 1.9 / n;
+      assertThrows(NumberIsTooSmallException.class,
+          () -> new LoessInterpolator(bandwidth, 0).smooth(x, y));
+      assertArrayEquals(y, LoessFilter.smooth(x, y, n, bandwidth, null), "n = " + n);
+    }
+  }
+
+  @Test
+  void testSavitzkyGolaySameAsPointByPoint() {
+    final Random random = new Random(42);
+    for (final int width : SG_WIDTHS) {
+      final double[] weights = SavitzkyGolayFilter.getNormalizedWeights(width);
+      // shorter and longer than the filter
+      for (int n = 0; n <= 80; n++) {
+        final double[] intensities = randomIntensities(random, n);
+        final double[] expected = SavitzkyGolayFilter.convolve(intensities, weights);
+        final double[] actual = SavitzkyGolayFilter.convolve(intensities, n, weights, null);
+        assertArrayEquals(expected, actual, "width = " + width + ", n = " + n);
+      }
+    }
+  }
+
+  @Test
+  void testSavitzkyGolayOversizedBuffers() {
+    final Random random = new Random(11);
+    for (final int width : SG_WIDTHS) {
+      final double[] weights = SavitzkyGolayFilter.getNormalizedWeights(width);
+      for (final int n : new int[]{0, 1, 2, width / 2, width, width + 1, 100}) {
+        // leftovers after the first n values must not be taken into account
+        final double[] intensities = randomIntensities(random, n + 13);
+        final double[] dst = new double[n + 5];
+        Arrays.fill(dst, -1d);
+
+        final double[] expected = SavitzkyGolayFilter
+            .convolve(Arrays.copyOf(intensities, n), weights);
+        final double[] actual = SavitzkyGolayFilter.convolve(intensities, n, weights, dst);
+
+        assertTrue(actual == dst);
+        assertArrayEquals(expected, Arrays.copyOf(actual, n), "width = " + width + ", n = " + n);
+        for (int i = n; i < dst.length; i++) {
+          assertTrue(dst[i] == -1d, "buffer was modified after the series at " + i);
+        }
+      }
+    }
+  }
+
+  @Test
+  void testSavitzkyGolayRandomWeights() {
+    // asymmetric weights catch a mirrored kernel
+    final Random random = new Random(13);
+    for (int width = 1; width <= 31; width += 2) {
+      final double[] weights = new double[width];
+      for (int j = 0; j < width; j++) {
+        weights[j] = random.nextDouble() * 2 - 1;
+      }
+      for (final int n : new int[]{0, 1, width - 1, width, 3 * width, 257}) {
+        final double[] intensities = randomIntensities(random, n);
+        assertArrayEquals(SavitzkyGolayFilter.convolve(intensities, weights),
+            SavitzkyGolayFilter.convolve(intensities, n, weights, null),
+            "width = " + width + ", n = " + n);
+      }
+    }
+  }
+
+  private static double[] randomIncreasing(final Random random, final int n) {
+    final double[] x = new double[n];
+    double value = random.nextDouble() * 10;
+    for (int i = 0; i < n; i++) {
+      value += 0.001 + random.nextDouble() * 0.05;
+      x[i] = value;
+    }
+    return x;
+  }
+
+  private static double[] randomIntensities(final Random random, final int n) {
+    final double[] y = new double[n];
+    for (int i = 0; i < n; i++) {
+      // some zeros, like gaps in a chromatogram
+      y[i] = random.nextInt(8) == 0 ? 0d : random.nextDouble() * 1E6;
+    }
+    return y;
+  }
+}
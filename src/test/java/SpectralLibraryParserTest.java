@@ -0,0 +1,109 @@
+/*
+ * Copyright 2006-2021 The MZmine Development Team
+ *
+ * This file is part of MZmine.
+ *
+ * MZmine is free software; you can redistribute it and/or modify it under the terms of the GNU
+ * General Public License as published by the Free Software Foundation; either version 2 of the
+ * License, or (at your option) any later version.
+ *
+ * MZmine is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even
+ * the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with MZmine; if not,
+ * write to the Free Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import io.github.mzmine.datamodel.DataPoint;
+import io.github.mzmine.util.spectraldb.entry.DBEntryField;
+import io.github.mzmine.util.spectraldb.entry.SpectralDBEntry;
+import io.github.mzmine.util.spectraldb.parser.GnpsMgfParser;
+import io.github.mzmine.util.spectraldb.parser.NistMspParser;
+import io.github.mzmine.util.spectraldb.parser.SpectralLibraryIndex;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares the entries of the indexed mgf and msp parsers with the entries of the previous line by
+ * line parsers. The expected values were created with the previous parsers. Metadata fields are no
+ * longer inherited from the previous entry, therefore only the fields of each entry are compared.
+ */
+class SpectralLibraryParserTest {
+
+  private static File getFile(String name) {
+    return new File(
+        SpectralLibraryParserTest.class.getClassLoader().getResource("spectraldb/" + name)
+            .getFile());
+  }
+
+  private static void assertEntry(SpectralDBEntry entry, String name, double precursorMZ,
+      double[][] dataPoints) {
+    assertEquals(name, entry.getField(DBEntryField.NAME).orElse(null));
+    assertEquals(precursorMZ, entry.getPrecursorMZ(), 0d);
+    final DataPoint[] dps = entry.getDataPoints();
+    assertEquals(dataPoints.length, dps.length, name);
+    for (int i = 0; i < dps.length; i++) {
+      assertEquals(dataPoints[i][0], dps[i].getMZ(), 0d);
+      assertEquals(dataPoints[i][1], dps[i].getIntensity(), 0d);
+    }
+  }
+
+  @Test
+  void testMgfEntriesMatchPreviousParser() throws IOException {
+    final List<SpectralDBEntry> entries = new ArrayList<>();
+    new GnpsMgfParser(2, (list, processed) -> entries.addAll(list))
+        .parse(null, getFile("library.mgf"));
+
+    // entries with an invalid data point, a zero intensity or a single data point are skipped
+    assertEquals(2, entries.size());
+    assertEntry(entries.get(0), "Caffeine M+H", 181.0707,
+        new double[][]{{110.0713, 120.5}, {138.0662, 999.0}, {163.0614, 45.25}});
+    assertEquals("M+H", entries.get(0).getField(DBEntryField.ION_TYPE).orElse(null));
+    // only the first two columns are read, -0.0 is not a zero intensity for the previous parser
+    assertEntry(entries.get(1), "Extra columns", 301.1410,
+        new double[][]{{91.0542, 150.0}, {105.0699, -0.0}, {283.1329, 75.0}});
+  }
+
+  @Test
+  void testMspEntriesMatchPreviousParser() throws IOException {
+    final List<SpectralDBEntry> entries = new ArrayList<>();
+    new NistMspParser(2, (list, processed) -> entries.addAll(list))
+        .parse(null, getFile("library.msp"));
+
+    // the entry with a zero intensity is skipped
+    assertEquals(3, entries.size());
+    assertEntry(entries.get(0), "Caffeine", 195.0877,
+        new double[][]{{110.0713, 120.5}, {138.0662, 999.0}, {163.0614, 45.25}});
+    assertEquals("[M+H]+", entries.get(0).getField(DBEntryField.ION_TYPE).orElse(null));
+    assertEntry(entries.get(1), "Tryptophan", 205.0972,
+        new double[][]{{118.0651, 12.0}, {146.0600, 100.0}, {188.0706, 12.0}});
+    assertEntry(entries.get(2), "Last entry", 300.0, new double[][]{{100.0, 10.0}, {200.0, 20.0}});
+  }
+
+  @Test
+  void testIndexIsCachedUntilReleased() throws IOException {
+    final File file = getFile("library.msp");
+    final SpectralLibraryIndex first = SpectralLibraryIndex
+        .getOrCreate(file, NistMspParser.class, () -> (index, start, end) -> {
+        }, null, () -> false);
+    final SpectralLibraryIndex second = SpectralLibraryIndex
+        .getOrCreate(file, NistMspParser.class, () -> (index, start, end) -> {
+        }, null, () -> false);
+    assertSame(first, second);
+
+    SpectralLibraryIndex.release(file);
+    final SpectralLibraryIndex third = SpectralLibraryIndex
+        .getOrCreate(file, NistMspParser.class, () -> (index, start, end) -> {
+        }, null, () -> false);
+    assertNotSame(first, third);
+  }
+}